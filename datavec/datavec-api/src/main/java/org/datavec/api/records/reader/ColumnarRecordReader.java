@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.api.records.reader;
+
+import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.AbstractColumnarRecordBatch;
+
+import java.util.List;
+
+/**
+ * RecordReader that is able to return batches of records column by column, in addition to regular
+ * {@link #next(int)}, which returns a mutable list of records.
+ *
+ * RecordReaderDataSetIterator and RecordReaderMultiDataSetIterator use {@link #nextColumnar(int)} when possible,
+ * so batches are converted to INDArrays with one bulk copy per column.
+ */
+public interface ColumnarRecordReader extends RecordReader {
+
+    /**
+     * This method returns up to num records, as {@link AbstractColumnarRecordBatch} if all records have the same
+     * number of columns.
+     *
+     * PLEASE NOTE: returned list is read-only, use {@link #next(int)} if records need to be modified.
+     *
+     * @param num maximal number of records
+     * @return batch of records
+     */
+    List<List<Writable>> nextColumnar(int num);
+}
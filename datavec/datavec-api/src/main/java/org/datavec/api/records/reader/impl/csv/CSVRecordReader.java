@@ -21,10 +21,12 @@ import org.datavec.api.conf.Configuration;
 import org.datavec.api.records.Record;
 import org.datavec.api.records.metadata.RecordMetaData;
 import org.datavec.api.records.metadata.RecordMetaDataLine;
+import org.datavec.api.records.reader.ColumnarRecordReader;
 import org.datavec.api.records.reader.impl.LineRecordReader;
 import org.datavec.api.split.InputSplit;
 import org.datavec.api.writable.Text;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
 import org.nd4j.base.Preconditions;
 
 import java.io.BufferedReader;
@@ -40,9 +42,13 @@ import java.util.NoSuchElementException;
 /**
  * Simple csv record reader.
  *
+ * {@link #nextColumnar(int)} returns {@link ColumnarRecordBatch} with one String column per field, so the iterators
+ * can parse whole columns straight into arrays. Batches with different number of fields per line are returned as
+ * list of records instead.
+ *
  * @author Adam Gibson
  */
-public class CSVRecordReader extends LineRecordReader {
+public class CSVRecordReader extends LineRecordReader implements ColumnarRecordReader {
     private boolean skippedLines = false;
     protected int skipNumLines = 0;
     public final static char DEFAULT_DELIMITER = ',';
@@ -133,7 +139,7 @@ public class CSVRecordReader extends LineRecordReader {
         this.csvParser = new SerializableCSVParser(conf.getChar(DELIMITER, DEFAULT_DELIMITER), conf.getChar(QUOTE, DEFAULT_QUOTE));
     }
 
-    private boolean skipLines() {
+    protected boolean skipLines() {
         if (!skippedLines && skipNumLines > 0) {
             for (int i = 0; i < skipNumLines; i++) {
                 if (!super.hasNext()) {
@@ -159,12 +165,36 @@ public class CSVRecordReader extends LineRecordReader {
     @Override
     public List<List<Writable>> next(int num) {
         List<List<Writable>> ret = new ArrayList<>(Math.min(num, 10000));
-        int recordsRead = 0;
-        while(hasNext() && recordsRead++ < num) {
+        while (ret.size() < num && hasNext())
             ret.add(next());
+        return ret;
+    }
+
+    @Override
+    public List<List<Writable>> nextColumnar(int num) {
+        List<String[]> lines = new ArrayList<>(Math.min(num, 10000));
+        boolean sameLength = true;
+        while (lines.size() < num && hasNext()) {
+            String[] split = splitLine(readStringLine());
+            sameLength &= lines.isEmpty() || split.length == lines.get(0).length;
+            lines.add(split);
         }
 
-        return ret;
+        if (lines.isEmpty() || !sameLength) {
+            List<List<Writable>> ret = new ArrayList<>(lines.size());
+            for (String[] split : lines)
+                ret.add(toWritables(split));
+            return ret;
+        }
+
+        int numColumns = lines.get(0).length;
+        String[][] columns = new String[numColumns][lines.size()];
+        for (int i = 0; i < lines.size(); i++) {
+            String[] split = lines.get(i);
+            for (int c = 0; c < numColumns; c++)
+                columns[c][i] = split[c];
+        }
+        return new ColumnarRecordBatch(lines.size(), columns);
     }
 
     @Override
@@ -176,13 +206,22 @@ public class CSVRecordReader extends LineRecordReader {
     }
 
     protected List<Writable> parseLine(String line) {
-        String[] split;
+        return toWritables(splitLine(line));
+    }
+
+    /**
+     * This method splits line into fields, each field becomes a Text writable
+     */
+    protected String[] splitLine(String line) {
         try {
-            split = csvParser.parseLine(line);
+            return csvParser.parseLine(line);
         } catch(IOException e) {
             throw new RuntimeException(e);
         }
-        List<Writable> ret = new ArrayList<>();
+    }
+
+    private static List<Writable> toWritables(String[] split) {
+        List<Writable> ret = new ArrayList<>(split.length);
         for (String s : split) {
             ret.add(new Text(s));
         }
@@ -190,9 +229,15 @@ public class CSVRecordReader extends LineRecordReader {
     }
 
     protected String readStringLine(){
+        return readTextLine().toString();
+    }
+
+    /**
+     * Read the next line as UTF-8 encoded {@link Text}, without decoding it to a String
+     */
+    protected Text readTextLine(){
         Preconditions.checkState(initialized, "RecordReader has not been initialized before use");
-        Text t = (Text) super.next().iterator().next();
-        return t.toString();
+        return (Text) super.next().iterator().next();
     }
 
     @Override
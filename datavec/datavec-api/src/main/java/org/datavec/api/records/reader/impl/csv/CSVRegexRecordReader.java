@@ -16,9 +16,6 @@
 
 package org.datavec.api.records.reader.impl.csv;
 
-import org.datavec.api.writable.Text;
-import org.datavec.api.writable.Writable;
-
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -59,9 +56,10 @@ public class CSVRegexRecordReader extends CSVRecordReader {
         }
     }
 
-    protected List<Writable> parseLine(String line) {
+    @Override
+    protected String[] splitLine(String line) {
         String[] split = line.split(delimiter, -1);
-        List<Writable> ret = new ArrayList<>();
+        List<String> ret = new ArrayList<>();
         for (int i = 0; i < split.length; i++) {
             String s = split[i];
             if (quote != null && s.startsWith(quote) && s.endsWith(quote)) {
@@ -72,17 +70,17 @@ public class CSVRegexRecordReader extends CSVRecordReader {
                 Matcher m = patterns[i].matcher(s);
                 if (m.matches()) {
                     for (int j = 1; j <= m.groupCount(); j++) { //Note: Matcher.group(0) is the entire sequence; we only care about groups 1 onward
-                        ret.add(new Text(m.group(j)));
+                        ret.add(m.group(j));
                     }
                 } else {
                     throw new IllegalStateException("Invalid line: value does not match regex (regex=\"" + regexs[i]
                                     + "\"; value=\"" + s + "\"");
                 }
             } else {
-                ret.add(new Text(s));
+                ret.add(s);
             }
         }
-        return ret;
+        return ret.toArray(new String[ret.size()]);
     }
 
 }
@@ -0,0 +1,603 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.api.records.reader.impl.csv;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.datavec.api.conf.Configuration;
+import org.datavec.api.records.Record;
+import org.datavec.api.records.metadata.RecordMetaData;
+import org.datavec.api.records.metadata.RecordMetaDataLine;
+import org.datavec.api.records.reader.BaseRecordReader;
+import org.datavec.api.records.reader.ColumnarRecordReader;
+import org.datavec.api.split.InputSplit;
+import org.datavec.api.split.InputStreamInputSplit;
+import org.datavec.api.split.StringSplit;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.Text;
+import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
+import org.nd4j.base.Preconditions;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * CSV record reader that parses a single (large) file on multiple threads.
+ *
+ * Input is read sequentially by one producer thread, and cut into chunks of roughly chunkSize bytes. Chunks always
+ * end at record boundaries: newlines inside quoted values don't end a record, and first skipNumLines records of
+ * each file are dropped before chunking. Chunks are parsed by worker threads in parallel. Number of chunks in flight
+ * is bounded, so memory use doesn't depend on file size.
+ *
+ * Two output modes are available:
+ * - ordered: records are returned in the same order as in the file
+ * - unordered: chunks are returned as soon as they're parsed, records within a chunk keep their order
+ *
+ * Records are parsed the same way {@link CSVRecordReader} does, or as {@link SchemaCSVRecordReader} does if
+ * {@link Schema} was provided. This reader supports batches, so it can be used with RecordReaderDataSetIterator as is:
+ * {@link #nextColumnar(int)} returns {@link ColumnarRecordBatch}, so the iterator converts batches column by column.
+ *
+ * PLEASE NOTE: {@link #loadFromMetaData(RecordMetaData)} works on line numbers, so it doesn't support records
+ * that span multiple lines.
+ */
+@Slf4j
+public class ParallelCSVRecordReader extends BaseRecordReader implements ColumnarRecordReader {
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    @Getter
+    protected int skipNumLines;
+    @Getter
+    protected char delimiter;
+    @Getter
+    protected char quote;
+    @Getter
+    protected final int numWorkers;
+    @Getter
+    protected final boolean ordered;
+    @Getter
+    protected final int chunkSize;
+    protected final Schema schema;
+
+    protected Configuration conf;
+    protected InputSplit inputSplit;
+
+    protected transient Pipeline pipeline;
+    protected transient Chunk current;
+    protected transient int position;
+
+    public ParallelCSVRecordReader() {
+        this(0);
+    }
+
+    public ParallelCSVRecordReader(int skipNumLines) {
+        this(skipNumLines, CSVRecordReader.DEFAULT_DELIMITER, CSVRecordReader.DEFAULT_QUOTE,
+                        Runtime.getRuntime().availableProcessors(), true);
+    }
+
+    /**
+     * @param skipNumLines Number of lines to skip at the beginning of each file
+     * @param delimiter    Delimiter to use
+     * @param quote        Quote character
+     * @param numWorkers   Number of parsing threads
+     * @param ordered      If true, records are returned in file order
+     */
+    public ParallelCSVRecordReader(int skipNumLines, char delimiter, char quote, int numWorkers, boolean ordered) {
+        this(null, skipNumLines, delimiter, quote, numWorkers, ordered, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param schema       Schema of the data, if not null records are parsed into typed writables,
+     *                     see {@link SchemaCSVRecordReader}
+     * @param skipNumLines Number of lines to skip at the beginning of each file
+     * @param delimiter    Delimiter to use
+     * @param quote        Quote character
+     * @param numWorkers   Number of parsing threads
+     * @param ordered      If true, records are returned in file order
+     * @param chunkSize    Approximate size of a chunk in bytes
+     */
+    public ParallelCSVRecordReader(Schema schema, int skipNumLines, char delimiter, char quote, int numWorkers,
+                    boolean ordered, int chunkSize) {
+        Preconditions.checkArgument(numWorkers > 0, "Number of workers should be positive, got %s", numWorkers);
+        Preconditions.checkArgument(chunkSize > 0, "Chunk size should be positive, got %s", chunkSize);
+        Preconditions.checkArgument(delimiter < 128 && quote < 128, "Only ASCII delimiter and quote characters are supported");
+        this.schema = schema;
+        this.skipNumLines = skipNumLines;
+        this.delimiter = delimiter;
+        this.quote = quote;
+        this.numWorkers = numWorkers;
+        this.ordered = ordered;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void initialize(InputSplit split) throws IOException, InterruptedException {
+        stop();
+        this.inputSplit = split;
+    }
+
+    @Override
+    public void initialize(Configuration conf, InputSplit split) throws IOException, InterruptedException {
+        this.conf = conf;
+        this.skipNumLines = conf.getInt(CSVRecordReader.SKIP_NUM_LINES, skipNumLines);
+        this.delimiter = conf.getChar(CSVRecordReader.DELIMITER, delimiter);
+        this.quote = conf.getChar(CSVRecordReader.QUOTE, quote);
+        initialize(split);
+    }
+
+    @Override
+    public boolean batchesSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean hasNext() {
+        Preconditions.checkState(inputSplit != null, "RecordReader has not been initialized before use");
+        if (pipeline == null)
+            start();
+
+        while (current == null || position >= current.records.size()) {
+            current = pipeline.nextChunk();
+            position = 0;
+            if (current == null)
+                return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public List<Writable> next() {
+        if (!hasNext())
+            throw new NoSuchElementException("No next element found!");
+
+        List<Writable> record = current.records.get(position++);
+        invokeListeners(record);
+        return record;
+    }
+
+    @Override
+    public List<List<Writable>> next(int num) {
+        List<List<Writable>> ret = new ArrayList<>(Math.min(num, 10000));
+        while (ret.size() < num && hasNext()) {
+            int n = Math.min(num - ret.size(), current.records.size() - position);
+            for (int i = 0; i < n; i++)
+                ret.add(next());
+        }
+        return ret;
+    }
+
+    @Override
+    public List<List<Writable>> nextColumnar(int num) {
+        List<List<Writable>> ret = next(num);
+        if (ret.isEmpty())
+            return ret;
+
+        int numColumns = ret.get(0).size();
+        for (List<Writable> record : ret)
+            if (record.size() != numColumns)
+                return ret;
+
+        Writable[][] columns = new Writable[numColumns][ret.size()];
+        for (int i = 0; i < ret.size(); i++) {
+            List<Writable> record = ret.get(i);
+            for (int c = 0; c < numColumns; c++)
+                columns[c][i] = record.get(c);
+        }
+        return new ColumnarRecordBatch(ret.size(), columns);
+    }
+
+    @Override
+    public Record nextRecord() {
+        if (!hasNext())
+            throw new NoSuchElementException("No next element found!");
+
+        int line = current.lines[position];
+        URI uri = current.uri;
+        return new org.datavec.api.records.impl.Record(next(),
+                        new RecordMetaDataLine(line, uri, ParallelCSVRecordReader.class));
+    }
+
+    @Override
+    public Record loadFromMetaData(RecordMetaData recordMetaData) throws IOException {
+        return loadFromMetaData(Collections.singletonList(recordMetaData)).get(0);
+    }
+
+    @Override
+    public List<Record> loadFromMetaData(List<RecordMetaData> recordMetaDatas) throws IOException {
+        // line numbers are absolute, so nothing should be skipped here
+        CSVRecordReader reader = schema == null ? new CSVRecordReader(0, delimiter, quote)
+                        : new SchemaCSVRecordReader(schema, 0, delimiter, quote);
+        return reader.loadFromMetaData(recordMetaDatas);
+    }
+
+    @Override
+    public List<Writable> record(URI uri, DataInputStream dataInputStream) throws IOException {
+        CSVRecordReader reader = schema == null ? new CSVRecordReader(skipNumLines, delimiter, quote)
+                        : new SchemaCSVRecordReader(schema, skipNumLines, delimiter, quote);
+        return reader.record(uri, dataInputStream);
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return null;
+    }
+
+    @Override
+    public void reset() {
+        if (inputSplit == null)
+            throw new UnsupportedOperationException("Cannot reset without first initializing");
+        stop();
+        inputSplit.reset();
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return inputSplit == null || inputSplit.resetSupported();
+    }
+
+    @Override
+    public void close() throws IOException {
+        Pipeline p = pipeline;
+        stop();
+        if (p != null) {
+            try {
+                p.awaitTermination();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for parsing threads to stop", e);
+            }
+        }
+    }
+
+    @Override
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+    }
+
+    @Override
+    public Configuration getConf() {
+        return conf;
+    }
+
+    protected void start() {
+        pipeline = new Pipeline();
+        pipeline.start();
+    }
+
+    protected void stop() {
+        if (pipeline != null)
+            pipeline.shutdown();
+        pipeline = null;
+        current = null;
+        position = 0;
+    }
+
+    protected InputStream[] openStreams() throws IOException {
+        if (inputSplit instanceof StringSplit)
+            return new InputStream[] {new ByteArrayInputStream(((StringSplit) inputSplit).getData().getBytes(StandardCharsets.UTF_8))};
+        if (inputSplit instanceof InputStreamInputSplit)
+            return new InputStream[] {((InputStreamInputSplit) inputSplit).getIs()};
+
+        // streams for files are opened one by one by producer
+        return null;
+    }
+
+    /**
+     * Parse a single chunk into records. Called from worker threads.
+     */
+    protected Chunk parse(long seq, byte[] bytes, URI uri, int firstLine) throws IOException {
+        List<List<Writable>> records = new ArrayList<>();
+        int[] lines = new int[64];
+
+        SerializableCSVParser parser = new SerializableCSVParser(delimiter, quote);
+        SchemaCSVRecordReader schemaParser = schema == null ? null : new SchemaCSVRecordReader(schema, 0, delimiter, quote);
+
+        RecordScanner scanner = new RecordScanner(quote);
+        int line = firstLine;
+        int start = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (scanner.isRecordEnd(bytes[i]) || i == bytes.length - 1) {
+                int end = bytes[i] == '\n' ? i : i + 1;
+                if (end > start && bytes[end - 1] == '\r')
+                    end--;
+
+                String s = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+                if (schemaParser != null) {
+                    records.add(schemaParser.parseLine(s));
+                } else {
+                    String[] split = parser.parseLine(s);
+                    List<Writable> record = new ArrayList<>(split.length);
+                    for (String f : split)
+                        record.add(new Text(f));
+                    records.add(record);
+                }
+
+                if (records.size() > lines.length)
+                    lines = Arrays.copyOf(lines, lines.length * 2);
+                lines[records.size() - 1] = line;
+
+                line += scanner.linesInRecord();
+                scanner.newRecord();
+                start = i + 1;
+            }
+        }
+
+        return new Chunk(seq, records, lines, uri);
+    }
+
+    /**
+     * Tracks quoting state, to find record boundaries in a byte stream
+     */
+    protected static class RecordScanner {
+        private final byte quote;
+        private boolean inQuotes;
+        private boolean escaped;
+        private int lines;
+
+        protected RecordScanner(char quote) {
+            this.quote = (byte) quote;
+        }
+
+        /**
+         * @return true if this byte ends a record
+         */
+        protected boolean isRecordEnd(byte b) {
+            if (escaped) {
+                escaped = false;
+                return false;
+            }
+
+            if (b == '\n') {
+                lines++;
+                return !inQuotes;
+            } else if (b == quote) {
+                inQuotes = !inQuotes;
+            } else if (inQuotes && b == SerializableCSVParser.DEFAULT_ESCAPE_CHARACTER) {
+                escaped = true;
+            }
+            return false;
+        }
+
+        protected int linesInRecord() {
+            return Math.max(lines, 1);
+        }
+
+        protected void newRecord() {
+            lines = 0;
+        }
+    }
+
+    protected static class Chunk {
+        protected final long seq;
+        protected final List<List<Writable>> records;
+        protected final int[] lines;
+        protected final URI uri;
+        protected final Throwable error;
+        protected final boolean end;
+
+        protected Chunk(long seq, List<List<Writable>> records, int[] lines, URI uri) {
+            this(seq, records, lines, uri, null, false);
+        }
+
+        protected Chunk(long seq, List<List<Writable>> records, int[] lines, URI uri, Throwable error, boolean end) {
+            this.seq = seq;
+            this.records = records;
+            this.lines = lines;
+            this.uri = uri;
+            this.error = error;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Producer thread, workers and result queue for a single pass over the data
+     */
+    protected class Pipeline implements Runnable {
+        private final BlockingQueue<Chunk> results = new LinkedBlockingQueue<>();
+        private final Semaphore permits = new Semaphore(numWorkers * 2);
+        private final Map<Long, Chunk> pending = new HashMap<>();
+        private ExecutorService workers;
+        private Thread producer;
+        private long consumed = 0;
+        private long total = -1;
+
+        protected void start() {
+            final AtomicInteger cnt = new AtomicInteger(0);
+            workers = Executors.newFixedThreadPool(numWorkers, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "ParallelCSVRecordReader-worker-" + cnt.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+            producer = new Thread(this, "ParallelCSVRecordReader-producer");
+            producer.setDaemon(true);
+            producer.start();
+        }
+
+        protected void shutdown() {
+            producer.interrupt();
+            workers.shutdownNow();
+        }
+
+        protected void awaitTermination() throws InterruptedException {
+            producer.join();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * @return next chunk, or null if there's no more data
+         */
+        protected Chunk nextChunk() {
+            while (true) {
+                if (total >= 0 && consumed == total) {
+                    // all chunks are parsed, so worker threads aren't needed anymore
+                    workers.shutdown();
+                    return null;
+                }
+
+                Chunk chunk = null;
+                if (ordered)
+                    chunk = pending.remove(consumed);
+                else if (!pending.isEmpty())
+                    chunk = pending.remove(pending.keySet().iterator().next());
+
+                if (chunk != null) {
+                    consumed++;
+                    permits.release();
+                    return chunk;
+                }
+
+                Chunk c;
+                try {
+                    c = results.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+
+                if (c.error != null)
+                    throw new RuntimeException("Error reading CSV data", c.error);
+
+                if (c.end)
+                    total = c.seq;
+                else
+                    pending.put(c.seq, c);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                long seq = 0;
+                InputStream[] streams = openStreams();
+                if (streams != null) {
+                    URI[] locations = inputSplit.locations();
+                    URI uri = locations == null || locations.length == 0 ? null : locations[0];
+                    seq = split(streams[0], uri, seq);
+                } else {
+                    Iterator<URI> iter = inputSplit.locationsIterator();
+                    while (iter.hasNext()) {
+                        URI uri = iter.next();
+                        try (InputStream is = uri.toURL().openStream()) {
+                            seq = split(is, uri, seq);
+                        }
+                    }
+                }
+
+                results.put(new Chunk(seq, null, null, null, null, true));
+            } catch (InterruptedException e) {
+                // reader was reset or closed
+            } catch (Throwable t) {
+                results.add(new Chunk(-1, null, null, null, t, false));
+            }
+        }
+
+        /**
+         * Cut stream into chunks at record boundaries, and submit them for parsing
+         *
+         * @return sequence number for the next chunk
+         */
+        protected long split(InputStream is, URI uri, long seq) throws IOException, InterruptedException {
+            RecordScanner scanner = new RecordScanner(quote);
+            byte[] buffer = new byte[chunkSize];
+            int filled = 0;
+            int scanned = 0;
+            int chunkStart = 0;
+            int lastBoundary = -1;
+            int toSkip = skipNumLines;
+            int line = 0;
+            int chunkLine = 0;
+            int boundaryLine = 0;
+
+            while (true) {
+                if (Thread.currentThread().isInterrupted())
+                    throw new InterruptedException();
+
+                int read = is.read(buffer, filled, buffer.length - filled);
+                boolean eof = read < 0;
+                if (!eof)
+                    filled += read;
+
+                for (; scanned < filled; scanned++) {
+                    if (scanner.isRecordEnd(buffer[scanned])) {
+                        line += scanner.linesInRecord();
+                        scanner.newRecord();
+                        if (toSkip > 0) {
+                            toSkip--;
+                            chunkStart = scanned + 1;
+                            chunkLine = line;
+                        } else {
+                            lastBoundary = scanned + 1;
+                            boundaryLine = line;
+                        }
+                    }
+                }
+
+                if (eof) {
+                    if (filled > chunkStart && toSkip == 0)
+                        seq = submit(seq, Arrays.copyOfRange(buffer, chunkStart, filled), uri, chunkLine);
+                    return seq;
+                }
+
+                if (filled == buffer.length) {
+                    if (lastBoundary > chunkStart) {
+                        seq = submit(seq, Arrays.copyOfRange(buffer, chunkStart, lastBoundary), uri, chunkLine);
+                        chunkStart = lastBoundary;
+                        chunkLine = boundaryLine;
+                    }
+
+                    if (chunkStart > 0) {
+                        // move incomplete record to the beginning of the buffer
+                        System.arraycopy(buffer, chunkStart, buffer, 0, filled - chunkStart);
+                        filled -= chunkStart;
+                        scanned -= chunkStart;
+                        chunkStart = 0;
+                        lastBoundary = -1;
+                    } else {
+                        // single record is larger than the buffer
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    }
+                }
+            }
+        }
+
+        protected long submit(final long seq, final byte[] bytes, final URI uri, final int firstLine)
+                        throws InterruptedException {
+            permits.acquire();
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        results.add(parse(seq, bytes, uri, firstLine));
+                    } catch (Throwable t) {
+                        results.add(new Chunk(seq, null, null, null, t, false));
+                    }
+                }
+            });
+            return seq + 1;
+        }
+    }
+}
@@ -0,0 +1,562 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.api.records.reader.impl.csv;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.datavec.api.conf.Configuration;
+import org.datavec.api.split.InputSplit;
+import org.datavec.api.transform.ColumnType;
+import org.datavec.api.transform.metadata.CategoricalMetaData;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.*;
+import org.datavec.api.writable.batch.NDArrayRecordBatch;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * CSV record reader driven by a {@link Schema}.
+ *
+ * Fields are tokenized straight from the UTF-8 bytes of each line, and parsed according to the column type,
+ * without creating an intermediate String or {@link Text} per field:
+ * - {@link #next()} returns typed writables: DoubleWritable, FloatWritable, IntWritable, LongWritable,
+ *   BooleanWritable, and Text for String, Categorical and Time columns
+ * - {@link #next(int)} parses numeric and categorical columns directly into primitive buffers, and returns
+ *   {@link NDArrayRecordBatch} with one [numExamples, 1] array per column. Categorical columns are returned as
+ *   state index. This is what RecordReaderDataSetIterator uses, so no Writables are created for training data at all.
+ *   Buffers are float or double, depending on {@link Nd4j#dataType()}, so arrays are created without conversion.
+ *
+ * If schema contains columns that can't be represented as numbers (String, Time, NDArray, Bytes),
+ * {@link #next(int)} returns list of typed writables instead.
+ *
+ * PLEASE NOTE: lines containing quote character are parsed with {@link SerializableCSVParser}, i.e. same way
+ * as {@link CSVRecordReader} does.
+ */
+public class SchemaCSVRecordReader extends CSVRecordReader {
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+                    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final float[] FLOAT_POWERS_OF_TEN = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+
+    @Getter
+    protected final Schema schema;
+    protected final ColumnType[] types;
+    protected final Map<String, Integer>[] categoricalStates;
+    @Getter
+    protected final boolean numericBatches;
+
+    protected char delimiter;
+    protected char quote;
+    protected SerializableCSVParser parser;
+
+    // field boundaries for the current line, reused between lines
+    protected final int[] fieldStart;
+    protected final int[] fieldEnd;
+
+    public SchemaCSVRecordReader(@NonNull Schema schema) {
+        this(schema, 0, DEFAULT_DELIMITER, DEFAULT_QUOTE);
+    }
+
+    public SchemaCSVRecordReader(@NonNull Schema schema, int skipNumLines) {
+        this(schema, skipNumLines, DEFAULT_DELIMITER, DEFAULT_QUOTE);
+    }
+
+    public SchemaCSVRecordReader(@NonNull Schema schema, int skipNumLines, char delimiter) {
+        this(schema, skipNumLines, delimiter, DEFAULT_QUOTE);
+    }
+
+    /**
+     * @param schema       Schema of the CSV data, one column per field
+     * @param skipNumLines Number of lines to skip
+     * @param delimiter    Delimiter to use
+     * @param quote        Quote character
+     */
+    public SchemaCSVRecordReader(@NonNull Schema schema, int skipNumLines, char delimiter, char quote) {
+        super(skipNumLines, delimiter, quote);
+        this.schema = schema;
+        int numColumns = schema.numColumns();
+        this.types = new ColumnType[numColumns];
+        this.categoricalStates = new Map[numColumns];
+        this.fieldStart = new int[numColumns];
+        this.fieldEnd = new int[numColumns];
+
+        boolean numeric = true;
+        for (int i = 0; i < numColumns; i++) {
+            types[i] = schema.getType(i);
+            switch (types[i]) {
+                case Double:
+                case Float:
+                case Integer:
+                case Long:
+                    break;
+                case Categorical:
+                    List<String> states = ((CategoricalMetaData) schema.getMetaData(i)).getStateNames();
+                    categoricalStates[i] = new HashMap<>();
+                    for (int j = 0; j < states.size(); j++)
+                        categoricalStates[i].put(states.get(j), j);
+                    break;
+                default:
+                    numeric = false;
+            }
+        }
+        this.numericBatches = numeric;
+        setDelimiterAndQuote(delimiter, quote);
+    }
+
+    protected void setDelimiterAndQuote(char delimiter, char quote) {
+        if (delimiter > 127 || quote > 127)
+            throw new IllegalArgumentException("Only ASCII delimiter and quote characters are supported: delimiter='"
+                            + delimiter + "', quote='" + quote + "'");
+        this.delimiter = delimiter;
+        this.quote = quote;
+        this.parser = new SerializableCSVParser(delimiter, quote);
+    }
+
+    @Override
+    public void initialize(Configuration conf, InputSplit split) throws IOException, InterruptedException {
+        super.initialize(conf, split);
+        setDelimiterAndQuote(conf.getChar(DELIMITER, DEFAULT_DELIMITER), conf.getChar(QUOTE, DEFAULT_QUOTE));
+    }
+
+    @Override
+    public List<Writable> next() {
+        if (!skipLines())
+            throw new NoSuchElementException("No next element found!");
+
+        return parseLine(readTextLine());
+    }
+
+    @Override
+    public List<List<Writable>> next(int num) {
+        if (!numericBatches) {
+            List<List<Writable>> ret = new ArrayList<>(Math.min(num, 10000));
+            while (ret.size() < num && hasNext())
+                ret.add(next());
+            return ret;
+        }
+
+        List<INDArray> arrays = new ArrayList<>(types.length);
+        if (Nd4j.dataType() == DataBuffer.Type.DOUBLE) {
+            double[][] columns = new double[types.length][Math.min(num, 10000)];
+            int n = readColumns(num, columns);
+            if (n == 0)
+                throw new NoSuchElementException("No next element found!");
+
+            for (double[] c : columns)
+                arrays.add(Nd4j.create(c.length == n ? c : Arrays.copyOf(c, n), new long[] {n, 1}));
+        } else {
+            float[][] columns = new float[types.length][Math.min(num, 10000)];
+            int n = readColumns(num, columns);
+            if (n == 0)
+                throw new NoSuchElementException("No next element found!");
+
+            for (float[] c : columns)
+                arrays.add(Nd4j.create(c.length == n ? c : Arrays.copyOf(c, n), new long[] {n, 1}));
+        }
+
+        return new NDArrayRecordBatch(arrays);
+    }
+
+    /**
+     * Numeric batches are returned as columns by {@link #next(int)} already
+     */
+    @Override
+    public List<List<Writable>> nextColumnar(int num) {
+        return next(num);
+    }
+
+    /**
+     * This method parses up to num lines into column buffers. Buffers are grown if they're shorter than number of
+     * lines read.
+     *
+     * @param num     maximal number of lines to read
+     * @param columns one buffer per column, will be replaced by larger buffers if necessary
+     * @return number of lines read
+     */
+    public int readColumns(int num, double[][] columns) {
+        if (!numericBatches)
+            throw new IllegalStateException("Schema has non-numeric columns: " + schema);
+
+        int n = 0;
+        while (n < num && hasNext()) {
+            if (n == columns[0].length) {
+                int newLength = (int) Math.min((long) num, 2L * n);
+                for (int c = 0; c < columns.length; c++)
+                    columns[c] = Arrays.copyOf(columns[c], newLength);
+            }
+
+            Text line = readTextLine();
+            byte[] bytes = line.getBytes();
+            if (hasQuote(bytes, line.getLength())) {
+                String[] fields = parseQuoted(line.toString());
+                for (int c = 0; c < columns.length; c++)
+                    columns[c][n] = categoricalStates[c] != null ? stateIndex(c, fields[c]) : Double.parseDouble(fields[c]);
+            } else {
+                tokenize(bytes, line.getLength());
+                for (int c = 0; c < columns.length; c++) {
+                    if (categoricalStates[c] != null)
+                        columns[c][n] = stateIndex(c, decode(bytes, c));
+                    else
+                        columns[c][n] = parseDouble(bytes, fieldStart[c], fieldEnd[c]);
+                }
+            }
+            n++;
+        }
+
+        return n;
+    }
+
+    /**
+     * This method parses up to num lines into float column buffers, see {@link #readColumns(int, double[][])}
+     *
+     * @param num     maximal number of lines to read
+     * @param columns one buffer per column, will be replaced by larger buffers if necessary
+     * @return number of lines read
+     */
+    public int readColumns(int num, float[][] columns) {
+        if (!numericBatches)
+            throw new IllegalStateException("Schema has non-numeric columns: " + schema);
+
+        int n = 0;
+        while (n < num && hasNext()) {
+            if (n == columns[0].length) {
+                int newLength = (int) Math.min((long) num, 2L * n);
+                for (int c = 0; c < columns.length; c++)
+                    columns[c] = Arrays.copyOf(columns[c], newLength);
+            }
+
+            Text line = readTextLine();
+            byte[] bytes = line.getBytes();
+            if (hasQuote(bytes, line.getLength())) {
+                String[] fields = parseQuoted(line.toString());
+                for (int c = 0; c < columns.length; c++)
+                    columns[c][n] = categoricalStates[c] != null ? stateIndex(c, fields[c]) : Float.parseFloat(fields[c]);
+            } else {
+                tokenize(bytes, line.getLength());
+                for (int c = 0; c < columns.length; c++) {
+                    if (categoricalStates[c] != null)
+                        columns[c][n] = stateIndex(c, decode(bytes, c));
+                    else
+                        columns[c][n] = parseFloat(bytes, fieldStart[c], fieldEnd[c]);
+                }
+            }
+            n++;
+        }
+
+        return n;
+    }
+
+    @Override
+    protected List<Writable> parseLine(String line) {
+        return parseLine(new Text(line));
+    }
+
+    protected List<Writable> parseLine(Text line) {
+        byte[] bytes = line.getBytes();
+        List<Writable> ret = new ArrayList<>(types.length);
+        if (hasQuote(bytes, line.getLength())) {
+            String[] fields = parseQuoted(line.toString());
+            for (int c = 0; c < types.length; c++)
+                ret.add(toWritable(c, fields[c]));
+        } else {
+            tokenize(bytes, line.getLength());
+            for (int c = 0; c < types.length; c++) {
+                int from = fieldStart[c];
+                int to = fieldEnd[c];
+                switch (types[c]) {
+                    case Double:
+                        ret.add(new DoubleWritable(parseDouble(bytes, from, to)));
+                        break;
+                    case Float:
+                        ret.add(new FloatWritable(parseFloat(bytes, from, to)));
+                        break;
+                    case Integer:
+                        long l = parseLong(bytes, from, to);
+                        if (l < Integer.MIN_VALUE || l > Integer.MAX_VALUE)
+                            throw new NumberFormatException("Value out of int range: " + decode(bytes, c));
+                        ret.add(new IntWritable((int) l));
+                        break;
+                    case Long:
+                        ret.add(new LongWritable(parseLong(bytes, from, to)));
+                        break;
+                    default:
+                        ret.add(toWritable(c, decode(bytes, c)));
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    protected Writable toWritable(int column, String value) {
+        switch (types[column]) {
+            case Double:
+                return new DoubleWritable(Double.parseDouble(value));
+            case Float:
+                return new FloatWritable(Float.parseFloat(value));
+            case Integer:
+                return new IntWritable(Integer.parseInt(value.trim()));
+            case Long:
+                return new LongWritable(Long.parseLong(value.trim()));
+            case Boolean:
+                return new BooleanWritable(Boolean.parseBoolean(value.trim()));
+            default:
+                return new Text(value);
+        }
+    }
+
+    protected String[] parseQuoted(String line) {
+        String[] fields;
+        try {
+            fields = parser.parseLine(line);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        if (fields.length != types.length)
+            throw new IllegalStateException("Invalid line: expected " + types.length + " columns, got "
+                            + fields.length + ": \"" + line + "\"");
+        return fields;
+    }
+
+    protected boolean hasQuote(byte[] bytes, int length) {
+        for (int i = 0; i < length; i++)
+            if (bytes[i] == quote)
+                return true;
+        return false;
+    }
+
+    /**
+     * This method finds field boundaries for the given line
+     */
+    protected void tokenize(byte[] bytes, int length) {
+        int field = 0;
+        int start = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || bytes[i] == delimiter) {
+                if (field >= fieldStart.length)
+                    throw new IllegalStateException("Invalid line: expected " + fieldStart.length
+                                    + " columns, got more: \"" + new String(bytes, 0, length, StandardCharsets.UTF_8) + "\"");
+                fieldStart[field] = start;
+                fieldEnd[field] = i;
+                field++;
+                start = i + 1;
+            }
+        }
+
+        if (field != fieldStart.length)
+            throw new IllegalStateException("Invalid line: expected " + fieldStart.length + " columns, got " + field
+                            + ": \"" + new String(bytes, 0, length, StandardCharsets.UTF_8) + "\"");
+    }
+
+    protected String decode(byte[] bytes, int column) {
+        return new String(bytes, fieldStart[column], fieldEnd[column] - fieldStart[column], StandardCharsets.UTF_8);
+    }
+
+    protected int stateIndex(int column, String value) {
+        Integer idx = categoricalStates[column].get(value);
+        if (idx == null)
+            throw new IllegalStateException("Unknown state \"" + value + "\" for categorical column \""
+                            + schema.getName(column) + "\": valid states are "
+                            + categoricalStates[column].keySet());
+        return idx;
+    }
+
+    /**
+     * Parse double value from ASCII bytes. Plain decimal values with up to 15 significant digits are parsed
+     * directly, everything else (exponents out of range, NaN, Infinity etc) is delegated to {@link Double#parseDouble(String)}
+     */
+    public static double parseDouble(byte[] bytes, int from, int to) {
+        int i = from;
+        int end = to;
+        while (i < end && bytes[i] <= ' ')
+            i++;
+        while (end > i && bytes[end - 1] <= ' ')
+            end--;
+
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean seenDigit = false;
+        boolean seenDot = false;
+        for (; i < end; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '9') {
+                seenDigit = true;
+                if (mantissa == 0 && b == '0') {
+                    // leading zeros aren't significant
+                    if (seenDot)
+                        exponent--;
+                    continue;
+                }
+                if (++digits > 15)
+                    return slowParseDouble(bytes, from, to);
+                mantissa = mantissa * 10 + (b - '0');
+                if (seenDot)
+                    exponent--;
+            } else if (b == '.' && !seenDot) {
+                seenDot = true;
+            } else if ((b == 'e' || b == 'E') && seenDigit) {
+                int e = 0;
+                boolean negativeExp = false;
+                i++;
+                if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+                    negativeExp = bytes[i] == '-';
+                    i++;
+                }
+                if (i == end)
+                    return slowParseDouble(bytes, from, to);
+                for (; i < end; i++) {
+                    if (bytes[i] < '0' || bytes[i] > '9' || e > 10000)
+                        return slowParseDouble(bytes, from, to);
+                    e = e * 10 + (bytes[i] - '0');
+                }
+                exponent += negativeExp ? -e : e;
+                break;
+            } else {
+                return slowParseDouble(bytes, from, to);
+            }
+        }
+
+        if (!seenDigit)
+            return slowParseDouble(bytes, from, to);
+
+        double value;
+        if (mantissa == 0)
+            value = 0.0;
+        else if (exponent == 0)
+            value = mantissa;
+        else if (exponent > 0 && exponent <= 22)
+            value = mantissa * POWERS_OF_TEN[exponent];
+        else if (exponent < 0 && exponent >= -22)
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        else
+            return slowParseDouble(bytes, from, to);
+
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse float value from ASCII bytes, see {@link #parseDouble(byte[], int, int)}
+     */
+    public static float parseFloat(byte[] bytes, int from, int to) {
+        int i = from;
+        int end = to;
+        while (i < end && bytes[i] <= ' ')
+            i++;
+        while (end > i && bytes[end - 1] <= ' ')
+            end--;
+
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+
+        int mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean seenDigit = false;
+        boolean seenDot = false;
+        for (; i < end; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '9') {
+                seenDigit = true;
+                if (mantissa == 0 && b == '0') {
+                    if (seenDot)
+                        exponent--;
+                    continue;
+                }
+                // float mantissa is exact up to 2^24, so 7 digits are always safe
+                if (++digits > 7)
+                    return slowParseFloat(bytes, from, to);
+                mantissa = mantissa * 10 + (b - '0');
+                if (seenDot)
+                    exponent--;
+            } else if (b == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                return slowParseFloat(bytes, from, to);
+            }
+        }
+
+        if (!seenDigit)
+            return slowParseFloat(bytes, from, to);
+
+        float value;
+        if (mantissa == 0)
+            value = 0.0f;
+        else if (exponent == 0)
+            value = mantissa;
+        else if (exponent < 0 && exponent >= -10)
+            value = mantissa / FLOAT_POWERS_OF_TEN[-exponent];
+        else
+            return slowParseFloat(bytes, from, to);
+
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse long value from ASCII bytes
+     */
+    public static long parseLong(byte[] bytes, int from, int to) {
+        int i = from;
+        int end = to;
+        while (i < end && bytes[i] <= ' ')
+            i++;
+        while (end > i && bytes[end - 1] <= ' ')
+            end--;
+
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+
+        // 18 digits always fit into long
+        if (i == end || end - i > 18)
+            return Long.parseLong(new String(bytes, from, to - from, StandardCharsets.UTF_8).trim());
+
+        long value = 0;
+        for (; i < end; i++) {
+            byte b = bytes[i];
+            if (b < '0' || b > '9')
+                return Long.parseLong(new String(bytes, from, to - from, StandardCharsets.UTF_8).trim());
+            value = value * 10 + (b - '0');
+        }
+
+        return negative ? -value : value;
+    }
+
+    private static double slowParseDouble(byte[] bytes, int from, int to) {
+        return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.UTF_8));
+    }
+
+    private static float slowParseFloat(byte[] bytes, int from, int to) {
+        return Float.parseFloat(new String(bytes, from, to - from, StandardCharsets.UTF_8));
+    }
+}
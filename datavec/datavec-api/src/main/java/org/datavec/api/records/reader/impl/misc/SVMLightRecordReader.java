@@ -20,17 +20,21 @@ import lombok.extern.slf4j.Slf4j;
 import org.datavec.api.records.Record;
 import org.datavec.api.records.metadata.RecordMetaData;
 import org.datavec.api.records.metadata.RecordMetaDataLine;
+import org.datavec.api.records.reader.ColumnarRecordReader;
 import org.datavec.api.records.reader.impl.LineRecordReader;
 import org.datavec.api.writable.DoubleWritable;
 import org.datavec.api.split.InputSplit;
 import org.datavec.api.writable.IntWritable;
+import org.datavec.api.writable.SparseWritableList;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.SparseRecordBatch;
 import org.datavec.api.conf.Configuration;
 
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -56,6 +60,9 @@ import java.util.NoSuchElementException;
  *
  * Like scikit-learn, we support both zero-based and one-based indexing.
  *
+ * Records are never expanded to numFeatures Writables: single records are {@link SparseWritableList}s, and batches
+ * returned by {@link #nextColumnar(int)} are {@link SparseRecordBatch}es in CSR format.
+ *
  * Further details on the format can be found at<br>
  * - <a href="http://svmlight.joachims.org/">http://svmlight.joachims.org/</a><br>
  * - <a href="http://www.csie.ntu.edu.tw/~cjlin/libsvmtools/datasets/multilabel.html">http://www.csie.ntu.edu.tw/~cjlin/libsvmtools/datasets/multilabel.html</a><br>
@@ -66,7 +73,7 @@ import java.util.NoSuchElementException;
  * @author dave@skymind.io
  */
 @Slf4j
-public class SVMLightRecordReader extends LineRecordReader {
+public class SVMLightRecordReader extends LineRecordReader implements ColumnarRecordReader {
     /* Configuration options. */
     public static final String NAME_SPACE = SVMLightRecordReader.class.getName();
     public static final String NUM_FEATURES = NAME_SPACE + ".numfeatures";
@@ -170,120 +177,238 @@ public class SVMLightRecordReader extends LineRecordReader {
     }
 
     /**
-     * Return next record as list of Writables.
+     * Return next record as list of Writables. Features are returned as {@link SparseWritableList}, so only
+     * non-zero features are stored.
      *
      * @return
      */
     @Override
     public List<Writable> next() {
-        if(numFeatures < 0 && numLabels < 0){
-            throw new IllegalStateException("Cannot get record: setConf(Configuration) has not been called. A setConf " +
-                    "call is rquired to specify the number of features and/or labels in the source dataset");
-        }
-
+        checkConf();
 
         Writable w = getNextRecord();
         if (w == null)
             throw new NoSuchElementException("No next element found!");
-        String line = w.toString();
-        List<Writable> record = new ArrayList<>(Collections.nCopies(numFeatures, ZERO));
+        String[] tokens = tokenize(w.toString());
+        int[] indices = new int[tokens.length];
+        double[] values = new double[tokens.length];
+        int n = parseFeatures(tokens, indices, values, 0);
 
-        // Remove trailing comments
-        String commentRegex = ALLOWED_DELIMITERS + "*" + COMMENT_CHAR + ".*$";
-        String[] tokens = line.replaceFirst(commentRegex, "").split(ALLOWED_DELIMITERS);
+        // If labels should be appended
+        List<Writable> labels = appendLabel ? parseLabels(tokens) : Collections.<Writable>emptyList();
+
+        return new SparseWritableList(numFeatures, Arrays.copyOf(indices, n), Arrays.copyOf(values, n), labels);
+    }
 
-        // Iterate over feature tokens
+    @Override
+    public boolean batchesSupported() {
+        return true;
+    }
+
+    @Override
+    public List<List<Writable>> next(int num) {
+        List<List<Writable>> ret = new ArrayList<>(Math.min(num, 10000));
+        while (ret.size() < num && hasNext())
+            ret.add(next());
+        return ret;
+    }
+
+    /**
+     * Return next num records as {@link SparseRecordBatch}: features are parsed straight into CSR arrays, so
+     * memory use depends only on the number of non-zero features.
+     *
+     * @param num maximal number of records
+     * @return batch of records
+     */
+    @Override
+    public List<List<Writable>> nextColumnar(int num) {
+        checkConf();
+
+        int[] rowPointers = new int[Math.min(num, 10000) + 1];
+        int[] indices = new int[1024];
+        double[] values = new double[1024];
+        List<List<Writable>> labels = new ArrayList<>();
+        int n = 0;
+        while (n < num && hasNext()) {
+            String[] tokens = tokenize(getNextRecord().toString());
+            int nnz = rowPointers[n];
+            if (nnz + tokens.length > indices.length) {
+                int newLength = Math.max(indices.length * 2, nnz + tokens.length);
+                indices = Arrays.copyOf(indices, newLength);
+                values = Arrays.copyOf(values, newLength);
+            }
+            if (n + 2 > rowPointers.length)
+                rowPointers = Arrays.copyOf(rowPointers, rowPointers.length * 2);
+
+            rowPointers[n + 1] = parseFeatures(tokens, indices, values, nnz);
+            if (appendLabel)
+                labels.add(parseLabels(tokens));
+            n++;
+        }
+
+        if (n == 0)
+            return new ArrayList<>();
+
+        // all records have the same number of labels: it's enforced by parseLabels
+        int numLabelColumns = appendLabel ? labels.get(0).size() : 0;
+        Writable[][] labelColumns = new Writable[numLabelColumns][n];
+        for (int r = 0; r < n; r++)
+            for (int c = 0; c < numLabelColumns; c++)
+                labelColumns[c][r] = labels.get(r).get(c);
+
+        return new SparseRecordBatch(numFeatures, Arrays.copyOf(rowPointers, n + 1), indices, values, labelColumns);
+    }
+
+    /**
+     * Parse features of the record into the given arrays, starting at the given position. Features are sorted by
+     * index, and for repeated indices the last value is kept.
+     *
+     * @param tokens   tokens of the line, features start from the second token
+     * @param indices  array for zero-based feature indices, must have room for all tokens
+     * @param values   array for feature values, must have room for all tokens
+     * @param position first position to fill
+     * @return position after the last parsed feature
+     */
+    protected int parseFeatures(String[] tokens, int[] indices, double[] values, int position) {
+        int end = position;
+        boolean sorted = true;
         for (int i = 1; i < tokens.length; i++) {
-            String token = tokens[i];
             // Split into feature index and value
-            String[] featureTokens = token.split(FEATURE_DELIMITER);
-            if (featureTokens[0].startsWith(QID_PREFIX)) {
-                // Ignore QID entry for now
-            } else {
-                // Parse feature index -- enforce that it's a positive integer
-                int index = -1;
-                try {
-                    index = Integer.parseInt(featureTokens[0]);
-                    if (index < 0)
-                        throw new NumberFormatException("");
-                } catch (NumberFormatException e) {
-                    String msg = String.format("Feature index must be positive integer (found %s)", featureTokens[i].toString());
-                    throw new NumberFormatException(msg);
-                }
+            String[] featureTokens = tokens[i].split(FEATURE_DELIMITER);
+            if (featureTokens[0].startsWith(QID_PREFIX))
+                continue; // QID entries are ignored for now
+
+            indices[end] = parseFeatureIndex(featureTokens);
+            values[end] = Double.parseDouble(featureTokens[1]);
+            sorted &= end == position || indices[end] > indices[end - 1];
+            end++;
+        }
+        if (sorted)
+            return end;
+
+        // stable sort by index: position within the line is kept in the lower bits
+        long[] keys = new long[end - position];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = ((long) indices[position + i] << 32) | i;
+        Arrays.sort(keys);
+        double[] unsorted = Arrays.copyOfRange(values, position, end);
+
+        int out = position;
+        for (int i = 0; i < keys.length; i++) {
+            int index = (int) (keys[i] >>> 32);
+            if (i + 1 < keys.length && (int) (keys[i + 1] >>> 32) == index)
+                continue; // repeated index: the last one wins
+            indices[out] = index;
+            values[out] = unsorted[(int) keys[i]];
+            out++;
+        }
+        return out;
+    }
 
-                // If not using zero-based indexing, shift all indeces to left by one
-                if (!zeroBasedIndexing) {
-                    if (index == 0)
-                        throw new IndexOutOfBoundsException("Found feature with index " + index + " but not using zero-based indexing");
-                    index--;
-                }
+    protected void checkConf() {
+        if(numFeatures < 0 && numLabels < 0){
+            throw new IllegalStateException("Cannot get record: setConf(Configuration) has not been called. A setConf " +
+                    "call is rquired to specify the number of features and/or labels in the source dataset");
+        }
+    }
 
-                // Check whether feature index exceeds number of features
-                if (numFeatures >= 0 && index >= numFeatures)
-                    throw new IndexOutOfBoundsException("Found " + (index+1) + " features in record, expected " + numFeatures);
+    /**
+     * Remove trailing comments, and split line into label and feature tokens
+     */
+    protected String[] tokenize(String line) {
+        String commentRegex = ALLOWED_DELIMITERS + "*" + COMMENT_CHAR + ".*$";
+        return line.replaceFirst(commentRegex, "").split(ALLOWED_DELIMITERS);
+    }
 
-                // Add feature
-                record.set(index, new DoubleWritable(Double.parseDouble(featureTokens[1])));
-            }
+    /**
+     * Parse feature index, and check that it's valid
+     *
+     * @param featureTokens INDEX:VALUE token split into index and value
+     * @return zero-based feature index
+     */
+    protected int parseFeatureIndex(String[] featureTokens) {
+        // Parse feature index -- enforce that it's a positive integer
+        int index = -1;
+        try {
+            index = Integer.parseInt(featureTokens[0]);
+            if (index < 0)
+                throw new NumberFormatException("");
+        } catch (NumberFormatException e) {
+            String msg = String.format("Feature index must be positive integer (found %s)", featureTokens[0]);
+            throw new NumberFormatException(msg);
         }
 
-        // If labels should be appended
-        if (appendLabel) {
-            List<Writable> labels = new ArrayList<>();
-
-            // Treat labels as indeces for multilabel binary classification
-            if (multilabel) {
-                labels = new ArrayList<>(Collections.nCopies(numLabels, LABEL_ZERO));
-                if (!tokens[0].equals("")) {
-                    String[] labelTokens = tokens[0].split(LABEL_DELIMITER);
-                    for (int i = 0; i < labelTokens.length; i++) {
-                        // Parse label index -- enforce that it's a positive integer
-                        int index = -1;
-                        try {
-                            index = Integer.parseInt(labelTokens[i]);
-                            if (index < 0)
-                                throw new NumberFormatException("");
-                        } catch (NumberFormatException e) {
-                            String msg = String.format("Multilabel index must be positive integer (found %s)", labelTokens[i].toString());
-                            throw new NumberFormatException(msg);
-                        }
-
-                        // If not using zero-based indexing for labels, shift all indeces to left by one
-                        if (!zeroBasedLabelIndexing) {
-                            if (index == 0)
-                                throw new IndexOutOfBoundsException("Found label with index " + index + " but not using zero-based indexing");
-                            index--;
-                        }
-
-                        // Check whether label index exceeds number of labels
-                        if (numLabels >= 0 && index >= numLabels)
-                            throw new IndexOutOfBoundsException("Found " + (index + 1) + " labels in record, expected " + numLabels);
-
-                        // Add label
-                        labels.set(index, LABEL_ONE);
-                    }
-                }
-            } else {
+        // If not using zero-based indexing, shift all indeces to left by one
+        if (!zeroBasedIndexing) {
+            if (index == 0)
+                throw new IndexOutOfBoundsException("Found feature with index " + index + " but not using zero-based indexing");
+            index--;
+        }
+
+        // Check whether feature index exceeds number of features
+        if (numFeatures >= 0 && index >= numFeatures)
+            throw new IndexOutOfBoundsException("Found " + (index+1) + " features in record, expected " + numFeatures);
+
+        return index;
+    }
+
+    /**
+     * Parse labels of the record
+     *
+     * @param tokens tokens of the line, labels are the first token
+     */
+    protected List<Writable> parseLabels(String[] tokens) {
+        List<Writable> labels = new ArrayList<>();
+
+        // Treat labels as indeces for multilabel binary classification
+        if (multilabel) {
+            labels = new ArrayList<>(Collections.nCopies(numLabels, LABEL_ZERO));
+            if (!tokens[0].equals("")) {
                 String[] labelTokens = tokens[0].split(LABEL_DELIMITER);
-                int numLabelsFound = labelTokens[0].equals("") ? 0 : labelTokens.length;
-                if (numLabels < 0)
-                    numLabels = numLabelsFound;
-                if (numLabelsFound != numLabels)
-                    throw new IndexOutOfBoundsException("Found " + labelTokens.length + " labels in record, expected " + numLabels);
-                for (int i = 0; i < numLabelsFound; i++) {
-                    try { // Encode label as integer, if possible
-                        labels.add(new IntWritable(Integer.parseInt(labelTokens[i])));
+                for (int i = 0; i < labelTokens.length; i++) {
+                    // Parse label index -- enforce that it's a positive integer
+                    int index = -1;
+                    try {
+                        index = Integer.parseInt(labelTokens[i]);
+                        if (index < 0)
+                            throw new NumberFormatException("");
                     } catch (NumberFormatException e) {
-                        labels.add(new DoubleWritable(Double.parseDouble(labelTokens[i])));
+                        String msg = String.format("Multilabel index must be positive integer (found %s)", labelTokens[i].toString());
+                        throw new NumberFormatException(msg);
                     }
+
+                    // If not using zero-based indexing for labels, shift all indeces to left by one
+                    if (!zeroBasedLabelIndexing) {
+                        if (index == 0)
+                            throw new IndexOutOfBoundsException("Found label with index " + index + " but not using zero-based indexing");
+                        index--;
+                    }
+
+                    // Check whether label index exceeds number of labels
+                    if (numLabels >= 0 && index >= numLabels)
+                        throw new IndexOutOfBoundsException("Found " + (index + 1) + " labels in record, expected " + numLabels);
+
+                    // Add label
+                    labels.set(index, LABEL_ONE);
+                }
+            }
+        } else {
+            String[] labelTokens = tokens[0].split(LABEL_DELIMITER);
+            int numLabelsFound = labelTokens[0].equals("") ? 0 : labelTokens.length;
+            if (numLabels < 0)
+                numLabels = numLabelsFound;
+            if (numLabelsFound != numLabels)
+                throw new IndexOutOfBoundsException("Found " + labelTokens.length + " labels in record, expected " + numLabels);
+            for (int i = 0; i < numLabelsFound; i++) {
+                try { // Encode label as integer, if possible
+                    labels.add(new IntWritable(Integer.parseInt(labelTokens[i])));
+                } catch (NumberFormatException e) {
+                    labels.add(new DoubleWritable(Double.parseDouble(labelTokens[i])));
                 }
             }
-
-            // Append labels to record
-            record.addAll(labels);
         }
 
-        return record;
+        return labels;
     }
 
     /**
@@ -0,0 +1,520 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.api.transform;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.datavec.api.transform.condition.column.BaseColumnCondition;
+import org.datavec.api.transform.filter.ConditionFilter;
+import org.datavec.api.transform.filter.Filter;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.schema.SequenceSchema;
+import org.datavec.api.transform.transform.BaseColumnTransform;
+import org.datavec.api.transform.transform.column.*;
+import org.datavec.api.writable.Writable;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Fused execution plan for a {@link TransformProcess} that consists of transforms and filters only.
+ *
+ * The action list is analysed once against the schema, and executed over a single Writable[] "slot" array per
+ * example, instead of producing a new List&lt;Writable&gt; for every step:
+ * - single column transforms ({@link BaseColumnTransform}) replace one slot in place
+ * - renames, removals, reordering and duplication of columns only change the column-to-slot layout
+ * - column conditions ({@link BaseColumnCondition} in a {@link ConditionFilter}) are evaluated against one slot
+ * - any other transform or filter is executed as is, over a lightweight view of the current layout
+ *
+ * Single column transforms on columns that are removed later without being read are dropped from the plan,
+ * so i.e. string parsing for removed columns is never executed.
+ *
+ * PLEASE NOTE: dropped transforms aren't executed, so they can't fail on invalid values in removed columns.
+ */
+@Slf4j
+public class FusedTransformProcess implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Getter
+    private final TransformProcess transformProcess;
+    private final List<DataAction> actionList;
+    private final int numActions;
+    private final int numInputColumns;
+    private final int inputSlots;
+    private final List<Op> ops;
+    private final int[] outputLayout;
+    @Getter
+    private final int numEliminated;
+
+    protected FusedTransformProcess(@NonNull TransformProcess transformProcess) {
+        if (!canFuse(transformProcess))
+            throw new IllegalArgumentException("TransformProcess can't be fused: only transforms and filters over non-sequence data are supported");
+
+        this.transformProcess = transformProcess;
+        this.actionList = transformProcess.getActionList();
+        this.numActions = actionList.size();
+
+        Schema schema = transformProcess.getInitialSchema();
+        this.numInputColumns = schema.numColumns();
+
+        List<Op> plan = new ArrayList<>();
+        int[] layout = identity(numInputColumns);
+        int numSlots = numInputColumns;
+        RowTransformOp lastBarrier = null;
+        int firstSegmentSlots = -1;
+
+        for (DataAction d : actionList) {
+            if (d.getTransform() != null) {
+                Transform t = d.getTransform();
+                Schema outputSchema = t.transform(schema);
+
+                if (isColumnLocal(t, schema, outputSchema)) {
+                    plan.add(new MapOp((BaseColumnTransform) t, layout[((BaseColumnTransform) t).getColumnNumber()]));
+                } else if (isLayoutOnly(t)) {
+                    int[] sources = sourcesOf(t, schema, outputSchema);
+                    int[] newLayout = new int[sources.length];
+                    boolean[] used = new boolean[schema.numColumns()];
+                    for (int i = 0; i < sources.length; i++) {
+                        if (used[sources[i]]) {
+                            // duplicated column gets its own slot, since slots are modified in place
+                            newLayout[i] = numSlots++;
+                            plan.add(new CopyOp(layout[sources[i]], newLayout[i]));
+                        } else {
+                            newLayout[i] = layout[sources[i]];
+                            used[sources[i]] = true;
+                        }
+                    }
+                    layout = newLayout;
+                } else {
+                    // barrier: transform is applied to the whole row, and layout starts over
+                    if (lastBarrier == null)
+                        firstSegmentSlots = numSlots;
+                    else
+                        lastBarrier.outputSlots = numSlots;
+
+                    lastBarrier = new RowTransformOp(t, layout);
+                    plan.add(lastBarrier);
+                    layout = identity(outputSchema.numColumns());
+                    numSlots = layout.length;
+                }
+
+                schema = outputSchema;
+            } else {
+                Filter f = d.getFilter();
+                BaseColumnCondition condition = columnConditionOf(f);
+                if (condition != null)
+                    plan.add(new ConditionOp(condition, layout[condition.getColumnIdx()]));
+                else
+                    plan.add(new RowFilterOp(f, layout));
+            }
+        }
+
+        if (lastBarrier == null)
+            firstSegmentSlots = numSlots;
+        else
+            lastBarrier.outputSlots = numSlots;
+
+        this.inputSlots = firstSegmentSlots;
+        this.outputLayout = layout;
+
+        int total = plan.size();
+        this.ops = eliminateDeadOps(plan, layout);
+        this.numEliminated = total - ops.size();
+
+        if (log.isDebugEnabled())
+            log.debug("Fused TransformProcess: {} actions -> {} ops, {} eliminated", numActions, ops.size(), numEliminated);
+    }
+
+    /**
+     * This method builds fused plan for given TransformProcess
+     *
+     * @throws IllegalArgumentException if TransformProcess contains anything except transforms and filters
+     */
+    public static FusedTransformProcess compile(@NonNull TransformProcess transformProcess) {
+        return new FusedTransformProcess(transformProcess);
+    }
+
+    /**
+     * This method checks, if given TransformProcess can be fused: it should work on non-sequence data,
+     * and contain transforms and filters only
+     */
+    public static boolean canFuse(@NonNull TransformProcess transformProcess) {
+        if (transformProcess.getInitialSchema() instanceof SequenceSchema)
+            return false;
+
+        for (DataAction d : transformProcess.getActionList())
+            if (d.getTransform() == null && d.getFilter() == null)
+                return false;
+
+        return true;
+    }
+
+    /**
+     * @return true if this plan was built for the current action list of the TransformProcess
+     */
+    public boolean isCompiledFor(List<DataAction> actionList) {
+        return this.actionList == actionList && numActions == actionList.size();
+    }
+
+    /**
+     * @return true if input has number of columns expected by initial schema
+     */
+    public boolean canExecute(List<Writable> input) {
+        return input.size() == numInputColumns;
+    }
+
+    /**
+     * Execute the fused plan for a single example
+     *
+     * @param input example, should match initial schema of the TransformProcess
+     * @return transformed example, or null if example was filtered out
+     */
+    public List<Writable> execute(@NonNull List<Writable> input) {
+        if (input.size() != numInputColumns)
+            throw new IllegalStateException("Cannot execute fused TransformProcess: input writables list length ("
+                            + input.size() + ") does not match expected number of elements (schema: "
+                            + numInputColumns + ")");
+
+        Writable[] slots = new Writable[inputSlots];
+        int i = 0;
+        for (Writable w : input)
+            slots[i++] = w;
+
+        for (Op op : ops) {
+            slots = op.apply(slots);
+            if (slots == null)
+                return null;
+        }
+
+        List<Writable> out = new ArrayList<>(outputLayout.length);
+        for (int s : outputLayout)
+            out.add(slots[s]);
+
+        return out;
+    }
+
+    /**
+     * @return number of ops in fused plan
+     */
+    public int numOps() {
+        return ops.size();
+    }
+
+    /**
+     * @return number of ops in fused plan that are executed over the whole row
+     */
+    public int numRowOps() {
+        int cnt = 0;
+        for (Op op : ops)
+            if (op instanceof RowTransformOp || op instanceof RowFilterOp)
+                cnt++;
+        return cnt;
+    }
+
+    @Override
+    public String toString() {
+        return "FusedTransformProcess(ops=" + ops + ", outputLayout=" + Arrays.toString(outputLayout) + ")";
+    }
+
+    /**
+     * Backward liveness pass: ops that only write slots that are never read afterwards are removed.
+     */
+    protected static List<Op> eliminateDeadOps(List<Op> plan, int[] outputLayout) {
+        int maxSlot = 0;
+        for (Op op : plan)
+            maxSlot = Math.max(maxSlot, op.maxSlot());
+        for (int s : outputLayout)
+            maxSlot = Math.max(maxSlot, s);
+
+        boolean[] live = new boolean[maxSlot + 1];
+        for (int s : outputLayout)
+            live[s] = true;
+
+        LinkedList<Op> result = new LinkedList<>();
+        for (int i = plan.size() - 1; i >= 0; i--) {
+            Op op = plan.get(i);
+            if (op instanceof MapOp) {
+                MapOp m = (MapOp) op;
+                if (!live[m.slot])
+                    continue;
+            } else if (op instanceof CopyOp) {
+                CopyOp c = (CopyOp) op;
+                if (!live[c.target])
+                    continue;
+                live[c.target] = false;
+                live[c.source] = true;
+            } else if (op instanceof ConditionOp) {
+                live[((ConditionOp) op).slot] = true;
+            } else if (op instanceof RowTransformOp) {
+                // everything before barrier is only visible through its layout
+                Arrays.fill(live, false);
+                for (int s : ((RowTransformOp) op).layout)
+                    live[s] = true;
+            } else {
+                for (int s : ((RowFilterOp) op).layout)
+                    live[s] = true;
+            }
+
+            result.addFirst(op);
+        }
+
+        return new ArrayList<>(result);
+    }
+
+    protected static boolean isColumnLocal(Transform t, Schema inputSchema, Schema outputSchema) {
+        return t instanceof BaseColumnTransform && declaredBy(t.getClass(), BaseColumnTransform.class, "map", List.class)
+                        && ((BaseColumnTransform) t).getColumnNumber() >= 0
+                        && inputSchema.numColumns() == outputSchema.numColumns();
+    }
+
+    protected static boolean isLayoutOnly(Transform t) {
+        Class<?> c = t.getClass();
+        return c == RemoveColumnsTransform.class || c == RemoveAllColumnsExceptForTransform.class
+                        || c == ReorderColumnsTransform.class || c == RenameColumnsTransform.class
+                        || c == DuplicateColumnsTransform.class;
+    }
+
+    protected static BaseColumnCondition columnConditionOf(Filter f) {
+        if (f.getClass() != ConditionFilter.class)
+            return null;
+
+        Object condition = ((ConditionFilter) f).getCondition();
+        if (condition instanceof BaseColumnCondition
+                        && declaredBy(condition.getClass(), BaseColumnCondition.class, "condition", List.class)
+                        && ((BaseColumnCondition) condition).getColumnIdx() >= 0)
+            return (BaseColumnCondition) condition;
+
+        return null;
+    }
+
+    /**
+     * This method returns index of input column for each output column of given layout transform
+     */
+    protected static int[] sourcesOf(Transform t, Schema inputSchema, Schema outputSchema) {
+        if (t instanceof RenameColumnsTransform) {
+            return identity(inputSchema.numColumns());
+        } else if (t instanceof DuplicateColumnsTransform) {
+            Set<Integer> duplicates = ((DuplicateColumnsTransform) t).getColumnIndexesToDuplicateSet();
+            int[] ret = new int[outputSchema.numColumns()];
+            int cnt = 0;
+            for (int i = 0; i < inputSchema.numColumns(); i++) {
+                ret[cnt++] = i;
+                if (duplicates.contains(i))
+                    ret[cnt++] = i;
+            }
+            return ret;
+        } else {
+            // removals and reordering keep column names, so columns can be matched by name
+            int[] ret = new int[outputSchema.numColumns()];
+            for (int i = 0; i < ret.length; i++)
+                ret[i] = inputSchema.getIndexOfColumn(outputSchema.getName(i));
+            return ret;
+        }
+    }
+
+    private static int[] identity(int length) {
+        int[] ret = new int[length];
+        for (int i = 0; i < length; i++)
+            ret[i] = i;
+        return ret;
+    }
+
+    private static boolean declaredBy(Class<?> c, Class<?> base, String method, Class<?>... params) {
+        try {
+            return c.getMethod(method, params).getDeclaringClass() == base;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Single op of the fused plan
+     */
+    protected static abstract class Op implements Serializable {
+        /**
+         * @return slots after this op, or null if example was filtered out
+         */
+        protected abstract Writable[] apply(Writable[] slots);
+
+        protected abstract int maxSlot();
+    }
+
+    protected static class MapOp extends Op {
+        private final BaseColumnTransform transform;
+        private final int slot;
+
+        protected MapOp(BaseColumnTransform transform, int slot) {
+            this.transform = transform;
+            this.slot = slot;
+        }
+
+        @Override
+        protected Writable[] apply(Writable[] slots) {
+            slots[slot] = transform.map(slots[slot]);
+            return slots;
+        }
+
+        @Override
+        protected int maxSlot() {
+            return slot;
+        }
+
+        @Override
+        public String toString() {
+            return "Map(" + slot + ": " + transform + ")";
+        }
+    }
+
+    protected static class CopyOp extends Op {
+        private final int source;
+        private final int target;
+
+        protected CopyOp(int source, int target) {
+            this.source = source;
+            this.target = target;
+        }
+
+        @Override
+        protected Writable[] apply(Writable[] slots) {
+            slots[target] = slots[source];
+            return slots;
+        }
+
+        @Override
+        protected int maxSlot() {
+            return Math.max(source, target);
+        }
+
+        @Override
+        public String toString() {
+            return "Copy(" + source + " -> " + target + ")";
+        }
+    }
+
+    protected static class ConditionOp extends Op {
+        private final BaseColumnCondition condition;
+        private final int slot;
+
+        protected ConditionOp(BaseColumnCondition condition, int slot) {
+            this.condition = condition;
+            this.slot = slot;
+        }
+
+        @Override
+        protected Writable[] apply(Writable[] slots) {
+            // ConditionFilter removes examples that match the condition
+            return condition.columnCondition(slots[slot]) ? null : slots;
+        }
+
+        @Override
+        protected int maxSlot() {
+            return slot;
+        }
+
+        @Override
+        public String toString() {
+            return "Condition(" + slot + ": " + condition + ")";
+        }
+    }
+
+    protected static class RowTransformOp extends Op {
+        private final Transform transform;
+        private final int[] layout;
+        private int outputSlots;
+
+        protected RowTransformOp(Transform transform, int[] layout) {
+            this.transform = transform;
+            this.layout = layout;
+        }
+
+        @Override
+        protected Writable[] apply(Writable[] slots) {
+            List<Writable> out = transform.map(new LayoutView(slots, layout));
+            Writable[] result = new Writable[Math.max(outputSlots, out.size())];
+            int i = 0;
+            for (Writable w : out)
+                result[i++] = w;
+
+            return result;
+        }
+
+        @Override
+        protected int maxSlot() {
+            int max = outputSlots - 1;
+            for (int s : layout)
+                max = Math.max(max, s);
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "Row(" + transform + ")";
+        }
+    }
+
+    protected static class RowFilterOp extends Op {
+        private final Filter filter;
+        private final int[] layout;
+
+        protected RowFilterOp(Filter filter, int[] layout) {
+            this.filter = filter;
+            this.layout = layout;
+        }
+
+        @Override
+        protected Writable[] apply(Writable[] slots) {
+            return filter.removeExample(new LayoutView(slots, layout)) ? null : slots;
+        }
+
+        @Override
+        protected int maxSlot() {
+            int max = 0;
+            for (int s : layout)
+                max = Math.max(max, s);
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "RowFilter(" + filter + ")";
+        }
+    }
+
+    /**
+     * Read-only List view over slots, in column order of the given layout
+     */
+    protected static class LayoutView extends AbstractList<Writable> implements RandomAccess {
+        private final Writable[] slots;
+        private final int[] layout;
+
+        protected LayoutView(Writable[] slots, int[] layout) {
+            this.slots = slots;
+            this.layout = layout;
+        }
+
+        @Override
+        public Writable get(int index) {
+            return slots[layout[index]];
+        }
+
+        @Override
+        public int size() {
+            return layout.length;
+        }
+    }
+}
@@ -16,7 +16,11 @@
 
 package org.datavec.api.transform;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.datavec.api.records.reader.RecordReader;
 import org.datavec.api.transform.analysis.DataAnalysis;
@@ -83,11 +87,17 @@ import java.util.concurrent.TimeUnit;
  */
 @Data
 @Slf4j
+@ToString(exclude = "fused")
 public class TransformProcess implements Serializable {
 
     private final Schema initialSchema;
     private List<DataAction> actionList;
 
+    // fused execution plan, built lazily on first execute(List) call
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient volatile FusedTransformProcess fused;
+
     public TransformProcess(@JsonProperty("initialSchema") Schema initialSchema,
                             @JsonProperty("actionList") List<DataAction> actionList) {
         this.initialSchema = initialSchema;
@@ -212,10 +222,16 @@ public class TransformProcess implements Serializable {
      * <b>NOTE:</b> Some TransformProcess operations cannot be done on examples individually. Most notably, ConvertToSequence
      * and ConvertFromSequence operations require the full data set to be processed at once
      *
+     * Transforms and filters are executed as a single fused pass where possible, see {@link FusedTransformProcess}
+     *
      * @param input
      * @return
      */
     public List<Writable> execute(List<Writable> input) {
+        FusedTransformProcess plan = getFusedPlan();
+        if (plan != null && plan.canExecute(input))
+            return plan.execute(input);
+
         List<Writable> currValues = input;
 
         for (DataAction d : actionList) {
@@ -244,6 +260,22 @@ public class TransformProcess implements Serializable {
         return currValues;
     }
 
+    /**
+     * This method returns fused execution plan for this TransformProcess, or null if it can't be fused
+     */
+    protected FusedTransformProcess getFusedPlan() {
+        FusedTransformProcess plan = fused;
+        if (plan == null || !plan.isCompiledFor(actionList)) {
+            if (!FusedTransformProcess.canFuse(this))
+                return null;
+
+            plan = FusedTransformProcess.compile(this);
+            fused = plan;
+        }
+
+        return plan;
+    }
+
     /**
      *
      * @param input
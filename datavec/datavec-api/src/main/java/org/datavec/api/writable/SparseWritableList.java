@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.api.writable;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read-only record, where the first {@code numFeatures} values are sparse: only non-zero values are stored, as
+ * indices sorted in ascending order and matching values. Values after the features (usually labels) are stored as is.
+ *
+ * Missing features are returned as {@link #ZERO}, so this record is equal to the dense one with the same values,
+ * but its memory footprint doesn't depend on the number of features.
+ */
+public class SparseWritableList extends AbstractList<Writable> {
+    public static final Writable ZERO = new DoubleWritable(0);
+
+    @Getter
+    private final int numFeatures;
+    private final int[] indices;
+    private final double[] values;
+    private final int from;
+    private final int to;
+    private final List<Writable> tail;
+
+    /**
+     * @param numFeatures number of sparse features
+     * @param indices     sorted indices of non-zero features
+     * @param values      values of non-zero features
+     * @param tail        values following the features, may be empty
+     */
+    public SparseWritableList(int numFeatures, @NonNull int[] indices, @NonNull double[] values,
+                    @NonNull List<Writable> tail) {
+        this(numFeatures, indices, values, 0, indices.length, tail);
+    }
+
+    /**
+     * This constructor creates record over the range of the given arrays, without copying them
+     *
+     * @param from first element of the range
+     * @param to   last element of the range, exclusive
+     */
+    public SparseWritableList(int numFeatures, @NonNull int[] indices, @NonNull double[] values, int from, int to,
+                    @NonNull List<Writable> tail) {
+        if (from < 0 || to < from || to > indices.length || to > values.length)
+            throw new IllegalArgumentException("Invalid range [" + from + ", " + to + ") for arrays of length "
+                            + indices.length + " and " + values.length);
+        if (to > from && (indices[from] < 0 || indices[to - 1] >= numFeatures))
+            throw new IllegalArgumentException("Feature indices must be in range [0, " + numFeatures + ")");
+
+        this.numFeatures = numFeatures;
+        this.indices = indices;
+        this.values = values;
+        this.from = from;
+        this.to = to;
+        this.tail = Collections.unmodifiableList(tail);
+    }
+
+    @Override
+    public Writable get(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+
+        if (index >= numFeatures)
+            return tail.get(index - numFeatures);
+
+        int pos = Arrays.binarySearch(indices, from, to, index);
+        return pos < 0 ? ZERO : new DoubleWritable(values[pos]);
+    }
+
+    @Override
+    public int size() {
+        return numFeatures + tail.size();
+    }
+
+    /**
+     * @return number of stored (non-zero) features
+     */
+    public int numNonZero() {
+        return to - from;
+    }
+
+    /**
+     * @return index of the i-th stored feature
+     */
+    public int getIndex(int i) {
+        return indices[from + i];
+    }
+
+    /**
+     * @return value of the i-th stored feature
+     */
+    public double getValue(int i) {
+        return values[from + i];
+    }
+
+    /**
+     * @return values following the features
+     */
+    public List<Writable> getTail() {
+        return tail;
+    }
+}
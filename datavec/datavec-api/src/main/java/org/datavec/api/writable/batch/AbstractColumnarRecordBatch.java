@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.api.writable.batch;
+
+import com.google.common.base.Preconditions;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+/**
+ * Base class for {@code List<List<Writable>>} record batches that store values column by column.
+ *
+ * Such batches are converted to INDArrays with one bulk copy per column (see {@link #toArray(int, int)}),
+ * instead of going through each Writable of each record. RecordReaderDataSetIterator and
+ * RecordReaderMultiDataSetIterator use this for any record reader that returns a columnar batch from
+ * {@link org.datavec.api.records.reader.ColumnarRecordReader#nextColumnar(int)}, or from next(int).
+ */
+public abstract class AbstractColumnarRecordBatch extends AbstractWritableRecordBatch {
+
+    /**
+     * @return number of columns in each record
+     */
+    public abstract int numColumns();
+
+    /**
+     * This method copies values of the given column into target array, starting at the given offset
+     */
+    public abstract void copyColumn(int column, double[] target, int offset);
+
+    /**
+     * This method copies values of the given column into target array, starting at the given offset
+     */
+    public abstract void copyColumn(int column, float[] target, int offset);
+
+    @Override
+    public Object[] toArray() {
+        Object[] ret = new Object[size()];
+        for (int i = 0; i < ret.length; i++)
+            ret[i] = get(i);
+        return ret;
+    }
+
+    /**
+     * @return true if values of the given column are arrays, so they can't be copied as single values
+     */
+    public boolean isNDArrayColumn(int column) {
+        return false;
+    }
+
+    /**
+     * @return true if any column holds arrays instead of single values
+     */
+    public boolean hasNDArrayColumns() {
+        for (int i = 0; i < numColumns(); i++)
+            if (isNDArrayColumn(i))
+                return true;
+        return false;
+    }
+
+    /**
+     * This method returns the given range of columns as [numRecords, numColumns] array, in 'f' order
+     *
+     * @param fromColumn        first column
+     * @param toColumnInclusive last column, inclusive
+     */
+    public INDArray toArray(int fromColumn, int toColumnInclusive) {
+        Preconditions.checkArgument(fromColumn >= 0 && toColumnInclusive < numColumns() && fromColumn <= toColumnInclusive,
+                        "Invalid column range: [" + fromColumn + ", " + toColumnInclusive + "], number of columns: "
+                                        + numColumns());
+
+        int rows = size();
+        int cols = toColumnInclusive - fromColumn + 1;
+        if ((long) rows * cols >= Integer.MAX_VALUE)
+            throw new IllegalStateException("Batch is too large: " + rows + " x " + cols);
+
+        // 'f' order: each column is contiguous, so it's filled with a single copy
+        long[] shape = new long[] {rows, cols};
+        if (Nd4j.dataType() == DataBuffer.Type.DOUBLE) {
+            double[] data = new double[rows * cols];
+            for (int c = 0; c < cols; c++)
+                copyColumn(fromColumn + c, data, c * rows);
+            return Nd4j.create(data, shape, 'f');
+        } else {
+            float[] data = new float[rows * cols];
+            for (int c = 0; c < cols; c++)
+                copyColumn(fromColumn + c, data, c * rows);
+            return Nd4j.create(data, shape, 'f');
+        }
+    }
+
+    /**
+     * This method returns class indices stored in the given column as one-hot [numRecords, numClasses] array
+     */
+    public INDArray toOneHot(int column, int numClasses) {
+        int rows = size();
+        double[] indices = new double[rows];
+        copyColumn(column, indices, 0);
+
+        float[] data = new float[rows * numClasses];
+        for (int i = 0; i < rows; i++) {
+            double value = indices[i];
+            // NaN fails the first check too
+            if (value != Math.rint(value) || value < 0 || value >= numClasses)
+                throw new IllegalStateException("Cannot convert column " + column + " to one-hot: value " + value
+                                + " of record " + i + " is not an integer class index in range [0, " + numClasses
+                                + "). (Note that classes are zero-indexed, thus only values 0 to nClasses-1 are valid)");
+            data[i * numClasses + (int) value] = 1.0f;
+        }
+        return Nd4j.create(data, new long[] {rows, numClasses}, 'c');
+    }
+}
@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.api.writable.batch;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.datavec.api.writable.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@code List<List<Writable>>} record batch, backed by one array per column.
+ * Supported column arrays:
+ * - double[], float[], long[], int[]: returned as DoubleWritable, FloatWritable, LongWritable and IntWritable
+ * - String[]: returned as Text, parsed only when the column is converted to numbers
+ * - Writable[]: returned as is
+ *
+ * Records are created only on calls to methods like .get(int), so record readers can fill columns straight from
+ * the parsed data, and the iterators convert whole columns at once.
+ */
+public class ColumnarRecordBatch extends AbstractColumnarRecordBatch {
+    private final int size;
+    @Getter
+    private final Object[] columns;
+
+    /**
+     * @param size    number of records
+     * @param columns one array per column, each of the given size
+     */
+    public ColumnarRecordBatch(int size, @NonNull Object[] columns) {
+        for (int i = 0; i < columns.length; i++) {
+            Object c = columns[i];
+            int length;
+            if (c instanceof double[])
+                length = ((double[]) c).length;
+            else if (c instanceof float[])
+                length = ((float[]) c).length;
+            else if (c instanceof long[])
+                length = ((long[]) c).length;
+            else if (c instanceof int[])
+                length = ((int[]) c).length;
+            else if (c instanceof String[])
+                length = ((String[]) c).length;
+            else if (c instanceof Writable[])
+                length = ((Writable[]) c).length;
+            else
+                throw new IllegalArgumentException("Unsupported array for column " + i + ": "
+                                + (c == null ? null : c.getClass().getSimpleName()));
+
+            // arrays may be longer than the number of records, so readers can reuse them
+            if (length < size)
+                throw new IllegalArgumentException("Column " + i + " has " + length + " values, expected " + size);
+        }
+
+        this.size = size;
+        this.columns = columns;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int numColumns() {
+        return columns.length;
+    }
+
+    @Override
+    public List<Writable> get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+
+        List<Writable> ret = new ArrayList<>(columns.length);
+        for (Object c : columns) {
+            if (c instanceof double[])
+                ret.add(new DoubleWritable(((double[]) c)[index]));
+            else if (c instanceof float[])
+                ret.add(new FloatWritable(((float[]) c)[index]));
+            else if (c instanceof long[])
+                ret.add(new LongWritable(((long[]) c)[index]));
+            else if (c instanceof int[])
+                ret.add(new IntWritable(((int[]) c)[index]));
+            else if (c instanceof String[])
+                ret.add(new Text(((String[]) c)[index]));
+            else
+                ret.add(((Writable[]) c)[index]);
+        }
+        return ret;
+    }
+
+    @Override
+    public boolean isNDArrayColumn(int column) {
+        Object c = columns[column];
+        if (!(c instanceof Writable[]))
+            return false;
+
+        Writable[] w = (Writable[]) c;
+        for (int i = 0; i < size; i++)
+            if (w[i] instanceof NDArrayWritable)
+                return true;
+        return false;
+    }
+
+    @Override
+    public void copyColumn(int column, double[] target, int offset) {
+        Object c = columns[column];
+        if (c instanceof double[]) {
+            System.arraycopy(c, 0, target, offset, size);
+        } else if (c instanceof float[]) {
+            float[] f = (float[]) c;
+            for (int i = 0; i < size; i++)
+                target[offset + i] = f[i];
+        } else if (c instanceof long[]) {
+            long[] l = (long[]) c;
+            for (int i = 0; i < size; i++)
+                target[offset + i] = l[i];
+        } else if (c instanceof int[]) {
+            int[] v = (int[]) c;
+            for (int i = 0; i < size; i++)
+                target[offset + i] = v[i];
+        } else if (c instanceof String[]) {
+            String[] s = (String[]) c;
+            for (int i = 0; i < size; i++)
+                target[offset + i] = Double.parseDouble(s[i]);
+        } else {
+            Writable[] w = (Writable[]) c;
+            for (int i = 0; i < size; i++)
+                target[offset + i] = w[i].toDouble();
+        }
+    }
+
+    @Override
+    public void copyColumn(int column, float[] target, int offset) {
+        Object c = columns[column];
+        if (c instanceof float[]) {
+            System.arraycopy(c, 0, target, offset, size);
+        } else if (c instanceof double[]) {
+            double[] d = (double[]) c;
+            for (int i = 0; i < size; i++)
+                target[offset + i] = (float) d[i];
+        } else if (c instanceof long[]) {
+            long[] l = (long[]) c;
+            for (int i = 0; i < size; i++)
+                target[offset + i] = l[i];
+        } else if (c instanceof int[]) {
+            int[] v = (int[]) c;
+            for (int i = 0; i < size; i++)
+                target[offset + i] = v[i];
+        } else if (c instanceof String[]) {
+            String[] s = (String[]) c;
+            for (int i = 0; i < size; i++)
+                target[offset + i] = (float) Double.parseDouble(s[i]);
+        } else {
+            Writable[] w = (Writable[]) c;
+            for (int i = 0; i < size; i++)
+                target[offset + i] = (float) w[i].toDouble();
+        }
+    }
+}
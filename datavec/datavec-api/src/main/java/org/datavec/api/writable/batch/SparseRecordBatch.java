@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.api.writable.batch;
+
+import com.google.common.base.Preconditions;
+import lombok.Getter;
+import lombok.NonNull;
+import org.datavec.api.writable.NDArrayWritable;
+import org.datavec.api.writable.SparseWritableList;
+import org.datavec.api.writable.Writable;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.Arrays;
+
+/**
+ * A {@code List<List<Writable>>} record batch, where the first {@code numFeatures} columns are sparse and stored in
+ * CSR format: non-zero values of all records, their column indices (sorted within each record), and row pointers.
+ * Remaining columns (usually labels) are stored as one Writable[] per column.
+ *
+ * Features can be converted either to sparse CSR INDArray via {@link #toCSR()}, or to dense INDArray on demand via
+ * {@link #toArray(int, int)}. Records returned by {@link #get(int)} are {@link SparseWritableList} views.
+ */
+public class SparseRecordBatch extends AbstractColumnarRecordBatch {
+    @Getter
+    private final int numFeatures;
+    @Getter
+    private final int[] rowPointers;
+    @Getter
+    private final int[] indices;
+    @Getter
+    private final double[] values;
+    @Getter
+    private final Writable[][] tailColumns;
+
+    /**
+     * @param numFeatures number of sparse feature columns
+     * @param rowPointers numRecords + 1 elements: features of record i are stored at [rowPointers[i], rowPointers[i+1])
+     * @param indices     feature indices, sorted within each record
+     * @param values      feature values
+     * @param tailColumns columns following the features, each of numRecords elements. May be empty
+     */
+    public SparseRecordBatch(int numFeatures, @NonNull int[] rowPointers, @NonNull int[] indices,
+                    @NonNull double[] values, @NonNull Writable[][] tailColumns) {
+        Preconditions.checkArgument(rowPointers.length >= 1 && rowPointers[0] == 0,
+                        "Row pointers must start with 0");
+        int size = rowPointers.length - 1;
+        Preconditions.checkArgument(indices.length >= rowPointers[size] && values.length >= rowPointers[size],
+                        "Indices and values must have at least " + rowPointers[size] + " elements");
+        for (Writable[] c : tailColumns)
+            Preconditions.checkArgument(c.length >= size, "Tail columns must have " + size + " elements");
+
+        this.numFeatures = numFeatures;
+        this.rowPointers = rowPointers;
+        this.indices = indices;
+        this.values = values;
+        this.tailColumns = tailColumns;
+    }
+
+    @Override
+    public int size() {
+        return rowPointers.length - 1;
+    }
+
+    @Override
+    public SparseWritableList get(int index) {
+        Writable[] tail = new Writable[tailColumns.length];
+        for (int c = 0; c < tail.length; c++)
+            tail[c] = tailColumns[c][index];
+        return new SparseWritableList(numFeatures, indices, values, rowPointers[index], rowPointers[index + 1],
+                        Arrays.asList(tail));
+    }
+
+    /**
+     * @return number of stored (non-zero) features in this batch
+     */
+    public int numNonZero() {
+        return rowPointers[size()];
+    }
+
+    @Override
+    public int numColumns() {
+        return numFeatures + tailColumns.length;
+    }
+
+    @Override
+    public boolean isNDArrayColumn(int column) {
+        if (column < numFeatures)
+            return false;
+        Writable[] c = tailColumns[column - numFeatures];
+        for (int i = 0; i < size(); i++)
+            if (c[i] instanceof NDArrayWritable)
+                return true;
+        return false;
+    }
+
+    @Override
+    public void copyColumn(int column, double[] target, int offset) {
+        int size = size();
+        if (column >= numFeatures) {
+            Writable[] c = tailColumns[column - numFeatures];
+            for (int i = 0; i < size; i++)
+                target[offset + i] = c[i].toDouble();
+            return;
+        }
+
+        for (int i = 0; i < size; i++) {
+            int pos = Arrays.binarySearch(indices, rowPointers[i], rowPointers[i + 1], column);
+            target[offset + i] = pos < 0 ? 0.0 : values[pos];
+        }
+    }
+
+    @Override
+    public void copyColumn(int column, float[] target, int offset) {
+        int size = size();
+        if (column >= numFeatures) {
+            Writable[] c = tailColumns[column - numFeatures];
+            for (int i = 0; i < size; i++)
+                target[offset + i] = c[i].toFloat();
+            return;
+        }
+
+        for (int i = 0; i < size; i++) {
+            int pos = Arrays.binarySearch(indices, rowPointers[i], rowPointers[i + 1], column);
+            target[offset + i] = pos < 0 ? 0.0f : (float) values[pos];
+        }
+    }
+
+    /**
+     * This method returns the given range of columns as dense [numRecords, numColumns] array, in 'f' order.
+     * Non-zero features are scattered into the array directly, so the cost depends on the number of non-zero values
+     * rather than on the number of features.
+     */
+    @Override
+    public INDArray toArray(int fromColumn, int toColumnInclusive) {
+        Preconditions.checkArgument(fromColumn >= 0 && toColumnInclusive < numColumns() && fromColumn <= toColumnInclusive,
+                        "Invalid column range: [" + fromColumn + ", " + toColumnInclusive + "], number of columns: "
+                                        + numColumns());
+
+        int rows = size();
+        int cols = toColumnInclusive - fromColumn + 1;
+        if ((long) rows * cols >= Integer.MAX_VALUE)
+            throw new IllegalStateException("Batch is too large: " + rows + " x " + cols);
+
+        int lastFeature = Math.min(toColumnInclusive, numFeatures - 1);
+        int firstTail = Math.max(fromColumn, numFeatures);
+        long[] shape = new long[] {rows, cols};
+        if (Nd4j.dataType() == DataBuffer.Type.DOUBLE) {
+            double[] data = new double[rows * cols];
+            for (int r = 0; r < rows; r++)
+                for (int k = rowPointers[r]; k < rowPointers[r + 1]; k++)
+                    if (indices[k] >= fromColumn && indices[k] <= lastFeature)
+                        data[(indices[k] - fromColumn) * rows + r] = values[k];
+            for (int c = firstTail; c <= toColumnInclusive; c++)
+                copyColumn(c, data, (c - fromColumn) * rows);
+            return Nd4j.create(data, shape, 'f');
+        } else {
+            float[] data = new float[rows * cols];
+            for (int r = 0; r < rows; r++)
+                for (int k = rowPointers[r]; k < rowPointers[r + 1]; k++)
+                    if (indices[k] >= fromColumn && indices[k] <= lastFeature)
+                        data[(indices[k] - fromColumn) * rows + r] = (float) values[k];
+            for (int c = firstTail; c <= toColumnInclusive; c++)
+                copyColumn(c, data, (c - fromColumn) * rows);
+            return Nd4j.create(data, shape, 'f');
+        }
+    }
+
+    /**
+     * This method returns features as sparse [numRecords, numFeatures] matrix in CSR format
+     */
+    public INDArray toCSR() {
+        int size = size();
+        int nnz = numNonZero();
+        int[] columns = Arrays.copyOf(indices, nnz);
+        int[] pointerB = Arrays.copyOfRange(rowPointers, 0, size);
+        int[] pointerE = Arrays.copyOfRange(rowPointers, 1, size + 1);
+        long[] shape = new long[] {size, numFeatures};
+
+        if (Nd4j.dataType() == DataBuffer.Type.DOUBLE)
+            return Nd4j.createSparseCSR(Arrays.copyOf(values, nnz), columns, pointerB, pointerE, shape);
+
+        float[] data = new float[nnz];
+        for (int i = 0; i < nnz; i++)
+            data[i] = (float) values[i];
+        return Nd4j.createSparseCSR(data, columns, pointerB, pointerE, shape);
+    }
+}
@@ -30,6 +30,7 @@ import org.datavec.api.split.partition.NumberOfRecordsPartitioner;
 import org.datavec.api.writable.IntWritable;
 import org.datavec.api.writable.Text;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
 import org.junit.Test;
 import org.nd4j.linalg.io.ClassPathResource;
 
@@ -69,6 +70,44 @@ public class CSVRecordReaderTest {
         }
     }
 
+    @Test
+    public void testNextBatch() throws Exception {
+        CSVRecordReader rr = new CSVRecordReader(0, ',');
+        rr.initialize(new FileSplit(new ClassPathResource("datavec-api/iris.dat").getFile()));
+        List<List<Writable>> expected = new ArrayList<>();
+        while (rr.hasNext())
+            expected.add(rr.next());
+
+        rr.reset();
+        List<List<Writable>> actual = new ArrayList<>();
+        while (rr.hasNext()) {
+            List<List<Writable>> batch = rr.nextColumnar(40);
+            assertTrue(batch instanceof ColumnarRecordBatch);
+            assertEquals(5, ((ColumnarRecordBatch) batch).numColumns());
+            actual.addAll(batch);
+        }
+        assertEquals(150, actual.size());
+        assertEquals(expected, actual);
+
+        //next(int) returns regular mutable list
+        rr.reset();
+        List<List<Writable>> list = rr.next(40);
+        assertEquals(expected.subList(0, 40), list);
+        list.remove(0);
+        list.get(0).set(0, new Text("0.0"));
+        assertEquals(39, list.size());
+
+        //Different number of values per line: returned as list of records
+        File f = Files.createTempFile("ragged", ".csv").toFile();
+        f.deleteOnExit();
+        FileUtils.writeStringToFile(f, "1,2,3\n4,5");
+        CSVRecordReader ragged = new CSVRecordReader();
+        ragged.initialize(new FileSplit(f));
+        List<List<Writable>> batch = ragged.nextColumnar(10);
+        assertFalse(batch instanceof ColumnarRecordBatch);
+        assertEquals(Arrays.asList((Writable) new Text("4"), new Text("5")), batch.get(1));
+    }
+
     @Test
     public void testReset() throws Exception {
         CSVRecordReader rr = new CSVRecordReader(0, ',');
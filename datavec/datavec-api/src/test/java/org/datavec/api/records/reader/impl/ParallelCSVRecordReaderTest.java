@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.api.records.reader.impl;
+
+import org.apache.commons.io.FileUtils;
+import org.datavec.api.conf.Configuration;
+import org.datavec.api.records.Record;
+import org.datavec.api.records.metadata.RecordMetaData;
+import org.datavec.api.records.reader.impl.csv.CSVRecordReader;
+import org.datavec.api.records.reader.impl.csv.ParallelCSVRecordReader;
+import org.datavec.api.split.CollectionInputSplit;
+import org.datavec.api.split.FileSplit;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.DoubleWritable;
+import org.datavec.api.writable.IntWritable;
+import org.datavec.api.writable.Text;
+import org.datavec.api.writable.Writable;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ParallelCSVRecordReaderTest {
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    private File writeFile(int numRecords, int offset, List<List<Writable>> expected) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        sb.append("header line 1\n");
+        sb.append("\"header\nline 2\",x,y\n");
+        for (int i = offset; i < offset + numRecords; i++) {
+            String text;
+            if (i % 97 == 0) {
+                // quoted value with delimiter and newline
+                text = "multi,line\nvalue " + i;
+                sb.append(i).append(",\"").append(text).append("\",").append(i * 0.5).append("\r\n");
+            } else {
+                text = "value " + i;
+                sb.append(i).append(",").append(text).append(",").append(i * 0.5).append("\n");
+            }
+            expected.add(Arrays.<Writable>asList(new Text(String.valueOf(i)), new Text(text), new Text(String.valueOf(i * 0.5))));
+        }
+
+        File f = testDir.newFile();
+        FileUtils.writeStringToFile(f, sb.toString(), StandardCharsets.UTF_8);
+        return f;
+    }
+
+    @Test
+    public void testOrdered() throws Exception {
+        List<List<Writable>> expected = new ArrayList<>();
+        File f = writeFile(10000, 0, expected);
+
+        ParallelCSVRecordReader rr = new ParallelCSVRecordReader(null, 2, ',', '"', 4, true, 1024);
+        rr.initialize(new FileSplit(f));
+
+        for (int epoch = 0; epoch < 2; epoch++) {
+            List<List<Writable>> actual = new ArrayList<>();
+            while (rr.hasNext())
+                actual.add(rr.next());
+
+            assertEquals(expected, actual);
+            rr.reset();
+        }
+        rr.close();
+    }
+
+    @Test
+    public void testUnorderedMultipleFiles() throws Exception {
+        List<List<Writable>> expected = new ArrayList<>();
+        File f1 = writeFile(5000, 0, expected);
+        File f2 = writeFile(5000, 5000, expected);
+
+        ParallelCSVRecordReader rr = new ParallelCSVRecordReader(null, 2, ',', '"', 3, false, 512);
+        rr.initialize(new CollectionInputSplit(Arrays.asList(f1.toURI(), f2.toURI())));
+
+        assertTrue(rr.batchesSupported());
+        Set<List<Writable>> actual = new HashSet<>();
+        int count = 0;
+        while (rr.hasNext()) {
+            List<List<Writable>> batch = rr.next(32);
+            assertTrue(batch.size() > 0 && batch.size() <= 32);
+            actual.addAll(batch);
+            count += batch.size();
+        }
+
+        assertEquals(expected.size(), count);
+        assertEquals(new HashSet<>(expected), actual);
+    }
+
+    @Test
+    public void testSameAsCSVRecordReader() throws Exception {
+        StringBuilder sb = new StringBuilder("a,b,c\n");
+        for (int i = 0; i < 1000; i++)
+            sb.append(i).append(",").append(i % 3 == 0 ? "" : "text").append(",").append(1.0 / (i + 1)).append("\n");
+        File f = testDir.newFile();
+        FileUtils.writeStringToFile(f, sb.toString(), StandardCharsets.UTF_8);
+
+        CSVRecordReader csv = new CSVRecordReader(1);
+        csv.initialize(new FileSplit(f));
+        ParallelCSVRecordReader rr = new ParallelCSVRecordReader(null, 1, ',', '"', 2, true, 100);
+        rr.initialize(new FileSplit(f));
+
+        List<RecordMetaData> meta = new ArrayList<>();
+        List<List<Writable>> records = new ArrayList<>();
+        while (csv.hasNext()) {
+            assertTrue(rr.hasNext());
+            Record r = rr.nextRecord();
+            assertEquals(csv.next(), r.getRecord());
+            meta.add(r.getMetaData());
+            records.add(r.getRecord());
+        }
+        assertFalse(rr.hasNext());
+
+        List<Record> loaded = rr.loadFromMetaData(meta);
+        for (int i = 0; i < records.size(); i++)
+            assertEquals(records.get(i), loaded.get(i).getRecord());
+    }
+
+    @Test
+    public void testLargeRecordsAndSchema() throws Exception {
+        Schema schema = new Schema.Builder().addColumnInteger("id").addColumnString("text").addColumnDouble("d").build();
+
+        StringBuilder sb = new StringBuilder();
+        char[] c = new char[5000];
+        Arrays.fill(c, 'x');
+        String longText = new String(c);
+        for (int i = 0; i < 100; i++)
+            sb.append(i).append(",").append(longText).append(",").append(i).append(".25\n");
+        File f = testDir.newFile();
+        FileUtils.writeStringToFile(f, sb.toString(), StandardCharsets.UTF_8);
+
+        ParallelCSVRecordReader rr = new ParallelCSVRecordReader(schema, 0, ',', '"', 2, true, 1000);
+        rr.initialize(new FileSplit(f));
+        int i = 0;
+        while (rr.hasNext()) {
+            assertEquals(Arrays.<Writable>asList(new IntWritable(i), new Text(longText), new DoubleWritable(i + 0.25)), rr.next());
+            i++;
+        }
+        assertEquals(100, i);
+    }
+
+    @Test
+    public void testConfiguration() throws Exception {
+        List<List<Writable>> expected = new ArrayList<>();
+        File f = writeFile(1000, 0, expected);
+
+        Configuration conf = new Configuration();
+        conf.setInt(CSVRecordReader.SKIP_NUM_LINES, 2);
+        ParallelCSVRecordReader rr = new ParallelCSVRecordReader();
+        rr.initialize(conf, new FileSplit(f));
+        assertEquals(2, rr.getSkipNumLines());
+
+        List<List<Writable>> actual = new ArrayList<>();
+        while (rr.hasNext())
+            actual.add(rr.next());
+        assertEquals(expected, actual);
+        rr.close();
+    }
+
+    @Test
+    public void testCloseStopsThreads() throws Exception {
+        List<List<Writable>> expected = new ArrayList<>();
+        File f = writeFile(10000, 0, expected);
+
+        int before = countThreads();
+        ParallelCSVRecordReader rr = new ParallelCSVRecordReader(null, 2, ',', '"', 4, true, 1024);
+        rr.initialize(new FileSplit(f));
+        // reading is stopped in the middle of the file
+        for (int i = 0; i < 100; i++)
+            assertEquals(expected.get(i), rr.next());
+        assertTrue(countThreads() > before);
+
+        rr.close();
+        assertEquals(before, countThreads());
+    }
+
+    private static int countThreads() {
+        int count = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet())
+            if (t.isAlive() && t.getName().startsWith("ParallelCSVRecordReader-"))
+                count++;
+        return count;
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMissingFile() throws Exception {
+        ParallelCSVRecordReader rr = new ParallelCSVRecordReader();
+        rr.initialize(new CollectionInputSplit(Collections.singletonList(new URI("file:///does/not/exist.csv"))));
+        rr.hasNext();
+    }
+}
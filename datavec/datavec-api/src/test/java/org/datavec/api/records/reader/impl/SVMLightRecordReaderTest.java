@@ -23,14 +23,21 @@ import org.datavec.api.split.FileSplit;
 import org.datavec.api.writable.DoubleWritable;
 import org.datavec.api.writable.IntWritable;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.SparseWritableList;
+import org.datavec.api.writable.batch.SparseRecordBatch;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.nd4j.linalg.io.ClassPathResource;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
 
 import static org.datavec.api.records.reader.impl.misc.SVMLightRecordReader.*;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 /**
  * Unit tests for VMLightRecordReader. Replaces reader tests in
@@ -44,6 +51,9 @@ import static org.junit.Assert.assertEquals;
  */
 public class SVMLightRecordReaderTest {
 
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
     @Test
     public void testBasicRecord() throws IOException, InterruptedException {
         Map<Integer, List<Writable>> correct = new HashMap<>();
@@ -83,6 +93,29 @@ public class SVMLightRecordReaderTest {
         assertEquals(i, correct.size());
     }
 
+    @Test
+    public void testNextBatch() throws IOException, InterruptedException {
+        Configuration config = new Configuration();
+        config.setBoolean(SVMLightRecordReader.ZERO_BASED_INDEXING, false);
+        config.setInt(SVMLightRecordReader.NUM_FEATURES, 10);
+
+        SVMLightRecordReader rr = new SVMLightRecordReader();
+        rr.initialize(config, new FileSplit(new ClassPathResource("datavec-api/svmlight/basic.txt").getFile()));
+        List<List<Writable>> expected = new ArrayList<>();
+        while (rr.hasNext())
+            expected.add(rr.next());
+
+        rr.reset();
+        assertTrue(rr.batchesSupported());
+        List<List<Writable>> batch = rr.nextColumnar(2);
+        assertTrue(batch instanceof SparseRecordBatch);
+        assertEquals(11, ((SparseRecordBatch) batch).numColumns());
+        List<List<Writable>> actual = new ArrayList<>(batch);
+        actual.addAll(rr.next(2));
+        assertFalse(rr.hasNext());
+        assertEquals(expected, actual);
+    }
+
     @Test
     public void testNoAppendLabel() throws IOException, InterruptedException {
         Map<Integer, List<Writable>> correct = new HashMap<>();
@@ -437,4 +470,44 @@ public class SVMLightRecordReaderTest {
         rr.initialize(config, new FileSplit(new ClassPathResource("datavec-api/svmlight/zeroIndexLabel.txt").getFile()));
         rr.next();
     }
+
+    @Test
+    public void testSparseRecords() throws Exception {
+        File f = testDir.newFile();
+        Files.write(f.toPath(), Arrays.asList(
+                        "1 5:0.5 1:1.5 3:2.5",
+                        "0 2:1 2:7 1000000:3",
+                        "1"), StandardCharsets.UTF_8);
+
+        Configuration config = new Configuration();
+        config.setInt(SVMLightRecordReader.NUM_FEATURES, 1 << 24);
+        SVMLightRecordReader rr = new SVMLightRecordReader();
+        rr.initialize(config, new FileSplit(f));
+
+        // unsorted indices are sorted, and for repeated index the last value wins
+        List<Writable> first = rr.next();
+        assertTrue(first instanceof SparseWritableList);
+        assertEquals((1 << 24) + 1, first.size());
+        assertEquals(3, ((SparseWritableList) first).numNonZero());
+        assertEquals(1, ((SparseWritableList) first).getIndex(0));
+        assertEquals(new DoubleWritable(1.5), first.get(1));
+        assertEquals(new DoubleWritable(2.5), first.get(3));
+        assertEquals(new DoubleWritable(0.5), first.get(5));
+        assertEquals(ZERO, first.get(4));
+        assertEquals(new IntWritable(1), first.get(1 << 24));
+
+        List<Writable> second = rr.next();
+        assertEquals(2, ((SparseWritableList) second).numNonZero());
+        assertEquals(new DoubleWritable(7), second.get(2));
+        assertEquals(new DoubleWritable(3), second.get(1000000));
+
+        rr.reset();
+        SparseRecordBatch batch = (SparseRecordBatch) rr.nextColumnar(10);
+        assertEquals(3, batch.size());
+        assertEquals(5, batch.numNonZero());
+        assertEquals(first, batch.get(0));
+        assertEquals(second, batch.get(1));
+        assertEquals(0, batch.get(2).numNonZero());
+        assertEquals(new IntWritable(1), batch.get(2).get(1 << 24));
+    }
 }
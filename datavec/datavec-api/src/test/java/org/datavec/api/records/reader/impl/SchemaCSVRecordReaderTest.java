@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.api.records.reader.impl;
+
+import org.apache.commons.io.FileUtils;
+import org.datavec.api.records.reader.impl.csv.CSVRecordReader;
+import org.datavec.api.records.reader.impl.csv.SchemaCSVRecordReader;
+import org.datavec.api.split.FileSplit;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.*;
+import org.datavec.api.writable.batch.NDArrayRecordBatch;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SchemaCSVRecordReaderTest {
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    private static Schema getSchema() {
+        return new Schema.Builder()
+                .addColumnDouble("d")
+                .addColumnFloat("f")
+                .addColumnInteger("i")
+                .addColumnLong("l")
+                .addColumnCategorical("cat", "a", "b", "c")
+                .build();
+    }
+
+    private File getFile() throws Exception {
+        File f = testDir.newFile();
+        FileUtils.writeStringToFile(f, "d,f,i,l,cat\n" +
+                "1.5,2.25,3,4,a\n" +
+                "-0.001,1e3,-7,12345678901,c\n" +
+                "\"3.0\",0.5,1,2,\"b\"\n", StandardCharsets.UTF_8);
+        return f;
+    }
+
+    @Test
+    public void testParseNumbers() {
+        Random r = new Random(12345);
+        for (int i = 0; i < 100000; i++) {
+            String s;
+            switch (i % 4) {
+                case 0:
+                    s = String.valueOf(r.nextDouble() * Math.pow(10, r.nextInt(20) - 10));
+                    break;
+                case 1:
+                    s = String.format("%." + r.nextInt(8) + "f", (r.nextDouble() - 0.5) * 1000);
+                    break;
+                case 2:
+                    s = String.valueOf(r.nextGaussian());
+                    break;
+                default:
+                    s = String.valueOf(r.nextInt(100000) - 50000);
+            }
+
+            byte[] b = (" " + s + " ").getBytes(StandardCharsets.UTF_8);
+            assertEquals(s, Double.parseDouble(s), SchemaCSVRecordReader.parseDouble(b, 0, b.length), 0.0);
+            assertEquals(s, Float.parseFloat(s), SchemaCSVRecordReader.parseFloat(b, 0, b.length), 0.0f);
+        }
+
+        for (String s : new String[] {"0", "-0.0", "1e22", "1E-5", "NaN", "-Infinity", "0.000000000000000000001234"}) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            assertEquals(s, Double.parseDouble(s), SchemaCSVRecordReader.parseDouble(b, 0, b.length), 0.0);
+        }
+
+        byte[] b = "-12345678901234".getBytes(StandardCharsets.UTF_8);
+        assertEquals(-12345678901234L, SchemaCSVRecordReader.parseLong(b, 0, b.length));
+
+        try {
+            b = "1.2.3".getBytes(StandardCharsets.UTF_8);
+            SchemaCSVRecordReader.parseDouble(b, 0, b.length);
+            fail("Expected exception");
+        } catch (NumberFormatException e) {
+            //OK
+        }
+    }
+
+    @Test
+    public void testTypedWritables() throws Exception {
+        SchemaCSVRecordReader rr = new SchemaCSVRecordReader(getSchema(), 1);
+        rr.initialize(new FileSplit(getFile()));
+
+        assertEquals(Arrays.<Writable>asList(new DoubleWritable(1.5), new FloatWritable(2.25f), new IntWritable(3),
+                new LongWritable(4), new Text("a")), rr.next());
+        assertEquals(Arrays.<Writable>asList(new DoubleWritable(-0.001), new FloatWritable(1000f), new IntWritable(-7),
+                new LongWritable(12345678901L), new Text("c")), rr.next());
+        assertEquals(Arrays.<Writable>asList(new DoubleWritable(3.0), new FloatWritable(0.5f), new IntWritable(1),
+                new LongWritable(2), new Text("b")), rr.next());
+        assertFalse(rr.hasNext());
+
+        //Same values as CSVRecordReader, after reset
+        rr.reset();
+        CSVRecordReader csv = new CSVRecordReader(1);
+        csv.initialize(new FileSplit(getFile()));
+        while (csv.hasNext()) {
+            List<Writable> exp = csv.next();
+            List<Writable> act = rr.next();
+            for (int i = 0; i < 4; i++)
+                assertEquals(exp.get(i).toDouble(), act.get(i).toDouble(), 0.0);
+            assertEquals(exp.get(4).toString(), act.get(4).toString());
+        }
+    }
+
+    @Test
+    public void testColumns() throws Exception {
+        SchemaCSVRecordReader rr = new SchemaCSVRecordReader(getSchema(), 1);
+        rr.initialize(new FileSplit(getFile()));
+        assertTrue(rr.isNumericBatches());
+
+        double[][] columns = new double[5][1];
+        assertEquals(2, rr.readColumns(2, columns));
+        assertArrayEquals(new double[] {1.5, -0.001}, columns[0], 0.0);
+        assertArrayEquals(new double[] {2.25, 1000}, columns[1], 0.0);
+        assertArrayEquals(new double[] {3, -7}, columns[2], 0.0);
+        assertArrayEquals(new double[] {4, 12345678901L}, columns[3], 0.0);
+        assertArrayEquals(new double[] {0, 2}, columns[4], 0.0);
+
+        assertEquals(1, rr.readColumns(2, columns));
+        assertEquals(3.0, columns[0][0], 0.0);
+        assertEquals(1.0, columns[4][0], 0.0);
+        assertFalse(rr.hasNext());
+    }
+
+    @Test
+    public void testFloatColumns() throws Exception {
+        SchemaCSVRecordReader rr = new SchemaCSVRecordReader(getSchema(), 1);
+        rr.initialize(new FileSplit(getFile()));
+
+        float[][] columns = new float[5][1];
+        assertEquals(2, rr.readColumns(2, columns));
+        assertArrayEquals(new float[] {1.5f, -0.001f}, columns[0], 0.0f);
+        assertArrayEquals(new float[] {2.25f, 1000f}, columns[1], 0.0f);
+        assertArrayEquals(new float[] {3, -7}, columns[2], 0.0f);
+        assertArrayEquals(new float[] {4, 12345678901L}, columns[3], 0.0f);
+        assertArrayEquals(new float[] {0, 2}, columns[4], 0.0f);
+
+        assertEquals(1, rr.readColumns(2, columns));
+        assertEquals(3.0f, columns[0][0], 0.0f);
+        assertEquals(1.0f, columns[4][0], 0.0f);
+        assertFalse(rr.hasNext());
+    }
+
+    @Test
+    public void testNumericBatch() throws Exception {
+        SchemaCSVRecordReader rr = new SchemaCSVRecordReader(getSchema(), 1);
+        rr.initialize(new FileSplit(getFile()));
+
+        assertTrue(rr.batchesSupported());
+        List<List<Writable>> batch = rr.next(10);
+        assertTrue(batch instanceof NDArrayRecordBatch);
+        assertEquals(3, batch.size());
+
+        List<INDArray> arrays = ((NDArrayRecordBatch) batch).getArrays();
+        assertEquals(5, arrays.size());
+        assertArrayEquals(new long[] {3, 1}, arrays.get(0).shape());
+        assertEquals(-0.001, arrays.get(0).getDouble(1), 1e-6);
+        assertEquals(12345678901.0, arrays.get(3).getDouble(1), 1e3);
+        assertEquals(1.0, arrays.get(4).getDouble(2), 0.0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testInvalidColumnCount() throws Exception {
+        File f = testDir.newFile();
+        FileUtils.writeStringToFile(f, "1.0,2.0,3,4\n", StandardCharsets.UTF_8);
+        SchemaCSVRecordReader rr = new SchemaCSVRecordReader(getSchema());
+        rr.initialize(new FileSplit(f));
+        rr.next();
+    }
+}
@@ -19,17 +19,25 @@ package org.datavec.api.transform;
 import org.datavec.api.records.reader.RecordReader;
 import org.datavec.api.records.reader.impl.collection.ListStringRecordReader;
 import org.datavec.api.split.ListStringSplit;
+import org.datavec.api.transform.condition.ConditionOp;
+import org.datavec.api.transform.condition.column.CategoricalColumnCondition;
+import org.datavec.api.transform.condition.column.DoubleColumnCondition;
+import org.datavec.api.transform.filter.ConditionFilter;
+import org.datavec.api.transform.filter.Filter;
 import org.datavec.api.transform.schema.Schema;
 import org.datavec.api.transform.transform.nlp.TextToCharacterIndexTransform;
 import org.datavec.api.writable.DoubleWritable;
 import org.datavec.api.writable.IntWritable;
+import org.datavec.api.writable.LongWritable;
 import org.datavec.api.writable.Text;
 import org.datavec.api.writable.Writable;
+import org.joda.time.DateTimeZone;
 import org.junit.Test;
 
 import java.util.*;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 public class TestTransformProcess {
 
@@ -101,6 +109,90 @@ public class TestTransformProcess {
     }
 
 
+    @Test
+    public void testFusedExecution() {
+        Schema schema = new Schema.Builder()
+                .addColumnInteger("id")
+                .addColumnCategorical("cat", "a", "b", "c")
+                .addColumnDouble("x")
+                .addColumnString("time")
+                .addColumnString("text")
+                .build();
+
+        TransformProcess tp = new TransformProcess.Builder(schema)
+                .doubleMathOp("x", MathOp.Multiply, 2.0)
+                .filter(new ConditionFilter(new DoubleColumnCondition("x", ConditionOp.GreaterThan, 10.0)))
+                .duplicateColumn("x", "x2")
+                .doubleMathOp("x2", MathOp.Add, 1.0)
+                .stringToTimeTransform("time", "YYYY-MM-dd", DateTimeZone.UTC)
+                .integerMathOp("id", MathOp.Add, 100)
+                .filter(new ConditionFilter(new CategoricalColumnCondition("cat", ConditionOp.Equal, "c")))
+                .categoricalToOneHot("cat")
+                .renameColumn("x", "y")
+                .removeColumns("text")
+                .reorderColumns("x2", "time")
+                .build();
+
+        FusedTransformProcess fused = FusedTransformProcess.compile(tp);
+        // one-hot encoding changes number of columns, so it is the only step executed over the whole row
+        assertEquals(1, fused.numRowOps());
+
+        Random r = new Random(12345);
+        String[] cats = {"a", "b", "c"};
+        for (int i = 0; i < 100; i++) {
+            List<Writable> in = Arrays.<Writable>asList(new IntWritable(i), new Text(cats[r.nextInt(3)]),
+                    new DoubleWritable(r.nextDouble() * 10), new Text("2018-0" + (1 + r.nextInt(9)) + "-1" + r.nextInt(10)),
+                    new Text("text_" + i));
+
+            assertEquals(executeStepByStep(tp, in), tp.execute(in));
+        }
+
+        List<Writable> out = tp.execute(Arrays.<Writable>asList(new IntWritable(1), new Text("a"),
+                new DoubleWritable(2.0), new Text("2018-01-01"), new Text("text")));
+        List<Writable> exp = Arrays.<Writable>asList(new DoubleWritable(5.0), new LongWritable(1514764800000L),
+                new IntWritable(101), new IntWritable(1), new IntWritable(0), new IntWritable(0), new DoubleWritable(4.0));
+        assertEquals(exp, out);
+
+        assertNull(tp.execute(Arrays.<Writable>asList(new IntWritable(1), new Text("c"),
+                new DoubleWritable(2.0), new Text("2018-01-01"), new Text("text"))));
+    }
+
+    @Test
+    public void testFusedDeadColumnElimination() {
+        Schema schema = new Schema.Builder()
+                .addColumnString("time")
+                .addColumnDouble("x")
+                .build();
+
+        // time column is parsed, but removed afterwards: parsing should be eliminated
+        TransformProcess tp = new TransformProcess.Builder(schema)
+                .stringToTimeTransform("time", "YYYY-MM-dd", DateTimeZone.UTC)
+                .doubleMathOp("x", MathOp.Add, 1.0)
+                .removeColumns("time")
+                .build();
+
+        FusedTransformProcess fused = FusedTransformProcess.compile(tp);
+        assertEquals(1, fused.getNumEliminated());
+        assertEquals(1, fused.numOps());
+
+        List<Writable> out = tp.execute(Arrays.<Writable>asList(new Text("not a date"), new DoubleWritable(2.0)));
+        assertEquals(Collections.<Writable>singletonList(new DoubleWritable(3.0)), out);
+    }
+
+    private static List<Writable> executeStepByStep(TransformProcess tp, List<Writable> input) {
+        List<Writable> current = input;
+        for (DataAction d : tp.getActionList()) {
+            if (d.getTransform() != null) {
+                current = d.getTransform().map(current);
+            } else {
+                Filter f = d.getFilter();
+                if (f.removeExample(current))
+                    return null;
+            }
+        }
+        return current;
+    }
+
     public static Map<Character,Integer> defaultCharIndex() {
         Map<Character,Integer> ret = new TreeMap<>();
 
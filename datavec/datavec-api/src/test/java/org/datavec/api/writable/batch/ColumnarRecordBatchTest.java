@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.api.writable.batch;
+
+import org.datavec.api.writable.*;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ColumnarRecordBatchTest {
+
+    private static ColumnarRecordBatch batch() {
+        return new ColumnarRecordBatch(3, new Object[] {
+                        new double[] {0.5, 1.5, 2.5},
+                        new float[] {1.0f, 2.0f, 3.0f},
+                        new long[] {10, 20, 30, 40},   // longer arrays are allowed
+                        new int[] {2, 0, 1},
+                        new String[] {"-1", "1e3", "7"},
+                        new Writable[] {new IntWritable(4), new DoubleWritable(5.5), new Text("6")}});
+    }
+
+    @Test
+    public void testRecords() {
+        ColumnarRecordBatch batch = batch();
+        assertEquals(3, batch.size());
+        assertEquals(6, batch.numColumns());
+        assertFalse(batch.hasNDArrayColumns());
+
+        List<Writable> exp = Arrays.asList(new DoubleWritable(1.5), new FloatWritable(2.0f), new LongWritable(20),
+                        new IntWritable(0), new Text("1e3"), new DoubleWritable(5.5));
+        assertEquals(exp, batch.get(1));
+
+        int count = 0;
+        for (List<Writable> record : batch) {
+            assertEquals(6, record.size());
+            count++;
+        }
+        assertEquals(3, count);
+    }
+
+    @Test
+    public void testToArray() {
+        ColumnarRecordBatch batch = batch();
+
+        INDArray exp = Nd4j.create(new double[][] {
+                        {0.5, 1.0, 10, 2, -1, 4},
+                        {1.5, 2.0, 20, 0, 1000, 5.5},
+                        {2.5, 3.0, 30, 1, 7, 6}});
+        assertEquals(exp, batch.toArray(0, 5));
+        assertEquals(exp.get(NDArrayIndex.all(), NDArrayIndex.interval(2, 4)), batch.toArray(2, 3));
+
+        INDArray oneHot = Nd4j.create(new double[][] {{0, 0, 1}, {1, 0, 0}, {0, 1, 0}});
+        assertEquals(oneHot, batch.toOneHot(3, 3));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOneHotInvalidClass() {
+        batch().toOneHot(3, 2);
+    }
+
+    @Test
+    public void testOneHotNonIntegerClass() {
+        try {
+            // 0.5 would be truncated to class 0
+            batch().toOneHot(0, 3);
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("column 0") && e.getMessage().contains("0.5"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testShortColumn() {
+        new ColumnarRecordBatch(3, new Object[] {new double[2]});
+    }
+}
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.api.writable.batch;
+
+import org.datavec.api.writable.*;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SparseRecordBatchTest {
+
+    // 3 records, 6 features, 1 label column
+    private static SparseRecordBatch batch() {
+        return new SparseRecordBatch(6, new int[] {0, 2, 2, 5}, new int[] {1, 4, 0, 2, 5, -1},
+                        new double[] {1.0, 4.0, 0.5, 2.5, 5.5, -1}, new Writable[][] {
+                                        {new IntWritable(1), new IntWritable(0), new IntWritable(2)}});
+    }
+
+    private static double[][] dense() {
+        return new double[][] {
+                        {0, 1.0, 0, 0, 4.0, 0, 1},
+                        {0, 0, 0, 0, 0, 0, 0},
+                        {0.5, 0, 2.5, 0, 0, 5.5, 2}};
+    }
+
+    @Test
+    public void testRecords() {
+        SparseRecordBatch batch = batch();
+        assertEquals(3, batch.size());
+        assertEquals(7, batch.numColumns());
+        assertEquals(5, batch.numNonZero());
+        assertFalse(batch.hasNDArrayColumns());
+
+        double[][] dense = dense();
+        for (int r = 0; r < 3; r++) {
+            List<Writable> exp = new ArrayList<>();
+            for (int c = 0; c < 6; c++)
+                exp.add(new DoubleWritable(dense[r][c]));
+            exp.add(new IntWritable((int) dense[r][6]));
+            assertEquals(exp, batch.get(r));
+            assertEquals(exp, new ArrayList<>(batch.get(r)));
+        }
+    }
+
+    @Test
+    public void testToArray() {
+        SparseRecordBatch batch = batch();
+        INDArray exp = Nd4j.create(dense());
+
+        assertEquals(exp, batch.toArray(0, 6));
+        for (int from = 0; from < 7; from++) {
+            for (int to = from; to < 7; to++) {
+                assertEquals(exp.get(org.nd4j.linalg.indexing.NDArrayIndex.all(),
+                                org.nd4j.linalg.indexing.NDArrayIndex.interval(from, to, true)), batch.toArray(from, to));
+            }
+        }
+
+        double[] column = new double[3];
+        batch.copyColumn(2, column, 0);
+        assertArrayEquals(new double[] {0, 0, 2.5}, column, 0.0);
+        assertEquals(Nd4j.create(new double[][] {{0, 1, 0}, {1, 0, 0}, {0, 0, 1}}), batch.toOneHot(6, 3));
+    }
+
+    @Test
+    public void testToCSR() {
+        SparseRecordBatch batch = batch();
+        INDArray csr = batch.toCSR();
+        assertTrue(csr.isSparse());
+        assertArrayEquals(new long[] {3, 6}, csr.shape());
+        assertEquals(batch.toArray(0, 5), csr.toDense());
+    }
+}
@@ -81,27 +81,33 @@ public class ArrowRecordReader implements RecordReader {
         return true;
     }
 
+    /**
+     * Returns up to num records. If the current arrow batch has enough records left (or it is the last one),
+     * a view of the underlying vectors is returned without copying, so it's converted to INDArrays column by column.
+     */
     @Override
     public List<List<Writable>> next(int num) {
         if (currentBatch == null || currIdx >= currentBatch.size()) {
             loadNextBatch();
+            // loadNextBatch() prepares the first record for next(): batches start from the first record
+            currIdx = 0;
         }
 
-        if(num == currentBatch.getArrowRecordBatch().getLength()) {
-            currIdx += num;
-            return currentBatch;
-        }
-        else {
-            List<List<Writable>> ret = new ArrayList<>(num);
-            int numBatches = 0;
-            while(hasNext() && numBatches < num) {
-                ret.add(next());
-            }
-
+        int remaining = currentBatch.size() - currIdx;
+        if (remaining >= num || !pathsIter.hasNext()) {
+            int n = Math.min(num, remaining);
+            ArrowWritableRecordBatch ret = new ArrowWritableRecordBatch(currentBatch.getList(),
+                            currentBatch.getSchema(), currentBatch.getOffset() + currIdx, n);
+            currIdx += n;
             return ret;
         }
 
-
+        //Records span multiple files
+        List<List<Writable>> ret = new ArrayList<>(num);
+        while (ret.size() < num && hasNext()) {
+            ret.add(next());
+        }
+        return ret;
     }
 
     @Override
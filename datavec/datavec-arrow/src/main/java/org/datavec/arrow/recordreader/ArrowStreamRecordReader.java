@@ -0,0 +1,293 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.arrow.recordreader;
+
+import lombok.Getter;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.datavec.api.conf.Configuration;
+import org.datavec.api.records.Record;
+import org.datavec.api.records.listener.RecordListener;
+import org.datavec.api.records.metadata.RecordMetaData;
+import org.datavec.api.records.metadata.RecordMetaDataIndex;
+import org.datavec.api.records.reader.RecordReader;
+import org.datavec.api.split.InputSplit;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.Writable;
+import org.datavec.arrow.ArrowConverter;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.*;
+
+/**
+ * Record reader for Arrow IPC streams, as written by {@link ArrowStreamRecordWriter}.
+ *
+ * Unlike {@link ArrowRecordReader}, files aren't loaded as a whole: record batches are read one by one into the same
+ * set of vectors, using an allocator with the given limit. So memory use is bounded by the size of the largest record
+ * batch, regardless of the size of the stream. Batches returned by {@link #next(int)} are views of these vectors,
+ * without copying, unless requested batch spans several record batches.
+ *
+ * PLEASE NOTE: vectors are reused, so batches returned by {@link #next(int)} are valid only until the next call to
+ * this reader. Single records returned by {@link #next()} are copies, and stay valid.
+ */
+public class ArrowStreamRecordReader implements RecordReader {
+    protected final Schema providedSchema;
+    protected final long maxAllocation;
+
+    protected InputSplit split;
+    protected Configuration configuration;
+    protected Iterator<String> pathsIter;
+    protected String currentPath;
+    protected InputStream currentStream;
+    protected ArrowStreamReader reader;
+    protected BufferAllocator allocator;
+    @Getter
+    protected Schema schema;
+    @Getter
+    protected ArrowWritableRecordBatch currentBatch;
+    protected int currIdx;
+    protected long streamIdx;
+    protected List<RecordListener> recordListeners;
+
+    public ArrowStreamRecordReader() {
+        this(null, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param schema        schema of the records. Arrow streams don't keep DataVec column metadata (for example,
+     *                      categorical columns are read back as strings), so it may be provided explicitly.
+     *                      If null, schema is derived from the stream
+     * @param maxAllocation maximal number of bytes allocated for the current record batch
+     */
+    public ArrowStreamRecordReader(Schema schema, long maxAllocation) {
+        if (maxAllocation <= 0)
+            throw new IllegalArgumentException("Max allocation must be positive: got " + maxAllocation);
+        this.providedSchema = schema;
+        this.maxAllocation = maxAllocation;
+    }
+
+    @Override
+    public void initialize(InputSplit split) {
+        closeStream();
+        this.split = split;
+        this.pathsIter = split.locationsPathIterator();
+        this.schema = null;
+        this.currIdx = 0;
+    }
+
+    @Override
+    public void initialize(Configuration conf, InputSplit split) {
+        setConf(conf);
+        initialize(split);
+    }
+
+    @Override
+    public boolean batchesSupported() {
+        return true;
+    }
+
+    /**
+     * Returns up to num records. If the current record batch has enough records left, a view of its vectors is
+     * returned without copying. Otherwise records are copied from consecutive batches, since the end of the stream
+     * can't be detected without loading next batch into the same vectors.
+     */
+    @Override
+    public List<List<Writable>> next(int num) {
+        if (!hasNext())
+            throw new NoSuchElementException("No next element");
+
+        int remaining = currentBatch.size() - currIdx;
+        if (remaining >= num) {
+            ArrowWritableRecordBatch ret = new ArrowWritableRecordBatch(currentBatch.getList(),
+                            currentBatch.getSchema(), currIdx, num);
+            currIdx += num;
+            streamIdx += num;
+            return ret;
+        }
+
+        List<List<Writable>> ret = new ArrayList<>(num);
+        while (ret.size() < num && hasNext())
+            ret.add(next());
+        return ret;
+    }
+
+    @Override
+    public List<Writable> next() {
+        if (!hasNext())
+            throw new NoSuchElementException("No next element");
+
+        streamIdx++;
+        return currentBatch.get(currIdx++);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (currentBatch != null && currIdx < currentBatch.size())
+            return true;
+
+        return advance();
+    }
+
+    /**
+     * This method loads record batches until non-empty one is found, opening next streams if necessary
+     *
+     * @return false if there are no records left
+     */
+    protected boolean advance() {
+        if (pathsIter == null)
+            throw new IllegalStateException("Record reader wasn't initialized");
+
+        try {
+            while (true) {
+                if (reader != null && reader.loadNextBatch()) {
+                    VectorSchemaRoot root = reader.getVectorSchemaRoot();
+                    currentBatch = new ArrowWritableRecordBatch(new ArrayList<FieldVector>(root.getFieldVectors()),
+                                    schema, 0, root.getRowCount());
+                    currIdx = 0;
+                    if (currentBatch.size() > 0)
+                        return true;
+                    continue;
+                }
+
+                if (!pathsIter.hasNext()) {
+                    return false;
+                }
+                openStream(pathsIter.next());
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to read Arrow stream " + currentPath, e);
+        }
+    }
+
+    protected void openStream(String path) throws Exception {
+        closeStream();
+        currentPath = path;
+        streamIdx = 0;
+        currentStream = split.openInputStreamFor(path);
+        allocator = new RootAllocator(maxAllocation);
+        reader = new ArrowStreamReader(currentStream, allocator);
+
+        Schema streamSchema = ArrowConverter.toDatavecSchema(reader.getVectorSchemaRoot().getSchema());
+        if (providedSchema != null) {
+            if (providedSchema.numColumns() != streamSchema.numColumns())
+                throw new IllegalStateException("Stream " + path + " has " + streamSchema.numColumns()
+                                + " columns, but provided schema has " + providedSchema.numColumns());
+            schema = providedSchema;
+        } else if (schema == null) {
+            schema = streamSchema;
+        } else if (!schema.sameTypes(streamSchema)) {
+            throw new IllegalStateException("Schema of stream " + path + " doesn't match schema of previous streams: "
+                            + streamSchema + " vs " + schema);
+        }
+    }
+
+    protected void closeStream() {
+        currentBatch = null;
+        try {
+            if (reader != null)
+                reader.close();
+            if (currentStream != null)
+                currentStream.close();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            reader = null;
+            currentStream = null;
+            if (allocator != null)
+                allocator.close();
+            allocator = null;
+        }
+    }
+
+    @Override
+    public List<String> getLabels() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void reset() {
+        if (split == null)
+            throw new IllegalStateException("Record reader wasn't initialized");
+
+        split.reset();
+        initialize(split);
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return split != null && split.resetSupported();
+    }
+
+    @Override
+    public List<Writable> record(URI uri, DataInputStream dataInputStream) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Record nextRecord() {
+        List<Writable> next = next();
+        return new org.datavec.api.records.impl.Record(next, new RecordMetaDataIndex(streamIdx - 1,
+                        URI.create(currentPath), ArrowStreamRecordReader.class));
+    }
+
+    @Override
+    public Record loadFromMetaData(RecordMetaData recordMetaData) {
+        throw new UnsupportedOperationException("Arrow streams don't support random access");
+    }
+
+    @Override
+    public List<Record> loadFromMetaData(List<RecordMetaData> recordMetaDatas) {
+        throw new UnsupportedOperationException("Arrow streams don't support random access");
+    }
+
+    @Override
+    public List<RecordListener> getListeners() {
+        return recordListeners;
+    }
+
+    @Override
+    public void setListeners(RecordListener... listeners) {
+        this.recordListeners = new ArrayList<>(Arrays.asList(listeners));
+    }
+
+    @Override
+    public void setListeners(Collection<RecordListener> listeners) {
+        this.recordListeners = new ArrayList<>(listeners);
+    }
+
+    @Override
+    public void close() {
+        closeStream();
+    }
+
+    @Override
+    public void setConf(Configuration conf) {
+        this.configuration = conf;
+    }
+
+    @Override
+    public Configuration getConf() {
+        return configuration;
+    }
+}
@@ -0,0 +1,310 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.arrow.recordreader;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.*;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.datavec.api.conf.Configuration;
+import org.datavec.api.records.writer.RecordWriter;
+import org.datavec.api.split.InputSplit;
+import org.datavec.api.split.partition.PartitionMetaData;
+import org.datavec.api.split.partition.Partitioner;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.Writable;
+import org.datavec.arrow.ArrowConverter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes records as Arrow IPC stream, readable via {@link ArrowStreamRecordReader}.
+ *
+ * Records are written batch by batch: single records are buffered until batch size is reached, and each batch is
+ * converted to Arrow vectors and serialized before the next one is accepted. So, unlike {@link ArrowRecordWriter},
+ * only a single record batch is held in memory at a time. {@link ArrowWritableRecordBatch}es with compatible vectors
+ * are written out without copying.
+ *
+ * This writer can be used either as a regular {@link RecordWriter} with a {@link Partitioner} (one stream per
+ * partition), or directly over an {@link OutputStream}.
+ *
+ * PLEASE NOTE: with a partitioner, this writer updates partition info itself, as record batches are written, and
+ * switches to the next partition as soon as the current one is full. So metadata returned by write methods reports
+ * no records, to avoid counting them twice, and partition size is only checked between record batches.
+ */
+public class ArrowStreamRecordWriter implements RecordWriter {
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    @Getter
+    protected final Schema schema;
+    protected final int batchSize;
+    protected final long maxAllocation;
+
+    protected Configuration configuration;
+    protected Partitioner partitioner;
+
+    protected BufferAllocator allocator;
+    // empty root, it only defines schema of the stream
+    protected VectorSchemaRoot root;
+    protected BatchStreamWriter writer;
+    protected OutputStream stream;
+    protected List<List<Writable>> pending = new ArrayList<>();
+    @Getter
+    protected long numRecordsWritten;
+
+    public ArrowStreamRecordWriter(@NonNull Schema schema) {
+        this(schema, DEFAULT_BATCH_SIZE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param schema        schema of the records
+     * @param batchSize     number of single records buffered before they're written as one record batch
+     * @param maxAllocation maximal number of bytes allocated for the record batch being written
+     */
+    public ArrowStreamRecordWriter(@NonNull Schema schema, int batchSize, long maxAllocation) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("Batch size must be positive: got " + batchSize);
+        if (maxAllocation <= 0)
+            throw new IllegalArgumentException("Max allocation must be positive: got " + maxAllocation);
+
+        this.schema = schema;
+        this.batchSize = batchSize;
+        this.maxAllocation = maxAllocation;
+    }
+
+    /**
+     * This constructor creates writer over the given stream, no initialization is needed
+     *
+     * @param stream stream to write to, closed when this writer is closed
+     */
+    public ArrowStreamRecordWriter(@NonNull Schema schema, @NonNull OutputStream stream) throws IOException {
+        this(schema, DEFAULT_BATCH_SIZE, Long.MAX_VALUE, stream);
+    }
+
+    /**
+     * This constructor creates writer over the given stream, no initialization is needed
+     *
+     * @param stream stream to write to, closed when this writer is closed
+     */
+    public ArrowStreamRecordWriter(@NonNull Schema schema, int batchSize, long maxAllocation,
+                    @NonNull OutputStream stream) throws IOException {
+        this(schema, batchSize, maxAllocation);
+        open(stream);
+    }
+
+    @Override
+    public boolean supportsBatch() {
+        return true;
+    }
+
+    @Override
+    public void initialize(InputSplit inputSplit, Partitioner partitioner) throws Exception {
+        partitioner.init(inputSplit);
+        this.partitioner = partitioner;
+        open(partitioner.currentOutputStream());
+    }
+
+    @Override
+    public void initialize(Configuration configuration, InputSplit split, Partitioner partitioner) throws Exception {
+        setConf(configuration);
+        partitioner.init(configuration, split);
+        this.partitioner = partitioner;
+        open(partitioner.currentOutputStream());
+    }
+
+    protected void open(OutputStream stream) throws IOException {
+        if (allocator == null) {
+            allocator = new RootAllocator(maxAllocation);
+            root = VectorSchemaRoot.create(ArrowConverter.toArrowSchema(schema), allocator);
+        }
+
+        this.stream = stream;
+        writer = new BatchStreamWriter(root, stream);
+        writer.start();
+    }
+
+    @Override
+    public PartitionMetaData write(List<Writable> record) throws IOException {
+        checkOpen();
+        pending.add(record);
+        if (pending.size() >= batchSize)
+            flushPending();
+
+        return PartitionMetaData.builder().numRecordsUpdated(partitioner == null ? 1 : 0).build();
+    }
+
+    @Override
+    public PartitionMetaData writeBatch(List<List<Writable>> batch) throws IOException {
+        checkOpen();
+        if (batch instanceof ArrowWritableRecordBatch) {
+            flushPending();
+            writeArrowBatch((ArrowWritableRecordBatch) batch);
+        } else {
+            for (List<Writable> record : batch) {
+                pending.add(record);
+                if (pending.size() >= batchSize)
+                    flushPending();
+            }
+        }
+
+        return PartitionMetaData.builder().numRecordsUpdated(partitioner == null ? batch.size() : 0).build();
+    }
+
+    /**
+     * This method writes out buffered single records, if any
+     */
+    public void flush() throws IOException {
+        checkOpen();
+        flushPending();
+    }
+
+    protected void flushPending() throws IOException {
+        if (pending.isEmpty())
+            return;
+
+        List<FieldVector> vectors = ArrowConverter.toArrowColumns(allocator, schema, pending);
+        try {
+            writeVectors(vectors, pending.size());
+        } finally {
+            for (FieldVector v : vectors)
+                v.close();
+        }
+        pending.clear();
+    }
+
+    protected void writeArrowBatch(ArrowWritableRecordBatch batch) throws IOException {
+        if (batch.isEmpty())
+            return;
+
+        if (canShareVectors(batch)) {
+            writeVectors(batch.getList(), batch.size());
+            return;
+        }
+
+        List<FieldVector> vectors = ArrowConverter.toArrowColumns(allocator, schema, batch);
+        try {
+            writeVectors(vectors, batch.size());
+        } finally {
+            for (FieldVector v : vectors)
+                v.close();
+        }
+    }
+
+    /**
+     * Vectors of the batch can be written as is, if batch covers them entirely and their buffer layouts match ours
+     */
+    protected boolean canShareVectors(ArrowWritableRecordBatch batch) {
+        List<FieldVector> vectors = batch.getList();
+        if (batch.getOffset() != 0 || vectors.size() != schema.numColumns() || !schema.sameTypes(batch.getSchema()))
+            return false;
+
+        List<Field> fields = root.getSchema().getFields();
+        for (int i = 0; i < vectors.size(); i++) {
+            if (vectors.get(i).getValueCount() != batch.size())
+                return false;
+            if (!TypeLayout.getTypeLayout(vectors.get(i).getField().getType())
+                            .equals(TypeLayout.getTypeLayout(fields.get(i).getType())))
+                return false;
+        }
+        return true;
+    }
+
+    protected void writeVectors(List<FieldVector> vectors, int numRows) throws IOException {
+        if (partitioner != null && partitioner.currentOutputStream() != stream) {
+            // partition was switched by the caller, who is responsible for the previous stream
+            open(partitioner.currentOutputStream());
+        }
+
+        List<Field> fields = new ArrayList<>(vectors.size());
+        for (FieldVector v : vectors)
+            fields.add(v.getField());
+
+        // buffers are referenced by the record batch, and serialized straight from the vectors
+        VectorSchemaRoot source = new VectorSchemaRoot(fields, vectors, numRows);
+        try (ArrowRecordBatch recordBatch = new VectorUnloader(source).getRecordBatch()) {
+            writer.write(recordBatch);
+        }
+        numRecordsWritten += numRows;
+
+        if (partitioner != null) {
+            partitioner.updatePartitionInfo(PartitionMetaData.builder().numRecordsUpdated(numRows).build());
+            if (partitioner.needsNewPartition()) {
+                // ends current stream and closes it
+                writer.close();
+                open(partitioner.openNewStream());
+            }
+        }
+    }
+
+    protected void checkOpen() {
+        if (writer == null)
+            throw new IllegalStateException("Record writer wasn't initialized, or it is already closed");
+    }
+
+    /**
+     * This method writes out buffered records, ends the stream and closes it
+     */
+    @Override
+    public void close() {
+        if (writer == null)
+            return;
+
+        try {
+            flushPending();
+            writer.close();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            writer = null;
+            stream = null;
+            root.close();
+            allocator.close();
+        }
+    }
+
+    /**
+     * Stream writer that accepts record batches of any vectors with matching layout, not only of its own root
+     */
+    protected static class BatchStreamWriter extends ArrowStreamWriter {
+        protected BatchStreamWriter(VectorSchemaRoot root, OutputStream out) {
+            super(root, new DictionaryProvider.MapDictionaryProvider(), out);
+        }
+
+        protected void write(ArrowRecordBatch batch) throws IOException {
+            writeRecordBatch(batch);
+        }
+    }
+
+    @Override
+    public void setConf(Configuration conf) {
+        this.configuration = conf;
+    }
+
+    @Override
+    public Configuration getConf() {
+        return configuration;
+    }
+}
@@ -18,14 +18,13 @@ package org.datavec.arrow.recordreader;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
-import org.apache.arrow.vector.FieldVector;
-import org.apache.arrow.vector.VectorSchemaRoot;
-import org.apache.arrow.vector.VectorUnloader;
+import org.apache.arrow.vector.*;
 import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.datavec.api.transform.ColumnType;
 import org.datavec.api.transform.schema.Schema;
 import org.datavec.api.writable.NullWritable;
 import org.datavec.api.writable.Writable;
-import org.datavec.api.writable.batch.AbstractWritableRecordBatch;
+import org.datavec.api.writable.batch.AbstractColumnarRecordBatch;
 import org.datavec.arrow.ArrowConverter;
 
 import java.io.Closeable;
@@ -33,11 +32,12 @@ import java.io.IOException;
 import java.util.*;
 
 /**
- *
+ * Record batch backed by arrow {@link FieldVector}s. Numeric columns are copied straight from the vectors
+ * when the batch is converted to INDArrays.
  */
 @Data
 @AllArgsConstructor
-public class ArrowWritableRecordBatch extends AbstractWritableRecordBatch implements Closeable {
+public class ArrowWritableRecordBatch extends AbstractColumnarRecordBatch implements Closeable {
 
     private List<FieldVector> list;
     private int size;
@@ -159,6 +159,73 @@ public class ArrowWritableRecordBatch extends AbstractWritableRecordBatch implem
         return ret;
     }
 
+    @Override
+    public int numColumns() {
+        return schema.numColumns();
+    }
+
+    @Override
+    public boolean isNDArrayColumn(int column) {
+        return schema.getType(column) == ColumnType.NDArray;
+    }
+
+    @Override
+    public void copyColumn(int column, double[] target, int targetOffset) {
+        FieldVector vector = list.get(column);
+        checkNoNulls(column);
+        if (vector instanceof Float8Vector) {
+            Float8Vector v = (Float8Vector) vector;
+            for (int i = 0; i < size; i++)
+                target[targetOffset + i] = v.get(offset + i);
+        } else if (vector instanceof Float4Vector) {
+            Float4Vector v = (Float4Vector) vector;
+            for (int i = 0; i < size; i++)
+                target[targetOffset + i] = v.get(offset + i);
+        } else if (vector instanceof IntVector) {
+            IntVector v = (IntVector) vector;
+            for (int i = 0; i < size; i++)
+                target[targetOffset + i] = v.get(offset + i);
+        } else if (vector instanceof BigIntVector) {
+            BigIntVector v = (BigIntVector) vector;
+            for (int i = 0; i < size; i++)
+                target[targetOffset + i] = v.get(offset + i);
+        } else if (vector instanceof BitVector) {
+            BitVector v = (BitVector) vector;
+            for (int i = 0; i < size; i++)
+                target[targetOffset + i] = v.get(offset + i);
+        } else {
+            for (int i = 0; i < size; i++)
+                target[targetOffset + i] = ArrowConverter.fromEntry(offset + i, vector, schema.getType(column)).toDouble();
+        }
+    }
+
+    @Override
+    public void copyColumn(int column, float[] target, int targetOffset) {
+        FieldVector vector = list.get(column);
+        if (vector instanceof Float4Vector) {
+            checkNoNulls(column);
+            Float4Vector v = (Float4Vector) vector;
+            for (int i = 0; i < size; i++)
+                target[targetOffset + i] = v.get(offset + i);
+        } else {
+            double[] temp = new double[size];
+            copyColumn(column, temp, 0);
+            for (int i = 0; i < size; i++)
+                target[targetOffset + i] = (float) temp[i];
+        }
+    }
+
+    private void checkNoNulls(int column) {
+        FieldVector vector = list.get(column);
+        if (vector.getNullCount() == 0)
+            return;
+
+        for (int i = 0; i < size; i++)
+            if (vector.isNull(offset + i))
+                throw new IllegalStateException("Unable to convert column \"" + schema.getName(column)
+                                + "\" to numbers: record " + i + " has null value");
+    }
+
     @Override
     public List<Writable> set(int i, List<Writable> writable) {
         int rowOffset = offset + i;
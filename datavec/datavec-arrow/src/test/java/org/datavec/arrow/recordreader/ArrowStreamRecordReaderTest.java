@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.arrow.recordreader;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.datavec.api.conf.Configuration;
+import org.datavec.api.split.FileSplit;
+import org.datavec.api.split.partition.NumberOfRecordsPartitioner;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.*;
+import org.datavec.arrow.ArrowConverter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ArrowStreamRecordReaderTest {
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    private static Schema getSchema() {
+        return new Schema.Builder()
+                        .addColumnInteger("id")
+                        .addColumnDouble("x")
+                        .addColumnString("text")
+                        .addColumnFloat("f")
+                        .build();
+    }
+
+    private static List<List<Writable>> getData(int numRows) {
+        List<List<Writable>> ret = new ArrayList<>(numRows);
+        for (int i = 0; i < numRows; i++) {
+            ret.add(Arrays.<Writable>asList(new IntWritable(i), new DoubleWritable(i / 7.0), new Text("text_" + i),
+                            new FloatWritable(i * 0.5f)));
+        }
+        return ret;
+    }
+
+    @Test
+    public void testWriteRead() throws Exception {
+        List<List<Writable>> data = getData(10500);
+        File f = testDir.newFile();
+        try (ArrowStreamRecordWriter writer = new ArrowStreamRecordWriter(getSchema(), 1000, Long.MAX_VALUE,
+                        new FileOutputStream(f))) {
+            // single records and batches are mixed
+            for (int i = 0; i < 300; i++)
+                writer.write(data.get(i));
+            writer.writeBatch(data.subList(300, 10500));
+            assertEquals(10000, writer.getNumRecordsWritten());
+        }
+
+        // memory limit well below the file size: only one record batch is loaded at a time
+        assertTrue(f.length() > 3 * 96 * 1024);
+        ArrowStreamRecordReader reader = new ArrowStreamRecordReader(null, 96 * 1024);
+        reader.initialize(new FileSplit(f));
+        for (int epoch = 0; epoch < 2; epoch++) {
+            List<List<Writable>> read = new ArrayList<>();
+            while (reader.hasNext())
+                read.add(reader.next());
+            assertEquals(data, read);
+            assertTrue(getSchema().sameTypes(reader.getSchema()));
+            reader.reset();
+        }
+
+        // batches within single record batch are views, batches spanning record batches are collected
+        List<List<Writable>> first = reader.next(600);
+        assertTrue(first instanceof ArrowWritableRecordBatch);
+        assertEquals(data.subList(0, 600), new ArrayList<>(first));
+        List<List<Writable>> second = reader.next(600);
+        assertFalse(second instanceof ArrowWritableRecordBatch);
+        assertEquals(data.subList(600, 1200), second);
+
+        int count = 1200;
+        while (reader.hasNext()) {
+            List<List<Writable>> batch = reader.next(600);
+            assertEquals(data.subList(count, count + batch.size()), new ArrayList<>(batch));
+            count += batch.size();
+        }
+        assertEquals(10500, count);
+        reader.close();
+    }
+
+    @Test
+    public void testPartitionedWrite() throws Exception {
+        List<List<Writable>> data = getData(1000);
+        File dir = testDir.newFolder();
+        File f = new File(dir, "data.arrow");
+        assertTrue(f.createNewFile());
+
+        Configuration conf = new Configuration();
+        conf.setInt(NumberOfRecordsPartitioner.RECORDS_PER_FILE_CONFIG, 300);
+        try (ArrowStreamRecordWriter writer = new ArrowStreamRecordWriter(getSchema(), 100, Long.MAX_VALUE)) {
+            writer.initialize(conf, new FileSplit(f), new NumberOfRecordsPartitioner());
+            for (int i = 0; i < 500; i++)
+                writer.write(data.get(i));
+            writer.writeBatch(data.subList(500, 1000));
+        }
+
+        File[] files = dir.listFiles();
+        assertEquals(4, files.length);
+        List<List<Writable>> read = new ArrayList<>();
+        for (File file : files) {
+            ArrowStreamRecordReader reader = new ArrowStreamRecordReader();
+            reader.initialize(new FileSplit(file));
+            int count = 0;
+            while (reader.hasNext()) {
+                read.add(reader.next());
+                count++;
+            }
+            reader.close();
+            assertTrue(count == 300 || count == 100);
+        }
+
+        Collections.sort(read, new Comparator<List<Writable>>() {
+            @Override
+            public int compare(List<Writable> o1, List<Writable> o2) {
+                return Integer.compare(o1.get(0).toInt(), o2.get(0).toInt());
+            }
+        });
+        assertEquals(data, read);
+    }
+
+    @Test
+    public void testArrowBatchesPassThrough() throws Exception {
+        Schema schema = getSchema();
+        List<List<Writable>> data = getData(100);
+        BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+        ArrowWritableRecordBatch batch = ArrowConverter.toArrowWritables(
+                        ArrowConverter.toArrowColumns(allocator, schema, data), schema);
+
+        File f = testDir.newFile();
+        try (ArrowStreamRecordWriter writer = new ArrowStreamRecordWriter(schema, new FileOutputStream(f))) {
+            // whole batch is written as is, views are copied
+            writer.writeBatch(batch);
+            writer.writeBatch(new ArrowWritableRecordBatch(batch.getList(), schema, 10, 20));
+        }
+        // source vectors are still usable after writing
+        assertEquals(data.get(5), batch.get(5));
+
+        ArrowStreamRecordReader reader = new ArrowStreamRecordReader();
+        reader.initialize(new FileSplit(f));
+        List<List<Writable>> expected = new ArrayList<>(data);
+        expected.addAll(data.subList(10, 30));
+        List<List<Writable>> read = new ArrayList<>();
+        while (reader.hasNext())
+            read.add(reader.next());
+        assertEquals(expected, read);
+        reader.close();
+    }
+}
@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.image.cache;
+
+import com.google.common.base.Preconditions;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Memory-mapped cache of pre-decoded images, written by {@link ImageCacheWriter}.
+ *
+ * File layout: fixed-size preamble, metadata (format, image shape, label names), then features of all examples
+ * with fixed stride starting at 4096-byte aligned offset, then int32 class index of each example.
+ * Features and labels are little-endian. Examples can be read in any order, without decoding.
+ *
+ * PLEASE NOTE: file is mapped read-only, and features are always copied into new arrays, so in-place changes
+ * (i.e. by preprocessors) never affect the cache, and returned arrays stay valid after cache is closed.
+ * With {@link Format#FLOAT} cache, contiguous ranges of examples are copied with single bulk copy.
+ * {@link Format#UINT8} cache is 4x smaller, but pixels are converted to floats on each access.
+ */
+@Slf4j
+public class ImageCache implements Closeable {
+    public static final int MAGIC = 0x494D4743; // "IMGC"
+    public static final int FORMAT_VERSION = 1;
+    public static final int PREAMBLE_LENGTH = 64;
+    public static final int ALIGNMENT = 4096;
+
+    public enum Format {
+        UINT8, FLOAT
+    }
+
+    @Getter
+    protected final File file;
+    @Getter
+    protected final Format format;
+    @Getter
+    protected final int numExamples;
+    @Getter
+    protected final long channels;
+    @Getter
+    protected final long height;
+    @Getter
+    protected final long width;
+    @Getter
+    protected final List<String> labels;
+
+    protected final long exampleLength;
+    protected final long stride;
+    protected final long featuresOffset;
+    protected final int examplesPerChunk;
+    protected final MappedByteBuffer[] chunks;
+    protected final int[] classes;
+
+    protected ImageCache(File file, Format format, int numExamples, long channels, long height, long width,
+                    List<String> labels, long featuresOffset, MappedByteBuffer[] chunks, int examplesPerChunk,
+                    int[] classes) {
+        this.file = file;
+        this.format = format;
+        this.numExamples = numExamples;
+        this.channels = channels;
+        this.height = height;
+        this.width = width;
+        this.labels = Collections.unmodifiableList(labels);
+        this.exampleLength = channels * height * width;
+        this.stride = exampleLength * elementSize(format);
+        this.featuresOffset = featuresOffset;
+        this.chunks = chunks;
+        this.examplesPerChunk = examplesPerChunk;
+        this.classes = classes;
+    }
+
+    /**
+     * This method opens existing image cache file
+     *
+     * @param file cache file, created by {@link ImageCacheWriter}
+     * @return opened cache
+     * @throws IOException
+     */
+    public static ImageCache open(@NonNull File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            Format format;
+            int numExamples;
+            long channels, height, width, featuresOffset, labelsOffset;
+            List<String> labels = new ArrayList<>();
+            try {
+                if (dis.readInt() != MAGIC)
+                    throw new IllegalStateException("File isn't an image cache: " + file);
+                int version = dis.readInt();
+                if (version != FORMAT_VERSION)
+                    throw new IllegalStateException("Unsupported image cache format version: " + version);
+
+                numExamples = (int) dis.readLong();
+                featuresOffset = dis.readLong();
+                labelsOffset = dis.readLong();
+                if (numExamples < 0 || labelsOffset <= 0)
+                    throw new IllegalStateException("Image cache wasn't closed properly: " + file);
+
+                dis.skipBytes(PREAMBLE_LENGTH - 32);
+                format = Format.valueOf(dis.readUTF());
+                channels = dis.readLong();
+                height = dis.readLong();
+                width = dis.readLong();
+                int numLabels = dis.readInt();
+                for (int i = 0; i < numLabels; i++)
+                    labels.add(dis.readUTF());
+            } finally {
+                dis.close();
+            }
+
+            long stride = channels * height * width * elementSize(format);
+            if (featuresOffset + stride * numExamples != labelsOffset
+                            || labelsOffset + 4L * numExamples > raf.length())
+                throw new IllegalStateException("Image cache file is truncated or corrupted: " + file);
+
+            // classes are small, so they are always loaded into memory
+            int[] classes = new int[numExamples];
+            ByteBuffer bb = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, labelsOffset, 4L * numExamples)
+                            .order(ByteOrder.LITTLE_ENDIAN);
+            bb.asIntBuffer().get(classes);
+
+            // each chunk holds whole number of examples, so single example never crosses chunk boundary
+            int examplesPerChunk = (int) Math.max(1, Math.min(numExamples, Integer.MAX_VALUE / Math.max(1, stride)));
+            int numChunks = numExamples == 0 ? 0 : (numExamples + examplesPerChunk - 1) / examplesPerChunk;
+            MappedByteBuffer[] chunks = new MappedByteBuffer[numChunks];
+            for (int c = 0; c < numChunks; c++) {
+                long first = (long) c * examplesPerChunk;
+                long count = Math.min(examplesPerChunk, numExamples - first);
+                chunks[c] = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, featuresOffset + first * stride, count * stride);
+                chunks[c].order(ByteOrder.LITTLE_ENDIAN);
+            }
+
+            return new ImageCache(file, format, numExamples, channels, height, width, labels, featuresOffset, chunks,
+                            examplesPerChunk, classes);
+        }
+    }
+
+    protected static int elementSize(Format format) {
+        return format == Format.FLOAT ? 4 : 1;
+    }
+
+    /**
+     * This method returns class index of the given example, or -1 if cache has no labels
+     */
+    public int getLabel(int index) {
+        Preconditions.checkArgument(index >= 0 && index < numExamples, "Invalid index: %s, cache size: %s", index,
+                        numExamples);
+        return classes[index];
+    }
+
+    /**
+     * This method returns features of the given example, as array of shape [1, channels, height, width]
+     */
+    public INDArray get(int index) {
+        return getBatch(index, 1);
+    }
+
+    /**
+     * This method returns features of contiguous range of examples, as new array of shape [num, channels, height, width]
+     *
+     * @param from first example
+     * @param num  number of examples
+     */
+    public INDArray getBatch(int from, int num) {
+        Preconditions.checkArgument(from >= 0 && num > 0 && from + num <= numExamples,
+                        "Invalid range: [%s, %s), cache size: %s", from, from + num, numExamples);
+
+        if (format == Format.FLOAT && from / examplesPerChunk == (from + num - 1) / examplesPerChunk) {
+            Preconditions.checkArgument((long) num * exampleLength < Integer.MAX_VALUE, "Batch is too large: %s examples",
+                            num);
+            float[] data = new float[(int) (num * exampleLength)];
+            slice(from, num).asFloatBuffer().get(data);
+            return Nd4j.create(data, new long[] {num, channels, height, width}, 'c');
+        }
+
+        int[] indices = new int[num];
+        for (int i = 0; i < num; i++)
+            indices[i] = from + i;
+
+        return getBatch(indices);
+    }
+
+    /**
+     * This method gathers features of the given examples into new array of shape [indices.length, channels, height, width]
+     *
+     * @param indices example indices, in any order
+     */
+    public INDArray getBatch(int[] indices) {
+        Preconditions.checkArgument(indices.length > 0, "No examples requested");
+        Preconditions.checkArgument((long) indices.length * exampleLength < Integer.MAX_VALUE,
+                        "Batch is too large: %s examples", indices.length);
+
+        int len = (int) exampleLength;
+        float[] data = new float[indices.length * len];
+        for (int i = 0; i < indices.length; i++) {
+            Preconditions.checkArgument(indices[i] >= 0 && indices[i] < numExamples, "Invalid index: %s, cache size: %s",
+                            indices[i], numExamples);
+            ByteBuffer bb = slice(indices[i], 1);
+            int offset = i * len;
+            if (format == Format.FLOAT) {
+                bb.asFloatBuffer().get(data, offset, len);
+            } else {
+                for (int j = 0; j < len; j++)
+                    data[offset + j] = bb.get(j) & 0xFF;
+            }
+        }
+
+        return Nd4j.create(data, new long[] {indices.length, channels, height, width}, 'c');
+    }
+
+    protected ByteBuffer slice(int from, int num) {
+        MappedByteBuffer chunk = chunks[from / examplesPerChunk];
+        int position = (int) ((from % examplesPerChunk) * stride);
+
+        ByteBuffer dup = chunk.duplicate();
+        dup.position(position);
+        dup.limit((int) (position + num * stride));
+        return dup.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public void close() throws IOException {
+        // returned arrays never reference mapped buffers, so they're released by GC once unreachable
+        for (int i = 0; i < chunks.length; i++)
+            chunks[i] = null;
+    }
+
+    @Override
+    public String toString() {
+        return "ImageCache(file=" + file + ", format=" + format + ", numExamples=" + numExamples + ", shape=["
+                        + channels + ", " + height + ", " + width + "], labels=" + labels.size() + ")";
+    }
+}
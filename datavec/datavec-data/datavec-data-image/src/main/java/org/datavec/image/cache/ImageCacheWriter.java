@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.image.cache;
+
+import com.google.common.base.Preconditions;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.datavec.api.writable.NDArrayWritable;
+import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.NDArrayRecordBatch;
+import org.datavec.image.recordreader.BaseImageRecordReader;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class writes decoded (and usually resized) images into single {@link ImageCache} file, so later epochs can
+ * read them via {@link org.datavec.image.recordreader.ImageCacheRecordReader} without decoding.
+ *
+ * Typical use: {@code ImageCacheWriter.write(imageRecordReader, file, ImageCache.Format.UINT8, 64)}
+ */
+@Slf4j
+public class ImageCacheWriter implements Closeable {
+    protected final File file;
+    protected final ImageCache.Format format;
+    protected final long channels, height, width;
+    protected final long exampleLength;
+    protected final boolean hasLabels;
+
+    protected RandomAccessFile raf;
+    protected FileChannel channel;
+    protected long featuresOffset;
+    protected long numExamples = 0;
+    protected ByteBuffer buffer;
+    protected ByteArrayOutputStream classes = new ByteArrayOutputStream();
+
+    /**
+     * @param file     file to write, overwritten if exists
+     * @param format   pixel storage format
+     * @param channels number of channels of each image
+     * @param height   height of each image
+     * @param width    width of each image
+     * @param labels   label names, or empty list if images are unlabeled
+     * @throws IOException
+     */
+    public ImageCacheWriter(@NonNull File file, @NonNull ImageCache.Format format, long channels, long height,
+                    long width, @NonNull List<String> labels) throws IOException {
+        Preconditions.checkArgument(channels > 0 && height > 0 && width > 0, "Invalid image shape: [%s, %s, %s]",
+                        channels, height, width);
+        this.file = file;
+        this.format = format;
+        this.channels = channels;
+        this.height = height;
+        this.width = width;
+        this.exampleLength = channels * height * width;
+        this.hasLabels = !labels.isEmpty();
+
+        ByteArrayOutputStream meta = new ByteArrayOutputStream();
+        try (DataOutputStream dos = new DataOutputStream(meta)) {
+            writePreamble(dos, -1, 0, 0);
+            dos.writeUTF(format.name());
+            dos.writeLong(channels);
+            dos.writeLong(height);
+            dos.writeLong(width);
+            dos.writeInt(labels.size());
+            for (String label : labels)
+                dos.writeUTF(label);
+        }
+
+        featuresOffset = (meta.size() + ImageCache.ALIGNMENT - 1) / ImageCache.ALIGNMENT * ImageCache.ALIGNMENT;
+
+        raf = new RandomAccessFile(file, "rw");
+        raf.setLength(0);
+        channel = raf.getChannel();
+        channel.write(ByteBuffer.wrap(meta.toByteArray()), 0);
+        channel.position(featuresOffset);
+    }
+
+    protected static void writePreamble(DataOutputStream dos, long numExamples, long featuresOffset,
+                    long labelsOffset) throws IOException {
+        dos.writeInt(ImageCache.MAGIC);
+        dos.writeInt(ImageCache.FORMAT_VERSION);
+        dos.writeLong(numExamples);
+        dos.writeLong(featuresOffset);
+        dos.writeLong(labelsOffset);
+        dos.write(new byte[ImageCache.PREAMBLE_LENGTH - 32]);
+    }
+
+    /**
+     * This method appends single example
+     *
+     * @param features image of shape [channels, height, width] or [1, channels, height, width]
+     * @param label    class index, ignored if cache has no labels
+     */
+    public void write(INDArray features, int label) throws IOException {
+        write(features, new int[] {label});
+    }
+
+    /**
+     * This method appends batch of examples
+     *
+     * @param features images of shape [n, channels, height, width]
+     * @param labels   class index of each image, or null if cache has no labels
+     */
+    public void write(@NonNull INDArray features, int[] labels) throws IOException {
+        Preconditions.checkState(channel != null, "Writer is already closed");
+        long num = features.length() / exampleLength;
+        Preconditions.checkArgument(num * exampleLength == features.length() && features.size(-1) == width
+                        && features.size(-2) == height, "Features shape %s doesn't match image shape [%s, %s, %s]",
+                        features.shapeInfoToString(), channels, height, width);
+        Preconditions.checkArgument(!hasLabels || (labels != null && labels.length == num),
+                        "Expected %s labels, got %s", num, labels == null ? 0 : labels.length);
+
+        float[] data = Nd4j.toFlattened('c', features).data().asFloat();
+        for (int i = 0; i < num; i++)
+            writeExample(data, (int) (i * exampleLength), hasLabels ? labels[i] : -1);
+    }
+
+    protected void writeExample(float[] data, int offset, int label) throws IOException {
+        int len = (int) exampleLength;
+        int bytes = len * ImageCache.elementSize(format);
+        if (buffer == null || buffer.capacity() < bytes)
+            buffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.clear();
+        if (format == ImageCache.Format.FLOAT) {
+            buffer.asFloatBuffer().put(data, offset, len);
+        } else {
+            for (int j = 0; j < len; j++)
+                buffer.put(j, (byte) Math.max(0, Math.min(255, Math.round(data[offset + j]))));
+        }
+        buffer.limit(bytes);
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+
+        classes.write(label & 0xFF);
+        classes.write((label >>> 8) & 0xFF);
+        classes.write((label >>> 16) & 0xFF);
+        classes.write((label >>> 24) & 0xFF);
+        numExamples++;
+    }
+
+    /**
+     * This method writes labels block and finalizes the file. Cache can't be used before writer is closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel == null)
+            return;
+
+        try {
+            long labelsOffset = channel.position();
+            channel.write(ByteBuffer.wrap(classes.toByteArray()), labelsOffset);
+
+            ByteArrayOutputStream preamble = new ByteArrayOutputStream();
+            try (DataOutputStream dos = new DataOutputStream(preamble)) {
+                writePreamble(dos, numExamples, featuresOffset, labelsOffset);
+            }
+            channel.write(ByteBuffer.wrap(preamble.toByteArray()), 0);
+            channel.force(false);
+        } finally {
+            raf.close();
+            channel = null;
+            raf = null;
+        }
+    }
+
+    /**
+     * This method drains given image record reader into new cache file. Reader should be initialized, and
+     * shouldn't shuffle images randomly if cache is supposed to be reproducible.
+     * PLEASE NOTE: only class labels are stored, labels of regression readers are dropped.
+     *
+     * @param reader    initialized record reader, images are read via {@link BaseImageRecordReader#next(int)}
+     * @param file      file to write
+     * @param format    pixel storage format
+     * @param batchSize number of images decoded per call
+     * @return opened cache
+     * @throws IOException
+     */
+    public static ImageCache write(@NonNull BaseImageRecordReader reader, @NonNull File file,
+                    @NonNull ImageCache.Format format, int batchSize) throws IOException {
+        Preconditions.checkArgument(batchSize > 0, "Batch size must be > 0: got %s", batchSize);
+        List<String> labels = reader.getLabels() == null ? Collections.<String>emptyList() : reader.getLabels();
+
+        ImageCacheWriter writer = null;
+        try {
+            while (reader.hasNext()) {
+                List<List<Writable>> batch = reader.next(batchSize);
+                List<INDArray> arrays;
+                if (batch instanceof NDArrayRecordBatch) {
+                    arrays = ((NDArrayRecordBatch) batch).getArrays();
+                } else {
+                    arrays = new ArrayList<>();
+                    List<INDArray> f = new ArrayList<>();
+                    List<INDArray> l = new ArrayList<>();
+                    for (List<Writable> record : batch) {
+                        f.add(((NDArrayWritable) record.get(0)).get());
+                        if (record.size() > 1)
+                            l.add(Nd4j.scalar(record.get(1).toDouble()).reshape(1, 1));
+                    }
+                    arrays.add(Nd4j.concat(0, f.toArray(new INDArray[f.size()])));
+                    if (!l.isEmpty())
+                        arrays.add(Nd4j.concat(0, l.toArray(new INDArray[l.size()])));
+                }
+
+                INDArray features = arrays.get(0);
+                if (writer == null)
+                    writer = new ImageCacheWriter(file, format, features.size(1), features.size(2), features.size(3),
+                                    arrays.size() > 1 ? labels : Collections.<String>emptyList());
+
+                int[] classes = null;
+                if (arrays.size() > 1) {
+                    INDArray l = arrays.get(1);
+                    classes = new int[(int) l.size(0)];
+                    for (int i = 0; i < classes.length; i++) {
+                        // one-hot labels from batched reader, or class indices
+                        classes[i] = l.size(1) > 1 ? Nd4j.argMax(l.getRow(i), 1).getInt(0) : l.getInt(i, 0);
+                    }
+                }
+                writer.write(features, classes);
+            }
+        } finally {
+            if (writer != null)
+                writer.close();
+        }
+
+        if (writer == null)
+            throw new IllegalStateException("Record reader has no images");
+
+        log.info("Image cache written: {} images in {}", writer.numExamples, file);
+        return ImageCache.open(file);
+    }
+}
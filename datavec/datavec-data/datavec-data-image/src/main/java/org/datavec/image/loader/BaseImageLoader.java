@@ -58,6 +58,13 @@ public abstract class BaseImageLoader implements Serializable {
         return ALLOWED_FORMATS;
     }
 
+    /**
+     * Returns the image transform applied by this loader, or null if none
+     */
+    public ImageTransform getImageTransform() {
+        return imageTransform;
+    }
+
     public abstract INDArray asRowVector(File f) throws IOException;
 
     public abstract INDArray asRowVector(InputStream inputStream) throws IOException;
@@ -30,6 +30,7 @@ import org.datavec.api.records.reader.BaseRecordReader;
 import org.datavec.api.split.FileSplit;
 import org.datavec.api.split.InputSplit;
 import org.datavec.api.split.InputStreamInputSplit;
+import org.datavec.api.transform.serde.JsonMappers;
 import org.datavec.api.util.files.FileFromPathIterator;
 import org.datavec.api.util.files.URIUtil;
 import org.datavec.api.util.ndarray.RecordConverter;
@@ -40,18 +41,29 @@ import org.datavec.api.writable.batch.NDArrayRecordBatch;
 import org.datavec.image.loader.BaseImageLoader;
 import org.datavec.image.loader.ImageLoader;
 import org.datavec.image.loader.NativeImageLoader;
+import org.datavec.image.transform.BaseImageTransform;
 import org.datavec.image.transform.ImageTransform;
+import org.datavec.image.transform.PipelineImageTransform;
 import org.nd4j.linalg.api.concurrency.AffinityManager;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.primitives.Pair;
+import org.nd4j.shade.jackson.annotation.JsonIgnoreProperties;
+import org.nd4j.shade.jackson.databind.ObjectMapper;
 
 import java.io.*;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Base class for the image record reader
  *
+ * PLEASE NOTE: by default images are decoded one by one on the caller thread. Use
+ * {@link #setNumDecodeThreads(int)} to decode and augment images of each {@link #next(int)} batch in parallel,
+ * and {@link #setAugmentationSeed(Long)} to get reproducible augmentation regardless of number of threads.
+ *
  * @author Adam Gibson
  */
 @Slf4j
@@ -77,6 +89,18 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
     protected int patternPosition = 0;
     @Getter @Setter
     protected boolean logLabelCountOnInit = true;
+    @Getter
+    protected int numDecodeThreads = 1;
+    @Getter @Setter
+    protected Long augmentationSeed = null;
+
+    private static ObjectMapper copyMapper;
+
+    protected ExecutorService decodePool;
+    protected ThreadLocal<NativeImageLoader> decodeLoaders;
+    protected long decodeSeed = new Random().nextLong();
+    protected long epoch = 0;
+    protected long exampleCounter = 0;
 
     public final static String HEIGHT = NAME_SPACE + ".height";
     public final static String WIDTH = NAME_SPACE + ".width";
@@ -195,6 +219,7 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
      */
     public void initialize(InputSplit split, ImageTransform imageTransform) throws IOException {
         this.imageLoader = null;
+        this.decodeLoaders = null;
         this.imageTransform = imageTransform;
         initialize(split);
     }
@@ -211,6 +236,7 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
     public void initialize(Configuration conf, InputSplit split, ImageTransform imageTransform)
             throws IOException, InterruptedException {
         this.imageLoader = null;
+        this.decodeLoaders = null;
         this.imageTransform = imageTransform;
         initialize(conf, split);
     }
@@ -237,7 +263,13 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
                 return next();
             try {
                 invokeListeners(image);
-                INDArray row = imageLoader.asMatrix(image);
+                INDArray row;
+                if (augmentationSeed != null && imageLoader instanceof NativeImageLoader) {
+                    NativeImageLoader loader = decodeLoader(exampleCounter++);
+                    row = loader.asMatrix(image);
+                } else {
+                    row = imageLoader.asMatrix(image);
+                }
                 Nd4j.getAffinityManager().ensureLocation(row, AffinityManager.Location.DEVICE);
                 ret = RecordConverter.toRecord(row);
                 if (appendLabel || writeLabel){
@@ -328,13 +360,17 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
 
         INDArray features = Nd4j.createUninitialized(new long[] {cnt, channels, height, width}, 'c');
         Nd4j.getAffinityManager().tagLocation(features, AffinityManager.Location.HOST);
-        for (int i = 0; i < cnt; i++) {
-            try {
-                ((NativeImageLoader) imageLoader).asMatrixView(currBatch.get(i),
-                        features.tensorAlongDimension(i, 1, 2, 3));
-            } catch (Exception e) {
-                System.out.println("Image file failed during load: " + currBatch.get(i).getAbsolutePath());
-                throw new RuntimeException(e);
+        if (numDecodeThreads > 1 || augmentationSeed != null) {
+            loadBatch(currBatch, features);
+        } else {
+            for (int i = 0; i < cnt; i++) {
+                try {
+                    ((NativeImageLoader) imageLoader).asMatrixView(currBatch.get(i),
+                            features.tensorAlongDimension(i, 1, 2, 3));
+                } catch (Exception e) {
+                    System.out.println("Image file failed during load: " + currBatch.get(i).getAbsolutePath());
+                    throw new RuntimeException(e);
+                }
             }
         }
         Nd4j.getAffinityManager().ensureLocation(features, AffinityManager.Location.DEVICE);
@@ -384,9 +420,180 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
         return new NDArrayRecordBatch(ret);
     }
 
+    /**
+     * This method decodes given files into the rows of preallocated features array, using decode pool if available.
+     * Each example gets its own loader with a copy of the image transform, reseeded for this specific example.
+     *
+     * @param files    files to decode
+     * @param features preallocated array of shape [files.size(), channels, height, width]
+     */
+    protected void loadBatch(List<File> files, INDArray features) {
+        List<Callable<Void>> tasks = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            final File file = files.get(i);
+            final INDArray view = features.tensorAlongDimension(i, 1, 2, 3);
+            final long example = exampleCounter++;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    try {
+                        decodeLoader(example).asMatrixView(file, view);
+                    } catch (Exception e) {
+                        throw new IOException("Image file failed during load: " + file.getAbsolutePath(), e);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        if (numDecodeThreads <= 1) {
+            for (Callable<Void> task : tasks) {
+                try {
+                    task.call();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return;
+        }
+
+        try {
+            List<Future<Void>> futures = getDecodePool().invokeAll(tasks);
+            for (Future<Void> future : futures)
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * This method returns image loader for the current thread, with image transform reseeded for the given example.
+     * Transforms aren't thread safe, so each thread gets its own copy of the transform.
+     */
+    protected NativeImageLoader decodeLoader(long example) {
+        NativeImageLoader loader = getDecodeLoaders().get();
+        if (loader.getImageTransform() != null)
+            reseed(loader.getImageTransform(), exampleSeed(example));
+
+        return loader;
+    }
+
+    /**
+     * This method returns seed for the given example: it depends only on augmentation seed, epoch and position of
+     * the example within the epoch, so results don't depend on the number of decode threads.
+     */
+    protected long exampleSeed(long example) {
+        long z = (augmentationSeed != null ? augmentationSeed : decodeSeed) + epoch * 0x9E3779B97F4A7C15L
+                + (example + 1) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * This method reseeds random transforms with the given seed. Transforms created without Random stay deterministic.
+     */
+    protected static void reseed(ImageTransform transform, long seed) {
+        if (transform instanceof PipelineImageTransform) {
+            PipelineImageTransform pipeline = (PipelineImageTransform) transform;
+            pipeline.setSeed(seed);
+            if (pipeline.getRandom() != null)
+                pipeline.getRandom().setSeed(seed);
+
+            int cnt = 1;
+            for (Pair<ImageTransform, Double> pair : pipeline.getImageTransforms())
+                reseed(pair.getFirst(), seed + cnt++);
+        } else if (transform instanceof BaseImageTransform) {
+            Random random = ((BaseImageTransform) transform).getRandom();
+            if (random != null)
+                random.setSeed(seed);
+        }
+    }
+
+    /**
+     * This method creates a copy of the image transform, via JSON serialization.
+     * Random instances aren't copied: copies get new Random instances, which are reseeded for each example anyway.
+     */
+    protected static ImageTransform copyTransform(ImageTransform transform) {
+        if (transform == null)
+            return null;
+
+        try {
+            ObjectMapper mapper = getCopyMapper();
+            String json = mapper.writeValueAsString(transform);
+            return mapper.readValue(json, ImageTransform.class);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to copy image transform " + transform
+                    + " for parallel decoding, use numDecodeThreads = 1 and no augmentation seed instead", e);
+        }
+    }
+
+    protected synchronized ThreadLocal<NativeImageLoader> getDecodeLoaders() {
+        if (decodeLoaders == null) {
+            final ImageTransform transform = imageTransform;
+            decodeLoaders = new ThreadLocal<NativeImageLoader>() {
+                @Override
+                protected NativeImageLoader initialValue() {
+                    return new NativeImageLoader(height, width, channels, copyTransform(transform));
+                }
+            };
+        }
+        return decodeLoaders;
+    }
+
+    protected static synchronized ObjectMapper getCopyMapper() {
+        if (copyMapper == null) {
+            copyMapper = JsonMappers.getMapper().copy();
+            copyMapper.addMixIn(Random.class, RandomMixIn.class);
+        }
+        return copyMapper;
+    }
+
+    @JsonIgnoreProperties({"seed", "nextNextGaussian", "haveNextNextGaussian"})
+    private static abstract class RandomMixIn {
+    }
+
+    protected synchronized ExecutorService getDecodePool() {
+        if (decodePool == null) {
+            final AtomicInteger threadCount = new AtomicInteger(0);
+            decodePool = Executors.newFixedThreadPool(numDecodeThreads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "ImageRecordReader decode thread " + threadCount.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return decodePool;
+    }
+
+    /**
+     * This method sets number of threads used to decode and transform images in {@link #next(int)}.
+     * Default value is 1: images are decoded on the caller thread.
+     *
+     * @param numDecodeThreads number of decode threads, must be >= 1
+     */
+    public void setNumDecodeThreads(int numDecodeThreads) {
+        Preconditions.checkArgument(numDecodeThreads > 0, "Number of decode threads must be > 0: got " + numDecodeThreads);
+        if (numDecodeThreads != this.numDecodeThreads)
+            shutdownDecodePool();
+        this.numDecodeThreads = numDecodeThreads;
+    }
+
+    protected synchronized void shutdownDecodePool() {
+        if (decodePool != null) {
+            decodePool.shutdownNow();
+            decodePool = null;
+        }
+    }
+
     @Override
     public void close() throws IOException {
-        //No op
+        shutdownDecodePool();
     }
 
     @Override
@@ -455,6 +662,8 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
         if (inputSplit == null)
             throw new UnsupportedOperationException("Cannot reset without first initializing");
         inputSplit.reset();
+        epoch++;
+        exampleCounter = 0;
         if (iter != null) {
             iter = new FileFromPathIterator(inputSplit.locationsPathIterator());
         } else if (record != null) {
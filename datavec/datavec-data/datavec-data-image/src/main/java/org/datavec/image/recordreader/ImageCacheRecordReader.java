@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.image.recordreader;
+
+import com.google.common.base.Preconditions;
+import lombok.Getter;
+import org.datavec.api.conf.Configuration;
+import org.datavec.api.records.Record;
+import org.datavec.api.records.metadata.RecordMetaData;
+import org.datavec.api.records.metadata.RecordMetaDataIndex;
+import org.datavec.api.records.reader.BaseRecordReader;
+import org.datavec.api.split.InputSplit;
+import org.datavec.api.writable.IntWritable;
+import org.datavec.api.writable.NDArrayWritable;
+import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.NDArrayRecordBatch;
+import org.datavec.image.cache.ImageCache;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.*;
+
+/**
+ * Record reader for images pre-decoded into {@link ImageCache} file by
+ * {@link org.datavec.image.cache.ImageCacheWriter}. Records have the same layout as {@link ImageRecordReader}
+ * records: image of shape [1, channels, height, width], followed by class index if cache has labels.
+ * Batches from {@link #next(int)} contain one-hot labels, just like batches of {@link ImageRecordReader}.
+ *
+ * Examples can be shuffled: order is reshuffled on each {@link #reset()}, reproducibly for the given seed.
+ */
+public class ImageCacheRecordReader extends BaseRecordReader {
+    protected final boolean shuffle;
+    protected final Random rng;
+
+    @Getter
+    protected ImageCache cache;
+    protected URI location;
+    protected int[] order;
+    protected int position;
+    protected Configuration conf;
+
+    /**
+     * Reads examples in the order they were written
+     */
+    public ImageCacheRecordReader() {
+        this(false, 0);
+    }
+
+    /**
+     * @param shuffle if true, examples are returned in random order, different for each epoch
+     * @param seed    seed used for shuffling
+     */
+    public ImageCacheRecordReader(boolean shuffle, long seed) {
+        this.shuffle = shuffle;
+        this.rng = new Random(seed);
+    }
+
+    @Override
+    public void initialize(InputSplit split) throws IOException, InterruptedException {
+        URI[] locations = split.locations();
+        if (locations == null || locations.length != 1)
+            throw new IllegalArgumentException("Expected split with exactly one image cache file, got "
+                            + (locations == null ? 0 : locations.length) + " locations");
+
+        initialize(new File(locations[0]));
+    }
+
+    /**
+     * This method opens given cache file
+     *
+     * @param file image cache file
+     */
+    public void initialize(File file) throws IOException {
+        if (cache != null)
+            cache.close();
+
+        this.location = file.toURI();
+        this.cache = ImageCache.open(file);
+        this.order = new int[cache.getNumExamples()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+
+        reset();
+    }
+
+    @Override
+    public void initialize(Configuration conf, InputSplit split) throws IOException, InterruptedException {
+        this.conf = conf;
+        initialize(split);
+    }
+
+    @Override
+    public boolean batchesSupported() {
+        return true;
+    }
+
+    @Override
+    public List<List<Writable>> next(int num) {
+        Preconditions.checkArgument(num > 0, "Number of examples must be > 0: got " + num);
+        if (!hasNext())
+            throw new NoSuchElementException("No next element");
+
+        int cnt = Math.min(num, order.length - position);
+        int from = order[position];
+        boolean contiguous = true;
+        int[] indices = new int[cnt];
+        for (int i = 0; i < cnt; i++) {
+            indices[i] = order[position + i];
+            contiguous &= indices[i] == from + i;
+        }
+        position += cnt;
+
+        // contiguous ranges are copied at once
+        INDArray features = contiguous ? cache.getBatch(from, cnt) : cache.getBatch(indices);
+
+        List<INDArray> ret = new ArrayList<>();
+        ret.add(features);
+        if (!cache.getLabels().isEmpty()) {
+            INDArray labels = Nd4j.create(cnt, cache.getLabels().size(), 'c');
+            for (int i = 0; i < cnt; i++)
+                labels.putScalar(i, cache.getLabel(indices[i]), 1.0f);
+            ret.add(labels);
+        }
+
+        return new NDArrayRecordBatch(ret);
+    }
+
+    @Override
+    public List<Writable> next() {
+        if (!hasNext())
+            throw new NoSuchElementException("No next element");
+
+        List<Writable> ret = record(order[position++]);
+        invokeListeners(ret);
+        return ret;
+    }
+
+    protected List<Writable> record(int index) {
+        List<Writable> ret = new ArrayList<>(2);
+        ret.add(new NDArrayWritable(cache.get(index)));
+        if (!cache.getLabels().isEmpty())
+            ret.add(new IntWritable(cache.getLabel(index)));
+        return ret;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (cache == null)
+            throw new IllegalStateException("Record reader wasn't initialized");
+        return position < order.length;
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return cache == null ? null : cache.getLabels();
+    }
+
+    @Override
+    public void reset() {
+        if (cache == null)
+            throw new UnsupportedOperationException("Cannot reset without first initializing");
+
+        position = 0;
+        if (shuffle) {
+            for (int i = order.length - 1; i > 0; i--) {
+                int j = rng.nextInt(i + 1);
+                int t = order[i];
+                order[i] = order[j];
+                order[j] = t;
+            }
+        }
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return true;
+    }
+
+    @Override
+    public List<Writable> record(URI uri, DataInputStream dataInputStream) throws IOException {
+        throw new UnsupportedOperationException(
+                        "Generating records from DataInputStream not supported for ImageCacheRecordReader");
+    }
+
+    @Override
+    public Record nextRecord() {
+        if (!hasNext())
+            throw new NoSuchElementException("No next element");
+
+        int index = order[position];
+        List<Writable> next = next();
+        return new org.datavec.api.records.impl.Record(next,
+                        new RecordMetaDataIndex(index, location, ImageCacheRecordReader.class));
+    }
+
+    @Override
+    public Record loadFromMetaData(RecordMetaData recordMetaData) throws IOException {
+        return loadFromMetaData(Collections.singletonList(recordMetaData)).get(0);
+    }
+
+    @Override
+    public List<Record> loadFromMetaData(List<RecordMetaData> recordMetaDatas) throws IOException {
+        List<Record> out = new ArrayList<>(recordMetaDatas.size());
+        for (RecordMetaData meta : recordMetaDatas) {
+            if (!(meta instanceof RecordMetaDataIndex))
+                throw new IllegalArgumentException("Expected RecordMetaDataIndex; got: " + meta);
+
+            int index = (int) ((RecordMetaDataIndex) meta).getIndex();
+            out.add(new org.datavec.api.records.impl.Record(record(index), meta));
+        }
+        return out;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (cache != null)
+            cache.close();
+        cache = null;
+    }
+
+    @Override
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+    }
+
+    @Override
+    public Configuration getConf() {
+        return conf;
+    }
+}
@@ -22,6 +22,7 @@ import lombok.NonNull;
 import org.datavec.image.data.ImageWritable;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.primitives.Pair;
+import org.nd4j.shade.jackson.annotation.JsonIgnoreProperties;
 
 import java.util.*;
 
@@ -43,14 +44,20 @@ import static org.bytedeco.javacpp.opencv_core.Mat;
  * @author crockpotveggies
  */
 @Data
+@JsonIgnoreProperties({"rng", "currentTransforms", "converter", "currentImage"})
 public class PipelineImageTransform extends BaseImageTransform<Mat> {
 
     protected List<Pair<ImageTransform, Double>> imageTransforms;
     protected boolean shuffle;
+    protected long seed;
     protected org.nd4j.linalg.api.rng.Random rng;
 
     protected List<ImageTransform> currentTransforms = new ArrayList<>();
 
+    protected PipelineImageTransform() {
+        // used by JSON deserialization
+    }
+
     public PipelineImageTransform(ImageTransform... transforms) {
         this(1234, false, transforms);
     }
@@ -65,6 +72,7 @@ public class PipelineImageTransform extends BaseImageTransform<Mat> {
 
         this.imageTransforms = pipeline;
         this.shuffle = shuffle;
+        this.seed = seed;
         this.rng = Nd4j.getRandom();
         rng.setSeed(seed);
     }
@@ -90,6 +98,7 @@ public class PipelineImageTransform extends BaseImageTransform<Mat> {
         super(random); // used by the transforms in the pipeline
         this.imageTransforms = transforms;
         this.shuffle = shuffle;
+        this.seed = seed;
         this.rng = Nd4j.getRandom();
         rng.setSeed(seed);
     }
@@ -103,8 +112,13 @@ public class PipelineImageTransform extends BaseImageTransform<Mat> {
      */
     @Override
     protected ImageWritable doTransform(ImageWritable image, Random random) {
+        // pipeline restored from JSON has no RNG yet
+        if (rng == null) {
+            rng = Nd4j.getRandomFactory().getNewRandomInstance(seed);
+        }
+
         if (shuffle) {
-            Collections.shuffle(imageTransforms);
+            Collections.shuffle(imageTransforms, new Random(rng.nextLong()));
         }
 
         currentTransforms.clear();
@@ -121,6 +135,17 @@ public class PipelineImageTransform extends BaseImageTransform<Mat> {
         return image;
     }
 
+    /**
+     * This method sets RNG seed for this pipeline, used for shuffling and for execution probabilities
+     *
+     * @param seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        if (rng != null)
+            rng.setSeed(seed);
+    }
+
     @Override
     public float[] query(float... coordinates) {
         for (ImageTransform transform : currentTransforms) {
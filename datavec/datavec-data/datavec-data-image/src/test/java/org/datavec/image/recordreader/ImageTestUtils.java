@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.image.recordreader;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Fixtures shared by image record reader tests
+ */
+public class ImageTestUtils {
+
+    private ImageTestUtils() {}
+
+    /**
+     * This method writes random 24x24 RGB png images, into one sub-directory per class: parent/class0, parent/class1...
+     *
+     * @return parent directory
+     */
+    public static File makeImages(File parent, int numClasses, int numPerClass) throws IOException {
+        Random r = new Random(12345);
+        for (int c = 0; c < numClasses; c++) {
+            File dir = new File(parent, "class" + c);
+            assertTrue(dir.mkdirs());
+            for (int i = 0; i < numPerClass; i++) {
+                BufferedImage img = new BufferedImage(24, 24, BufferedImage.TYPE_INT_RGB);
+                for (int x = 0; x < 24; x++)
+                    for (int y = 0; y < 24; y++)
+                        img.setRGB(x, y, r.nextInt(0xFFFFFF));
+                ImageIO.write(img, "png", new File(dir, i + ".png"));
+            }
+        }
+        return parent;
+    }
+}
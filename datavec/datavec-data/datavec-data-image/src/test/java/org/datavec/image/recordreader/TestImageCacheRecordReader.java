@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.image.recordreader;
+
+import org.datavec.api.io.labels.ParentPathLabelGenerator;
+import org.datavec.api.split.FileSplit;
+import org.datavec.api.writable.NDArrayWritable;
+import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.NDArrayRecordBatch;
+import org.datavec.image.cache.ImageCache;
+import org.datavec.image.cache.ImageCacheWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.api.preprocessor.ImagePreProcessingScaler;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TestImageCacheRecordReader {
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    @Test
+    public void testCacheMatchesImageRecordReader() throws Exception {
+        File parent = ImageTestUtils.makeImages(testDir.newFolder(), 3, 7);
+
+        for (ImageCache.Format format : ImageCache.Format.values()) {
+            File cacheFile = testDir.newFile();
+            ImageRecordReader source = new ImageRecordReader(16, 16, 3, new ParentPathLabelGenerator());
+            source.initialize(new FileSplit(parent));
+            ImageCache cache = ImageCacheWriter.write(source, cacheFile, format, 5);
+            assertEquals(21, cache.getNumExamples());
+            assertEquals(source.getLabels(), cache.getLabels());
+            cache.close();
+
+            ImageRecordReader expRR = new ImageRecordReader(16, 16, 3, new ParentPathLabelGenerator());
+            expRR.initialize(new FileSplit(parent));
+            ImageCacheRecordReader rr = new ImageCacheRecordReader();
+            rr.initialize(new FileSplit(cacheFile));
+            assertEquals(expRR.getLabels(), rr.getLabels());
+
+            for (int epoch = 0; epoch < 2; epoch++) {
+                while (expRR.hasNext()) {
+                    assertTrue(rr.hasNext());
+                    List<INDArray> exp = ((NDArrayRecordBatch) expRR.next(4)).getArrays();
+                    List<INDArray> act = ((NDArrayRecordBatch) rr.next(4)).getArrays();
+                    assertEquals(format.toString(), exp, act);
+                }
+                assertFalse(rr.hasNext());
+                expRR.reset();
+                rr.reset();
+            }
+
+            // single examples and random access
+            List<Writable> first = rr.next();
+            assertEquals(2, first.size());
+            assertArrayEquals(new long[] {1, 3, 16, 16}, ((NDArrayWritable) first.get(0)).get().shape());
+            assertEquals(rr.getCache().get(0), ((NDArrayWritable) first.get(0)).get());
+            assertEquals(rr.getCache().getBatch(new int[] {3, 4}), rr.getCache().getBatch(3, 2));
+            rr.close();
+        }
+    }
+
+    @Test
+    public void testInPlacePreProcessingDoesntAffectNextEpoch() throws Exception {
+        File parent = ImageTestUtils.makeImages(testDir.newFolder(), 2, 5);
+        File cacheFile = testDir.newFile();
+        ImageRecordReader source = new ImageRecordReader(8, 8, 3, new ParentPathLabelGenerator());
+        source.initialize(new FileSplit(parent));
+        ImageCacheWriter.write(source, cacheFile, ImageCache.Format.FLOAT, 4).close();
+        assertTrue(cacheFile.canWrite());
+
+        ImagePreProcessingScaler scaler = new ImagePreProcessingScaler();
+        ImageCacheRecordReader rr = new ImageCacheRecordReader();
+        rr.initialize(new FileSplit(cacheFile));
+
+        List<List<INDArray>> epochs = new ArrayList<>();
+        for (int epoch = 0; epoch < 2; epoch++) {
+            List<INDArray> features = new ArrayList<>();
+            while (rr.hasNext()) {
+                INDArray f = ((NDArrayRecordBatch) rr.next(4)).getArrays().get(0);
+                // scaler modifies features in place
+                scaler.preProcess(f);
+                features.add(f);
+            }
+            epochs.add(features);
+            rr.reset();
+        }
+        rr.close();
+
+        assertEquals(epochs.get(0), epochs.get(1));
+        assertTrue(epochs.get(0).get(0).maxNumber().doubleValue() <= 1.0);
+    }
+
+    @Test
+    public void testShuffle() throws Exception {
+        File parent = ImageTestUtils.makeImages(testDir.newFolder(), 2, 10);
+        File cacheFile = testDir.newFile();
+        ImageRecordReader source = new ImageRecordReader(8, 8, 1, new ParentPathLabelGenerator());
+        source.initialize(new FileSplit(parent));
+        ImageCacheWriter.write(source, cacheFile, ImageCache.Format.UINT8, 8).close();
+
+        List<List<String>> epochs = new ArrayList<>();
+        for (int run = 0; run < 2; run++) {
+            ImageCacheRecordReader rr = new ImageCacheRecordReader(true, 12345);
+            rr.initialize(new FileSplit(cacheFile));
+            for (int epoch = 0; epoch < 2; epoch++) {
+                List<String> order = new ArrayList<>();
+                while (rr.hasNext())
+                    order.add(rr.nextRecord().getMetaData().getLocation());
+                try {
+                    rr.nextRecord();
+                    fail("Expected NoSuchElementException");
+                } catch (NoSuchElementException e) {
+                    //OK
+                }
+                epochs.add(order);
+                rr.reset();
+            }
+            rr.close();
+        }
+
+        // same seed: same order, different epochs: different order, same examples
+        assertEquals(epochs.get(0), epochs.get(2));
+        assertEquals(epochs.get(1), epochs.get(3));
+        assertNotEquals(epochs.get(0), epochs.get(1));
+        assertEquals(new HashSet<>(epochs.get(0)), new HashSet<>(epochs.get(1)));
+        assertEquals(20, new HashSet<>(epochs.get(0)).size());
+    }
+}
@@ -32,6 +32,10 @@ import org.datavec.api.writable.DoubleWritable;
 import org.datavec.api.writable.NDArrayWritable;
 import org.datavec.api.writable.Writable;
 import org.datavec.api.writable.batch.NDArrayRecordBatch;
+import org.datavec.image.transform.CropImageTransform;
+import org.datavec.image.transform.FlipImageTransform;
+import org.datavec.image.transform.ImageTransform;
+import org.datavec.image.transform.PipelineImageTransform;
 import org.junit.Ignore;
 import org.junit.Rule;
 import org.junit.Test;
@@ -39,6 +43,7 @@ import org.junit.rules.TemporaryFolder;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.io.ClassPathResource;
+import org.nd4j.linalg.primitives.Pair;
 
 import java.io.File;
 import java.io.IOException;
@@ -275,6 +280,60 @@ public class TestImageRecordReader {
         assertEquals(numFiles, counting.getCount());
     }
 
+    @Test
+    public void testParallelDecode() throws Exception {
+        File parent = ImageTestUtils.makeImages(testDir.newFolder(), 2, 10);
+
+        ImageRecordReader rr1 = new ImageRecordReader(16, 16, 3, new ParentPathLabelGenerator());
+        rr1.initialize(new FileSplit(parent));
+        ImageRecordReader rr4 = new ImageRecordReader(16, 16, 3, new ParentPathLabelGenerator());
+        rr4.setNumDecodeThreads(4);
+        rr4.initialize(new FileSplit(parent));
+
+        while (rr1.hasNext()) {
+            assertTrue(rr4.hasNext());
+            List<INDArray> exp = ((NDArrayRecordBatch) rr1.next(6)).getArrays();
+            List<INDArray> act = ((NDArrayRecordBatch) rr4.next(6)).getArrays();
+            assertEquals(exp, act);
+        }
+        assertFalse(rr4.hasNext());
+        rr4.close();
+    }
+
+    @Test
+    public void testParallelDecodeAugmentationSeed() throws Exception {
+        File parent = ImageTestUtils.makeImages(testDir.newFolder(), 2, 10);
+
+        List<List<INDArray>> expected = null;
+        for (int numThreads : new int[] {1, 3, 8}) {
+            List<Pair<ImageTransform, Double>> pipeline = new ArrayList<>();
+            pipeline.add(new Pair<ImageTransform, Double>(new CropImageTransform(new Random(1), 8), 1.0));
+            pipeline.add(new Pair<ImageTransform, Double>(new FlipImageTransform(new Random(2)), 0.5));
+            ImageTransform transform = new PipelineImageTransform(123, pipeline, true);
+
+            ImageRecordReader rr = new ImageRecordReader(16, 16, 3, new ParentPathLabelGenerator(), transform);
+            rr.setNumDecodeThreads(numThreads);
+            rr.setAugmentationSeed(12345L);
+            rr.initialize(new FileSplit(parent));
+
+            List<List<INDArray>> result = new ArrayList<>();
+            for (int epoch = 0; epoch < 2; epoch++) {
+                while (rr.hasNext())
+                    result.add(((NDArrayRecordBatch) rr.next(7)).getArrays());
+                rr.reset();
+            }
+            rr.close();
+
+            if (expected == null) {
+                expected = result;
+                // different epochs get different augmentation
+                assertNotEquals(expected.get(0).get(0), expected.get(expected.size() / 2).get(0));
+            } else {
+                assertEquals("Number of threads: " + numThreads, expected, result);
+            }
+        }
+    }
+
     private static class TestRegressionLabelGen implements PathLabelGenerator {
 
         @Override
@@ -26,6 +26,7 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -40,17 +41,19 @@ import org.datavec.api.records.Record;
 import org.datavec.api.records.metadata.RecordMetaData;
 import org.datavec.api.records.metadata.RecordMetaDataJdbc;
 import org.datavec.api.records.reader.BaseRecordReader;
+import org.datavec.api.records.reader.ColumnarRecordReader;
 import org.datavec.api.split.InputSplit;
 import org.datavec.api.util.jdbc.JdbcWritableConverter;
 import org.datavec.api.util.jdbc.ResettableResultSetIterator;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.ColumnarRecordBatch;
 
 /**
  * Iterate on rows from a JDBC datasource and return corresponding records
  *
  * @author Adrien Plagnol
  */
-public class JDBCRecordReader extends BaseRecordReader {
+public class JDBCRecordReader extends BaseRecordReader implements ColumnarRecordReader {
 
     private final String query;
     private Connection conn;
@@ -195,20 +198,117 @@ public class JDBCRecordReader extends BaseRecordReader {
         List<Writable> ret = new ArrayList<>();
         invokeListeners(item);
         for (int i = 0; i < item.length; i++) {
-            try {
-                Object columnValue = item[i];
-                if (trimStrings && columnValue instanceof String) {
-                    columnValue = ((String) columnValue).trim();
+            ret.add(toWritable(item[i], columnType(i)));
+        }
+
+        return ret;
+    }
+
+    private Writable toWritable(Object columnValue, int columnType) {
+        if (trimStrings && columnValue instanceof String) {
+            columnValue = ((String) columnValue).trim();
+        }
+        return JdbcWritableConverter.convert(columnValue, columnType);
+    }
+
+    private int columnType(int column) {
+        try {
+            // Note, getColumnType first argument is column number starting from 1
+            return meta.getColumnType(column + 1);
+        } catch (SQLException e) {
+            closeJdbc();
+            throw new RuntimeException("Error reading database metadata");
+        }
+    }
+
+    @Override
+    public boolean batchesSupported() {
+        return true;
+    }
+
+    @Override
+    public List<List<Writable>> next(int num) {
+        List<List<Writable>> ret = new ArrayList<>(Math.min(num, 10000));
+        while (ret.size() < num && hasNext())
+            ret.add(next());
+        return ret;
+    }
+
+    /**
+     * Get up to num records as {@link ColumnarRecordBatch}. Numeric columns without null values are stored in
+     * primitive arrays, so they are converted to INDArrays without creating a Writable per value.
+     */
+    @Override
+    public List<List<Writable>> nextColumnar(int num) {
+        List<Object[]> rows = new ArrayList<>(Math.min(num, 10000));
+        while (rows.size() < num && iter.hasNext()) {
+            Object[] next = iter.next();
+            invokeListeners(next);
+            rows.add(next);
+        }
+
+        if (rows.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        int numColumns = rows.get(0).length;
+        Object[] columns = new Object[numColumns];
+        for (int i = 0; i < numColumns; i++) {
+            columns[i] = toColumn(rows, i);
+        }
+        return new ColumnarRecordBatch(rows.size(), columns);
+    }
+
+    private Object toColumn(List<Object[]> rows, int column) {
+        int n = rows.size();
+        int type = columnType(column);
+
+        boolean hasNulls = false;
+        for (Object[] row : rows) {
+            hasNulls |= row[column] == null;
+        }
+
+        if (!hasNulls) {
+            switch (type) {
+                case Types.DOUBLE:
+                case Types.DECIMAL:
+                case Types.NUMERIC: {
+                    double[] ret = new double[n];
+                    for (int i = 0; i < n; i++) {
+                        ret[i] = ((Number) rows.get(i)[column]).doubleValue();
+                    }
+                    return ret;
+                }
+                case Types.FLOAT: {
+                    float[] ret = new float[n];
+                    for (int i = 0; i < n; i++) {
+                        ret[i] = ((Number) rows.get(i)[column]).floatValue();
+                    }
+                    return ret;
+                }
+                case Types.INTEGER:
+                case Types.SMALLINT:
+                case Types.TINYINT: {
+                    int[] ret = new int[n];
+                    for (int i = 0; i < n; i++) {
+                        ret[i] = ((Number) rows.get(i)[column]).intValue();
+                    }
+                    return ret;
+                }
+                case Types.BIGINT: {
+                    long[] ret = new long[n];
+                    for (int i = 0; i < n; i++) {
+                        ret[i] = ((Number) rows.get(i)[column]).longValue();
+                    }
+                    return ret;
                 }
-                // Note, getColumnType first argument is column number starting from 1
-                Writable writable = JdbcWritableConverter.convert(columnValue, meta.getColumnType(i + 1));
-                ret.add(writable);
-            } catch (SQLException e) {
-                closeJdbc();
-                throw new RuntimeException("Error reading database metadata");
             }
         }
 
+        Writable[] ret = new Writable[n];
+        for (int i = 0; i < n; i++) {
+            ret[i] = toWritable(rows.get(i)[column], type);
+        }
         return ret;
     }
 
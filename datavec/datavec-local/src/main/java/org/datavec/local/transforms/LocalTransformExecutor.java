@@ -23,6 +23,9 @@ import lombok.val;
 import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.memory.RootAllocator;
 import org.apache.arrow.vector.FieldVector;
+import org.datavec.api.records.reader.RecordReader;
+import org.datavec.api.records.writer.RecordWriter;
+import org.datavec.api.records.writer.SequenceRecordWriter;
 import org.datavec.api.transform.DataAction;
 import org.datavec.api.transform.Transform;
 import org.datavec.api.transform.TransformProcess;
@@ -37,6 +40,10 @@ import org.datavec.api.transform.sequence.ConvertToSequence;
 import org.datavec.api.transform.sequence.SequenceSplit;
 import org.datavec.api.writable.*;
 import org.datavec.arrow.ArrowConverter;
+import org.datavec.arrow.recordreader.ArrowStreamRecordWriter;
+import org.datavec.arrow.recordreader.ArrowWritableRecordBatch;
+import org.datavec.local.transforms.columnar.ColumnarTransformProcess;
+import org.datavec.local.transforms.external.*;
 import org.datavec.local.transforms.functions.EmptyRecordFunction;
 import org.datavec.local.transforms.join.ExecuteJoinFromCoGroupFlatMapFunction;
 import org.datavec.local.transforms.join.ExtractKeysFunction;
@@ -51,14 +58,21 @@ import org.nd4j.linalg.function.Function;
 import org.nd4j.linalg.function.FunctionalUtils;
 import org.nd4j.linalg.primitives.Pair;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.*;
 import java.util.function.BiPredicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.util.stream.Collectors.toList;
 
 /**
  * Local transform executor
+ *
+ * For parallel, partitioned execution of TransformProcesses see
+ * {@link org.datavec.local.transforms.parallel.ParallelTransformExecutor}
  */
 @Slf4j
 public class LocalTransformExecutor {
@@ -93,6 +107,179 @@ public class LocalTransformExecutor {
         return execute(filteredSequence, null, transformProcess).getFirst();
     }
 
+    /**
+     * Execute the specified TransformProcess with the given input data, in columnar mode: values are kept in primitive
+     * arrays, and each step is applied to the whole column at once. See {@link ColumnarTransformProcess} for details.<br>
+     * Note: only TransformProcesses consisting of transforms and filters over non-sequence data can be executed this way,
+     * other TransformProcesses are executed via {@link #execute(List, TransformProcess)}<br>
+     * Note: TransformProcess is compiled on each call, use {@link #executeColumnar(List, ColumnarTransformProcess)}
+     * to execute the same TransformProcess repeatedly
+     *
+     * @param inputWritables   Input data to process
+     * @param transformProcess TransformProcess to execute
+     * @return Processed data
+     */
+    public static List<List<Writable>> executeColumnar(List<List<Writable>> inputWritables,
+                                                       TransformProcess transformProcess) {
+        if (!ColumnarTransformProcess.canCompile(transformProcess)) {
+            log.debug("TransformProcess can't be executed in columnar mode, falling back to row-wise execution");
+            return execute(inputWritables, transformProcess);
+        }
+
+        return executeColumnar(inputWritables, ColumnarTransformProcess.compile(transformProcess));
+    }
+
+    /**
+     * Execute the specified compiled TransformProcess with the given input data, in columnar mode
+     *
+     * @param inputWritables   Input data to process
+     * @param transformProcess TransformProcess compiled with {@link ColumnarTransformProcess#compile(TransformProcess)}
+     * @return Processed data
+     */
+    public static List<List<Writable>> executeColumnar(List<List<Writable>> inputWritables,
+                                                       ColumnarTransformProcess transformProcess) {
+        int numColumns = transformProcess.getTransformProcess().getInitialSchema().numColumns();
+        List<List<Writable>> filtered = inputWritables.stream()
+                .filter(input -> input.size() == numColumns).collect(toList());
+        if(filtered.size() != inputWritables.size()) {
+            log.warn("Filtered out " + (inputWritables.size() - filtered.size()) + " values");
+        }
+
+        return transformProcess.execute(filtered);
+    }
+
+    /**
+     * Execute the specified TransformProcess with the given Arrow input data, in columnar mode. Primitive Arrow vectors
+     * are processed without conversion to Writables.<br>
+     * Note: only TransformProcesses consisting of transforms and filters over non-sequence data can be executed this way,
+     * other TransformProcesses are executed via {@link #execute(List, TransformProcess)}<br>
+     * Note: TransformProcess is compiled on each call, use
+     * {@link #executeColumnar(ArrowWritableRecordBatch, ColumnarTransformProcess)} to execute the same TransformProcess repeatedly
+     *
+     * @param input            Input data to process
+     * @param transformProcess TransformProcess to execute
+     * @return Processed data, as Arrow columns
+     */
+    public static ArrowWritableRecordBatch executeColumnar(ArrowWritableRecordBatch input,
+                                                           TransformProcess transformProcess) {
+        return executeColumnar(input, transformProcess, bufferAllocator);
+    }
+
+    /**
+     * Execute the specified compiled TransformProcess with the given Arrow input data, in columnar mode
+     *
+     * @param input            Input data to process
+     * @param transformProcess TransformProcess compiled with {@link ColumnarTransformProcess#compile(TransformProcess)}
+     * @return Processed data, as Arrow columns
+     */
+    public static ArrowWritableRecordBatch executeColumnar(ArrowWritableRecordBatch input,
+                                                           ColumnarTransformProcess transformProcess) {
+        return transformProcess.execute(input, bufferAllocator);
+    }
+
+    private static ArrowWritableRecordBatch executeColumnar(ArrowWritableRecordBatch input,
+                                                            TransformProcess transformProcess,
+                                                            BufferAllocator allocator) {
+        if (!ColumnarTransformProcess.canCompile(transformProcess)) {
+            log.debug("TransformProcess can't be executed in columnar mode, falling back to row-wise execution");
+            return ArrowConverter.toArrowWritables(ArrowConverter.toArrowColumns(allocator,
+                    transformProcess.getFinalSchema(), execute(input, transformProcess)), transformProcess.getFinalSchema());
+        }
+
+        return ColumnarTransformProcess.compile(transformProcess).execute(input, allocator);
+    }
+
+    /**
+     * Execute the specified TransformProcess over all records of the given reader, batch by batch, writing each
+     * processed batch straight to the given Arrow stream. Only a single batch is held in memory at a time, so
+     * datasets larger than memory can be processed. Arrow batches (for example, from
+     * {@link org.datavec.arrow.recordreader.ArrowStreamRecordReader}) are processed in columnar mode, without
+     * conversion to Writables.<br>
+     * Note: only TransformProcesses consisting of transforms and filters over non-sequence data can be executed this
+     * way, since other steps need the entire dataset
+     *
+     * @param input            Reader to process records of
+     * @param transformProcess TransformProcess to execute
+     * @param output           Writer for processed data, its schema must match the final schema of the TransformProcess.
+     *                         It isn't closed by this method
+     * @param batchSize        Number of records processed at once
+     * @return Number of records written
+     */
+    public static long executeToArrow(RecordReader input, TransformProcess transformProcess,
+                                      ArrowStreamRecordWriter output, int batchSize) throws IOException {
+        return executeToArrow(input, transformProcess, output, batchSize, Long.MAX_VALUE);
+    }
+
+    /**
+     * The same as {@link #executeToArrow(RecordReader, TransformProcess, ArrowStreamRecordWriter, int)}, but memory
+     * allocated for processed Arrow batches is limited
+     *
+     * @param maxAllocation    Maximal number of bytes allocated for processed batch
+     * @return Number of records written
+     */
+    public static long executeToArrow(RecordReader input, TransformProcess transformProcess,
+                                      ArrowStreamRecordWriter output, int batchSize, long maxAllocation)
+            throws IOException {
+        if (maxAllocation <= 0)
+            throw new IllegalArgumentException("Max allocation must be positive: got " + maxAllocation);
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("Batch size must be positive: got " + batchSize);
+        if (transformProcess.getInitialSchema() instanceof SequenceSchema
+                || transformProcess.getFinalSchema() instanceof SequenceSchema)
+            throw new IllegalStateException("Cannot process sequence data with this method");
+        for (DataAction d : transformProcess.getActionList()) {
+            if (d.getTransform() == null && d.getFilter() == null)
+                throw new IllegalStateException("Only transforms and filters can be executed batch by batch, got: " + d);
+        }
+        if (!output.getSchema().sameTypes(transformProcess.getFinalSchema()))
+            throw new IllegalArgumentException("Output schema doesn't match final schema of the TransformProcess: "
+                    + output.getSchema() + " vs " + transformProcess.getFinalSchema());
+
+        //Compiled once, and reused for every batch
+        ColumnarTransformProcess compiled = ColumnarTransformProcess.compile(transformProcess);
+        int numColumns = transformProcess.getInitialSchema().numColumns();
+        long count = 0;
+        //Processed batches are closed right after they're written, so allocator is empty between batches
+        try (BufferAllocator allocator = new RootAllocator(maxAllocation)) {
+            count = executeToArrow(input, compiled, output, batchSize, numColumns, allocator);
+        }
+        output.flush();
+
+        return count;
+    }
+
+    private static long executeToArrow(RecordReader input, ColumnarTransformProcess transformProcess,
+                                       ArrowStreamRecordWriter output, int batchSize, int numColumns,
+                                       BufferAllocator allocator) throws IOException {
+        long count = 0;
+        while (input.hasNext()) {
+            List<List<Writable>> batch = input.next(batchSize);
+            if (batch.isEmpty())
+                continue;
+
+            if (batch instanceof ArrowWritableRecordBatch) {
+                ArrowWritableRecordBatch processed = transformProcess.execute((ArrowWritableRecordBatch) batch, allocator);
+                try {
+                    output.writeBatch(processed);
+                    count += processed.size();
+                } finally {
+                    for (FieldVector v : processed.getList())
+                        v.close();
+                }
+            } else {
+                //Row-wise execution needs at least one record of expected size
+                if (!batch.stream().anyMatch(r -> r.size() == numColumns)) {
+                    log.warn("Filtered out " + batch.size() + " values");
+                    continue;
+                }
+                List<List<Writable>> processed = executeColumnar(batch, transformProcess);
+                output.writeBatch(processed);
+                count += processed.size();
+            }
+        }
+        return count;
+    }
+
     /**
      * Execute the specified TransformProcess with the given input data<br>
      * Note: this method can only be used if the TransformProcess
@@ -599,4 +786,238 @@ public class LocalTransformExecutor {
     }
 
 
+    /**
+     * Execute the specified TransformProcess over all records of the given reader, writing processed records to the
+     * given writer. Unlike {@link #execute(List, TransformProcess)}, data is never collected into memory as a whole:
+     * transforms and filters are applied record by record, while CalculateSortedRank, reductions and conversion to
+     * sequences use external-memory implementations ({@link ExternalSorter}, {@link ExternalReducer}), which spill to
+     * disk once the memory budget is exceeded.<br>
+     * Note: this method can only be used if the TransformProcess returns non-sequence data. For TransformProcesses
+     * that return a sequence, use {@link #executeToSequence(RecordReader, TransformProcess, SequenceRecordWriter, ExternalMemoryConfig)}
+     *
+     * @param input            Reader to process records of
+     * @param transformProcess TransformProcess to execute
+     * @param output           Writer for processed data. It isn't closed by this method
+     * @param config           Memory budget and spill settings
+     * @return Number of records written
+     */
+    public static long execute(RecordReader input, TransformProcess transformProcess, RecordWriter output,
+                               ExternalMemoryConfig config) throws IOException {
+        if (transformProcess.getFinalSchema() instanceof SequenceSchema)
+            throw new IllegalStateException("Cannot return sequence data with this method");
+
+        List<Closeable> resources = new ArrayList<>();
+        try {
+            Iterator<List<Writable>> iterator =
+                    executeExternal(input, transformProcess, config, resources).getFirst().iterator();
+            long count = 0;
+            while (iterator.hasNext()) {
+                output.write(iterator.next());
+                count++;
+            }
+            return count;
+        } finally {
+            closeAll(resources);
+        }
+    }
+
+    /**
+     * Execute the specified TransformProcess over all records of the given reader, writing resulting sequences to the
+     * given writer. See {@link #execute(RecordReader, TransformProcess, RecordWriter, ExternalMemoryConfig)} for details.<br>
+     * Note: this method can only be used if the TransformProcess returns sequence data
+     *
+     * @param input            Reader to process records of
+     * @param transformProcess TransformProcess to execute
+     * @param output           Writer for processed sequences. It isn't closed by this method
+     * @param config           Memory budget and spill settings
+     * @return Number of sequences written
+     */
+    public static long executeToSequence(RecordReader input, TransformProcess transformProcess,
+                                         SequenceRecordWriter output, ExternalMemoryConfig config) throws IOException {
+        if (!(transformProcess.getFinalSchema() instanceof SequenceSchema))
+            throw new IllegalStateException("Cannot return non-sequence data with this method");
+
+        List<Closeable> resources = new ArrayList<>();
+        try {
+            Iterator<List<List<Writable>>> iterator =
+                    executeExternal(input, transformProcess, config, resources).getSecond().iterator();
+            long count = 0;
+            while (iterator.hasNext()) {
+                output.write(iterator.next());
+                count++;
+            }
+            return count;
+        } finally {
+            closeAll(resources);
+        }
+    }
+
+    /**
+     * Execute a join on all records of the given readers, writing joined records to the given writer. Join is
+     * executed as a sort-merge join (see {@link SortMergeJoin}): both sides are sorted by join columns, spilling to disk
+     * once the memory budget is exceeded, so inputs don't need to fit into memory.<br>
+     * Note: joined records are written in order of join columns
+     *
+     * @param join   Join to execute
+     * @param left   Reader of left data for join
+     * @param right  Reader of right data for join
+     * @param output Writer for joined data. It isn't closed by this method
+     * @param config Memory budget and spill settings
+     * @return Number of records written
+     */
+    public static long executeJoin(Join join, RecordReader left, RecordReader right, RecordWriter output,
+                                   ExternalMemoryConfig config) throws IOException {
+        try (SortMergeJoin sortMergeJoin = new SortMergeJoin(join, config)) {
+            while (left.hasNext())
+                sortMergeJoin.addLeft(left.next());
+            while (right.hasNext())
+                sortMergeJoin.addRight(right.next());
+
+            Iterator<List<Writable>> iterator = sortMergeJoin.join();
+            long count = 0;
+            while (iterator.hasNext()) {
+                output.write(iterator.next());
+                count++;
+            }
+            return count;
+        }
+    }
+
+    private static Pair<Stream<List<Writable>>, Stream<List<List<Writable>>>> executeExternal(
+            RecordReader input, TransformProcess sequence, ExternalMemoryConfig config,
+            List<Closeable> resources) throws IOException {
+        if (sequence.getInitialSchema() instanceof SequenceSchema)
+            throw new IllegalStateException("Cannot process sequence input with this method");
+
+        int numColumns = sequence.getInitialSchema().numColumns();
+        Stream<List<Writable>> currentWritables = stream(new Iterator<List<Writable>>() {
+            @Override
+            public boolean hasNext() {
+                return input.hasNext();
+            }
+
+            @Override
+            public List<Writable> next() {
+                return input.next();
+            }
+        }).filter(input2 -> {
+            if (input2.size() == numColumns)
+                return true;
+            log.warn("Filtered out record with {} values, expected {}", input2.size(), numColumns);
+            return false;
+        });
+        Stream<List<List<Writable>>> currentSequence = null;
+
+        for (DataAction d : sequence.getActionList()) {
+            if (d.getTransform() != null) {
+                Transform t = d.getTransform();
+                if (currentWritables != null) {
+                    Function<List<Writable>, List<Writable>> function = new LocalTransformFunction(t);
+                    currentWritables = currentWritables.map(input2 -> function.apply(input2));
+                    if (isTryCatch())
+                        currentWritables = currentWritables.filter(input2 -> new EmptyRecordFunction().apply(input2));
+                } else {
+                    Function<List<List<Writable>>, List<List<Writable>>> function =
+                            new LocalSequenceTransformFunction(t);
+                    currentSequence = currentSequence.map(input2 -> function.apply(input2));
+                    if (isTryCatch())
+                        currentSequence = currentSequence.filter(input2 -> new SequenceEmptyRecordFunction().apply(input2));
+                }
+            } else if (d.getFilter() != null) {
+                Filter f = d.getFilter();
+                if (currentWritables != null) {
+                    LocalFilterFunction localFilterFunction = new LocalFilterFunction(f);
+                    currentWritables = currentWritables.filter(input2 -> localFilterFunction.apply(input2));
+                } else {
+                    LocalSequenceFilterFunction localSequenceFilterFunction = new LocalSequenceFilterFunction(f);
+                    currentSequence = currentSequence.filter(input2 -> localSequenceFilterFunction.apply(input2));
+                }
+            } else if (d.getConvertToSequence() != null) {
+                final ConvertToSequence cts = d.getConvertToSequence();
+                if (cts.isSingleStepSequencesMode()) {
+                    ConvertToSequenceLengthOne convertToSequenceLengthOne = new ConvertToSequenceLengthOne();
+                    currentSequence = currentWritables.map(input2 -> convertToSequenceLengthOne.apply(input2));
+                } else {
+                    //Sort by key columns, so each sequence is a run of consecutive records
+                    int[] colIdxs = cts.getInputSchema().getIndexOfColumns(cts.getKeyColumns());
+                    ExternalSorter sorter = new ExternalSorter(RowComparators.byColumns(colIdxs), config);
+                    resources.add(sorter);
+                    drain(currentWritables, sorter::add);
+
+                    LocalGroupToSequenceFunction localGroupToSequenceFunction =
+                            new LocalGroupToSequenceFunction(cts.getComparator());
+                    currentSequence = stream(new SortedGroupIterator(sorter.sorted(), colIdxs))
+                            .map(input2 -> localGroupToSequenceFunction.apply(input2));
+                }
+                currentWritables = null;
+            } else if (d.getConvertFromSequence() != null) {
+                if (currentSequence == null) {
+                    throw new IllegalStateException(
+                            "Cannot execute ConvertFromSequence operation: current sequence is null");
+                }
+                currentWritables = currentSequence.flatMap(input2 -> input2.stream());
+                currentSequence = null;
+            } else if (d.getSequenceSplit() != null) {
+                if (currentSequence == null)
+                    throw new IllegalStateException("Error during execution of SequenceSplit: currentSequence is null");
+                SequenceSplitFunction sequenceSplitFunction = new SequenceSplitFunction(d.getSequenceSplit());
+                currentSequence = currentSequence.flatMap(input2 -> sequenceSplitFunction.call(input2).stream());
+            } else if (d.getReducer() != null) {
+                if (currentWritables == null)
+                    throw new IllegalStateException("Error during execution of reduction: current writables are null. "
+                            + "Trying to execute a reduce operation on a sequence?");
+                ExternalReducer reducer = new ExternalReducer(d.getReducer(), config);
+                resources.add(reducer);
+                drain(currentWritables, reducer::add);
+                currentWritables = stream(reducer.reduce());
+            } else if (d.getCalculateSortedRank() != null) {
+                CalculateSortedRank csr = d.getCalculateSortedRank();
+                if (currentWritables == null) {
+                    throw new IllegalStateException(
+                            "Error during execution of CalculateSortedRank: current writables are null. "
+                                    + "Trying to execute a CalculateSortedRank operation on a sequence? (not currently supported)");
+                }
+                int sortColumnIdx = csr.getInputSchema().getIndexOfColumn(csr.getSortOnColumn());
+                ExternalSorter sorter = new ExternalSorter(
+                        RowComparators.byColumn(sortColumnIdx, csr.getComparator(), csr.isAscending()), config);
+                resources.add(sorter);
+                drain(currentWritables, sorter::add);
+
+                //Sort is stable, so ranks of equal values follow input order
+                UnzipForCalculateSortedRankFunction unzip = new UnzipForCalculateSortedRankFunction();
+                long[] rank = new long[1];
+                currentWritables = stream(sorter.sorted())
+                        .map(input2 -> unzip.apply(Pair.of(Pair.of(input2.get(sortColumnIdx), input2), rank[0]++)));
+            } else {
+                throw new RuntimeException("Unknown/not implemented action: " + d);
+            }
+        }
+
+        return Pair.of(currentWritables, currentSequence);
+    }
+
+    private interface RowConsumer {
+        void accept(List<Writable> row) throws IOException;
+    }
+
+    private static void drain(Stream<List<Writable>> rows, RowConsumer consumer) throws IOException {
+        Iterator<List<Writable>> iterator = rows.iterator();
+        while (iterator.hasNext())
+            consumer.accept(iterator.next());
+    }
+
+    private static <T> Stream<T> stream(Iterator<T> iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+    }
+
+    private static void closeAll(List<Closeable> resources) {
+        for (Closeable c : resources) {
+            try {
+                c.close();
+            } catch (IOException e) {
+                log.warn("Unable to release spill files", e);
+            }
+        }
+    }
+
 }
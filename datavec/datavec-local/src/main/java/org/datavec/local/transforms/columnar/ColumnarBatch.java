@@ -0,0 +1,556 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.local.transforms.columnar;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.*;
+import org.datavec.api.transform.ColumnType;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.*;
+import org.datavec.arrow.ArrowConverter;
+import org.datavec.arrow.recordreader.ArrowWritableRecordBatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Column-oriented batch of records, used by {@link ColumnarTransformProcess}.<br>
+ * Each column is kept as primitive array matching its {@link ColumnType}: double[] for Double, float[] for Float,
+ * int[] for Integer, long[] for Long and Time, boolean[] for Boolean and String[] for Categorical and String columns.
+ * Columns that can't be represented that way (NDArray and Bytes columns, or columns with null/invalid values)
+ * are kept as Writable[].
+ *
+ * PLEASE NOTE: column arrays are owned by the batch, and columnar steps are allowed to modify them in place.
+ */
+public class ColumnarBatch {
+    @Getter
+    private final Schema schema;
+    @Getter
+    private final int numRows;
+    private final Object[] columns;
+
+    public ColumnarBatch(@NonNull Schema schema, @NonNull Object[] columns, int numRows) {
+        if (columns.length != schema.numColumns())
+            throw new IllegalArgumentException("Number of columns (" + columns.length
+                            + ") does not match number of columns in schema (" + schema.numColumns() + ")");
+
+        this.schema = schema;
+        this.columns = columns;
+        this.numRows = numRows;
+    }
+
+    public int numColumns() {
+        return columns.length;
+    }
+
+    /**
+     * This method returns backing array of the specified column
+     *
+     * @param column
+     * @return
+     */
+    public Object getColumn(int column) {
+        return columns[column];
+    }
+
+    /**
+     * This method returns the specified column as Writable array. Values are boxed, if column is primitive.
+     *
+     * @param column
+     * @return
+     */
+    public Writable[] getWritables(int column) {
+        return toWritables(columns[column], numRows);
+    }
+
+    public Writable getWritable(int column, int row) {
+        return writableAt(columns[column], row);
+    }
+
+    public List<Writable> getRow(int row) {
+        List<Writable> ret = new ArrayList<>(columns.length);
+        for (Object column : columns)
+            ret.add(writableAt(column, row));
+        return ret;
+    }
+
+    /**
+     * This method returns new batch with the specified column replaced. Other columns are shared with this batch.
+     *
+     * @param column    index of the column to replace
+     * @param values    new column values
+     * @param newSchema schema of the new batch
+     * @return
+     */
+    public ColumnarBatch withColumn(int column, @NonNull Object values, @NonNull Schema newSchema) {
+        Object[] result = columns.clone();
+        result[column] = values;
+        return new ColumnarBatch(newSchema, result, numRows);
+    }
+
+    /**
+     * This method returns new batch with only rows that have true in the mask
+     *
+     * @param mask  rows to keep
+     * @param count number of true values in the mask
+     * @return
+     */
+    public ColumnarBatch select(@NonNull boolean[] mask, int count) {
+        if (count == numRows)
+            return this;
+
+        Object[] result = new Object[columns.length];
+        for (int c = 0; c < columns.length; c++)
+            result[c] = compact(columns[c], mask, count);
+
+        return new ColumnarBatch(schema, result, count);
+    }
+
+    /**
+     * This method converts batch to row-wise representation
+     *
+     * @return
+     */
+    public List<List<Writable>> toWritables() {
+        List<List<Writable>> ret = new ArrayList<>(numRows);
+        for (int r = 0; r < numRows; r++)
+            ret.add(new ArrayList<Writable>(columns.length));
+
+        for (int c = 0; c < columns.length; c++) {
+            Object column = columns[c];
+            ColumnType type = schema.getType(c);
+            for (int r = 0; r < numRows; r++) {
+                Writable w = writableAt(column, r);
+                ret.get(r).add(column instanceof Writable[] ? normalize(type, w) : w);
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * This method converts batch to Arrow columns, one primitive array copy per column
+     *
+     * @param allocator
+     * @return
+     */
+    public ArrowWritableRecordBatch toArrow(@NonNull BufferAllocator allocator) {
+        List<FieldVector> vectors = new ArrayList<>(columns.length);
+        for (int c = 0; c < columns.length; c++)
+            vectors.add(vectorFor(allocator, schema.getName(c), schema.getType(c), columns[c], numRows));
+
+        return new ArrowWritableRecordBatch(vectors, schema, 0, numRows);
+    }
+
+    /**
+     * This method builds columnar batch out of row-wise data
+     *
+     * @param schema
+     * @param rows
+     * @return
+     */
+    public static ColumnarBatch fromWritables(@NonNull Schema schema, @NonNull List<List<Writable>> rows) {
+        int numRows = rows.size();
+        int numColumns = schema.numColumns();
+        Object[] columns = new Object[numColumns];
+        Writable[] buffer = new Writable[numRows];
+
+        for (int c = 0; c < numColumns; c++) {
+            for (int r = 0; r < numRows; r++) {
+                List<Writable> row = rows.get(r);
+                if (row.size() != numColumns)
+                    throw new IllegalStateException("Input data number of columns (" + row.size()
+                                    + ") does not match the number of columns in schema (" + numColumns + ")");
+                buffer[r] = row.get(c);
+            }
+
+            Object column = pack(schema.getType(c), buffer, numRows);
+            // packed column doesn't reference the buffer, otherwise we need a fresh one
+            if (column == buffer)
+                buffer = new Writable[numRows];
+            columns[c] = column;
+        }
+
+        return new ColumnarBatch(schema, columns, numRows);
+    }
+
+    /**
+     * This method builds columnar batch out of Arrow columns. Primitive vectors are copied directly, without
+     * going through Writables.
+     *
+     * @param batch
+     * @return
+     */
+    public static ColumnarBatch fromArrow(@NonNull ArrowWritableRecordBatch batch) {
+        Schema schema = batch.getSchema();
+        int offset = batch.getOffset();
+        int numRows = batch.size();
+        Object[] columns = new Object[schema.numColumns()];
+
+        for (int c = 0; c < columns.length; c++)
+            columns[c] = fromVector(batch.getList().get(c), schema.getType(c), offset, numRows);
+
+        return new ColumnarBatch(schema, columns, numRows);
+    }
+
+    protected static Object fromVector(FieldVector vector, ColumnType type, int offset, int numRows) {
+        if (vector.getNullCount() == 0) {
+            switch (type) {
+                case Double:
+                    if (vector instanceof Float8Vector) {
+                        Float8Vector v = (Float8Vector) vector;
+                        double[] ret = new double[numRows];
+                        for (int i = 0; i < numRows; i++)
+                            ret[i] = v.get(offset + i);
+                        return ret;
+                    }
+                    break;
+                case Float:
+                    if (vector instanceof Float4Vector) {
+                        Float4Vector v = (Float4Vector) vector;
+                        float[] ret = new float[numRows];
+                        for (int i = 0; i < numRows; i++)
+                            ret[i] = v.get(offset + i);
+                        return ret;
+                    }
+                    break;
+                case Integer:
+                    if (vector instanceof IntVector) {
+                        IntVector v = (IntVector) vector;
+                        int[] ret = new int[numRows];
+                        for (int i = 0; i < numRows; i++)
+                            ret[i] = v.get(offset + i);
+                        return ret;
+                    }
+                    break;
+                case Long:
+                case Time:
+                    if (vector instanceof BigIntVector) {
+                        BigIntVector v = (BigIntVector) vector;
+                        long[] ret = new long[numRows];
+                        for (int i = 0; i < numRows; i++)
+                            ret[i] = v.get(offset + i);
+                        return ret;
+                    } else if (vector instanceof TimeStampMilliVector) {
+                        TimeStampMilliVector v = (TimeStampMilliVector) vector;
+                        long[] ret = new long[numRows];
+                        for (int i = 0; i < numRows; i++)
+                            ret[i] = v.get(offset + i);
+                        return ret;
+                    }
+                    break;
+                case Boolean:
+                    if (vector instanceof BitVector) {
+                        BitVector v = (BitVector) vector;
+                        boolean[] ret = new boolean[numRows];
+                        for (int i = 0; i < numRows; i++)
+                            ret[i] = v.get(offset + i) > 0;
+                        return ret;
+                    }
+                    break;
+                case String:
+                case Categorical:
+                    if (vector instanceof VarCharVector) {
+                        VarCharVector v = (VarCharVector) vector;
+                        String[] ret = new String[numRows];
+                        for (int i = 0; i < numRows; i++)
+                            ret[i] = v.getObject(offset + i).toString();
+                        return ret;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        // unusual vector type, or nulls present: go through Writables
+        Writable[] ret = new Writable[numRows];
+        for (int i = 0; i < numRows; i++)
+            ret[i] = vector.isNull(offset + i) ? NullWritable.INSTANCE
+                            : ArrowConverter.fromEntry(offset + i, vector, type);
+        return ret;
+    }
+
+    /**
+     * This method packs Writables into primitive array matching given column type. If any of values can't be
+     * represented that way (i.e. NullWritable, or Text in numeric column) - original array is returned.
+     *
+     * @param type
+     * @param values
+     * @param numRows
+     * @return
+     */
+    public static Object pack(ColumnType type, Writable[] values, int numRows) {
+        switch (type) {
+            case Double: {
+                double[] ret = new double[numRows];
+                for (int i = 0; i < numRows; i++) {
+                    if (!isNumeric(values[i]))
+                        return values;
+                    ret[i] = values[i].toDouble();
+                }
+                return ret;
+            }
+            case Float: {
+                float[] ret = new float[numRows];
+                for (int i = 0; i < numRows; i++) {
+                    if (!isNumeric(values[i]))
+                        return values;
+                    ret[i] = values[i].toFloat();
+                }
+                return ret;
+            }
+            case Integer: {
+                int[] ret = new int[numRows];
+                for (int i = 0; i < numRows; i++) {
+                    if (!isNumeric(values[i]))
+                        return values;
+                    ret[i] = values[i].toInt();
+                }
+                return ret;
+            }
+            case Long:
+            case Time: {
+                long[] ret = new long[numRows];
+                for (int i = 0; i < numRows; i++) {
+                    if (!isNumeric(values[i]))
+                        return values;
+                    ret[i] = values[i].toLong();
+                }
+                return ret;
+            }
+            case Boolean: {
+                boolean[] ret = new boolean[numRows];
+                for (int i = 0; i < numRows; i++) {
+                    if (!(values[i] instanceof BooleanWritable))
+                        return values;
+                    ret[i] = ((BooleanWritable) values[i]).get();
+                }
+                return ret;
+            }
+            case String:
+            case Categorical: {
+                String[] ret = new String[numRows];
+                for (int i = 0; i < numRows; i++) {
+                    if (values[i] == null || values[i] instanceof NullWritable)
+                        return values;
+                    ret[i] = values[i].toString();
+                }
+                return ret;
+            }
+            default:
+                return values;
+        }
+    }
+
+    protected static boolean isNumeric(Writable w) {
+        return w instanceof DoubleWritable || w instanceof FloatWritable || w instanceof IntWritable
+                        || w instanceof LongWritable || w instanceof ByteWritable;
+    }
+
+    /**
+     * This method converts Writable to given column type, the same way Arrow round trip does. Values that can't
+     * be converted are returned as is.
+     */
+    protected static Writable normalize(ColumnType type, Writable w) {
+        if (w == null || w instanceof NullWritable)
+            return w;
+
+        try {
+            switch (type) {
+                case Double:
+                    return w instanceof DoubleWritable ? w : new DoubleWritable(w.toDouble());
+                case Float:
+                    return w instanceof FloatWritable ? w : new FloatWritable(w.toFloat());
+                case Integer:
+                    return w instanceof IntWritable ? w : new IntWritable(w.toInt());
+                case Long:
+                case Time:
+                    return w instanceof LongWritable ? w : new LongWritable(w.toLong());
+                case String:
+                case Categorical:
+                    return w instanceof Text ? w : new Text(w.toString());
+                default:
+                    return w;
+            }
+        } catch (Exception e) {
+            return w;
+        }
+    }
+
+    public static Writable[] toWritables(Object column, int numRows) {
+        if (column instanceof Writable[])
+            return (Writable[]) column;
+
+        Writable[] ret = new Writable[numRows];
+        for (int i = 0; i < numRows; i++)
+            ret[i] = writableAt(column, i);
+        return ret;
+    }
+
+    public static Writable writableAt(Object column, int row) {
+        if (column instanceof double[])
+            return new DoubleWritable(((double[]) column)[row]);
+        else if (column instanceof float[])
+            return new FloatWritable(((float[]) column)[row]);
+        else if (column instanceof int[])
+            return new IntWritable(((int[]) column)[row]);
+        else if (column instanceof long[])
+            return new LongWritable(((long[]) column)[row]);
+        else if (column instanceof boolean[])
+            return new BooleanWritable(((boolean[]) column)[row]);
+        else if (column instanceof String[])
+            return new Text(((String[]) column)[row]);
+        else
+            return ((Writable[]) column)[row];
+    }
+
+    /**
+     * This method returns a copy of the column array
+     */
+    public static Object copyOf(Object column) {
+        if (column instanceof double[])
+            return ((double[]) column).clone();
+        else if (column instanceof float[])
+            return ((float[]) column).clone();
+        else if (column instanceof int[])
+            return ((int[]) column).clone();
+        else if (column instanceof long[])
+            return ((long[]) column).clone();
+        else if (column instanceof boolean[])
+            return ((boolean[]) column).clone();
+        else if (column instanceof String[])
+            return ((String[]) column).clone();
+        else
+            return ((Writable[]) column).clone();
+    }
+
+    protected static Object compact(Object column, boolean[] mask, int count) {
+        int n = mask.length;
+        if (column instanceof double[]) {
+            double[] src = (double[]) column;
+            double[] dst = new double[count];
+            for (int i = 0, j = 0; i < n; i++)
+                if (mask[i])
+                    dst[j++] = src[i];
+            return dst;
+        } else if (column instanceof float[]) {
+            float[] src = (float[]) column;
+            float[] dst = new float[count];
+            for (int i = 0, j = 0; i < n; i++)
+                if (mask[i])
+                    dst[j++] = src[i];
+            return dst;
+        } else if (column instanceof int[]) {
+            int[] src = (int[]) column;
+            int[] dst = new int[count];
+            for (int i = 0, j = 0; i < n; i++)
+                if (mask[i])
+                    dst[j++] = src[i];
+            return dst;
+        } else if (column instanceof long[]) {
+            long[] src = (long[]) column;
+            long[] dst = new long[count];
+            for (int i = 0, j = 0; i < n; i++)
+                if (mask[i])
+                    dst[j++] = src[i];
+            return dst;
+        } else if (column instanceof boolean[]) {
+            boolean[] src = (boolean[]) column;
+            boolean[] dst = new boolean[count];
+            for (int i = 0, j = 0; i < n; i++)
+                if (mask[i])
+                    dst[j++] = src[i];
+            return dst;
+        } else if (column instanceof String[]) {
+            String[] src = (String[]) column;
+            String[] dst = new String[count];
+            for (int i = 0, j = 0; i < n; i++)
+                if (mask[i])
+                    dst[j++] = src[i];
+            return dst;
+        } else {
+            Writable[] src = (Writable[]) column;
+            Writable[] dst = new Writable[count];
+            for (int i = 0, j = 0; i < n; i++)
+                if (mask[i])
+                    dst[j++] = src[i];
+            return dst;
+        }
+    }
+
+    protected static FieldVector vectorFor(BufferAllocator allocator, String name, ColumnType type, Object column,
+                    int numRows) {
+        if (column instanceof double[] && type == ColumnType.Double)
+            return ArrowConverter.vectorFor(allocator, name, (double[]) column);
+        else if (column instanceof float[] && type == ColumnType.Float)
+            return ArrowConverter.vectorFor(allocator, name, (float[]) column);
+        else if (column instanceof int[] && type == ColumnType.Integer)
+            return ArrowConverter.vectorFor(allocator, name, (int[]) column);
+        else if (column instanceof long[] && type == ColumnType.Long)
+            return ArrowConverter.vectorFor(allocator, name, (long[]) column);
+        else if (column instanceof boolean[] && type == ColumnType.Boolean)
+            return ArrowConverter.vectorFor(allocator, name, (boolean[]) column);
+        else if (column instanceof String[] && (type == ColumnType.String || type == ColumnType.Categorical))
+            return ArrowConverter.vectorFor(allocator, name, (String[]) column);
+
+        FieldVector vector;
+        switch (type) {
+            case Integer:
+                vector = ArrowConverter.intVectorOf(allocator, name, numRows);
+                break;
+            case Long:
+                vector = ArrowConverter.longVectorOf(allocator, name, numRows);
+                break;
+            case Double:
+                vector = ArrowConverter.doubleVectorOf(allocator, name, numRows);
+                break;
+            case Float:
+                vector = ArrowConverter.floatVectorOf(allocator, name, numRows);
+                break;
+            case Boolean:
+                vector = ArrowConverter.booleanVectorOf(allocator, name, numRows);
+                break;
+            case String:
+            case Categorical:
+                vector = ArrowConverter.stringVectorOf(allocator, name, numRows);
+                break;
+            case Time:
+                vector = ArrowConverter.timeVectorOf(allocator, name, numRows);
+                break;
+            case NDArray:
+                vector = ArrowConverter.ndarrayVectorOf(allocator, name, numRows);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported column type for Arrow conversion: " + type);
+        }
+
+        for (int i = 0; i < numRows; i++)
+            ArrowConverter.setValue(type, vector, writableAt(column, i), i);
+        vector.setValueCount(numRows);
+
+        return vector;
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnarBatch(rows=" + numRows + ", columns=" + Arrays.toString(schema.getColumnNames().toArray()) + ")";
+    }
+}
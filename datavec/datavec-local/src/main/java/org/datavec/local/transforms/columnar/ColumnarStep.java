@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.local.transforms.columnar;
+
+import java.io.Serializable;
+
+/**
+ * Single compiled step of {@link ColumnarTransformProcess}
+ */
+public interface ColumnarStep extends Serializable {
+
+    /**
+     * This method applies this step to the whole batch
+     *
+     * @param batch input batch. Column arrays of the input batch may be reused or modified in place
+     * @return output batch
+     */
+    ColumnarBatch execute(ColumnarBatch batch);
+
+    /**
+     * @return true if this step runs as loops over primitive columns, false if it goes through Writables
+     */
+    boolean isVectorized();
+}
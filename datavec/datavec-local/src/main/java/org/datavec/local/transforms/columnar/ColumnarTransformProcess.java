@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.local.transforms.columnar;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.arrow.memory.BufferAllocator;
+import org.datavec.api.transform.DataAction;
+import org.datavec.api.transform.Transform;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.condition.column.*;
+import org.datavec.api.transform.filter.ConditionFilter;
+import org.datavec.api.transform.filter.Filter;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.schema.SequenceSchema;
+import org.datavec.api.transform.transform.BaseColumnTransform;
+import org.datavec.api.transform.transform.categorical.CategoricalToIntegerTransform;
+import org.datavec.api.transform.transform.categorical.CategoricalToOneHotTransform;
+import org.datavec.api.transform.transform.categorical.IntegerToCategoricalTransform;
+import org.datavec.api.transform.transform.doubletransform.*;
+import org.datavec.api.transform.transform.integer.IntegerMathOpTransform;
+import org.datavec.api.transform.transform.longtransform.LongMathOpTransform;
+import org.datavec.api.writable.Writable;
+import org.datavec.arrow.recordreader.ArrowWritableRecordBatch;
+import org.datavec.local.transforms.columnar.steps.*;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class compiles {@link TransformProcess} into sequence of column operations, executed over whole batch of
+ * records at once, instead of applying each transform to each record separately.
+ *
+ * - scalar math ops, double functions and normalizers are applied as loops over primitive columns, in place
+ * - categorical conversions are done with single lookup per value, directly into int[] columns
+ * - removal, reordering, renaming and duplication of columns don't touch values at all
+ * - filters are evaluated into row mask, and all columns are compacted once per filter
+ * - other single-column transforms are applied to their column only, other transforms are applied per row
+ *
+ * PLEASE NOTE: only TransformProcesses that consist of transforms and filters over non-sequence data can be compiled.
+ */
+@Slf4j
+public class ColumnarTransformProcess implements Serializable {
+    @Getter
+    private final TransformProcess transformProcess;
+    private final List<ColumnarStep> steps;
+
+    protected ColumnarTransformProcess(@NonNull TransformProcess transformProcess, @NonNull List<ColumnarStep> steps) {
+        this.transformProcess = transformProcess;
+        this.steps = steps;
+    }
+
+    /**
+     * This method checks if given TransformProcess can be executed in columnar mode
+     *
+     * @param transformProcess
+     * @return
+     */
+    public static boolean canCompile(@NonNull TransformProcess transformProcess) {
+        if (transformProcess.getInitialSchema() instanceof SequenceSchema)
+            return false;
+
+        for (DataAction d : transformProcess.getActionList())
+            if (d.getTransform() == null && d.getFilter() == null)
+                return false;
+
+        return true;
+    }
+
+    /**
+     * This method compiles given TransformProcess
+     *
+     * @param transformProcess
+     * @return
+     */
+    public static ColumnarTransformProcess compile(@NonNull TransformProcess transformProcess) {
+        if (!canCompile(transformProcess))
+            throw new IllegalArgumentException("Only TransformProcesses with transforms and filters over non-sequence "
+                            + "data can be executed in columnar mode");
+
+        List<ColumnarStep> steps = new ArrayList<>(transformProcess.getActionList().size());
+        Schema schema = transformProcess.getInitialSchema();
+        for (DataAction d : transformProcess.getActionList()) {
+            if (d.getTransform() != null) {
+                Schema outputSchema = d.getTransform().transform(schema);
+                steps.add(compile(d.getTransform(), schema, outputSchema));
+                schema = outputSchema;
+            } else {
+                steps.add(compile(d.getFilter()));
+            }
+        }
+
+        ColumnarTransformProcess result = new ColumnarTransformProcess(transformProcess, steps);
+        log.debug("Compiled TransformProcess: {} of {} steps vectorized", result.numVectorizedSteps(), steps.size());
+        return result;
+    }
+
+    protected static ColumnarStep compile(Transform t, Schema inputSchema, Schema outputSchema) {
+        // specialized steps replicate exact behavior of the transform, so subclasses aren't accepted there
+        Class<?> c = t.getClass();
+        if (c == DoubleMathOpTransform.class)
+            return new MathOpStep((DoubleMathOpTransform) t, outputSchema);
+        else if (c == IntegerMathOpTransform.class)
+            return new MathOpStep((IntegerMathOpTransform) t, outputSchema);
+        else if (c == LongMathOpTransform.class)
+            return new MathOpStep((LongMathOpTransform) t, outputSchema);
+        else if (c == DoubleMathFunctionTransform.class || c == MinMaxNormalizer.class
+                        || c == StandardizeNormalizer.class || c == SubtractMeanNormalizer.class
+                        || c == Log2Normalizer.class)
+            return new DoubleFunctionStep((BaseDoubleTransform) t, outputSchema);
+        else if (c == CategoricalToIntegerTransform.class)
+            return new CategoricalStep((CategoricalToIntegerTransform) t, outputSchema);
+        else if (c == CategoricalToOneHotTransform.class)
+            return new CategoricalStep((CategoricalToOneHotTransform) t, outputSchema);
+        else if (c == IntegerToCategoricalTransform.class)
+            return new IntegerToCategoricalStep((IntegerToCategoricalTransform) t, outputSchema);
+        else if (ColumnSelectStep.isSupported(t))
+            return new ColumnSelectStep(t, inputSchema, outputSchema);
+        else if (t instanceof BaseColumnTransform && declaredBy(c, BaseColumnTransform.class, "map", List.class)
+                        && declaredBy(c, BaseColumnTransform.class, "transform", Schema.class))
+            return new ColumnMapStep((BaseColumnTransform) t, outputSchema);
+        else
+            return new RowStep(t, outputSchema);
+    }
+
+    protected static ColumnarStep compile(Filter f) {
+        if (f.getClass() == ConditionFilter.class) {
+            Object condition = ((ConditionFilter) f).getCondition();
+            if (condition instanceof BaseColumnCondition
+                            && declaredBy(condition.getClass(), BaseColumnCondition.class, "condition", List.class))
+                return new FilterStep(f, (BaseColumnCondition) condition);
+        }
+
+        return new FilterStep(f);
+    }
+
+    private static boolean declaredBy(Class<?> c, Class<?> base, String method, Class<?>... params) {
+        try {
+            return c.getMethod(method, params).getDeclaringClass() == base;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    public List<ColumnarStep> getSteps() {
+        return Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * @return number of steps that run as loops over primitive columns
+     */
+    public int numVectorizedSteps() {
+        int cnt = 0;
+        for (ColumnarStep step : steps)
+            if (step.isVectorized())
+                cnt++;
+        return cnt;
+    }
+
+    /**
+     * This method executes all steps over given batch
+     *
+     * @param batch input batch, its columns may be modified in place
+     * @return
+     */
+    public ColumnarBatch execute(@NonNull ColumnarBatch batch) {
+        ColumnarBatch current = batch;
+        for (ColumnarStep step : steps)
+            current = step.execute(current);
+
+        return current;
+    }
+
+    /**
+     * This method executes TransformProcess over row-wise data
+     *
+     * @param records
+     * @return
+     */
+    public List<List<Writable>> execute(@NonNull List<List<Writable>> records) {
+        return execute(ColumnarBatch.fromWritables(transformProcess.getInitialSchema(), records)).toWritables();
+    }
+
+    /**
+     * This method executes TransformProcess over Arrow columns. Output batch uses vectors allocated with given allocator.
+     *
+     * @param batch
+     * @param allocator
+     * @return
+     */
+    public ArrowWritableRecordBatch execute(@NonNull ArrowWritableRecordBatch batch, @NonNull BufferAllocator allocator) {
+        return execute(ColumnarBatch.fromArrow(batch)).toArrow(allocator);
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnarTransformProcess(steps=" + steps + ")";
+    }
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.local.transforms.columnar.steps;
+
+import lombok.NonNull;
+import org.datavec.api.transform.Transform;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.transform.categorical.CategoricalToIntegerTransform;
+import org.datavec.api.transform.transform.categorical.CategoricalToOneHotTransform;
+import org.datavec.local.transforms.columnar.ColumnarBatch;
+import org.datavec.local.transforms.columnar.ColumnarStep;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar step for {@link CategoricalToIntegerTransform} and {@link CategoricalToOneHotTransform}.
+ * Each category is looked up once per row, and result is written into int[] column(s).
+ */
+public class CategoricalStep implements ColumnarStep {
+    private final Transform transform;
+    private final boolean oneHot;
+    private final int column;
+    private final List<String> stateNames;
+    private final Map<String, Integer> statesMap;
+    private final Schema outputSchema;
+
+    public CategoricalStep(@NonNull CategoricalToIntegerTransform transform, @NonNull Schema outputSchema) {
+        this(transform, false, transform.getColumnIdx(), transform.getStateNames(), outputSchema);
+    }
+
+    public CategoricalStep(@NonNull CategoricalToOneHotTransform transform, @NonNull Schema outputSchema) {
+        this(transform, true, transform.getColumnIdx(), transform.getStateNames(), outputSchema);
+    }
+
+    protected CategoricalStep(Transform transform, boolean oneHot, int column, List<String> stateNames,
+                    Schema outputSchema) {
+        this.transform = transform;
+        this.oneHot = oneHot;
+        this.column = column;
+        this.stateNames = stateNames;
+        this.outputSchema = outputSchema;
+
+        this.statesMap = new HashMap<>(stateNames.size());
+        for (int i = 0; i < stateNames.size(); i++)
+            statesMap.put(stateNames.get(i), i);
+    }
+
+    @Override
+    public ColumnarBatch execute(ColumnarBatch batch) {
+        int numRows = batch.getNumRows();
+        Object values = batch.getColumn(column);
+
+        int[] indices = new int[numRows];
+        if (values instanceof String[]) {
+            String[] strings = (String[]) values;
+            for (int i = 0; i < numRows; i++)
+                indices[i] = indexOf(strings[i]);
+        } else {
+            for (int i = 0; i < numRows; i++)
+                indices[i] = indexOf(batch.getWritable(column, i).toString());
+        }
+
+        if (!oneHot)
+            return batch.withColumn(column, indices, outputSchema);
+
+        int n = stateNames.size();
+        int numColumns = batch.numColumns();
+        Object[] result = new Object[numColumns - 1 + n];
+        for (int c = 0; c < column; c++)
+            result[c] = batch.getColumn(c);
+
+        for (int j = 0; j < n; j++)
+            result[column + j] = new int[numRows];
+
+        for (int i = 0; i < numRows; i++)
+            ((int[]) result[column + indices[i]])[i] = 1;
+
+        for (int c = column + 1; c < numColumns; c++)
+            result[c + n - 1] = batch.getColumn(c);
+
+        return new ColumnarBatch(outputSchema, result, numRows);
+    }
+
+    private int indexOf(String value) {
+        Integer idx = statesMap.get(value);
+        if (idx == null)
+            throw new IllegalStateException("Cannot convert categorical value to " + (oneHot ? "one-hot" : "integer value")
+                            + ": input value (\"" + value + "\") is not in the list of known categories (state names/categories: "
+                            + stateNames + ")");
+        return idx;
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "CategoricalStep(" + transform + ")";
+    }
+}
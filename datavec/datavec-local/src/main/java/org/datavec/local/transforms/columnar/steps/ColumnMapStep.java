@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.local.transforms.columnar.steps;
+
+import lombok.NonNull;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.transform.BaseColumnTransform;
+import org.datavec.api.writable.Writable;
+import org.datavec.local.transforms.columnar.ColumnarBatch;
+import org.datavec.local.transforms.columnar.ColumnarStep;
+
+/**
+ * Columnar step for single-column transforms. Only the transformed column is touched, other columns are passed
+ * through as is.
+ *
+ * This class applies {@link BaseColumnTransform#map(Writable)} to each value of the column, so it works for any
+ * single-column transform. Subclasses provide tight loops over primitive columns for specific transforms.
+ */
+public class ColumnMapStep implements ColumnarStep {
+    protected final BaseColumnTransform transform;
+    protected final int column;
+    protected final Schema outputSchema;
+
+    /**
+     * @param transform    transform to apply
+     * @param outputSchema schema after this transform
+     */
+    public ColumnMapStep(@NonNull BaseColumnTransform transform, @NonNull Schema outputSchema) {
+        this.transform = transform;
+        this.column = transform.getColumnNumber();
+        this.outputSchema = outputSchema;
+    }
+
+    @Override
+    public ColumnarBatch execute(ColumnarBatch batch) {
+        Object values = batch.getColumn(column);
+        Object result = values instanceof Writable[] ? null : apply(values, batch.getNumRows());
+        if (result == null)
+            result = map(values, batch.getNumRows());
+
+        return batch.withColumn(column, result, outputSchema);
+    }
+
+    /**
+     * This method applies transform to primitive column
+     *
+     * @param values  column values, may be modified in place
+     * @param numRows number of rows
+     * @return transformed column, or null if this column representation isn't supported
+     */
+    protected Object apply(Object values, int numRows) {
+        return null;
+    }
+
+    protected Object map(Object values, int numRows) {
+        Writable[] in = ColumnarBatch.toWritables(values, numRows);
+        Writable[] out = new Writable[numRows];
+        for (int i = 0; i < numRows; i++)
+            out[i] = transform.map(in[i]);
+
+        return ColumnarBatch.pack(outputSchema.getType(column), out, numRows);
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + transform + ")";
+    }
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.local.transforms.columnar.steps;
+
+import lombok.NonNull;
+import org.datavec.api.transform.Transform;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.transform.column.*;
+import org.datavec.local.transforms.columnar.ColumnarBatch;
+import org.datavec.local.transforms.columnar.ColumnarStep;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar step for column layout transforms: removal, reordering, renaming and duplication of columns.
+ * These transforms don't touch values at all, so each output column just references input column array.
+ */
+public class ColumnSelectStep implements ColumnarStep {
+    private final Transform transform;
+    private final Schema outputSchema;
+    private final int[] sources;
+
+    /**
+     * @param transform    transform to apply
+     * @param inputSchema  schema before this transform
+     * @param outputSchema schema after this transform
+     */
+    public ColumnSelectStep(@NonNull Transform transform, @NonNull Schema inputSchema, @NonNull Schema outputSchema) {
+        this.transform = transform;
+        this.outputSchema = outputSchema;
+        this.sources = sourcesOf(transform, inputSchema, outputSchema);
+        if (sources == null)
+            throw new IllegalArgumentException("Unsupported transform: " + transform);
+    }
+
+    public static boolean isSupported(Transform transform) {
+        Class<?> c = transform.getClass();
+        return c == RemoveColumnsTransform.class || c == RemoveAllColumnsExceptForTransform.class
+                        || c == ReorderColumnsTransform.class || c == RenameColumnsTransform.class
+                        || c == DuplicateColumnsTransform.class;
+    }
+
+    /**
+     * This method returns index of input column for each output column of given transform
+     */
+    protected static int[] sourcesOf(Transform transform, Schema inputSchema, Schema outputSchema) {
+        if (transform instanceof RenameColumnsTransform) {
+            int[] ret = new int[inputSchema.numColumns()];
+            for (int i = 0; i < ret.length; i++)
+                ret[i] = i;
+            return ret;
+        } else if (transform instanceof DuplicateColumnsTransform) {
+            DuplicateColumnsTransform t = (DuplicateColumnsTransform) transform;
+            List<Integer> ret = new ArrayList<>(outputSchema.numColumns());
+            for (int i = 0; i < inputSchema.numColumns(); i++) {
+                ret.add(i);
+                if (t.getColumnIndexesToDuplicateSet().contains(i))
+                    ret.add(i);
+            }
+
+            int[] result = new int[ret.size()];
+            for (int i = 0; i < result.length; i++)
+                result[i] = ret.get(i);
+            return result;
+        } else if (isSupported(transform)) {
+            // removals and reordering keep column names, so columns can be matched by name
+            int[] ret = new int[outputSchema.numColumns()];
+            for (int i = 0; i < ret.length; i++)
+                ret[i] = inputSchema.getIndexOfColumn(outputSchema.getName(i));
+            return ret;
+        }
+
+        return null;
+    }
+
+    @Override
+    public ColumnarBatch execute(ColumnarBatch batch) {
+        Object[] result = new Object[sources.length];
+        boolean[] used = new boolean[batch.numColumns()];
+        for (int i = 0; i < sources.length; i++) {
+            // the same array can't be shared between two columns, since steps may modify columns in place
+            result[i] = used[sources[i]] ? ColumnarBatch.copyOf(batch.getColumn(sources[i])) : batch.getColumn(sources[i]);
+            used[sources[i]] = true;
+        }
+
+        return new ColumnarBatch(outputSchema, result, batch.getNumRows());
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnSelectStep(" + transform + ", sources=" + Arrays.toString(sources) + ")";
+    }
+}
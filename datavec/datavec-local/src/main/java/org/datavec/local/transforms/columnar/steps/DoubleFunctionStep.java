@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.local.transforms.columnar.steps;
+
+import lombok.NonNull;
+import org.datavec.api.transform.MathFunction;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.transform.doubletransform.*;
+
+/**
+ * Columnar step for double column functions and normalizers: {@link DoubleMathFunctionTransform},
+ * {@link MinMaxNormalizer}, {@link StandardizeNormalizer}, {@link SubtractMeanNormalizer} and {@link Log2Normalizer}
+ */
+public class DoubleFunctionStep extends ColumnMapStep {
+    private static final double LOG2 = Math.log(2);
+
+    public DoubleFunctionStep(@NonNull BaseDoubleTransform transform, @NonNull Schema outputSchema) {
+        super(transform, outputSchema);
+        if (!isSupported(transform))
+            throw new IllegalArgumentException("Unsupported transform: " + transform);
+    }
+
+    public static boolean isSupported(BaseDoubleTransform transform) {
+        return transform instanceof DoubleMathFunctionTransform || transform instanceof MinMaxNormalizer
+                        || transform instanceof StandardizeNormalizer || transform instanceof SubtractMeanNormalizer
+                        || transform instanceof Log2Normalizer;
+    }
+
+    @Override
+    protected Object apply(Object values, int numRows) {
+        double[] x = asDoubles(values, numRows);
+        if (x == null)
+            return null;
+
+        if (transform instanceof DoubleMathFunctionTransform) {
+            MathFunction f = ((DoubleMathFunctionTransform) transform).getMathFunction();
+            for (int i = 0; i < numRows; i++)
+                x[i] = apply(f, x[i]);
+        } else if (transform instanceof MinMaxNormalizer) {
+            MinMaxNormalizer t = (MinMaxNormalizer) transform;
+            double ratio = t.getRatio();
+            double min = t.getMin();
+            double newMin = t.getNewMin();
+            for (int i = 0; i < numRows; i++)
+                x[i] = Double.isNaN(x[i]) ? 0.0 : ratio * (x[i] - min) + newMin;
+        } else if (transform instanceof StandardizeNormalizer) {
+            StandardizeNormalizer t = (StandardizeNormalizer) transform;
+            double mean = t.getMean();
+            double stdev = t.getStdev();
+            for (int i = 0; i < numRows; i++)
+                x[i] = (x[i] - mean) / stdev;
+        } else if (transform instanceof SubtractMeanNormalizer) {
+            double mean = ((SubtractMeanNormalizer) transform).getMean();
+            for (int i = 0; i < numRows; i++)
+                x[i] -= mean;
+        } else if (transform instanceof Log2Normalizer) {
+            Log2Normalizer t = (Log2Normalizer) transform;
+            double scale = t.getScalingFactor();
+            double min = t.getColumnMin();
+            double range = t.getColumnMean() - min;
+            for (int i = 0; i < numRows; i++)
+                x[i] = Double.isNaN(x[i]) ? 0.0 : scale * (Math.log((x[i] - min) / range + 1) / LOG2);
+        } else {
+            return null;
+        }
+
+        return x;
+    }
+
+    protected static double apply(MathFunction f, double d) {
+        switch (f) {
+            case ABS:
+                return Math.abs(d);
+            case ACOS:
+                return Math.acos(d);
+            case ASIN:
+                return Math.asin(d);
+            case ATAN:
+                return Math.atan(d);
+            case CEIL:
+                return Math.ceil(d);
+            case COS:
+                return Math.cos(d);
+            case COSH:
+                return Math.cosh(d);
+            case EXP:
+                return Math.exp(d);
+            case FLOOR:
+                return Math.floor(d);
+            case LOG:
+                return Math.log(d);
+            case LOG10:
+                return Math.log10(d);
+            case SIGNUM:
+                return Math.signum(d);
+            case SIN:
+                return Math.sin(d);
+            case SINH:
+                return Math.sinh(d);
+            case SQRT:
+                return Math.sqrt(d);
+            case TAN:
+                return Math.tan(d);
+            case TANH:
+                return Math.tanh(d);
+            default:
+                throw new IllegalStateException("Unknown or not implemented math function: " + f);
+        }
+    }
+
+    /**
+     * This method returns numeric column as double[]. double[] columns are returned as is, other numeric
+     * columns are converted into new array.
+     *
+     * @return double values, or null if column isn't numeric primitive column
+     */
+    public static double[] asDoubles(Object values, int numRows) {
+        if (values instanceof double[])
+            return (double[]) values;
+
+        double[] ret = new double[numRows];
+        if (values instanceof float[]) {
+            float[] src = (float[]) values;
+            for (int i = 0; i < numRows; i++)
+                ret[i] = src[i];
+        } else if (values instanceof int[]) {
+            int[] src = (int[]) values;
+            for (int i = 0; i < numRows; i++)
+                ret[i] = src[i];
+        } else if (values instanceof long[]) {
+            long[] src = (long[]) values;
+            for (int i = 0; i < numRows; i++)
+                ret[i] = src[i];
+        } else
+            return null;
+
+        return ret;
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return true;
+    }
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.local.transforms.columnar.steps;
+
+import lombok.NonNull;
+import org.datavec.api.transform.condition.ConditionOp;
+import org.datavec.api.transform.condition.column.*;
+import org.datavec.api.transform.filter.ConditionFilter;
+import org.datavec.api.transform.filter.Filter;
+import org.datavec.local.transforms.columnar.ColumnarBatch;
+import org.datavec.local.transforms.columnar.ColumnarStep;
+
+/**
+ * Columnar step for filters. Filter is evaluated into row mask first, and then all columns are compacted at once.
+ *
+ * - {@link ConditionFilter} with Double/Integer/Long/Categorical column condition is evaluated as tight loop over primitive column
+ * - {@link ConditionFilter} with other single-column conditions is evaluated per value of that column only
+ * - any other filter is evaluated per row
+ */
+public class FilterStep implements ColumnarStep {
+    private final Filter filter;
+    private final BaseColumnCondition condition;
+    private final int column;
+
+    public FilterStep(@NonNull Filter filter) {
+        this(filter, null);
+    }
+
+    /**
+     * @param filter    filter to apply
+     * @param condition column condition of the filter, or null if filter should be evaluated per row
+     */
+    public FilterStep(@NonNull Filter filter, BaseColumnCondition condition) {
+        this.filter = filter;
+        this.condition = condition;
+        this.column = condition == null ? -1 : condition.getColumnIdx();
+    }
+
+    @Override
+    public ColumnarBatch execute(ColumnarBatch batch) {
+        int numRows = batch.getNumRows();
+        boolean[] remove = new boolean[numRows];
+
+        if (condition == null || !evaluate(batch.getColumn(column), numRows, remove)) {
+            if (condition != null) {
+                for (int i = 0; i < numRows; i++)
+                    remove[i] = condition.columnCondition(batch.getWritable(column, i));
+            } else {
+                for (int i = 0; i < numRows; i++)
+                    remove[i] = filter.removeExample(batch.getRow(i));
+            }
+        }
+
+        int count = 0;
+        for (int i = 0; i < numRows; i++) {
+            // mask is inverted in place: true now means "keep"
+            remove[i] = !remove[i];
+            if (remove[i])
+                count++;
+        }
+
+        return batch.select(remove, count);
+    }
+
+    /**
+     * This method evaluates condition over primitive column
+     *
+     * @return false if condition/column combination isn't supported
+     */
+    protected boolean evaluate(Object values, int numRows, boolean[] result) {
+        if (condition instanceof DoubleColumnCondition && values instanceof double[]) {
+            DoubleColumnCondition c = (DoubleColumnCondition) condition;
+            ConditionOp op = c.getOp();
+            double value = c.getValue() == null ? Double.NaN : c.getValue();
+            double[] x = (double[]) values;
+            for (int i = 0; i < numRows; i++)
+                result[i] = op.apply(x[i], value, c.getSet());
+            return true;
+        } else if (condition instanceof IntegerColumnCondition && values instanceof int[]) {
+            IntegerColumnCondition c = (IntegerColumnCondition) condition;
+            ConditionOp op = c.getOp();
+            int value = c.getValue() == null ? 0 : c.getValue();
+            int[] x = (int[]) values;
+            for (int i = 0; i < numRows; i++)
+                result[i] = op.apply(x[i], value, c.getSet());
+            return true;
+        } else if (condition instanceof LongColumnCondition && values instanceof long[]) {
+            LongColumnCondition c = (LongColumnCondition) condition;
+            ConditionOp op = c.getOp();
+            long value = c.getValue() == null ? 0 : c.getValue();
+            long[] x = (long[]) values;
+            for (int i = 0; i < numRows; i++)
+                result[i] = op.apply(x[i], value, c.getSet());
+            return true;
+        } else if (condition instanceof CategoricalColumnCondition && values instanceof String[]) {
+            CategoricalColumnCondition c = (CategoricalColumnCondition) condition;
+            ConditionOp op = c.getOp();
+            String[] x = (String[]) values;
+            for (int i = 0; i < numRows; i++)
+                result[i] = op.apply(x[i], c.getValue(), c.getSet());
+            return true;
+        }
+
+        return false;
+    }
+
+    public static boolean isVectorized(BaseColumnCondition condition) {
+        return condition instanceof DoubleColumnCondition || condition instanceof IntegerColumnCondition
+                        || condition instanceof LongColumnCondition || condition instanceof CategoricalColumnCondition;
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return isVectorized(condition);
+    }
+
+    @Override
+    public String toString() {
+        return "FilterStep(" + filter + ")";
+    }
+}
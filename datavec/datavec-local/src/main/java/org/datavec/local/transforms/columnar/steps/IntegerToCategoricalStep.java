@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.local.transforms.columnar.steps;
+
+import lombok.NonNull;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.transform.categorical.IntegerToCategoricalTransform;
+
+import java.util.Map;
+
+/**
+ * Columnar step for {@link IntegerToCategoricalTransform}
+ */
+public class IntegerToCategoricalStep extends ColumnMapStep {
+    private final Map<Integer, String> map;
+
+    public IntegerToCategoricalStep(@NonNull IntegerToCategoricalTransform transform, @NonNull Schema outputSchema) {
+        super(transform, outputSchema);
+        this.map = transform.getMap();
+    }
+
+    @Override
+    protected Object apply(Object values, int numRows) {
+        if (!(values instanceof int[]))
+            return null;
+
+        int[] x = (int[]) values;
+        String[] result = new String[numRows];
+        for (int i = 0; i < numRows; i++) {
+            result[i] = map.get(x[i]);
+            // unknown value: let the transform itself deal with it
+            if (result[i] == null)
+                return null;
+        }
+
+        return result;
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return true;
+    }
+}
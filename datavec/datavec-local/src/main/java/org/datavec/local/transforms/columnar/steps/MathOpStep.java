@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.local.transforms.columnar.steps;
+
+import lombok.NonNull;
+import org.datavec.api.transform.MathOp;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.transform.doubletransform.DoubleMathOpTransform;
+import org.datavec.api.transform.transform.integer.IntegerMathOpTransform;
+import org.datavec.api.transform.transform.longtransform.LongMathOpTransform;
+
+/**
+ * Columnar step for scalar math ops: {@link DoubleMathOpTransform}, {@link IntegerMathOpTransform}
+ * and {@link LongMathOpTransform}. Op is resolved once per batch, and applied in place.
+ */
+public class MathOpStep extends ColumnMapStep {
+    private final MathOp mathOp;
+    private final double doubleScalar;
+    private final long longScalar;
+
+    public MathOpStep(@NonNull DoubleMathOpTransform transform, @NonNull Schema outputSchema) {
+        super(transform, outputSchema);
+        this.mathOp = transform.getMathOp();
+        this.doubleScalar = transform.getScalar();
+        this.longScalar = 0;
+    }
+
+    public MathOpStep(@NonNull IntegerMathOpTransform transform, @NonNull Schema outputSchema) {
+        super(transform, outputSchema);
+        this.mathOp = transform.getMathOp();
+        this.doubleScalar = 0.0;
+        this.longScalar = transform.getScalar();
+    }
+
+    public MathOpStep(@NonNull LongMathOpTransform transform, @NonNull Schema outputSchema) {
+        super(transform, outputSchema);
+        this.mathOp = transform.getMathOp();
+        this.doubleScalar = 0.0;
+        this.longScalar = transform.getScalar();
+    }
+
+    @Override
+    protected Object apply(Object values, int numRows) {
+        if (transform instanceof DoubleMathOpTransform) {
+            double[] x = DoubleFunctionStep.asDoubles(values, numRows);
+            return x == null ? null : applyDouble(x, numRows);
+        } else if (transform instanceof IntegerMathOpTransform) {
+            return values instanceof int[] ? applyInt((int[]) values, numRows) : null;
+        } else {
+            return values instanceof long[] ? applyLong((long[]) values, numRows) : null;
+        }
+    }
+
+    protected double[] applyDouble(double[] x, int n) {
+        final double s = doubleScalar;
+        switch (mathOp) {
+            case Add:
+                for (int i = 0; i < n; i++)
+                    x[i] += s;
+                break;
+            case Subtract:
+                for (int i = 0; i < n; i++)
+                    x[i] -= s;
+                break;
+            case Multiply:
+                for (int i = 0; i < n; i++)
+                    x[i] *= s;
+                break;
+            case Divide:
+                for (int i = 0; i < n; i++)
+                    x[i] /= s;
+                break;
+            case Modulus:
+                for (int i = 0; i < n; i++)
+                    x[i] %= s;
+                break;
+            case ReverseSubtract:
+                for (int i = 0; i < n; i++)
+                    x[i] = s - x[i];
+                break;
+            case ReverseDivide:
+                for (int i = 0; i < n; i++)
+                    x[i] = s / x[i];
+                break;
+            case ScalarMin:
+                for (int i = 0; i < n; i++)
+                    x[i] = Math.min(x[i], s);
+                break;
+            case ScalarMax:
+                for (int i = 0; i < n; i++)
+                    x[i] = Math.max(x[i], s);
+                break;
+            default:
+                return null;
+        }
+        return x;
+    }
+
+    protected int[] applyInt(int[] x, int n) {
+        final int s = (int) longScalar;
+        switch (mathOp) {
+            case Add:
+                for (int i = 0; i < n; i++)
+                    x[i] += s;
+                break;
+            case Subtract:
+                for (int i = 0; i < n; i++)
+                    x[i] -= s;
+                break;
+            case Multiply:
+                for (int i = 0; i < n; i++)
+                    x[i] *= s;
+                break;
+            case Divide:
+                for (int i = 0; i < n; i++)
+                    x[i] /= s;
+                break;
+            case Modulus:
+                for (int i = 0; i < n; i++)
+                    x[i] %= s;
+                break;
+            case ReverseSubtract:
+                for (int i = 0; i < n; i++)
+                    x[i] = s - x[i];
+                break;
+            case ReverseDivide:
+                for (int i = 0; i < n; i++)
+                    x[i] = s / x[i];
+                break;
+            case ScalarMin:
+                for (int i = 0; i < n; i++)
+                    x[i] = Math.min(x[i], s);
+                break;
+            case ScalarMax:
+                for (int i = 0; i < n; i++)
+                    x[i] = Math.max(x[i], s);
+                break;
+            default:
+                return null;
+        }
+        return x;
+    }
+
+    protected long[] applyLong(long[] x, int n) {
+        final long s = longScalar;
+        switch (mathOp) {
+            case Add:
+                for (int i = 0; i < n; i++)
+                    x[i] += s;
+                break;
+            case Subtract:
+                for (int i = 0; i < n; i++)
+                    x[i] -= s;
+                break;
+            case Multiply:
+                for (int i = 0; i < n; i++)
+                    x[i] *= s;
+                break;
+            case Divide:
+                for (int i = 0; i < n; i++)
+                    x[i] /= s;
+                break;
+            case Modulus:
+                for (int i = 0; i < n; i++)
+                    x[i] %= s;
+                break;
+            case ReverseSubtract:
+                for (int i = 0; i < n; i++)
+                    x[i] = s - x[i];
+                break;
+            case ReverseDivide:
+                for (int i = 0; i < n; i++)
+                    x[i] = s / x[i];
+                break;
+            case ScalarMin:
+                for (int i = 0; i < n; i++)
+                    x[i] = Math.min(x[i], s);
+                break;
+            case ScalarMax:
+                for (int i = 0; i < n; i++)
+                    x[i] = Math.max(x[i], s);
+                break;
+            default:
+                return null;
+        }
+        return x;
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return true;
+    }
+}
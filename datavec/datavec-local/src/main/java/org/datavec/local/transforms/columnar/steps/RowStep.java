@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.local.transforms.columnar.steps;
+
+import lombok.NonNull;
+import org.datavec.api.transform.Transform;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.Writable;
+import org.datavec.local.transforms.columnar.ColumnarBatch;
+import org.datavec.local.transforms.columnar.ColumnarStep;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fallback columnar step for transforms that have no columnar implementation: batch is converted to rows,
+ * transform is applied to each row, and rows are converted back to columns.
+ */
+public class RowStep implements ColumnarStep {
+    private final Transform transform;
+    private final Schema outputSchema;
+
+    public RowStep(@NonNull Transform transform, @NonNull Schema outputSchema) {
+        this.transform = transform;
+        this.outputSchema = outputSchema;
+    }
+
+    @Override
+    public ColumnarBatch execute(ColumnarBatch batch) {
+        int numRows = batch.getNumRows();
+        List<List<Writable>> rows = new ArrayList<>(numRows);
+        for (int i = 0; i < numRows; i++)
+            rows.add(transform.map(batch.getRow(i)));
+
+        return ColumnarBatch.fromWritables(outputSchema, rows);
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "RowStep(" + transform + ")";
+    }
+}
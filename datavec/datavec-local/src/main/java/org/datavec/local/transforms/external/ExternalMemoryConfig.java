@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.local.transforms.external;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.File;
+import java.io.Serializable;
+
+/**
+ * Configuration of external-memory execution in {@link org.datavec.local.transforms.LocalTransformExecutor}
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExternalMemoryConfig implements Serializable {
+    /**
+     * Approximate number of bytes of rows each sort, group-by or join operation keeps on heap before spilling to disk
+     */
+    @Builder.Default private long memoryBudget = 256L * 1024 * 1024;
+
+    /**
+     * Directory for spill files. If null, java.io.tmpdir is used
+     */
+    @Builder.Default private File tempDirectory = null;
+
+    /**
+     * Number of hash partitions used by group-by once its input doesn't fit into memory budget
+     */
+    @Builder.Default private int numPartitions = 64;
+
+    /**
+     * Max number of sorted runs merged at once. If there are more runs, they are merged in several passes
+     */
+    @Builder.Default private int maxMergeFanIn = 64;
+
+    /**
+     * Size of read and write buffer of each spill file, in bytes
+     */
+    @Builder.Default private int bufferSize = 64 * 1024;
+}
@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.local.transforms.external;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.datavec.api.transform.ops.IAggregableReduceOp;
+import org.datavec.api.transform.reduce.IAssociativeReducer;
+import org.datavec.api.writable.Writable;
+import org.datavec.local.transforms.reduce.MapToPairForReducerFunction;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Partitioned hash group-by for {@link IAssociativeReducer}.
+ *
+ * Rows are buffered on heap while they fit into memory budget, and reduced in memory in this case. Otherwise all rows
+ * are hash-partitioned by key into {@link ExternalMemoryConfig#getNumPartitions()} spill files, and partitions are
+ * reduced one by one. Rows are streamed into reduce ops, so only reduction state of keys within single partition is
+ * kept on heap.
+ */
+@Slf4j
+public class ExternalReducer implements Closeable {
+    protected final IAssociativeReducer reducer;
+    protected final ExternalMemoryConfig config;
+    protected final MapToPairForReducerFunction keyFunction;
+
+    protected List<List<Writable>> buffer = new ArrayList<>();
+    protected long bufferBytes = 0;
+    protected SpillFile[] partitions;
+    protected boolean finished = false;
+
+    public ExternalReducer(@NonNull IAssociativeReducer reducer, @NonNull ExternalMemoryConfig config) {
+        if (config.getNumPartitions() < 1)
+            throw new IllegalArgumentException("Number of partitions must be >= 1: got " + config.getNumPartitions());
+
+        this.reducer = reducer;
+        this.config = config;
+        this.keyFunction = new MapToPairForReducerFunction(reducer);
+    }
+
+    /**
+     * This method adds single row to this reducer
+     */
+    public void add(@NonNull List<Writable> row) throws IOException {
+        if (finished)
+            throw new IllegalStateException("Rows can't be added once reduction was requested");
+
+        if (partitions != null) {
+            partition(row);
+            return;
+        }
+
+        buffer.add(row);
+        bufferBytes += SpillFile.estimateBytes(row);
+        if (bufferBytes >= config.getMemoryBudget()) {
+            partitions = new SpillFile[config.getNumPartitions()];
+            for (List<Writable> r : buffer)
+                partition(r);
+            log.debug("Reduction input exceeds memory budget, spilling into {} partitions", partitions.length);
+            buffer = new ArrayList<>();
+            bufferBytes = 0;
+        }
+    }
+
+    protected void partition(List<Writable> row) throws IOException {
+        String key = keyFunction.apply(row).getFirst();
+        int p = (key.hashCode() & Integer.MAX_VALUE) % partitions.length;
+        if (partitions[p] == null)
+            partitions[p] = SpillFile.create(config);
+        partitions[p].write(row);
+    }
+
+    /**
+     * @return true if rows were spilled to disk
+     */
+    public boolean isSpilled() {
+        return partitions != null;
+    }
+
+    /**
+     * This method returns iterator over reduced rows, one per key. No rows can be added after this call.
+     */
+    public Iterator<List<Writable>> reduce() throws IOException {
+        finished = true;
+        if (partitions == null) {
+            Iterator<List<Writable>> result = reduce(buffer.iterator());
+            buffer = new ArrayList<>();
+            return result;
+        }
+
+        for (SpillFile partition : partitions)
+            if (partition != null)
+                partition.finish();
+
+        return new Iterator<List<Writable>>() {
+            protected int next = 0;
+            protected Iterator<List<Writable>> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && next < partitions.length) {
+                    SpillFile partition = partitions[next++];
+                    if (partition == null)
+                        continue;
+                    SpillFile.RowIterator rows = null;
+                    try {
+                        rows = partition.read();
+                        current = reduce(rows);
+                    } catch (IOException e) {
+                        throw new RuntimeException("Unable to read partition " + partition.getFile(), e);
+                    } finally {
+                        // partition isn't needed anymore, even if it can't be reduced
+                        if (rows != null)
+                            rows.close();
+                        partition.close();
+                        partitions[next - 1] = null;
+                    }
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public List<Writable> next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return current.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    protected Iterator<List<Writable>> reduce(Iterator<List<Writable>> rows) {
+        Map<String, IAggregableReduceOp<List<Writable>, List<Writable>>> ops = new LinkedHashMap<>();
+        while (rows.hasNext()) {
+            List<Writable> row = rows.next();
+            String key = keyFunction.apply(row).getFirst();
+            IAggregableReduceOp<List<Writable>, List<Writable>> op = ops.get(key);
+            if (op == null) {
+                op = reducer.aggregableReducer();
+                ops.put(key, op);
+            }
+            op.accept(row);
+        }
+
+        List<List<Writable>> out = new ArrayList<>(ops.size());
+        for (IAggregableReduceOp<List<Writable>, List<Writable>> op : ops.values())
+            out.add(op.get());
+        return out.iterator();
+    }
+
+    /**
+     * This method removes all spilled partitions
+     */
+    @Override
+    public void close() {
+        if (partitions != null) {
+            for (SpillFile partition : partitions)
+                if (partition != null)
+                    partition.close();
+        }
+        buffer = new ArrayList<>();
+    }
+}
@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.local.transforms.external;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.datavec.api.writable.Writable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * External merge sort of rows.
+ *
+ * Rows are buffered on heap until memory budget is exceeded, then buffer is sorted and spilled to disk as a sorted run.
+ * Runs are k-way merged lazily, in several passes if there are more than {@link ExternalMemoryConfig#getMaxMergeFanIn()}
+ * of them. Sort is stable: rows that compare as equal are returned in insertion order.
+ */
+@Slf4j
+public class ExternalSorter implements Closeable {
+    protected final Comparator<List<Writable>> comparator;
+    protected final ExternalMemoryConfig config;
+
+    protected List<List<Writable>> buffer = new ArrayList<>();
+    protected long bufferBytes = 0;
+    protected final List<SpillFile> runs = new ArrayList<>();
+    protected final List<SpillFile.RowIterator> readers = new ArrayList<>();
+    protected boolean finished = false;
+    @Getter
+    protected long numRows = 0;
+
+    public ExternalSorter(@NonNull Comparator<List<Writable>> comparator, @NonNull ExternalMemoryConfig config) {
+        if (config.getMaxMergeFanIn() < 2)
+            throw new IllegalArgumentException("Merge fan-in must be >= 2: got " + config.getMaxMergeFanIn());
+
+        this.comparator = comparator;
+        this.config = config;
+    }
+
+    /**
+     * This method adds single row to this sorter
+     */
+    public void add(@NonNull List<Writable> row) throws IOException {
+        if (finished)
+            throw new IllegalStateException("Rows can't be added once sorted iterator was requested");
+
+        buffer.add(row);
+        bufferBytes += SpillFile.estimateBytes(row);
+        numRows++;
+        if (bufferBytes >= config.getMemoryBudget())
+            spill();
+    }
+
+    protected void spill() throws IOException {
+        Collections.sort(buffer, comparator);
+        SpillFile run = SpillFile.create(config);
+        boolean success = false;
+        try {
+            for (List<Writable> row : buffer)
+                run.write(row);
+            run.finish();
+            success = true;
+        } finally {
+            if (!success)
+                run.close();
+        }
+        runs.add(run);
+        log.debug("Spilled sorted run of {} rows to {}", buffer.size(), run.getFile());
+
+        buffer = new ArrayList<>();
+        bufferBytes = 0;
+    }
+
+    /**
+     * @return number of sorted runs spilled to disk so far
+     */
+    public int numRuns() {
+        return runs.size();
+    }
+
+    /**
+     * This method returns iterator over all added rows, in sorted order. No rows can be added after this call.
+     */
+    public Iterator<List<Writable>> sorted() throws IOException {
+        finished = true;
+        Collections.sort(buffer, comparator);
+        if (runs.isEmpty())
+            return buffer.iterator();
+
+        // rows that are still on heap are the last run
+        int fanIn = config.getMaxMergeFanIn();
+        while (runs.size() + 1 > fanIn)
+            mergePass(fanIn);
+
+        List<Iterator<List<Writable>>> sources = new ArrayList<>();
+        for (SpillFile run : runs) {
+            SpillFile.RowIterator reader = run.read();
+            readers.add(reader);
+            sources.add(reader);
+        }
+        sources.add(buffer.iterator());
+        final MergeIterator merge = new MergeIterator(sources, comparator);
+        return new Iterator<List<Writable>>() {
+            @Override
+            public boolean hasNext() {
+                if (merge.hasNext())
+                    return true;
+                // all rows are returned, so runs can be removed right away
+                close();
+                return false;
+            }
+
+            @Override
+            public List<Writable> next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return merge.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * This method merges consecutive groups of runs into single runs, so relative order of equal rows is kept
+     */
+    protected void mergePass(int fanIn) throws IOException {
+        List<SpillFile> merged = new ArrayList<>();
+        for (int i = 0; i < runs.size(); i += fanIn) {
+            List<SpillFile> group = runs.subList(i, Math.min(runs.size(), i + fanIn));
+            if (group.size() == 1) {
+                merged.add(group.get(0));
+                continue;
+            }
+
+            List<SpillFile.RowIterator> groupReaders = new ArrayList<>();
+            SpillFile out = null;
+            boolean success = false;
+            try {
+                for (SpillFile run : group)
+                    groupReaders.add(run.read());
+
+                out = SpillFile.create(config);
+                MergeIterator iterator = new MergeIterator(new ArrayList<Iterator<List<Writable>>>(groupReaders),
+                                comparator);
+                while (iterator.hasNext())
+                    out.write(iterator.next());
+                out.finish();
+                success = true;
+            } finally {
+                for (SpillFile.RowIterator reader : groupReaders)
+                    reader.close();
+                if (!success) {
+                    // runs of this pass are removed on close(), but runs merged by this pass aren't there yet
+                    if (out != null)
+                        out.close();
+                    for (SpillFile m : merged)
+                        if (!runs.contains(m))
+                            m.close();
+                }
+            }
+
+            for (SpillFile run : group)
+                run.close();
+            merged.add(out);
+        }
+
+        log.debug("Merged {} sorted runs into {}", runs.size(), merged.size());
+        runs.clear();
+        runs.addAll(merged);
+    }
+
+    /**
+     * This method removes all spilled runs
+     */
+    @Override
+    public void close() {
+        for (SpillFile.RowIterator reader : readers)
+            reader.close();
+        readers.clear();
+        for (SpillFile run : runs)
+            run.close();
+        runs.clear();
+        buffer = new ArrayList<>();
+    }
+
+    /**
+     * K-way merge of sorted iterators. Ties are resolved in favor of earlier source.
+     */
+    protected static class MergeIterator implements Iterator<List<Writable>> {
+        protected final List<Iterator<List<Writable>>> sources;
+        protected final PriorityQueue<Head> queue;
+
+        protected MergeIterator(List<Iterator<List<Writable>>> sources, final Comparator<List<Writable>> comparator) {
+            this.sources = sources;
+            this.queue = new PriorityQueue<>(Math.max(1, sources.size()), new Comparator<Head>() {
+                @Override
+                public int compare(Head o1, Head o2) {
+                    int c = comparator.compare(o1.row, o2.row);
+                    return c != 0 ? c : Integer.compare(o1.source, o2.source);
+                }
+            });
+
+            for (int i = 0; i < sources.size(); i++)
+                if (sources.get(i).hasNext())
+                    queue.add(new Head(sources.get(i).next(), i));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public List<Writable> next() {
+            Head head = queue.poll();
+            if (head == null)
+                throw new NoSuchElementException();
+
+            List<Writable> row = head.row;
+            Iterator<List<Writable>> source = sources.get(head.source);
+            if (source.hasNext()) {
+                head.row = source.next();
+                queue.add(head);
+            }
+            return row;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    protected static class Head {
+        protected List<Writable> row;
+        protected final int source;
+
+        protected Head(List<Writable> row, int source) {
+            this.row = row;
+            this.source = source;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.local.transforms.external;
+
+import org.datavec.api.io.WritableComparable;
+import org.datavec.api.writable.Writable;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Comparators of rows, used for external sort, grouping and merge join
+ */
+public class RowComparators {
+
+    private RowComparators() {
+    }
+
+    /**
+     * This method compares two writables. Writables of different types are ordered by type, so this order is total
+     * for any mix of writables, and 0 is returned only for equal values of the same type.
+     */
+    @SuppressWarnings("unchecked")
+    public static int compare(Writable a, Writable b) {
+        if (a.getType() != b.getType())
+            return Integer.compare(a.getType().ordinal(), b.getType().ordinal());
+
+        if (a instanceof WritableComparable)
+            return ((WritableComparable) a).compareTo(b);
+
+        return a.toString().compareTo(b.toString());
+    }
+
+    /**
+     * This method compares key columns of two rows, possibly with different layouts
+     */
+    public static int compareKeys(List<Writable> a, int[] aColumns, List<Writable> b, int[] bColumns) {
+        for (int i = 0; i < aColumns.length; i++) {
+            int c = compare(a.get(aColumns[i]), b.get(bColumns[i]));
+            if (c != 0)
+                return c;
+        }
+        return 0;
+    }
+
+    /**
+     * This method returns comparator of rows by given key columns
+     */
+    public static Comparator<List<Writable>> byColumns(final int[] columns) {
+        return new Comparator<List<Writable>>() {
+            @Override
+            public int compare(List<Writable> o1, List<Writable> o2) {
+                return compareKeys(o1, columns, o2, columns);
+            }
+        };
+    }
+
+    /**
+     * This method returns comparator of rows by single column, using given writable comparator
+     */
+    public static Comparator<List<Writable>> byColumn(final int column, final Comparator<Writable> comparator,
+                    final boolean ascending) {
+        return new Comparator<List<Writable>>() {
+            @Override
+            public int compare(List<Writable> o1, List<Writable> o2) {
+                int c = comparator.compare(o1.get(column), o2.get(column));
+                return ascending ? c : -c;
+            }
+        };
+    }
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.local.transforms.external;
+
+import lombok.NonNull;
+import org.datavec.api.transform.join.Join;
+import org.datavec.api.writable.Writable;
+import org.datavec.local.transforms.join.ExecuteJoinFromCoGroupFlatMapFunction;
+import org.nd4j.linalg.primitives.Pair;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Sort-merge implementation of {@link Join}: both sides are sorted by join columns via {@link ExternalSorter}, and then
+ * merged group by group. All join types are supported, output matches in-memory join up to the order of rows.
+ *
+ * PLEASE NOTE: rows of both sides sharing single key are collected on heap, so they must fit into memory.
+ */
+public class SortMergeJoin implements Closeable {
+    protected final Join join;
+    protected final int[] leftColumns;
+    protected final int[] rightColumns;
+    protected final ExternalSorter left;
+    protected final ExternalSorter right;
+
+    public SortMergeJoin(@NonNull Join join, @NonNull ExternalMemoryConfig config) {
+        this.join = join;
+        this.leftColumns = join.getLeftSchema().getIndexOfColumns(join.getJoinColumnsLeft());
+        this.rightColumns = join.getRightSchema().getIndexOfColumns(join.getJoinColumnsRight());
+
+        // both sides share memory budget
+        ExternalMemoryConfig half = new ExternalMemoryConfig(config.getMemoryBudget() / 2, config.getTempDirectory(),
+                        config.getNumPartitions(), config.getMaxMergeFanIn(), config.getBufferSize());
+        this.left = new ExternalSorter(RowComparators.byColumns(leftColumns), half);
+        this.right = new ExternalSorter(RowComparators.byColumns(rightColumns), half);
+    }
+
+    public void addLeft(@NonNull List<Writable> row) throws IOException {
+        left.add(row);
+    }
+
+    public void addRight(@NonNull List<Writable> row) throws IOException {
+        right.add(row);
+    }
+
+    /**
+     * This method returns iterator over joined rows, ordered by join key. No rows can be added after this call.
+     */
+    public Iterator<List<Writable>> join() throws IOException {
+        final SortedGroupIterator leftGroups = new SortedGroupIterator(left.sorted(), leftColumns);
+        final SortedGroupIterator rightGroups = new SortedGroupIterator(right.sorted(), rightColumns);
+        final ExecuteJoinFromCoGroupFlatMapFunction function = new ExecuteJoinFromCoGroupFlatMapFunction(join);
+
+        return new Iterator<List<Writable>>() {
+            protected Iterator<List<Writable>> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && (leftGroups.hasNext() || rightGroups.hasNext())) {
+                    List<List<Writable>> l = Collections.emptyList();
+                    List<List<Writable>> r = Collections.emptyList();
+                    if (!rightGroups.hasNext()) {
+                        l = leftGroups.next();
+                    } else if (!leftGroups.hasNext()) {
+                        r = rightGroups.next();
+                    } else {
+                        int c = RowComparators.compareKeys(leftGroups.peek(), leftColumns, rightGroups.peek(),
+                                        rightColumns);
+                        if (c <= 0)
+                            l = leftGroups.next();
+                        if (c >= 0)
+                            r = rightGroups.next();
+                    }
+
+                    List<Writable> key = keyOf(l.isEmpty() ? r.get(0) : l.get(0), l.isEmpty() ? rightColumns : leftColumns);
+                    current = function.call(Pair.of(key, Pair.of(l, r))).iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public List<Writable> next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return current.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    protected static List<Writable> keyOf(List<Writable> row, int[] columns) {
+        List<Writable> key = new ArrayList<>(columns.length);
+        for (int c : columns)
+            key.add(row.get(c));
+        return key;
+    }
+
+    /**
+     * This method removes all spilled runs of both sides
+     */
+    @Override
+    public void close() {
+        left.close();
+        right.close();
+    }
+}
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.local.transforms.external;
+
+import lombok.NonNull;
+import org.datavec.api.writable.Writable;
+
+import java.util.*;
+
+/**
+ * This iterator splits sorted rows into groups of consecutive rows with equal keys.
+ *
+ * PLEASE NOTE: each group is collected on heap, so all rows sharing single key must fit into memory.
+ */
+public class SortedGroupIterator implements Iterator<List<List<Writable>>> {
+    protected final Iterator<List<Writable>> rows;
+    protected final Comparator<List<Writable>> keyComparator;
+    protected List<Writable> pending;
+
+    public SortedGroupIterator(@NonNull Iterator<List<Writable>> rows, @NonNull Comparator<List<Writable>> keyComparator) {
+        this.rows = rows;
+        this.keyComparator = keyComparator;
+        this.pending = rows.hasNext() ? rows.next() : null;
+    }
+
+    public SortedGroupIterator(@NonNull Iterator<List<Writable>> rows, @NonNull int[] keyColumns) {
+        this(rows, RowComparators.byColumns(keyColumns));
+    }
+
+    @Override
+    public boolean hasNext() {
+        return pending != null;
+    }
+
+    /**
+     * @return first row of the next group, or null if there are no more groups
+     */
+    public List<Writable> peek() {
+        return pending;
+    }
+
+    @Override
+    public List<List<Writable>> next() {
+        if (pending == null)
+            throw new NoSuchElementException();
+
+        List<List<Writable>> group = new ArrayList<>();
+        group.add(pending);
+        pending = null;
+        while (rows.hasNext()) {
+            List<Writable> row = rows.next();
+            if (keyComparator.compare(group.get(0), row) != 0) {
+                pending = row;
+                break;
+            }
+            group.add(row);
+        }
+        return group;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.local.transforms.external;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.datavec.api.writable.*;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Temporary file of rows in compact binary form: number of columns, followed by each writable with its type
+ * (see {@link WritableFactory#writeWithType(Writable, DataOutput)}).
+ *
+ * Rows are appended first, then file can be read any number of times. File is removed on {@link #close()}, so owners
+ * of spill files close them in finally blocks: files aren't scheduled for removal on JVM exit.
+ */
+public class SpillFile implements Closeable {
+    @Getter
+    protected final File file;
+    protected final int bufferSize;
+    protected DataOutputStream out;
+    @Getter
+    protected long numRows;
+
+    public SpillFile(File directory, int bufferSize) throws IOException {
+        this.file = File.createTempFile("datavec_spill_", ".bin", directory);
+        this.bufferSize = bufferSize;
+        try {
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), bufferSize));
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        }
+    }
+
+    public static SpillFile create(@NonNull ExternalMemoryConfig config) throws IOException {
+        return new SpillFile(config.getTempDirectory(), config.getBufferSize());
+    }
+
+    /**
+     * This method appends single row
+     */
+    public void write(List<Writable> row) throws IOException {
+        if (out == null)
+            throw new IllegalStateException("Spill file is already finished: " + file);
+
+        write(row, out);
+        numRows++;
+    }
+
+    /**
+     * This method flushes written rows. No more rows can be appended after this call
+     */
+    public void finish() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    /**
+     * This method returns iterator over rows of this file. Rows must be finished before.
+     */
+    public RowIterator read() throws IOException {
+        if (out != null)
+            throw new IllegalStateException("Spill file must be finished before reading: " + file);
+        return new RowIterator(new DataInputStream(new BufferedInputStream(new FileInputStream(file), bufferSize)),
+                        numRows);
+    }
+
+    @Override
+    public void close() {
+        try {
+            finish();
+        } catch (IOException e) {
+            // we're removing this file anyway
+        }
+        file.delete();
+    }
+
+    public static void write(List<Writable> row, DataOutput out) throws IOException {
+        out.writeInt(row.size());
+        for (Writable w : row) {
+            w.writeType(out);
+            w.write(out);
+        }
+    }
+
+    public static List<Writable> read(DataInput in) throws IOException {
+        int size = in.readInt();
+        WritableFactory factory = WritableFactory.getInstance();
+        List<Writable> row = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            row.add(factory.readWithType(in));
+        return row;
+    }
+
+    /**
+     * This method returns approximate number of heap bytes taken by given row
+     */
+    public static long estimateBytes(List<Writable> row) {
+        long bytes = 48 + 8L * row.size();
+        for (Writable w : row) {
+            if (w instanceof Text) {
+                bytes += 64 + ((Text) w).getLength();
+            } else if (w instanceof NDArrayWritable) {
+                INDArray arr = ((NDArrayWritable) w).get();
+                bytes += arr == null ? 24 : 128 + arr.length() * arr.data().getElementSize();
+            } else if (w instanceof ArrayWritable) {
+                bytes += 128 + 8 * ((ArrayWritable) w).length();
+            } else {
+                bytes += 24;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Iterator over rows of spill file, closes underlying stream once all rows are read
+     */
+    public static class RowIterator implements Iterator<List<Writable>>, Closeable {
+        protected DataInputStream in;
+        protected long remaining;
+
+        protected RowIterator(DataInputStream in, long numRows) {
+            this.in = in;
+            this.remaining = numRows;
+            if (remaining == 0)
+                close();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public List<Writable> next() {
+            if (remaining <= 0)
+                throw new NoSuchElementException();
+
+            try {
+                List<Writable> row = read(in);
+                if (--remaining == 0)
+                    close();
+                return row;
+            } catch (IOException e) {
+                close();
+                throw new RuntimeException("Unable to read spilled row", e);
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            remaining = 0;
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // nothing to do here
+                }
+                in = null;
+            }
+        }
+    }
+}
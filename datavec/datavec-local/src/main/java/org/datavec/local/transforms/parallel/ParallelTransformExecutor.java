@@ -0,0 +1,676 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.local.transforms.parallel;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.datavec.api.transform.DataAction;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.join.Join;
+import org.datavec.api.transform.ops.IAggregableReduceOp;
+import org.datavec.api.transform.rank.CalculateSortedRank;
+import org.datavec.api.transform.reduce.IAssociativeReducer;
+import org.datavec.api.transform.schema.SequenceSchema;
+import org.datavec.api.transform.sequence.ConvertToSequence;
+import org.datavec.api.writable.LongWritable;
+import org.datavec.api.writable.Writable;
+import org.datavec.local.transforms.LocalTransformExecutor;
+import org.datavec.local.transforms.external.RowComparators;
+import org.datavec.local.transforms.join.ExecuteJoinFromCoGroupFlatMapFunction;
+import org.datavec.local.transforms.join.ExtractKeysFunction;
+import org.datavec.local.transforms.reduce.MapToPairForReducerFunction;
+import org.datavec.local.transforms.sequence.*;
+import org.datavec.local.transforms.transform.LocalTransformFunction;
+import org.datavec.local.transforms.transform.SequenceSplitFunction;
+import org.datavec.local.transforms.transform.filter.LocalFilterFunction;
+import org.nd4j.linalg.function.Function;
+import org.nd4j.linalg.function.FunctionalUtils;
+import org.nd4j.linalg.primitives.Pair;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Parallel, partitioned executor for TransformProcesses over local data.
+ *
+ * Input is split into contiguous partitions. Consecutive row-wise steps (transforms, filters, sequence splits,
+ * conversions from sequences) are fused and applied partition by partition on a fork-join pool, without
+ * materializing intermediate results. Data is exchanged between partitions only at reductions, CalculateSortedRank
+ * and conversions to sequences: rows are hash-partitioned by key for reductions and grouping, and sorted globally
+ * for ranks. Order of records is kept by row-wise steps.
+ *
+ * Timing and record counts of each step of the last execution are available via {@link #getLastStats()}.
+ *
+ * Usage example:
+ * <pre>
+ * {@code
+ * ParallelTransformExecutor executor = new ParallelTransformExecutor.Builder().parallelism(64).build();
+ * List<List<Writable>> out = executor.execute(input, transformProcess);
+ * }
+ * </pre>
+ */
+@Slf4j
+public class ParallelTransformExecutor implements Closeable {
+    protected final ForkJoinPool pool;
+    protected final boolean ownPool;
+    protected final int numPartitions;
+    protected final boolean profile;
+
+    protected volatile List<StepStats> lastStats = Collections.emptyList();
+
+    protected ParallelTransformExecutor(@NonNull Builder builder) {
+        if (builder.pool != null) {
+            this.pool = builder.pool;
+            this.ownPool = false;
+        } else {
+            this.pool = new ForkJoinPool(builder.parallelism);
+            this.ownPool = true;
+        }
+        this.numPartitions = builder.numPartitions > 0 ? builder.numPartitions : pool.getParallelism() * 4;
+        this.profile = builder.profile;
+    }
+
+    /**
+     * Execute the specified TransformProcess with the given input data<br>
+     * Note: this method can only be used if the TransformProcess returns non-sequence data
+     *
+     * @param inputWritables   Input data to process
+     * @param transformProcess TransformProcess to execute
+     * @return Processed data
+     */
+    @SuppressWarnings("unchecked")
+    public List<List<Writable>> execute(@NonNull List<List<Writable>> inputWritables,
+                    @NonNull TransformProcess transformProcess) {
+        if (transformProcess.getFinalSchema() instanceof SequenceSchema)
+            throw new IllegalStateException("Cannot return sequence data with this method");
+
+        return (List<List<Writable>>) (List<?>) execute((List<?>) inputWritables, false, transformProcess);
+    }
+
+    /**
+     * Execute the specified TransformProcess with the given input data<br>
+     * Note: this method can only be used if the TransformProcess starts with non-sequence data, but returns
+     * sequence data
+     *
+     * @param inputWritables   Input data to process
+     * @param transformProcess TransformProcess to execute
+     * @return Processed (sequence) data
+     */
+    @SuppressWarnings("unchecked")
+    public List<List<List<Writable>>> executeToSequence(@NonNull List<List<Writable>> inputWritables,
+                    @NonNull TransformProcess transformProcess) {
+        if (!(transformProcess.getFinalSchema() instanceof SequenceSchema))
+            throw new IllegalStateException("Cannot return non-sequence data with this method");
+
+        return (List<List<List<Writable>>>) (List<?>) execute((List<?>) inputWritables, false, transformProcess);
+    }
+
+    /**
+     * Execute the specified TransformProcess with the given sequence input data<br>
+     * Note: this method can only be used if the TransformProcess starts with sequence data, and also returns
+     * sequence data
+     *
+     * @param inputSequence    Input sequence data to process
+     * @param transformProcess TransformProcess to execute
+     * @return Processed (sequence) data
+     */
+    @SuppressWarnings("unchecked")
+    public List<List<List<Writable>>> executeSequenceToSequence(@NonNull List<List<List<Writable>>> inputSequence,
+                    @NonNull TransformProcess transformProcess) {
+        if (!(transformProcess.getFinalSchema() instanceof SequenceSchema))
+            throw new IllegalStateException("Cannot return non-sequence data with this method");
+
+        return (List<List<List<Writable>>>) (List<?>) execute((List<?>) inputSequence, true, transformProcess);
+    }
+
+    /**
+     * Execute a join on the specified data. Both sides are hash-partitioned by join columns, and partitions are
+     * joined in parallel.
+     *
+     * @param join  Join to execute
+     * @param left  Left data for join
+     * @param right Right data for join
+     * @return Joined data
+     */
+    public List<List<Writable>> executeJoin(@NonNull Join join, @NonNull List<List<Writable>> left,
+                    @NonNull List<List<Writable>> right) {
+        long start = System.nanoTime();
+        final ExtractKeysFunction leftKeys =
+                        new ExtractKeysFunction(join.getLeftSchema().getIndexOfColumns(join.getJoinColumnsLeft()));
+        final ExtractKeysFunction rightKeys =
+                        new ExtractKeysFunction(join.getRightSchema().getIndexOfColumns(join.getJoinColumnsRight()));
+
+        final List<List<Pair<List<Writable>, List<Writable>>>> leftParts = keyBy(split(left), leftKeys);
+        final List<List<Pair<List<Writable>, List<Writable>>>> rightParts = keyBy(split(right), rightKeys);
+        final ExecuteJoinFromCoGroupFlatMapFunction function = new ExecuteJoinFromCoGroupFlatMapFunction(join);
+
+        List<Callable<List<Object>>> tasks = new ArrayList<>();
+        for (int p = 0; p < numPartitions; p++) {
+            final int partition = p;
+            tasks.add(new Callable<List<Object>>() {
+                @Override
+                public List<Object> call() {
+                    Map<List<Writable>, Pair<List<List<Writable>>, List<List<Writable>>>> cogrouped =
+                                    FunctionalUtils.cogroup(gather(leftParts, partition), gather(rightParts, partition));
+                    List<Object> out = new ArrayList<>();
+                    for (Map.Entry<List<Writable>, Pair<List<List<Writable>>, List<List<Writable>>>> e : cogrouped
+                                    .entrySet())
+                        out.addAll(function.call(Pair.of(e.getKey(), e.getValue())));
+                    return out;
+                }
+            });
+        }
+
+        List<List<Writable>> out = concat(invokeAll(tasks));
+        lastStats = Collections.singletonList(
+                        new StepStats("Join", true, System.nanoTime() - start, left.size() + right.size(), out.size()));
+        return out;
+    }
+
+    /**
+     * @return timing and record counts of each step of the last execution, including exchanges
+     */
+    public List<StepStats> getLastStats() {
+        return lastStats;
+    }
+
+    protected List<?> execute(List<?> input, boolean sequence, TransformProcess transformProcess) {
+        List<DataAction> actions = transformProcess.getActionList();
+        List<StepStats> stats = new ArrayList<>();
+        List<List<Object>> partitions = split(input);
+
+        // first row-wise step drops records of unexpected size, same as LocalTransformExecutor does
+        final int numColumns = transformProcess.getInitialSchema().numColumns();
+        final boolean sequenceInput = sequence;
+        List<RowStep> pending = new ArrayList<>();
+        pending.add(new RowStep("InputValidation") {
+            @Override
+            public void apply(Object in, List<Object> out) {
+                List<?> record = (List<?>) in;
+                if (!sequenceInput) {
+                    if (record.size() == numColumns)
+                        out.add(in);
+                } else if (record.isEmpty() || ((List<?>) record.get(0)).size() == numColumns) {
+                    out.add(in);
+                }
+            }
+        });
+
+        for (DataAction d : actions) {
+            RowStep step = rowStep(d, sequence);
+            if (step != null) {
+                pending.add(step);
+                if (d.getConvertFromSequence() != null)
+                    sequence = false;
+                else if (d.getConvertToSequence() != null)
+                    sequence = true;
+                continue;
+            }
+
+            partitions = runRowSteps(partitions, pending, stats);
+            pending.clear();
+
+            long start = System.nanoTime();
+            long in = count(partitions);
+            String name;
+            if (d.getReducer() != null) {
+                if (sequence)
+                    throw new IllegalStateException("Error during execution of reduction: current writables are null. "
+                                    + "Trying to execute a reduce operation on a sequence?");
+                name = "Reduce";
+                partitions = reduce(partitions, d.getReducer());
+            } else if (d.getCalculateSortedRank() != null) {
+                if (sequence)
+                    throw new IllegalStateException("Error during execution of CalculateSortedRank: current writables are null. "
+                                    + "Trying to execute a CalculateSortedRank operation on a sequence? (not currently supported)");
+                name = "CalculateSortedRank";
+                partitions = rank(partitions, d.getCalculateSortedRank());
+            } else if (d.getConvertToSequence() != null) {
+                name = "ConvertToSequence";
+                partitions = toSequences(partitions, d.getConvertToSequence());
+                sequence = true;
+            } else {
+                throw new RuntimeException("Unknown/not implemented action: " + d);
+            }
+            stats.add(new StepStats(name, true, System.nanoTime() - start, in, count(partitions)));
+        }
+        partitions = runRowSteps(partitions, pending, stats);
+
+        long dropped = stats.get(0).getInputRecords() - stats.get(0).getOutputRecords();
+        if (dropped > 0)
+            log.warn("Filtered out " + dropped + " values");
+
+        lastStats = Collections.unmodifiableList(stats);
+        return concat(partitions);
+    }
+
+    /**
+     * This method returns row-wise implementation of given action, or null if action needs an exchange
+     */
+    @SuppressWarnings("unchecked")
+    protected RowStep rowStep(DataAction d, boolean sequence) {
+        final boolean tryCatch = LocalTransformExecutor.isTryCatch();
+        if (d.getTransform() != null) {
+            String name = d.getTransform().getClass().getSimpleName();
+            if (!sequence) {
+                final LocalTransformFunction function = new LocalTransformFunction(d.getTransform());
+                return new RowStep(name) {
+                    @Override
+                    public void apply(Object in, List<Object> out) {
+                        List<Writable> result = function.apply((List<Writable>) in);
+                        // in try-catch mode failed records are returned empty
+                        if (!tryCatch || !result.isEmpty())
+                            out.add(result);
+                    }
+                };
+            } else {
+                final LocalSequenceTransformFunction function = new LocalSequenceTransformFunction(d.getTransform());
+                return new RowStep(name) {
+                    @Override
+                    public void apply(Object in, List<Object> out) {
+                        List<List<Writable>> result = function.apply((List<List<Writable>>) in);
+                        if (!tryCatch || !result.isEmpty())
+                            out.add(result);
+                    }
+                };
+            }
+        } else if (d.getFilter() != null) {
+            String name = d.getFilter().getClass().getSimpleName();
+            if (!sequence) {
+                final LocalFilterFunction function = new LocalFilterFunction(d.getFilter());
+                return new RowStep(name) {
+                    @Override
+                    public void apply(Object in, List<Object> out) {
+                        if (function.apply((List<Writable>) in))
+                            out.add(in);
+                    }
+                };
+            } else {
+                final LocalSequenceFilterFunction function = new LocalSequenceFilterFunction(d.getFilter());
+                return new RowStep(name) {
+                    @Override
+                    public void apply(Object in, List<Object> out) {
+                        if (function.apply((List<List<Writable>>) in))
+                            out.add(in);
+                    }
+                };
+            }
+        } else if (d.getConvertToSequence() != null && d.getConvertToSequence().isSingleStepSequencesMode()) {
+            final ConvertToSequenceLengthOne function = new ConvertToSequenceLengthOne();
+            return new RowStep("ConvertToSequence") {
+                @Override
+                public void apply(Object in, List<Object> out) {
+                    out.add(function.apply((List<Writable>) in));
+                }
+            };
+        } else if (d.getConvertFromSequence() != null) {
+            if (!sequence)
+                throw new IllegalStateException("Cannot execute ConvertFromSequence operation: current sequence is null");
+            return new RowStep("ConvertFromSequence") {
+                @Override
+                public void apply(Object in, List<Object> out) {
+                    out.addAll((List<List<Writable>>) in);
+                }
+            };
+        } else if (d.getSequenceSplit() != null) {
+            if (!sequence)
+                throw new IllegalStateException("Error during execution of SequenceSplit: currentSequence is null");
+            final SequenceSplitFunction function = new SequenceSplitFunction(d.getSequenceSplit());
+            return new RowStep("SequenceSplit") {
+                @Override
+                public void apply(Object in, List<Object> out) {
+                    out.addAll(function.call((List<List<Writable>>) in));
+                }
+            };
+        }
+        return null;
+    }
+
+    /**
+     * This method applies fused row-wise steps to each partition in parallel
+     */
+    protected List<List<Object>> runRowSteps(List<List<Object>> partitions, final List<RowStep> steps,
+                    List<StepStats> stats) {
+        if (steps.isEmpty())
+            return partitions;
+
+        final RowStep[] chain = steps.toArray(new RowStep[steps.size()]);
+        final LongAdder[][] counters = new LongAdder[chain.length][3];
+        for (LongAdder[] c : counters)
+            for (int i = 0; i < c.length; i++)
+                c[i] = new LongAdder();
+
+        List<Callable<List<Object>>> tasks = new ArrayList<>();
+        for (final List<Object> partition : partitions) {
+            tasks.add(new Callable<List<Object>>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public List<Object> call() {
+                    // per-partition counters are published once, to keep contention away from the hot loop
+                    long[][] local = new long[chain.length][3];
+                    List<Object>[] buffers = new List[chain.length];
+                    for (int i = 0; i < chain.length; i++)
+                        buffers[i] = new ArrayList<>(1);
+                    List<Object> out = new ArrayList<>(partition.size());
+                    for (Object record : partition)
+                        process(record, 0, chain, local, buffers, out);
+                    for (int i = 0; i < chain.length; i++)
+                        for (int j = 0; j < 3; j++)
+                            counters[i][j].add(local[i][j]);
+                    return out;
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        List<List<Object>> result = invokeAll(tasks);
+        long wall = System.nanoTime() - start;
+
+        for (int i = 0; i < chain.length; i++) {
+            // without profiling, wall time of the whole stage is attributed to its first step
+            long time = profile ? counters[i][0].sum() : (i == 0 ? wall : 0);
+            stats.add(new StepStats(chain[i].name, false, time, counters[i][1].sum(), counters[i][2].sum()));
+        }
+        return result;
+    }
+
+    /**
+     * This method pushes single record through the chain of steps, starting from given one.
+     * Each step has its own output buffer, reused for all records: it's consumed before the step is applied again.
+     */
+    protected void process(Object record, int step, RowStep[] chain, long[][] counters, List<Object>[] buffers,
+                    List<Object> sink) {
+        if (step == chain.length) {
+            sink.add(record);
+            return;
+        }
+
+        List<Object> out = buffers[step];
+        out.clear();
+        if (profile) {
+            long start = System.nanoTime();
+            chain[step].apply(record, out);
+            counters[step][0] += System.nanoTime() - start;
+        } else {
+            chain[step].apply(record, out);
+        }
+        counters[step][1]++;
+        counters[step][2] += out.size();
+
+        for (int i = 0; i < out.size(); i++)
+            process(out.get(i), step + 1, chain, counters, buffers, sink);
+        out.clear();
+    }
+
+    /**
+     * Exchange for reduction: rows are hash-partitioned by key, and each partition is reduced in parallel
+     */
+    protected List<List<Object>> reduce(List<List<Object>> partitions, final IAssociativeReducer reducer) {
+        final List<List<Pair<String, List<Writable>>>> shuffled =
+                        keyBy(partitions, new MapToPairForReducerFunction(reducer));
+
+        List<Callable<List<Object>>> tasks = new ArrayList<>();
+        for (int p = 0; p < numPartitions; p++) {
+            final int partition = p;
+            tasks.add(new Callable<List<Object>>() {
+                @Override
+                public List<Object> call() {
+                    Map<String, IAggregableReduceOp<List<Writable>, List<Writable>>> ops = new LinkedHashMap<>();
+                    for (Pair<String, List<Writable>> pair : gather(shuffled, partition)) {
+                        IAggregableReduceOp<List<Writable>, List<Writable>> op = ops.get(pair.getFirst());
+                        if (op == null) {
+                            op = reducer.aggregableReducer();
+                            ops.put(pair.getFirst(), op);
+                        }
+                        op.accept(pair.getSecond());
+                    }
+                    List<Object> out = new ArrayList<>(ops.size());
+                    for (IAggregableReduceOp<List<Writable>, List<Writable>> op : ops.values())
+                        out.add(op.get());
+                    return out;
+                }
+            });
+        }
+        return invokeAll(tasks);
+    }
+
+    /**
+     * Exchange for CalculateSortedRank: rows are sorted globally (stable parallel sort), and split into contiguous
+     * partitions again
+     */
+    @SuppressWarnings("unchecked")
+    protected List<List<Object>> rank(List<List<Object>> partitions, CalculateSortedRank csr) {
+        final int column = csr.getInputSchema().getIndexOfColumn(csr.getSortOnColumn());
+        final Comparator<List<Writable>> comparator =
+                        RowComparators.byColumn(column, csr.getComparator(), csr.isAscending());
+        final List<Writable>[] rows = concat(partitions).toArray(new List[0]);
+
+        try {
+            pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    Arrays.parallelSort(rows, comparator);
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+
+        List<Object> ranked = new ArrayList<>(rows.length);
+        for (int i = 0; i < rows.length; i++) {
+            List<Writable> row = new ArrayList<>(rows[i].size() + 1);
+            row.addAll(rows[i]);
+            row.add(new LongWritable(i));
+            ranked.add(row);
+        }
+        return split(ranked);
+    }
+
+    /**
+     * Exchange for ConvertToSequence: rows are hash-partitioned by key columns, and each partition is grouped
+     * into sequences in parallel
+     */
+    protected List<List<Object>> toSequences(List<List<Object>> partitions, ConvertToSequence cts) {
+        final LocalMapToPairByMultipleColumnsFunction keyFunction = new LocalMapToPairByMultipleColumnsFunction(
+                        cts.getInputSchema().getIndexOfColumns(cts.getKeyColumns()));
+        final LocalGroupToSequenceFunction groupFunction = new LocalGroupToSequenceFunction(cts.getComparator());
+
+        final List<List<Pair<List<Writable>, List<Writable>>>> shuffled = keyBy(partitions, keyFunction);
+
+        List<Callable<List<Object>>> tasks = new ArrayList<>();
+        for (int p = 0; p < numPartitions; p++) {
+            final int partition = p;
+            tasks.add(new Callable<List<Object>>() {
+                @Override
+                public List<Object> call() {
+                    Map<List<Writable>, List<List<Writable>>> groups =
+                                    FunctionalUtils.groupByKey(gather(shuffled, partition));
+                    List<Object> out = new ArrayList<>(groups.size());
+                    for (List<List<Writable>> group : groups.values())
+                        out.add(groupFunction.apply(group));
+                    return out;
+                }
+            });
+        }
+        return invokeAll(tasks);
+    }
+
+    /**
+     * This method extracts keys of all rows in parallel, and buckets them by key hash: result is
+     * [source partition * numPartitions + target partition] list of keyed rows
+     */
+    @SuppressWarnings("unchecked")
+    protected <K> List<List<Pair<K, List<Writable>>>> keyBy(List<? extends List<?>> partitions,
+                    final Function<List<Writable>, Pair<K, List<Writable>>> keyFunction) {
+        List<Callable<List<Object>>> tasks = new ArrayList<>();
+        for (final List<?> partition : partitions) {
+            tasks.add(new Callable<List<Object>>() {
+                @Override
+                public List<Object> call() {
+                    List<Object> buckets = new ArrayList<>(numPartitions);
+                    for (int i = 0; i < numPartitions; i++)
+                        buckets.add(new ArrayList<Pair<K, List<Writable>>>());
+                    for (Object row : partition) {
+                        Pair<K, List<Writable>> pair = keyFunction.apply((List<Writable>) row);
+                        int target = (pair.getFirst().hashCode() & Integer.MAX_VALUE) % numPartitions;
+                        ((List<Pair<K, List<Writable>>>) buckets.get(target)).add(pair);
+                    }
+                    return buckets;
+                }
+            });
+        }
+
+        List<List<Pair<K, List<Writable>>>> out = new ArrayList<>();
+        for (List<Object> buckets : invokeAll(tasks))
+            for (Object bucket : buckets)
+                out.add((List<Pair<K, List<Writable>>>) bucket);
+        return out;
+    }
+
+    /**
+     * This method collects all keyed rows sent to the given target partition, in order of source partitions
+     */
+    protected <K> List<Pair<K, List<Writable>>> gather(List<List<Pair<K, List<Writable>>>> buckets, int target) {
+        List<Pair<K, List<Writable>>> out = new ArrayList<>();
+        for (int i = target; i < buckets.size(); i += numPartitions)
+            out.addAll(buckets.get(i));
+        return out;
+    }
+
+    protected List<List<Object>> invokeAll(List<Callable<List<Object>>> tasks) {
+        List<List<Object>> out = new ArrayList<>(tasks.size());
+        try {
+            for (Future<List<Object>> f : pool.invokeAll(tasks))
+                out.add(f.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+        return out;
+    }
+
+    /**
+     * This method splits input into numPartitions contiguous partitions
+     */
+    protected List<List<Object>> split(List<?> input) {
+        List<List<Object>> out = new ArrayList<>(numPartitions);
+        int size = input.size();
+        for (int p = 0; p < numPartitions; p++) {
+            int from = (int) ((long) size * p / numPartitions);
+            int to = (int) ((long) size * (p + 1) / numPartitions);
+            out.add(new ArrayList<Object>(input.subList(from, to)));
+        }
+        return out;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static <T> List<T> concat(List<List<Object>> partitions) {
+        List<T> out = new ArrayList<>((int) count(partitions));
+        for (List<Object> p : partitions)
+            for (Object o : p)
+                out.add((T) o);
+        return out;
+    }
+
+    protected static long count(List<List<Object>> partitions) {
+        long count = 0;
+        for (List<Object> p : partitions)
+            count += p.size();
+        return count;
+    }
+
+    /**
+     * This method shuts down the fork-join pool, if it was created by this executor
+     */
+    @Override
+    public void close() {
+        if (ownPool)
+            pool.shutdown();
+    }
+
+    /**
+     * Single row-wise step: consumes one record (or sequence), emits zero or more
+     */
+    protected static abstract class RowStep {
+        protected final String name;
+
+        protected RowStep(String name) {
+            this.name = name;
+        }
+
+        public abstract void apply(Object in, List<Object> out);
+    }
+
+    public static class Builder {
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        private int numPartitions = -1;
+        private ForkJoinPool pool;
+        private boolean profile = false;
+
+        /**
+         * Number of worker threads of the fork-join pool. Default: number of available processors
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 1)
+                throw new IllegalArgumentException("Parallelism must be >= 1: got " + parallelism);
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Number of partitions input is split into. Default: 4 partitions per worker thread
+         */
+        public Builder numPartitions(int numPartitions) {
+            if (numPartitions < 1)
+                throw new IllegalArgumentException("Number of partitions must be >= 1: got " + numPartitions);
+            this.numPartitions = numPartitions;
+            return this;
+        }
+
+        /**
+         * Existing fork-join pool to use instead of creating new one. This pool isn't shut down by
+         * {@link ParallelTransformExecutor#close()}
+         */
+        public Builder pool(@NonNull ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        /**
+         * If true, time spent in each row-wise step is measured separately. Otherwise, only time of each group of
+         * fused row-wise steps is measured (and reported for its first step). Default: false
+         */
+        public Builder profile(boolean profile) {
+            this.profile = profile;
+            return this;
+        }
+
+        public ParallelTransformExecutor build() {
+            return new ParallelTransformExecutor(this);
+        }
+    }
+}
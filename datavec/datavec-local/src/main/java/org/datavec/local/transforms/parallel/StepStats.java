@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.local.transforms.parallel;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timing and record counts of single step of {@link ParallelTransformExecutor}.
+ *
+ * For row-wise steps with profiling enabled, time is summed over all worker threads, so it reflects CPU time spent
+ * in the step. Without profiling, fused row-wise steps aren't timed separately: wall-clock time of the whole stage is
+ * reported for its first step, and 0 for the others.
+ * For exchanges (reduction, sort, grouping into sequences, join) time is wall-clock time of the exchange.
+ */
+@Data
+@AllArgsConstructor
+public class StepStats implements Serializable {
+    private String name;
+    private boolean exchange;
+    private long timeNanos;
+    private long inputRecords;
+    private long outputRecords;
+
+    @Override
+    public String toString() {
+        return String.format("%s%s: %d ms, %d -> %d records", name, exchange ? " (exchange)" : "",
+                        TimeUnit.NANOSECONDS.toMillis(timeNanos), inputRecords, outputRecords);
+    }
+}
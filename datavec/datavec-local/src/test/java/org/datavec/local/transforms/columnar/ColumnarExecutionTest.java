@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.local.transforms.columnar;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.OutOfMemoryException;
+import org.apache.arrow.memory.RootAllocator;
+import org.datavec.api.split.FileSplit;
+import org.datavec.api.transform.MathFunction;
+import org.datavec.api.transform.MathOp;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.condition.ConditionOp;
+import org.datavec.api.transform.condition.column.CategoricalColumnCondition;
+import org.datavec.api.transform.condition.column.DoubleColumnCondition;
+import org.datavec.api.transform.condition.column.NullWritableColumnCondition;
+import org.datavec.api.transform.filter.ConditionFilter;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.*;
+import org.datavec.arrow.ArrowConverter;
+import org.datavec.arrow.recordreader.ArrowStreamRecordReader;
+import org.datavec.arrow.recordreader.ArrowStreamRecordWriter;
+import org.datavec.arrow.recordreader.ArrowWritableRecordBatch;
+import org.datavec.local.transforms.LocalTransformExecutor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ColumnarExecutionTest {
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    protected static Schema getSchema() {
+        return new Schema.Builder()
+                .addColumnInteger("id")
+                .addColumnCategorical("cat", "a", "b", "c")
+                .addColumnDouble("x")
+                .addColumnLong("t")
+                .addColumnString("text")
+                .addColumnFloat("f")
+                .build();
+    }
+
+    protected static List<List<Writable>> getData(int numRows) {
+        Random rng = new Random(119);
+        String[] cats = {"a", "b", "c"};
+        List<List<Writable>> ret = new ArrayList<>(numRows);
+        for (int i = 0; i < numRows; i++) {
+            ret.add(Arrays.<Writable>asList(new IntWritable(i), new Text(cats[rng.nextInt(3)]),
+                    new DoubleWritable(rng.nextDouble() * 10), new LongWritable(rng.nextInt(1000)),
+                    new Text("text_" + i), new FloatWritable(rng.nextFloat())));
+        }
+        return ret;
+    }
+
+    protected static TransformProcess getTransformProcess() {
+        return new TransformProcess.Builder(getSchema())
+                .doubleMathOp("x", MathOp.Multiply, 2.0)
+                .filter(new ConditionFilter(new DoubleColumnCondition("x", ConditionOp.LessThan, 3.0)))
+                .integerMathOp("id", MathOp.Add, 7)
+                .longMathOp("t", MathOp.ScalarMax, 500)
+                .doubleMathFunction("x", MathFunction.SQRT)
+                .floatMathOp("f", MathOp.Multiply, 3.0f)
+                .duplicateColumn("cat", "cat2")
+                .filter(new ConditionFilter(new CategoricalColumnCondition("cat", ConditionOp.Equal, "b")))
+                .categoricalToInteger("cat")
+                .categoricalToOneHot("cat2")
+                .removeColumns("text")
+                .renameColumn("x", "y")
+                .reorderColumns("y", "id")
+                .build();
+    }
+
+    @Test
+    public void testColumnarVsRowWise_1() {
+        TransformProcess tp = getTransformProcess();
+        List<List<Writable>> data = getData(1000);
+
+        List<List<Writable>> expected = LocalTransformExecutor.execute(getData(1000), tp);
+        List<List<Writable>> result = LocalTransformExecutor.executeColumnar(data, tp);
+
+        assertTrue(expected.size() > 0);
+        assertTrue(expected.size() < 1000);
+        assertEquals(expected.size(), result.size());
+        for (int i = 0; i < expected.size(); i++)
+            assertEquals(expected.get(i), result.get(i));
+    }
+
+    @Test
+    public void testPrecompiled_1() {
+        TransformProcess tp = getTransformProcess();
+        ColumnarTransformProcess ctp = ColumnarTransformProcess.compile(tp);
+
+        // the same compiled process is reused between calls
+        for (int e = 0; e < 3; e++) {
+            List<List<Writable>> expected = LocalTransformExecutor.execute(getData(100), tp);
+            List<List<Writable>> result = LocalTransformExecutor.executeColumnar(getData(100), ctp);
+            assertEquals(expected.size(), result.size());
+            for (int i = 0; i < expected.size(); i++)
+                assertEquals(expected.get(i), result.get(i));
+        }
+    }
+
+    @Test
+    public void testCompilation_1() {
+        ColumnarTransformProcess ctp = ColumnarTransformProcess.compile(getTransformProcess());
+
+        // float math op is the only step here that goes through Writables
+        assertEquals(13, ctp.getSteps().size());
+        assertEquals(12, ctp.numVectorizedSteps());
+    }
+
+    @Test
+    public void testArrowExecution_1() {
+        TransformProcess tp = getTransformProcess();
+        Schema schema = tp.getInitialSchema();
+        List<List<Writable>> data = getData(500);
+
+        BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+        ArrowWritableRecordBatch input = ArrowConverter.toArrowWritables(ArrowConverter.toArrowColumns(allocator, schema, data), schema);
+
+        ArrowWritableRecordBatch result = LocalTransformExecutor.executeColumnar(input, tp);
+        List<List<Writable>> expected = LocalTransformExecutor.execute(getData(500), tp);
+
+        assertEquals(tp.getFinalSchema(), result.getSchema());
+        assertEquals(expected.size(), result.size());
+        for (int i = 0; i < expected.size(); i++)
+            assertEquals(expected.get(i), result.get(i));
+    }
+
+    @Test
+    public void testInvalidValues_1() {
+        Schema schema = new Schema.Builder().addColumnDouble("x").addColumnInteger("y").build();
+        TransformProcess tp = new TransformProcess.Builder(schema)
+                .filter(new ConditionFilter(new NullWritableColumnCondition("x")))
+                .doubleMathOp("x", MathOp.Add, 1.0)
+                .integerMathOp("y", MathOp.Multiply, 3)
+                .build();
+
+        List<List<Writable>> data = new ArrayList<>();
+        data.add(Arrays.<Writable>asList(new DoubleWritable(1.0), new IntWritable(1)));
+        data.add(Arrays.<Writable>asList(NullWritable.INSTANCE, new IntWritable(2)));
+        data.add(Arrays.<Writable>asList(new DoubleWritable(3.0), new IntWritable(3)));
+
+        List<List<Writable>> result = ColumnarTransformProcess.compile(tp).execute(data);
+
+        List<List<Writable>> expected = new ArrayList<>();
+        expected.add(Arrays.<Writable>asList(new DoubleWritable(2.0), new IntWritable(3)));
+        expected.add(Arrays.<Writable>asList(new DoubleWritable(4.0), new IntWritable(9)));
+        assertEquals(expected, result);
+    }
+
+    @Test
+    public void testEmptyResult_1() {
+        Schema schema = new Schema.Builder().addColumnDouble("x").addColumnCategorical("c", "a", "b").build();
+        TransformProcess tp = new TransformProcess.Builder(schema)
+                .filter(new ConditionFilter(new DoubleColumnCondition("x", ConditionOp.GreaterThan, -1.0)))
+                .categoricalToOneHot("c")
+                .build();
+
+        List<List<Writable>> data = new ArrayList<>();
+        data.add(Arrays.<Writable>asList(new DoubleWritable(1.0), new Text("a")));
+
+        ColumnarBatch result = ColumnarTransformProcess.compile(tp).execute(ColumnarBatch.fromWritables(schema, data));
+        assertEquals(0, result.getNumRows());
+        assertEquals(tp.getFinalSchema(), result.getSchema());
+    }
+
+    @Test
+    public void testExecuteToArrow_1() throws Exception {
+        TransformProcess tp = getTransformProcess();
+        Schema schema = tp.getInitialSchema();
+
+        File input = testDir.newFile();
+        try (ArrowStreamRecordWriter writer = new ArrowStreamRecordWriter(schema, 300, Long.MAX_VALUE,
+                new FileOutputStream(input))) {
+            writer.writeBatch(getData(2000));
+        }
+
+        File output = testDir.newFile();
+        ArrowStreamRecordReader reader = new ArrowStreamRecordReader(schema, Long.MAX_VALUE);
+        reader.initialize(new FileSplit(input));
+        long count;
+        try (ArrowStreamRecordWriter writer = new ArrowStreamRecordWriter(tp.getFinalSchema(), 1000, Long.MAX_VALUE,
+                new FileOutputStream(output))) {
+            count = LocalTransformExecutor.executeToArrow(reader, tp, writer, 250);
+        }
+        reader.close();
+
+        List<List<Writable>> expected = LocalTransformExecutor.execute(getData(2000), tp);
+        assertEquals(expected.size(), count);
+
+        ArrowStreamRecordReader result = new ArrowStreamRecordReader(tp.getFinalSchema(), Long.MAX_VALUE);
+        result.initialize(new FileSplit(output));
+        List<List<Writable>> actual = new ArrayList<>();
+        while (result.hasNext())
+            actual.add(result.next());
+        result.close();
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+            assertEquals(expected.get(i), actual.get(i));
+    }
+
+    @Test(expected = OutOfMemoryException.class)
+    public void testExecuteToArrowAllocationLimit() throws Exception {
+        TransformProcess tp = getTransformProcess();
+        Schema schema = tp.getInitialSchema();
+
+        File input = testDir.newFile();
+        try (ArrowStreamRecordWriter writer = new ArrowStreamRecordWriter(schema, 300, Long.MAX_VALUE,
+                new FileOutputStream(input))) {
+            writer.writeBatch(getData(2000));
+        }
+
+        ArrowStreamRecordReader reader = new ArrowStreamRecordReader(schema, Long.MAX_VALUE);
+        reader.initialize(new FileSplit(input));
+        try (ArrowStreamRecordWriter writer = new ArrowStreamRecordWriter(tp.getFinalSchema(), 1000, Long.MAX_VALUE,
+                new FileOutputStream(testDir.newFile()))) {
+            //Processed batch of 250 records doesn't fit into 1KB
+            LocalTransformExecutor.executeToArrow(reader, tp, writer, 250, 1024);
+        } finally {
+            reader.close();
+        }
+    }
+}
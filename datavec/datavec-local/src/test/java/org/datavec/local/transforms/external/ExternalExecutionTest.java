@@ -0,0 +1,295 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.local.transforms.external;
+
+import org.datavec.api.conf.Configuration;
+import org.datavec.api.records.reader.impl.collection.CollectionRecordReader;
+import org.datavec.api.records.writer.RecordWriter;
+import org.datavec.api.split.InputSplit;
+import org.datavec.api.split.partition.PartitionMetaData;
+import org.datavec.api.split.partition.Partitioner;
+import org.datavec.api.transform.ReduceOp;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.join.Join;
+import org.datavec.api.transform.reduce.Reducer;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.sequence.comparator.NumericalColumnComparator;
+import org.datavec.api.writable.*;
+import org.datavec.api.writable.comparator.DoubleWritableComparator;
+import org.datavec.local.transforms.LocalTransformExecutor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ExternalExecutionTest {
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    private final Schema schema = new Schema.Builder().addColumnLong("id").addColumnString("key")
+            .addColumnDouble("value").build();
+
+    // tiny budget and fan-in: many runs, several merge passes
+    private ExternalMemoryConfig config() {
+        return ExternalMemoryConfig.builder().memoryBudget(4096).maxMergeFanIn(3).numPartitions(4)
+                .tempDirectory(testDir.getRoot()).build();
+    }
+
+    private static List<List<Writable>> data(int n, int numKeys, long seed) {
+        Random r = new Random(seed);
+        List<List<Writable>> out = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            out.add(Arrays.<Writable>asList(new LongWritable(i), new Text("key" + r.nextInt(numKeys)),
+                    new DoubleWritable(r.nextInt(100))));
+        }
+        return out;
+    }
+
+    @Test
+    public void testExternalSorter() throws Exception {
+        List<List<Writable>> data = data(1000, 10, 12345);
+        Comparator<List<Writable>> comparator = RowComparators.byColumns(new int[] {1});
+
+        try (ExternalSorter sorter = new ExternalSorter(comparator, config())) {
+            for (List<Writable> row : data)
+                sorter.add(row);
+            assertTrue(sorter.numRuns() > 3);
+
+            List<List<Writable>> exp = new ArrayList<>(data);
+            Collections.sort(exp, comparator);
+            List<List<Writable>> act = new ArrayList<>();
+            Iterator<List<Writable>> iterator = sorter.sorted();
+            while (iterator.hasNext())
+                act.add(iterator.next());
+
+            // stable: ids within each key stay in insertion order
+            assertEquals(exp, act);
+            // runs are removed once all rows are returned
+            assertEquals(0, testDir.getRoot().listFiles().length);
+        }
+        assertEquals(0, testDir.getRoot().listFiles().length);
+    }
+
+    @Test
+    public void testSpillFilesRemovedOnError() throws Exception {
+        List<List<Writable>> data = data(1000, 50, 12345);
+        TransformProcess reduce = new TransformProcess.Builder(schema)
+                .reduce(new Reducer.Builder(ReduceOp.Sum).keyColumns("key").countColumns("id").build())
+                .build();
+        TransformProcess rank = new TransformProcess.Builder(schema)
+                .calculateSortedRank("rank", "value", new DoubleWritableComparator())
+                .build();
+
+        for (TransformProcess tp : new TransformProcess[] {reduce, rank}) {
+            CollectingRecordWriter writer = new CollectingRecordWriter() {
+                @Override
+                public PartitionMetaData write(List<Writable> record) throws IOException {
+                    if (testDir.getRoot().listFiles().length == 0)
+                        fail("Expected spilled data");
+                    throw new IOException("Disk full");
+                }
+            };
+            try {
+                LocalTransformExecutor.execute(new CollectionRecordReader(data), tp, writer, config());
+                fail("Expected IOException");
+            } catch (IOException e) {
+                assertEquals("Disk full", e.getMessage());
+            }
+            assertEquals(0, testDir.getRoot().listFiles().length);
+        }
+    }
+
+    @Test
+    public void testEstimateBytesNDArray() {
+        INDArray arr = Nd4j.create(1, 1000);
+        long data = 1000L * arr.data().getElementSize();
+        long bytes = SpillFile.estimateBytes(Collections.<Writable>singletonList(new NDArrayWritable(arr)));
+        assertTrue(bytes >= data);
+        assertTrue(bytes < 2 * data);
+
+        long empty = SpillFile.estimateBytes(Collections.<Writable>singletonList(new NDArrayWritable()));
+        assertTrue(empty < 100);
+    }
+
+    @Test
+    public void testReduceAndRank() throws Exception {
+        List<List<Writable>> data = data(1000, 50, 12345);
+        TransformProcess reduce = new TransformProcess.Builder(schema)
+                .reduce(new Reducer.Builder(ReduceOp.Sum).keyColumns("key").countColumns("id").build())
+                .build();
+        TransformProcess rank = new TransformProcess.Builder(schema)
+                .calculateSortedRank("rank", "value", new DoubleWritableComparator())
+                .build();
+
+        for (TransformProcess tp : new TransformProcess[] {reduce, rank}) {
+            CollectingRecordWriter writer = new CollectingRecordWriter();
+            long count = LocalTransformExecutor.execute(new CollectionRecordReader(data), tp, writer, config());
+            List<List<Writable>> exp = LocalTransformExecutor.execute(data, tp);
+
+            assertEquals(exp.size(), count);
+            if (tp == reduce)
+                assertEquals(new HashSet<>(exp), new HashSet<>(writer.records));
+            else
+                assertEquals(ranks(exp), ranks(writer.records));
+            assertEquals(0, testDir.getRoot().listFiles().length);
+        }
+    }
+
+    // rank per value: order of equal values isn't defined for in-memory execution
+    private static Map<Double, Set<Long>> ranks(List<List<Writable>> records) {
+        Map<Double, Set<Long>> out = new HashMap<>();
+        for (List<Writable> r : records) {
+            if (!out.containsKey(r.get(2).toDouble()))
+                out.put(r.get(2).toDouble(), new HashSet<Long>());
+            out.get(r.get(2).toDouble()).add(r.get(3).toLong());
+        }
+        return out;
+    }
+
+    @Test
+    public void testConvertToSequence() throws Exception {
+        List<List<Writable>> data = data(500, 7, 12345);
+        TransformProcess tp = new TransformProcess.Builder(schema)
+                .convertToSequence(Collections.singletonList("key"), new NumericalColumnComparator("value"))
+                .build();
+
+        final List<List<List<Writable>>> act = new ArrayList<>();
+        long count = LocalTransformExecutor.executeToSequence(new CollectionRecordReader(data), tp,
+                new org.datavec.api.records.writer.SequenceRecordWriter() {
+                    @Override
+                    public PartitionMetaData write(List<List<Writable>> sequence) {
+                        act.add(sequence);
+                        return PartitionMetaData.builder().numRecordsUpdated(1).build();
+                    }
+
+                    @Override
+                    public void close() {
+                    }
+
+                    @Override
+                    public void setConf(Configuration conf) {
+                    }
+
+                    @Override
+                    public Configuration getConf() {
+                        return null;
+                    }
+                }, config());
+
+        List<List<List<Writable>>> exp = LocalTransformExecutor.executeToSequence(data, tp);
+        assertEquals(7, count);
+        assertEquals(sequencesByKey(exp), sequencesByKey(act));
+    }
+
+    // sequences by key, with (value, id) pairs of each one: order of equal values isn't defined
+    private static Map<String, Set<String>> sequencesByKey(List<List<List<Writable>>> sequences) {
+        Map<String, Set<String>> out = new HashMap<>();
+        for (List<List<Writable>> s : sequences) {
+            Set<String> steps = new HashSet<>();
+            double last = Double.NEGATIVE_INFINITY;
+            for (List<Writable> step : s) {
+                assertTrue(step.get(2).toDouble() >= last);
+                last = step.get(2).toDouble();
+                steps.add(step.get(2).toDouble() + "_" + step.get(0).toLong());
+            }
+            out.put(s.get(0).get(1).toString(), steps);
+        }
+        return out;
+    }
+
+    @Test
+    public void testJoin() throws Exception {
+        Schema infoSchema = new Schema.Builder().addColumnString("key").addColumnInteger("info").build();
+        List<List<Writable>> info = new ArrayList<>();
+        // keys 40..58 have no purchases, odd purchase keys have no info, key4 has two rows
+        for (int i = 0; i < 60; i += 2)
+            info.add(Arrays.<Writable>asList(new Text("key" + i), new IntWritable(i)));
+        info.add(Arrays.<Writable>asList(new Text("key4"), new IntWritable(-4)));
+        List<List<Writable>> purchases = data(400, 40, 12345);
+
+        for (Join.JoinType type : Join.JoinType.values()) {
+            Join join = new Join.Builder(type).setJoinColumns("key").setSchemas(schema, infoSchema).build();
+
+            CollectingRecordWriter writer = new CollectingRecordWriter();
+            long count = LocalTransformExecutor.executeJoin(join, new CollectionRecordReader(purchases),
+                    new CollectionRecordReader(info), writer, config());
+            List<List<Writable>> exp = LocalTransformExecutor.executeJoin(join, purchases, info);
+
+            assertEquals(type.toString(), exp.size(), count);
+            assertEquals(type.toString(), asStrings(exp), asStrings(writer.records));
+        }
+        assertEquals(0, testDir.getRoot().listFiles().length);
+    }
+
+    private static List<String> asStrings(List<List<Writable>> records) {
+        List<String> out = new ArrayList<>();
+        for (List<Writable> r : records)
+            out.add(r.toString());
+        Collections.sort(out);
+        return out;
+    }
+
+    private static class CollectingRecordWriter implements RecordWriter {
+        private final List<List<Writable>> records = new ArrayList<>();
+
+        @Override
+        public boolean supportsBatch() {
+            return true;
+        }
+
+        @Override
+        public void initialize(InputSplit inputSplit, Partitioner partitioner) {
+        }
+
+        @Override
+        public void initialize(Configuration configuration, InputSplit split, Partitioner partitioner) {
+        }
+
+        @Override
+        public PartitionMetaData write(List<Writable> record) throws IOException {
+            records.add(record);
+            return PartitionMetaData.builder().numRecordsUpdated(1).build();
+        }
+
+        @Override
+        public PartitionMetaData writeBatch(List<List<Writable>> batch) throws IOException {
+            records.addAll(batch);
+            return PartitionMetaData.builder().numRecordsUpdated(batch.size()).build();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void setConf(Configuration conf) {
+        }
+
+        @Override
+        public Configuration getConf() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.local.transforms.parallel;
+
+import org.datavec.api.transform.MathOp;
+import org.datavec.api.transform.ReduceOp;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.condition.ConditionOp;
+import org.datavec.api.transform.condition.column.DoubleColumnCondition;
+import org.datavec.api.transform.filter.ConditionFilter;
+import org.datavec.api.transform.join.Join;
+import org.datavec.api.transform.reduce.Reducer;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.sequence.comparator.NumericalColumnComparator;
+import org.datavec.api.writable.*;
+import org.datavec.api.writable.comparator.DoubleWritableComparator;
+import org.datavec.local.transforms.LocalTransformExecutor;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ParallelTransformExecutorTest {
+
+    private final Schema schema = new Schema.Builder().addColumnLong("id").addColumnString("key")
+            .addColumnDouble("value").build();
+
+    private static List<List<Writable>> data(int n, int numKeys, long seed) {
+        Random r = new Random(seed);
+        List<List<Writable>> out = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            out.add(Arrays.<Writable>asList(new LongWritable(i), new Text("key" + r.nextInt(numKeys)),
+                    new DoubleWritable(r.nextInt(100))));
+        }
+        return out;
+    }
+
+    @Test
+    public void testRowWiseSteps() {
+        List<List<Writable>> data = data(1000, 10, 12345);
+        TransformProcess tp = new TransformProcess.Builder(schema)
+                .doubleMathOp("value", MathOp.Multiply, 2.0)
+                .filter(new ConditionFilter(new DoubleColumnCondition("value", ConditionOp.LessThan, 50.0)))
+                .removeColumns("key")
+                .build();
+
+        try (ParallelTransformExecutor executor = new ParallelTransformExecutor.Builder().parallelism(4)
+                .numPartitions(7).profile(true).build()) {
+            List<List<Writable>> exp = new ArrayList<>(LocalTransformExecutor.execute(data, tp));
+            // order of records is kept
+            assertEquals(exp, executor.execute(data, tp));
+
+            List<StepStats> stats = executor.getLastStats();
+            assertEquals(4, stats.size());
+            assertEquals(1000, stats.get(1).getInputRecords());
+            assertEquals(exp.size(), stats.get(2).getOutputRecords());
+            assertFalse(stats.get(2).isExchange());
+        }
+    }
+
+    @Test
+    public void testExchanges() {
+        List<List<Writable>> data = data(1000, 50, 12345);
+        TransformProcess reduce = new TransformProcess.Builder(schema)
+                .reduce(new Reducer.Builder(ReduceOp.Sum).keyColumns("key").countColumns("id").build())
+                .build();
+        TransformProcess rank = new TransformProcess.Builder(schema)
+                .calculateSortedRank("rank", "value", new DoubleWritableComparator())
+                .build();
+
+        try (ParallelTransformExecutor executor = new ParallelTransformExecutor.Builder().parallelism(4).build()) {
+            assertEquals(new HashSet<>(LocalTransformExecutor.execute(data, reduce)),
+                    new HashSet<>(executor.execute(data, reduce)));
+            StepStats stats = executor.getLastStats().get(1);
+            assertEquals("Reduce", stats.getName());
+            assertTrue(stats.isExchange());
+            assertEquals(50, stats.getOutputRecords());
+
+            // parallel sort is stable, so ranks of equal values follow input order
+            List<List<Writable>> ranked = executor.execute(data, rank);
+            List<List<Writable>> exp = new ArrayList<>(data);
+            Collections.sort(exp, new Comparator<List<Writable>>() {
+                @Override
+                public int compare(List<Writable> o1, List<Writable> o2) {
+                    return Double.compare(o1.get(2).toDouble(), o2.get(2).toDouble());
+                }
+            });
+            for (int i = 0; i < exp.size(); i++) {
+                List<Writable> row = new ArrayList<>(exp.get(i));
+                row.add(new LongWritable(i));
+                assertEquals(row, ranked.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testSequences() {
+        List<List<Writable>> data = data(500, 7, 12345);
+        TransformProcess tp = new TransformProcess.Builder(schema)
+                .convertToSequence(Collections.singletonList("key"), new NumericalColumnComparator("value"))
+                .removeColumns("id")
+                .build();
+
+        try (ParallelTransformExecutor executor = new ParallelTransformExecutor.Builder().parallelism(3).build()) {
+            List<List<List<Writable>>> act = executor.executeToSequence(data, tp);
+            List<List<List<Writable>>> exp = LocalTransformExecutor.executeToSequence(data, tp);
+            assertEquals(7, act.size());
+            assertEquals(asMap(exp), asMap(act));
+
+            TransformProcess seq = new TransformProcess.Builder(tp.getFinalSchema())
+                    .doubleMathOp("value", MathOp.Add, 1.0)
+                    .build();
+            assertEquals(asMap(LocalTransformExecutor.executeSequenceToSequence(exp, seq)),
+                    asMap(executor.executeSequenceToSequence(act, seq)));
+        }
+    }
+
+    // order of equal values within sequence isn't defined, so values are compared as sorted lists
+    private static Map<String, List<Double>> asMap(List<List<List<Writable>>> sequences) {
+        Map<String, List<Double>> out = new HashMap<>();
+        for (List<List<Writable>> s : sequences) {
+            List<Double> values = new ArrayList<>();
+            for (List<Writable> step : s)
+                values.add(step.get(1).toDouble());
+            List<Double> sorted = new ArrayList<>(values);
+            Collections.sort(sorted);
+            assertEquals(sorted, values);
+            out.put(s.get(0).get(0).toString(), values);
+        }
+        return out;
+    }
+
+    @Test
+    public void testJoin() {
+        Schema infoSchema = new Schema.Builder().addColumnString("key").addColumnInteger("info").build();
+        List<List<Writable>> info = new ArrayList<>();
+        for (int i = 0; i < 60; i += 2)
+            info.add(Arrays.<Writable>asList(new Text("key" + i), new IntWritable(i)));
+        List<List<Writable>> purchases = data(400, 40, 12345);
+
+        try (ParallelTransformExecutor executor = new ParallelTransformExecutor.Builder().parallelism(4).build()) {
+            for (Join.JoinType type : Join.JoinType.values()) {
+                Join join = new Join.Builder(type).setJoinColumns("key").setSchemas(schema, infoSchema).build();
+                assertEquals(type.toString(), asStrings(LocalTransformExecutor.executeJoin(join, purchases, info)),
+                        asStrings(executor.executeJoin(join, purchases, info)));
+            }
+        }
+    }
+
+    private static List<String> asStrings(List<List<Writable>> records) {
+        List<String> out = new ArrayList<>();
+        for (List<Writable> r : records)
+            out.add(r.toString());
+        Collections.sort(out);
+        return out;
+    }
+}
@@ -82,6 +82,15 @@ public class DL4JSystemProperties {
      */
     public static final String CRASH_DUMP_OUTPUT_DIRECTORY_PROPERTY = "org.deeplearning4j.crash.reporting.directory";
 
+    /**
+     * Applicability: deeplearning4j-nn - ModelSerializer, for models saved with {@code ModelSerializer.writeMappableModel}<br>
+     * Description: Parameters of such models are memory-mapped copy-on-write when the model file is writable, and copied
+     * into memory otherwise. Set this property to "true" to memory-map parameters of read-only model files in read-only
+     * mode instead.<br>
+     * NOTE: any attempt to modify parameters of such model (i.e. fit, setParams) will crash the JVM. Use for inference only.
+     */
+    public static final String MAPPED_PARAMS_READ_ONLY_PROPERTY = "org.deeplearning4j.modelserializer.mmap.readonly";
+
     /**
      * Applicability: deeplearning4j-ui_2.xx<br>
      * Description: The DL4J training UI (StatsListener + UIServer.getInstance().attach(ss)) will subsample the number
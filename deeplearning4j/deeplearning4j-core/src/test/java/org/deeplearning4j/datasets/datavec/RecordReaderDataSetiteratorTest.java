@@ -18,6 +18,7 @@ package org.deeplearning4j.datasets.datavec;
 
 import com.google.common.io.Files;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.datavec.api.io.labels.ParentPathLabelGenerator;
 import org.datavec.api.records.Record;
@@ -28,6 +29,8 @@ import org.datavec.api.records.reader.impl.collection.CollectionRecordReader;
 import org.datavec.api.records.reader.impl.collection.CollectionSequenceRecordReader;
 import org.datavec.api.records.reader.impl.csv.CSVRecordReader;
 import org.datavec.api.records.reader.impl.csv.CSVSequenceRecordReader;
+import org.datavec.api.records.reader.impl.misc.SVMLightRecordReader;
+import org.datavec.api.conf.Configuration;
 import org.datavec.api.split.FileSplit;
 import org.datavec.api.split.InputStreamInputSplit;
 import org.datavec.api.split.NumberedFileInputSplit;
@@ -95,6 +98,54 @@ public class RecordReaderDataSetiteratorTest extends BaseDL4JTest {
         assertEquals(false, iter.hasNext());
     }
 
+    @Test
+    public void testColumnarBatchesSameAsRecords() throws Exception {
+        File iris = new ClassPathResource("iris.txt").getTempFileFromArchive();
+        for (boolean regression : new boolean[] {false, true}) {
+            List<DataSet> out = new ArrayList<>();
+            for (boolean collectMetaData : new boolean[] {false, true}) {
+                //Metadata collection forces record by record conversion
+                RecordReader csv = new CSVRecordReader();
+                csv.initialize(new FileSplit(iris));
+                RecordReaderDataSetIterator iter = regression
+                        ? new RecordReaderDataSetIterator(csv, 150, 3, 4, true)
+                        : new RecordReaderDataSetIterator(csv, 150, 4, 3);
+                iter.setCollectMetaData(collectMetaData);
+                out.add(iter.next());
+                assertFalse(iter.hasNext());
+            }
+
+            assertEquals(150, out.get(0).numExamples());
+            assertEquals(out.get(1).getFeatures(), out.get(0).getFeatures());
+            assertEquals(out.get(1).getLabels(), out.get(0).getLabels());
+        }
+    }
+
+    @Test
+    public void testSparseFeatures() throws Exception {
+        File f = temporaryFolder.newFile();
+        FileUtils.writeLines(f, Arrays.asList("1 3:0.5 0:1.5", "0 7:2.0 1:-1", "2 5:3.0 9:1 2:0.25"));
+
+        List<DataSet> out = new ArrayList<>();
+        for (boolean sparse : new boolean[] {false, true}) {
+            Configuration conf = new Configuration();
+            conf.setInt(SVMLightRecordReader.NUM_FEATURES, 10);
+            RecordReader rr = new SVMLightRecordReader();
+            rr.initialize(conf, new FileSplit(f));
+            DataSetIterator iter = new RecordReaderDataSetIterator.Builder(rr, 3)
+                    .classification(10, 3)
+                    .sparseFeatures(sparse)
+                    .build();
+            out.add(iter.next());
+            assertFalse(iter.hasNext());
+        }
+
+        assertFalse(out.get(0).getFeatures().isSparse());
+        assertTrue(out.get(1).getFeatures().isSparse());
+        assertEquals(out.get(0).getFeatures(), out.get(1).getFeatures().toDense());
+        assertEquals(out.get(0).getLabels(), out.get(1).getLabels());
+    }
+
     @Test
     public void testRecordReaderMultiRegression() throws Exception {
 
@@ -153,6 +153,51 @@ public class TestCheckpointListener extends BaseDL4JTest {
         assertEquals(3, l.availableCheckpoints().size());
     }
 
+    @Test
+    public void testCheckpointListenerAsyncSave() throws Exception {
+        File f = tempDir.newFolder();
+        Pair<MultiLayerNetwork, DataSetIterator> p = getNetAndData();
+        MultiLayerNetwork net = p.getFirst();
+        DataSetIterator iter = p.getSecond();
+
+
+        CheckpointListener l = new CheckpointListener.Builder(f)
+                .keepLast(3)
+                .saveEveryNIterations(5)
+                .asyncSave(true)
+                .saveThreads(2)
+                .build();
+        net.setListeners(l);
+
+        for(int i=0; i<20; i++ ){   //40 iterations total
+            net.fit(iter);
+        }
+        l.close();
+
+        //Same as synchronous case: models saved at iterations 5, 10, ..., 35, keep only 25, 30, 35
+        Set<Integer> ns = new HashSet<>();
+        for(File f2 : f.listFiles()){
+            assertFalse(f2.getName(), f2.getName().endsWith(".tmp"));
+            if(!f2.getPath().endsWith(".zip")){
+                continue;
+            }
+            int prefixLength = "checkpoint_".length();
+            int num = Integer.parseInt(f2.getName().substring(prefixLength, prefixLength+1));
+
+            MultiLayerNetwork n = ModelSerializer.restoreMultiLayerNetwork(f2, true);
+            assertEquals(5 * (num+1), n.getIterationCount());
+            ns.add(n.getIterationCount());
+        }
+
+        assertEquals(ns.toString(), 3, ns.size());
+        assertTrue(ns.contains(25));
+        assertTrue(ns.contains(30));
+        assertTrue(ns.contains(35));
+
+        assertEquals(3, l.availableCheckpoints().size());
+        assertEquals(35, l.lastCheckpoint().getIteration());
+    }
+
     @Test
     public void testCheckpointListenerEveryTimeUnit() throws Exception {
         File f = tempDir.newFolder();
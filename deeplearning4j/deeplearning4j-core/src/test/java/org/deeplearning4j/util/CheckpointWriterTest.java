@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.util;
+
+import org.apache.commons.io.IOUtils;
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.preprocessor.NormalizerStandardize;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.*;
+
+public class CheckpointWriterTest extends BaseDL4JTest {
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private static MultiLayerNetwork getNetwork() {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).updater(new Adam(0.01))
+                        .activation(Activation.TANH).weightInit(WeightInit.XAVIER).list()
+                        .layer(0, new DenseLayer.Builder().nIn(10).nOut(100).build())
+                        .layer(1, new DenseLayer.Builder().nIn(100).nOut(100).build())
+                        .layer(2, new OutputLayer.Builder().lossFunction(LossFunctions.LossFunction.MSE).nIn(100)
+                                        .nOut(5).build())
+                        .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        net.fit(new DataSet(Nd4j.rand(8, 10), Nd4j.rand(8, 5)));
+        return net;
+    }
+
+    @Test
+    public void testCrcCombine() {
+        byte[] data = new byte[10000];
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte) (i * 31 + 7);
+
+        CRC32 full = new CRC32();
+        full.update(data);
+
+        CRC32 first = new CRC32();
+        first.update(data, 0, 3333);
+        CRC32 second = new CRC32();
+        second.update(data, 3333, data.length - 3333);
+
+        assertEquals(full.getValue(), ChunkedZipOutput.crc32Combine(first.getValue(), second.getValue(), data.length - 3333));
+        assertEquals(full.getValue(), ChunkedZipOutput.crc32Combine(0, full.getValue(), data.length));
+    }
+
+    @Test
+    public void testParallelWrite() throws Exception {
+        MultiLayerNetwork net = getNetwork();
+
+        NormalizerStandardize normalizer = new NormalizerStandardize();
+        normalizer.fit(new DataSet(Nd4j.rand(10, 10), Nd4j.rand(10, 5)));
+
+        File file = tempDir.newFile();
+
+        // small chunks, so params and updater state are split into many independently compressed chunks
+        try (CheckpointWriter writer = new CheckpointWriter(4, 1024, 6)) {
+            writer.write(net, file, true, normalizer);
+        }
+
+        MultiLayerNetwork restored = ModelSerializer.restoreMultiLayerNetwork(file, true);
+        assertEquals(net.getLayerWiseConfigurations().toJson(), restored.getLayerWiseConfigurations().toJson());
+        assertEquals(net.params(), restored.params());
+        assertEquals(net.getUpdater().getStateViewArray(), restored.getUpdater().getStateViewArray());
+
+        NormalizerStandardize restoredNormalizer = ModelSerializer.restoreNormalizerFromFile(file);
+        assertEquals(normalizer.getMean(), restoredNormalizer.getMean());
+
+        // file should be readable as a stream as well, with valid crc for all entries
+        Set<String> names = new HashSet<>();
+        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(file))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                names.add(entry.getName());
+                IOUtils.toByteArray(zis);
+            }
+        }
+        assertTrue(names.contains(ModelSerializer.CONFIGURATION_JSON));
+        assertTrue(names.contains(ModelSerializer.COEFFICIENTS_BIN));
+        assertTrue(names.contains(ModelSerializer.UPDATER_BIN));
+        assertTrue(names.contains(ModelSerializer.NORMALIZER_BIN));
+    }
+
+    @Test
+    public void testAsyncWrite() throws Exception {
+        MultiLayerNetwork net = getNetwork();
+        INDArray params = net.params().dup();
+        INDArray updaterState = net.getUpdater().getStateViewArray().dup();
+
+        File file = tempDir.newFile();
+
+        try (CheckpointWriter writer = new CheckpointWriter(2, 1024, -1)) {
+            Future<File> future = writer.writeAsync(net, file, true);
+
+            // snapshot was taken already, so training doesn't affect checkpoint contents
+            net.fit(new DataSet(Nd4j.rand(8, 10), Nd4j.rand(8, 5)));
+            assertNotEquals(params, net.params());
+
+            assertEquals(file, future.get());
+        }
+
+        MultiLayerNetwork restored = ModelSerializer.restoreMultiLayerNetwork(file, true);
+        assertEquals(params, restored.params());
+        assertEquals(updaterState, restored.getUpdater().getStateViewArray());
+    }
+}
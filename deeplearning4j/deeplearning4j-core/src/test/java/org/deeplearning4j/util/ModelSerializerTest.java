@@ -49,6 +49,8 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import static org.junit.Assert.*;
 
@@ -499,4 +501,81 @@ public class ModelSerializerTest extends BaseDL4JTest {
         ComputationGraph restoredNet = ModelSerializer.restoreComputationGraph(tempFile);
         assertEquals(net.params(), restoredNet.params());
     }
+
+    @Test
+    public void testWriteMappableMLNModel() throws Exception {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).l1(0.01)
+                        .l2(0.01).updater(new Sgd(0.1)).activation(Activation.TANH).weightInit(WeightInit.XAVIER).list()
+                        .layer(0, new DenseLayer.Builder().nIn(5).nOut(20).build())
+                        .layer(1, new DenseLayer.Builder().nIn(20).nOut(30).build()).layer(2, new OutputLayer.Builder()
+                                        .lossFunction(LossFunctions.LossFunction.MSE).nIn(30).nOut(6).build())
+                        .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        File tempFile = tempDir.newFile();
+
+        ModelSerializer.writeMappableModel(net, tempFile, true);
+
+        try (ZipFile zipFile = new ZipFile(tempFile)) {
+            assertTrue(MappedParameters.isMappable(zipFile));
+            assertNull(zipFile.getEntry(ModelSerializer.COEFFICIENTS_BIN));
+            assertEquals(ZipEntry.STORED, zipFile.getEntry(MappedParameters.COEFFICIENTS_RAW).getMethod());
+        }
+
+        MultiLayerNetwork network = ModelSerializer.restoreMultiLayerNetwork(tempFile);
+
+        assertEquals(network.getLayerWiseConfigurations().toJson(), net.getLayerWiseConfigurations().toJson());
+        assertEquals(net.params(), network.params());
+        assertEquals(net.getUpdater().getStateViewArray(), network.getUpdater().getStateViewArray());
+
+        INDArray input = Nd4j.rand(3, 5);
+        assertEquals(net.output(input), network.output(input));
+
+        // copy-on-write mapping: training restored model shouldn't touch the file
+        INDArray original = net.params().dup();
+        network.fit(new DataSet(input, Nd4j.rand(3, 6)));
+        assertNotEquals(original, network.params());
+
+        MultiLayerNetwork second = ModelSerializer.restoreMultiLayerNetwork(tempFile);
+        assertEquals(original, second.params());
+    }
+
+    @Test
+    public void testWriteMappableCGModel() throws Exception {
+        ComputationGraphConfiguration config = new NeuralNetConfiguration.Builder()
+                        .optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT).updater(new Sgd(0.1))
+                        .graphBuilder().addInputs("in")
+                        .addLayer("dense", new DenseLayer.Builder().nIn(4).nOut(2).build(), "in").addLayer("out",
+                                        new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(2).nOut(3)
+                                                .activation(Activation.SOFTMAX).build(),
+                                        "dense")
+                        .setOutputs("out").build();
+
+        ComputationGraph cg = new ComputationGraph(config);
+        cg.init();
+
+        File tempFile = tempDir.newFile();
+
+        NormalizerStandardize normalizer = new NormalizerStandardize();
+        normalizer.fit(new DataSet(Nd4j.rand(10, 4), Nd4j.rand(10, 3)));
+
+        ModelSerializer.writeMappableModel(cg, tempFile, true, normalizer);
+
+        ComputationGraph network = ModelSerializer.restoreComputationGraph(tempFile);
+        assertEquals(network.getConfiguration().toJson(), cg.getConfiguration().toJson());
+        assertEquals(cg.params(), network.params());
+        assertEquals(cg.getUpdater().getStateViewArray(), network.getUpdater().getStateViewArray());
+
+        NormalizerStandardize restored = ModelSerializer.restoreNormalizerFromFile(tempFile);
+        assertNotNull(restored);
+        assertEquals(normalizer.getMean(), restored.getMean());
+
+        // re-packed file doesn't keep parameters block stored as-is, so parameters are copied instead of mapping
+        ModelSerializer.addObjectToFile(tempFile, "myLabels", Arrays.asList("zero", "one", "two"));
+
+        ComputationGraph repacked = ModelSerializer.restoreComputationGraph(new FileInputStream(tempFile), true);
+        assertEquals(cg.params(), repacked.params());
+    }
 }
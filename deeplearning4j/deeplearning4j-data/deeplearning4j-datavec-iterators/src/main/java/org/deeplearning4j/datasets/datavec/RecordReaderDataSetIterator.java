@@ -102,6 +102,7 @@ public class RecordReaderDataSetIterator implements DataSetIterator {
 
     @Getter
     private boolean collectMetaData = false;
+    private boolean sparseFeatures = false;
 
     private RecordReaderMultiDataSetIterator underlying;
     private boolean underlyingIsDisjoint;
@@ -199,6 +200,7 @@ public class RecordReaderDataSetIterator implements DataSetIterator {
         this.numPossibleLabels = b.numPossibleLabels;
         this.regression = b.regression;
         this.preProcessor = b.preProcessor;
+        this.sparseFeatures = b.sparseFeatures;
     }
 
     /**
@@ -240,7 +242,8 @@ public class RecordReaderDataSetIterator implements DataSetIterator {
                     recordReader);
         }
 
-        RecordReaderMultiDataSetIterator.Builder builder = new RecordReaderMultiDataSetIterator.Builder(batchSize);
+        RecordReaderMultiDataSetIterator.Builder builder = new RecordReaderMultiDataSetIterator.Builder(batchSize)
+                .sparseFeatures(sparseFeatures);
         if (recordReader instanceof SequenceRecordReader) {
             builder.addSequenceReader(READER_KEY, (SequenceRecordReader) recordReader);
         } else {
@@ -501,6 +504,7 @@ public class RecordReaderDataSetIterator implements DataSetIterator {
         protected boolean regression = false;
         protected DataSetPreProcessor preProcessor;
         private boolean collectMetaData = false;
+        private boolean sparseFeatures = false;
 
         private boolean clOrRegCalled = false;
 
@@ -591,6 +595,17 @@ public class RecordReaderDataSetIterator implements DataSetIterator {
             return this;
         }
 
+        /**
+         * When set to true: sparse features (for example, from SVMLightRecordReader or LibSvmRecordReader) are returned
+         * as sparse CSR arrays. Disabled by default: features are returned as dense arrays.
+         *
+         * @param sparseFeatures Whether sparse features should be returned as sparse arrays
+         */
+        public Builder sparseFeatures(boolean sparseFeatures){
+            this.sparseFeatures = sparseFeatures;
+            return this;
+        }
+
         public RecordReaderDataSetIterator build(){
             return new RecordReaderDataSetIterator(this);
         }
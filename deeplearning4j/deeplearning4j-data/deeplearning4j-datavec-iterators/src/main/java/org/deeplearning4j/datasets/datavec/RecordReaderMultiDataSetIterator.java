@@ -25,12 +25,15 @@ import org.datavec.api.records.Record;
 import org.datavec.api.records.SequenceRecord;
 import org.datavec.api.records.metadata.RecordMetaData;
 import org.datavec.api.records.metadata.RecordMetaDataComposableMap;
+import org.datavec.api.records.reader.ColumnarRecordReader;
 import org.datavec.api.records.reader.RecordReader;
 import org.datavec.api.records.reader.SequenceRecordReader;
 import org.datavec.api.util.ndarray.RecordConverter;
 import org.datavec.api.writable.IntWritable;
 import org.datavec.api.writable.NDArrayWritable;
 import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.AbstractColumnarRecordBatch;
+import org.datavec.api.writable.batch.SparseRecordBatch;
 import org.datavec.api.writable.batch.NDArrayRecordBatch;
 import org.deeplearning4j.datasets.datavec.exception.ZeroLengthSequenceException;
 import org.nd4j.base.Preconditions;
@@ -85,6 +88,8 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator, S
     private boolean timeSeriesRandomOffset = false;
     private Random timeSeriesRandomOffsetRng;
 
+    private boolean sparseFeatures = false;
+
     private MultiDataSetPreProcessor preProcessor;
 
     private boolean resetSupported = true;
@@ -100,6 +105,7 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator, S
         if (this.timeSeriesRandomOffset) {
             timeSeriesRandomOffsetRng = new Random(builder.timeSeriesRandomOffsetSeed);
         }
+        this.sparseFeatures = builder.sparseFeatures;
 
 
         if(recordReaders != null){
@@ -132,6 +138,7 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator, S
         //First: load the next values from the RR / SeqRRs
         Map<String, List<List<Writable>>> nextRRVals = new HashMap<>();
         Map<String, List<INDArray>> nextRRValsBatched = null;
+        Map<String, AbstractColumnarRecordBatch> nextRRValsColumnar = null;
         Map<String, List<List<List<Writable>>>> nextSeqRRVals = new HashMap<>();
         List<RecordMetaDataComposableMap> nextMetas =
                         (collectMetaData ? new ArrayList<RecordMetaDataComposableMap>() : null);
@@ -141,7 +148,18 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator, S
             RecordReader rr = entry.getValue();
             if (!collectMetaData && rr.batchesSupported()) {
                 //Batch case, for efficiency: ImageRecordReader etc
-                List<List<Writable>> batchWritables = rr.next(num);
+                List<List<Writable>> batchWritables = rr instanceof ColumnarRecordReader
+                                ? ((ColumnarRecordReader) rr).nextColumnar(num) : rr.next(num);
+
+                if (batchWritables instanceof AbstractColumnarRecordBatch
+                                && !((AbstractColumnarRecordBatch) batchWritables).hasNDArrayColumns()) {
+                    //CSV, SVMLight, JDBC, Arrow etc case: required columns are converted with bulk copies
+                    if (nextRRValsColumnar == null) {
+                        nextRRValsColumnar = new HashMap<>();
+                    }
+                    nextRRValsColumnar.put(entry.getKey(), (AbstractColumnarRecordBatch) batchWritables);
+                    continue;
+                }
 
                 List<INDArray> batch;
                 if(batchWritables instanceof NDArrayRecordBatch){
@@ -210,7 +228,7 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator, S
             nextSeqRRVals.put(entry.getKey(), writables);
         }
 
-        return nextMultiDataSet(nextRRVals, nextRRValsBatched, nextSeqRRVals, nextMetas);
+        return nextMultiDataSet(nextRRVals, nextRRValsBatched, nextRRValsColumnar, nextSeqRRVals, nextMetas);
     }
 
     //Filter out the required columns before conversion. This is to avoid trying to convert String etc columns
@@ -276,6 +294,14 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator, S
                     Map<String, List<INDArray>> nextRRValsBatched,
                     Map<String, List<List<List<Writable>>>> nextSeqRRVals,
                     List<RecordMetaDataComposableMap> nextMetas) {
+        return nextMultiDataSet(nextRRVals, nextRRValsBatched, null, nextSeqRRVals, nextMetas);
+    }
+
+    private MultiDataSet nextMultiDataSet(Map<String, List<List<Writable>>> nextRRVals,
+                    Map<String, List<INDArray>> nextRRValsBatched,
+                    Map<String, AbstractColumnarRecordBatch> nextRRValsColumnar,
+                    Map<String, List<List<List<Writable>>>> nextSeqRRVals,
+                    List<RecordMetaDataComposableMap> nextMetas) {
         int minExamples = Integer.MAX_VALUE;
         for (List<List<Writable>> exampleData : nextRRVals.values()) {
             minExamples = Math.min(minExamples, exampleData.size());
@@ -291,6 +317,11 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator, S
                 }
             }
         }
+        if (nextRRValsColumnar != null) {
+            for (AbstractColumnarRecordBatch batch : nextRRValsColumnar.values()) {
+                minExamples = Math.min(minExamples, batch.size());
+            }
+        }
         for (List<List<List<Writable>>> exampleData : nextSeqRRVals.values()) {
             minExamples = Math.min(minExamples, exampleData.size());
         }
@@ -325,14 +356,14 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator, S
         }
         long rngSeed = (timeSeriesRandomOffset ? timeSeriesRandomOffsetRng.nextLong() : -1);
         Pair<INDArray[], INDArray[]> features = convertFeaturesOrLabels(new INDArray[inputs.size()],
-                        new INDArray[inputs.size()], inputs, minExamples, nextRRVals, nextRRValsBatched, nextSeqRRVals,
-                        longestTS, longestSequence, rngSeed);
+                        new INDArray[inputs.size()], inputs, minExamples, nextRRVals, nextRRValsBatched, nextRRValsColumnar,
+                        nextSeqRRVals, longestTS, longestSequence, rngSeed);
 
 
         //Third: create the outputs/labels
         Pair<INDArray[], INDArray[]> labels = convertFeaturesOrLabels(new INDArray[outputs.size()],
                         new INDArray[outputs.size()], outputs, minExamples, nextRRVals, nextRRValsBatched,
-                        nextSeqRRVals, longestTS, longestSequence, rngSeed);
+                        nextRRValsColumnar, nextSeqRRVals, longestTS, longestSequence, rngSeed);
 
 
 
@@ -349,6 +380,7 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator, S
     private Pair<INDArray[], INDArray[]> convertFeaturesOrLabels(INDArray[] featuresOrLabels, INDArray[] masks,
                     List<SubsetDetails> subsetDetails, int minExamples, Map<String, List<List<Writable>>> nextRRVals,
                     Map<String, List<INDArray>> nextRRValsBatched,
+                    Map<String, AbstractColumnarRecordBatch> nextRRValsColumnar,
                     Map<String, List<List<List<Writable>>>> nextSeqRRVals, int longestTS, int[] longestSequence,
                     long rngSeed) {
         boolean hasMasks = false;
@@ -358,6 +390,9 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator, S
             if (nextRRValsBatched != null && nextRRValsBatched.containsKey(d.readerName)) {
                 //Standard reader, but batch ops
                 featuresOrLabels[i] = convertWritablesBatched(nextRRValsBatched.get(d.readerName), d);
+            } else if (nextRRValsColumnar != null && nextRRValsColumnar.containsKey(d.readerName)) {
+                //Standard reader, columnar batch
+                featuresOrLabels[i] = convertWritablesColumnar(nextRRValsColumnar.get(d.readerName), d);
             } else if (nextRRVals.containsKey(d.readerName)) {
                 //Standard reader
                 List<List<Writable>> list = nextRRVals.get(d.readerName);
@@ -424,6 +459,28 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator, S
         return out;
     }
 
+    private INDArray convertWritablesColumnar(AbstractColumnarRecordBatch batch, SubsetDetails details) {
+        if (sparseFeatures && batch instanceof SparseRecordBatch && !details.oneHot) {
+            SparseRecordBatch sparse = (SparseRecordBatch) batch;
+            int from = details.entireReader ? 0 : details.subsetStart;
+            int to = details.entireReader ? sparse.numColumns() - 1 : details.subsetEndInclusive;
+            if (from == 0 && to == sparse.getNumFeatures() - 1)
+                return sparse.toCSR();
+        }
+
+        try {
+            if (details.entireReader) {
+                return batch.toArray(0, batch.numColumns() - 1);
+            } else if (details.oneHot) {
+                return batch.toOneHot(details.subsetStart, details.oneHotNumClasses);
+            } else {
+                return batch.toArray(details.subsetStart, details.subsetEndInclusive);
+            }
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Error parsing data (writables) from record readers - value is non-numeric", e);
+        }
+    }
+
     private int countLength(List<Writable> list) {
         return countLength(list, 0, list.size() - 1);
     }
@@ -793,6 +850,8 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator, S
         private boolean timeSeriesRandomOffset = false;
         private long timeSeriesRandomOffsetSeed = System.currentTimeMillis();
 
+        private boolean sparseFeatures = false;
+
         /**
          * @param batchSize The batch size for the RecordReaderMultiDataSetIterator
          */
@@ -912,6 +971,16 @@ public class RecordReaderMultiDataSetIterator implements MultiDataSetIterator, S
             return this;
         }
 
+        /**
+         * If true: inputs/outputs consisting of exactly the sparse features of a {@link SparseRecordBatch} (for example,
+         * from SVMLightRecordReader or LibSvmRecordReader) are returned as sparse CSR arrays. Otherwise (default) they
+         * are returned as dense arrays, built directly from the non-zero values.
+         */
+        public Builder sparseFeatures(boolean sparseFeatures) {
+            this.sparseFeatures = sparseFeatures;
+            return this;
+        }
+
         /**
          * Create the RecordReaderMultiDataSetIterator
          */
@@ -21,7 +21,11 @@ import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
+import org.deeplearning4j.clustering.hnsw.HnswIndex;
+import org.deeplearning4j.clustering.hnsw.PersistentHnswIndex;
+import org.deeplearning4j.clustering.pq.PQIndex;
 import org.deeplearning4j.clustering.sptree.DataPoint;
+import org.deeplearning4j.clustering.util.SearchResults;
 import org.deeplearning4j.clustering.vptree.VPTree;
 import org.deeplearning4j.clustering.vptree.VPTreeFillSearch;
 import org.deeplearning4j.exception.DL4JInvalidInputException;
@@ -52,11 +56,19 @@ import static play.mvc.Results.*;
  * which (based on the input schema) will automatically
  * have their values transformed.
  *
+ * Alternatively, with --indexPath the server uses {@link PersistentHnswIndex} stored in the given directory:
+ * it's memory-mapped on start instead of being rebuilt, and points can be added and deleted via /add and /delete.
+ * If directory is empty, index is created from points given via --ndarrayPath.
+ *
+ * With --pqPath the server uses compressed {@link PQIndex} stored in the given file, so raw points don't have to be
+ * kept in memory. If file doesn't exist, index is trained on points given via --ndarrayPath and saved. With
+ * --pqRerank N, top N candidates are re-ranked against exact points from --ndarrayPath.
+ *
  * @author Adam Gibson
  */
 @Slf4j
 public class NearestNeighborsServer {
-    @Parameter(names = {"--ndarrayPath"}, arity = 1, required = true)
+    @Parameter(names = {"--ndarrayPath"}, arity = 1)
     private String ndarrayPath = null;
     @Parameter(names = {"--labelsPath"}, arity = 1, required = false)
     private String labelsPath = null;
@@ -66,8 +78,24 @@ public class NearestNeighborsServer {
     private String similarityFunction = "euclidean";
     @Parameter(names = {"--invert"}, arity = 1)
     private boolean invert = false;
+    @Parameter(names = {"--indexPath"}, arity = 1)
+    private String indexPath = null;
+    @Parameter(names = {"--compactionThreshold"}, arity = 1)
+    private int compactionThreshold = 100000;
+    @Parameter(names = {"--pqPath"}, arity = 1)
+    private String pqPath = null;
+    @Parameter(names = {"--pqSubspaces"}, arity = 1)
+    private int pqSubspaces = 0;
+    @Parameter(names = {"--pqLists"}, arity = 1)
+    private int pqLists = 1;
+    @Parameter(names = {"--pqProbes"}, arity = 1)
+    private int pqProbes = 8;
+    @Parameter(names = {"--pqRerank"}, arity = 1)
+    private int pqRerank = 0;
 
     private Server server;
+    private PersistentHnswIndex index;
+    private PQIndex pqIndex;
 
     public void runMain(String... args) throws Exception {
         JCommander jcmdr = new JCommander(this);
@@ -82,8 +110,8 @@ public class NearestNeighborsServer {
 
             //User provides invalid input -> print the usage info
             jcmdr.usage();
-            if (ndarrayPath == null)
-                log.error("Json path parameter is missing (null)");
+            if (ndarrayPath == null && indexPath == null && pqPath == null)
+                log.error("Ndarray path, index path and PQ path parameters are all missing (null)");
             try {
                 Thread.sleep(500);
             } catch (Exception e2) {
@@ -99,53 +127,21 @@ public class NearestNeighborsServer {
     }
 
     protected void runHelper() throws Exception {
-
-        String[] pathArr = ndarrayPath.split(",");
-        //INDArray[] pointsArr = new INDArray[pathArr.length];
-        // first of all we reading shapes of saved eariler files
-        int rows = 0;
-        int cols = 0;
-        for (int i = 0; i < pathArr.length; i++) {
-            DataBuffer shape = BinarySerde.readShapeFromDisk(new File(pathArr[i]));
-
-            log.info("Loading shape {} of {}; Shape: [{} x {}]", i + 1, pathArr.length, Shape.size(shape, 0),
-                            Shape.size(shape, 1));
-
-            if (Shape.rank(shape) != 2)
-                throw new DL4JInvalidInputException("NearestNeighborsServer assumes 2D chunks");
-
-            rows += Shape.size(shape, 0);
-
-            if (cols == 0)
-                cols = Shape.size(shape, 1);
-            else if (cols != Shape.size(shape, 1))
-                throw new DL4JInvalidInputException(
-                                "NearestNeighborsServer requires equal 2D chunks. Got columns mismatch.");
+        if (indexPath != null) {
+            runIndexHelper();
+            return;
         }
-
-        final List<String> labels = new ArrayList<>();
-        if (labelsPath != null) {
-            String[] labelsPathArr = labelsPath.split(",");
-            for (int i = 0; i < labelsPathArr.length; i++) {
-                labels.addAll(FileUtils.readLines(new File(labelsPathArr[i]), "utf-8"));
-            }
+        if (pqPath != null) {
+            runPqHelper();
+            return;
         }
-        if (!labels.isEmpty() && labels.size() != rows)
-            throw new DL4JInvalidInputException(String.format("Number of labels must match number of rows in points matrix (expected %d, found %d)", rows, labels.size()));
-
-        final INDArray points = Nd4j.createUninitialized(rows, cols);
-
-        int lastPosition = 0;
-        for (int i = 0; i < pathArr.length; i++) {
-            log.info("Loading chunk {} of {}", i + 1, pathArr.length);
-            INDArray pointsArr = BinarySerde.readFromDisk(new File(pathArr[i]));
-
-            points.get(NDArrayIndex.interval(lastPosition, lastPosition + pointsArr.rows())).assign(pointsArr);
-            lastPosition += pointsArr.rows();
+        if (ndarrayPath == null)
+            throw new DL4JInvalidInputException("Either --ndarrayPath, --indexPath or --pqPath must be specified");
 
-            // let's ensure we don't bring too much stuff in next loop
-            System.gc();
-        }
+        final List<String> labels = readLabels();
+        final INDArray points = readPoints();
+        if (!labels.isEmpty() && labels.size() != points.rows())
+            throw new DL4JInvalidInputException(String.format("Number of labels must match number of rows in points matrix (expected %d, found %d)", points.rows(), labels.size()));
 
         VPTree tree = new VPTree(points, similarityFunction, invert);
 
@@ -218,6 +214,250 @@ public class NearestNeighborsServer {
             }
         })));
 
+        startServer(routingDsl);
+    }
+
+    protected void runIndexHelper() throws Exception {
+        if (invert)
+            log.warn("--invert is ignored by persistent index, results are always ordered by distance");
+
+        HnswIndex.Builder config = new HnswIndex.Builder().distance(similarityFunction);
+        File dir = new File(indexPath);
+        boolean create = !dir.isDirectory() || dir.list().length == 0;
+        if (create) {
+            if (ndarrayPath == null)
+                throw new DL4JInvalidInputException("Index directory " + dir + " is empty, --ndarrayPath is required to create index");
+            config.dimensions(Shape.size(BinarySerde.readShapeFromDisk(new File(ndarrayPath.split(",")[0])), 1));
+        }
+
+        index = new PersistentHnswIndex(dir, config, compactionThreshold);
+        if (create) {
+            String[] pathArr = ndarrayPath.split(",");
+            for (int i = 0; i < pathArr.length; i++) {
+                log.info("Adding chunk {} of {} to the index", i + 1, pathArr.length);
+                INDArray pointsArr = BinarySerde.readFromDisk(new File(pathArr[i]));
+                if (pointsArr.rank() != 2 || pointsArr.columns() != index.getDimensions())
+                    throw new DL4JInvalidInputException("NearestNeighborsServer requires equal 2D chunks. Got columns mismatch.");
+                index.addAll(pointsArr);
+            }
+            // snapshot is written right away, so next start doesn't replay the log
+            index.compact().get();
+        }
+
+        final List<String> labels = readLabels();
+        if (!labels.isEmpty() && labels.size() > index.size())
+            throw new DL4JInvalidInputException(String.format("Number of labels can't exceed number of points in the index (expected at most %d, found %d)", index.size(), labels.size()));
+
+        RoutingDsl routingDsl = new RoutingDsl();
+        routingDsl.POST("/knn").routeTo(FunctionUtil.function0((() -> {
+            try {
+                NearestNeighborRequest record = Json.fromJson(request().body().asJson(), NearestNeighborRequest.class);
+                if (record == null)
+                    return badRequest(Json.toJson(Collections.singletonMap("status", "invalid json passed.")));
+
+                SearchResults results = index.search(index.getVector(record.getInputIndex()), record.getK());
+                return ok(Json.toJson(toResults(results, Collections.<String>emptyList())));
+            } catch (Throwable e) {
+                log.error("Error in POST /knn",e);
+                return internalServerError(e.getMessage());
+            }
+        })));
+
+        routingDsl.POST("/knnnew").routeTo(FunctionUtil.function0((() -> {
+            try {
+                Base64NDArrayBody record = Json.fromJson(request().body().asJson(), Base64NDArrayBody.class);
+                if (record == null)
+                    return badRequest(Json.toJson(Collections.singletonMap("status", "invalid json passed.")));
+
+                INDArray arr = Nd4jBase64.fromBase64(record.getNdarray());
+                return ok(Json.toJson(toResults(index.search(arr, record.getK()), labels)));
+            } catch (Throwable e) {
+                log.error("Error in POST /knnnew",e);
+                return internalServerError(e.getMessage());
+            }
+        })));
+
+        routingDsl.POST("/add").routeTo(FunctionUtil.function0((() -> {
+            try {
+                Base64NDArrayBody record = Json.fromJson(request().body().asJson(), Base64NDArrayBody.class);
+                if (record == null)
+                    return badRequest(Json.toJson(Collections.singletonMap("status", "invalid json passed.")));
+
+                INDArray arr = Nd4jBase64.fromBase64(record.getNdarray());
+                if (arr.rank() == 1)
+                    arr = arr.reshape(1, arr.length());
+
+                int first = index.addAll(arr);
+                List<Integer> indices = new ArrayList<>();
+                for (int i = 0; i < arr.rows(); i++)
+                    indices.add(first + i);
+                return ok(Json.toJson(IndexUpdateResult.builder().indices(indices).build()));
+            } catch (Throwable e) {
+                log.error("Error in POST /add",e);
+                return internalServerError(e.getMessage());
+            }
+        })));
+
+        routingDsl.POST("/delete").routeTo(FunctionUtil.function0((() -> {
+            try {
+                NearestNeighborRequest record = Json.fromJson(request().body().asJson(), NearestNeighborRequest.class);
+                if (record == null)
+                    return badRequest(Json.toJson(Collections.singletonMap("status", "invalid json passed.")));
+
+                List<Integer> indices = new ArrayList<>();
+                if (index.delete(record.getInputIndex()))
+                    indices.add(record.getInputIndex());
+                return ok(Json.toJson(IndexUpdateResult.builder().indices(indices).build()));
+            } catch (Throwable e) {
+                log.error("Error in POST /delete",e);
+                return internalServerError(e.getMessage());
+            }
+        })));
+
+        startServer(routingDsl);
+    }
+
+    protected void runPqHelper() throws Exception {
+        if (invert)
+            log.warn("--invert is ignored by PQ index, results are always ordered by distance");
+
+        File file = new File(pqPath);
+        final INDArray points = ndarrayPath != null && (!file.exists() || pqRerank > 0) ? readPoints() : null;
+        if (file.exists()) {
+            pqIndex = PQIndex.load(file);
+            if (points != null && (points.rows() != pqIndex.size() || points.columns() != pqIndex.getDimensions()))
+                throw new DL4JInvalidInputException("Points given via --ndarrayPath don't match PQ index " + file);
+        } else {
+            if (points == null)
+                throw new DL4JInvalidInputException("PQ index file " + file + " doesn't exist, --ndarrayPath is required to create index");
+
+            PQIndex.Builder config = new PQIndex.Builder().dimensions(points.columns()).numLists(pqLists)
+                            .distance(similarityFunction);
+            if (pqSubspaces > 0)
+                config.numSubspaces(pqSubspaces);
+
+            pqIndex = config.build();
+            log.info("Training PQ index on {} points", points.rows());
+            pqIndex.train(points);
+            pqIndex.add(points);
+            pqIndex.save(file);
+        }
+        pqIndex.setNumProbes(pqProbes);
+
+        if (pqRerank > 0 && points == null)
+            throw new DL4JInvalidInputException("--pqRerank requires exact points given via --ndarrayPath");
+        final PQIndex.VectorSource exact = pqRerank > 0 ? PQIndex.vectors(points) : null;
+
+        final List<String> labels = readLabels();
+        if (!labels.isEmpty() && labels.size() != pqIndex.size())
+            throw new DL4JInvalidInputException(String.format("Number of labels must match number of points in PQ index (expected %d, found %d)", pqIndex.size(), labels.size()));
+
+        RoutingDsl routingDsl = new RoutingDsl();
+        routingDsl.POST("/knn").routeTo(FunctionUtil.function0((() -> {
+            try {
+                NearestNeighborRequest record = Json.fromJson(request().body().asJson(), NearestNeighborRequest.class);
+                if (record == null)
+                    return badRequest(Json.toJson(Collections.singletonMap("status", "invalid json passed.")));
+
+                // without exact points, query is reconstructed from its code
+                float[] query = points != null ? points.getRow(record.getInputIndex()).dup().data().asFloat()
+                                : pqIndex.reconstruct(record.getInputIndex());
+                SearchResults results = exact != null ? pqIndex.search(new float[][] {query}, record.getK(), pqRerank, exact)
+                                : pqIndex.search(query, record.getK());
+                return ok(Json.toJson(toResults(results, Collections.<String>emptyList())));
+            } catch (Throwable e) {
+                log.error("Error in POST /knn",e);
+                return internalServerError(e.getMessage());
+            }
+        })));
+
+        routingDsl.POST("/knnnew").routeTo(FunctionUtil.function0((() -> {
+            try {
+                Base64NDArrayBody record = Json.fromJson(request().body().asJson(), Base64NDArrayBody.class);
+                if (record == null)
+                    return badRequest(Json.toJson(Collections.singletonMap("status", "invalid json passed.")));
+
+                INDArray arr = Nd4jBase64.fromBase64(record.getNdarray());
+                SearchResults results = exact != null ? pqIndex.search(arr, record.getK(), pqRerank, exact)
+                                : pqIndex.search(arr, record.getK());
+                return ok(Json.toJson(toResults(results, labels)));
+            } catch (Throwable e) {
+                log.error("Error in POST /knnnew",e);
+                return internalServerError(e.getMessage());
+            }
+        })));
+
+        startServer(routingDsl);
+    }
+
+    protected INDArray readPoints() throws Exception {
+        String[] pathArr = ndarrayPath.split(",");
+        //INDArray[] pointsArr = new INDArray[pathArr.length];
+        // first of all we reading shapes of saved eariler files
+        int rows = 0;
+        int cols = 0;
+        for (int i = 0; i < pathArr.length; i++) {
+            DataBuffer shape = BinarySerde.readShapeFromDisk(new File(pathArr[i]));
+
+            log.info("Loading shape {} of {}; Shape: [{} x {}]", i + 1, pathArr.length, Shape.size(shape, 0),
+                            Shape.size(shape, 1));
+
+            if (Shape.rank(shape) != 2)
+                throw new DL4JInvalidInputException("NearestNeighborsServer assumes 2D chunks");
+
+            rows += Shape.size(shape, 0);
+
+            if (cols == 0)
+                cols = Shape.size(shape, 1);
+            else if (cols != Shape.size(shape, 1))
+                throw new DL4JInvalidInputException(
+                                "NearestNeighborsServer requires equal 2D chunks. Got columns mismatch.");
+        }
+
+        final INDArray points = Nd4j.createUninitialized(rows, cols);
+
+        int lastPosition = 0;
+        for (int i = 0; i < pathArr.length; i++) {
+            log.info("Loading chunk {} of {}", i + 1, pathArr.length);
+            INDArray pointsArr = BinarySerde.readFromDisk(new File(pathArr[i]));
+
+            points.get(NDArrayIndex.interval(lastPosition, lastPosition + pointsArr.rows())).assign(pointsArr);
+            lastPosition += pointsArr.rows();
+
+            // let's ensure we don't bring too much stuff in next loop
+            System.gc();
+        }
+
+        return points;
+    }
+
+    protected NearestNeighborsResults toResults(SearchResults results, List<String> labels) {
+        List<NearestNeighborsResult> nnResult = new ArrayList<>();
+        for (int q = 0; q < results.numQueries(); q++) {
+            int[] indices = results.getIndices(q);
+            float[] distances = results.getDistances(q);
+            for (int i = 0; i < indices.length; i++) {
+                if (indices[i] < labels.size())
+                    nnResult.add(new NearestNeighborsResult(indices[i], distances[i], labels.get(indices[i])));
+                else
+                    nnResult.add(new NearestNeighborsResult(indices[i], distances[i]));
+            }
+        }
+        return NearestNeighborsResults.builder().results(nnResult).build();
+    }
+
+    protected List<String> readLabels() throws Exception {
+        List<String> labels = new ArrayList<>();
+        if (labelsPath != null) {
+            String[] labelsPathArr = labelsPath.split(",");
+            for (int i = 0; i < labelsPathArr.length; i++) {
+                labels.addAll(FileUtils.readLines(new File(labelsPathArr[i]), "utf-8"));
+            }
+        }
+        return labels;
+    }
+
+    protected void startServer(RoutingDsl routingDsl) {
         //Set play secret key, if required
         //http://www.playframework.com/documentation/latest/ApplicationSecret
         String crypto = System.getProperty("play.crypto.secret");
@@ -243,6 +483,18 @@ public class NearestNeighborsServer {
             log.info("Attempting to stop server");
             server.stop();
         }
+        if (index != null) {
+            try {
+                index.close();
+            } catch (Exception e) {
+                log.error("Error closing index", e);
+            }
+            index = null;
+        }
+        if (pqIndex != null) {
+            pqIndex.shutdown();
+            pqIndex = null;
+        }
     }
 
     public static void main(String[] args) throws Exception {
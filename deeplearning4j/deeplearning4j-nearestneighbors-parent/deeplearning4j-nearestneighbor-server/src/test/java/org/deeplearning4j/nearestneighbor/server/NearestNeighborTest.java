@@ -32,12 +32,14 @@ import org.nd4j.serde.binary.BinarySerde;
 import java.io.File;
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 
 /**
  * Created by agibsonccc on 4/27/17.
@@ -102,6 +104,37 @@ public class NearestNeighborTest {
         server.stop();
     }
 
+    @Test
+    public void testServerWithIndex() throws Exception {
+        Nd4j.getRandom().setSeed(7);
+        INDArray rand = Nd4j.randn(10, 5);
+        File writeToTmp = testDir.newFile();
+        BinarySerde.writeArrayToDisk(rand, writeToTmp);
+        File indexDir = testDir.newFolder();
+
+        int localPort = getAvailablePort();
+        NearestNeighborsServer server = new NearestNeighborsServer();
+        server.runMain("--ndarrayPath", writeToTmp.getAbsolutePath(), "--indexPath", indexDir.getAbsolutePath(),
+                "--nearestNeighborsPort", String.valueOf(localPort));
+
+        NearestNeighborsClient client = new NearestNeighborsClient("http://localhost:" + localPort);
+        assertEquals(5, client.knnNew(5, rand.getRow(0)).getResults().size());
+        assertEquals(0, client.knnNew(1, rand.getRow(0)).getResults().get(0).getIndex());
+        assertEquals(Collections.singletonList(10), client.add(rand.getRow(3).mul(2)).getIndices());
+        assertEquals(Collections.singletonList(0), client.delete(0).getIndices());
+        assertNotEquals(0, client.knnNew(1, rand.getRow(0)).getResults().get(0).getIndex());
+        server.stop();
+
+        // restart maps the snapshot and replays the log, no ndarray is needed anymore
+        localPort = getAvailablePort();
+        server = new NearestNeighborsServer();
+        server.runMain("--indexPath", indexDir.getAbsolutePath(), "--nearestNeighborsPort", String.valueOf(localPort));
+        client = new NearestNeighborsClient("http://localhost:" + localPort);
+        assertEquals(10, client.knnNew(20, rand.getRow(0)).getResults().size());
+        assertEquals(Collections.emptyList(), client.delete(0).getIndices());
+        server.stop();
+    }
+
 
 
     @Test
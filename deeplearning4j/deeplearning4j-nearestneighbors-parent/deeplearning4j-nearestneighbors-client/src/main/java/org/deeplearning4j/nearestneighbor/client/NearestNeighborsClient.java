@@ -123,6 +123,44 @@ public class NearestNeighborsClient {
     }
 
 
+    /**
+     * Add new points to the persistent index of the server.
+     * Server must be started with --indexPath
+     * @param points the points to add, one per row
+     * @return indices assigned to the added points
+     * @throws Exception
+     */
+    public IndexUpdateResult add(INDArray points) throws Exception {
+        Base64NDArrayBody base64NDArrayBody =
+                        Base64NDArrayBody.builder().ndarray(Nd4jBase64.base64String(points)).build();
+
+        HttpRequestWithBody req = Unirest.post(url + "/add");
+        req.header("accept", "application/json")
+                .header("Content-Type", "application/json").body(base64NDArrayBody);
+        addAuthHeader(req);
+
+        return req.asObject(IndexUpdateResult.class).getBody();
+    }
+
+    /**
+     * Delete the point with the given index from the persistent index of the server.
+     * Server must be started with --indexPath
+     * @param index the index of the point to delete
+     * @return index of the deleted point, or no indices if it was deleted already
+     * @throws Exception
+     */
+    public IndexUpdateResult delete(int index) throws Exception {
+        NearestNeighborRequest request = new NearestNeighborRequest();
+        request.setInputIndex(index);
+        HttpRequestWithBody req = Unirest.post(url + "/delete");
+        req.header("accept", "application/json")
+                .header("Content-Type", "application/json").body(request);
+        addAuthHeader(req);
+
+        return req.asObject(IndexUpdateResult.class).getBody();
+    }
+
+
     /**
      * Add the specified authentication header to the specified HttpRequest
      *
@@ -0,0 +1,430 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.clustering.hnsw;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.deeplearning4j.clustering.util.FloatIntHeap;
+import org.deeplearning4j.clustering.util.MultiThreadUtils;
+import org.deeplearning4j.clustering.util.MultiThreadUtils.RangeTask;
+import org.deeplearning4j.clustering.util.SearchResults;
+import org.deeplearning4j.clustering.util.VectorDistance;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Base class for HNSW indices: greedy and best-first search over the graph, batched queries and recall
+ * measurement. Subclasses define how vectors and neighbour lists are stored.
+ *
+ * Points marked as deleted stay in the graph, so it stays connected, but they're never returned by search.
+ */
+public abstract class BaseHnswIndex {
+    @Getter
+    protected final int dimensions;
+    @Getter
+    protected final int m;
+    protected final int maxM0;
+    @Getter
+    protected final int efConstruction;
+    @Getter
+    protected volatile int efSearch;
+    @Getter
+    protected final VectorDistance distance;
+    @Getter
+    protected final long seed;
+    protected final int workers;
+    // one bit per point
+    protected final AtomicLongArray deleted;
+
+    protected transient ExecutorService executorService;
+    protected final ThreadLocal<SearchContext> contexts = new ThreadLocal<SearchContext>() {
+        @Override
+        protected SearchContext initialValue() {
+            return new SearchContext(dimensions, maxM0, Math.max(efConstruction, efSearch));
+        }
+    };
+
+    protected BaseHnswIndex(HnswIndex.Builder builder, int capacity) {
+        this.dimensions = builder.dimensions;
+        this.m = builder.m;
+        this.maxM0 = 2 * builder.m;
+        this.efConstruction = builder.efConstruction;
+        this.efSearch = builder.efSearch;
+        this.distance = builder.distance;
+        this.seed = builder.seed;
+        this.workers = builder.workers;
+        this.deleted = new AtomicLongArray((int) ((capacity + 63L) >>> 6));
+    }
+
+    /**
+     * @return number of points in this index, including deleted ones
+     */
+    public abstract int size();
+
+    /**
+     * This method returns copy of the point with given index, as stored: cosine index keeps normalized vectors
+     */
+    public abstract float[] getVector(int index);
+
+    /**
+     * @return entry point of the graph, or -1 if graph is empty
+     */
+    protected abstract int entryPoint();
+
+    protected abstract int maxLevel();
+
+    protected abstract int level(int point);
+
+    /**
+     * This method copies neighbours of given point at given level into buffer
+     *
+     * @return number of neighbours
+     */
+    protected abstract int neighbours(int point, int level, int[] buffer);
+
+    protected abstract float distanceTo(float[] query, int queryOffset, int point);
+
+    /**
+     * This method changes size of candidate list used during search. It's safe to call it at any time.
+     */
+    public void setEfSearch(int efSearch) {
+        if (efSearch < 1)
+            throw new IllegalArgumentException("efSearch must be positive: got " + efSearch);
+        this.efSearch = efSearch;
+    }
+
+    /**
+     * This method excludes point from search results. Point stays in the graph, and is used for navigation.
+     *
+     * @return false if point was already deleted
+     */
+    public boolean markDeleted(int index) {
+        checkIndex(index);
+        int word = index >>> 6;
+        long bit = 1L << index;
+        while (true) {
+            long current = deleted.get(word);
+            if ((current & bit) != 0)
+                return false;
+            if (deleted.compareAndSet(word, current, current | bit))
+                return true;
+        }
+    }
+
+    public boolean isDeleted(int index) {
+        checkIndex(index);
+        return (deleted.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    /**
+     * @return indices of all deleted points, in ascending order
+     */
+    public int[] deletedIndices() {
+        int n = size();
+        int count = 0;
+        for (int w = 0; w < deleted.length(); w++)
+            count += Long.bitCount(deleted.get(w));
+
+        int[] result = new int[count];
+        int p = 0;
+        for (int w = 0; w < deleted.length() && p < count; w++) {
+            long bits = deleted.get(w);
+            while (bits != 0 && p < count) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(bits);
+                if (index < n)
+                    result[p++] = index;
+                bits &= bits - 1;
+            }
+        }
+        return p == count ? result : Arrays.copyOf(result, p);
+    }
+
+    /**
+     * This method returns approximate k nearest neighbours of single query
+     */
+    public SearchResults search(@NonNull float[] query, int k) {
+        checkDimensions(query.length);
+        return search(query, 1, k, false);
+    }
+
+    /**
+     * This method returns approximate k nearest neighbours of each query, searching in parallel
+     */
+    public SearchResults search(@NonNull float[][] queries, int k) {
+        return search(flatten(queries), queries.length, k, false);
+    }
+
+    /**
+     * This method returns approximate k nearest neighbours of each row of given matrix, searching in parallel
+     */
+    public SearchResults search(@NonNull INDArray queries, int k) {
+        int rows = queries.rows();
+        return search(toFloats(queries, rows), rows, k, false);
+    }
+
+    /**
+     * This method returns exact k nearest neighbours of each query, by brute force scan over all points.
+     * It's meant as ground truth for recall measurement.
+     *
+     * PLEASE NOTE: it shouldn't be called concurrently with inserts.
+     */
+    public SearchResults exactSearch(@NonNull float[][] queries, int k) {
+        return search(flatten(queries), queries.length, k, true);
+    }
+
+    /**
+     * This method returns exact k nearest neighbours of each row of given matrix, by brute force scan over all points.
+     */
+    public SearchResults exactSearch(@NonNull INDArray queries, int k) {
+        int rows = queries.rows();
+        return search(toFloats(queries, rows), rows, k, true);
+    }
+
+    /**
+     * This method measures recall@k of approximate search against brute force search, for given queries
+     */
+    public double recall(@NonNull float[][] queries, int k) {
+        return search(queries, k).recall(exactSearch(queries, k));
+    }
+
+    /**
+     * This method measures recall@k of approximate search against brute force search, for given queries
+     */
+    public double recall(@NonNull INDArray queries, int k) {
+        return search(queries, k).recall(exactSearch(queries, k));
+    }
+
+    protected SearchResults search(final float[] queries, int numQueries, final int k, final boolean exact) {
+        if (k < 1)
+            throw new IllegalArgumentException("k must be positive: got " + k);
+
+        final int[][] indices = new int[numQueries][];
+        final float[][] distances = new float[numQueries][];
+        parallel(numQueries, new RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                SearchContext ctx = contexts.get();
+                for (int q = from; q < to; q++) {
+                    System.arraycopy(queries, q * dimensions, ctx.query, 0, dimensions);
+                    distance.prepare(ctx.query, 0, dimensions);
+                    FloatIntHeap results = exact ? scan(ctx.query, k, ctx) : searchKnn(ctx.query, k, ctx);
+
+                    int n = results.size();
+                    indices[q] = new int[n];
+                    distances[q] = new float[n];
+                    results.drain(indices[q], distances[q]);
+                    for (int i = 0; i < n; i++)
+                        distances[q][i] = distance.finish(distances[q][i]);
+                }
+            }
+        });
+        return new SearchResults(indices, distances);
+    }
+
+    protected FloatIntHeap searchKnn(float[] query, int k, SearchContext ctx) {
+        ctx.results.clear();
+        int ep = entryPoint();
+        if (ep < 0)
+            return ctx.results;
+
+        // entry point might be replaced after we've read it, so its own level is the upper bound
+        int top = Math.min(maxLevel(), level(ep));
+        float d = distanceTo(query, 0, ep);
+        for (int level = top; level > 0; level--) {
+            ep = greedySearch(query, 0, ep, d, level, ctx);
+            d = ctx.entryDistance;
+        }
+
+        searchLevel(query, 0, ep, d, Math.max(efSearch, k), 0, true, ctx);
+        while (ctx.results.size() > k)
+            ctx.results.pop();
+        return ctx.results;
+    }
+
+    protected FloatIntHeap scan(float[] query, int k, SearchContext ctx) {
+        FloatIntHeap results = ctx.results;
+        results.clear();
+        int n = size();
+        for (int i = 0; i < n; i++) {
+            if (!isDeleted(i))
+                results.offer(distanceTo(query, 0, i), i, k);
+        }
+        return results;
+    }
+
+    /**
+     * This method walks given level greedily, moving to the closest neighbour while it's closer than current point
+     *
+     * @return closest point found, its distance is stored in ctx.entryDistance
+     */
+    protected int greedySearch(float[] query, int queryOffset, int ep, float d, int level, SearchContext ctx) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int count = neighbours(ep, level, ctx.neighbours);
+            for (int i = 0; i < count; i++) {
+                int candidate = ctx.neighbours[i];
+                float cd = distanceTo(query, queryOffset, candidate);
+                if (cd < d) {
+                    d = cd;
+                    ep = candidate;
+                    changed = true;
+                }
+            }
+        }
+        ctx.entryDistance = d;
+        return ep;
+    }
+
+    /**
+     * This method runs best-first search over given level, leaving up to ef closest points in ctx.results
+     *
+     * @param skipDeleted if true, deleted points are visited, but not added to results
+     */
+    protected void searchLevel(float[] query, int queryOffset, int ep, float d, int ef, int level,
+                    boolean skipDeleted, SearchContext ctx) {
+        VisitedSet visited = ctx.visited;
+        FloatIntHeap candidates = ctx.candidates;
+        FloatIntHeap results = ctx.results;
+        visited.clear();
+        candidates.clear();
+        results.clear();
+
+        visited.add(ep);
+        candidates.push(d, ep);
+        if (!skipDeleted || !isDeleted(ep))
+            results.push(d, ep);
+
+        while (!candidates.isEmpty()) {
+            if (results.size() >= ef && candidates.peekKey() > results.peekKey())
+                break;
+
+            int current = candidates.pop();
+            int count = neighbours(current, level, ctx.neighbours);
+            for (int i = 0; i < count; i++) {
+                int candidate = ctx.neighbours[i];
+                if (!visited.add(candidate))
+                    continue;
+
+                float cd = distanceTo(query, queryOffset, candidate);
+                if (results.size() < ef || cd < results.peekKey()) {
+                    candidates.push(cd, candidate);
+                    if (!skipDeleted || !isDeleted(candidate)) {
+                        results.push(cd, candidate);
+                        if (results.size() > ef)
+                            results.pop();
+                    }
+                }
+            }
+        }
+    }
+
+    protected void checkIndex(int index) {
+        if (index < 0 || index >= size())
+            throw new IllegalArgumentException("Invalid point index: " + index + ", size: " + size());
+    }
+
+    protected void checkDimensions(long length) {
+        if (length != dimensions)
+            throw new IllegalArgumentException("Vector length doesn't match index dimensions: expected "
+                            + dimensions + ", got " + length);
+    }
+
+    protected float[] toFloats(INDArray array, int rows) {
+        if (array.rank() > 2 || array.length() != (long) rows * dimensions)
+            throw new IllegalArgumentException("Expected matrix with " + dimensions + " columns, got array of shape "
+                            + Arrays.toString(array.shape()));
+
+        return VectorDistance.toFloats(array);
+    }
+
+    protected float[] flatten(float[][] queries) {
+        float[] flat = new float[queries.length * dimensions];
+        for (int i = 0; i < queries.length; i++) {
+            checkDimensions(queries[i].length);
+            System.arraycopy(queries[i], 0, flat, i * dimensions, dimensions);
+        }
+        return flat;
+    }
+
+    protected synchronized ExecutorService executorService() {
+        if (executorService == null)
+            executorService = MultiThreadUtils.newExecutorService(workers);
+        return executorService;
+    }
+
+    /**
+     * This method splits range [0, n) into chunks, and runs them on workers of this index
+     */
+    protected void parallel(int n, RangeTask task) {
+        MultiThreadUtils.parallelRanges(n, workers, executorService(), task);
+    }
+
+    /**
+     * This method stops worker threads. Index stays usable, and threads are started again on demand.
+     */
+    public synchronized void shutdown() {
+        if (executorService != null) {
+            executorService.shutdown();
+            executorService = null;
+        }
+    }
+
+    /**
+     * Per-thread buffers reused across inserts and queries
+     */
+    protected static class SearchContext {
+        protected final float[] query;
+        protected final int[] neighbours;
+        protected final int[] selected;
+        protected final int[] pruned;
+        protected final VisitedSet visited;
+        protected final FloatIntHeap candidates;
+        protected final FloatIntHeap results;
+        protected final FloatIntHeap pruneHeap;
+        protected int[] sortedIds;
+        protected float[] sortedDistances;
+        protected float entryDistance;
+
+        protected SearchContext(int dimensions, int maxM0, int ef) {
+            query = new float[dimensions];
+            neighbours = new int[maxM0 + 1];
+            selected = new int[maxM0 + 1];
+            pruned = new int[maxM0 + 1];
+            visited = new VisitedSet(ef * maxM0);
+            candidates = FloatIntHeap.minHeap(ef * 2);
+            results = FloatIntHeap.maxHeap(ef + 1);
+            pruneHeap = FloatIntHeap.maxHeap(maxM0 + 2);
+            sortedIds = new int[ef + 1];
+            sortedDistances = new float[ef + 1];
+        }
+
+        /**
+         * This method empties given max-heap into sortedIds/sortedDistances, closest first
+         */
+        protected int sorted(FloatIntHeap heap) {
+            if (sortedIds.length < heap.size()) {
+                sortedIds = new int[heap.size()];
+                sortedDistances = new float[heap.size()];
+            }
+            return heap.drain(sortedIds, sortedDistances);
+        }
+    }
+}
@@ -0,0 +1,647 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.clustering.hnsw;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.deeplearning4j.clustering.util.FloatIntHeap;
+import org.deeplearning4j.clustering.util.MultiThreadUtils.RangeTask;
+import org.deeplearning4j.clustering.util.VectorDistance;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hierarchical Navigable Small World graph index for approximate nearest neighbours search, as described in
+ * "Efficient and robust approximate nearest neighbor search using Hierarchical Navigable Small World graphs",
+ * Malkov &amp; Yashunin, 2016.
+ *
+ * Vectors are stored in contiguous float blocks, and neighbour lists are stored in primitive int blocks, so neither
+ * build nor search creates INDArrays or boxed objects per point. Inserts are thread-safe: neighbour lists are guarded
+ * by striped locks, so add() may be called from many threads, and searches may run concurrently with inserts.
+ *
+ * Parameters:
+ * - M: number of neighbours linked on insert. Level 0 keeps up to 2 * M neighbours, upper levels up to M.
+ * - efConstruction: size of candidate list used during insert. Higher values give better graph, but slower build.
+ * - efSearch: size of candidate list used during search. Higher values give better recall, but slower queries.
+ *
+ * Index can be saved into single file via {@link #save(File)}, and used in place via {@link MappedHnswIndex}.
+ *
+ * PLEASE NOTE: points are identified by insertion order, starting from 0, and capacity is fixed on creation.
+ */
+public class HnswIndex extends BaseHnswIndex {
+    public static final int MAGIC = 0x484E5357; // "HNSW"
+    public static final int FORMAT_VERSION = 1;
+    public static final int HEADER_LENGTH = 64;
+    public static final int ALIGNMENT = 64;
+
+    protected static final int LOCK_STRIPES = 4096;
+    protected static final int MAX_BLOCK_SIZE = 1 << 28;
+
+    @Getter
+    protected final int capacity;
+    protected final double levelMultiplier;
+
+    protected final int blockShift;
+    protected final int blockMask;
+    // vectors and level 0 neighbour lists, split into blocks of (1 << blockShift) points
+    protected final float[][] vectors;
+    // each point takes (maxM0 + 1) ints: number of neighbours, followed by neighbours
+    protected final int[][] links0;
+    // neighbour lists for levels above 0, one list of (m + 1) ints per level, null for points without upper levels
+    protected final int[][][] upperLinks;
+    protected final byte[] levels;
+
+    protected final Object[] locks = new Object[LOCK_STRIPES];
+    protected final ReentrantLock entryLock = new ReentrantLock();
+    protected volatile int entryPoint = -1;
+    protected volatile int maxLevel = -1;
+    protected final AtomicInteger size = new AtomicInteger(0);
+
+    protected HnswIndex(Builder builder) {
+        super(builder, builder.capacity);
+        this.capacity = builder.capacity;
+        this.levelMultiplier = 1.0 / Math.log(builder.m);
+
+        this.blockShift = blockShift(dimensions);
+        this.blockMask = (1 << blockShift) - 1;
+
+        int numBlocks = (int) ((capacity + (long) blockMask) >>> blockShift);
+        this.vectors = new float[numBlocks][];
+        this.links0 = new int[numBlocks][];
+        this.upperLinks = new int[capacity][][];
+        this.levels = new byte[capacity];
+
+        for (int i = 0; i < LOCK_STRIPES; i++)
+            locks[i] = new Object();
+    }
+
+    /**
+     * This method creates index with the same parameters, points, graph and deleted points as given one,
+     * but with given capacity, so more points can be added to it.
+     *
+     * PLEASE NOTE: source index shouldn't be modified while it's copied.
+     */
+    public static HnswIndex copyOf(@NonNull BaseHnswIndex source, int capacity, int workers) {
+        int n = source.size();
+        if (capacity < n)
+            throw new IllegalArgumentException("Capacity " + capacity + " is less than size of source index " + n);
+
+        HnswIndex index = new Builder().dimensions(source.dimensions).capacity(capacity).m(source.m)
+                        .efConstruction(source.efConstruction).efSearch(source.efSearch)
+                        .distance(source.distance).seed(source.seed).workers(workers).build();
+        index.size.set(n);
+
+        int[] buffer = new int[index.maxM0 + 1];
+        for (int i = 0; i < n; i++) {
+            // vectors were prepared once already
+            index.allocate(i);
+            System.arraycopy(source.getVector(i), 0, index.vectors[i >>> index.blockShift], index.offset(i),
+                            index.dimensions);
+
+            int level = source.level(i);
+            index.levels[i] = (byte) level;
+            if (level > 0)
+                index.upperLinks[i] = new int[level][index.m + 1];
+
+            for (int l = 0; l <= level; l++) {
+                int count = source.neighbours(i, l, buffer);
+                int[] list = index.list(i, l);
+                int listOffset = index.listOffset(i, l);
+                System.arraycopy(buffer, 0, list, listOffset + 1, count);
+                list[listOffset] = count;
+            }
+        }
+
+        for (int i : source.deletedIndices())
+            index.markDeleted(i);
+
+        index.maxLevel = source.maxLevel();
+        index.entryPoint = source.entryPoint();
+        return index;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    protected int entryPoint() {
+        return entryPoint;
+    }
+
+    @Override
+    protected int maxLevel() {
+        return maxLevel;
+    }
+
+    @Override
+    protected int level(int point) {
+        return levels[point];
+    }
+
+    /**
+     * This method adds single point to the index
+     *
+     * @return index of the added point
+     */
+    public int add(@NonNull float[] vector) {
+        checkDimensions(vector.length);
+        int id = reserve(1);
+        insert(id, vector, 0);
+        return id;
+    }
+
+    /**
+     * This method adds single point to the index
+     *
+     * @param vector row vector of length equal to dimensions
+     * @return index of the added point
+     */
+    public int add(@NonNull INDArray vector) {
+        return add(toFloats(vector, 1));
+    }
+
+    /**
+     * This method adds all given points, using all workers of this index.
+     * Points get consecutive indices, in the same order as given.
+     *
+     * @return index of the first added point
+     */
+    public int addAll(@NonNull final float[][] points) {
+        for (float[] point : points)
+            checkDimensions(point.length);
+
+        final int first = reserve(points.length);
+        parallel(points.length, new RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int i = from; i < to; i++)
+                    insert(first + i, points[i], 0);
+            }
+        });
+        return first;
+    }
+
+    /**
+     * This method adds all rows of given matrix, using all workers of this index.
+     * Points get consecutive indices, in the same order as rows.
+     *
+     * @return index of the first added point
+     */
+    public int addAll(@NonNull INDArray points) {
+        final int rows = points.rows();
+        final float[] data = toFloats(points, rows);
+        final int first = reserve(rows);
+        parallel(rows, new RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int i = from; i < to; i++)
+                    insert(first + i, data, i * dimensions);
+            }
+        });
+        return first;
+    }
+
+    @Override
+    public float[] getVector(int index) {
+        checkIndex(index);
+        return Arrays.copyOfRange(vectors[index >>> blockShift], offset(index), offset(index) + dimensions);
+    }
+
+    /**
+     * This method saves index into given file, which can be opened via {@link MappedHnswIndex}.
+     *
+     * File layout, all values are little-endian, and all sections are aligned to 64 bytes:
+     * - 64-byte header: magic number, format version and index parameters
+     * - vectors: size x dimensions floats
+     * - level 0 neighbour lists: size x (2 * M + 1) ints, number of neighbours followed by neighbours
+     * - levels: size bytes
+     * - offsets of upper level lists within upper levels section: size ints, -1 for points without upper levels
+     * - upper level lists: (M + 1) ints per level of each point
+     * - deleted points: bitmap of size bits, as longs
+     *
+     * PLEASE NOTE: index shouldn't be modified while it's saved.
+     */
+    public void save(@NonNull File file) throws IOException {
+        int n = size.get();
+        int upperLength = 0;
+        for (int i = 0; i < n; i++)
+            upperLength += levels[i] * (m + 1);
+
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            FileChannel channel = fos.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(dimensions).putInt(n).putInt(m).putInt(efConstruction)
+                            .putInt(efSearch).putInt(distance.ordinal()).putInt(entryPoint).putInt(maxLevel)
+                            .putInt(upperLength).putLong(seed);
+            while (buffer.position() < HEADER_LENGTH)
+                buffer.put((byte) 0);
+
+            for (int i = 0; i < n; i++) {
+                float[] block = vectors[i >>> blockShift];
+                int base = offset(i);
+                for (int j = 0; j < dimensions; j++) {
+                    ensureRemaining(channel, buffer, 4);
+                    buffer.putFloat(block[base + j]);
+                }
+            }
+            pad(channel, buffer);
+
+            for (int i = 0; i < n; i++) {
+                int[] block = links0[i >>> blockShift];
+                int base = listOffset(i, 0);
+                for (int j = 0; j <= maxM0; j++) {
+                    ensureRemaining(channel, buffer, 4);
+                    buffer.putInt(block[base + j]);
+                }
+            }
+            pad(channel, buffer);
+
+            for (int i = 0; i < n; i++) {
+                ensureRemaining(channel, buffer, 1);
+                buffer.put(levels[i]);
+            }
+            pad(channel, buffer);
+
+            int upperOffset = 0;
+            for (int i = 0; i < n; i++) {
+                ensureRemaining(channel, buffer, 4);
+                buffer.putInt(levels[i] > 0 ? upperOffset : -1);
+                upperOffset += levels[i] * (m + 1);
+            }
+            pad(channel, buffer);
+
+            for (int i = 0; i < n; i++) {
+                for (int l = 0; l < levels[i]; l++) {
+                    for (int value : upperLinks[i][l]) {
+                        ensureRemaining(channel, buffer, 4);
+                        buffer.putInt(value);
+                    }
+                }
+            }
+            pad(channel, buffer);
+
+            for (int w = 0; w < (n + 63) >>> 6; w++) {
+                ensureRemaining(channel, buffer, 8);
+                buffer.putLong(deleted.get(w));
+            }
+            pad(channel, buffer);
+
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            channel.force(true);
+        }
+    }
+
+    protected static void ensureRemaining(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() >= bytes)
+            return;
+
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * This method pads current section up to alignment
+     */
+    protected static void pad(FileChannel channel, ByteBuffer buffer) throws IOException {
+        long end = channel.position() + buffer.position();
+        while (end++ % ALIGNMENT != 0) {
+            ensureRemaining(channel, buffer, 1);
+            buffer.put((byte) 0);
+        }
+    }
+
+    protected static int blockShift(int dimensions) {
+        int shift = 16;
+        while (shift > 0 && ((long) dimensions << shift) > MAX_BLOCK_SIZE)
+            shift--;
+        return shift;
+    }
+
+    protected int reserve(int count) {
+        while (true) {
+            int current = size.get();
+            if (current + (long) count > capacity)
+                throw new IllegalStateException("Index capacity exceeded: capacity is " + capacity + ", size is "
+                                + current + ", but " + count + " more points requested");
+            if (size.compareAndSet(current, current + count))
+                return current;
+        }
+    }
+
+    protected void allocate(int id) {
+        int b = id >>> blockShift;
+        synchronized (vectors) {
+            if (vectors[b] == null) {
+                int blockSize = Math.min(blockMask + 1, capacity - (b << blockShift));
+                links0[b] = new int[blockSize * (maxM0 + 1)];
+                vectors[b] = new float[blockSize * dimensions];
+            }
+        }
+    }
+
+    protected void insert(int id, float[] source, int sourceOffset) {
+        allocate(id);
+        float[] block = vectors[id >>> blockShift];
+        int base = offset(id);
+        System.arraycopy(source, sourceOffset, block, base, dimensions);
+        distance.prepare(block, base, dimensions);
+
+        int level = randomLevel(id);
+        levels[id] = (byte) level;
+        if (level > 0)
+            upperLinks[id] = new int[level][m + 1];
+
+        // global lock is held through the whole insert only if this point becomes new entry point
+        entryLock.lock();
+        boolean locked = true;
+        try {
+            int ep = entryPoint;
+            int top = maxLevel;
+            if (ep < 0) {
+                maxLevel = level;
+                entryPoint = id;
+                return;
+            }
+
+            if (level <= top) {
+                entryLock.unlock();
+                locked = false;
+            }
+
+            SearchContext ctx = contexts.get();
+            float d = distanceTo(block, base, ep);
+            for (int l = top; l > level; l--) {
+                ep = greedySearch(block, base, ep, d, l, ctx);
+                d = ctx.entryDistance;
+            }
+
+            for (int l = Math.min(level, top); l >= 0; l--) {
+                // deleted points are still linked: they keep the graph connected
+                searchLevel(block, base, ep, d, efConstruction, l, false, ctx);
+                int n = ctx.sorted(ctx.results);
+                ep = ctx.sortedIds[0];
+                d = ctx.sortedDistances[0];
+
+                int count = selectNeighbours(ctx.sortedIds, ctx.sortedDistances, n, m, ctx.selected);
+                synchronized (lock(id)) {
+                    int[] list = list(id, l);
+                    int listOffset = listOffset(id, l);
+                    System.arraycopy(ctx.selected, 0, list, listOffset + 1, count);
+                    list[listOffset] = count;
+                }
+
+                for (int i = 0; i < count; i++)
+                    connect(ctx.selected[i], id, l, ctx);
+            }
+
+            if (level > top) {
+                maxLevel = level;
+                entryPoint = id;
+            }
+        } finally {
+            if (locked)
+                entryLock.unlock();
+        }
+    }
+
+    /**
+     * This method adds backward link from given point to the new one, shrinking neighbour list if it's full
+     */
+    protected void connect(int point, int newPoint, int level, SearchContext ctx) {
+        int maxConnections = level == 0 ? maxM0 : m;
+        synchronized (lock(point)) {
+            int[] list = list(point, level);
+            int listOffset = listOffset(point, level);
+            int count = list[listOffset];
+            if (count < maxConnections) {
+                list[listOffset + 1 + count] = newPoint;
+                list[listOffset] = count + 1;
+                return;
+            }
+
+            float[] block = vectors[point >>> blockShift];
+            int base = offset(point);
+            FloatIntHeap heap = ctx.pruneHeap;
+            heap.clear();
+            heap.push(distanceTo(block, base, newPoint), newPoint);
+            for (int i = 0; i < count; i++) {
+                int neighbour = list[listOffset + 1 + i];
+                heap.push(distanceTo(block, base, neighbour), neighbour);
+            }
+
+            int n = ctx.sorted(heap);
+            int selected = selectNeighbours(ctx.sortedIds, ctx.sortedDistances, n, maxConnections, ctx.pruned);
+            System.arraycopy(ctx.pruned, 0, list, listOffset + 1, selected);
+            list[listOffset] = selected;
+        }
+    }
+
+    /**
+     * This method picks neighbours out of candidates sorted by distance, skipping candidates that are closer to
+     * already picked neighbour than to the base point. This keeps links spread in all directions.
+     */
+    protected int selectNeighbours(int[] candidates, float[] distances, int numCandidates, int max, int[] result) {
+        int count = 0;
+        for (int i = 0; i < numCandidates && count < max; i++) {
+            int candidate = candidates[i];
+            float[] block = vectors[candidate >>> blockShift];
+            int base = offset(candidate);
+            boolean good = true;
+            for (int j = 0; j < count; j++) {
+                if (distanceTo(block, base, result[j]) < distances[i]) {
+                    good = false;
+                    break;
+                }
+            }
+
+            if (good)
+                result[count++] = candidate;
+        }
+        return count;
+    }
+
+    @Override
+    protected int neighbours(int point, int level, int[] buffer) {
+        synchronized (lock(point)) {
+            if (level > 0 && (upperLinks[point] == null || level > upperLinks[point].length))
+                return 0;
+
+            int[] list = list(point, level);
+            int listOffset = listOffset(point, level);
+            int count = list[listOffset];
+            System.arraycopy(list, listOffset + 1, buffer, 0, count);
+            return count;
+        }
+    }
+
+    protected int[] list(int point, int level) {
+        return level == 0 ? links0[point >>> blockShift] : upperLinks[point][level - 1];
+    }
+
+    protected int listOffset(int point, int level) {
+        return level == 0 ? (point & blockMask) * (maxM0 + 1) : 0;
+    }
+
+    protected Object lock(int point) {
+        return locks[point & (LOCK_STRIPES - 1)];
+    }
+
+    protected int offset(int point) {
+        return (point & blockMask) * dimensions;
+    }
+
+    @Override
+    protected float distanceTo(float[] query, int queryOffset, int point) {
+        return distance.distance(query, queryOffset, vectors[point >>> blockShift], offset(point), dimensions);
+    }
+
+    /**
+     * This method draws level of the point from exponentially decaying distribution. Level depends only on seed and
+     * point index, so it doesn't depend on order of concurrent inserts.
+     */
+    protected int randomLevel(int id) {
+        long z = seed + (id + 1L) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        double uniform = ((z >>> 11) + 1) * 0x1.0p-53;
+        return (int) Math.min(Byte.MAX_VALUE, -Math.log(uniform) * levelMultiplier);
+    }
+
+    public static class Builder {
+        protected int dimensions = -1;
+        protected int capacity = -1;
+        protected int m = 16;
+        protected int efConstruction = 200;
+        protected int efSearch = 50;
+        protected VectorDistance distance = VectorDistance.EUCLIDEAN;
+        protected long seed = 12345L;
+        protected int workers = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Length of indexed vectors. Required.
+         */
+        public Builder dimensions(int dimensions) {
+            this.dimensions = dimensions;
+            return this;
+        }
+
+        /**
+         * Maximum number of points in the index. Required. Memory is allocated in blocks, as points are added.
+         */
+        public Builder capacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * Number of neighbours linked on insert. Default value: 16
+         */
+        public Builder m(int m) {
+            this.m = m;
+            return this;
+        }
+
+        /**
+         * Size of candidate list used during insert. Default value: 200
+         */
+        public Builder efConstruction(int efConstruction) {
+            this.efConstruction = efConstruction;
+            return this;
+        }
+
+        /**
+         * Size of candidate list used during search, can be changed later. Default value: 50
+         */
+        public Builder efSearch(int efSearch) {
+            this.efSearch = efSearch;
+            return this;
+        }
+
+        /**
+         * Distance function. Default value: EUCLIDEAN
+         */
+        public Builder distance(@NonNull VectorDistance distance) {
+            this.distance = distance;
+            return this;
+        }
+
+        /**
+         * Distance function, by VPTree similarity function name: euclidean, cosinesimilarity, cosinedistance or dot
+         */
+        public Builder distance(@NonNull String similarityFunction) {
+            this.distance = VectorDistance.fromSimilarityFunction(similarityFunction);
+            return this;
+        }
+
+        /**
+         * Seed used for level assignment. Default value: 12345
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Number of threads used by batched inserts and queries. Default value: number of CPU cores
+         */
+        public Builder workers(int workers) {
+            this.workers = workers;
+            return this;
+        }
+
+        /**
+         * This method returns copy of this builder with given capacity
+         */
+        protected Builder withCapacity(int capacity) {
+            return new Builder().dimensions(dimensions).capacity(capacity).m(m).efConstruction(efConstruction)
+                            .efSearch(efSearch).distance(distance).seed(seed).workers(workers);
+        }
+
+        public HnswIndex build() {
+            if (dimensions < 1)
+                throw new IllegalArgumentException("Dimensions must be positive: got " + dimensions);
+            if (capacity < 1)
+                throw new IllegalArgumentException("Capacity must be positive: got " + capacity);
+            if (m < 2)
+                throw new IllegalArgumentException("M must be >= 2: got " + m);
+            if (efConstruction < 1 || efSearch < 1)
+                throw new IllegalArgumentException("efConstruction and efSearch must be positive: got "
+                                + efConstruction + " and " + efSearch);
+            if (workers < 1)
+                throw new IllegalArgumentException("Number of workers must be positive: got " + workers);
+
+            return new HnswIndex(this);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.clustering.hnsw;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.deeplearning4j.clustering.util.VectorDistance;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only HNSW index on top of file written by {@link HnswIndex#save(File)}.
+ *
+ * Vectors and neighbour lists are memory-mapped and searched in place, so index is usable right after it's opened,
+ * regardless of its size, and pages are loaded by OS on demand. Only the bitmap of deleted points is read on open.
+ *
+ * PLEASE NOTE: points marked as deleted via {@link #markDeleted(int)} are kept in memory only, file isn't changed.
+ */
+public class MappedHnswIndex extends BaseHnswIndex implements Closeable {
+    protected static final long MAX_MAPPING = 1L << 30;
+
+    @Getter
+    protected final File file;
+    protected final int size;
+    protected final int entryPoint;
+    protected final int maxLevel;
+
+    protected final int chunkShift;
+    protected final int chunkMask;
+    // vectors and level 0 neighbour lists, mapped in chunks of (1 << chunkShift) points
+    protected final FloatBuffer[] vectors;
+    protected final IntBuffer[] links0;
+    protected final ByteBuffer levels;
+    protected final IntBuffer upperOffsets;
+    protected final IntBuffer upperLinks;
+
+    protected RandomAccessFile raf;
+
+    public MappedHnswIndex(@NonNull File file) throws IOException {
+        this(file, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param file    index file
+     * @param workers number of threads used by batched queries
+     */
+    public MappedHnswIndex(@NonNull File file, int workers) throws IOException {
+        this(file, readHeader(file, workers));
+    }
+
+    protected MappedHnswIndex(File file, Header header) throws IOException {
+        super(header.builder, header.size);
+        this.file = file;
+        this.size = header.size;
+        this.entryPoint = header.entryPoint;
+        this.maxLevel = header.maxLevel;
+
+        int shift = HnswIndex.blockShift(dimensions);
+        while (shift > 0 && ((long) (maxM0 + 1) << shift) * 4 > MAX_MAPPING)
+            shift--;
+        this.chunkShift = shift;
+        this.chunkMask = (1 << shift) - 1;
+
+        int numChunks = (int) ((size + (long) chunkMask) >>> chunkShift);
+        this.vectors = new FloatBuffer[numChunks];
+        this.links0 = new IntBuffer[numChunks];
+
+        this.raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long position = HnswIndex.HEADER_LENGTH;
+            for (int c = 0; c < numChunks; c++) {
+                long rows = Math.min(chunkMask + 1, size - ((long) c << chunkShift));
+                vectors[c] = map(channel, position, rows * dimensions * 4).asFloatBuffer();
+                position += rows * dimensions * 4;
+            }
+            position = align(position);
+
+            for (int c = 0; c < numChunks; c++) {
+                long rows = Math.min(chunkMask + 1, size - ((long) c << chunkShift));
+                links0[c] = map(channel, position, rows * (maxM0 + 1) * 4).asIntBuffer();
+                position += rows * (maxM0 + 1) * 4;
+            }
+            position = align(position);
+
+            levels = map(channel, position, size);
+            position = align(position + size);
+
+            upperOffsets = map(channel, position, size * 4L).asIntBuffer();
+            position = align(position + size * 4L);
+
+            if (header.upperLength * 4L > Integer.MAX_VALUE)
+                throw new IllegalStateException("Upper levels section is too large: " + header.upperLength + " ints");
+            upperLinks = map(channel, position, header.upperLength * 4L).asIntBuffer();
+            position = align(position + header.upperLength * 4L);
+
+            LongBuffer bitmap = map(channel, position, ((size + 63L) >>> 6) * 8).asLongBuffer();
+            for (int w = 0; w < bitmap.limit(); w++)
+                deleted.set(w, bitmap.get(w));
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    protected static Header readHeader(File file, int workers) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HnswIndex.HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileInputStream fis = new FileInputStream(file)) {
+            FileChannel channel = fis.getChannel();
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0)
+                    throw new IllegalStateException("File is too short to be HNSW index file: " + file);
+            }
+        }
+        buffer.flip();
+
+        if (buffer.getInt() != HnswIndex.MAGIC)
+            throw new IllegalStateException("File isn't HNSW index file: " + file);
+        int version = buffer.getInt();
+        if (version != HnswIndex.FORMAT_VERSION)
+            throw new IllegalStateException("Unsupported HNSW index file version: " + version);
+
+        Header header = new Header();
+        header.builder = new HnswIndex.Builder().dimensions(buffer.getInt());
+        header.size = buffer.getInt();
+        header.builder.m(buffer.getInt()).efConstruction(buffer.getInt()).efSearch(buffer.getInt())
+                        .distance(VectorDistance.values()[buffer.getInt()]).workers(workers);
+        header.entryPoint = buffer.getInt();
+        header.maxLevel = buffer.getInt();
+        header.upperLength = buffer.getInt();
+        header.builder.seed(buffer.getLong());
+        return header;
+    }
+
+    protected static ByteBuffer map(FileChannel channel, long position, long length) throws IOException {
+        if (position + length > channel.size())
+            throw new IllegalStateException("HNSW index file is truncated: expected at least " + (position + length)
+                            + " bytes, got " + channel.size());
+
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    protected static long align(long position) {
+        return (position + HnswIndex.ALIGNMENT - 1) / HnswIndex.ALIGNMENT * HnswIndex.ALIGNMENT;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public float[] getVector(int index) {
+        checkIndex(index);
+        FloatBuffer chunk = vectors[index >>> chunkShift];
+        int base = (index & chunkMask) * dimensions;
+        float[] result = new float[dimensions];
+        for (int i = 0; i < dimensions; i++)
+            result[i] = chunk.get(base + i);
+        return result;
+    }
+
+    @Override
+    protected int entryPoint() {
+        return entryPoint;
+    }
+
+    @Override
+    protected int maxLevel() {
+        return maxLevel;
+    }
+
+    @Override
+    protected int level(int point) {
+        return levels.get(point);
+    }
+
+    @Override
+    protected int neighbours(int point, int level, int[] buffer) {
+        IntBuffer list;
+        int offset;
+        if (level == 0) {
+            list = links0[point >>> chunkShift];
+            offset = (point & chunkMask) * (maxM0 + 1);
+        } else {
+            if (level > levels.get(point))
+                return 0;
+            list = upperLinks;
+            offset = upperOffsets.get(point) + (level - 1) * (m + 1);
+        }
+
+        int count = list.get(offset);
+        for (int i = 0; i < count; i++)
+            buffer[i] = list.get(offset + 1 + i);
+        return count;
+    }
+
+    @Override
+    protected float distanceTo(float[] query, int queryOffset, int point) {
+        return distance.distance(query, queryOffset, vectors[point >>> chunkShift], (point & chunkMask) * dimensions,
+                        dimensions);
+    }
+
+    /**
+     * This method closes the file. Mappings are released by GC, once this index isn't referenced anymore.
+     */
+    @Override
+    public void close() throws IOException {
+        shutdown();
+        raf.close();
+    }
+
+    protected static class Header {
+        protected HnswIndex.Builder builder;
+        protected int size;
+        protected int entryPoint;
+        protected int maxLevel;
+        protected int upperLength;
+    }
+}
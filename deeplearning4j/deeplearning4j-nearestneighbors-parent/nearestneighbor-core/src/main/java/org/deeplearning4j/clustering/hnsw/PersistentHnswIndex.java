@@ -0,0 +1,620 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.clustering.hnsw;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.clustering.util.FloatIntHeap;
+import org.deeplearning4j.clustering.util.MultiThreadUtils.RangeTask;
+import org.deeplearning4j.clustering.util.SearchResults;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Directory-backed HNSW index, which supports adding and deleting points, and survives restarts without rebuild.
+ *
+ * Directory holds:
+ * - index-N.hnsw: snapshot, written by {@link HnswIndex#save(File)}. It's memory-mapped on open and searched in place.
+ * - wal-N.log: write-ahead log of points added and deleted after snapshot N. It's replayed into memory on open.
+ *
+ * Added points go into in-memory segments. Once segments hold compactionThreshold points, background compaction
+ * merges them with the snapshot into new snapshot, and switches to it. Searches and updates aren't blocked while
+ * compaction runs, except for short moments when log is rotated and snapshot is switched.
+ *
+ * Points are identified by insertion order, starting from 0, and keep their indices forever. Deleted points stay in
+ * the graph to keep it connected, but they're never returned by search.
+ */
+@Slf4j
+public class PersistentHnswIndex implements Closeable {
+    protected static final String SNAPSHOT_PREFIX = "index-";
+    protected static final String SNAPSHOT_SUFFIX = ".hnsw";
+    protected static final String WAL_PREFIX = "wal-";
+    protected static final String WAL_SUFFIX = ".log";
+
+    @Getter
+    protected final File directory;
+    protected final HnswIndex.Builder config;
+    @Getter
+    protected final int compactionThreshold;
+
+    // updates hold read lock while they're applied, so log rotation and snapshot switch never see partial updates
+    protected final ReentrantReadWriteLock switchLock = new ReentrantReadWriteLock();
+    protected final Object writeLock = new Object();
+    protected volatile State state;
+    protected int generation;
+    protected int nextIndex;
+    protected WriteAheadLog wal;
+    protected Future<?> compaction;
+    protected boolean closed = false;
+    protected final ExecutorService compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "PersistentHnswIndex compaction thread");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    /**
+     * This method opens index stored in given directory, or creates new one if directory is empty
+     *
+     * @param directory           index directory
+     * @param config              index parameters. Capacity is ignored. If directory holds index already,
+     *                            dimensions may be left unset, otherwise dimensions, M and distance must match it
+     * @param compactionThreshold number of points added after snapshot, that triggers compaction
+     */
+    public PersistentHnswIndex(@NonNull File directory, @NonNull HnswIndex.Builder config, int compactionThreshold)
+                    throws IOException {
+        if (compactionThreshold < 1)
+            throw new IllegalArgumentException("Compaction threshold must be positive: got " + compactionThreshold);
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Unable to create index directory: " + directory);
+
+        this.directory = directory;
+        this.compactionThreshold = compactionThreshold;
+
+        int snapshot = -1;
+        TreeSet<Integer> logs = new TreeSet<>();
+        for (File f : Objects.requireNonNull(directory.listFiles())) {
+            if (f.getName().endsWith(SNAPSHOT_SUFFIX + ".tmp")) {
+                // leftover of interrupted compaction
+                delete(f);
+                continue;
+            }
+
+            int g = parseGeneration(f.getName(), SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+            if (g >= 0)
+                snapshot = Math.max(snapshot, g);
+            g = parseGeneration(f.getName(), WAL_PREFIX, WAL_SUFFIX);
+            if (g >= 0)
+                logs.add(g);
+        }
+
+        this.config = config.withCapacity(compactionThreshold);
+        if (this.config.dimensions < 1) {
+            if (snapshot >= 0)
+                this.config.dimensions(MappedHnswIndex.readHeader(snapshotFile(snapshot), 1).builder.dimensions);
+            else if (!logs.isEmpty())
+                this.config.dimensions(WriteAheadLog.readDimensions(walFile(logs.first())));
+            else
+                throw new IllegalArgumentException("Dimensions must be set to create new index in " + directory);
+        }
+
+        MappedHnswIndex base = null;
+        if (snapshot >= 0) {
+            base = new MappedHnswIndex(snapshotFile(snapshot), this.config.workers);
+            if (base.getDimensions() != this.config.dimensions || base.getM() != this.config.m
+                            || base.getDistance() != this.config.distance) {
+                base.close();
+                throw new IllegalArgumentException("Index in " + directory + " has dimensions " + base.getDimensions()
+                                + ", M " + base.getM() + " and distance " + base.getDistance()
+                                + ", which doesn't match given configuration");
+            }
+        }
+
+        nextIndex = base == null ? 0 : base.size();
+        state = new State(base, Collections.singletonList(new Segment(newSegment(), nextIndex)));
+        generation = Math.max(snapshot, 0);
+
+        long numRecords = 0;
+        for (int g : logs) {
+            if (g < snapshot) {
+                // leftover of compaction interrupted after snapshot was written
+                delete(walFile(g));
+                continue;
+            }
+
+            generation = g;
+            numRecords = WriteAheadLog.replay(walFile(g), this.config.dimensions, new WriteAheadLog.Listener() {
+                @Override
+                public void add(int index, float[] vector) {
+                    if (index < nextIndex)
+                        return;
+                    if (index != nextIndex)
+                        throw new IllegalStateException("Write-ahead log is inconsistent: expected point " + nextIndex
+                                        + ", got " + index);
+                    Segment segment = segmentForAdd();
+                    segment.index.insert(segment.index.reserve(1), vector, 0);
+                    nextIndex++;
+                }
+
+                @Override
+                public void delete(int index) {
+                    if (index < nextIndex)
+                        owner(state, index).markDeleted(local(state, index));
+                }
+            });
+        }
+        for (int g = 0; g < snapshot; g++)
+            delete(snapshotFile(g));
+
+        wal = new WriteAheadLog(walFile(generation), this.config.dimensions, numRecords);
+        log.info("Opened HNSW index in {}: {} points, {} of them added after snapshot", directory, nextIndex,
+                        nextIndex - (base == null ? 0 : base.size()));
+    }
+
+    /**
+     * @return number of points in this index, including deleted ones
+     */
+    public int size() {
+        synchronized (writeLock) {
+            return nextIndex;
+        }
+    }
+
+    public int getDimensions() {
+        return config.dimensions;
+    }
+
+    /**
+     * This method adds single point to the index
+     *
+     * @return index of the added point
+     */
+    public int add(@NonNull float[] vector) throws IOException {
+        return addAll(new float[][] {vector});
+    }
+
+    /**
+     * This method adds all rows of given matrix to the index
+     *
+     * @return index of the first added point
+     */
+    public int addAll(@NonNull INDArray points) throws IOException {
+        return addAll(points.toFloatMatrix());
+    }
+
+    /**
+     * This method adds all given points to the index. Points get consecutive indices, in the same order as given.
+     *
+     * @return index of the first added point
+     */
+    public int addAll(@NonNull final float[][] points) throws IOException {
+        for (float[] point : points) {
+            if (point.length != config.dimensions)
+                throw new IllegalArgumentException("Vector length doesn't match index dimensions: expected "
+                                + config.dimensions + ", got " + point.length);
+        }
+
+        int first = -1;
+        int done = 0;
+        while (done < points.length) {
+            switchLock.readLock().lock();
+            try {
+                final Segment segment;
+                final int local;
+                final int count;
+                IOException failure = null;
+                synchronized (writeLock) {
+                    ensureOpen();
+                    segment = segmentForAdd();
+                    int available = Math.min(points.length - done,
+                                    segment.index.getCapacity() - segment.index.size());
+
+                    // points are logged before they're reserved: if logging fails midway, only logged points are
+                    // inserted, so in-memory index never holds slots that aren't in the log
+                    int logged = 0;
+                    try {
+                        while (logged < available) {
+                            wal.add(nextIndex + logged, points[done + logged], 0);
+                            logged++;
+                        }
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+
+                    count = logged;
+                    local = segment.index.reserve(count);
+                    if (first < 0)
+                        first = nextIndex;
+                    nextIndex += count;
+                }
+
+                final int offset = done;
+                segment.index.parallel(count, new RangeTask() {
+                    @Override
+                    public void run(int from, int to) {
+                        for (int i = from; i < to; i++)
+                            segment.index.insert(local + i, points[offset + i], 0);
+                    }
+                });
+                done += count;
+                if (failure != null)
+                    throw failure;
+            } finally {
+                switchLock.readLock().unlock();
+            }
+        }
+
+        maybeCompact();
+        return first;
+    }
+
+    /**
+     * This method deletes point with given index
+     *
+     * @return false if point was already deleted
+     */
+    public boolean delete(int index) throws IOException {
+        switchLock.readLock().lock();
+        try {
+            synchronized (writeLock) {
+                ensureOpen();
+                if (index < 0 || index >= nextIndex)
+                    throw new IllegalArgumentException("Invalid point index: " + index + ", size: " + nextIndex);
+
+                State s = state;
+                BaseHnswIndex owner = owner(s, index);
+                if (owner.isDeleted(local(s, index)))
+                    return false;
+
+                wal.delete(index);
+                return owner.markDeleted(local(s, index));
+            }
+        } finally {
+            switchLock.readLock().unlock();
+        }
+    }
+
+    public boolean isDeleted(int index) {
+        State s = state;
+        return owner(s, index).isDeleted(local(s, index));
+    }
+
+    /**
+     * This method returns copy of the point with given index, as stored: cosine index keeps normalized vectors
+     */
+    public float[] getVector(int index) {
+        State s = state;
+        return owner(s, index).getVector(local(s, index));
+    }
+
+    /**
+     * This method returns approximate k nearest neighbours of single query
+     */
+    public SearchResults search(@NonNull float[] query, int k) {
+        return search(new float[][] {query}, k);
+    }
+
+    /**
+     * This method returns approximate k nearest neighbours of each row of given matrix
+     */
+    public SearchResults search(@NonNull INDArray queries, int k) {
+        return search(queries.rank() == 1 ? new float[][] {queries.toFloatVector()} : queries.toFloatMatrix(), k);
+    }
+
+    /**
+     * This method returns approximate k nearest neighbours of each query, searching snapshot and all in-memory
+     * segments, and merging their results
+     */
+    public SearchResults search(@NonNull float[][] queries, int k) {
+        State s = state;
+        List<SearchResults> partial = new ArrayList<>();
+        List<Integer> offsets = new ArrayList<>();
+        if (s.base != null) {
+            partial.add(s.base.search(queries, k));
+            offsets.add(0);
+        }
+        for (Segment segment : s.segments) {
+            if (segment.index.size() > 0) {
+                partial.add(segment.index.search(queries, k));
+                offsets.add(segment.firstIndex);
+            }
+        }
+
+        if (partial.size() == 1 && offsets.get(0) == 0)
+            return partial.get(0);
+
+        int[][] indices = new int[queries.length][];
+        float[][] distances = new float[queries.length][];
+        FloatIntHeap heap = FloatIntHeap.maxHeap(k + 1);
+        for (int q = 0; q < queries.length; q++) {
+            heap.clear();
+            for (int p = 0; p < partial.size(); p++) {
+                int[] idx = partial.get(p).getIndices(q);
+                float[] dist = partial.get(p).getDistances(q);
+                for (int i = 0; i < idx.length; i++)
+                    heap.offer(dist[i], offsets.get(p) + idx[i], k);
+            }
+            indices[q] = new int[heap.size()];
+            distances[q] = new float[heap.size()];
+            heap.drain(indices[q], distances[q]);
+        }
+        return new SearchResults(indices, distances);
+    }
+
+    /**
+     * This method forces write-ahead log to the storage device
+     */
+    public void sync() throws IOException {
+        synchronized (writeLock) {
+            ensureOpen();
+            wal.sync();
+        }
+    }
+
+    /**
+     * This method starts compaction in background, unless it's running already
+     *
+     * @return future, which is done once compaction is finished
+     */
+    public Future<?> compact() {
+        synchronized (writeLock) {
+            ensureOpen();
+            if (compaction == null || compaction.isDone()) {
+                compaction = compactor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        try {
+                            doCompact();
+                        } catch (Exception e) {
+                            log.error("Compaction of HNSW index in {} failed", directory, e);
+                            throw e;
+                        }
+                        return null;
+                    }
+                });
+            }
+            return compaction;
+        }
+    }
+
+    protected void maybeCompact() {
+        State s = state;
+        int pending = 0;
+        for (Segment segment : s.segments)
+            pending += segment.index.size();
+        if (pending >= compactionThreshold)
+            compact();
+    }
+
+    protected void doCompact() throws IOException {
+        State frozen;
+        int frozenGeneration;
+        int total;
+
+        // 1. rotate the log, and direct new points into new segment
+        switchLock.writeLock().lock();
+        try {
+            synchronized (writeLock) {
+                if (closed || wal.getNumRecords() == 0)
+                    return;
+
+                frozen = state;
+                frozenGeneration = generation;
+                total = nextIndex;
+                wal.close();
+                generation++;
+                wal = new WriteAheadLog(walFile(generation), config.dimensions, 0);
+
+                // frozen segments stay searchable until new snapshot replaces them
+                List<Segment> segments = new ArrayList<>(frozen.segments);
+                segments.add(new Segment(newSegment(), nextIndex));
+                state = new State(frozen.base, Collections.unmodifiableList(segments));
+            }
+        } finally {
+            switchLock.writeLock().unlock();
+        }
+
+        // 2. merge frozen snapshot and segments into new snapshot. Frozen segments don't get new points anymore
+        HnswIndex merged = frozen.base == null ? config.withCapacity(Math.max(total, 1)).build()
+                        : HnswIndex.copyOf(frozen.base, Math.max(total, 1), config.workers);
+        for (Segment segment : frozen.segments) {
+            int n = segment.index.size();
+            for (int from = 0; from < n; from += compactionThreshold) {
+                float[][] rows = new float[Math.min(compactionThreshold, n - from)][];
+                for (int i = 0; i < rows.length; i++)
+                    rows[i] = segment.index.getVector(from + i);
+                merged.addAll(rows);
+            }
+            for (int i : segment.index.deletedIndices())
+                merged.markDeleted(segment.firstIndex + i);
+        }
+
+        File snapshot = snapshotFile(frozenGeneration + 1);
+        File tmp = new File(directory, snapshot.getName() + ".tmp");
+        merged.save(tmp);
+        merged.shutdown();
+        Files.move(tmp.toPath(), snapshot.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        MappedHnswIndex base = new MappedHnswIndex(snapshot, config.workers);
+
+        // 3. switch to new snapshot, carrying over deletes made while it was written
+        switchLock.writeLock().lock();
+        try {
+            synchronized (writeLock) {
+                if (frozen.base != null) {
+                    for (int i : frozen.base.deletedIndices())
+                        base.markDeleted(i);
+                }
+                for (Segment segment : frozen.segments) {
+                    for (int i : segment.index.deletedIndices())
+                        base.markDeleted(segment.firstIndex + i);
+                }
+                List<Segment> segments = new ArrayList<>();
+                for (Segment segment : state.segments) {
+                    if (segment.firstIndex >= total)
+                        segments.add(segment);
+                }
+                state = new State(base, Collections.unmodifiableList(segments));
+            }
+        } finally {
+            switchLock.writeLock().unlock();
+        }
+
+        if (frozen.base != null)
+            frozen.base.close();
+        for (Segment segment : frozen.segments)
+            segment.index.shutdown();
+        for (int g = 0; g <= frozenGeneration; g++) {
+            delete(walFile(g));
+            delete(snapshotFile(g));
+        }
+        log.info("Compacted HNSW index in {}: snapshot {} holds {} points", directory, frozenGeneration + 1, total);
+    }
+
+    /**
+     * This method waits for running compaction, and closes the index
+     */
+    @Override
+    public void close() throws IOException {
+        Future<?> running;
+        synchronized (writeLock) {
+            if (closed)
+                return;
+            running = compaction;
+        }
+
+        if (running != null) {
+            try {
+                running.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // already logged, log is replayed on next open
+            }
+        }
+
+        synchronized (writeLock) {
+            closed = true;
+            compactor.shutdown();
+            wal.close();
+            State s = state;
+            if (s.base != null)
+                s.base.close();
+            for (Segment segment : s.segments)
+                segment.index.shutdown();
+        }
+    }
+
+    protected Segment segmentForAdd() {
+        State s = state;
+        Segment last = s.segments.get(s.segments.size() - 1);
+        if (last.index.size() < last.index.getCapacity())
+            return last;
+
+        // compaction is behind, so one more segment is started
+        Segment segment = new Segment(newSegment(), nextIndex);
+        List<Segment> segments = new ArrayList<>(s.segments);
+        segments.add(segment);
+        state = new State(s.base, Collections.unmodifiableList(segments));
+        return segment;
+    }
+
+    protected HnswIndex newSegment() {
+        return config.withCapacity(compactionThreshold).build();
+    }
+
+    protected BaseHnswIndex owner(State s, int index) {
+        if (s.base != null && index < s.base.size())
+            return s.base;
+        for (int i = s.segments.size() - 1; i >= 0; i--) {
+            if (index >= s.segments.get(i).firstIndex)
+                return s.segments.get(i).index;
+        }
+        throw new IllegalArgumentException("Invalid point index: " + index);
+    }
+
+    protected int local(State s, int index) {
+        if (s.base != null && index < s.base.size())
+            return index;
+        for (int i = s.segments.size() - 1; i >= 0; i--) {
+            if (index >= s.segments.get(i).firstIndex)
+                return index - s.segments.get(i).firstIndex;
+        }
+        throw new IllegalArgumentException("Invalid point index: " + index);
+    }
+
+    protected void ensureOpen() {
+        if (closed)
+            throw new IllegalStateException("Index is closed");
+    }
+
+    protected File snapshotFile(int generation) {
+        return new File(directory, SNAPSHOT_PREFIX + generation + SNAPSHOT_SUFFIX);
+    }
+
+    protected File walFile(int generation) {
+        return new File(directory, WAL_PREFIX + generation + WAL_SUFFIX);
+    }
+
+    protected static int parseGeneration(String name, String prefix, String suffix) {
+        if (!name.startsWith(prefix) || !name.endsWith(suffix))
+            return -1;
+        try {
+            return Integer.parseInt(name.substring(prefix.length(), name.length() - suffix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    protected static void delete(File file) {
+        if (file.exists() && !file.delete())
+            log.warn("Unable to delete {}", file);
+    }
+
+    /**
+     * Immutable view of the index: snapshot and in-memory segments, which are searched together
+     */
+    protected static class State {
+        protected final MappedHnswIndex base;
+        protected final List<Segment> segments;
+
+        protected State(MappedHnswIndex base, List<Segment> segments) {
+            this.base = base;
+            this.segments = segments;
+        }
+    }
+
+    protected static class Segment {
+        protected final HnswIndex index;
+        protected final int firstIndex;
+
+        protected Segment(HnswIndex index, int firstIndex) {
+            this.index = index;
+            this.firstIndex = firstIndex;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.clustering.hnsw;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing set of visited node ids. It's cleared by bumping generation instead of wiping the table,
+ * so single instance is reused across searches at any index size.
+ */
+class VisitedSet {
+    private int[] keys;
+    private int[] stamps;
+    private int mask;
+    private int size;
+    private int generation = 1;
+
+    VisitedSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2) - 1) << 1;
+        keys = new int[capacity];
+        stamps = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    void clear() {
+        size = 0;
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * @return true if id wasn't visited before
+     */
+    boolean add(int id) {
+        if (size * 2 >= keys.length)
+            grow();
+
+        int i = (id * 0x9E3779B9) & mask;
+        while (stamps[i] == generation) {
+            if (keys[i] == id)
+                return false;
+            i = (i + 1) & mask;
+        }
+        keys[i] = id;
+        stamps[i] = generation;
+        size++;
+        return true;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldStamps = stamps;
+        int oldGeneration = generation;
+
+        keys = new int[oldKeys.length * 2];
+        stamps = new int[oldKeys.length * 2];
+        mask = keys.length - 1;
+        generation = 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldStamps[i] == oldGeneration)
+                add(oldKeys[i]);
+        }
+    }
+}
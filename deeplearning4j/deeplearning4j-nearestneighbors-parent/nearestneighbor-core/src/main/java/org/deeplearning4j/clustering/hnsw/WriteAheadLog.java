@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.clustering.hnsw;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of changes made to {@link PersistentHnswIndex} after its last snapshot.
+ *
+ * Each record holds type, point index, vector for additions, and CRC32 checksum of all that. Records are flushed to
+ * OS as soon as they're written, so they survive crash of the process. Torn record at the end of the log,
+ * left by crash in the middle of write, is dropped on replay.
+ */
+@Slf4j
+class WriteAheadLog implements Closeable {
+    static final int MAGIC = 0x484E574C; // "HNWL"
+    static final int HEADER_LENGTH = 8;
+    static final byte ADD = 1;
+    static final byte DELETE = 2;
+
+    @Getter
+    private final File file;
+    private final int dimensions;
+    private final FileOutputStream stream;
+    private final ByteBuffer record;
+    private final CRC32 crc = new CRC32();
+    @Getter
+    private long numRecords;
+
+    interface Listener {
+        void add(int index, float[] vector);
+
+        void delete(int index);
+    }
+
+    /**
+     * This method opens log for appending, creating it if it doesn't exist
+     *
+     * @param numRecords number of records already stored in the log
+     */
+    WriteAheadLog(File file, int dimensions, long numRecords) throws IOException {
+        this.file = file;
+        this.dimensions = dimensions;
+        this.numRecords = numRecords;
+        this.record = ByteBuffer.allocate(1 + 4 + dimensions * 4 + 4);
+
+        boolean exists = file.exists() && file.length() > 0;
+        this.stream = new FileOutputStream(file, true);
+        if (!exists) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.putInt(MAGIC).putInt(dimensions);
+            stream.write(header.array());
+        }
+    }
+
+    synchronized void add(int index, float[] vector, int offset) throws IOException {
+        record.clear();
+        record.put(ADD).putInt(index);
+        for (int i = 0; i < dimensions; i++)
+            record.putFloat(vector[offset + i]);
+        write();
+    }
+
+    synchronized void delete(int index) throws IOException {
+        record.clear();
+        record.put(DELETE).putInt(index);
+        write();
+    }
+
+    private void write() throws IOException {
+        crc.reset();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+        stream.write(record.array(), 0, record.position());
+        numRecords++;
+    }
+
+    /**
+     * This method forces all records to the storage device
+     */
+    synchronized void sync() throws IOException {
+        stream.getFD().sync();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * This method returns length of vectors stored in given log
+     */
+    static int readDimensions(File file) throws IOException {
+        try (DataInputStream dis = new DataInputStream(new FileInputStream(file))) {
+            if (dis.readInt() != MAGIC)
+                throw new IllegalStateException("File isn't HNSW write-ahead log: " + file);
+            return dis.readInt();
+        } catch (EOFException e) {
+            throw new IllegalStateException("Write-ahead log " + file + " is empty, index dimensions must be set");
+        }
+    }
+
+    /**
+     * This method reads all valid records of given log, and truncates torn record at its end, if any
+     *
+     * @return number of records read
+     */
+    static long replay(File file, int dimensions, Listener listener) throws IOException {
+        if (file.length() < HEADER_LENGTH) {
+            // crash right after log was created, header is written again on open
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(0);
+            }
+            return 0;
+        }
+
+        long valid = HEADER_LENGTH;
+        long numRecords = 0;
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (dis.readInt() != MAGIC)
+                throw new IllegalStateException("File isn't HNSW write-ahead log: " + file);
+            int logDimensions = dis.readInt();
+            if (logDimensions != dimensions)
+                throw new IllegalStateException("Write-ahead log " + file + " holds vectors of length "
+                                + logDimensions + ", expected " + dimensions);
+
+            byte[] buffer = new byte[1 + 4 + dimensions * 4];
+            CRC32 crc = new CRC32();
+            while (true) {
+                int type = dis.read();
+                if (type < 0)
+                    break;
+
+                int length = type == ADD ? buffer.length : 5;
+                if (type != ADD && type != DELETE)
+                    break;
+
+                buffer[0] = (byte) type;
+                dis.readFully(buffer, 1, length - 1);
+                int checksum = dis.readInt();
+                crc.reset();
+                crc.update(buffer, 0, length);
+                if ((int) crc.getValue() != checksum)
+                    break;
+
+                ByteBuffer bb = ByteBuffer.wrap(buffer, 1, length - 1);
+                int index = bb.getInt();
+                if (type == ADD) {
+                    float[] vector = new float[dimensions];
+                    for (int i = 0; i < dimensions; i++)
+                        vector[i] = bb.getFloat();
+                    listener.add(index, vector);
+                } else {
+                    listener.delete(index);
+                }
+
+                valid += length + 4;
+                numRecords++;
+            }
+        } catch (EOFException e) {
+            // torn record, handled below
+        }
+
+        if (valid < file.length()) {
+            log.warn("Dropping {} bytes of incomplete record at the end of write-ahead log {}", file.length() - valid,
+                            file);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(valid);
+            }
+        }
+        return numRecords;
+    }
+}
@@ -0,0 +1,921 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.clustering.pq;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.clustering.util.FloatIntHeap;
+import org.deeplearning4j.clustering.util.MultiThreadUtils;
+import org.deeplearning4j.clustering.util.MultiThreadUtils.RangeTask;
+import org.deeplearning4j.clustering.util.SearchResults;
+import org.deeplearning4j.clustering.util.VectorDistance;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted file index over product-quantized vectors (IVF-PQ), for approximate nearest neighbours search when raw
+ * vectors don't fit into memory.
+ *
+ * Vectors are assigned to the nearest of numLists coarse centroids, and residual of each vector relative to its
+ * centroid is encoded by {@link ProductQuantizer} into numSubspaces bytes. Query scans only numProbes lists nearest
+ * to it, computing distances to encoded vectors via lookup tables. With numLists = 1 this is plain PQ with full scan.
+ *
+ * Both coarse centroids and PQ codebooks are trained with k-means on a random sample of vectors, see
+ * {@link #train(INDArray)}. Since PQ distances are approximate, top candidates can be re-ranked against exact
+ * vectors, kept elsewhere (i.e. on disk), via {@link #search(INDArray, int, int, VectorSource)}.
+ *
+ * Memory use is numSubspaces + 8 bytes per vector: i.e. 300-dimensional float vector takes 58 bytes instead of 1200
+ * with default settings.
+ *
+ * PLEASE NOTE: vectors are identified by insertion order, starting from 0. Searches may run concurrently with each
+ * other and with add() calls.
+ */
+@Slf4j
+public class PQIndex {
+    public static final int MAGIC = 0x50514958; // "PQIX"
+    public static final int FORMAT_VERSION = 1;
+    protected static final int ADD_BATCH = 65536;
+
+    @Getter
+    protected final int dimensions;
+    @Getter
+    protected final int numSubspaces;
+    @Getter
+    protected final int numCentroids;
+    @Getter
+    protected final int numLists;
+    @Getter
+    protected final VectorDistance distance;
+    @Getter
+    protected volatile int numProbes;
+    protected final int sampleSize;
+    protected final int iterations;
+    protected final long seed;
+    protected final int workers;
+
+    // [numLists][dimensions]
+    protected volatile float[] coarse;
+    protected volatile ProductQuantizer quantizer;
+
+    protected byte[][] codes;
+    protected int[][] ids;
+    protected int[] listSizes;
+    // list of each vector
+    protected int[] assignments = new int[0];
+    protected int size;
+
+    protected final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    protected transient ExecutorService executorService;
+    protected final ThreadLocal<SearchContext> contexts = new ThreadLocal<SearchContext>() {
+        @Override
+        protected SearchContext initialValue() {
+            return new SearchContext(PQIndex.this);
+        }
+    };
+
+    /**
+     * Source of exact vectors, used for re-ranking
+     */
+    public interface VectorSource {
+        /**
+         * This method copies vector with given index into buffer
+         */
+        void get(int index, float[] buffer);
+    }
+
+    protected PQIndex(Builder builder) {
+        this.dimensions = builder.dimensions;
+        this.numSubspaces = builder.numSubspaces > 0 ? builder.numSubspaces
+                        : ProductQuantizer.defaultSubspaces(builder.dimensions);
+        this.numCentroids = builder.numCentroids;
+        this.numLists = builder.numLists;
+        this.numProbes = builder.numProbes;
+        this.distance = builder.distance;
+        this.sampleSize = builder.sampleSize;
+        this.iterations = builder.iterations;
+        this.seed = builder.seed;
+        this.workers = builder.workers;
+
+        if (dimensions % numSubspaces != 0)
+            throw new IllegalArgumentException("Number of subspaces must divide dimensions: got " + numSubspaces
+                            + " subspaces for " + dimensions + " dimensions");
+    }
+
+    /**
+     * This method returns vector source backed by rows of given matrix. Matrix is copied into float array once, so
+     * later changes of the matrix aren't visible through returned source.
+     */
+    public static VectorSource vectors(@NonNull INDArray vectors) {
+        final int columns = vectors.columns();
+        final float[] data = VectorDistance.toFloats(vectors);
+        return new VectorSource() {
+            @Override
+            public void get(int index, float[] buffer) {
+                System.arraycopy(data, index * columns, buffer, 0, buffer.length);
+            }
+        };
+    }
+
+    /**
+     * This method returns vector source backed by given arrays
+     */
+    public static VectorSource vectors(@NonNull final float[][] vectors) {
+        return new VectorSource() {
+            @Override
+            public void get(int index, float[] buffer) {
+                System.arraycopy(vectors[index], 0, buffer, 0, buffer.length);
+            }
+        };
+    }
+
+    /**
+     * @return number of vectors in this index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isTrained() {
+        return quantizer != null;
+    }
+
+    /**
+     * This method changes number of lists scanned per query. It's safe to call it at any time.
+     */
+    public void setNumProbes(int numProbes) {
+        if (numProbes < 1)
+            throw new IllegalArgumentException("Number of probes must be positive: got " + numProbes);
+        this.numProbes = numProbes;
+    }
+
+    /**
+     * This method trains coarse centroids and PQ codebooks on a random sample of given vectors.
+     * Vectors aren't added to the index.
+     */
+    public void train(@NonNull float[][] vectors) {
+        int[] rows = sample(vectors.length);
+        float[] data = new float[rows.length * dimensions];
+        for (int i = 0; i < rows.length; i++) {
+            checkDimensions(vectors[rows[i]].length);
+            System.arraycopy(vectors[rows[i]], 0, data, i * dimensions, dimensions);
+        }
+        train(data, rows.length);
+    }
+
+    /**
+     * This method trains coarse centroids and PQ codebooks on a random sample of rows of given matrix.
+     * Rows aren't added to the index.
+     */
+    public void train(@NonNull INDArray vectors) {
+        checkMatrix(vectors);
+        int[] rows = sample(vectors.rows());
+        // all rows are used as is, otherwise sampled rows are gathered into a single copy
+        INDArray sampled = rows.length == vectors.rows() ? vectors : vectors.getRows(rows);
+        train(VectorDistance.toFloats(sampled), rows.length);
+    }
+
+    protected synchronized void train(final float[] data, int n) {
+        if (n < 1)
+            throw new IllegalArgumentException("At least one vector is required for training");
+        if (size() > 0)
+            throw new IllegalStateException("Index already holds " + size() + " vectors, it can't be trained again");
+
+        for (int i = 0; i < n; i++)
+            distance.prepare(data, i * dimensions, dimensions);
+
+        Random rng = new Random(seed);
+        final float[] coarse = numLists > 1 ? kmeans(data, n, 0, dimensions, numLists, rng) : new float[dimensions];
+
+        // codebooks are trained on residuals
+        parallel(n, new RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    int offset = i * dimensions;
+                    int list = nearestList(coarse, data, offset);
+                    for (int j = 0; j < dimensions; j++)
+                        data[offset + j] -= coarse[list * dimensions + j];
+                }
+            }
+        });
+
+        int subDimensions = dimensions / numSubspaces;
+        float[] codebooks = new float[numCentroids * dimensions];
+        for (int s = 0; s < numSubspaces; s++) {
+            float[] centroids = kmeans(data, n, s * subDimensions, subDimensions, numCentroids, rng);
+            System.arraycopy(centroids, 0, codebooks, s * numCentroids * subDimensions, centroids.length);
+        }
+
+        lock.writeLock().lock();
+        try {
+            this.coarse = coarse;
+            this.quantizer = new ProductQuantizer(dimensions, numSubspaces, numCentroids, codebooks);
+            this.codes = new byte[numLists][0];
+            this.ids = new int[numLists][0];
+            this.listSizes = new int[numLists];
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("PQ index trained on {} vectors: {} lists, {} subspaces x {} centroids", n, numLists, numSubspaces,
+                        numCentroids);
+    }
+
+    /**
+     * This method returns sorted random subset of [0, n), of training sample size
+     */
+    protected int[] sample(int n) {
+        int[] rows = new int[n];
+        for (int i = 0; i < n; i++)
+            rows[i] = i;
+        if (n <= sampleSize)
+            return rows;
+
+        // partial Fisher-Yates shuffle
+        Random rng = new Random(seed);
+        for (int i = 0; i < sampleSize; i++) {
+            int j = i + rng.nextInt(n - i);
+            int t = rows[i];
+            rows[i] = rows[j];
+            rows[j] = t;
+        }
+        int[] sample = Arrays.copyOf(rows, sampleSize);
+        Arrays.sort(sample);
+        return sample;
+    }
+
+    /**
+     * This method runs Lloyd's k-means over subvectors [offset, offset + length) of given vectors
+     *
+     * @return k centroids of given length
+     */
+    protected float[] kmeans(final float[] data, final int n, final int offset, final int length, final int k,
+                    Random rng) {
+        final float[] centroids = new float[k * length];
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++)
+            order[i] = i;
+        for (int i = 0; i < Math.min(k, n); i++) {
+            int j = i + rng.nextInt(n - i);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        // with fewer points than centroids, points are repeated
+        for (int c = 0; c < k; c++)
+            System.arraycopy(data, order[c % n] * dimensions + offset, centroids, c * length, length);
+
+        final int[] assignment = new int[n];
+        Arrays.fill(assignment, -1);
+        final float[] sums = new float[k * length];
+        final int[] counts = new int[k];
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            final AtomicInteger changed = new AtomicInteger();
+            parallel(n, new RangeTask() {
+                @Override
+                public void run(int from, int to) {
+                    int local = 0;
+                    for (int i = from; i < to; i++) {
+                        int best = nearest(centroids, k, data, i * dimensions + offset, length);
+                        if (assignment[i] != best) {
+                            assignment[i] = best;
+                            local++;
+                        }
+                    }
+                    changed.addAndGet(local);
+                }
+            });
+            if (changed.get() == 0)
+                break;
+
+            Arrays.fill(sums, 0.0f);
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) {
+                int c = assignment[i];
+                counts[c]++;
+                int src = i * dimensions + offset;
+                int dst = c * length;
+                for (int j = 0; j < length; j++)
+                    sums[dst + j] += data[src + j];
+            }
+
+            for (int c = 0; c < k; c++) {
+                if (counts[c] == 0) {
+                    // empty cluster gets random point
+                    System.arraycopy(data, rng.nextInt(n) * dimensions + offset, centroids, c * length, length);
+                    continue;
+                }
+                for (int j = 0; j < length; j++)
+                    centroids[c * length + j] = sums[c * length + j] / counts[c];
+            }
+        }
+        return centroids;
+    }
+
+    protected static int nearest(float[] centroids, int k, float[] x, int offset, int length) {
+        int best = 0;
+        float bestDistance = Float.MAX_VALUE;
+        for (int c = 0; c < k; c++) {
+            float d = VectorDistance.squaredEuclidean(x, offset, centroids, c * length, length);
+            if (d < bestDistance) {
+                bestDistance = d;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    protected int nearestList(float[] coarse, float[] x, int offset) {
+        return numLists == 1 ? 0 : nearest(coarse, numLists, x, offset, dimensions);
+    }
+
+    /**
+     * This method encodes and adds given vectors to the index
+     *
+     * @return index of the first added vector
+     */
+    public int add(@NonNull float[][] vectors) {
+        float[] data = new float[vectors.length * dimensions];
+        for (int i = 0; i < vectors.length; i++) {
+            checkDimensions(vectors[i].length);
+            System.arraycopy(vectors[i], 0, data, i * dimensions, dimensions);
+        }
+        return add(data, vectors.length);
+    }
+
+    /**
+     * This method encodes and adds rows of given matrix to the index. Large matrices are processed in batches, so
+     * only a batch is copied at a time.
+     *
+     * @return index of the first added vector
+     */
+    public int add(@NonNull INDArray vectors) {
+        checkMatrix(vectors);
+        int rows = vectors.rows();
+        int first = -1;
+        for (int from = 0; from < rows; from += ADD_BATCH) {
+            int to = Math.min(rows, from + ADD_BATCH);
+            INDArray batch = vectors.get(NDArrayIndex.interval(from, to), NDArrayIndex.all());
+            int index = add(VectorDistance.toFloats(batch), to - from);
+            if (first < 0)
+                first = index;
+        }
+        return first < 0 ? size() : first;
+    }
+
+    protected int add(final float[] data, int n) {
+        final ProductQuantizer quantizer = checkTrained();
+        final float[] coarse = this.coarse;
+        final int[] lists = new int[n];
+        final byte[] encoded = new byte[n * numSubspaces];
+
+        parallel(n, new RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                float[] residual = contexts.get().residual;
+                for (int i = from; i < to; i++) {
+                    int offset = i * dimensions;
+                    distance.prepare(data, offset, dimensions);
+                    int list = nearestList(coarse, data, offset);
+                    for (int j = 0; j < dimensions; j++)
+                        residual[j] = data[offset + j] - coarse[list * dimensions + j];
+                    quantizer.encode(residual, 0, encoded, i * numSubspaces);
+                    lists[i] = list;
+                }
+            }
+        });
+
+        lock.writeLock().lock();
+        try {
+            if ((long) size + n > Integer.MAX_VALUE)
+                throw new IllegalStateException("Index can't hold more than " + Integer.MAX_VALUE + " vectors");
+
+            int first = size;
+            if (assignments.length < size + n)
+                assignments = Arrays.copyOf(assignments, (int) Math.min(Integer.MAX_VALUE,
+                                Math.max(size + n, (long) assignments.length * 2)));
+
+            for (int i = 0; i < n; i++) {
+                append(lists[i], first + i, encoded, i * numSubspaces);
+                assignments[first + i] = lists[i];
+            }
+            size += n;
+            return first;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    protected void append(int list, int index, byte[] src, int srcOffset) {
+        int count = listSizes[list];
+        if (ids[list].length == count) {
+            int capacity = Math.max(16, count * 2);
+            ids[list] = Arrays.copyOf(ids[list], capacity);
+            codes[list] = Arrays.copyOf(codes[list], capacity * numSubspaces);
+        }
+        ids[list][count] = index;
+        System.arraycopy(src, srcOffset, codes[list], count * numSubspaces, numSubspaces);
+        listSizes[list] = count + 1;
+    }
+
+    /**
+     * This method returns approximate vector restored from its codes. Cosine index restores normalized vectors.
+     */
+    public float[] reconstruct(int index) {
+        lock.readLock().lock();
+        try {
+            if (index < 0 || index >= size)
+                throw new IllegalArgumentException("Invalid vector index: " + index + ", index size: " + size);
+
+            int list = assignments[index];
+            int position = 0;
+            while (ids[list][position] != index)
+                position++;
+
+            float[] vector = new float[dimensions];
+            quantizer.decode(codes[list], position * numSubspaces, vector, 0);
+            for (int j = 0; j < dimensions; j++)
+                vector[j] += coarse[list * dimensions + j];
+            return vector;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * This method returns approximate k nearest neighbours of the query
+     */
+    public SearchResults search(@NonNull float[] query, int k) {
+        return search(new float[][] {query}, k);
+    }
+
+    /**
+     * This method returns approximate k nearest neighbours of each query, searching in parallel
+     */
+    public SearchResults search(@NonNull float[][] queries, int k) {
+        return search(flatten(queries), queries.length, k, 0, null);
+    }
+
+    /**
+     * This method returns approximate k nearest neighbours of each row of given matrix, searching in parallel
+     */
+    public SearchResults search(@NonNull INDArray queries, int k) {
+        int rows = checkQueries(queries);
+        return search(VectorDistance.toFloats(queries), rows, k, 0, null);
+    }
+
+    /**
+     * This method finds given number of candidates for each query via PQ distances, and returns k of them nearest to
+     * the query in terms of exact vectors
+     *
+     * @param candidates number of candidates re-ranked per query
+     * @param exact      source of exact vectors
+     */
+    public SearchResults search(@NonNull float[][] queries, int k, int candidates, @NonNull VectorSource exact) {
+        return search(flatten(queries), queries.length, k, candidates, exact);
+    }
+
+    /**
+     * This method finds given number of candidates for each row of given matrix via PQ distances, and returns k of
+     * them nearest to the query in terms of exact vectors
+     *
+     * @param candidates number of candidates re-ranked per query
+     * @param exact      source of exact vectors
+     */
+    public SearchResults search(@NonNull INDArray queries, int k, int candidates, @NonNull VectorSource exact) {
+        int rows = checkQueries(queries);
+        return search(VectorDistance.toFloats(queries), rows, k, candidates, exact);
+    }
+
+    protected SearchResults search(final float[] queries, int numQueries, final int k, int candidates,
+                    final VectorSource exact) {
+        if (k < 1)
+            throw new IllegalArgumentException("k must be positive: got " + k);
+        checkTrained();
+
+        final int limit = exact == null ? k : Math.max(k, candidates);
+        final int[][] indices = new int[numQueries][];
+        final float[][] distances = new float[numQueries][];
+
+        lock.readLock().lock();
+        try {
+            parallel(numQueries, new RangeTask() {
+                @Override
+                public void run(int from, int to) {
+                    SearchContext ctx = contexts.get();
+                    for (int q = from; q < to; q++) {
+                        System.arraycopy(queries, q * dimensions, ctx.query, 0, dimensions);
+                        distance.prepare(ctx.query, 0, dimensions);
+                        FloatIntHeap results = scan(ctx, limit);
+                        if (exact != null)
+                            results = rerank(ctx, results, k, exact);
+
+                        int n = results.size();
+                        indices[q] = new int[n];
+                        distances[q] = new float[n];
+                        results.drain(indices[q], distances[q]);
+                        for (int i = 0; i < n; i++)
+                            distances[q][i] = distance.finish(distances[q][i]);
+                    }
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new SearchResults(indices, distances);
+    }
+
+    /**
+     * This method scans lists nearest to the query, keeping given number of vectors with smallest PQ distances
+     */
+    protected FloatIntHeap scan(SearchContext ctx, int limit) {
+        float[] query = ctx.query;
+        float[] table = ctx.table;
+
+        int probes = Math.min(numProbes, numLists);
+        ctx.probes.clear();
+        for (int l = 0; l < numLists; l++)
+            ctx.probes.offer(distance.distance(query, 0, coarse, l * dimensions, dimensions), l, probes);
+        probes = ctx.probes.drain(ctx.probeLists, ctx.probeDistances);
+
+        // dot product is linear, so table doesn't depend on list, and centroid contributes a constant
+        boolean dot = distance != VectorDistance.EUCLIDEAN;
+        if (dot)
+            quantizer.lookupTable(query, 0, true, table);
+
+        FloatIntHeap heap = ctx.results;
+        heap.clear();
+        for (int p = 0; p < probes; p++) {
+            int list = ctx.probeLists[p];
+            float base = 0.0f;
+            if (dot) {
+                base = ctx.probeDistances[p];
+            } else {
+                for (int j = 0; j < dimensions; j++)
+                    ctx.residual[j] = query[j] - coarse[list * dimensions + j];
+                quantizer.lookupTable(ctx.residual, 0, false, table);
+            }
+
+            byte[] listCodes = codes[list];
+            int[] listIds = ids[list];
+            int count = listSizes[list];
+            for (int i = 0, offset = 0; i < count; i++, offset += numSubspaces) {
+                float d = base;
+                for (int s = 0, t = 0; s < numSubspaces; s++, t += numCentroids)
+                    d += table[t + (listCodes[offset + s] & 0xFF)];
+                heap.offer(d, listIds[i], limit);
+            }
+        }
+        return heap;
+    }
+
+    protected FloatIntHeap rerank(SearchContext ctx, FloatIntHeap candidates, int k, VectorSource exact) {
+        int n = ctx.candidates(candidates.size());
+        candidates.drain(ctx.candidateIds, ctx.candidateDistances);
+
+        FloatIntHeap heap = ctx.exactResults;
+        heap.clear();
+        for (int i = 0; i < n; i++) {
+            int index = ctx.candidateIds[i];
+            exact.get(index, ctx.vector);
+            distance.prepare(ctx.vector, 0, dimensions);
+            heap.offer(distance.distance(ctx.query, 0, ctx.vector, 0, dimensions), index, k);
+        }
+        return heap;
+    }
+
+    /**
+     * This method saves trained index with all its vectors into given file
+     */
+    public void save(@NonNull File file) throws IOException {
+        ProductQuantizer quantizer = checkTrained();
+
+        lock.readLock().lock();
+        try (DataOutputStream dos = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(file), 1024 * 1024))) {
+            dos.writeInt(MAGIC);
+            dos.writeInt(FORMAT_VERSION);
+            dos.writeInt(dimensions);
+            dos.writeInt(numSubspaces);
+            dos.writeInt(numCentroids);
+            dos.writeInt(numLists);
+            dos.writeInt(distance.ordinal());
+            dos.writeInt(numProbes);
+            dos.writeInt(size);
+            writeFloats(dos, coarse);
+            writeFloats(dos, quantizer.codebooks);
+
+            for (int l = 0; l < numLists; l++) {
+                dos.writeInt(listSizes[l]);
+                for (int i = 0; i < listSizes[l]; i++)
+                    dos.writeInt(ids[l][i]);
+                dos.write(codes[l], 0, listSizes[l] * numSubspaces);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * This method loads index saved via {@link #save(File)}
+     */
+    public static PQIndex load(@NonNull File file) throws IOException {
+        try (DataInputStream dis = new DataInputStream(
+                        new BufferedInputStream(new FileInputStream(file), 1024 * 1024))) {
+            if (dis.readInt() != MAGIC)
+                throw new IllegalStateException("File isn't PQ index file: " + file);
+            int version = dis.readInt();
+            if (version != FORMAT_VERSION)
+                throw new IllegalStateException("Unsupported PQ index file version: " + version);
+
+            int dimensions = dis.readInt();
+            int numSubspaces = dis.readInt();
+            int numCentroids = dis.readInt();
+            int numLists = dis.readInt();
+            VectorDistance distance = VectorDistance.values()[dis.readInt()];
+            int numProbes = dis.readInt();
+            int size = dis.readInt();
+
+            PQIndex index = new Builder().dimensions(dimensions).numSubspaces(numSubspaces).numCentroids(numCentroids)
+                            .numLists(numLists).numProbes(numProbes).distance(distance).build();
+            index.coarse = readFloats(dis, numLists * dimensions);
+            index.quantizer = new ProductQuantizer(dimensions, numSubspaces, numCentroids,
+                            readFloats(dis, numCentroids * dimensions));
+            index.codes = new byte[numLists][];
+            index.ids = new int[numLists][];
+            index.listSizes = new int[numLists];
+            index.assignments = new int[size];
+
+            for (int l = 0; l < numLists; l++) {
+                int count = dis.readInt();
+                index.listSizes[l] = count;
+                index.ids[l] = new int[count];
+                for (int i = 0; i < count; i++) {
+                    int id = dis.readInt();
+                    if (id < 0 || id >= size)
+                        throw new IllegalStateException("PQ index file is corrupted: " + file);
+                    index.ids[l][i] = id;
+                    index.assignments[id] = l;
+                }
+                index.codes[l] = new byte[count * numSubspaces];
+                dis.readFully(index.codes[l]);
+            }
+            index.size = size;
+            return index;
+        }
+    }
+
+    protected static void writeFloats(DataOutputStream dos, float[] values) throws IOException {
+        for (float v : values)
+            dos.writeFloat(v);
+    }
+
+    protected static float[] readFloats(DataInputStream dis, int length) throws IOException {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++)
+            values[i] = dis.readFloat();
+        return values;
+    }
+
+    protected ProductQuantizer checkTrained() {
+        ProductQuantizer quantizer = this.quantizer;
+        if (quantizer == null)
+            throw new IllegalStateException("PQ index isn't trained yet, call train() first");
+        return quantizer;
+    }
+
+    protected void checkDimensions(long length) {
+        if (length != dimensions)
+            throw new IllegalArgumentException("Vector length doesn't match index dimensions: expected "
+                            + dimensions + ", got " + length);
+    }
+
+    protected void checkMatrix(INDArray array) {
+        if (array.rank() != 2 || array.columns() != dimensions)
+            throw new IllegalArgumentException("Expected matrix with " + dimensions + " columns, got array of shape "
+                            + Arrays.toString(array.shape()));
+    }
+
+    protected int checkQueries(INDArray queries) {
+        int rows = queries.rank() == 1 ? 1 : queries.rows();
+        if (queries.rank() > 2 || queries.length() != (long) rows * dimensions)
+            throw new IllegalArgumentException("Expected matrix with " + dimensions + " columns, got array of shape "
+                            + Arrays.toString(queries.shape()));
+        return rows;
+    }
+
+    protected float[] flatten(float[][] queries) {
+        float[] flat = new float[queries.length * dimensions];
+        for (int i = 0; i < queries.length; i++) {
+            checkDimensions(queries[i].length);
+            System.arraycopy(queries[i], 0, flat, i * dimensions, dimensions);
+        }
+        return flat;
+    }
+
+    protected synchronized ExecutorService executorService() {
+        if (executorService == null)
+            executorService = MultiThreadUtils.newExecutorService(workers);
+        return executorService;
+    }
+
+    /**
+     * This method splits range [0, n) into chunks, and runs them on workers of this index
+     */
+    protected void parallel(int n, RangeTask task) {
+        MultiThreadUtils.parallelRanges(n, workers, executorService(), task);
+    }
+
+    /**
+     * This method stops worker threads. Index stays usable, and threads are started again on demand.
+     */
+    public synchronized void shutdown() {
+        if (executorService != null) {
+            executorService.shutdown();
+            executorService = null;
+        }
+    }
+
+    /**
+     * Per-thread buffers reused across inserts and queries
+     */
+    protected static class SearchContext {
+        protected final float[] query;
+        protected final float[] residual;
+        protected final float[] vector;
+        protected final float[] table;
+        protected final FloatIntHeap probes;
+        protected final int[] probeLists;
+        protected final float[] probeDistances;
+        protected final FloatIntHeap results = FloatIntHeap.maxHeap(64);
+        protected final FloatIntHeap exactResults = FloatIntHeap.maxHeap(16);
+        protected int[] candidateIds = new int[64];
+        protected float[] candidateDistances = new float[64];
+
+        protected SearchContext(PQIndex index) {
+            query = new float[index.dimensions];
+            residual = new float[index.dimensions];
+            vector = new float[index.dimensions];
+            table = new float[index.numSubspaces * index.numCentroids];
+            probes = FloatIntHeap.maxHeap(Math.max(1, Math.min(index.numLists, 64)));
+            probeLists = new int[index.numLists];
+            probeDistances = new float[index.numLists];
+        }
+
+        protected int candidates(int n) {
+            if (candidateIds.length < n) {
+                candidateIds = new int[n];
+                candidateDistances = new float[n];
+            }
+            return n;
+        }
+    }
+
+    public static class Builder {
+        protected int dimensions = -1;
+        protected int numSubspaces = -1;
+        protected int numCentroids = ProductQuantizer.MAX_CENTROIDS;
+        protected int numLists = 1;
+        protected int numProbes = 8;
+        protected VectorDistance distance = VectorDistance.EUCLIDEAN;
+        protected int sampleSize = 65536;
+        protected int iterations = 20;
+        protected long seed = 12345L;
+        protected int workers = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Length of indexed vectors. Required.
+         */
+        public Builder dimensions(int dimensions) {
+            this.dimensions = dimensions;
+            return this;
+        }
+
+        /**
+         * Number of bytes per encoded vector, must divide dimensions. Default value: dimensions divided by the
+         * largest divisor up to 8, i.e. 50 for 300-dimensional vectors
+         */
+        public Builder numSubspaces(int numSubspaces) {
+            this.numSubspaces = numSubspaces;
+            return this;
+        }
+
+        /**
+         * Number of centroids per subspace, at most 256. Default value: 256
+         */
+        public Builder numCentroids(int numCentroids) {
+            this.numCentroids = numCentroids;
+            return this;
+        }
+
+        /**
+         * Number of inverted lists, i.e. coarse centroids. Default value: 1, which means full scan. Values around
+         * sqrt(number of vectors) are usually good.
+         */
+        public Builder numLists(int numLists) {
+            this.numLists = numLists;
+            return this;
+        }
+
+        /**
+         * Number of lists scanned per query, can be changed later. Default value: 8
+         */
+        public Builder numProbes(int numProbes) {
+            this.numProbes = numProbes;
+            return this;
+        }
+
+        /**
+         * Distance function. Default value: EUCLIDEAN
+         */
+        public Builder distance(@NonNull VectorDistance distance) {
+            this.distance = distance;
+            return this;
+        }
+
+        /**
+         * Distance function, by VPTree similarity function name: euclidean, cosinesimilarity, cosinedistance or dot
+         */
+        public Builder distance(@NonNull String similarityFunction) {
+            this.distance = VectorDistance.fromSimilarityFunction(similarityFunction);
+            return this;
+        }
+
+        /**
+         * Maximum number of vectors used for training. Default value: 65536
+         */
+        public Builder sampleSize(int sampleSize) {
+            this.sampleSize = sampleSize;
+            return this;
+        }
+
+        /**
+         * Maximum number of k-means iterations. Default value: 20
+         */
+        public Builder iterations(int iterations) {
+            this.iterations = iterations;
+            return this;
+        }
+
+        /**
+         * Seed used for sampling and k-means initialization. Default value: 12345
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Number of threads used by training, batched inserts and queries. Default value: number of CPU cores
+         */
+        public Builder workers(int workers) {
+            this.workers = workers;
+            return this;
+        }
+
+        public PQIndex build() {
+            if (dimensions < 1)
+                throw new IllegalArgumentException("Dimensions must be positive: got " + dimensions);
+            if (numCentroids < 2 || numCentroids > ProductQuantizer.MAX_CENTROIDS)
+                throw new IllegalArgumentException("Number of centroids must be in range [2, "
+                                + ProductQuantizer.MAX_CENTROIDS + "]: got " + numCentroids);
+            if (numLists < 1 || numProbes < 1)
+                throw new IllegalArgumentException("Number of lists and probes must be positive: got " + numLists
+                                + " and " + numProbes);
+            if (sampleSize < 1 || iterations < 1)
+                throw new IllegalArgumentException("Sample size and number of iterations must be positive: got "
+                                + sampleSize + " and " + iterations);
+            if (workers < 1)
+                throw new IllegalArgumentException("Number of workers must be positive: got " + workers);
+
+            return new PQIndex(this);
+        }
+    }
+}
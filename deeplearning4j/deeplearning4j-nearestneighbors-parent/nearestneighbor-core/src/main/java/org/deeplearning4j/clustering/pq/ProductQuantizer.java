@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.clustering.pq;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.deeplearning4j.clustering.util.VectorDistance;
+
+/**
+ * Product quantizer: vector is split into M subvectors of equal length, and each subvector is replaced with index of
+ * the nearest centroid of its own codebook. With 256 centroids per codebook, vector takes M bytes.
+ *
+ * Distances between query and encoded vectors are computed asymmetrically: query stays exact, and distances between
+ * query subvectors and all centroids are computed once into lookup table, so distance to encoded vector is just a sum
+ * of M table entries.
+ *
+ * Codebooks are trained by {@link PQIndex}.
+ */
+public class ProductQuantizer {
+    public static final int MAX_CENTROIDS = 256;
+
+    @Getter
+    protected final int dimensions;
+    @Getter
+    protected final int numSubspaces;
+    @Getter
+    protected final int numCentroids;
+    @Getter
+    protected final int subDimensions;
+    // [numSubspaces][numCentroids][subDimensions]
+    protected final float[] codebooks;
+
+    /**
+     * @param dimensions   length of vectors
+     * @param numSubspaces number of subvectors, must divide dimensions
+     * @param numCentroids number of centroids per subspace, at most 256
+     * @param codebooks    centroids of all subspaces, as [numSubspaces][numCentroids][dimensions / numSubspaces]
+     */
+    public ProductQuantizer(int dimensions, int numSubspaces, int numCentroids, @NonNull float[] codebooks) {
+        if (dimensions < 1 || numSubspaces < 1 || dimensions % numSubspaces != 0)
+            throw new IllegalArgumentException("Number of subspaces must divide dimensions: got " + numSubspaces
+                            + " subspaces for " + dimensions + " dimensions");
+        if (numCentroids < 2 || numCentroids > MAX_CENTROIDS)
+            throw new IllegalArgumentException("Number of centroids must be in range [2, " + MAX_CENTROIDS
+                            + "]: got " + numCentroids);
+        if (codebooks.length != numCentroids * dimensions)
+            throw new IllegalArgumentException("Expected " + (numCentroids * dimensions) + " codebook values, got "
+                            + codebooks.length);
+
+        this.dimensions = dimensions;
+        this.numSubspaces = numSubspaces;
+        this.numCentroids = numCentroids;
+        this.subDimensions = dimensions / numSubspaces;
+        this.codebooks = codebooks;
+    }
+
+    /**
+     * This method returns default number of subspaces for given dimensions: subvectors get the largest length up
+     * to 8 that divides dimensions
+     */
+    public static int defaultSubspaces(int dimensions) {
+        for (int sub = 8; sub > 1; sub--) {
+            if (dimensions % sub == 0)
+                return dimensions / sub;
+        }
+        return dimensions;
+    }
+
+    /**
+     * This method returns offset of given centroid of given subspace within codebooks
+     */
+    protected int centroid(int subspace, int centroid) {
+        return (subspace * numCentroids + centroid) * subDimensions;
+    }
+
+    /**
+     * This method encodes vector into numSubspaces bytes
+     */
+    public void encode(float[] x, int offset, byte[] codes, int codeOffset) {
+        for (int s = 0; s < numSubspaces; s++) {
+            int xOffset = offset + s * subDimensions;
+            int best = 0;
+            float bestDistance = Float.MAX_VALUE;
+            for (int c = 0; c < numCentroids; c++) {
+                float d = VectorDistance.squaredEuclidean(x, xOffset, codebooks, centroid(s, c), subDimensions);
+                if (d < bestDistance) {
+                    bestDistance = d;
+                    best = c;
+                }
+            }
+            codes[codeOffset + s] = (byte) best;
+        }
+    }
+
+    /**
+     * This method restores approximate vector from its codes
+     */
+    public void decode(byte[] codes, int codeOffset, float[] x, int offset) {
+        for (int s = 0; s < numSubspaces; s++)
+            System.arraycopy(codebooks, centroid(s, codes[codeOffset + s] & 0xFF), x, offset + s * subDimensions,
+                            subDimensions);
+    }
+
+    /**
+     * This method fills lookup table for given query: entry [s * numCentroids + c] holds either squared euclidean
+     * distance, or negated dot product between subvector s of the query and centroid c of subspace s
+     */
+    public void lookupTable(float[] query, int offset, boolean dot, float[] table) {
+        for (int s = 0; s < numSubspaces; s++) {
+            int qOffset = offset + s * subDimensions;
+            int t = s * numCentroids;
+            for (int c = 0; c < numCentroids; c++) {
+                int cOffset = centroid(s, c);
+                table[t + c] = dot ? -VectorDistance.dot(query, qOffset, codebooks, cOffset, subDimensions)
+                                : VectorDistance.squaredEuclidean(query, qOffset, codebooks, cOffset, subDimensions);
+            }
+        }
+    }
+
+    /**
+     * This method returns sum of lookup table entries selected by given codes
+     */
+    public float distance(float[] table, byte[] codes, int codeOffset) {
+        float d = 0.0f;
+        for (int s = 0, t = 0; s < numSubspaces; s++, t += numCentroids)
+            d += table[t + (codes[codeOffset + s] & 0xFF)];
+        return d;
+    }
+
+    /**
+     * @return number of entries in lookup table
+     */
+    public int tableLength() {
+        return numSubspaces * numCentroids;
+    }
+
+    /**
+     * @return copy of codebooks
+     */
+    public float[] getCodebooks() {
+        return codebooks.clone();
+    }
+}
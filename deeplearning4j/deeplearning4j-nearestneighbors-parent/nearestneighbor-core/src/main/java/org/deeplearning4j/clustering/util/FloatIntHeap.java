@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.clustering.util;
+
+import java.util.Arrays;
+
+/**
+ * Binary heap of (float key, int value) pairs backed by primitive arrays, so it can be cleared and reused without
+ * allocations or boxing. Heap is ordered either by smallest key first, or by largest key first.
+ *
+ * Max-heap bounded via {@link #offer(float, int, int)} keeps k smallest keys seen so far, which is the usual top-k
+ * selection for distances.
+ */
+public class FloatIntHeap {
+    protected final boolean maxHeap;
+    protected float[] keys;
+    protected int[] values;
+    protected int size;
+
+    public FloatIntHeap(int initialCapacity, boolean maxHeap) {
+        if (initialCapacity < 1)
+            throw new IllegalArgumentException("Initial capacity must be positive: got " + initialCapacity);
+
+        this.maxHeap = maxHeap;
+        this.keys = new float[initialCapacity];
+        this.values = new int[initialCapacity];
+    }
+
+    public static FloatIntHeap minHeap(int initialCapacity) {
+        return new FloatIntHeap(initialCapacity, false);
+    }
+
+    public static FloatIntHeap maxHeap(int initialCapacity) {
+        return new FloatIntHeap(initialCapacity, true);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void push(float key, int value) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(key, keys[parent]))
+                break;
+            keys[i] = keys[parent];
+            values[i] = values[parent];
+            i = parent;
+        }
+        keys[i] = key;
+        values[i] = value;
+    }
+
+    /**
+     * This method adds pair to the heap, keeping at most limit pairs: once heap is full, pair replaces the top one
+     * only if it would stay below the top. I.e. max-heap keeps smallest keys, and min-heap keeps largest keys.
+     *
+     * @return true if pair was added
+     */
+    public boolean offer(float key, int value, int limit) {
+        if (size < limit) {
+            push(key, value);
+            return true;
+        }
+
+        if (size == 0 || !before(keys[0], key))
+            return false;
+
+        keys[0] = key;
+        values[0] = value;
+        siftDown(0);
+        return true;
+    }
+
+    public float peekKey() {
+        if (size == 0)
+            throw new IllegalStateException("Heap is empty");
+        return keys[0];
+    }
+
+    public int peekValue() {
+        if (size == 0)
+            throw new IllegalStateException("Heap is empty");
+        return values[0];
+    }
+
+    /**
+     * This method removes top pair, and returns its value
+     */
+    public int pop() {
+        if (size == 0)
+            throw new IllegalStateException("Heap is empty");
+
+        int result = values[0];
+        size--;
+        if (size > 0) {
+            keys[0] = keys[size];
+            values[0] = values[size];
+            siftDown(0);
+        }
+        return result;
+    }
+
+    /**
+     * This method empties the heap into given arrays, in reverse order of removal: max-heap yields ascending keys,
+     * min-heap yields descending keys.
+     *
+     * @return number of pairs written
+     */
+    public int drain(int[] values, float[] keys) {
+        int count = size;
+        for (int i = count - 1; i >= 0; i--) {
+            keys[i] = this.keys[0];
+            values[i] = pop();
+        }
+        return count;
+    }
+
+    protected boolean before(float a, float b) {
+        return maxHeap ? a > b : a < b;
+    }
+
+    protected void siftDown(int i) {
+        float key = keys[i];
+        int value = values[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && before(keys[right], keys[child]))
+                child = right;
+            if (!before(keys[child], key))
+                break;
+            keys[i] = keys[child];
+            values[i] = values[child];
+            i = child;
+        }
+        keys[i] = key;
+        values[i] = value;
+    }
+}
@@ -19,6 +19,7 @@ package org.deeplearning4j.clustering.util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
 
@@ -31,7 +32,13 @@ public class MultiThreadUtils {
     private MultiThreadUtils() {}
 
     public static synchronized ExecutorService newExecutorService() {
-        int nThreads = Runtime.getRuntime().availableProcessors();
+        return newExecutorService(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * This method creates fixed pool of daemon threads
+     */
+    public static ExecutorService newExecutorService(int nThreads) {
         return new ThreadPoolExecutor(nThreads, nThreads, 60L, TimeUnit.SECONDS, new LinkedTransferQueue<Runnable>(),
                         new ThreadFactory() {
                             @Override
@@ -43,6 +50,58 @@ public class MultiThreadUtils {
                         });
     }
 
+    /**
+     * This method returns pool of daemon threads, one per core, shared by all callers. It's never shut down.
+     */
+    public static synchronized ExecutorService sharedExecutorService() {
+        if (instance == null)
+            instance = newExecutorService();
+        return instance;
+    }
+
+    /**
+     * This method splits range [0, n) into chunks, runs them on given executor, and waits for all of them.
+     * Exceptions thrown by the task are rethrown in the calling thread.
+     *
+     * @param workers number of threads available in the executor. Task runs in the calling thread if it's 1
+     */
+    public static void parallelRanges(int n, int workers, ExecutorService executorService, final RangeTask task) {
+        if (workers == 1 || n < 2) {
+            task.run(0, n);
+            return;
+        }
+
+        int numChunks = Math.min(n, workers * 4);
+        List<Callable<Void>> tasks = new ArrayList<>(numChunks);
+        for (int c = 0; c < numChunks; c++) {
+            final int from = (int) ((long) n * c / numChunks);
+            final int to = (int) ((long) n * (c + 1) / numChunks);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    task.run(from, to);
+                    return null;
+                }
+            });
+        }
+
+        try {
+            for (Future<Void> f : executorService.invokeAll(tasks))
+                f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    public interface RangeTask {
+        void run(int from, int to);
+    }
+
     public static void parallelTasks(final List<Runnable> tasks, ExecutorService executorService) {
         int tasksCount = tasks.size();
         final CountDownLatch latch = new CountDownLatch(tasksCount);
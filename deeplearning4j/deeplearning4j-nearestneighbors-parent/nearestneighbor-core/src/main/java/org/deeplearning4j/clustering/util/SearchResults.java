@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.clustering.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Results of batched k-nearest neighbours search: indices and distances of neighbours of each query,
+ * closest neighbours first.
+ */
+@Getter
+@AllArgsConstructor
+public class SearchResults implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int[][] indices;
+    private final float[][] distances;
+
+    public int numQueries() {
+        return indices.length;
+    }
+
+    public int[] getIndices(int query) {
+        return indices[query];
+    }
+
+    public float[] getDistances(int query) {
+        return distances[query];
+    }
+
+    /**
+     * This method returns recall of these results against exact ones: fraction of exact neighbours that were found,
+     * over all queries.
+     *
+     * @param exact results of exact (brute force) search for the same queries and k
+     */
+    public double recall(@NonNull SearchResults exact) {
+        if (exact.numQueries() != numQueries())
+            throw new IllegalArgumentException("Number of queries doesn't match: " + numQueries() + " vs "
+                            + exact.numQueries());
+
+        long found = 0;
+        long total = 0;
+        for (int q = 0; q < indices.length; q++) {
+            int[] approx = indices[q].clone();
+            Arrays.sort(approx);
+            for (int idx : exact.indices[q]) {
+                if (Arrays.binarySearch(approx, idx) >= 0)
+                    found++;
+            }
+            total += exact.indices[q].length;
+        }
+
+        return total == 0 ? 1.0 : (double) found / total;
+    }
+}
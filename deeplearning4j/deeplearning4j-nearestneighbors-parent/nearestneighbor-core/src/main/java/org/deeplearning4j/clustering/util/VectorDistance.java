@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.clustering.util;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Distance functions over raw float arrays, used by primitive search paths instead of per-point ND4J ops.
+ *
+ * Values returned by {@link #distance(float[], int, float[], int, int)} are only meant for ordering, smaller is
+ * closer: EUCLIDEAN returns squared distance, COSINE returns 1 - dot product of vectors normalized via
+ * {@link #prepare(float[], int, int)}, and DOT returns negated dot product. Use {@link #finish(float)} to convert
+ * them to reported distances.
+ *
+ * Each function is also available for vectors stored in FloatBuffer, i.e. off-heap or memory-mapped.
+ */
+public enum VectorDistance {
+    EUCLIDEAN {
+        @Override
+        public float distance(float[] x, int xOffset, float[] y, int yOffset, int length) {
+            return squaredEuclidean(x, xOffset, y, yOffset, length);
+        }
+
+        @Override
+        public float distance(float[] x, int xOffset, FloatBuffer y, int yOffset, int length) {
+            return squaredEuclidean(x, xOffset, y, yOffset, length);
+        }
+
+        @Override
+        public float finish(float distance) {
+            return (float) Math.sqrt(distance);
+        }
+    },
+    COSINE {
+        @Override
+        public float distance(float[] x, int xOffset, float[] y, int yOffset, int length) {
+            return 1.0f - dot(x, xOffset, y, yOffset, length);
+        }
+
+        @Override
+        public float distance(float[] x, int xOffset, FloatBuffer y, int yOffset, int length) {
+            return 1.0f - dot(x, xOffset, y, yOffset, length);
+        }
+
+        @Override
+        public void prepare(float[] x, int offset, int length) {
+            normalize(x, offset, length);
+        }
+    },
+    DOT {
+        @Override
+        public float distance(float[] x, int xOffset, float[] y, int yOffset, int length) {
+            return -dot(x, xOffset, y, yOffset, length);
+        }
+
+        @Override
+        public float distance(float[] x, int xOffset, FloatBuffer y, int yOffset, int length) {
+            return -dot(x, xOffset, y, yOffset, length);
+        }
+    };
+
+    /**
+     * This method returns distance between two vectors stored at given offsets of given arrays
+     */
+    public abstract float distance(float[] x, int xOffset, float[] y, int yOffset, int length);
+
+    /**
+     * This method returns distance between vector stored in array and vector stored in buffer, using absolute
+     * positions, so buffer may be shared between threads
+     */
+    public abstract float distance(float[] x, int xOffset, FloatBuffer y, int yOffset, int length);
+
+    /**
+     * This method prepares vector in place, before it's stored or used as query
+     */
+    public void prepare(float[] x, int offset, int length) {
+        //
+    }
+
+    /**
+     * This method converts distance returned by distance() into reported distance
+     */
+    public float finish(float distance) {
+        return distance;
+    }
+
+    /**
+     * This method maps similarity function names used by VPTree to distance functions
+     */
+    public static VectorDistance fromSimilarityFunction(String similarityFunction) {
+        switch (similarityFunction) {
+            case "euclidean":
+                return EUCLIDEAN;
+            case "cosinesimilarity":
+            case "cosinedistance":
+                return COSINE;
+            case "dot":
+                return DOT;
+            default:
+                throw new IllegalArgumentException("Unsupported similarity function: [" + similarityFunction + "]");
+        }
+    }
+
+    public static float dot(float[] x, int xOffset, float[] y, int yOffset, int length) {
+        // independent accumulators let JIT pipeline the loop
+        float s0 = 0.0f, s1 = 0.0f, s2 = 0.0f, s3 = 0.0f;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += x[xOffset + i] * y[yOffset + i];
+            s1 += x[xOffset + i + 1] * y[yOffset + i + 1];
+            s2 += x[xOffset + i + 2] * y[yOffset + i + 2];
+            s3 += x[xOffset + i + 3] * y[yOffset + i + 3];
+        }
+        for (; i < length; i++)
+            s0 += x[xOffset + i] * y[yOffset + i];
+
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    public static float squaredEuclidean(float[] x, int xOffset, float[] y, int yOffset, int length) {
+        float s0 = 0.0f, s1 = 0.0f, s2 = 0.0f, s3 = 0.0f;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            float d0 = x[xOffset + i] - y[yOffset + i];
+            float d1 = x[xOffset + i + 1] - y[yOffset + i + 1];
+            float d2 = x[xOffset + i + 2] - y[yOffset + i + 2];
+            float d3 = x[xOffset + i + 3] - y[yOffset + i + 3];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+            s2 += d2 * d2;
+            s3 += d3 * d3;
+        }
+        for (; i < length; i++) {
+            float d = x[xOffset + i] - y[yOffset + i];
+            s0 += d * d;
+        }
+
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    public static float dot(float[] x, int xOffset, FloatBuffer y, int yOffset, int length) {
+        float s0 = 0.0f, s1 = 0.0f, s2 = 0.0f, s3 = 0.0f;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += x[xOffset + i] * y.get(yOffset + i);
+            s1 += x[xOffset + i + 1] * y.get(yOffset + i + 1);
+            s2 += x[xOffset + i + 2] * y.get(yOffset + i + 2);
+            s3 += x[xOffset + i + 3] * y.get(yOffset + i + 3);
+        }
+        for (; i < length; i++)
+            s0 += x[xOffset + i] * y.get(yOffset + i);
+
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    public static float squaredEuclidean(float[] x, int xOffset, FloatBuffer y, int yOffset, int length) {
+        float s0 = 0.0f, s1 = 0.0f, s2 = 0.0f, s3 = 0.0f;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            float d0 = x[xOffset + i] - y.get(yOffset + i);
+            float d1 = x[xOffset + i + 1] - y.get(yOffset + i + 1);
+            float d2 = x[xOffset + i + 2] - y.get(yOffset + i + 2);
+            float d3 = x[xOffset + i + 3] - y.get(yOffset + i + 3);
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+            s2 += d2 * d2;
+            s3 += d3 * d3;
+        }
+        for (; i < length; i++) {
+            float d = x[xOffset + i] - y.get(yOffset + i);
+            s0 += d * d;
+        }
+
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * This method scales vector to unit length in place. Zero vectors are left as is.
+     */
+    public static void normalize(float[] x, int offset, int length) {
+        float norm = (float) Math.sqrt(dot(x, offset, x, offset, length));
+        if (norm == 0.0f)
+            return;
+
+        for (int i = 0; i < length; i++)
+            x[offset + i] /= norm;
+    }
+
+    /**
+     * This method copies all elements of given array into float array, in c order.
+     *
+     * PLEASE NOTE: buffer of view or f-order array doesn't hold elements in c order from its start, so array is
+     * duplicated first.
+     */
+    public static float[] toFloats(INDArray array) {
+        return array.dup('c').data().asFloat();
+    }
+}
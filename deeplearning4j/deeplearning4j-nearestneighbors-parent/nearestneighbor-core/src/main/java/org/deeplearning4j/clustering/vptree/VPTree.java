@@ -20,7 +20,12 @@ import lombok.*;
 import lombok.extern.slf4j.Slf4j;
 import org.deeplearning4j.clustering.sptree.DataPoint;
 import org.deeplearning4j.clustering.sptree.HeapObject;
+import org.deeplearning4j.clustering.util.FloatIntHeap;
 import org.deeplearning4j.clustering.util.MathUtils;
+import org.deeplearning4j.clustering.util.MultiThreadUtils;
+import org.deeplearning4j.clustering.util.MultiThreadUtils.RangeTask;
+import org.deeplearning4j.clustering.util.SearchResults;
+import org.deeplearning4j.clustering.util.VectorDistance;
 import org.nd4j.linalg.api.memory.MemoryWorkspace;
 import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
 import org.nd4j.linalg.api.memory.enums.*;
@@ -38,6 +43,12 @@ import java.util.concurrent.atomic.AtomicInteger;
 /**
  * Vantage point tree implementation
  *
+ * For euclidean, cosine and dot similarity functions, queries don't use ND4J ops: upon first search, tree and items
+ * are copied into flat primitive arrays, and distances are computed with plain float kernels. Many queries can be
+ * answered at once, in parallel, via {@link #search(INDArray, int)}.
+ *
+ * PLEASE NOTE: primitive search path keeps float copy of items on heap, so memory use is doubled for float items.
+ *
  * @author Adam Gibson
  * @author raver119@gmail.com
  */
@@ -66,6 +77,8 @@ public class VPTree implements Serializable {
 
     private WorkspaceConfiguration workspaceConfiguration;
 
+    private transient volatile FlatTree flatTree;
+
     protected VPTree() {
         // method for serialization only
         scalars = new ThreadLocal<>();
@@ -485,6 +498,26 @@ public class VPTree implements Serializable {
         results.clear();
         distances.clear();
 
+        FlatTree tree = flatTree();
+        if (tree != null) {
+            if (k < 1)
+                return;
+
+            SearchContext ctx = tree.contexts.get();
+            float[] query = ctx.query(tree.dimensions);
+            for (int i = 0; i < tree.dimensions; i++)
+                query[i] = target.getFloat(i);
+
+            int n = search(tree, query, 0, k, ctx);
+            // same order as below: from the farthest to the nearest, unless inverted
+            for (int i = 0; i < n; i++) {
+                int e = invert ? i : n - 1 - i;
+                results.add(new DataPoint(ctx.indices[e], items.getRow(ctx.indices[e])));
+                distances.add((double) ctx.distances[e]);
+            }
+            return;
+        }
+
         PriorityQueue<HeapObject> pq = new PriorityQueue<>(items.rows(), new HeapObjectComparator());
         search(root, target, k + 1, pq, Double.MAX_VALUE);
 
@@ -558,6 +591,354 @@ public class VPTree implements Serializable {
     }
 
 
+    /**
+     * This method returns k nearest neighbours of each row of given matrix, searching in parallel.
+     * Neighbours of each query are sorted from the nearest to the farthest one, in terms of similarity function
+     * (and invert flag) of this tree, and distances are reported the same way as by
+     * {@link #search(INDArray, int, List, List)}.
+     *
+     * @param queries matrix of queries, one per row
+     * @param k       number of neighbours per query
+     */
+    public SearchResults search(@NonNull final INDArray queries, int k) {
+        if (k < 1)
+            throw new IllegalArgumentException("k must be positive: got " + k);
+        if (queries.rank() > 2 || queries.columns() != items.columns())
+            throw new ND4JIllegalStateException("Queries should have shape of [N, " + items.columns() + "] but got "
+                            + Arrays.toString(queries.shape()) + " instead");
+
+        final int numQueries = queries.rows();
+        final int[][] indices = new int[numQueries][];
+        final float[][] distances = new float[numQueries][];
+        final int kk = Math.min(k, items.rows());
+        final FlatTree tree = flatTree();
+
+        if (tree == null) {
+            // similarity functions without primitive kernels go through ND4J, one query at a time
+            List<DataPoint> results = new ArrayList<>();
+            List<Double> dists = new ArrayList<>();
+            for (int q = 0; q < numQueries; q++) {
+                search(queries.getRow(q), kk, results, dists);
+                int n = results.size();
+                indices[q] = new int[n];
+                distances[q] = new float[n];
+                for (int i = 0; i < n; i++) {
+                    int e = invert ? i : n - 1 - i;
+                    indices[q][i] = results.get(e).getIndex();
+                    distances[q][i] = dists.get(e).floatValue();
+                }
+            }
+            return new SearchResults(indices, distances);
+        }
+
+        final float[] flat = VectorDistance.toFloats(queries);
+        // search threads are shared by all trees, so nothing is left running once tree is gone
+        int threads = Runtime.getRuntime().availableProcessors();
+        MultiThreadUtils.parallelRanges(numQueries, threads, MultiThreadUtils.sharedExecutorService(), new RangeTask() {
+            @Override
+            public void run(int from, int to) {
+                SearchContext ctx = tree.contexts.get();
+                for (int q = from; q < to; q++) {
+                    int n = search(tree, flat, q * tree.dimensions, kk, ctx);
+                    indices[q] = Arrays.copyOf(ctx.indices, n);
+                    distances[q] = Arrays.copyOf(ctx.distances, n);
+                }
+            }
+        });
+        return new SearchResults(indices, distances);
+    }
+
+    /**
+     * This method finds k nearest items via full scan, using primitive kernels
+     *
+     * @param ascending if true, items with smallest distances are returned, otherwise items with largest distances
+     * @return k items sorted by distance, or null if similarity function of this tree has no primitive kernel
+     */
+    protected SearchResults scan(@NonNull INDArray target, int k, boolean ascending) {
+        FlatTree tree = flatTree();
+        if (tree == null)
+            return null;
+
+        SearchContext ctx = tree.contexts.get();
+        float[] query = ctx.query(tree.dimensions);
+        for (int i = 0; i < tree.dimensions; i++)
+            query[i] = target.getFloat(i);
+        float queryNorm = tree.metric.norm(query, 0, tree.dimensions);
+
+        k = Math.min(k, tree.size);
+        // max-heap keeps smallest keys, min-heap keeps largest ones
+        FloatIntHeap heap = ascending ? ctx.heap : ctx.reverseHeap;
+        heap.clear();
+        for (int i = 0; i < tree.size; i++) {
+            float d = distance(tree, query, 0, queryNorm, i);
+            if (!Float.isNaN(d))
+                heap.offer(d, i, k);
+        }
+
+        int n = heap.size();
+        int[] indices = new int[n];
+        float[] distances = new float[n];
+        heap.drain(indices, distances);
+        return new SearchResults(new int[][] {indices}, new float[][] {distances});
+    }
+
+    /**
+     * This method searches flat tree for k nearest neighbours of the query, and stores them into context buffers,
+     * sorted by distance
+     *
+     * @return number of neighbours found
+     */
+    protected int search(FlatTree tree, float[] query, int offset, int k, SearchContext ctx) {
+        float queryNorm = tree.metric.norm(query, offset, tree.dimensions);
+        FloatIntHeap heap = ctx.heap;
+        heap.clear();
+
+        // explicit stack of nodes to visit: node is visited only if its bound is still within current tau
+        int top = 0;
+        ctx.nodes[top] = 0;
+        ctx.bounds[top++] = Float.NEGATIVE_INFINITY;
+        while (top > 0) {
+            top--;
+            float tau = heap.size() < k ? Float.MAX_VALUE : heap.peekKey();
+            if (!(ctx.bounds[top] <= tau))
+                continue;
+
+            int node = ctx.nodes[top];
+            int index = tree.index[node];
+            float distance = distance(tree, query, offset, queryNorm, index);
+            if (distance < tau)
+                heap.offer(distance, index, k);
+
+            int left = tree.left[node];
+            int right = tree.right[node];
+            float threshold = tree.threshold[node];
+            if (top + 2 > ctx.nodes.length)
+                ctx.grow();
+
+            // farther child goes first, so nearer one is popped first
+            if (distance < threshold) {
+                top = push(ctx, top, right, threshold - distance);
+                top = push(ctx, top, left, distance - threshold);
+            } else {
+                top = push(ctx, top, left, distance - threshold);
+                top = push(ctx, top, right, threshold - distance);
+            }
+        }
+
+        int n = heap.size();
+        ctx.ensureResults(n);
+        heap.drain(ctx.indices, ctx.distances);
+        return n;
+    }
+
+    private static int push(SearchContext ctx, int top, int node, float bound) {
+        if (node < 0)
+            return top;
+
+        ctx.nodes[top] = node;
+        ctx.bounds[top] = bound;
+        return top + 1;
+    }
+
+    protected float distance(FlatTree tree, float[] query, int offset, float queryNorm, int item) {
+        float d = tree.metric.distance(query, offset, queryNorm, tree.items, item * tree.dimensions,
+                        tree.norms == null ? 0.0f : tree.norms[item], tree.dimensions);
+        return invert ? -d : d;
+    }
+
+    /**
+     * This method returns flat copy of this tree, building it upon first call
+     *
+     * @return flat tree, or null if similarity function of this tree has no primitive kernel
+     */
+    protected FlatTree flatTree() {
+        FlatTree tree = flatTree;
+        if (tree != null || root == null || items == null || Metric.of(similarityFunction) == null
+                        || items.length() >= Integer.MAX_VALUE)
+            return tree;
+
+        synchronized (this) {
+            if (flatTree == null)
+                flatTree = new FlatTree(Metric.of(similarityFunction), root, items);
+            return flatTree;
+        }
+    }
+
+    /**
+     * Similarity functions with primitive kernels. Distances match ones computed via ND4J ops.
+     */
+    protected enum Metric {
+        EUCLIDEAN {
+            @Override
+            public float distance(float[] x, int xOffset, float xNorm, float[] y, int yOffset, float yNorm,
+                            int length) {
+                return (float) Math.sqrt(VectorDistance.squaredEuclidean(x, xOffset, y, yOffset, length));
+            }
+        },
+        COSINE_SIMILARITY {
+            @Override
+            public float distance(float[] x, int xOffset, float xNorm, float[] y, int yOffset, float yNorm,
+                            int length) {
+                return VectorDistance.dot(x, xOffset, y, yOffset, length) / (xNorm * yNorm);
+            }
+
+            @Override
+            public float norm(float[] x, int offset, int length) {
+                return (float) Math.sqrt(VectorDistance.dot(x, offset, x, offset, length));
+            }
+        },
+        COSINE_DISTANCE {
+            @Override
+            public float distance(float[] x, int xOffset, float xNorm, float[] y, int yOffset, float yNorm,
+                            int length) {
+                return 1.0f - VectorDistance.dot(x, xOffset, y, yOffset, length) / (xNorm * yNorm);
+            }
+
+            @Override
+            public float norm(float[] x, int offset, int length) {
+                return (float) Math.sqrt(VectorDistance.dot(x, offset, x, offset, length));
+            }
+        },
+        DOT {
+            @Override
+            public float distance(float[] x, int xOffset, float xNorm, float[] y, int yOffset, float yNorm,
+                            int length) {
+                return VectorDistance.dot(x, xOffset, y, yOffset, length);
+            }
+        };
+
+        public abstract float distance(float[] x, int xOffset, float xNorm, float[] y, int yOffset, float yNorm,
+                        int length);
+
+        /**
+         * @return norm of the vector, if this metric needs one
+         */
+        public float norm(float[] x, int offset, int length) {
+            return 0.0f;
+        }
+
+        public boolean needsNorms() {
+            return this == COSINE_SIMILARITY || this == COSINE_DISTANCE;
+        }
+
+        /**
+         * @return metric for given similarity function, or null if there's no primitive kernel for it
+         */
+        public static Metric of(String similarityFunction) {
+            if (similarityFunction == null)
+                return EUCLIDEAN;
+
+            switch (similarityFunction) {
+                case "cosinesimilarity":
+                    return COSINE_SIMILARITY;
+                case "cosinedistance":
+                    return COSINE_DISTANCE;
+                case "dot":
+                    return DOT;
+                case "manhattan":
+                case "jaccard":
+                case "hamming":
+                    return null;
+                default:
+                    // same as calcDistancesRelativeTo(): unknown functions fall back to euclidean
+                    return EUCLIDEAN;
+            }
+        }
+    }
+
+    /**
+     * Tree and items stored in flat primitive arrays: node i refers item index[i], and its children are left[i]
+     * and right[i] nodes, or -1
+     */
+    protected static class FlatTree {
+        protected final Metric metric;
+        protected final int size;
+        protected final int dimensions;
+        protected final float[] items;
+        protected final float[] norms;
+        protected final int[] index;
+        protected final float[] threshold;
+        protected final int[] left;
+        protected final int[] right;
+        protected final ThreadLocal<SearchContext> contexts = new ThreadLocal<SearchContext>() {
+            @Override
+            protected SearchContext initialValue() {
+                return new SearchContext();
+            }
+        };
+
+        protected FlatTree(Metric metric, Node root, INDArray items) {
+            this.metric = metric;
+            this.size = items.rows();
+            this.dimensions = items.columns();
+            this.items = VectorDistance.toFloats(items);
+
+            if (metric.needsNorms()) {
+                norms = new float[size];
+                for (int i = 0; i < size; i++)
+                    norms[i] = metric.norm(this.items, i * dimensions, dimensions);
+            } else {
+                norms = null;
+            }
+
+            // breadth-first numbering, without recursion: degenerate trees might be deep
+            List<Node> nodes = new ArrayList<>(size);
+            nodes.add(root);
+            for (int i = 0; i < nodes.size(); i++) {
+                Node node = nodes.get(i);
+                if (node.getLeft() != null)
+                    nodes.add(node.getLeft());
+                if (node.getRight() != null)
+                    nodes.add(node.getRight());
+            }
+
+            int n = nodes.size();
+            index = new int[n];
+            threshold = new float[n];
+            left = new int[n];
+            right = new int[n];
+            int next = 1;
+            for (int i = 0; i < n; i++) {
+                Node node = nodes.get(i);
+                index[i] = node.getIndex();
+                threshold[i] = node.getThreshold();
+                left[i] = node.getLeft() != null ? next++ : -1;
+                right[i] = node.getRight() != null ? next++ : -1;
+            }
+        }
+    }
+
+    /**
+     * Per-thread buffers reused across queries
+     */
+    protected static class SearchContext {
+        protected final FloatIntHeap heap = FloatIntHeap.maxHeap(16);
+        protected final FloatIntHeap reverseHeap = FloatIntHeap.minHeap(16);
+        protected int[] nodes = new int[64];
+        protected float[] bounds = new float[64];
+        protected int[] indices = new int[16];
+        protected float[] distances = new float[16];
+        protected float[] query = new float[0];
+
+        protected float[] query(int dimensions) {
+            if (query.length < dimensions)
+                query = new float[dimensions];
+            return query;
+        }
+
+        protected void grow() {
+            nodes = Arrays.copyOf(nodes, nodes.length * 2);
+            bounds = Arrays.copyOf(bounds, bounds.length * 2);
+        }
+
+        protected void ensureResults(int n) {
+            if (indices.length < n) {
+                indices = new int[n];
+                distances = new float[n];
+            }
+        }
+    }
+
     protected class HeapObjectComparator implements Comparator<HeapObject> {
 
         @Override
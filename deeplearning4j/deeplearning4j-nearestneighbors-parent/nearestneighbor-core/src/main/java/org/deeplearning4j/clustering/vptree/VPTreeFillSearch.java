@@ -18,6 +18,7 @@ package org.deeplearning4j.clustering.vptree;
 
 import lombok.Getter;
 import org.deeplearning4j.clustering.sptree.DataPoint;
+import org.deeplearning4j.clustering.util.SearchResults;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
@@ -58,6 +59,20 @@ public class VPTreeFillSearch {
         //fill till there is k results
         //by going down the list
         //   if(results.size() < k) {
+        SearchResults scan = vpTree.scan(target, k, !vpTree.isInvert());
+        if (scan != null) {
+            // primitive kernels and partial selection, instead of ND4J ops and full sort
+            int[] indices = scan.getIndices(0);
+            float[] dists = scan.getDistances(0);
+            for (int i = 0; i < indices.length; i++) {
+                int idx = indices[i];
+                results.add(new DataPoint(idx, vpTree.getItems().isVector()
+                                ? Nd4j.scalar(vpTree.getItems().getDouble(idx)) : vpTree.getItems().getRow(idx)));
+                distances.add((double) dists[i]);
+            }
+            return;
+        }
+
         INDArray distancesArr = Nd4j.create(vpTree.getItems().rows(), 1);
         vpTree.calcDistancesRelativeTo(target, distancesArr);
         INDArray[] sortWithIndices = Nd4j.sortWithIndices(distancesArr, 0, !vpTree.isInvert());
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.clustering.hnsw;
+
+import org.deeplearning4j.clustering.util.SearchResults;
+import org.deeplearning4j.clustering.util.VectorDistance;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.deeplearning4j.clustering.hnsw.HnswTestUtils.randn;
+import static org.junit.Assert.*;
+
+public class HnswIndexTest {
+
+    @Test
+    public void testRecall() {
+        float[][] points = randn(3000, 24, 12345);
+        float[][] queries = randn(100, 24, 119);
+
+        for (VectorDistance distance : VectorDistance.values()) {
+            HnswIndex index = new HnswIndex.Builder().dimensions(24).capacity(points.length).m(12)
+                            .efConstruction(100).efSearch(64).distance(distance).workers(4).build();
+            assertEquals(0, index.addAll(points));
+            assertEquals(points.length, index.size());
+
+            double recall = index.recall(queries, 10);
+            assertTrue(distance + " recall: " + recall, recall >= 0.9);
+
+            SearchResults results = index.search(queries, 10);
+            for (int q = 0; q < queries.length; q++) {
+                assertEquals(10, results.getIndices(q).length);
+                float[] d = results.getDistances(q);
+                for (int i = 1; i < d.length; i++)
+                    assertTrue(d[i - 1] <= d[i]);
+            }
+
+            // higher ef never makes recall noticeably worse
+            index.setEfSearch(200);
+            assertTrue(index.recall(queries, 10) >= recall - 0.01);
+            index.shutdown();
+        }
+    }
+
+    @Test
+    public void testExactMatch() {
+        float[][] points = randn(500, 7, 12345);
+        HnswIndex index = new HnswIndex.Builder().dimensions(7).capacity(500).workers(1).build();
+        for (int i = 0; i < points.length; i++)
+            assertEquals(i, index.add(points[i]));
+
+        SearchResults results = index.search(points, 1);
+        int found = 0;
+        for (int i = 0; i < points.length; i++) {
+            if (results.getIndices(i)[0] == i) {
+                assertEquals(0.0f, results.getDistances(i)[0], 1e-5f);
+                found++;
+            }
+        }
+        assertTrue(found >= 495);
+
+        SearchResults exact = index.exactSearch(new float[][] {points[42]}, 3);
+        assertEquals(42, exact.getIndices(0)[0]);
+        assertArrayEquals(points[42], index.getVector(42), 0.0f);
+    }
+
+    @Test
+    public void testConcurrentInserts() throws Exception {
+        final float[][] points = randn(4000, 16, 12345);
+        final HnswIndex index = new HnswIndex.Builder().dimensions(16).capacity(points.length).m(8)
+                        .efConstruction(64).workers(4).build();
+
+        // inserts and searches are running at the same time
+        List<Thread> threads = new ArrayList<>();
+        final int[] ids = new int[points.length];
+        for (int t = 0; t < 4; t++) {
+            final int offset = t;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = offset; i < points.length; i += 4) {
+                        ids[i] = index.add(points[i]);
+                        if (i % 10 == 0)
+                            index.search(points[i], 5);
+                    }
+                }
+            }));
+        }
+        for (Thread t : threads)
+            t.start();
+        for (Thread t : threads)
+            t.join();
+
+        assertEquals(points.length, index.size());
+        float[][] reordered = new float[points.length][];
+        for (int i = 0; i < points.length; i++)
+            reordered[ids[i]] = points[i];
+
+        // graph built concurrently depends on thread interleaving, so there's some margin here
+        index.setEfSearch(100);
+        SearchResults results = index.search(reordered, 1);
+        int found = 0;
+        for (int i = 0; i < reordered.length; i++) {
+            if (results.getIndices(i)[0] == i)
+                found++;
+        }
+        assertTrue("Found: " + found, found >= reordered.length * 0.98);
+        assertTrue(index.recall(randn(50, 16, 119), 10) >= 0.9);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCapacity() {
+        HnswIndex index = new HnswIndex.Builder().dimensions(3).capacity(2).build();
+        index.addAll(randn(3, 3, 12345));
+    }
+}
@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.clustering.hnsw;
+
+import java.util.Random;
+
+/**
+ * Fixtures shared by HNSW index tests
+ */
+public class HnswTestUtils {
+
+    private HnswTestUtils() {}
+
+    /**
+     * This method returns matrix of gaussian random values, one vector per row
+     */
+    public static float[][] randn(int rows, int columns, long seed) {
+        Random r = new Random(seed);
+        float[][] result = new float[rows][columns];
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < columns; j++)
+                result[i][j] = (float) r.nextGaussian();
+        return result;
+    }
+}
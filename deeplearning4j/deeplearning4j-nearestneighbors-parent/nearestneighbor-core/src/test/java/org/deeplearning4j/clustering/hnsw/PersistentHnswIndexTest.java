@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.clustering.hnsw;
+
+import org.deeplearning4j.clustering.util.SearchResults;
+import org.deeplearning4j.clustering.util.VectorDistance;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+
+import static org.deeplearning4j.clustering.hnsw.HnswTestUtils.randn;
+import static org.junit.Assert.*;
+
+public class PersistentHnswIndexTest {
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    @Test
+    public void testSaveAndMap() throws Exception {
+        float[][] points = randn(1000, 9, 12345);
+        float[][] queries = randn(20, 9, 119);
+        HnswIndex index = new HnswIndex.Builder().dimensions(9).capacity(1200).m(8).efConstruction(64)
+                        .distance(VectorDistance.COSINE).workers(2).build();
+        index.addAll(points);
+        for (int i = 0; i < points.length; i += 7)
+            index.markDeleted(i);
+
+        File f = testDir.newFile();
+        index.save(f);
+        try (MappedHnswIndex mapped = new MappedHnswIndex(f, 2)) {
+            assertEquals(index.size(), mapped.size());
+            assertEquals(VectorDistance.COSINE, mapped.getDistance());
+            assertArrayEquals(index.deletedIndices(), mapped.deletedIndices());
+            assertArrayEquals(index.getVector(17), mapped.getVector(17), 0.0f);
+
+            // same graph gives same results
+            assertSameResults(index.search(queries, 10), mapped.search(queries, 10));
+            assertSameResults(index.exactSearch(queries, 10), mapped.exactSearch(queries, 10));
+
+            HnswIndex copy = HnswIndex.copyOf(mapped, 1100, 2);
+            assertSameResults(index.search(queries, 10), copy.search(queries, 10));
+            copy.add(points[0]);
+            assertEquals(1001, copy.size());
+        }
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        File dir = testDir.newFolder();
+        float[][] points = randn(500, 6, 12345);
+        float[][] queries = randn(20, 6, 119);
+
+        // single worker: log replay inserts points in the same order, so graph is the same after reopen
+        SearchResults expected;
+        try (PersistentHnswIndex index = new PersistentHnswIndex(dir, builder(6).workers(1), 10000)) {
+            assertEquals(0, index.addAll(Arrays.copyOfRange(points, 0, 300)));
+            for (int i = 300; i < points.length; i++)
+                assertEquals(i, index.add(points[i]));
+            assertTrue(index.delete(5));
+            assertFalse(index.delete(5));
+            expected = index.search(queries, 5);
+        }
+
+        // torn record at the end of the log is dropped
+        File wal = new File(dir, "wal-0.log");
+        try (FileOutputStream fos = new FileOutputStream(wal, true)) {
+            fos.write(new byte[] {1, 0, 0, 1});
+        }
+
+        try (PersistentHnswIndex index = new PersistentHnswIndex(dir, builder(6).workers(1), 10000)) {
+            assertEquals(points.length, index.size());
+            assertTrue(index.isDeleted(5));
+            assertFalse(index.isDeleted(6));
+            assertArrayEquals(points[42], index.getVector(42), 0.0f);
+            assertSameResults(expected, index.search(queries, 5));
+            assertEquals(points.length, index.add(points[0]));
+        }
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        File dir = testDir.newFolder();
+        float[][] points = randn(2000, 8, 12345);
+        float[][] queries = randn(50, 8, 119);
+
+        try (PersistentHnswIndex index = new PersistentHnswIndex(dir, builder(8), 300)) {
+            for (int i = 0; i < points.length; i += 100) {
+                index.addAll(Arrays.copyOfRange(points, i, i + 100));
+                index.delete(i);
+            }
+            index.compact().get();
+            index.delete(101);
+
+            assertTrue(new File(dir, "index-" + lastGeneration(dir) + ".hnsw").exists());
+            assertEquals(points.length, index.size());
+            assertRecall(index, points, queries);
+        }
+
+        try (PersistentHnswIndex index = new PersistentHnswIndex(dir, builder(8), 300)) {
+            assertEquals(points.length, index.size());
+            assertTrue(index.isDeleted(0));
+            assertTrue(index.isDeleted(101));
+            assertArrayEquals(points[1999], index.getVector(1999), 0.0f);
+            assertRecall(index, points, queries);
+        }
+
+        // dimensions must match
+        try {
+            new PersistentHnswIndex(dir, builder(7), 300);
+            fail("Expected exception");
+        } catch (IllegalArgumentException e) {
+            //
+        }
+    }
+
+    private static void assertRecall(PersistentHnswIndex index, float[][] points, float[][] queries) {
+        SearchResults results = index.search(queries, 10);
+        int found = 0;
+        for (int q = 0; q < queries.length; q++) {
+            // brute force over live points
+            float[] best = new float[points.length];
+            Integer[] order = new Integer[points.length];
+            for (int i = 0; i < points.length; i++) {
+                best[i] = VectorDistance.squaredEuclidean(queries[q], 0, points[i], 0, queries[q].length);
+                order[i] = i;
+            }
+            final float[] d = best;
+            Arrays.sort(order, new java.util.Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Float.compare(d[a], d[b]);
+                }
+            });
+
+            int[] exact = new int[10];
+            for (int i = 0, p = 0; p < 10; i++) {
+                if (!index.isDeleted(order[i]))
+                    exact[p++] = order[i];
+            }
+
+            for (int i : results.getIndices(q)) {
+                assertFalse(index.isDeleted(i));
+                for (int e : exact)
+                    if (e == i)
+                        found++;
+            }
+        }
+        assertTrue("Recall: " + found / (queries.length * 10.0), found >= queries.length * 10 * 0.9);
+    }
+
+    private static int lastGeneration(File dir) {
+        int g = -1;
+        for (String name : dir.list())
+            if (name.startsWith("index-") && name.endsWith(".hnsw"))
+                g = Math.max(g, Integer.parseInt(name.substring(6, name.length() - 5)));
+        return g;
+    }
+
+    private static HnswIndex.Builder builder(int dimensions) {
+        return new HnswIndex.Builder().dimensions(dimensions).m(8).efConstruction(64).workers(2);
+    }
+
+    private static void assertSameResults(SearchResults exp, SearchResults act) {
+        assertEquals(exp.numQueries(), act.numQueries());
+        for (int q = 0; q < exp.numQueries(); q++) {
+            assertArrayEquals(exp.getIndices(q), act.getIndices(q));
+            assertArrayEquals(exp.getDistances(q), act.getDistances(q), 1e-6f);
+        }
+    }
+}
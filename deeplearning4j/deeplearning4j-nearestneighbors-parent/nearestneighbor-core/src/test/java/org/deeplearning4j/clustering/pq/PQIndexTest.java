@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.clustering.pq;
+
+import org.deeplearning4j.clustering.hnsw.HnswIndex;
+import org.deeplearning4j.clustering.util.SearchResults;
+import org.deeplearning4j.clustering.util.VectorDistance;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PQIndexTest {
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    @Test
+    public void testRecall() {
+        float[][] points = clustered(4000, 32, 12345);
+        float[][] queries = clustered(50, 32, 119);
+
+        for (VectorDistance distance : VectorDistance.values()) {
+            PQIndex index = new PQIndex.Builder().dimensions(32).numSubspaces(16).numLists(16).numProbes(16)
+                            .sampleSize(2000).distance(distance).workers(4).build();
+            index.train(points);
+            assertEquals(0, index.add(points));
+            assertEquals(points.length, index.size());
+
+            SearchResults exact = exactSearch(points, queries, 10, distance);
+            SearchResults approx = index.search(queries, 10);
+            double recall = approx.recall(exact);
+            assertTrue(distance + " recall: " + recall, recall >= 0.5);
+
+            // re-ranking against exact vectors fixes PQ errors, and gives exact distances
+            SearchResults reranked = index.search(queries, 10, 100, PQIndex.vectors(points));
+            double rerankedRecall = reranked.recall(exact);
+            assertTrue(distance + " re-ranked recall: " + rerankedRecall, rerankedRecall >= 0.95);
+            for (int q = 0; q < queries.length; q++) {
+                assertEquals(10, reranked.getIndices(q).length);
+                assertEquals(exact.getDistances(q)[0], reranked.getDistances(q)[0], 1e-3f);
+                float[] d = approx.getDistances(q);
+                for (int i = 1; i < d.length; i++)
+                    assertTrue(d[i - 1] <= d[i]);
+            }
+
+            // scanning fewer lists is faster, but can't be more accurate
+            index.setNumProbes(2);
+            assertTrue(index.search(queries, 10).recall(exact) <= recall + 1e-6);
+            index.shutdown();
+        }
+    }
+
+    @Test
+    public void testSaveLoad() throws Exception {
+        float[][] points = clustered(1000, 12, 12345);
+        // default subvector length is the largest divisor of dimensions up to 8
+        assertEquals(50, new PQIndex.Builder().dimensions(300).build().getNumSubspaces());
+        assertEquals(2, new PQIndex.Builder().dimensions(12).build().getNumSubspaces());
+
+        PQIndex index = new PQIndex.Builder().dimensions(12).numSubspaces(4).numLists(4).numCentroids(64).workers(2)
+                        .build();
+        index.train(points);
+        index.add(points);
+
+        File file = testDir.newFile();
+        index.save(file);
+        PQIndex restored = PQIndex.load(file);
+        assertEquals(index.size(), restored.size());
+        assertEquals(index.getNumLists(), restored.getNumLists());
+
+        SearchResults a = index.search(points, 5);
+        SearchResults b = restored.search(points, 5);
+        for (int q = 0; q < points.length; q++) {
+            assertArrayEquals(a.getIndices(q), b.getIndices(q));
+            assertArrayEquals(a.getDistances(q), b.getDistances(q), 0.0f);
+        }
+
+        // reconstructed vectors are close to the original ones, relative to the data spread
+        double error = 0;
+        double norm = 0;
+        for (int i = 0; i < points.length; i++) {
+            float[] vector = restored.reconstruct(i);
+            assertArrayEquals(index.reconstruct(i), vector, 0.0f);
+            for (int j = 0; j < vector.length; j++) {
+                error += (vector[j] - points[i][j]) * (vector[j] - points[i][j]);
+                norm += points[i][j] * points[i][j];
+            }
+        }
+        assertTrue("Relative error: " + error / norm, error / norm < 0.05);
+    }
+
+    @Test
+    public void testTrainMatrix() {
+        float[][] points = clustered(1000, 12, 12345);
+        // sample smaller than the data set, so sampled rows are gathered from the matrix
+        for (int sampleSize : new int[] {500, 1000}) {
+            PQIndex a = new PQIndex.Builder().dimensions(12).numSubspaces(4).numLists(4).numCentroids(64)
+                            .sampleSize(sampleSize).workers(2).build();
+            PQIndex b = new PQIndex.Builder().dimensions(12).numSubspaces(4).numLists(4).numCentroids(64)
+                            .sampleSize(sampleSize).workers(2).build();
+            a.train(points);
+            b.train(Nd4j.create(points));
+            a.add(points);
+            b.add(points);
+            for (int i = 0; i < points.length; i++)
+                assertArrayEquals(a.reconstruct(i), b.reconstruct(i), 0.0f);
+            a.shutdown();
+            b.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUntrained() {
+        new PQIndex.Builder().dimensions(8).build().add(new float[][] {new float[8]});
+    }
+
+    private static SearchResults exactSearch(float[][] points, float[][] queries, int k, VectorDistance distance) {
+        HnswIndex index = new HnswIndex.Builder().dimensions(points[0].length).capacity(points.length)
+                        .distance(distance).workers(1).build();
+        index.addAll(points);
+        return index.exactSearch(queries, k);
+    }
+
+    /**
+     * Points scattered around 40 random centers, like embeddings usually are
+     */
+    private static float[][] clustered(int n, int dimensions, long seed) {
+        Random centersRng = new Random(42);
+        float[][] centers = new float[40][dimensions];
+        for (float[] center : centers)
+            for (int j = 0; j < dimensions; j++)
+                center[j] = (float) centersRng.nextGaussian();
+
+        Random r = new Random(seed);
+        float[][] points = new float[n][dimensions];
+        for (int i = 0; i < n; i++) {
+            float[] center = centers[r.nextInt(centers.length)];
+            for (int j = 0; j < dimensions; j++)
+                points[i][j] = center[j] + 0.3f * (float) r.nextGaussian();
+        }
+        return points;
+    }
+}
@@ -17,6 +17,7 @@
 package org.deeplearning4j.clustering.vptree;
 
 import org.deeplearning4j.clustering.sptree.DataPoint;
+import org.deeplearning4j.clustering.util.SearchResults;
 import org.junit.Test;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.exception.ND4JIllegalStateException;
@@ -25,10 +26,12 @@ import org.nd4j.linalg.primitives.Counter;
 import org.nd4j.linalg.primitives.Pair;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.PriorityQueue;
 import java.util.TreeSet;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -264,4 +267,60 @@ public class VpTreeNodeTest {
         assertEquals(trueResults.sumNumber().doubleValue(), sortedResults.sumNumber().doubleValue(), 1e-12);
     }
 
+    @Test
+    public void testBatchSearch() {
+        Nd4j.getRandom().setSeed(12345);
+        INDArray points = Nd4j.randn(300, 8);
+        INDArray queries = Nd4j.randn(20, 8);
+        int k = 7;
+
+        // similarities are inverted, so that nearest items come first
+        String[] functions = {"euclidean", "cosinedistance", "cosinesimilarity", "dot"};
+        boolean[] inverts = {false, false, true, true};
+        for (int f = 0; f < functions.length; f++) {
+            VPTree tree = new VPTree(points, functions[f], 2, inverts[f]);
+            SearchResults batch = tree.search(queries, k);
+            assertEquals(queries.rows(), batch.numQueries());
+
+            for (int q = 0; q < queries.rows(); q++) {
+                INDArray query = queries.getRow(q);
+
+                // brute force via ND4J ops
+                Integer[] order = new Integer[points.rows()];
+                final double[] exact = new double[points.rows()];
+                for (int i = 0; i < order.length; i++) {
+                    order[i] = i;
+                    exact[i] = tree.distance(query, points.getRow(i));
+                }
+                Arrays.sort(order, new java.util.Comparator<Integer>() {
+                    @Override
+                    public int compare(Integer o1, Integer o2) {
+                        return Double.compare(exact[o1], exact[o2]);
+                    }
+                });
+
+                int[] indices = batch.getIndices(q);
+                float[] distances = batch.getDistances(q);
+                assertEquals(functions[f], k, indices.length);
+                for (int i = 0; i < k; i++) {
+                    assertEquals(functions[f], order[i].intValue(), indices[i]);
+                    assertEquals(functions[f], exact[order[i]], distances[i], 1e-4);
+                }
+
+                // single query path gives the same neighbours, farthest first unless inverted
+                List<DataPoint> results = new ArrayList<>();
+                List<Double> dists = new ArrayList<>();
+                tree.search(query, k, results, dists);
+                int[] single = new int[k];
+                for (int i = 0; i < k; i++)
+                    single[i] = results.get(inverts[f] ? i : k - 1 - i).getIndex();
+                assertArrayEquals(indices, single);
+
+                VPTreeFillSearch fillSearch = new VPTreeFillSearch(tree, k, query);
+                fillSearch.search();
+                assertEquals(k, fillSearch.getResults().size());
+            }
+        }
+    }
+
 }
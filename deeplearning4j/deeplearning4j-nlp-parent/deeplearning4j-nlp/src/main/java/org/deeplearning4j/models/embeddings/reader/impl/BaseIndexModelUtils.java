@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.models.embeddings.reader.impl;
+
+import lombok.NonNull;
+import org.deeplearning4j.clustering.util.SearchResults;
+import org.deeplearning4j.models.embeddings.WeightLookupTable;
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Base class for wordsNearest implementations backed by a nearest neighbours index over the vocabulary.
+ * Index is built lazily upon first query, and dropped on init() call. Subclasses only build and query the index.
+ *
+ * @param <I> type of the index
+ */
+public abstract class BaseIndexModelUtils<T extends SequenceElement, I> extends BasicModelUtils<T> {
+    protected volatile I index;
+
+    @Override
+    public void init(@NonNull WeightLookupTable<T> lookupTable) {
+        super.init(lookupTable);
+        resetIndex();
+    }
+
+    /**
+     * This method builds index over all words of the vocabulary, so that vocab index of each word is its id
+     */
+    protected abstract I buildIndex();
+
+    /**
+     * This method returns k nearest words for each row of given queries matrix, as vocab indices
+     */
+    protected abstract SearchResults search(I index, INDArray queries, int k);
+
+    /**
+     * This method releases resources held by given index, if any
+     */
+    protected void releaseIndex(I index) {
+        //
+    }
+
+    protected synchronized void resetIndex() {
+        if (index != null)
+            releaseIndex(index);
+        index = null;
+    }
+
+    protected synchronized I checkIndex() {
+        // build new index if it wasn't created before
+        if (index == null)
+            index = buildIndex();
+        return index;
+    }
+
+    /**
+     * This method returns word vectors as a matrix, one row per vocab index. Syn0 of InMemoryLookupTable is returned
+     * as is, without copying.
+     */
+    protected INDArray vocabMatrix() {
+        if (lookupTable instanceof InMemoryLookupTable)
+            return ((InMemoryLookupTable) lookupTable).getSyn0();
+
+        INDArray points = Nd4j.create(vocabCache.numWords(), lookupTable.layerSize());
+        for (int i = 0; i < vocabCache.numWords(); i++)
+            points.putRow(i, lookupTable.vector(vocabCache.wordAtIndex(i)));
+        return points;
+    }
+
+    @Override
+    public Collection<String> wordsNearest(INDArray words, int top) {
+        return wordsNearestBatch(words, top).get(0);
+    }
+
+    /**
+     * This method returns nearest words for each row of given matrix, searching the index in parallel
+     */
+    @Override
+    public List<Collection<String>> wordsNearestBatch(@NonNull INDArray words, int top) {
+        I current = checkIndex();
+
+        if (words.isVector())
+            words = words.reshape(1, words.length());
+
+        // few extra results, to address UNK and STOP removal
+        SearchResults results = search(current, words, top + 2);
+
+        List<Collection<String>> ret = new ArrayList<>();
+        for (int q = 0; q < results.numQueries(); q++)
+            ret.add(toWords(results.getIndices(q), results.getIndices(q).length, top));
+        return ret;
+    }
+}
@@ -16,11 +16,11 @@
 
 package org.deeplearning4j.models.embeddings.reader.impl;
 
-import com.google.common.collect.Lists;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.clustering.util.FloatIntHeap;
 import org.deeplearning4j.models.embeddings.WeightLookupTable;
 import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
 import org.deeplearning4j.models.embeddings.reader.ModelUtils;
@@ -29,6 +29,7 @@ import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
 import org.nd4j.linalg.util.MathUtils;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.linalg.ops.transforms.Transforms;
 import org.nd4j.linalg.primitives.Counter;
 import org.nd4j.util.SetUtils;
@@ -52,6 +53,9 @@ public class BasicModelUtils<T extends SequenceElement> implements ModelUtils<T>
 
     protected volatile boolean normalized = false;
 
+    // number of similarities computed per block of syn0 rows
+    protected static final int BLOCK_ELEMENTS = 4 * 1024 * 1024;
+
 
     public BasicModelUtils() {
 
@@ -239,40 +243,8 @@ public class BasicModelUtils<T extends SequenceElement> implements ModelUtils<T>
      */
     @Override
     public Collection<String> wordsNearest(INDArray words, int top) {
-        if (lookupTable instanceof InMemoryLookupTable) {
-            InMemoryLookupTable l = (InMemoryLookupTable) lookupTable;
-
-            INDArray syn0 = l.getSyn0();
-
-            if (!normalized) {
-                synchronized (this) {
-                    if (!normalized) {
-                        syn0.diviColumnVector(syn0.norm2(1));
-                        normalized = true;
-                    }
-                }
-            }
-
-            INDArray similarity = Transforms.unitVec(words).mmul(syn0.transpose());
-
-            List<Double> highToLowSimList = getTopN(similarity, top + 20);
-
-            List<WordSimilarity> result = new ArrayList<>();
-
-            for (int i = 0; i < highToLowSimList.size(); i++) {
-                String word = vocabCache.wordAtIndex(highToLowSimList.get(i).intValue());
-                if (word != null && !word.equals("UNK") && !word.equals("STOP")) {
-                    INDArray otherVec = lookupTable.vector(word);
-                    double sim = Transforms.cosineSim(words, otherVec);
-
-                    result.add(new WordSimilarity(word, sim));
-                }
-            }
-
-            Collections.sort(result, new SimilarityComparator());
-
-            return getLabels(result, top);
-        }
+        if (lookupTable instanceof InMemoryLookupTable)
+            return wordsNearestBatch(words.reshape(1, words.length()), top).get(0);
 
         Counter<String> distances = new Counter<>();
 
@@ -290,36 +262,138 @@ public class BasicModelUtils<T extends SequenceElement> implements ModelUtils<T>
     }
 
     /**
-     * Get top N elements
+     * This method returns nearest words for each of given labels, at once. It's much faster than separate
+     * wordsNearest() calls, since lookup table is scanned once for all labels.
      *
-     * @param vec the vec to extract the top elements from
-     * @param N the number of elements to extract
-     * @return the indices and the sorted top N elements
+     * @param labels labels of elements we're looking nearest words to
+     * @param n number of nearest elements to return per label
+     * @return nearest words for each label, in the same order. Empty collection is returned for unknown labels.
      */
-    private List<Double> getTopN(INDArray vec, int N) {
-        ArrayComparator comparator = new ArrayComparator();
-        PriorityQueue<Double[]> queue = new PriorityQueue<>(vec.rows(), comparator);
-
-        for (int j = 0; j < vec.length(); j++) {
-            final Double[] pair = new Double[] {vec.getDouble(j), (double) j};
-            if (queue.size() < N) {
-                queue.add(pair);
-            } else {
-                Double[] head = queue.peek();
-                if (comparator.compare(pair, head) > 0) {
-                    queue.poll();
-                    queue.add(pair);
-                }
+    public List<Collection<String>> wordsNearestBatch(@NonNull List<String> labels, int n) {
+        List<String> known = new ArrayList<>();
+        for (String label : labels) {
+            if (vocabCache.hasToken(label))
+                known.add(label);
+        }
+
+        List<Collection<String>> nearest = new ArrayList<>();
+        if (!known.isEmpty()) {
+            INDArray words = Nd4j.create(known.size(), lookupTable.layerSize());
+            for (int i = 0; i < known.size(); i++)
+                words.putRow(i, lookupTable.vector(known.get(i)));
+            nearest = wordsNearestBatch(words, n + 1);
+        }
+
+        List<Collection<String>> result = new ArrayList<>();
+        for (int i = 0, k = 0; i < labels.size(); i++) {
+            if (!vocabCache.hasToken(labels.get(i))) {
+                result.add(new ArrayList<String>());
+                continue;
             }
+
+            List<String> collection = new ArrayList<>(nearest.get(k++));
+            collection.remove(labels.get(i));
+            while (collection.size() > n)
+                collection.remove(collection.size() - 1);
+            result.add(collection);
+        }
+        return result;
+    }
+
+    /**
+     * This method returns nearest words for each row of given matrix, in terms of cosine similarity.
+     *
+     * For InMemoryLookupTable, normalized syn0 is multiplied by all queries at once, block by block, and top words are
+     * selected with primitive heaps, so neither full similarity matrix nor boxed similarities are ever created.
+     *
+     * @param words matrix of word vectors, one per row
+     * @param top number of nearest elements to return per row
+     * @return nearest words for each row, from the most similar one
+     */
+    public List<Collection<String>> wordsNearestBatch(@NonNull INDArray words, int top) {
+        if (words.isVector())
+            words = words.reshape(1, words.length());
+
+        List<Collection<String>> result = new ArrayList<>();
+        if (!(lookupTable instanceof InMemoryLookupTable)) {
+            for (int i = 0; i < words.rows(); i++)
+                result.add(wordsNearest(words.getRow(i), top));
+            return result;
         }
 
-        List<Double> lowToHighSimLst = new ArrayList<>();
+        INDArray syn0 = normalizedSyn0();
 
-        while (!queue.isEmpty()) {
-            double ind = queue.poll()[1];
-            lowToHighSimLst.add(ind);
+        // queries are normalized too, so dot product is cosine similarity
+        INDArray queries = words.dup('c');
+        for (int i = 0; i < queries.rows(); i++) {
+            INDArray row = queries.getRow(i);
+            double norm = row.norm2Number().doubleValue();
+            if (norm > 0)
+                row.divi(norm);
+        }
+        INDArray transposed = queries.transpose();
+
+        // UNK and STOP are skipped afterwards
+        int limit = top + 2;
+        int numQueries = queries.rows();
+        FloatIntHeap[] heaps = new FloatIntHeap[numQueries];
+        for (int i = 0; i < numQueries; i++)
+            heaps[i] = FloatIntHeap.minHeap(limit);
+
+        int rows = syn0.rows();
+        int blockSize = Math.max(1, BLOCK_ELEMENTS / numQueries);
+        for (int from = 0; from < rows; from += blockSize) {
+            int to = Math.min(rows, from + blockSize);
+            INDArray block = syn0.get(NDArrayIndex.interval(from, to), NDArrayIndex.all());
+
+            // one row per word of the block, one column per query; mmul result isn't guaranteed to be c-ordered
+            float[] similarity = block.mmul(transposed).dup('c').data().asFloat();
+            for (int r = 0, offset = 0; r < to - from; r++, offset += numQueries) {
+                for (int q = 0; q < numQueries; q++)
+                    heaps[q].offer(similarity[offset + q], from + r, limit);
+            }
+        }
+
+        int[] indices = new int[limit];
+        float[] similarities = new float[limit];
+        for (int q = 0; q < numQueries; q++) {
+            // min-heap drains from the largest similarity
+            int n = heaps[q].drain(indices, similarities);
+            result.add(toWords(indices, n, top));
+        }
+        return result;
+    }
+
+    /**
+     * This method converts given vocab indices into words, skipping UNK and STOP
+     *
+     * @param count number of indices to look at
+     * @param top   max number of words to return
+     */
+    protected List<String> toWords(int[] indices, int count, int top) {
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < count && words.size() < top; i++) {
+            String word = vocabCache.wordAtIndex(indices[i]);
+            if (word != null && !word.equals("UNK") && !word.equals("STOP"))
+                words.add(word);
+        }
+        return words;
+    }
+
+    /**
+     * This method normalizes syn0 in place upon first call, and returns it
+     */
+    protected INDArray normalizedSyn0() {
+        INDArray syn0 = ((InMemoryLookupTable) lookupTable).getSyn0();
+        if (!normalized) {
+            synchronized (this) {
+                if (!normalized) {
+                    syn0.diviColumnVector(syn0.norm2(1));
+                    normalized = true;
+                }
+            }
         }
-        return Lists.reverse(lowToHighSimLst);
+        return syn0;
     }
 
     /**
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.models.embeddings.reader.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.clustering.hnsw.HnswIndex;
+import org.deeplearning4j.clustering.util.SearchResults;
+import org.deeplearning4j.clustering.util.VectorDistance;
+import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * This is HnswIndex-based implementation for wordsNearest method, suited for multiple consequent calls on large vocabularies.
+ * Each query visits only small part of the vocabulary, so it takes milliseconds even for millions of words, while
+ * results are approximate: with default settings, most of true nearest words are found.
+ *
+ * Please note: index is built upon first call to wordsNearest, and it keeps its own copy of word vectors.
+ */
+@Slf4j
+public class HnswModelUtils<T extends SequenceElement> extends BaseIndexModelUtils<T, HnswIndex> {
+    protected final int m;
+    protected final int efConstruction;
+    protected final int efSearch;
+
+    public HnswModelUtils() {
+        this(16, 200, 100);
+    }
+
+    /**
+     * @param m              number of neighbours linked per word
+     * @param efConstruction size of candidate list used during index build
+     * @param efSearch       size of candidate list used during search, higher values give better recall
+     */
+    public HnswModelUtils(int m, int efConstruction, int efSearch) {
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+    }
+
+    @Override
+    protected HnswIndex buildIndex() {
+        INDArray points = vocabMatrix();
+
+        log.info("Building HNSW index for {} words", points.rows());
+        HnswIndex hnsw = new HnswIndex.Builder().dimensions(points.columns()).capacity(points.rows()).m(m)
+                        .efConstruction(efConstruction).efSearch(efSearch).distance(VectorDistance.COSINE).build();
+        hnsw.addAll(points);
+        return hnsw;
+    }
+
+    @Override
+    protected SearchResults search(HnswIndex index, INDArray queries, int k) {
+        return index.search(queries, k);
+    }
+
+    @Override
+    protected void releaseIndex(HnswIndex index) {
+        index.shutdown();
+    }
+}
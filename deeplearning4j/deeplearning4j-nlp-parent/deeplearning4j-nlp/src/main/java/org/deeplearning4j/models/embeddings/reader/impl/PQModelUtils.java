@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.models.embeddings.reader.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.clustering.pq.PQIndex;
+import org.deeplearning4j.clustering.util.SearchResults;
+import org.deeplearning4j.clustering.util.VectorDistance;
+import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * This is PQIndex-based implementation for wordsNearest method, suited for multiple consequent calls on large vocabularies.
+ * Word vectors are compressed with product quantization, and top candidates are re-ranked against original vectors,
+ * so results are close to exact ones, while each query scans only a few bytes per word.
+ *
+ * Please note: index is built upon first call to wordsNearest, and it takes some time, dependant on your model size.
+ */
+@Slf4j
+public class PQModelUtils<T extends SequenceElement> extends BaseIndexModelUtils<T, PQIndex> {
+    protected final int numSubspaces;
+    protected final int numLists;
+    protected final int numProbes;
+    protected final int candidates;
+
+    protected volatile PQIndex.VectorSource vectors;
+
+    public PQModelUtils() {
+        this(0, 0, 16, 100);
+    }
+
+    /**
+     * @param numSubspaces number of bytes per word vector, 0 for default
+     * @param numLists     number of coarse lists, 0 to pick it from vocabulary size
+     * @param numProbes    number of lists scanned per query
+     * @param candidates   number of candidates re-ranked against original vectors
+     */
+    public PQModelUtils(int numSubspaces, int numLists, int numProbes, int candidates) {
+        if (numProbes < 1 || candidates < 1)
+            throw new IllegalArgumentException("Number of probes and candidates must be positive: got " + numProbes
+                            + " and " + candidates);
+        this.numSubspaces = numSubspaces;
+        this.numLists = numLists;
+        this.numProbes = numProbes;
+        this.candidates = candidates;
+    }
+
+    @Override
+    protected PQIndex buildIndex() {
+        INDArray points = vocabMatrix();
+
+        int lists = numLists > 0 ? numLists : Math.max(1, (int) Math.sqrt(points.rows()) / 4);
+        PQIndex.Builder builder = new PQIndex.Builder().dimensions(points.columns()).numLists(lists)
+                        .numProbes(numProbes).distance(VectorDistance.COSINE);
+        if (numSubspaces > 0)
+            builder.numSubspaces(numSubspaces);
+
+        log.info("Building PQ index for {} words", points.rows());
+        PQIndex pq = builder.build();
+        pq.train(points);
+        pq.add(points);
+
+        vectors = PQIndex.vectors(points);
+        return pq;
+    }
+
+    @Override
+    protected SearchResults search(PQIndex index, INDArray queries, int k) {
+        return index.search(queries, k, Math.max(candidates, k), vectors);
+    }
+
+    @Override
+    protected void releaseIndex(PQIndex index) {
+        index.shutdown();
+        vectors = null;
+    }
+}
@@ -16,13 +16,13 @@
 
 package org.deeplearning4j.models.embeddings.reader.impl;
 
-import lombok.NonNull;
 import org.deeplearning4j.clustering.sptree.DataPoint;
+import org.deeplearning4j.clustering.util.SearchResults;
 import org.deeplearning4j.clustering.vptree.VPTree;
-import org.deeplearning4j.models.embeddings.WeightLookupTable;
 import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
 import org.nd4j.util.SetUtils;
 
 import java.util.*;
@@ -33,24 +33,22 @@ import java.util.*;
  *
  * @author raver119@gmail.com
  */
-public class TreeModelUtils<T extends SequenceElement> extends BasicModelUtils<T> {
-    protected VPTree vpTree;
+public class TreeModelUtils<T extends SequenceElement> extends BaseIndexModelUtils<T, VPTree> {
 
     @Override
-    public void init(@NonNull WeightLookupTable<T> lookupTable) {
-        super.init(lookupTable);
-        vpTree = null;
+    protected VPTree buildIndex() {
+        List<DataPoint> points = new ArrayList<>();
+        for (int i = 0; i < vocabCache.numWords(); i++) {
+            points.add(new DataPoint(i, Transforms.unitVec(lookupTable.vector(vocabCache.wordAtIndex(i)).dup())));
+        }
+        // for unit vectors euclidean distance gives the same order as cosine similarity, and unlike cosine
+        // distance, it's a metric, so tree search stays exact
+        return new VPTree(points);
     }
 
-    protected synchronized void checkTree() {
-        // build new tree if it wasn't created before
-        if (vpTree == null) {
-            List<DataPoint> points = new ArrayList<>();
-            for (String word : vocabCache.words()) {
-                points.add(new DataPoint(vocabCache.indexOf(word), lookupTable.vector(word)));
-            }
-            vpTree = new VPTree(points);
-        }
+    @Override
+    protected SearchResults search(VPTree index, INDArray queries, int k) {
+        return index.search(queries, k);
     }
 
 
@@ -99,23 +97,4 @@ public class TreeModelUtils<T extends SequenceElement> extends BasicModelUtils<T
 
         return wordsNearest(mean, top);
     }
-
-    @Override
-    public Collection<String> wordsNearest(INDArray words, int top) {
-        checkTree();
-
-        List<DataPoint> add = new ArrayList<>();
-        List<Double> distances = new ArrayList<>();
-
-        // we need n+1 to address original datapoint removal
-        vpTree.search(words, top, add, distances);
-
-        Collection<String> ret = new ArrayList<>();
-        for (DataPoint e : add) {
-            String word = vocabCache.wordAtIndex(e.getIndex());
-            ret.add(word);
-        }
-
-        return super.wordsNearest(words, top);
-    }
 }
@@ -269,6 +269,24 @@ public class WordVectorsImpl<T extends SequenceElement> implements WordVectors {
         return modelUtils.wordsNearest(word, n);
     }
 
+    /**
+     * Get the top n words most similar to each of given words, at once.
+     * This is much faster than separate wordsNearest() calls, if ModelUtils in use supports batched queries.
+     *
+     * @param words the words to compare
+     * @param n the n to get
+     * @return the top n words for each of given words, in the same order
+     */
+    public List<Collection<String>> wordsNearestBatch(@NonNull List<String> words, int n) {
+        if (modelUtils instanceof BasicModelUtils)
+            return ((BasicModelUtils<T>) modelUtils).wordsNearestBatch(words, n);
+
+        List<Collection<String>> result = new ArrayList<>();
+        for (String word : words)
+            result.add(modelUtils.wordsNearest(word, n));
+        return result;
+    }
+
 
     /**
      * Returns similarity of two elements, provided by ModelUtils
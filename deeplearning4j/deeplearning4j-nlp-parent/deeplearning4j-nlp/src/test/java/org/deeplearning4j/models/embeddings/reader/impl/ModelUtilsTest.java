@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.models.embeddings.reader.impl;
+
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ModelUtilsTest {
+
+    @Test
+    public void testWordsNearestBatch() {
+        InMemoryLookupTable<VocabWord> table = lookupTable(1000, 32);
+        // BasicModelUtils normalizes syn0 in place, so exact answers are computed on the copy
+        INDArray syn0 = table.getSyn0().dup();
+
+        BasicModelUtils<VocabWord> utils = new BasicModelUtils<>();
+        utils.init(table);
+
+        List<String> labels = Arrays.asList("word7", "missing", "word42", "word999");
+        List<Collection<String>> batch = utils.wordsNearestBatch(labels, 10);
+        assertEquals(labels.size(), batch.size());
+        assertTrue(batch.get(1).isEmpty());
+
+        for (int i : new int[] {0, 2, 3}) {
+            String label = labels.get(i);
+            assertEquals(10, batch.get(i).size());
+            assertEquals(exact(syn0, label, 10), new HashSet<>(batch.get(i)));
+            assertEquals(new ArrayList<>(utils.wordsNearest(label, 10)), new ArrayList<>(batch.get(i)));
+        }
+    }
+
+    @Test
+    public void testApproximateModelUtils() {
+        InMemoryLookupTable<VocabWord> table = lookupTable(1000, 32);
+        INDArray syn0 = table.getSyn0().dup();
+
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < 1000; i += 50)
+            labels.add("word" + i);
+
+        // tree search is exact
+        TreeModelUtils<VocabWord> tree = new TreeModelUtils<>();
+        tree.init(table);
+        for (String label : labels)
+            assertEquals(exact(syn0, label, 10), new HashSet<>(tree.wordsNearest(label, 10)));
+
+        HnswModelUtils<VocabWord> hnsw = new HnswModelUtils<>();
+        hnsw.init(table);
+        assertTrue(recall(hnsw, syn0, labels) >= 0.9);
+
+        PQModelUtils<VocabWord> pq = new PQModelUtils<>();
+        pq.init(table);
+        assertTrue(recall(pq, syn0, labels) >= 0.7);
+    }
+
+    private static double recall(BasicModelUtils<VocabWord> utils, INDArray syn0, List<String> labels) {
+        List<Collection<String>> batch = utils.wordsNearestBatch(labels, 10);
+        int found = 0;
+        for (int i = 0; i < labels.size(); i++) {
+            Set<String> expected = exact(syn0, labels.get(i), 10);
+            for (String word : batch.get(i))
+                if (expected.contains(word))
+                    found++;
+        }
+        return found / (10.0 * labels.size());
+    }
+
+    private static Set<String> exact(INDArray syn0, String label, int n) {
+        final int target = Integer.parseInt(label.substring(4));
+        final double[] sims = new double[syn0.rows()];
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < syn0.rows(); i++) {
+            sims[i] = Transforms.cosineSim(syn0.getRow(target), syn0.getRow(i));
+            if (i != target)
+                order.add(i);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(sims[o2], sims[o1]);
+            }
+        });
+
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i < n; i++)
+            result.add("word" + order.get(i));
+        return result;
+    }
+
+    private static InMemoryLookupTable<VocabWord> lookupTable(int numWords, int layerSize) {
+        AbstractCache<VocabWord> cache = new AbstractCache.Builder<VocabWord>().build();
+        for (int i = 0; i < numWords; i++) {
+            cache.addToken(new VocabWord(1.0, "word" + i));
+            cache.addWordToIndex(i, "word" + i);
+        }
+
+        InMemoryLookupTable<VocabWord> table = (InMemoryLookupTable<VocabWord>) new InMemoryLookupTable.Builder<VocabWord>()
+                        .vectorLength(layerSize).cache(cache).seed(12345).build();
+        table.resetWeights(true);
+        return table;
+    }
+}
@@ -23,10 +23,14 @@ import lombok.Setter;
 import org.bytedeco.javacpp.Pointer;
 import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.memory.profile.WorkspaceStats;
+import org.nd4j.linalg.memory.provider.BasicWorkspaceManager;
 import org.nd4j.linalg.workspace.BaseWorkspaceMgr;
 import org.nd4j.linalg.workspace.WorkspaceMgr;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * {@link WorkspaceMgr} for DL4J layers.
@@ -45,6 +49,11 @@ public class LayerWorkspaceMgr extends BaseWorkspaceMgr<ArrayType> {
                 all, Collections.<ArrayType, WorkspaceConfiguration>emptyMap(), Collections.<ArrayType, String>emptyMap());
     }
 
+    //Workspace names ever used for each array type, used for workspace spill report
+    private static final ConcurrentHashMap<ArrayType, Set<String>> USED_WORKSPACE_NAMES = new ConcurrentHashMap<>();
+    //RAM budgets for workspaces of each array type, see setRamLimit(ArrayType, long)
+    private static final ConcurrentHashMap<ArrayType, Long> RAM_LIMITS = new ConcurrentHashMap<>();
+
     protected Set<String> noLeverageOverride;
 
     @Setter @Getter
@@ -61,6 +70,98 @@ public class LayerWorkspaceMgr extends BaseWorkspaceMgr<ArrayType> {
             Preconditions.checkArgument(configMap.keySet().equals(workspaceNames.keySet()),
                     "Keys for config may and workspace names must match");
         }
+        if(workspaceNames != null){
+            for(Map.Entry<ArrayType,String> e : workspaceNames.entrySet()){
+                registerWorkspaceName(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    @Override
+    public void setWorkspaceName(@NonNull ArrayType arrayType, @NonNull String name) {
+        super.setWorkspaceName(arrayType, name);
+        registerWorkspaceName(arrayType, name);
+    }
+
+    private static void registerWorkspaceName(ArrayType arrayType, String name){
+        Set<String> names = USED_WORKSPACE_NAMES.get(arrayType);
+        if(names == null){
+            names = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            Set<String> existing = USED_WORKSPACE_NAMES.putIfAbsent(arrayType, names);
+            if(existing != null){
+                names = existing;
+            }
+        }
+        if(names.add(name)){
+            Long limit = RAM_LIMITS.get(arrayType);
+            if(limit != null && Nd4j.getWorkspaceManager() instanceof BasicWorkspaceManager){
+                ((BasicWorkspaceManager) Nd4j.getWorkspaceManager()).setWorkspaceRamLimit(name, limit);
+            }
+        }
+    }
+
+    /**
+     * Set RAM budget for all workspaces used for the specified array type - for example, {@link ArrayType#ACTIVATIONS}.
+     * Once a workspace outgrows this budget, further allocations are spilled into a memory-mapped scratch file
+     * (see {@link WorkspaceConfiguration#getMaxRamSize()}), instead of off-heap memory. Spilled bytes are reported
+     * in {@link #workspaceSpillReport()}.<br>
+     * NOTE: Applies to workspaces created after this call only. File-backed spills are supported by CPU backend only.
+     *
+     * @param arrayType Array type
+     * @param maxBytes  RAM budget in bytes, or 0 to remove the budget
+     */
+    public static void setRamLimit(@NonNull ArrayType arrayType, long maxBytes){
+        Preconditions.checkArgument(maxBytes >= 0, "RAM limit must be non-negative, got %s", maxBytes);
+        if(maxBytes == 0){
+            RAM_LIMITS.remove(arrayType);
+        } else {
+            RAM_LIMITS.put(arrayType, maxBytes);
+        }
+
+        Set<String> names = USED_WORKSPACE_NAMES.get(arrayType);
+        if(names != null && Nd4j.getWorkspaceManager() instanceof BasicWorkspaceManager){
+            for(String name : names){
+                ((BasicWorkspaceManager) Nd4j.getWorkspaceManager()).setWorkspaceRamLimit(name, maxBytes);
+            }
+        }
+    }
+
+    /**
+     * Get a report of workspace usage per {@link ArrayType}: for each array type, workspaces it was placed in, along
+     * with peak cycle allocations and spilled allocations recorded for them by the workspace manager.
+     * Array types placed in spilling workspaces are marked with "(SPILLING)": for these, consider saving workspace
+     * profile (see {@link BasicWorkspaceManager#saveWorkspaceProfile(java.io.File)}), so that workspaces are pre-sized
+     * in subsequent runs.<br>
+     * NOTE: workspaces are shared between array types, so spills are reported for all array types in the same workspace
+     *
+     * @return Workspace report, or a note if workspace manager doesn't record workspace stats
+     */
+    public static String workspaceSpillReport(){
+        if(!(Nd4j.getWorkspaceManager() instanceof BasicWorkspaceManager)){
+            return "Workspace stats are not available for workspace manager " + Nd4j.getWorkspaceManager().getClass().getName();
+        }
+        BasicWorkspaceManager wsm = (BasicWorkspaceManager) Nd4j.getWorkspaceManager();
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-26s %-32s %10s %14s %12s %14s %14s%n", "ArrayType", "Workspace", "Cycles",
+                "Peak (bytes)", "Spills", "Spilled bytes", "Mapped bytes"));
+        for(ArrayType t : ArrayType.values()){
+            Set<String> names = USED_WORKSPACE_NAMES.get(t);
+            if(names == null){
+                continue;
+            }
+            for(String name : new TreeSet<>(names)){
+                WorkspaceStats stats = wsm.getWorkspaceStats(name);
+                if(stats == null){
+                    continue;
+                }
+                sb.append(String.format("%-26s %-32s %10d %14d %12d %14d %14d%s%n", t, name, stats.getCycles(),
+                        stats.getPeakCycleAllocations(), stats.getSpilledAllocations(), stats.getSpilledBytes(),
+                        stats.getMappedBytes(),
+                        stats.getSpilledAllocations() > 0 ? " (SPILLING)" : ""));
+            }
+        }
+        return sb.toString();
     }
 
     public void setNoLeverageOverride(String wsName){
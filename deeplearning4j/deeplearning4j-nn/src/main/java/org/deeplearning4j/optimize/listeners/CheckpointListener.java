@@ -25,12 +25,15 @@ import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.optimize.api.BaseTrainingListener;
 import org.deeplearning4j.optimize.api.TrainingListener;
+import org.deeplearning4j.util.CheckpointWriter;
 import org.deeplearning4j.util.ModelSerializer;
 import org.nd4j.linalg.api.ndarray.INDArray;
 
 import java.io.*;
 import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -81,11 +84,16 @@ import java.util.concurrent.TimeUnit;
  * {@code .saveEveryEpoch().saveEvery(15, TimeUnit.MINUTES, true)}<br>
  * Note that is this last example, the <i>sinceLast</i> parameter is true. This means the 15-minute counter will be
  * reset any time a model is saved.<br>
+ * <br>
+ * Checkpoints are written with {@link CheckpointWriter}, compressed in parallel. With {@code .asyncSave(true)} training
+ * is paused only for the time needed to copy parameters and updater state, and the file is written in background.
+ * Use {@link #awaitPendingCheckpoint()} to make sure the last checkpoint is written, i.e. before training application exits.<br>
+ * Call {@link #close()} once training is done, to finish pending checkpoint and release writer threads.<br>
  *
  * @author Alex Black
  */
 @Slf4j
-public class CheckpointListener extends BaseTrainingListener implements Serializable {
+public class CheckpointListener extends BaseTrainingListener implements Serializable, Closeable {
 
     private enum KeepMode {ALL, LAST, LAST_AND_EVERY};
     private static final String[] MODEL_TYPES = new String[]{"MultiLayerNetwork", "ComputationGraph", "Model"};
@@ -96,6 +104,8 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
     private int keepEvery;
     private boolean logSaving;
     private boolean deleteExisting;
+    private boolean asyncSave;
+    private int saveThreads;
 
     private Integer saveEveryNEpochs;
     private Integer saveEveryNIterations;
@@ -108,11 +118,15 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
     private int lastCheckpointNum = -1;
     private File checkpointRecordFile;
 
-    private Checkpoint lastCheckpoint;
+    private volatile Checkpoint lastCheckpoint;
     private long startTime = -1;
     private int startIter = -1;
     private Long lastSaveEveryMsNoSinceLast;
 
+    private transient CheckpointWriter checkpointWriter;
+    private transient Future<File> pendingSave;
+    private transient volatile Checkpoint pendingCheckpoint;
+
     private CheckpointListener(Builder builder){
         this.rootDir = builder.rootDir;
         this.keepMode = builder.keepMode;
@@ -120,6 +134,8 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
         this.keepEvery = builder.keepEvery;
         this.logSaving = builder.logSaving;
         this.deleteExisting = builder.deleteExisting;
+        this.asyncSave = builder.asyncSave;
+        this.saveThreads = builder.saveThreads;
 
         this.saveEveryNEpochs = builder.saveEveryNEpochs;
         this.saveEveryNIterations = builder.saveEveryNIterations;
@@ -177,7 +193,8 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
         if(saveEveryNIterations != null){
             if(saveEveryNIterSinceLast){
                 //Consider last saved model when deciding whether to save
-                long lastSaveIter = (lastCheckpoint != null ? lastCheckpoint.getIteration() : startIter);
+                Checkpoint last = lastStartedCheckpoint();
+                long lastSaveIter = (last != null ? last.getIteration() : startIter);
                 if(iteration - lastSaveIter >= saveEveryNIterations){
                     saveCheckpoint(model);
                     return;
@@ -196,7 +213,8 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
         if(saveEveryUnit != null){
             if(saveEverySinceLast){
                 //Consider last saved when when deciding whether to save
-                long lastSaveTime = (lastCheckpoint != null ? lastCheckpoint.getTimestamp() : startTime);
+                Checkpoint last = lastStartedCheckpoint();
+                long lastSaveTime = (last != null ? last.getTimestamp() : startTime);
                 if((time - lastSaveTime) >= saveEveryMs){
                     saveCheckpoint(model);
                     return;
@@ -227,12 +245,89 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
             write(Checkpoint.getFileHeader() + "\n", checkpointRecordFile);
         }
 
-        Checkpoint c = new Checkpoint(++lastCheckpointNum, System.currentTimeMillis(), getIter(model), getEpoch(model),
+        final Checkpoint c = new Checkpoint(++lastCheckpointNum, System.currentTimeMillis(), getIter(model), getEpoch(model),
                 getModelType(model), null);
         setFileName(c);
 
-        ModelSerializer.writeModel(model, new File(rootDir, c.getFilename()), true);
+        if(asyncSave){
+            //Only one checkpoint is written at a time: wait for the previous one, and report its failure if any
+            awaitPendingCheckpoint();
+            pendingCheckpoint = c;
+            pendingSave = getCheckpointWriter().writeAsync(model, new File(rootDir, c.getFilename()), true, null, new Runnable() {
+                @Override
+                public void run() {
+                    onCheckpointSaved(c);
+                }
+            });
+        } else {
+            getCheckpointWriter().write(model, new File(rootDir, c.getFilename()), true);
+            onCheckpointSaved(c);
+        }
+    }
+
+    private Checkpoint lastStartedCheckpoint(){
+        //Checkpoint that is still being written in background counts as saved, so it isn't started again
+        Checkpoint pending = pendingCheckpoint;
+        return pending != null ? pending : lastCheckpoint;
+    }
+
+    private synchronized CheckpointWriter getCheckpointWriter(){
+        if(checkpointWriter == null){
+            checkpointWriter = new CheckpointWriter(saveThreads > 0 ? saveThreads : Runtime.getRuntime().availableProcessors());
+        }
+        return checkpointWriter;
+    }
+
+    /**
+     * Block until checkpoint that is being saved in background (if any) is written. Has no effect unless asyncSave
+     * is enabled.
+     *
+     * @throws RuntimeException if writing the checkpoint failed
+     */
+    public void awaitPendingCheckpoint(){
+        Future<File> f = pendingSave;
+        if(f == null){
+            return;
+        }
+        try {
+            f.get();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for checkpoint", e);
+        } catch (ExecutionException e){
+            throw new RuntimeException("Error saving checkpoint", e.getCause());
+        } finally {
+            if(f.isDone() && pendingSave == f){
+                pendingSave = null;
+                pendingCheckpoint = null;
+            }
+        }
+    }
+
+    /**
+     * Finish checkpoint that is being saved in background (if any), and shut down checkpoint writer threads.
+     * Listener stays usable: writer is created again on next checkpoint.
+     *
+     * @throws RuntimeException if writing the checkpoint failed
+     */
+    @Override
+    public void close(){
+        try {
+            awaitPendingCheckpoint();
+        } finally {
+            CheckpointWriter w;
+            synchronized (this){
+                w = checkpointWriter;
+                checkpointWriter = null;
+            }
+            if(w != null){
+                w.close();
+            }
+        }
+    }
 
+    private void onCheckpointSaved(Checkpoint c){
+        this.lastCheckpoint = c;
         String s = c.toFileString();
         write(s + "\n", checkpointRecordFile);
 
@@ -240,7 +335,6 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
             log.info("Model checkpoint saved: epoch {}, iteration {}, path: {}", c.getEpoch(), c.getIteration(),
                     new File(rootDir, c.getFilename()).getPath() );
         }
-        this.lastCheckpoint = c;
 
 
         //Finally: determine if we should delete some old models...
@@ -261,7 +355,7 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
                 if(cp.getCheckpointNum() > 0 && (cp.getCheckpointNum()+1) % keepEvery == 0){
                     //One of the "every M to keep" models
                     continue;
-                } else if(cp.getCheckpointNum() > lastCheckpointNum - keepLast ){        //Example: latest is 5, keep last 2 -> keep checkpoints 4 and 5
+                } else if(cp.getCheckpointNum() > c.getCheckpointNum() - keepLast ){        //Example: latest is 5, keep last 2 -> keep checkpoints 4 and 5
                     //One of last N to keep
                     continue;
                 }
@@ -450,6 +544,8 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
         private int keepEvery;
         private boolean logSaving = true;
         private boolean deleteExisting = false;
+        private boolean asyncSave = false;
+        private int saveThreads = 0;
 
         private Integer saveEveryNEpochs;
         private Integer saveEveryNIterations;
@@ -594,6 +690,32 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
             return this;
         }
 
+        /**
+         * If true, training is paused only to copy model parameters and updater state, and checkpoint file is written
+         * in background. Only one checkpoint is written at a time: if the previous one is still being written when the
+         * next checkpoint is due, training will wait for it. Disabled by default.<br>
+         * Note that this requires memory for one extra copy of parameters and updater state.
+         *
+         * @param asyncSave Whether checkpoints should be written in background
+         */
+        public Builder asyncSave(boolean asyncSave){
+            this.asyncSave = asyncSave;
+            return this;
+        }
+
+        /**
+         * Number of threads used to compress checkpoint files. Defaults to the number of available processors.
+         *
+         * @param saveThreads Number of compression threads
+         */
+        public Builder saveThreads(int saveThreads){
+            if(saveThreads <= 0){
+                throw new IllegalArgumentException("Number of save threads should be > 0 (got: " + saveThreads + ")");
+            }
+            this.saveThreads = saveThreads;
+            return this;
+        }
+
         public CheckpointListener build(){
             if(saveEveryNEpochs == null && saveEveryAmount == null && saveEveryNIterations == null){
                 throw new IllegalStateException("Cannot construct listener: no models will be saved (must use at least" +
@@ -0,0 +1,465 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.util;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.concurrency.AffinityManager;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.api.preprocessor.DataNormalization;
+import org.nd4j.linalg.dataset.api.preprocessor.serializer.NormalizerSerializer;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static org.deeplearning4j.util.ModelSerializer.*;
+
+/**
+ * This class writes model files in the same format as {@link ModelSerializer#writeModel(Model, File, boolean)},
+ * but it's suited for large models and frequent checkpoints:
+ * - parameters and updater state are streamed straight from off-heap memory, without per-element serialization
+ * - compression is done in parallel, chunk by chunk. Chunks are deflated independently and concatenated into single deflate stream
+ * - asynchronous mode takes snapshot of parameters and updater state on calling thread, and writes file in background,
+ *   so training may continue while checkpoint is written
+ *
+ * Files are written to temporary file first, and moved to target location once complete.
+ * Background threads don't keep JVM alive, but pending asynchronous writes are finished on JVM shutdown.
+ */
+@Slf4j
+public class CheckpointWriter implements Closeable {
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private final int numThreads;
+    private final int chunkSize;
+    private final int compressionLevel;
+    private final ThreadPoolExecutor compressors;
+    private final ThreadPoolExecutor writer;
+    private final Thread shutdownHook;
+
+    public CheckpointWriter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param numThreads number of threads used for compression
+     */
+    public CheckpointWriter(int numThreads) {
+        this(numThreads, DEFAULT_CHUNK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param numThreads       number of threads used for compression
+     * @param chunkSize        size of independently compressed chunks, in bytes
+     * @param compressionLevel deflate compression level, 0-9, or -1 for default level
+     */
+    public CheckpointWriter(int numThreads, int chunkSize, int compressionLevel) {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("Number of threads should be positive value");
+
+        if (chunkSize < 1024)
+            throw new IllegalArgumentException("Chunk size should be at least 1024 bytes");
+
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION)
+            throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+
+        this.numThreads = numThreads;
+        this.chunkSize = chunkSize;
+        this.compressionLevel = compressionLevel;
+
+        // threads are daemons, so they never block JVM shutdown: pending checkpoint is finished by shutdown hook instead
+        this.compressors = new ThreadPoolExecutor(numThreads, numThreads, 30, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("CheckpointWriter-compressor"));
+        this.compressors.allowCoreThreadTimeOut(true);
+
+        this.writer = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                        new NamedThreadFactory("CheckpointWriter-writer"));
+        this.writer.allowCoreThreadTimeOut(true);
+
+        this.shutdownHook = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, "CheckpointWriter-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * This method writes model to the file, using calling thread and compression threads
+     *
+     * @param model       the model to write
+     * @param file        the file to write to
+     * @param saveUpdater whether to save the updater or not
+     * @throws IOException
+     */
+    public void write(@NonNull Model model, @NonNull File file, boolean saveUpdater) throws IOException {
+        write(model, file, saveUpdater, null);
+    }
+
+    /**
+     * This method writes model to the file, using calling thread and compression threads
+     *
+     * @param model             the model to write
+     * @param file              the file to write to
+     * @param saveUpdater       whether to save the updater or not
+     * @param dataNormalization the normalizer to save (optional)
+     * @throws IOException
+     */
+    public void write(@NonNull Model model, @NonNull File file, boolean saveUpdater, DataNormalization dataNormalization)
+                    throws IOException {
+        write(snapshot(model, saveUpdater, dataNormalization, false), file);
+    }
+
+    /**
+     * This method takes snapshot of the model on calling thread, and writes it to the file in background.
+     * Model may be modified (i.e. trained) as soon as this method returns.
+     *
+     * @param model       the model to write
+     * @param file        the file to write to
+     * @param saveUpdater whether to save the updater or not
+     * @return Future, that is completed once file is written
+     */
+    public Future<File> writeAsync(@NonNull Model model, @NonNull File file, boolean saveUpdater) throws IOException {
+        return writeAsync(model, file, saveUpdater, null, null);
+    }
+
+    /**
+     * This method takes snapshot of the model on calling thread, and writes it to the file in background.
+     * Model may be modified (i.e. trained) as soon as this method returns.
+     *
+     * @param model             the model to write
+     * @param file              the file to write to
+     * @param saveUpdater       whether to save the updater or not
+     * @param dataNormalization the normalizer to save (optional)
+     * @param onSaved           callback invoked from background thread once file is written (optional)
+     * @return Future, that is completed once file is written and callback is invoked
+     */
+    public Future<File> writeAsync(@NonNull Model model, @NonNull final File file, boolean saveUpdater,
+                    DataNormalization dataNormalization, final Runnable onSaved) throws IOException {
+        final Snapshot snapshot = snapshot(model, saveUpdater, dataNormalization, true);
+        return writer.submit(new Callable<File>() {
+            @Override
+            public File call() throws Exception {
+                try {
+                    write(snapshot, file);
+                } catch (Exception e) {
+                    log.error("Failed to write model to [{}]", file, e);
+                    throw e;
+                }
+
+                if (onSaved != null)
+                    onSaved.run();
+
+                return file;
+            }
+        });
+    }
+
+    protected Snapshot snapshot(Model model, boolean saveUpdater, DataNormalization dataNormalization, boolean copy)
+                    throws IOException {
+        Snapshot snapshot = new Snapshot();
+        snapshot.json = "";
+        if (model instanceof MultiLayerNetwork) {
+            snapshot.json = ((MultiLayerNetwork) model).getLayerWiseConfigurations().toJson();
+        } else if (model instanceof ComputationGraph) {
+            snapshot.json = ((ComputationGraph) model).getConfiguration().toJson();
+        }
+
+        snapshot.params = model.params();
+
+        if (saveUpdater) {
+            INDArray updaterState = null;
+            if (model instanceof MultiLayerNetwork) {
+                updaterState = ((MultiLayerNetwork) model).getUpdater().getStateViewArray();
+            } else if (model instanceof ComputationGraph) {
+                updaterState = ((ComputationGraph) model).getUpdater().getStateViewArray();
+            }
+
+            if (updaterState != null && updaterState.length() > 0)
+                snapshot.updaterState = updaterState;
+        }
+
+        if (copy) {
+            // copy is done on device, within native memory, so it's fast even for huge models
+            try (MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+                if (snapshot.params != null)
+                    snapshot.params = snapshot.params.dup();
+
+                if (snapshot.updaterState != null)
+                    snapshot.updaterState = snapshot.updaterState.dup();
+            }
+
+            // copies should be complete before model gets modified
+            Nd4j.getExecutioner().commit();
+        }
+
+        if (dataNormalization != null) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            NormalizerSerializer.getDefault().write(dataNormalization, baos);
+            snapshot.normalizer = baos.toByteArray();
+        }
+
+        return snapshot;
+    }
+
+    protected void write(Snapshot snapshot, File file) throws IOException {
+        File target = file.getAbsoluteFile();
+        File temp = new File(target.getParentFile(), target.getName() + ".tmp");
+
+        try (RandomAccessFile raf = new RandomAccessFile(temp, "rw")) {
+            raf.setLength(0);
+            ChunkedZipOutput zip = new ChunkedZipOutput(raf.getChannel());
+
+            zip.writeEntry(CONFIGURATION_JSON, snapshot.json.getBytes(), compressionLevel);
+
+            if (snapshot.params != null) {
+                writeArray(zip, COEFFICIENTS_BIN, snapshot.params);
+            } else {
+                zip.writeEntry(COEFFICIENTS_BIN, new byte[0], compressionLevel);
+                zip.writeEntry(NO_PARAMS_MARKER, new byte[0], compressionLevel);
+            }
+
+            if (snapshot.updaterState != null)
+                writeArray(zip, UPDATER_BIN, snapshot.updaterState);
+
+            if (snapshot.normalizer != null)
+                zip.writeEntry(NORMALIZER_BIN, snapshot.normalizer, compressionLevel);
+
+            zip.close();
+        } catch (IOException | RuntimeException e) {
+            temp.delete();
+            throw e;
+        }
+
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * This method writes array in the same format as {@link Nd4j#write(INDArray, DataOutputStream)} does
+     */
+    protected void writeArray(ChunkedZipOutput zip, String name, INDArray array) throws IOException {
+        // the same as Nd4j.write(): only actual data of views is saved
+        if (array.isView() || array.data().length() != array.length())
+            array = array.dup();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        array.shapeInfoDataBuffer().write(dos);
+
+        DataBuffer data = array.data();
+        DataBuffer.Type type = data.dataType();
+        if (type != DataBuffer.Type.FLOAT && type != DataBuffer.Type.DOUBLE) {
+            // other data types are rare here, so they just go through regular serialization
+            data.write(dos);
+            dos.flush();
+            zip.writeEntry(name, baos.toByteArray(), compressionLevel);
+            return;
+        }
+
+        // header of DataBuffer.write(), data goes right after it
+        dos.writeUTF(data.allocationMode().name());
+        dos.writeLong(data.length());
+        dos.writeUTF(type.name());
+        dos.flush();
+        byte[] header = baos.toByteArray();
+
+        Nd4j.getAffinityManager().ensureLocation(array, AffinityManager.Location.HOST);
+
+        int elementSize = type == DataBuffer.Type.FLOAT ? 4 : 8;
+        long length = data.length();
+        long elementsPerChunk = Math.max(1, chunkSize / elementSize);
+
+        // buffers above 2GB can't be exposed as single ByteBuffer, their chunks are copied out one by one
+        INDArray flat = array.reshape('c', 1, array.length());
+        ByteBuffer whole = length * elementSize <= Integer.MAX_VALUE ? data.asNio().order(ByteOrder.nativeOrder()) : null;
+
+        zip.beginEntry(name, header.length + length * elementSize);
+
+        ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        long crc = 0;
+        long total = 0;
+        long from = 0;
+        try {
+            while (from < length || !inFlight.isEmpty()) {
+                // number of chunks in flight is limited, so memory use doesn't depend on model size
+                while (from < length && inFlight.size() < 2 * numThreads) {
+                    long to = Math.min(length, from + elementsPerChunk);
+                    inFlight.add(compressors.submit(new ChunkTask(from == 0 ? header : null, flat, whole, from, to,
+                                    elementSize, to == length, compressionLevel)));
+                    from = to;
+                }
+
+                Chunk chunk = inFlight.poll().get();
+                zip.write(chunk.compressed, chunk.compressed.length);
+                crc = ChunkedZipOutput.crc32Combine(crc, chunk.crc, chunk.length);
+                total += chunk.length;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing [" + name + "]", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to compress [" + name + "]", e.getCause());
+        } finally {
+            for (Future<Chunk> f : inFlight)
+                f.cancel(true);
+        }
+
+        zip.endEntry(crc, total);
+    }
+
+    /**
+     * This method shuts down background threads. Pending asynchronous writes are finished first.
+     */
+    @Override
+    public void close() {
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // JVM is shutting down already, hook will flush pending writes
+        }
+        flush();
+    }
+
+    /**
+     * This method waits for pending asynchronous writes, and shuts down background threads
+     */
+    protected void flush() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        compressors.shutdown();
+    }
+
+    protected static class Snapshot {
+        protected String json;
+        protected INDArray params;
+        protected INDArray updaterState;
+        protected byte[] normalizer;
+    }
+
+    protected static class Chunk {
+        private final byte[] compressed;
+        private final long crc;
+        private final int length;
+
+        protected Chunk(byte[] compressed, long crc, int length) {
+            this.compressed = compressed;
+            this.crc = crc;
+            this.length = length;
+        }
+    }
+
+    /**
+     * This task converts chunk of array into big-endian bytes, as DataOutputStream would write them, and deflates it
+     */
+    protected static class ChunkTask implements Callable<Chunk> {
+        private final byte[] header;
+        private final INDArray flat;
+        private final ByteBuffer whole;
+        private final long from;
+        private final long to;
+        private final int elementSize;
+        private final boolean last;
+        private final int level;
+
+        // chunk copy is referenced from here, so its memory stays valid while it's being read
+        private INDArray copy;
+
+        protected ChunkTask(byte[] header, INDArray flat, ByteBuffer whole, long from, long to, int elementSize,
+                        boolean last, int level) {
+            this.header = header;
+            this.flat = flat;
+            this.whole = whole;
+            this.from = from;
+            this.to = to;
+            this.elementSize = elementSize;
+            this.last = last;
+            this.level = level;
+        }
+
+        @Override
+        public Chunk call() throws Exception {
+            ByteBuffer source;
+            if (whole != null) {
+                source = whole.duplicate().order(ByteOrder.nativeOrder());
+                source.limit((int) (to * elementSize));
+                source.position((int) (from * elementSize));
+                source = source.slice().order(ByteOrder.nativeOrder());
+            } else {
+                copy = flat.get(NDArrayIndex.point(0), NDArrayIndex.interval(from, to)).dup();
+                source = copy.data().asNio().order(ByteOrder.nativeOrder());
+                source.limit((int) ((to - from) * elementSize));
+            }
+
+            int offset = header == null ? 0 : header.length;
+            byte[] raw = new byte[offset + (int) ((to - from) * elementSize)];
+            if (header != null)
+                System.arraycopy(header, 0, raw, 0, header.length);
+
+            ByteBuffer target = ByteBuffer.wrap(raw, offset, raw.length - offset).slice().order(ByteOrder.BIG_ENDIAN);
+            if (elementSize == 4)
+                target.asFloatBuffer().put(source.asFloatBuffer());
+            else
+                target.asDoubleBuffer().put(source.asDoubleBuffer());
+
+            CRC32 crc = new CRC32();
+            crc.update(raw);
+
+            return new Chunk(ChunkedZipOutput.deflate(raw, raw.length, level, last), crc.getValue(), raw.length);
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger(0);
+
+        private NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r);
+            t.setName(prefix + "-" + counter.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
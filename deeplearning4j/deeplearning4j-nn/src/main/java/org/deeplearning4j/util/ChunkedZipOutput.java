@@ -0,0 +1,374 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.util;
+
+import lombok.NonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Minimal zip writer, that accepts entries compressed elsewhere: i.e. deflated in parallel by chunks.
+ * Local headers are patched with crc and sizes once entry is complete, so no data descriptors are used,
+ * and resulting file can be read by {@link java.util.zip.ZipFile} as well as by {@link java.util.zip.ZipInputStream}.
+ *
+ * Zip64 extensions are used for entries and files exceeding 4GB.
+ */
+class ChunkedZipOutput implements Closeable {
+    protected static final int LOC_SIGNATURE = 0x04034b50;
+    protected static final int CEN_SIGNATURE = 0x02014b50;
+    protected static final int END_SIGNATURE = 0x06054b50;
+    protected static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    protected static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    protected static final int ZIP64_EXTRA_ID = 0x0001;
+    protected static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    // entries above this size get zip64 local header right away, since compressed size isn't known in advance
+    protected static final long ZIP64_THRESHOLD = 0xF0000000L;
+    protected static final int METHOD_DEFLATED = 8;
+
+    private final FileChannel channel;
+    private final List<Entry> entries = new ArrayList<>();
+    private final int dosTime;
+    private final int dosDate;
+    private Entry current;
+
+    ChunkedZipOutput(@NonNull FileChannel channel) {
+        this.channel = channel;
+
+        Calendar c = Calendar.getInstance();
+        this.dosTime = (c.get(Calendar.HOUR_OF_DAY) << 11) | (c.get(Calendar.MINUTE) << 5) | (c.get(Calendar.SECOND) >> 1);
+        this.dosDate = ((c.get(Calendar.YEAR) - 1980) << 9) | ((c.get(Calendar.MONTH) + 1) << 5) | c.get(Calendar.DAY_OF_MONTH);
+    }
+
+    /**
+     * This method writes small entry, compressed in calling thread
+     */
+    void writeEntry(@NonNull String name, @NonNull byte[] data, int level) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        byte[] compressed = deflate(data, data.length, level, true);
+        beginEntry(name, data.length);
+        write(compressed, compressed.length);
+        endEntry(crc.getValue(), data.length);
+    }
+
+    /**
+     * This method starts new deflated entry. Compressed data should be written with {@link #write(byte[], int)}
+     *
+     * @param name              entry name
+     * @param uncompressedSize  expected uncompressed size of the entry
+     */
+    void beginEntry(@NonNull String name, long uncompressedSize) throws IOException {
+        if (current != null)
+            throw new IllegalStateException("Previous entry [" + current.name + "] wasn't finished");
+
+        byte[] bytes = name.getBytes("UTF-8");
+        boolean zip64 = uncompressedSize >= ZIP64_THRESHOLD;
+        current = new Entry(name, bytes, channel.position(), zip64);
+
+        ByteBuffer header = buffer(30 + bytes.length + (zip64 ? 20 : 0));
+        header.putInt(LOC_SIGNATURE);
+        header.putShort((short) (zip64 ? 45 : 20));
+        header.putShort((short) 0);
+        header.putShort((short) METHOD_DEFLATED);
+        header.putShort((short) dosTime);
+        header.putShort((short) dosDate);
+        // crc and sizes are patched once entry is finished
+        header.putInt(0);
+        header.putInt(zip64 ? (int) ZIP64_MAGIC : 0);
+        header.putInt(zip64 ? (int) ZIP64_MAGIC : 0);
+        header.putShort((short) bytes.length);
+        header.putShort((short) (zip64 ? 20 : 0));
+        header.put(bytes);
+        if (zip64) {
+            header.putShort((short) ZIP64_EXTRA_ID);
+            header.putShort((short) 16);
+            header.putLong(0);
+            header.putLong(0);
+        }
+        flush(header);
+    }
+
+    /**
+     * This method appends compressed bytes to the current entry
+     */
+    void write(@NonNull byte[] compressed, int length) throws IOException {
+        if (current == null)
+            throw new IllegalStateException("No entry was started");
+
+        ByteBuffer buffer = ByteBuffer.wrap(compressed, 0, length);
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+
+        current.compressedSize += length;
+    }
+
+    /**
+     * This method finishes current entry
+     *
+     * @param crc              crc32 of uncompressed data
+     * @param uncompressedSize actual uncompressed size
+     */
+    void endEntry(long crc, long uncompressedSize) throws IOException {
+        if (current == null)
+            throw new IllegalStateException("No entry was started");
+
+        current.crc = crc;
+        current.uncompressedSize = uncompressedSize;
+
+        if (!current.zip64 && (current.compressedSize >= ZIP64_MAGIC || uncompressedSize >= ZIP64_MAGIC))
+            throw new IllegalStateException("Entry [" + current.name + "] exceeds 4GB, but its size was declared as "
+                            + "non-zip64 entry");
+
+        ByteBuffer patch = buffer(12);
+        patch.putInt((int) crc);
+        patch.putInt(current.zip64 ? (int) ZIP64_MAGIC : (int) current.compressedSize);
+        patch.putInt(current.zip64 ? (int) ZIP64_MAGIC : (int) uncompressedSize);
+        flush(patch, current.offset + 14);
+
+        if (current.zip64) {
+            ByteBuffer extra = buffer(16);
+            extra.putLong(uncompressedSize);
+            extra.putLong(current.compressedSize);
+            flush(extra, current.offset + 30 + current.nameBytes.length + 4);
+        }
+
+        entries.add(current);
+        current = null;
+    }
+
+    /**
+     * This method writes central directory. Underlying channel isn't closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (current != null)
+            throw new IllegalStateException("Entry [" + current.name + "] wasn't finished");
+
+        long cdOffset = channel.position();
+        for (Entry e : entries) {
+            boolean zip64Size = e.compressedSize >= ZIP64_MAGIC || e.uncompressedSize >= ZIP64_MAGIC;
+            boolean zip64Offset = e.offset >= ZIP64_MAGIC;
+            int extraLength = (zip64Size ? 16 : 0) + (zip64Offset ? 8 : 0);
+
+            ByteBuffer header = buffer(46 + e.nameBytes.length + (extraLength > 0 ? 4 + extraLength : 0));
+            header.putInt(CEN_SIGNATURE);
+            header.putShort((short) 45);
+            header.putShort((short) (extraLength > 0 ? 45 : 20));
+            header.putShort((short) 0);
+            header.putShort((short) METHOD_DEFLATED);
+            header.putShort((short) dosTime);
+            header.putShort((short) dosDate);
+            header.putInt((int) e.crc);
+            header.putInt(zip64Size ? (int) ZIP64_MAGIC : (int) e.compressedSize);
+            header.putInt(zip64Size ? (int) ZIP64_MAGIC : (int) e.uncompressedSize);
+            header.putShort((short) e.nameBytes.length);
+            header.putShort((short) (extraLength > 0 ? 4 + extraLength : 0));
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            header.putInt(0);
+            header.putInt(zip64Offset ? (int) ZIP64_MAGIC : (int) e.offset);
+            header.put(e.nameBytes);
+            if (extraLength > 0) {
+                header.putShort((short) ZIP64_EXTRA_ID);
+                header.putShort((short) extraLength);
+                if (zip64Size) {
+                    header.putLong(e.uncompressedSize);
+                    header.putLong(e.compressedSize);
+                }
+                if (zip64Offset)
+                    header.putLong(e.offset);
+            }
+            flush(header);
+        }
+
+        long cdSize = channel.position() - cdOffset;
+        boolean zip64 = cdOffset >= ZIP64_MAGIC || entries.size() >= 0xFFFF;
+        if (zip64) {
+            long zip64EndOffset = channel.position();
+            ByteBuffer end = buffer(56 + 20);
+            end.putInt(ZIP64_END_SIGNATURE);
+            end.putLong(44);
+            end.putShort((short) 45);
+            end.putShort((short) 45);
+            end.putInt(0);
+            end.putInt(0);
+            end.putLong(entries.size());
+            end.putLong(entries.size());
+            end.putLong(cdSize);
+            end.putLong(cdOffset);
+
+            end.putInt(ZIP64_LOCATOR_SIGNATURE);
+            end.putInt(0);
+            end.putLong(zip64EndOffset);
+            end.putInt(1);
+            flush(end);
+        }
+
+        ByteBuffer end = buffer(22);
+        end.putInt(END_SIGNATURE);
+        end.putShort((short) 0);
+        end.putShort((short) 0);
+        end.putShort((short) (zip64 ? 0xFFFF : entries.size()));
+        end.putShort((short) (zip64 ? 0xFFFF : entries.size()));
+        end.putInt(zip64 ? (int) ZIP64_MAGIC : (int) cdSize);
+        end.putInt(zip64 ? (int) ZIP64_MAGIC : (int) cdOffset);
+        end.putShort((short) 0);
+        flush(end);
+    }
+
+    /**
+     * This method deflates given data into raw deflate stream. If last is false, stream is ended with sync flush
+     * instead of final block, so output of subsequent calls can be concatenated into single valid stream.
+     */
+    static byte[] deflate(@NonNull byte[] data, int length, int level, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data, 0, length);
+            byte[] out = new byte[length + (length >> 12) + (length >> 14) + 64];
+            int size = 0;
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    if (size == out.length)
+                        out = Arrays.copyOf(out, out.length * 2);
+                    size += deflater.deflate(out, size, out.length - size);
+                }
+            } else {
+                while (true) {
+                    if (size == out.length)
+                        out = Arrays.copyOf(out, out.length * 2);
+                    int cnt = deflater.deflate(out, size, out.length - size, Deflater.SYNC_FLUSH);
+                    size += cnt;
+                    // sync flush is complete once output buffer isn't filled completely
+                    if (size < out.length)
+                        break;
+                }
+            }
+            return Arrays.copyOf(out, size);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * This method combines crc32 of two consecutive blocks, crc32_combine() from zlib
+     *
+     * @param crc1   crc of first block
+     * @param crc2   crc of second block
+     * @param len2   length of second block
+     * @return crc of both blocks
+     */
+    static long crc32Combine(long crc1, long crc2, long len2) {
+        if (len2 <= 0)
+            return crc1;
+
+        long[] even = new long[32];
+        long[] odd = new long[32];
+
+        // operator for one zero bit
+        odd[0] = 0xedb88320L;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+
+        // two and four zero bits
+        gf2MatrixSquare(even, odd);
+        gf2MatrixSquare(odd, even);
+
+        // apply len2 zero bytes to crc1
+        do {
+            gf2MatrixSquare(even, odd);
+            if ((len2 & 1) != 0)
+                crc1 = gf2MatrixTimes(even, crc1);
+            len2 >>= 1;
+
+            if (len2 == 0)
+                break;
+
+            gf2MatrixSquare(odd, even);
+            if ((len2 & 1) != 0)
+                crc1 = gf2MatrixTimes(odd, crc1);
+            len2 >>= 1;
+        } while (len2 != 0);
+
+        return crc1 ^ crc2;
+    }
+
+    private static long gf2MatrixTimes(long[] mat, long vec) {
+        long sum = 0;
+        int i = 0;
+        while (vec != 0) {
+            if ((vec & 1) != 0)
+                sum ^= mat[i];
+            vec >>>= 1;
+            i++;
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(long[] square, long[] mat) {
+        for (int n = 0; n < 32; n++)
+            square[n] = gf2MatrixTimes(mat, mat[n]);
+    }
+
+    private static ByteBuffer buffer(int length) {
+        return ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void flush(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    private void flush(ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+
+    private static class Entry {
+        private final String name;
+        private final byte[] nameBytes;
+        private final long offset;
+        private final boolean zip64;
+        private long crc;
+        private long compressedSize;
+        private long uncompressedSize;
+
+        private Entry(String name, byte[] nameBytes, long offset, boolean zip64) {
+            this.name = name;
+            this.nameBytes = nameBytes;
+            this.offset = offset;
+            this.zip64 = zip64;
+        }
+    }
+}
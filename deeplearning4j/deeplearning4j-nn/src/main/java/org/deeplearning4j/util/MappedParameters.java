@@ -0,0 +1,332 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.util;
+
+import com.google.common.collect.MapMaker;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.deeplearning4j.config.DL4JSystemProperties;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.concurrency.AffinityManager;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * This class implements parameters block of mappable model files, written by {@link ModelSerializer#writeMappableModel(org.deeplearning4j.nn.api.Model, File, boolean)}.
+ *
+ * Flattened parameters are stored as raw uncompressed zip entry, in native byte order, with entry data aligned to page size.
+ * Small index entry holds data type, length and position of this block, so on load parameters can be memory-mapped
+ * straight into flattened params view, without inflating and copying. Mapping is copy-on-write, so pages of the same
+ * model file are shared between JVMs on the same host until modified.
+ *
+ * PLEASE NOTE: file stays valid zip, so it can be inspected with any zip tool, but it can't be re-packed without losing alignment.
+ * PLEASE NOTE: parameters block is limited to {@link #MAX_MAPPED_BYTES}, since that's the limit of single NIO mapping.
+ * Larger models should be saved with {@link ModelSerializer#writeModel(org.deeplearning4j.nn.api.Model, File, boolean)}
+ */
+@Slf4j
+public class MappedParameters {
+    public static final String COEFFICIENTS_RAW = "coefficients.raw";
+    public static final String COEFFICIENTS_INDEX = "coefficients.index";
+
+    /**
+     * Parameters block is aligned to this number of bytes within file
+     */
+    public static final int ALIGNMENT = 4096;
+
+    /**
+     * Max size of parameters block in bytes
+     */
+    public static final long MAX_MAPPED_BYTES = Integer.MAX_VALUE;
+
+    protected static final int FORMAT_VERSION = 1;
+    protected static final int LOC_SIGNATURE = 0x04034b50;
+    protected static final int LOC_HEADER_LENGTH = 30;
+    // same header id as used by Android zipalign, zip tools just skip unknown extra fields
+    protected static final int ALIGNMENT_EXTRA_ID = 0xD935;
+    protected static final int ZIP64_EXTRA_LENGTH = 20;
+    protected static final int CHUNK_ELEMENTS = 4 * 1024 * 1024;
+    protected static final int COPY_BUFFER_LENGTH = 64 * 1024;
+
+    /**
+     * Mapped buffers are unmapped once collected, so we keep them alive as long as DataBuffer built on top of them is alive.
+     * PLEASE NOTE: weak keys are compared by identity here
+     */
+    private static final Map<DataBuffer, ByteBuffer> MAPPED = new MapMaker().weakKeys().makeMap();
+
+    private MappedParameters() {}
+
+    /**
+     * This method writes parameters block and its index into given zip stream.
+     *
+     * @param params   flattened parameters
+     * @param zipfile  zip stream
+     * @param counting stream zip is written to, used to track absolute position within file
+     * @throws IOException
+     */
+    public static void write(@NonNull INDArray params, @NonNull ZipOutputStream zipfile,
+                    @NonNull CountingOutputStream counting) throws IOException {
+        checkMappable(params);
+        DataBuffer.Type type = params.data().dataType();
+
+        INDArray row = params.isView() ? params.dup('c') : params;
+        row = row.reshape('c', 1, row.length());
+        Nd4j.getAffinityManager().ensureLocation(row, AffinityManager.Location.HOST);
+
+        long length = row.length();
+        int elementSize = type == DataBuffer.Type.FLOAT ? 4 : 8;
+        long bytes = length * elementSize;
+
+        // first pass: STORED entries need crc before data is written
+        CRC32 crc = new CRC32();
+        byte[] copyBuffer = new byte[COPY_BUFFER_LENGTH];
+        for (long from = 0; from < length; from += CHUNK_ELEMENTS) {
+            ByteBuffer chunk = chunk(row, from, Math.min(length, from + CHUNK_ELEMENTS), elementSize);
+            while (chunk.hasRemaining()) {
+                int cnt = Math.min(copyBuffer.length, chunk.remaining());
+                chunk.get(copyBuffer, 0, cnt);
+                crc.update(copyBuffer, 0, cnt);
+            }
+        }
+
+        // previous entry has to be flushed, so we know where local header of our entry starts
+        zipfile.closeEntry();
+        long headerOffset = counting.getByteCount();
+
+        byte[] name = COEFFICIENTS_RAW.getBytes("UTF-8");
+        long dataStart = headerOffset + LOC_HEADER_LENGTH + name.length + 4 + (bytes >= 0xFFFFFFFFL ? ZIP64_EXTRA_LENGTH : 0);
+        int padding = (int) ((ALIGNMENT - dataStart % ALIGNMENT) % ALIGNMENT);
+        byte[] extra = new byte[4 + padding];
+        extra[0] = (byte) (ALIGNMENT_EXTRA_ID & 0xFF);
+        extra[1] = (byte) ((ALIGNMENT_EXTRA_ID >> 8) & 0xFF);
+        extra[2] = (byte) (padding & 0xFF);
+        extra[3] = (byte) ((padding >> 8) & 0xFF);
+
+        ZipEntry raw = new ZipEntry(COEFFICIENTS_RAW);
+        raw.setMethod(ZipEntry.STORED);
+        raw.setSize(bytes);
+        raw.setCompressedSize(bytes);
+        raw.setCrc(crc.getValue());
+        raw.setExtra(extra);
+        zipfile.putNextEntry(raw);
+
+        // local header is written right away for STORED entries
+        long dataOffset = counting.getByteCount();
+        if (dataOffset % ALIGNMENT != 0)
+            log.warn("Parameters block isn't aligned within file: offset {}", dataOffset);
+
+        for (long from = 0; from < length; from += CHUNK_ELEMENTS) {
+            ByteBuffer chunk = chunk(row, from, Math.min(length, from + CHUNK_ELEMENTS), elementSize);
+            while (chunk.hasRemaining()) {
+                int cnt = Math.min(copyBuffer.length, chunk.remaining());
+                chunk.get(copyBuffer, 0, cnt);
+                zipfile.write(copyBuffer, 0, cnt);
+            }
+        }
+        zipfile.closeEntry();
+
+        zipfile.putNextEntry(new ZipEntry(COEFFICIENTS_INDEX));
+        DataOutputStream dos = new DataOutputStream(zipfile);
+        dos.writeInt(FORMAT_VERSION);
+        dos.writeUTF(type.name());
+        dos.writeUTF(ByteOrder.nativeOrder().toString());
+        dos.writeLong(length);
+        dos.writeLong(headerOffset);
+        dos.flush();
+        zipfile.closeEntry();
+    }
+
+    /**
+     * This method checks if given parameters can be stored in mappable format
+     *
+     * @param params flattened parameters
+     */
+    public static void checkMappable(@NonNull INDArray params) {
+        DataBuffer.Type type = params.data().dataType();
+        if (type != DataBuffer.Type.FLOAT && type != DataBuffer.Type.DOUBLE)
+            throw new IllegalStateException("Mappable model format supports FLOAT and DOUBLE parameters only, got " + type);
+
+        long bytes = params.length() * (type == DataBuffer.Type.FLOAT ? 4 : 8);
+        if (bytes > MAX_MAPPED_BYTES)
+            throw new IllegalStateException("Mappable model format supports parameters up to " + MAX_MAPPED_BYTES
+                            + " bytes, got " + bytes + " bytes. Use ModelSerializer.writeModel() for larger models");
+    }
+
+    protected static ByteBuffer chunk(INDArray row, long from, long to, int elementSize) {
+        INDArray array = from == 0 && to == row.length() ? row
+                        : row.get(NDArrayIndex.point(0), NDArrayIndex.interval(from, to)).dup();
+
+        ByteBuffer buffer = array.data().asNio().order(ByteOrder.nativeOrder());
+        buffer.position(0);
+        buffer.limit((int) ((to - from) * elementSize));
+        return buffer;
+    }
+
+    /**
+     * This method checks if given zip file has mappable parameters block
+     *
+     * @param zipFile
+     * @return
+     */
+    public static boolean isMappable(@NonNull ZipFile zipFile) {
+        return zipFile.getEntry(COEFFICIENTS_INDEX) != null;
+    }
+
+    /**
+     * This method restores flattened parameters row vector from mappable model file.
+     * Parameters are memory-mapped when possible, and copied into memory otherwise: i.e. if byte order of file doesn't
+     * match platform byte order, or if file was re-packed and parameters block isn't stored as-is anymore.
+     *
+     * @param file    model file
+     * @param zipFile the same file, opened as zip
+     * @return
+     * @throws IOException
+     */
+    public static INDArray read(@NonNull File file, @NonNull ZipFile zipFile) throws IOException {
+        ZipEntry indexEntry = zipFile.getEntry(COEFFICIENTS_INDEX);
+        ZipEntry raw = zipFile.getEntry(COEFFICIENTS_RAW);
+        if (indexEntry == null || raw == null)
+            throw new IllegalStateException("Mappable parameters block wasn't found within file: " + file);
+
+        DataBuffer.Type type;
+        ByteOrder order;
+        long length;
+        long headerOffset;
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(zipFile.getInputStream(indexEntry)))) {
+            int version = dis.readInt();
+            if (version != FORMAT_VERSION)
+                throw new IllegalStateException("Unsupported mappable parameters format version: " + version);
+
+            type = DataBuffer.Type.valueOf(dis.readUTF());
+            order = ByteOrder.BIG_ENDIAN.toString().equals(dis.readUTF()) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+            length = dis.readLong();
+            headerOffset = dis.readLong();
+        }
+
+        int elementSize = type == DataBuffer.Type.FLOAT ? 4 : 8;
+        long bytes = length * elementSize;
+        if (raw.getSize() != bytes)
+            throw new IllegalStateException("Parameters block length doesn't match its index: expected " + bytes
+                            + " bytes, got " + raw.getSize() + " bytes");
+
+        long dataOffset = raw.getMethod() == ZipEntry.STORED ? dataOffset(file, headerOffset) : -1;
+
+        if (dataOffset >= 0 && order == ByteOrder.nativeOrder() && bytes <= MAX_MAPPED_BYTES) {
+            FileChannel.MapMode mode = null;
+            String access = "rw";
+            if (file.canWrite()) {
+                mode = FileChannel.MapMode.PRIVATE;
+            } else if (Boolean.parseBoolean(System.getProperty(DL4JSystemProperties.MAPPED_PARAMS_READ_ONLY_PROPERTY, "false"))) {
+                mode = FileChannel.MapMode.READ_ONLY;
+                access = "r";
+            }
+
+            if (mode != null) {
+                try (RandomAccessFile raf = new RandomAccessFile(file, access)) {
+                    MappedByteBuffer mapped = raf.getChannel().map(mode, dataOffset, bytes);
+                    mapped.order(ByteOrder.nativeOrder());
+
+                    DataBuffer buffer = Nd4j.createBuffer(mapped, type, (int) length);
+                    MAPPED.put(buffer, mapped);
+                    return Nd4j.create(buffer, new long[] {1, length});
+                }
+            } else {
+                log.info("Model file [{}] isn't writable, parameters will be copied into memory. Set system property [{}] to map them read-only",
+                                file, DL4JSystemProperties.MAPPED_PARAMS_READ_ONLY_PROPERTY);
+            }
+        }
+
+        return copy(zipFile.getInputStream(raw), type, order, length);
+    }
+
+    /**
+     * This method validates local zip header at given offset, and returns offset of entry data, or -1 if header isn't valid
+     */
+    protected static long dataOffset(File file, long headerOffset) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (headerOffset < 0 || headerOffset + LOC_HEADER_LENGTH > raf.length())
+                return -1;
+
+            byte[] header = new byte[LOC_HEADER_LENGTH];
+            raf.seek(headerOffset);
+            raf.readFully(header);
+
+            ByteBuffer bb = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+            if (bb.getInt(0) != LOC_SIGNATURE)
+                return -1;
+
+            int nameLength = bb.getShort(26) & 0xFFFF;
+            int extraLength = bb.getShort(28) & 0xFFFF;
+
+            byte[] name = new byte[nameLength];
+            raf.readFully(name);
+            if (!COEFFICIENTS_RAW.equals(new String(name, "UTF-8")))
+                return -1;
+
+            return headerOffset + LOC_HEADER_LENGTH + nameLength + extraLength;
+        }
+    }
+
+    /**
+     * This method reads parameters block chunk by chunk into newly allocated array
+     */
+    protected static INDArray copy(InputStream stream, DataBuffer.Type type, ByteOrder order, long length)
+                    throws IOException {
+        int elementSize = type == DataBuffer.Type.FLOAT ? 4 : 8;
+        // small blocks are read in one chunk, so there's no need for separate target array
+        INDArray result = length > CHUNK_ELEMENTS ? Nd4j.createUninitialized(new long[] {1, length}, 'c') : null;
+
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(stream))) {
+            byte[] bytes = new byte[(int) Math.min(length, CHUNK_ELEMENTS) * elementSize];
+            for (long from = 0; from < length; from += CHUNK_ELEMENTS) {
+                int cnt = (int) Math.min(CHUNK_ELEMENTS, length - from);
+                dis.readFully(bytes, 0, cnt * elementSize);
+
+                ByteBuffer bb = ByteBuffer.wrap(bytes, 0, cnt * elementSize).order(order);
+                INDArray chunk;
+                if (type == DataBuffer.Type.FLOAT) {
+                    float[] data = new float[cnt];
+                    bb.asFloatBuffer().get(data);
+                    chunk = Nd4j.create(data, new long[] {1, cnt}, 'c');
+                } else {
+                    double[] data = new double[cnt];
+                    bb.asDoubleBuffer().get(data);
+                    chunk = Nd4j.create(data, new long[] {1, cnt}, 'c');
+                }
+
+                if (result == null)
+                    return chunk;
+
+                result.get(NDArrayIndex.point(0), NDArrayIndex.interval(from, from + cnt)).assign(chunk);
+            }
+        }
+
+        return result;
+    }
+}
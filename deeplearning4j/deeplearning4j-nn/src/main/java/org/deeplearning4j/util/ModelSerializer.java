@@ -21,6 +21,7 @@ import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.deeplearning4j.config.DL4JSystemProperties;
 import org.deeplearning4j.nn.api.Layer;
 import org.deeplearning4j.nn.api.Model;
@@ -194,6 +195,96 @@ public class ModelSerializer {
         zipfile.close();
     }
 
+    /**
+     * Write a model to a file, in mappable format: parameters are stored uncompressed, in native byte order and
+     * aligned within file, so that {@link #restoreMultiLayerNetwork(File)} and {@link #restoreComputationGraph(File)}
+     * can memory-map them instead of reading and copying.
+     *
+     * PLEASE NOTE: such file is still a zip file, but it can be restored with this or later versions of ModelSerializer only
+     * PLEASE NOTE: parameters are limited to {@link MappedParameters#MAX_MAPPED_BYTES}, use {@link #writeModel(Model, File, boolean)} for larger models
+     *
+     * @param model the model to write
+     * @param file the file to write to
+     * @param saveUpdater whether to save the updater or not
+     * @throws IOException
+     */
+    public static void writeMappableModel(@NonNull Model model, @NonNull File file, boolean saveUpdater) throws IOException {
+        writeMappableModel(model, file, saveUpdater, null);
+    }
+
+    /**
+     * Write a model to a file, in mappable format
+     *
+     * @param model the model to write
+     * @param file the file to write to
+     * @param saveUpdater whether to save the updater or not
+     * @param dataNormalization the normalizer to save (optional)
+     * @throws IOException
+     * @see #writeMappableModel(Model, File, boolean)
+     */
+    public static void writeMappableModel(@NonNull Model model, @NonNull File file, boolean saveUpdater,
+                    DataNormalization dataNormalization) throws IOException {
+        // checking before file is created, so unsupported model doesn't leave partial file behind
+        if (model.params() != null)
+            MappedParameters.checkMappable(model.params());
+
+        try (CountingOutputStream stream = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            // position within file is tracked, so parameters block can be aligned
+            ZipOutputStream zipfile = new ZipOutputStream(new CloseShieldOutputStream(stream));
+
+            String json = "";
+            if (model instanceof MultiLayerNetwork) {
+                json = ((MultiLayerNetwork) model).getLayerWiseConfigurations().toJson();
+            } else if (model instanceof ComputationGraph) {
+                json = ((ComputationGraph) model).getConfiguration().toJson();
+            }
+
+            ZipEntry config = new ZipEntry(CONFIGURATION_JSON);
+            zipfile.putNextEntry(config);
+            zipfile.write(json.getBytes());
+
+            INDArray params = model.params();
+            if (params != null) {
+                MappedParameters.write(params, zipfile, stream);
+            } else {
+                ZipEntry coefficients = new ZipEntry(COEFFICIENTS_BIN);
+                zipfile.putNextEntry(coefficients);
+                ZipEntry noParamsMarker = new ZipEntry(NO_PARAMS_MARKER);
+                zipfile.putNextEntry(noParamsMarker);
+            }
+
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(zipfile));
+            if (saveUpdater) {
+                INDArray updaterState = null;
+                if (model instanceof MultiLayerNetwork) {
+                    updaterState = ((MultiLayerNetwork) model).getUpdater().getStateViewArray();
+                } else if (model instanceof ComputationGraph) {
+                    updaterState = ((ComputationGraph) model).getUpdater().getStateViewArray();
+                }
+
+                if (updaterState != null && updaterState.length() > 0) {
+                    ZipEntry updater = new ZipEntry(UPDATER_BIN);
+                    zipfile.putNextEntry(updater);
+
+                    try {
+                        Nd4j.write(updaterState, dos);
+                    } finally {
+                        dos.flush();
+                    }
+                }
+            }
+
+            if (dataNormalization != null) {
+                ZipEntry nEntry = new ZipEntry(NORMALIZER_BIN);
+                zipfile.putNextEntry(nEntry);
+                NormalizerSerializer.getDefault().write(dataNormalization, zipfile);
+            }
+
+            dos.close();
+            zipfile.close();
+        }
+    }
+
     /**
      * Load a multi layer network from a file
      *
@@ -261,6 +352,10 @@ public class ModelSerializer {
                 ZipEntry noParamsMarker = zipFile.getEntry(NO_PARAMS_MARKER);
                 gotCoefficients = (noParamsMarker != null);
             }
+        } else if (MappedParameters.isMappable(zipFile)) {
+            // model was saved with writeMappableModel, parameters will be memory-mapped if possible
+            params = MappedParameters.read(file, zipFile);
+            gotCoefficients = true;
         }
 
         if (loadUpdater) {
@@ -586,6 +681,10 @@ public class ModelSerializer {
                 ZipEntry noParamsMarker = zipFile.getEntry(NO_PARAMS_MARKER);
                 gotCoefficients = (noParamsMarker != null);
             }
+        } else if (MappedParameters.isMappable(zipFile)) {
+            // model was saved with writeMappableModel, parameters will be memory-mapped if possible
+            params = MappedParameters.read(file, zipFile);
+            gotCoefficients = true;
         }
 
 
@@ -773,7 +872,8 @@ public class ModelSerializer {
         Preconditions.checkState(f.exists(), "File must exist: %s", f);
         Preconditions.checkArgument(!(UPDATER_BIN.equalsIgnoreCase(key) || NORMALIZER_BIN.equalsIgnoreCase(key)
                 || CONFIGURATION_JSON.equalsIgnoreCase(key) || COEFFICIENTS_BIN.equalsIgnoreCase(key)
-                || NO_PARAMS_MARKER.equalsIgnoreCase(key) || PREPROCESSOR_BIN.equalsIgnoreCase(key)),
+                || NO_PARAMS_MARKER.equalsIgnoreCase(key) || PREPROCESSOR_BIN.equalsIgnoreCase(key)
+                || MappedParameters.COEFFICIENTS_RAW.equalsIgnoreCase(key) || MappedParameters.COEFFICIENTS_INDEX.equalsIgnoreCase(key)),
                 "Invalid key: Key is reserved for internal use: \"%s\"", key);
         File tempFile = null;
         try {
@@ -839,7 +939,8 @@ public class ModelSerializer {
         Preconditions.checkState(f.exists(), "File must exist: %s", f);
         Preconditions.checkArgument(!(UPDATER_BIN.equalsIgnoreCase(key) || NORMALIZER_BIN.equalsIgnoreCase(key)
                         || CONFIGURATION_JSON.equalsIgnoreCase(key) || COEFFICIENTS_BIN.equalsIgnoreCase(key)
-                        || NO_PARAMS_MARKER.equalsIgnoreCase(key) || PREPROCESSOR_BIN.equalsIgnoreCase(key)),
+                        || NO_PARAMS_MARKER.equalsIgnoreCase(key) || PREPROCESSOR_BIN.equalsIgnoreCase(key)
+                || MappedParameters.COEFFICIENTS_RAW.equalsIgnoreCase(key) || MappedParameters.COEFFICIENTS_INDEX.equalsIgnoreCase(key)),
                 "Invalid key: Key is reserved for internal use: \"%s\"", key);
 
         try (ZipFile zipFile = new ZipFile(f)) {
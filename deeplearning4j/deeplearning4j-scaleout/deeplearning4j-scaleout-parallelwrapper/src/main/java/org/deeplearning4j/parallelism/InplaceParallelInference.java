@@ -25,15 +25,22 @@ import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.parallelism.inference.LoadBalanceMode;
+import org.deeplearning4j.parallelism.inference.swap.ModelReplicaHolder;
+import org.deeplearning4j.parallelism.inference.swap.ModelSwap;
+import org.deeplearning4j.parallelism.inference.swap.ModelSwapConfiguration;
+import org.deeplearning4j.parallelism.inference.swap.ModelSwapState;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.exception.ND4JIllegalStateException;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.primitives.Pair;
+import org.nd4j.linalg.primitives.Triple;
 
 import java.util.*;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
@@ -79,11 +86,35 @@ public class InplaceParallelInference extends ParallelInference {
             h.updateModel(model);
     }
 
+    /**
+     * PLEASE NOTE: In INPLACE mode replacement replica pool is built per device, and each device switches to it
+     * at the first request after commit.
+     * PLEASE NOTE: Mirrored traffic is processed in the calling thread, after its own output is computed, so mirrored
+     * requests are slower during shadow phase.
+     */
+    @Override
+    public ModelSwap updateModel(@NonNull Model model, @NonNull ModelSwapConfiguration configuration) {
+        if (holders.isEmpty())
+            throw new ND4JIllegalStateException("ParallelInference wasn't initialized, or was shut down already");
+
+        final Model replacement = model;
+        val swap = new ModelSwap(model, holders, configuration, new ArrayList<>(liveShapes.values()), new Runnable() {
+            @Override
+            public void run() {
+                InplaceParallelInference.this.model = replacement;
+            }
+        });
+        swap.start();
+
+        return swap;
+    }
+
     @Override
     protected synchronized Model[] getCurrentModelsFromWorkers() {
         val models = new Model[holders.size()];
         int cnt = 0;
         for (val h:holders) {
+            h.adoptStaged();
             models[cnt++] = h.sourceModel;
         }
 
@@ -92,9 +123,18 @@ public class InplaceParallelInference extends ParallelInference {
 
     @Override
     public INDArray[] output(INDArray[] input, INDArray[] inputMasks) {
+        recordShapes(Collections.singletonList(new Pair<>(input, inputMasks)));
         return selector.output(input, inputMasks);
     }
 
+    /**
+     * PLEASE NOTE: Priority lanes aren't used in INPLACE mode, since inference is applied in the calling thread
+     */
+    @Override
+    public INDArray[] output(int lane, INDArray[] input, INDArray[] inputMasks) {
+        return output(input, inputMasks);
+    }
+
 
     protected static class ModelSelector {
         // this map stores collection of shared
@@ -137,7 +177,7 @@ public class InplaceParallelInference extends ParallelInference {
     @NoArgsConstructor
     @AllArgsConstructor
     @lombok.Builder
-    protected static class ModelHolder {
+    protected static class ModelHolder implements ModelReplicaHolder {
         protected Model sourceModel;
         @lombok.Builder.Default protected int workers = 4;
         @lombok.Builder.Default protected List<Model> replicas = new ArrayList<>();
@@ -154,6 +194,12 @@ public class InplaceParallelInference extends ParallelInference {
         @lombok.Builder.Default protected transient boolean isCG = false;
         @lombok.Builder.Default protected transient boolean isMLN = false;
 
+        // replacement model & replica pool, staged for switch at commit
+        protected final AtomicReference<Triple<ModelSwap, Model, List<Model>>> staged = new AtomicReference<>();
+
+        // replacement model receiving mirrored traffic during staged update
+        protected final AtomicReference<Pair<ModelSwap, Model>> shadow = new AtomicReference<>();
+
 
         protected synchronized void init() {
             if (workers < 1)
@@ -172,27 +218,120 @@ public class InplaceParallelInference extends ParallelInference {
                 Nd4j.getAffinityManager().replicateToDevice(targetDeviceId, params);
 
             for (int e = 0; e < workers; e++) {
-                if (sourceModel instanceof ComputationGraph) {
-                    // building configuration with shared parameters
-                    val model = new ComputationGraph(ComputationGraphConfiguration.fromJson(((ComputationGraph) sourceModel).getConfiguration().toJson()));
-                    model.init(params, false);
-                    Nd4j.getExecutioner().commit();
-
-                    // storing model for future reuse
-                    replicas.add(model);
-
-                    if (loadBalanceMode == LoadBalanceMode.FIFO)
-                        queue.add(model);
-                } else if (sourceModel instanceof MultiLayerNetwork) {
-                    val model = new MultiLayerNetwork(MultiLayerConfiguration.fromJson(((MultiLayerNetwork) sourceModel).getLayerWiseConfigurations().toJson()));
-                    model.init(params, false);
-                    Nd4j.getExecutioner().commit();
-
-                    replicas.add(model);
-
-                    if (loadBalanceMode == LoadBalanceMode.FIFO)
-                        queue.add(model);
+                val model = buildReplica(sourceModel, params);
+                if (model == null)
+                    continue;
+
+                // storing model for future reuse
+                replicas.add(model);
+
+                if (loadBalanceMode == LoadBalanceMode.FIFO)
+                    queue.add(model);
+            }
+        }
+
+        /**
+         * This method builds model with the same configuration as source model, backed by given params
+         */
+        protected Model buildReplica(Model source, INDArray params) {
+            if (source instanceof ComputationGraph) {
+                // building configuration with shared parameters
+                val model = new ComputationGraph(ComputationGraphConfiguration.fromJson(((ComputationGraph) source).getConfiguration().toJson()));
+                model.init(params, false);
+                Nd4j.getExecutioner().commit();
+                return model;
+            } else if (source instanceof MultiLayerNetwork) {
+                val model = new MultiLayerNetwork(MultiLayerConfiguration.fromJson(((MultiLayerNetwork) source).getLayerWiseConfigurations().toJson()));
+                model.init(params, false);
+                Nd4j.getExecutioner().commit();
+                return model;
+            }
+
+            return null;
+        }
+
+        @Override
+        public int getDeviceId() {
+            return targetDeviceId;
+        }
+
+        @Override
+        public Model createReplica(Model model) {
+            // same rules as in init(): params are shared on root device, and copied to target device otherwise
+            val params = rootDevice ? model.params() : model.params().unsafeDuplication(true);
+            if (!rootDevice)
+                Nd4j.getAffinityManager().replicateToDevice(targetDeviceId, params);
+
+            val replica = buildReplica(model, params);
+            if (replica == null)
+                throw new ND4JIllegalStateException("Unsupported model type: [" + model.getClass().getSimpleName() + "]");
+
+            return replica;
+        }
+
+        @Override
+        public void setShadow(ModelSwap swap, Model replica) {
+            shadow.set(swap == null || replica == null ? null : new Pair<>(swap, replica));
+        }
+
+        @Override
+        public void stageReplica(@NonNull ModelSwap swap, @NonNull Model model, @NonNull Model replica) {
+            // whole pool is built here, so switch itself is just a reference swap
+            val pool = new ArrayList<Model>(workers);
+            pool.add(replica);
+            for (int e = 1; e < workers; e++)
+                pool.add(buildReplica(model, replica.params()));
+
+            staged.set(new Triple<ModelSwap, Model, List<Model>>(swap, model, pool));
+        }
+
+        /**
+         * This method switches this holder to staged replica pool, if its swap was committed already
+         */
+        protected void adoptStaged() {
+            val s = staged.get();
+            if (s == null)
+                return;
+
+            val state = s.getFirst().getState();
+            if (state == ModelSwapState.COMMITTED) {
+                try {
+                    modelLock.writeLock().lock();
+                    if (staged.compareAndSet(s, null)) {
+                        this.sourceModel = s.getSecond();
+                        this.replicas = s.getThird();
+                        isCG = sourceModel instanceof ComputationGraph;
+                        isMLN = sourceModel instanceof MultiLayerNetwork;
+
+                        queue.clear();
+                        if (loadBalanceMode == LoadBalanceMode.FIFO)
+                            queue.addAll(replicas);
+                    }
+                } finally {
+                    modelLock.writeLock().unlock();
+                }
+            } else if (state == ModelSwapState.ABORTED || state == ModelSwapState.FAILED) {
+                staged.compareAndSet(s, null);
+            }
+        }
+
+        /**
+         * This method sends already processed request to replacement model, and compares outputs
+         */
+        protected void mirror(INDArray[] input, INDArray[] inputMasks, INDArray[] output) {
+            val s = shadow.get();
+            if (s == null || !s.getFirst().shouldMirror())
+                return;
+
+            try {
+                INDArray[] candidate;
+                // there's single shadow replica per device, and it's shared by all calling threads
+                synchronized (s.getSecond()) {
+                    candidate = ModelSwap.output(s.getSecond(), input, inputMasks);
                 }
+                s.getFirst().reportShadow(output, candidate);
+            } catch (Exception e) {
+                s.getFirst().reportShadowFailure(e);
             }
         }
 
@@ -221,7 +360,12 @@ public class InplaceParallelInference extends ParallelInference {
 
                 switch (loadBalanceMode) {
                     case FIFO:
-                        queue.add(model);
+                        // models from replaced pool aren't returned to the queue
+                        for (val m : replicas)
+                            if (m == model) {
+                                queue.add(model);
+                                break;
+                            }
                         break;
                     case ROUND_ROBIN:
                         break;
@@ -234,6 +378,14 @@ public class InplaceParallelInference extends ParallelInference {
         }
 
         protected INDArray[] output(INDArray[] input, INDArray[] inputMasks) {
+            adoptStaged();
+
+            val output = localOutput(input, inputMasks);
+            mirror(input, inputMasks, output);
+            return output;
+        }
+
+        protected INDArray[] localOutput(INDArray[] input, INDArray[] inputMasks) {
             try {
                 modelLock.readLock().lock();
                 if (isCG) {
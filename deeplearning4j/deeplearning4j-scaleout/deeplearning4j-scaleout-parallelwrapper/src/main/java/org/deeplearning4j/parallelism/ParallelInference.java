@@ -27,19 +27,39 @@ import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.parallelism.inference.InferenceMode;
 import org.deeplearning4j.parallelism.inference.InferenceObservable;
 import org.deeplearning4j.parallelism.inference.LoadBalanceMode;
+import org.deeplearning4j.parallelism.inference.SequenceBucketing;
+import org.deeplearning4j.parallelism.inference.adaptive.AdaptiveBatchController;
+import org.deeplearning4j.parallelism.inference.adaptive.AdaptiveBatchingStats;
+import org.deeplearning4j.parallelism.inference.adaptive.BatchTimingsListener;
+import org.deeplearning4j.parallelism.inference.observers.AdaptiveBatchedInferenceObservable;
 import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObservable;
 import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObserver;
 import org.deeplearning4j.parallelism.inference.observers.BatchedInferenceObservable;
+import org.deeplearning4j.parallelism.inference.priority.LaneStats;
+import org.deeplearning4j.parallelism.inference.priority.PriorityInferenceQueue;
+import org.deeplearning4j.parallelism.inference.priority.PriorityLane;
+import org.deeplearning4j.parallelism.inference.swap.ModelReplicaHolder;
+import org.deeplearning4j.parallelism.inference.swap.ModelSwap;
+import org.deeplearning4j.parallelism.inference.swap.ModelSwapConfiguration;
+import org.deeplearning4j.parallelism.inference.swap.ModelSwapState;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.exception.ND4JIllegalStateException;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.primitives.Pair;
+import org.nd4j.linalg.primitives.Triple;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Observer;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -60,6 +80,10 @@ public class ParallelInference {
     protected InferenceMode inferenceMode;
     protected int queueLimit;
     protected LoadBalanceMode loadBalanceMode = LoadBalanceMode.FIFO;
+    protected long targetLatencyNanos;
+    protected SequenceBucketing sequenceBucketing;
+    protected PriorityLane[] priorityLanes;
+    protected List<BatchTimingsListener> batchTimingsListeners = new ArrayList<>();
 
     // this queue holds data for inference
     private BlockingQueue<InferenceObservable> observables;
@@ -67,7 +91,13 @@ public class ParallelInference {
     private final Object locker = new Object();
 
     private InferenceWorker[] zoo;
-    private ObservablesProvider provider;
+    // one provider per priority lane
+    private ObservablesProvider[] providers;
+    private AdaptiveBatchController controller;
+
+    // input shapes seen by workers, used to warm up replacement models
+    protected final Map<String, long[][]> liveShapes = new ConcurrentHashMap<>();
+    private static final int MAX_LIVE_SHAPES = 16;
 
 
 
@@ -75,6 +105,7 @@ public class ParallelInference {
     public final static int DEFAULT_BATCH_LIMIT = 32;
     public final static InferenceMode DEFAULT_INFERENCE_MODE = InferenceMode.BATCHED;
     public final static int DEFAULT_QUEUE_LIMIT = 64;
+    public final static long DEFAULT_TARGET_LATENCY_MS = 50;
 
 
 
@@ -97,6 +128,49 @@ public class ParallelInference {
         }
     }
 
+    /**
+     * This method allows to update Model used for inference in runtime, without queue reset, and without latency spikes:
+     * replacement replicas are built and warmed up in background on synthetic inputs of live shapes, optionally
+     * receive mirrored fraction of live traffic for output comparison, and then all workers are switched at once.
+     *
+     * Old model keeps serving all traffic until commit.
+     *
+     * @param model         replacement model
+     * @param configuration staged update configuration
+     * @return ModelSwap instance, that allows to track, commit or abort this update
+     */
+    public ModelSwap updateModel(@NonNull Model model, @NonNull ModelSwapConfiguration configuration) {
+        if (zoo == null)
+            throw new ND4JIllegalStateException("ParallelInference wasn't initialized, or was shut down already");
+
+        final Model replacement = model;
+        val swap = new ModelSwap(model, Arrays.asList(zoo), configuration, new ArrayList<>(liveShapes.values()), new Runnable() {
+            @Override
+            public void run() {
+                ParallelInference.this.model = replacement;
+            }
+        });
+        swap.start();
+
+        return swap;
+    }
+
+    /**
+     * This method stores shapes of input batches, to be used for warm-up of replacement models
+     */
+    protected void recordShapes(List<Pair<INDArray[], INDArray[]>> batches) {
+        if (liveShapes.size() >= MAX_LIVE_SHAPES)
+            return;
+
+        for (val batch : batches) {
+            val shapes = new long[batch.getFirst().length][];
+            for (int e = 0; e < shapes.length; e++)
+                shapes[e] = batch.getFirst()[e].shape();
+
+            liveShapes.putIfAbsent(Arrays.deepToString(shapes), shapes);
+        }
+    }
+
     /**
      * This method returns Models used in workers at this moment
      * PLEASE NOTE: This method is NOT thread safe, and should NOT be used anywhere but tests
@@ -110,14 +184,17 @@ public class ParallelInference {
         val models = new Model[zoo.length];
         int cnt = 0;
         for (val w:zoo) {
-            models[cnt++] = w.replicatedModel;
+            models[cnt++] = w.currentReplica();
         }
 
         return models;
     }
 
     protected void init() {
-        observables = new LinkedBlockingQueue<>(queueLimit);
+        if (priorityLanes != null)
+            observables = new PriorityInferenceQueue(priorityLanes);
+        else
+            observables = new LinkedBlockingQueue<>(queueLimit);
 
         int numDevices = Nd4j.getAffinityManager().getNumberOfDevices();
         int currentDevice = Nd4j.getAffinityManager().getDeviceForCurrentThread();
@@ -129,7 +206,7 @@ public class ParallelInference {
             boolean cRoot = !assignedRoot.get() && cDevice == currentDevice;
             assignedRoot.compareAndSet(false, cRoot);
 
-            zoo[i] = new InferenceWorker(i, model, observables, cRoot);
+            zoo[i] = new InferenceWorker(i, model, observables, cRoot, cDevice);
 
             Nd4j.getAffinityManager().attachThreadToDevice(zoo[i], cDevice);
             zoo[i].setDaemon(true);
@@ -137,12 +214,63 @@ public class ParallelInference {
         }
 
 
-        if (inferenceMode == InferenceMode.BATCHED) {
+        if (inferenceMode == InferenceMode.ADAPTIVE) {
+            controller = new AdaptiveBatchController(targetLatencyNanos, batchLimit);
+            for (val l : batchTimingsListeners)
+                controller.addListener(l);
+        }
+
+        if (inferenceMode == InferenceMode.BATCHED || inferenceMode == InferenceMode.ADAPTIVE) {
+            providers = new ObservablesProvider[numLanes()];
+            for (int lane = 0; lane < providers.length; lane++) {
+                providers[lane] = createProvider();
+                providers[lane].setLane(lane);
+            }
+        }
+    }
+
+    protected ObservablesProvider createProvider() {
+        if (inferenceMode == InferenceMode.ADAPTIVE) {
+            log.info("Initializing AdaptiveObservablesProvider...");
+            return new AdaptiveObservablesProvider(controller, observables);
+        } else if (sequenceBucketing != null) {
+            log.info("Initializing BucketingObservablesProvider...");
+            return new BucketingObservablesProvider(nanos, batchLimit, observables, sequenceBucketing);
+        } else {
             log.info("Initializing ObservablesProvider...");
-            provider = new ObservablesProvider(nanos, batchLimit, observables);
+            return new ObservablesProvider(nanos, batchLimit, observables);
         }
     }
 
+    /**
+     * This method returns number of priority lanes available for requests
+     *
+     * @return
+     */
+    public int numLanes() {
+        return priorityLanes == null ? 1 : priorityLanes.length;
+    }
+
+    /**
+     * This method returns counters for each priority lane
+     * PLEASE NOTE: This method returns null if priority lanes weren't configured
+     *
+     * @return
+     */
+    public List<LaneStats> getLaneStats() {
+        return observables instanceof PriorityInferenceQueue ? ((PriorityInferenceQueue) observables).getLaneStats() : null;
+    }
+
+    /**
+     * This method returns current state of adaptive batching
+     * PLEASE NOTE: This method returns null for any InferenceMode other than ADAPTIVE
+     *
+     * @return
+     */
+    public AdaptiveBatchingStats getAdaptiveBatchingStats() {
+        return controller == null ? null : controller.getStats();
+    }
+
     protected long getWorkerCounter(int workerIdx) {
         return zoo[workerIdx].getCounterValue();
     }
@@ -154,6 +282,10 @@ public class ParallelInference {
         if (zoo == null)
             return;
 
+        if (providers != null)
+            for (val p : providers)
+                p.shutdown();
+
         for (int e = 0; e < zoo.length; e++) {
             if (zoo[e] == null)
                 continue;
@@ -228,13 +360,32 @@ public class ParallelInference {
      * @return Output from the network
      */
     public INDArray[] output(INDArray[] input, INDArray[] inputMasks){
+        return output(0, input, inputMasks);
+    }
+
+    /**
+     * Generate predictions/outputs from the network, using specified priority lane
+     *
+     * PLEASE NOTE: Requests rejected due to lane capacity or deadline will throw RejectedExecutionException
+     *
+     * @param lane       Priority lane, 0 is the highest priority
+     * @param input      Input to the network
+     * @param inputMasks Input masks for the network. May be null.
+     * @return Output from the network
+     */
+    public INDArray[] output(int lane, INDArray[] input, INDArray[] inputMasks){
+        if (lane < 0 || lane >= numLanes())
+            throw new IllegalArgumentException("Unknown priority lane [" + lane + "], number of lanes: " + numLanes());
+
         // basically, depending on model type we either throw stuff to specific model, or wait for batch
 
         BasicInferenceObserver observer = new BasicInferenceObserver();
         InferenceObservable observable;
 
         if (inferenceMode == InferenceMode.SEQUENTIAL) {
-            observable = new BasicInferenceObservable(input, inputMasks);
+            val basic = new BasicInferenceObservable(input, inputMasks);
+            basic.setLane(lane);
+            observable = basic;
             observable.addObserver(observer);
             try {
                 observables.put(observable);
@@ -243,7 +394,7 @@ public class ParallelInference {
                 throw new RuntimeException(e);
             }
         } else {
-            observable = provider.setInput(observer, input, inputMasks);
+            observable = providers[lane].setInput(observer, input, inputMasks);
         }
 
         try {
@@ -266,6 +417,10 @@ public class ParallelInference {
         private int batchLimit = DEFAULT_BATCH_LIMIT;
         private InferenceMode inferenceMode = DEFAULT_INFERENCE_MODE;
         private int queueLimit = DEFAULT_QUEUE_LIMIT;
+        private long targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TARGET_LATENCY_MS);
+        private SequenceBucketing sequenceBucketing;
+        private PriorityLane[] priorityLanes;
+        private List<BatchTimingsListener> batchTimingsListeners = new ArrayList<>();
         protected LoadBalanceMode loadBalanceMode = LoadBalanceMode.FIFO;
 
         public Builder(@NonNull Model model) {
@@ -279,6 +434,8 @@ public class ParallelInference {
          * SEQUENTIAL: Input will be sent to last-used worker unmodified.
          * BATCHED: Multiple inputs will be packed into single batch, and
          * sent to last-used device.
+         * ADAPTIVE: Multiple inputs will be packed into single batch, with batch size and
+         * batching window picked from target latency and live arrival rate.
          *
          * @param inferenceMode
          * @return
@@ -352,6 +509,74 @@ public class ParallelInference {
             return this;
         }
 
+        /**
+         * This method defines target latency percentile (p99) for single request.
+         * Batch size and batching window will be picked to fit into this value.
+         *
+         * PLEASE NOTE: This value has effect only in ADAPTIVE inference mode
+         *
+         * Default value: 50 milliseconds
+         *
+         * @param latency
+         * @param timeUnit
+         * @return
+         */
+        public Builder targetLatency(long latency, @NonNull TimeUnit timeUnit) {
+            if (latency < 1)
+                throw new IllegalStateException("Target latency should be positive value");
+
+            this.targetLatencyNanos = timeUnit.toNanos(latency);
+            return this;
+        }
+
+        /**
+         * This method enables grouping of time series requests by sequence length.
+         * Requests within the same bucket are padded to the longest one and executed as single batch,
+         * with masks built automatically, and outputs trimmed back to original lengths.
+         *
+         * PLEASE NOTE: This value has effect only in BATCHED inference mode, and can't be combined with ADAPTIVE mode
+         * PLEASE NOTE: Padding is applied at the end of time series, so this should be used with unidirectional RNNs only
+         *
+         * @param bucketing
+         * @return
+         */
+        public Builder sequenceBucketing(@NonNull SequenceBucketing bucketing) {
+            this.sequenceBucketing = bucketing;
+            return this;
+        }
+
+        /**
+         * This method defines priority lanes for requests. Lane 0 has the highest priority, and workers always
+         * pick requests from the highest priority non-empty lane. Each lane has its own capacity, deadline and
+         * admission policy.
+         *
+         * PLEASE NOTE: If lanes are defined, queueLimit value is ignored
+         * PLEASE NOTE: This value has no effect in INPLACE inference mode
+         *
+         * @param lanes
+         * @return
+         */
+        public Builder priorityLanes(@NonNull PriorityLane... lanes) {
+            if (lanes.length < 1)
+                throw new IllegalStateException("At least one priority lane should be defined");
+
+            this.priorityLanes = lanes;
+            return this;
+        }
+
+        /**
+         * This method adds listener, that will receive queue wait and compute time for each batch
+         *
+         * PLEASE NOTE: This value has effect only in ADAPTIVE inference mode
+         *
+         * @param listener
+         * @return
+         */
+        public Builder batchTimingsListener(@NonNull BatchTimingsListener listener) {
+            this.batchTimingsListeners.add(listener);
+            return this;
+        }
+
         /**
          * This method builds new ParallelInference instance
          *
@@ -369,6 +594,9 @@ public class ParallelInference {
 
                 return inf;
             } else {
+                if (this.inferenceMode == InferenceMode.ADAPTIVE && this.sequenceBucketing != null)
+                    throw new IllegalStateException("Sequence bucketing isn't supported in ADAPTIVE inference mode");
+
                 ParallelInference inference = new ParallelInference();
                 inference.batchLimit = this.batchLimit;
                 inference.queueLimit = this.queueLimit;
@@ -376,6 +604,10 @@ public class ParallelInference {
                 inference.model = this.model;
                 inference.workers = this.workers;
                 inference.loadBalanceMode = this.loadBalanceMode;
+                inference.targetLatencyNanos = this.targetLatencyNanos;
+                inference.sequenceBucketing = this.sequenceBucketing;
+                inference.priorityLanes = this.priorityLanes;
+                inference.batchTimingsListeners = this.batchTimingsListeners;
 
                 inference.init();
 
@@ -389,7 +621,7 @@ public class ParallelInference {
      * This class actually does inference with respect to device affinity
      *
      */
-    private class InferenceWorker extends Thread implements Runnable {
+    private class InferenceWorker extends Thread implements Runnable, ModelReplicaHolder {
         private BlockingQueue<InferenceObservable> inputQueue;
         private AtomicBoolean shouldWork = new AtomicBoolean(true);
         private AtomicBoolean isStopped = new AtomicBoolean(false);
@@ -397,13 +629,21 @@ public class ParallelInference {
         private Model replicatedModel;
         private AtomicLong counter = new AtomicLong(0);
         private boolean rootDevice;
+        private int deviceId;
+
+        // replacement model receiving mirrored traffic during staged update
+        private volatile ModelSwap shadowSwap;
+        private volatile Model shadowModel;
+        // swap, source model and replica staged for the moment swap is committed
+        private volatile Triple<ModelSwap, Model, Model> staged;
 
         private ReentrantReadWriteLock modelLock = new ReentrantReadWriteLock();
 
-        private InferenceWorker(int id, @NonNull Model model, @NonNull BlockingQueue inputQueue, boolean rootDevice) {
+        private InferenceWorker(int id, @NonNull Model model, @NonNull BlockingQueue inputQueue, boolean rootDevice, int deviceId) {
             this.inputQueue = inputQueue;
             this.protoModel = model;
             this.rootDevice = rootDevice;
+            this.deviceId = deviceId;
 
             this.setDaemon(true);
             this.setName("InferenceThread-" + id);
@@ -430,35 +670,107 @@ public class ParallelInference {
          * This method duplicates model for future use during inference
          */
         protected void initializeReplicaModel() {
+            this.replicatedModel = createReplica(protoModel);
+        }
+
+        @Override
+        public int getDeviceId() {
+            return deviceId;
+        }
+
+        @Override
+        public Model createReplica(@NonNull Model protoModel) {
             if (protoModel instanceof ComputationGraph) {
                 if (!rootDevice) {
-                    this.replicatedModel = new ComputationGraph(ComputationGraphConfiguration
+                    Model replica = new ComputationGraph(ComputationGraphConfiguration
                             .fromJson(((ComputationGraph) protoModel).getConfiguration().toJson()));
-                    this.replicatedModel.init();
+                    replica.init();
 
                     synchronized (locker) {
-                        this.replicatedModel.setParams(protoModel.params().unsafeDuplication(true));
+                        replica.setParams(protoModel.params().unsafeDuplication(true));
 
                         Nd4j.getExecutioner().commit();
                     }
+                    return replica;
                 } else {
-                    this.replicatedModel = protoModel;
+                    return protoModel;
                 }
             } else if (protoModel instanceof MultiLayerNetwork) {
                 if (!rootDevice) {
-                    this.replicatedModel = new MultiLayerNetwork(MultiLayerConfiguration.fromJson(
+                    Model replica = new MultiLayerNetwork(MultiLayerConfiguration.fromJson(
                             ((MultiLayerNetwork) protoModel).getLayerWiseConfigurations().toJson()));
-                    this.replicatedModel.init();
+                    replica.init();
 
                     synchronized (locker) {
-                        this.replicatedModel.setParams(protoModel.params().unsafeDuplication(true));
+                        replica.setParams(protoModel.params().unsafeDuplication(true));
 
                         Nd4j.getExecutioner().commit();
                     }
+                    return replica;
                 } else {
-                    this.replicatedModel = protoModel;
+                    return protoModel;
                 }
             }
+
+            return null;
+        }
+
+        @Override
+        public void setShadow(ModelSwap swap, Model replica) {
+            this.shadowModel = replica;
+            this.shadowSwap = swap;
+        }
+
+        @Override
+        public void stageReplica(@NonNull ModelSwap swap, @NonNull Model model, @NonNull Model replica) {
+            this.staged = new Triple<>(swap, model, replica);
+        }
+
+        /**
+         * This method returns replica that should serve next request, switching to staged replica if its swap was
+         * committed already
+         */
+        protected Model currentReplica() {
+            val s = staged;
+            if (s != null) {
+                val state = s.getFirst().getState();
+                if (state == ModelSwapState.COMMITTED) {
+                    try {
+                        modelLock.writeLock().lock();
+                        if (staged == s) {
+                            this.protoModel = s.getSecond();
+                            this.replicatedModel = s.getThird();
+                            staged = null;
+                        }
+                    } finally {
+                        modelLock.writeLock().unlock();
+                    }
+                } else if (state == ModelSwapState.ABORTED || state == ModelSwapState.FAILED) {
+                    staged = null;
+                }
+            }
+
+            return replicatedModel;
+        }
+
+        /**
+         * This method sends already processed batches to replacement model, and compares outputs.
+         * Caller already got its output at this point, so mirroring doesn't affect request latency.
+         */
+        protected void mirror(List<Pair<INDArray[],INDArray[]>> batches, List<INDArray[]> out) {
+            val swap = shadowSwap;
+            val shadow = shadowModel;
+            if (swap == null || shadow == null || !swap.shouldMirror())
+                return;
+
+            try {
+                for (int e = 0; e < batches.size(); e++) {
+                    val candidate = ModelSwap.output(shadow, batches.get(e).getFirst(), batches.get(e).getSecond());
+                    swap.reportShadow(out.get(e), candidate);
+                }
+            } catch (Exception e) {
+                swap.reportShadowFailure(e);
+            }
         }
 
         @Override
@@ -467,25 +779,28 @@ public class ParallelInference {
                 // model should be replicated & initialized here
                 initializeReplicaModel();
 
-                boolean isCG = replicatedModel instanceof  ComputationGraph;
-                boolean isMLN = replicatedModel instanceof  MultiLayerNetwork;
-
                 while (shouldWork.get()) {
                     InferenceObservable request = inputQueue.take();
 
                     if (request != null) {
                         counter.incrementAndGet();
 
+                        // model type can change after staged update
+                        Model replica = currentReplica();
+                        boolean isCG = replica instanceof  ComputationGraph;
+                        boolean isMLN = replica instanceof  MultiLayerNetwork;
+
                         // FIXME: get rid of instanceof here, model won't change during runtime anyway
                         if (isCG) {
                             List<Pair<INDArray[],INDArray[]>> batches = request.getInputBatches();
+                            recordShapes(batches);
                             List<INDArray[]> out = new ArrayList<>(batches.size());
                             try {
                                 for (Pair<INDArray[],INDArray[]> inBatch : batches) {
                                     try {
                                         modelLock.readLock().lock();
 
-                                        INDArray[] output = ((ComputationGraph) replicatedModel).output(false, inBatch.getFirst(), inBatch.getSecond());
+                                        INDArray[] output = ((ComputationGraph) replica).output(false, inBatch.getFirst(), inBatch.getSecond());
                                         out.add(output);
                                     } finally {
                                         modelLock.readLock().unlock();
@@ -493,11 +808,13 @@ public class ParallelInference {
 
                                 }
                                 request.setOutputBatches(out);
+                                mirror(batches, out);
                             } catch (Exception e){
                                 request.setOutputException(e);
                             }
                         } else if (isMLN) {
                             List<Pair<INDArray[],INDArray[]>> batches = request.getInputBatches();
+                            recordShapes(batches);
                             List<INDArray[]> out = new ArrayList<>(batches.size());
                             try {
                                 for (Pair<INDArray[],INDArray[]> inBatch : batches) {
@@ -506,13 +823,14 @@ public class ParallelInference {
                                     try {
                                         modelLock.readLock().lock();
 
-                                        INDArray output = ((MultiLayerNetwork) replicatedModel).output(f, false, fm, null);
+                                        INDArray output = ((MultiLayerNetwork) replica).output(f, false, fm, null);
                                         out.add(new INDArray[]{output});
                                     } finally {
                                         modelLock.readLock().unlock();
                                     }
                                 }
                                 request.setOutputBatches(out);
+                                mirror(batches, out);
                             } catch (Exception e){
                                 request.setOutputException(e);
                             }
@@ -543,12 +861,13 @@ public class ParallelInference {
 
 
     protected static class ObservablesProvider {
-        private BlockingQueue<InferenceObservable> targetQueue;
-        private long nanos;
-        private int batchLimit;
+        protected BlockingQueue<InferenceObservable> targetQueue;
+        protected long nanos;
+        protected int batchLimit;
 
         private volatile BatchedInferenceObservable currentObservable;
-        private final Object locker = new Object();
+        protected final Object locker = new Object();
+        protected int lane = 0;
 
         protected ObservablesProvider(long nanos, int batchLimit, @NonNull BlockingQueue<InferenceObservable> queue) {
             this.targetQueue = queue;
@@ -565,27 +884,209 @@ public class ParallelInference {
         }
 
         protected InferenceObservable setInput(@NonNull Observer observer, INDArray[] input, INDArray[] inputMask) {
+            boolean isNew = false;
+            BatchedInferenceObservable observable;
             synchronized (locker) {
-                boolean isNew = false;
                 if (currentObservable == null || currentObservable.getCounter() >= batchLimit
                                 || currentObservable.isLocked()) {
                     isNew = true;
                     currentObservable = new BatchedInferenceObservable();
+                    currentObservable.setLane(lane);
+                }
+
+                observable = currentObservable;
+                observable.addInput(input, inputMask);
+                observable.addObserver(observer);
+            }
+
+            // queue might block, so it's called outside of locker: other producers keep batching meanwhile
+            if (isNew && !enqueue(observable)) {
+                synchronized (locker) {
+                    if (currentObservable == observable)
+                        currentObservable = null;
+                }
+            }
+
+            return observable;
+        }
+
+        /**
+         * This method sends observable to the workers queue.
+         * If queue rejects it, observable is failed, so all callers waiting for it get the exception.
+         *
+         * PLEASE NOTE: this method might block, so it shouldn't be called within locker
+         *
+         * @return true if observable was accepted by queue
+         */
+        protected boolean enqueue(@NonNull BatchedInferenceObservable observable) {
+            try {
+                targetQueue.put(observable);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (RejectedExecutionException e) {
+                observable.setOutputException(e);
+                return false;
+            }
+        }
+
+        protected void setLane(int lane) {
+            this.lane = lane;
+        }
+
+        protected void shutdown() {
+            // no-op
+        }
+    }
+
+
+    /**
+     * This provider keeps separate batch per sequence length bucket, so time series of similar length
+     * are padded and batched together, and never padded to the longest request in the whole window.
+     */
+    protected static class BucketingObservablesProvider extends ObservablesProvider {
+        private final SequenceBucketing bucketing;
+        private final Map<Integer, BatchedInferenceObservable> currentObservables = new HashMap<>();
+
+        protected BucketingObservablesProvider(long nanos, int batchLimit, @NonNull BlockingQueue<InferenceObservable> queue,
+                        @NonNull SequenceBucketing bucketing) {
+            super(nanos, batchLimit, queue);
+            this.bucketing = bucketing;
+        }
+
+        @Override
+        protected InferenceObservable setInput(@NonNull Observer observer, INDArray[] input, INDArray[] inputMask) {
+            int bucket = bucketing.bucketFor(input);
+
+            boolean isNew = false;
+            BatchedInferenceObservable observable;
+            synchronized (locker) {
+                observable = currentObservables.get(bucket);
+                if (observable == null || observable.getCounter() >= batchLimit || observable.isLocked()) {
+                    isNew = true;
+                    observable = new BatchedInferenceObservable(bucket != SequenceBucketing.NO_BUCKET);
+                    observable.setLane(lane);
+                    currentObservables.put(bucket, observable);
+                }
+
+                observable.addInput(input, inputMask);
+                observable.addObserver(observer);
+            }
+
+            if (isNew && !enqueue(observable)) {
+                synchronized (locker) {
+                    if (currentObservables.get(bucket) == observable)
+                        currentObservables.remove(bucket);
                 }
+            }
+
+            return observable;
+        }
+    }
 
-                currentObservable.addInput(input, inputMask);
-                currentObservable.addObserver(observer);
 
-                try {
-                    if (isNew)
-                        targetQueue.put(currentObservable);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException(e);
+    /**
+     * This provider holds batch until either target batch size is reached, or batching window expires.
+     * Both values are provided by AdaptiveBatchController, and re-evaluated for each new batch.
+     */
+    protected static class AdaptiveObservablesProvider extends ObservablesProvider {
+        private final AdaptiveBatchController controller;
+        private final Thread flusher;
+        private volatile boolean shouldWork = true;
+
+        private AdaptiveBatchedInferenceObservable currentObservable;
+        private long currentTarget;
+        private long currentDeadline;
+
+        protected AdaptiveObservablesProvider(@NonNull AdaptiveBatchController controller, @NonNull BlockingQueue<InferenceObservable> queue) {
+            super(0L, Integer.MAX_VALUE, queue);
+            this.controller = controller;
+
+            this.flusher = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    flushLoop();
                 }
+            });
+            this.flusher.setDaemon(true);
+            this.flusher.setName("AdaptiveBatchFlusher");
+            this.flusher.start();
+        }
 
-                return currentObservable;
+        @Override
+        protected InferenceObservable setInput(@NonNull Observer observer, INDArray[] input, INDArray[] inputMask) {
+            AdaptiveBatchedInferenceObservable observable;
+            AdaptiveBatchedInferenceObservable ready = null;
+            synchronized (locker) {
+                long now = System.nanoTime();
+                controller.onArrival(now);
+
+                if (currentObservable == null) {
+                    long[] plan = controller.plan();
+                    currentObservable = new AdaptiveBatchedInferenceObservable(controller, now);
+                    currentObservable.setLane(lane);
+                    currentTarget = plan[0];
+                    currentDeadline = now + plan[1];
+                }
+
+                observable = currentObservable;
+                observable.addInput(input, inputMask);
+                observable.addObserver(observer);
+
+                if (observable.getCounter() >= currentTarget || currentDeadline - now <= 0)
+                    ready = detach();
+                else
+                    locker.notifyAll();
+            }
+
+            if (ready != null)
+                enqueue(ready);
+
+            return observable;
+        }
+
+        /**
+         * This method detaches current batch, so no more inputs are added to it. Should be called within locker only.
+         * Detached batch should be passed to enqueue() outside of locker.
+         */
+        private AdaptiveBatchedInferenceObservable detach() {
+            val observable = currentObservable;
+            currentObservable = null;
+
+            observable.markDispatched(System.nanoTime());
+            return observable;
+        }
+
+        private void flushLoop() {
+            while (shouldWork) {
+                AdaptiveBatchedInferenceObservable ready = null;
+                synchronized (locker) {
+                    try {
+                        if (currentObservable == null) {
+                            locker.wait();
+                        } else {
+                            long remaining = currentDeadline - System.nanoTime();
+                            if (remaining <= 0)
+                                ready = detach();
+                            else
+                                TimeUnit.NANOSECONDS.timedWait(locker, remaining);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+
+                if (ready != null)
+                    enqueue(ready);
             }
         }
+
+        @Override
+        protected void shutdown() {
+            shouldWork = false;
+            flusher.interrupt();
+        }
     }
 }
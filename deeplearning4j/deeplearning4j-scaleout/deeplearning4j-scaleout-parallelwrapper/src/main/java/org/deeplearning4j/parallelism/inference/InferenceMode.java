@@ -36,4 +36,9 @@ public enum InferenceMode {
      * Inference will applied in the calling thread instead of workers. Worker models will be using shared parameters on per-device basis.
      */
     INPLACE,
+
+    /**
+     * input will be included into the batch, with batch size and batching window picked for each batch from target latency and live arrival rate
+     */
+    ADAPTIVE,
 }
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.parallelism.inference;
+
+import lombok.NonNull;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.exception.ND4JIllegalStateException;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class defines how time series requests are grouped by sequence length for batched inference.
+ *
+ * Each request goes to the smallest bucket with upper boundary >= its sequence length, and requests longer than
+ * the last boundary share one extra bucket. Within a bucket, requests are padded to the longest one, and masks are
+ * built automatically.
+ *
+ * PLEASE NOTE: Padding is applied at the end of time series, so it's suitable for unidirectional RNNs (LSTM,
+ * GravesLSTM, SimpleRnn) or masking-aware models only.
+ */
+public class SequenceBucketing implements Serializable {
+    /**
+     * Bucket id used for inputs that are not time series
+     */
+    public static final int NO_BUCKET = -1;
+
+    private final long[] boundaries;
+
+    /**
+     * @param boundaries Upper (inclusive) sequence length boundaries of buckets
+     */
+    public SequenceBucketing(@NonNull long... boundaries) {
+        if (boundaries.length < 1)
+            throw new ND4JIllegalStateException("At least one bucket boundary should be provided");
+
+        this.boundaries = Arrays.copyOf(boundaries, boundaries.length);
+        Arrays.sort(this.boundaries);
+
+        if (this.boundaries[0] < 1)
+            throw new ND4JIllegalStateException("Bucket boundaries should be positive values");
+    }
+
+    /**
+     * This method builds buckets with boundaries 1, 2, 4, 8... up to maxLength, so padding never exceeds 2x sequence length
+     *
+     * @param maxLength
+     * @return
+     */
+    public static SequenceBucketing powersOfTwo(long maxLength) {
+        if (maxLength < 1)
+            throw new ND4JIllegalStateException("Max length should be positive value");
+
+        List<Long> list = new ArrayList<>();
+        for (long b = 1; b < maxLength; b *= 2)
+            list.add(b);
+        list.add(maxLength);
+
+        long[] boundaries = new long[list.size()];
+        for (int e = 0; e < boundaries.length; e++)
+            boundaries[e] = list.get(e);
+
+        return new SequenceBucketing(boundaries);
+    }
+
+    /**
+     * This method returns bucket id for given sequence length
+     *
+     * @param length
+     * @return
+     */
+    public int bucketFor(long length) {
+        int idx = Arrays.binarySearch(boundaries, length);
+        return idx >= 0 ? idx : -(idx + 1);
+    }
+
+    /**
+     * This method returns bucket id for given request. Only first input array is considered.
+     *
+     * @param input
+     * @return bucket id, or NO_BUCKET if first input isn't time series
+     */
+    public int bucketFor(@NonNull INDArray[] input) {
+        if (input.length == 0 || input[0].rank() != 3)
+            return NO_BUCKET;
+
+        return bucketFor(input[0].size(2));
+    }
+
+    public long[] getBoundaries() {
+        return Arrays.copyOf(boundaries, boundaries.length);
+    }
+}
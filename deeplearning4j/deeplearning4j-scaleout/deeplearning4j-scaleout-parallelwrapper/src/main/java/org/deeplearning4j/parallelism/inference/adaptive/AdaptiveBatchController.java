@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.parallelism.inference.adaptive;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.linalg.exception.ND4JIllegalStateException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * This class picks batch size and batching window for ParallelInference in ADAPTIVE mode.
+ *
+ * Decision is based on:
+ * - target latency percentile (p99 by default)
+ * - live arrival rate, estimated as exponential moving average of inter-arrival times
+ * - cost model of the forward pass, fitted as compute(b) = a + b * slope over recent batches
+ * - observed queue wait for the workers
+ *
+ * Planned latency budget is additionally scaled by "headroom" factor, which is decreased multiplicatively
+ * whenever observed latency percentile exceeds the target, and increased additively otherwise.
+ */
+@Slf4j
+public class AdaptiveBatchController {
+    protected static final double EWMA_ALPHA = 0.1;
+    protected static final double MIN_HEADROOM = 0.1;
+    protected static final double HEADROOM_DECREASE = 0.9;
+    protected static final double HEADROOM_INCREASE = 0.02;
+
+    protected final long targetLatencyNanos;
+    protected final int maxBatchSize;
+    protected final double percentile;
+
+    // arrival rate estimation
+    protected long lastArrivalNanos = -1;
+    protected double interArrivalNanos = -1;
+
+    // cost model samples: batch sizes and compute times, used as ring buffers
+    protected final int[] sizes;
+    protected final long[] computes;
+    protected int costSamples = 0;
+    protected double costIntercept = 0.0;
+    protected double costSlope = 0.0;
+
+    // observed latencies, used as ring buffer
+    protected final long[] latencies;
+    protected int latencySamples = 0;
+    protected long observedLatencyNanos = 0;
+
+    protected double queueWaitNanos = 0.0;
+    protected double meanComputeNanos = 0.0;
+    protected double headroom = 1.0;
+
+    protected long numberOfBatches = 0;
+    protected long numberOfRequests = 0;
+
+    protected final List<BatchTimingsListener> listeners = new CopyOnWriteArrayList<>();
+
+    public AdaptiveBatchController(long targetLatencyNanos, int maxBatchSize) {
+        this(targetLatencyNanos, maxBatchSize, 0.99, 64, 1024);
+    }
+
+    public AdaptiveBatchController(long targetLatencyNanos, int maxBatchSize, double percentile, int costWindow,
+                    int latencyWindow) {
+        if (targetLatencyNanos <= 0)
+            throw new ND4JIllegalStateException("Target latency should be positive value");
+
+        if (maxBatchSize < 1)
+            throw new ND4JIllegalStateException("Batch size should be positive value");
+
+        if (percentile <= 0.0 || percentile > 1.0)
+            throw new ND4JIllegalStateException("Percentile should be in range (0, 1]");
+
+        this.targetLatencyNanos = targetLatencyNanos;
+        this.maxBatchSize = maxBatchSize;
+        this.percentile = percentile;
+        this.sizes = new int[costWindow];
+        this.computes = new long[costWindow];
+        this.latencies = new long[latencyWindow];
+    }
+
+    public void addListener(@NonNull BatchTimingsListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * This method should be called for each incoming request
+     *
+     * @param timeNanos arrival time, as reported by System.nanoTime()
+     */
+    public synchronized void onArrival(long timeNanos) {
+        numberOfRequests++;
+
+        if (lastArrivalNanos >= 0) {
+            long delta = Math.max(0, timeNanos - lastArrivalNanos);
+            interArrivalNanos = interArrivalNanos < 0 ? delta : ewma(interArrivalNanos, delta);
+        }
+
+        lastArrivalNanos = timeNanos;
+    }
+
+    /**
+     * This method returns estimated compute time for batch of given size, in nanoseconds
+     *
+     * @param batchSize
+     * @return
+     */
+    public synchronized double estimateComputeNanos(int batchSize) {
+        return Math.max(0.0, costIntercept + costSlope * batchSize);
+    }
+
+    /**
+     * This method returns number of requests that should be packed into next batch
+     *
+     * @return
+     */
+    public synchronized int getTargetBatchSize() {
+        return (int) plan()[0];
+    }
+
+    /**
+     * This method returns max time next batch is allowed to wait for more requests, in nanoseconds
+     *
+     * @return
+     */
+    public synchronized long getWindowNanos() {
+        return plan()[1];
+    }
+
+    /**
+     * This method returns both batch size and batching window, computed together
+     *
+     * @return array of [batchSize, windowNanos]
+     */
+    public synchronized long[] plan() {
+        double budget = targetLatencyNanos * headroom - queueWaitNanos;
+
+        // nothing to plan on yet, or we're already late: send requests as soon as they come
+        if (budget <= 0 || interArrivalNanos < 0 || costSamples == 0)
+            return new long[] {maxBatchSize, 0L};
+
+        for (int b = maxBatchSize; b > 1; b--) {
+            double fill = (b - 1) * interArrivalNanos;
+            double compute = estimateComputeNanos(b);
+            if (fill + compute <= budget)
+                return new long[] {b, (long) Math.min(fill, budget - compute)};
+        }
+
+        return new long[] {1, 0L};
+    }
+
+    /**
+     * This method should be called once batch is processed
+     *
+     * @param timings
+     */
+    public void onBatchCompleted(@NonNull BatchTimings timings) {
+        synchronized (this) {
+            numberOfBatches++;
+
+            queueWaitNanos = numberOfBatches == 1 ? timings.getQueueWaitNanos()
+                            : ewma(queueWaitNanos, timings.getQueueWaitNanos());
+            meanComputeNanos = numberOfBatches == 1 ? timings.getComputeNanos()
+                            : ewma(meanComputeNanos, timings.getComputeNanos());
+
+            int cPos = costSamples % sizes.length;
+            sizes[cPos] = timings.getBatchSize();
+            computes[cPos] = timings.getComputeNanos();
+            costSamples++;
+            fitCostModel();
+
+            latencies[latencySamples % latencies.length] = timings.getLatencyNanos();
+            latencySamples++;
+            observedLatencyNanos = latencyPercentile();
+
+            if (observedLatencyNanos > targetLatencyNanos)
+                headroom = Math.max(MIN_HEADROOM, headroom * HEADROOM_DECREASE);
+            else
+                headroom = Math.min(1.0, headroom + HEADROOM_INCREASE);
+        }
+
+        for (BatchTimingsListener listener : listeners)
+            listener.onBatchCompleted(timings);
+    }
+
+    /**
+     * This method returns snapshot of current controller state
+     *
+     * @return
+     */
+    public synchronized AdaptiveBatchingStats getStats() {
+        long[] plan = plan();
+        return AdaptiveBatchingStats.builder()
+                        .numberOfBatches(numberOfBatches)
+                        .numberOfRequests(numberOfRequests)
+                        .arrivalRate(interArrivalNanos > 0 ? 1e9 / interArrivalNanos : 0.0)
+                        .targetBatchSize((int) plan[0])
+                        .windowNanos(plan[1])
+                        .targetLatencyNanos(targetLatencyNanos)
+                        .observedLatencyNanos(observedLatencyNanos)
+                        .meanQueueWaitNanos(queueWaitNanos)
+                        .meanComputeNanos(meanComputeNanos)
+                        .headroom(headroom)
+                        .build();
+    }
+
+    protected static double ewma(double current, double sample) {
+        return current + EWMA_ALPHA * (sample - current);
+    }
+
+    /**
+     * Least squares fit of compute time vs batch size. If all recent batches had the same size, compute
+     * time is assumed to be proportional to batch size, which overestimates larger batches and is safe.
+     */
+    protected void fitCostModel() {
+        int n = Math.min(costSamples, sizes.length);
+        double meanSize = 0.0;
+        double meanCompute = 0.0;
+        for (int i = 0; i < n; i++) {
+            meanSize += sizes[i];
+            meanCompute += computes[i];
+        }
+        meanSize /= n;
+        meanCompute /= n;
+
+        double cov = 0.0;
+        double var = 0.0;
+        for (int i = 0; i < n; i++) {
+            double ds = sizes[i] - meanSize;
+            cov += ds * (computes[i] - meanCompute);
+            var += ds * ds;
+        }
+
+        if (var < 1e-6 || cov <= 0.0) {
+            costIntercept = 0.0;
+            costSlope = meanCompute / meanSize;
+        } else {
+            costSlope = cov / var;
+            costIntercept = meanCompute - costSlope * meanSize;
+        }
+    }
+
+    protected long latencyPercentile() {
+        int n = Math.min(latencySamples, latencies.length);
+        long[] sorted = Arrays.copyOf(latencies, n);
+        Arrays.sort(sorted);
+        int idx = (int) Math.ceil(percentile * n) - 1;
+        return sorted[Math.max(0, Math.min(n - 1, idx))];
+    }
+}
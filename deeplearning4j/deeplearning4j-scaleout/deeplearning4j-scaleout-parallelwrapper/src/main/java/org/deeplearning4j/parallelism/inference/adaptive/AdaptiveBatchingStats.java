@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.parallelism.inference.adaptive;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of {@link AdaptiveBatchController} state
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AdaptiveBatchingStats {
+    private long numberOfBatches;
+    private long numberOfRequests;
+
+    /**
+     * Estimated arrival rate, requests per second
+     */
+    private double arrivalRate;
+
+    /**
+     * Batch size that will be used for the next batch
+     */
+    private int targetBatchSize;
+
+    /**
+     * Batching window that will be used for the next batch, in nanoseconds
+     */
+    private long windowNanos;
+
+    private long targetLatencyNanos;
+    private long observedLatencyNanos;
+    private double meanQueueWaitNanos;
+    private double meanComputeNanos;
+
+    /**
+     * Fraction of latency budget currently used for planning, in range (0, 1]
+     */
+    private double headroom;
+}
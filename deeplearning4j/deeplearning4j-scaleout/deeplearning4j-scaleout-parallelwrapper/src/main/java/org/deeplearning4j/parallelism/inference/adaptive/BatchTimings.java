@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.parallelism.inference.adaptive;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Timings of a single batch processed by ParallelInference in {@link org.deeplearning4j.parallelism.inference.InferenceMode#ADAPTIVE} mode.
+ *
+ * All values are in nanoseconds.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTimings {
+    /**
+     * Number of requests packed into this batch
+     */
+    private int batchSize;
+
+    /**
+     * Time between the first request arrival and the moment batch was sent to the workers queue
+     */
+    private long batchingNanos;
+
+    /**
+     * Time batch spent in the workers queue, waiting for a free worker
+     */
+    private long queueWaitNanos;
+
+    /**
+     * Time spent by worker on the batch: merging inputs, forward pass and output split
+     */
+    private long computeNanos;
+
+    /**
+     * End-to-end latency of the oldest request in this batch, i.e. the worst latency within this batch
+     */
+    public long getLatencyNanos() {
+        return batchingNanos + queueWaitNanos + computeNanos;
+    }
+}
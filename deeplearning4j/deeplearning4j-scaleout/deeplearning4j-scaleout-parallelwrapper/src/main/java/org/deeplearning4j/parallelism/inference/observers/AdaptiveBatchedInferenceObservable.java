@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.parallelism.inference.observers;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.parallelism.inference.adaptive.AdaptiveBatchController;
+import org.deeplearning4j.parallelism.inference.adaptive.BatchTimings;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.primitives.Pair;
+
+import java.util.List;
+
+/**
+ * BatchedInferenceObservable that tracks its own lifecycle timestamps, and reports them to AdaptiveBatchController
+ */
+@Slf4j
+public class AdaptiveBatchedInferenceObservable extends BatchedInferenceObservable {
+    private final AdaptiveBatchController controller;
+
+    @Getter
+    private final long createdNanos;
+    private volatile long dispatchedNanos = -1;
+    private volatile long startedNanos = -1;
+
+    public AdaptiveBatchedInferenceObservable(@NonNull AdaptiveBatchController controller, long createdNanos) {
+        super();
+        this.controller = controller;
+        this.createdNanos = createdNanos;
+    }
+
+    /**
+     * This method marks the moment batch was sent to the workers queue
+     *
+     * @param timeNanos
+     */
+    public void markDispatched(long timeNanos) {
+        this.dispatchedNanos = timeNanos;
+    }
+
+    @Override
+    public List<Pair<INDArray[], INDArray[]>> getInputBatches() {
+        startedNanos = System.nanoTime();
+        return super.getInputBatches();
+    }
+
+    @Override
+    public void setOutputBatches(List<INDArray[]> output) {
+        long finished = System.nanoTime();
+
+        if (startedNanos >= 0) {
+            long dispatched = dispatchedNanos >= 0 ? dispatchedNanos : createdNanos;
+            try {
+                controller.onBatchCompleted(new BatchTimings(getCounter(), dispatched - createdNanos,
+                                startedNanos - dispatched, finished - startedNanos));
+            } catch (Exception e) {
+                // stats must never break inference itself
+                log.error("Failed to report batch timings", e);
+            }
+        }
+
+        super.setOutputBatches(output);
+    }
+}
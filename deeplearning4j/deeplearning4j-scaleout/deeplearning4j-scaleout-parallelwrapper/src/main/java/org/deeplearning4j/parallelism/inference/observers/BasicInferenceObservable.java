@@ -19,6 +19,7 @@ package org.deeplearning4j.parallelism.inference.observers;
 import com.google.common.base.Preconditions;
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.deeplearning4j.parallelism.inference.InferenceObservable;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -27,6 +28,7 @@ import org.nd4j.linalg.primitives.Pair;
 import java.util.Collections;
 import java.util.List;
 import java.util.Observable;
+import java.util.Observer;
 
 /**
  * This class holds reference input, and implements basic use case: SEQUENTIAL inference
@@ -40,6 +42,20 @@ public class BasicInferenceObservable extends Observable implements InferenceObs
     private INDArray[] output;
     protected Exception exception;
 
+    /**
+     * Priority lane of this request, 0 is the highest priority
+     */
+    @Getter
+    @Setter
+    private int lane = 0;
+
+    // set once output or exception is available
+    private volatile boolean finished = false;
+
+    // time of output() call, used for priority lane deadlines
+    private long submittedNanos = System.nanoTime();
+    private volatile boolean rejected = false;
+
 
     public BasicInferenceObservable(INDArray... inputs) {
         this(inputs, null);
@@ -60,14 +76,49 @@ public class BasicInferenceObservable extends Observable implements InferenceObs
     public void addInput(@NonNull INDArray[] input, INDArray[] inputMasks) {
         this.input = input;
         this.inputMasks = inputMasks;
+        this.submittedNanos = System.nanoTime();
+    }
+
+    /**
+     * This method returns submission time of the oldest input of this observable, as System.nanoTime()
+     *
+     * @return
+     */
+    public long getSubmittedNanos() {
+        return submittedNanos;
+    }
+
+    /**
+     * This method rejects inputs that were submitted more than deadlineNanos ago, so they won't be computed.
+     * PLEASE NOTE: if no active inputs are left, observable should be failed via {@link #setOutputException(Exception)}
+     *
+     * @param deadlineNanos max time since submission
+     * @param nowNanos      current System.nanoTime()
+     * @param exception     exception callers of rejected inputs will get
+     * @return number of inputs rejected by this call
+     */
+    public int rejectExpired(long deadlineNanos, long nowNanos, @NonNull Exception exception) {
+        if (rejected || nowNanos - submittedNanos <= deadlineNanos)
+            return 0;
+
+        rejected = true;
+        return 1;
+    }
+
+    /**
+     * This method returns number of inputs that weren't rejected
+     *
+     * @return
+     */
+    public int getNumActiveInputs() {
+        return rejected ? 0 : 1;
     }
 
     @Override
     public void setOutputBatches(@NonNull List<INDArray[]> output) {
         Preconditions.checkArgument(output.size() == 1, "Expected size 1 output: got size " + output.size());
         this.output = output.get(0);
-        this.setChanged();
-        notifyObservers();
+        notifyFinished();
     }
 
     @Override
@@ -78,10 +129,29 @@ public class BasicInferenceObservable extends Observable implements InferenceObs
     @Override
     public void setOutputException(Exception exception){
         this.exception = exception;
+        notifyFinished();
+    }
+
+    /**
+     * This method marks this observable as finished, and notifies all observers
+     */
+    protected void notifyFinished() {
+        finished = true;
         this.setChanged();
         notifyObservers();
     }
 
+    /**
+     * Observers added after output became available are notified right away
+     */
+    @Override
+    public synchronized void addObserver(Observer observer) {
+        super.addObserver(observer);
+
+        if (finished)
+            observer.update(this, null);
+    }
+
     @Override
     public INDArray[] getOutput(){
         checkOutputException();
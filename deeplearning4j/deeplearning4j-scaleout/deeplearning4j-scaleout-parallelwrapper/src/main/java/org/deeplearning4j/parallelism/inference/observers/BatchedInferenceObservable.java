@@ -48,6 +48,11 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
     private AtomicInteger counter = new AtomicInteger(0);
     private ThreadLocal<Integer> position = new ThreadLocal<>();
     private List<int[]> outputBatchInputArrays = new ArrayList<>();
+    // submission time and rejection reason of each input, by position
+    private List<Long> submitted = new ArrayList<>();
+    private List<Exception> rejections = new ArrayList<>();
+    // positions of inputs that are actually computed, null means all of them
+    private List<Integer> activePositions;
 
     private final Object locker = new Object();
 
@@ -55,8 +60,19 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
     private AtomicBoolean isLocked = new AtomicBoolean(false);
     private AtomicBoolean isReadLocked = new AtomicBoolean(false);
 
+    // if true, time series of different length will be padded and batched together
+    private final boolean padTimeSeries;
+
     public BatchedInferenceObservable() {
+        this(false);
+    }
 
+    /**
+     * @param padTimeSeries if true, time series inputs of different length will be padded to the longest one and
+     *                      batched together, with masks built automatically. Outputs are trimmed back to original lengths.
+     */
+    public BatchedInferenceObservable(boolean padTimeSeries) {
+        this.padTimeSeries = padTimeSeries;
     }
 
     @Override
@@ -64,6 +80,8 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
         synchronized (locker) {
             inputs.add(input);
             this.inputMasks.add(inputMasks);
+            submitted.add(System.nanoTime());
+            rejections.add(null);
             position.set(counter.getAndIncrement());
 
             if (isReadLocked.get())
@@ -71,6 +89,41 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
         }
     }
 
+    @Override
+    public long getSubmittedNanos() {
+        synchronized (locker) {
+            return submitted.isEmpty() ? super.getSubmittedNanos() : submitted.get(0);
+        }
+    }
+
+    /**
+     * Only expired inputs are rejected, the rest of this batch is computed as usual
+     */
+    @Override
+    public int rejectExpired(long deadlineNanos, long nowNanos, Exception exception) {
+        synchronized (locker) {
+            int cnt = 0;
+            for (int e = 0; e < submitted.size(); e++) {
+                if (rejections.get(e) == null && nowNanos - submitted.get(e) > deadlineNanos) {
+                    rejections.set(e, exception);
+                    cnt++;
+                }
+            }
+            return cnt;
+        }
+    }
+
+    @Override
+    public int getNumActiveInputs() {
+        synchronized (locker) {
+            int cnt = 0;
+            for (Exception e : rejections)
+                if (e == null)
+                    cnt++;
+            return cnt;
+        }
+    }
+
     @Override
     public List<Pair<INDArray[],INDArray[]>> getInputBatches() {
         realLocker.writeLock().lock();
@@ -78,9 +131,23 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
 
         outputBatchInputArrays.clear();
 
+        // rejected inputs are excluded from batch
+        List<INDArray[]> inputs = new ArrayList<>(this.inputs.size());
+        List<INDArray[]> inputMasks = new ArrayList<>(this.inputs.size());
+        synchronized (locker) {
+            activePositions = new ArrayList<>(this.inputs.size());
+            for (int e = 0; e < this.inputs.size(); e++) {
+                if (rejections.get(e) == null) {
+                    activePositions.add(e);
+                    inputs.add(this.inputs.get(e));
+                    inputMasks.add(this.inputMasks.get(e));
+                }
+            }
+        }
+
         // this method should pile individual examples into single batch
 
-        if (counter.get() > 1) {
+        if (inputs.size() > 1) {
 
             int pos = 0;
             List<Pair<INDArray[],INDArray[]>> out = new ArrayList<>();
@@ -90,7 +157,7 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
                 //First: determine which we can actually batch...
                 int lastPossible = pos;
                 for (int i = pos+1; i < inputs.size(); i++) {
-                    if (canBatch(inputs.get(pos), inputs.get(i))) {
+                    if (canBatch(inputs.get(pos), inputMasks.get(pos), inputs.get(i), inputMasks.get(i))) {
                         lastPossible = i;
                     } else {
                         break;
@@ -131,31 +198,50 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
         }
     }
 
-    private static boolean canBatch(INDArray[] first, INDArray[] candidate){
+    private boolean canBatch(INDArray[] first, INDArray[] firstMasks, INDArray[] candidate, INDArray[] candidateMasks){
         //Check if we can batch these inputs into the one array. This isn't always possible - for example, some fully
         // convolutional nets can support different input image sizes
-        //For now: let's simply require that the inputs have the same shape
-        //In the future: we'll intelligently handle the RNN variable length case
+        //By default: let's simply require that the inputs have the same shape
         //Note also we can ignore input masks here - they should have shared dimensions with the input, thus if the
         // inputs can be batched, so can the masks
+        //If padding is allowed, time series of different length can be batched too, as long as masks are per time step
         for(int i=0; i<first.length; i++ ){
-            if(!Arrays.equals(first[i].shape(), candidate[i].shape())){
+            if(Arrays.equals(first[i].shape(), candidate[i].shape()))
+                continue;
+
+            if (!padTimeSeries || first[i].rank() != 3 || candidate[i].rank() != 3
+                            || first[i].size(1) != candidate[i].size(1))
+                return false;
+
+            if (!isPerStepMask(firstMasks, i) || !isPerStepMask(candidateMasks, i))
                 return false;
-            }
         }
         return true;
     }
 
+    private static boolean isPerStepMask(INDArray[] masks, int idx) {
+        return masks == null || masks[idx] == null || masks[idx].rank() == 2;
+    }
+
+    /**
+     * This method maps index of computed input to its position, i.e. skipping rejected inputs
+     */
+    private int positionOf(int idx) {
+        return activePositions == null ? idx : activePositions.get(idx);
+    }
+
     @Override
     public void setOutputBatches(List<INDArray[]> output) {
         //this method should split batched output INDArray[] into multiple separate INDArrays
+        //outputs are stored by input position, rejected inputs have no output
+        outputs = new ArrayList<>(Collections.<INDArray[]>nCopies(inputs.size(), null));
         int countNumInputBatches = 0;   //Counter for total number of input batches processed
         for( int outBatchNum=0; outBatchNum<output.size(); outBatchNum++ ){ //Iterate over output batch
             INDArray[] currBatchOutputs = output.get(outBatchNum);
             int[] inputBatchIdxs = outputBatchInputArrays.get(outBatchNum);
             int inputBatchCount = inputBatchIdxs[1] - inputBatchIdxs[0] + 1;
             for (int i = 0; i < inputBatchCount; i++) {
-                outputs.add(new INDArray[currBatchOutputs.length]);
+                outputs.set(positionOf(countNumInputBatches + i), new INDArray[currBatchOutputs.length]);
             }
 
             // pull back results for individual input batches
@@ -166,7 +252,7 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
                 int currentInputBatch = firstInputBatch;
                 //Iterate over input batch (examples) - note that each output batch is made up of 1 or more input batches
                 for (int inputInBatch = 0; inputInBatch < inputBatchCount; inputInBatch++) {
-                    outputs.get(currentInputBatch++)[outputNumber] = split[inputInBatch];
+                    outputs.get(positionOf(currentInputBatch++))[outputNumber] = split[inputInBatch];
 
                     if(outputNumber == 0){
                         countNumInputBatches++;
@@ -175,8 +261,14 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
             }
         }
 
-        this.setChanged();
-        notifyObservers();
+        notifyFinished();
+    }
+
+    @Override
+    public void setOutputException(Exception exception) {
+        // no more inputs should be added to failed batch
+        isLocked.set(true);
+        super.setOutputException(exception);
     }
 
     private INDArray[] splitExamples(INDArray netOutput, int firstInputComponent, int lastInputComponent){
@@ -190,10 +282,26 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
             for(int i=1; i<indices.length; i++ ){
                 indices[i] = NDArrayIndex.all();
             }
+
+            //Padded time series: per time step outputs should be trimmed back to original length of each input
+            long maxLength = -1;
+            boolean lengthsDiffer = false;
+            if (padTimeSeries && netOutput.rank() == 3 && inputs.get(positionOf(firstInputComponent))[0].rank() == 3) {
+                for (int inNum = 0; inNum < numSplits; inNum++) {
+                    long length = inputs.get(positionOf(firstInputComponent + inNum))[0].size(2);
+                    lengthsDiffer |= maxLength >= 0 && length != maxLength;
+                    maxLength = Math.max(maxLength, length);
+                }
+            }
+            boolean trim = lengthsDiffer && netOutput.size(2) == maxLength;
+
             int examplesSoFar = 0;
             for( int inNum = 0; inNum < numSplits; inNum++ ){
-                val inSizeEx = inputs.get(firstInputComponent + inNum)[0].size(0);
+                val in = inputs.get(positionOf(firstInputComponent + inNum));
+                val inSizeEx = in[0].size(0);
                 indices[0] = NDArrayIndex.interval(examplesSoFar, examplesSoFar+inSizeEx);
+                if (trim)
+                    indices[2] = NDArrayIndex.interval(0, in[0].size(2));
                 out[inNum] = netOutput.get(indices);
                 examplesSoFar += inSizeEx;
             }
@@ -239,6 +347,15 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
     @Override
     public INDArray[] getOutput() {
         // basically we should take care of splits here: each client should get its own part of output, wrt order number
+        Exception rejection;
+        synchronized (locker) {
+            rejection = rejections.get(position.get());
+        }
+        if (rejection instanceof RuntimeException)
+            throw (RuntimeException) rejection;
+        else if (rejection != null)
+            throw new RuntimeException(rejection);
+
         checkOutputException();
         return outputs.get(position.get());
     }
@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+package org.deeplearning4j.parallelism.inference.priority;
+
+/**
+ * This enum defines behavior of priority lane when its capacity is exhausted
+ */
+public enum AdmissionPolicy {
+    /**
+     * Caller will be blocked until lane has free space
+     */
+    BLOCK,
+
+    /**
+     * Request will be rejected immediately with RejectedExecutionException
+     */
+    REJECT,
+}
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+package org.deeplearning4j.parallelism.inference.priority;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of counters for single priority lane
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LaneStats {
+    private String name;
+
+    /**
+     * Number of requests (or batches) currently waiting in this lane
+     */
+    private int queued;
+
+    /**
+     * Number of requests (or batches) accepted into this lane
+     */
+    private long accepted;
+
+    /**
+     * Number of requests (or batches) rejected due to lane capacity
+     */
+    private long rejected;
+
+    /**
+     * Number of requests dropped due to deadline. In batched modes each expired request is counted, not the whole batch
+     */
+    private long expired;
+
+    /**
+     * Number of requests (or batches) handed over to workers
+     */
+    private long dispatched;
+}
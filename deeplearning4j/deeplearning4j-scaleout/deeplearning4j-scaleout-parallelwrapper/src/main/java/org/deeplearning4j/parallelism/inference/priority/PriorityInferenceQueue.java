@@ -0,0 +1,396 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.parallelism.inference.priority;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.parallelism.inference.InferenceObservable;
+import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObservable;
+import org.nd4j.linalg.exception.ND4JIllegalStateException;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * BlockingQueue implementation with multiple priority lanes, used as ParallelInference workers queue.
+ *
+ * - Lane of each request is taken from {@link BasicInferenceObservable#getLane()}, other observables go to lane 0
+ * - Consumers always take from the highest priority (lowest index) non-empty lane
+ * - Requests that waited longer than lane deadline since output() call are dropped before compute, and their callers
+ *   get RejectedExecutionException. Batched requests are dropped one by one, the rest of their batch is computed as usual
+ * - Full lane either blocks producer, or rejects request right away, depending on lane AdmissionPolicy
+ */
+@Slf4j
+public class PriorityInferenceQueue extends AbstractQueue<InferenceObservable> implements BlockingQueue<InferenceObservable> {
+    private final PriorityLane[] lanes;
+    private final ArrayDeque<Entry>[] queues;
+    private final long[] deadlines;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition[] notFull;
+
+    private final AtomicLong[] accepted;
+    private final AtomicLong[] rejected;
+    private final AtomicLong[] expired;
+    private final AtomicLong[] dispatched;
+
+    private int count = 0;
+
+    @SuppressWarnings("unchecked")
+    public PriorityInferenceQueue(@NonNull PriorityLane... lanes) {
+        if (lanes.length < 1)
+            throw new ND4JIllegalStateException("At least one priority lane should be defined");
+
+        this.lanes = lanes;
+        this.queues = new ArrayDeque[lanes.length];
+        this.deadlines = new long[lanes.length];
+        this.notFull = new Condition[lanes.length];
+        this.accepted = new AtomicLong[lanes.length];
+        this.rejected = new AtomicLong[lanes.length];
+        this.expired = new AtomicLong[lanes.length];
+        this.dispatched = new AtomicLong[lanes.length];
+
+        for (int e = 0; e < lanes.length; e++) {
+            if (lanes[e].getCapacity() < 1)
+                throw new ND4JIllegalStateException("Lane capacity should be positive value");
+
+            queues[e] = new ArrayDeque<>(lanes[e].getCapacity());
+            deadlines[e] = TimeUnit.MILLISECONDS.toNanos(lanes[e].getDeadlineMs());
+            notFull[e] = lock.newCondition();
+            accepted[e] = new AtomicLong(0);
+            rejected[e] = new AtomicLong(0);
+            expired[e] = new AtomicLong(0);
+            dispatched[e] = new AtomicLong(0);
+        }
+    }
+
+    public int numLanes() {
+        return lanes.length;
+    }
+
+    protected int laneOf(InferenceObservable observable) {
+        int lane = observable instanceof BasicInferenceObservable ? ((BasicInferenceObservable) observable).getLane() : 0;
+        if (lane < 0 || lane >= lanes.length)
+            throw new ND4JIllegalStateException("Unknown priority lane [" + lane + "], number of lanes: " + lanes.length);
+
+        return lane;
+    }
+
+    /**
+     * This method adds request to its lane. Depending on lane AdmissionPolicy, it either blocks or throws
+     * RejectedExecutionException if lane is full
+     *
+     * @param observable
+     * @throws InterruptedException
+     */
+    @Override
+    public void put(@NonNull InferenceObservable observable) throws InterruptedException {
+        int lane = laneOf(observable);
+        lock.lockInterruptibly();
+        try {
+            while (queues[lane].size() >= lanes[lane].getCapacity()) {
+                if (lanes[lane].getAdmissionPolicy() == AdmissionPolicy.REJECT) {
+                    rejected[lane].incrementAndGet();
+                    throw new RejectedExecutionException("Priority lane [" + lanes[lane].getName() + "] is full");
+                }
+
+                notFull[lane].await();
+            }
+
+            enqueue(lane, observable);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(@NonNull InferenceObservable observable) {
+        int lane = laneOf(observable);
+        lock.lock();
+        try {
+            if (queues[lane].size() >= lanes[lane].getCapacity()) {
+                rejected[lane].incrementAndGet();
+                return false;
+            }
+
+            enqueue(lane, observable);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(@NonNull InferenceObservable observable, long timeout, @NonNull TimeUnit unit)
+                    throws InterruptedException {
+        int lane = laneOf(observable);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (queues[lane].size() >= lanes[lane].getCapacity()) {
+                if (nanos <= 0) {
+                    rejected[lane].incrementAndGet();
+                    return false;
+                }
+
+                nanos = notFull[lane].awaitNanos(nanos);
+            }
+
+            enqueue(lane, observable);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(int lane, InferenceObservable observable) {
+        queues[lane].addLast(new Entry(observable, System.nanoTime()));
+        accepted[lane].incrementAndGet();
+        count++;
+        notEmpty.signal();
+    }
+
+    @Override
+    public InferenceObservable take() throws InterruptedException {
+        List<Entry> dropped = new ArrayList<>();
+        InferenceObservable result = null;
+
+        lock.lockInterruptibly();
+        try {
+            while (result == null) {
+                while (count == 0)
+                    notEmpty.await();
+
+                result = dequeue(dropped);
+            }
+        } finally {
+            lock.unlock();
+            reject(dropped);
+        }
+
+        return result;
+    }
+
+    @Override
+    public InferenceObservable poll(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        List<Entry> dropped = new ArrayList<>();
+        InferenceObservable result = null;
+        long nanos = unit.toNanos(timeout);
+
+        lock.lockInterruptibly();
+        try {
+            while (result == null) {
+                while (count == 0) {
+                    if (nanos <= 0)
+                        return null;
+
+                    nanos = notEmpty.awaitNanos(nanos);
+                }
+
+                result = dequeue(dropped);
+            }
+        } finally {
+            lock.unlock();
+            reject(dropped);
+        }
+
+        return result;
+    }
+
+    @Override
+    public InferenceObservable poll() {
+        List<Entry> dropped = new ArrayList<>();
+        lock.lock();
+        try {
+            return dequeue(dropped);
+        } finally {
+            lock.unlock();
+            reject(dropped);
+        }
+    }
+
+    /**
+     * This method takes first non-expired request from the highest priority lane. Requests with all inputs expired
+     * are moved to dropped list. Should be called within lock only.
+     */
+    private InferenceObservable dequeue(List<Entry> dropped) {
+        long now = System.nanoTime();
+        for (int lane = 0; lane < queues.length; lane++) {
+            Entry entry;
+            while ((entry = queues[lane].pollFirst()) != null) {
+                count--;
+                notFull[lane].signal();
+
+                if (deadlines[lane] > 0 && isExpired(lane, entry, now)) {
+                    dropped.add(entry);
+                    continue;
+                }
+
+                dispatched[lane].incrementAndGet();
+                return entry.observable;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * This method rejects expired inputs of given request, and returns true if nothing is left to compute
+     */
+    private boolean isExpired(int lane, Entry entry, long now) {
+        if (!(entry.observable instanceof BasicInferenceObservable)) {
+            if (now - entry.enqueuedNanos <= deadlines[lane])
+                return false;
+
+            expired[lane].incrementAndGet();
+            return true;
+        }
+
+        BasicInferenceObservable observable = (BasicInferenceObservable) entry.observable;
+        // oldest input is still in time, so nothing to reject
+        if (now - observable.getSubmittedNanos() <= deadlines[lane])
+            return false;
+
+        int cnt = observable.rejectExpired(deadlines[lane], now, deadlineException(lane));
+        expired[lane].addAndGet(cnt);
+        return observable.getNumActiveInputs() == 0;
+    }
+
+    private RejectedExecutionException deadlineException(int lane) {
+        return new RejectedExecutionException("Request in priority lane [" + lanes[lane].getName()
+                        + "] exceeded deadline of " + lanes[lane].getDeadlineMs() + " ms");
+    }
+
+    /**
+     * Callers of expired requests are notified outside of the lock
+     */
+    private void reject(List<Entry> dropped) {
+        for (Entry entry : dropped) {
+            entry.observable.setOutputException(deadlineException(laneOf(entry.observable)));
+        }
+    }
+
+    @Override
+    public InferenceObservable peek() {
+        lock.lock();
+        try {
+            for (ArrayDeque<Entry> queue : queues) {
+                Entry entry = queue.peekFirst();
+                if (entry != null)
+                    return entry.observable;
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            int result = 0;
+            for (int e = 0; e < lanes.length; e++)
+                result += lanes[e].getCapacity() - queues[e].size();
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(@NonNull Collection<? super InferenceObservable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(@NonNull Collection<? super InferenceObservable> c, int maxElements) {
+        int cnt = 0;
+        InferenceObservable observable;
+        while (cnt < maxElements && (observable = poll()) != null) {
+            c.add(observable);
+            cnt++;
+        }
+        return cnt;
+    }
+
+    @Override
+    public Iterator<InferenceObservable> iterator() {
+        lock.lock();
+        try {
+            List<InferenceObservable> snapshot = new ArrayList<>(count);
+            for (ArrayDeque<Entry> queue : queues)
+                for (Entry entry : queue)
+                    snapshot.add(entry.observable);
+
+            return Collections.unmodifiableList(snapshot).iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * This method returns counters for each lane
+     *
+     * @return
+     */
+    public List<LaneStats> getLaneStats() {
+        lock.lock();
+        try {
+            List<LaneStats> result = new ArrayList<>(lanes.length);
+            for (int e = 0; e < lanes.length; e++) {
+                result.add(LaneStats.builder()
+                                .name(lanes[e].getName())
+                                .queued(queues[e].size())
+                                .accepted(accepted[e].get())
+                                .rejected(rejected[e].get())
+                                .expired(expired[e].get())
+                                .dispatched(dispatched[e].get())
+                                .build());
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static class Entry {
+        private final InferenceObservable observable;
+        private final long enqueuedNanos;
+
+        private Entry(InferenceObservable observable, long enqueuedNanos) {
+            this.observable = observable;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+}
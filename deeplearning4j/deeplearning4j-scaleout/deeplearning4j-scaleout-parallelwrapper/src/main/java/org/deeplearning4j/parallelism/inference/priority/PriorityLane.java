@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+package org.deeplearning4j.parallelism.inference.priority;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Configuration of single priority lane for ParallelInference.
+ * Lanes are ordered: lane 0 has highest priority, and workers always pick requests from the highest non-empty lane.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriorityLane implements Serializable {
+    /**
+     * Human-readable name of this lane, used for logging and stats
+     */
+    @Builder.Default private String name = "default";
+
+    /**
+     * Max number of requests (or batches, in batched modes) waiting in this lane
+     */
+    @Builder.Default private int capacity = 64;
+
+    /**
+     * Max time request is allowed to wait in this lane before compute, in milliseconds. Expired requests are dropped.
+     * 0 means no deadline.
+     */
+    @Builder.Default private long deadlineMs = 0;
+
+    /**
+     * What to do with new request when lane is full
+     */
+    @Builder.Default private AdmissionPolicy admissionPolicy = AdmissionPolicy.BLOCK;
+}
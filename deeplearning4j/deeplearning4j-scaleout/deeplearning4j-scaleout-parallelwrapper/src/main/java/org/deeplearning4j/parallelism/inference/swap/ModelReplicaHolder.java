@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+package org.deeplearning4j.parallelism.inference.swap;
+
+import org.deeplearning4j.nn.api.Model;
+
+/**
+ * This interface describes inference worker, that holds model replica and is able to swap it at runtime
+ */
+public interface ModelReplicaHolder {
+
+    /**
+     * This method returns device id this holder is attached to
+     *
+     * @return
+     */
+    int getDeviceId();
+
+    /**
+     * This method builds replica of given model, suitable for this holder. Current replica isn't affected.
+     *
+     * @param model
+     * @return
+     */
+    Model createReplica(Model model);
+
+    /**
+     * This method enables mirroring of live traffic to given replica. Null disables mirroring.
+     *
+     * @param swap
+     * @param replica
+     */
+    void setShadow(ModelSwap swap, Model replica);
+
+    /**
+     * This method stages replacement replica. Holder switches to it at the start of the first request processed
+     * after given swap is committed, so all holders switch at the same moment: commit of the swap.
+     *
+     * @param swap    staged update this replica belongs to
+     * @param model   source model
+     * @param replica replica built with {@link #createReplica(Model)}
+     */
+    void stageReplica(ModelSwap swap, Model model, Model replica);
+}
@@ -0,0 +1,396 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.parallelism.inference.swap;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.exception.ND4JIllegalStateException;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class implements staged model update for ParallelInference:
+ * 1) replacement replicas are built and warmed up in background, on synthetic inputs of live shapes, while old model keeps serving traffic
+ * 2) optionally, fraction of live traffic is mirrored to replacement replicas, and outputs are compared with live ones
+ * 3) all workers are cut over at once: replicas are staged in workers in advance, and commit is a single update of
+ *    swap state, checked by each worker at the start of each request. Requests already running finish on old model.
+ */
+@Slf4j
+public class ModelSwap {
+    private final Model model;
+    private final List<? extends ModelReplicaHolder> holders;
+    private final ModelSwapConfiguration configuration;
+    private final List<long[][]> liveShapes;
+    private final Runnable onCommit;
+    private final Model[] replicas;
+
+    private volatile ModelSwapState state = ModelSwapState.PREPARING;
+    private volatile Throwable failure;
+
+    private final CountDownLatch readyLatch = new CountDownLatch(1);
+    private final CountDownLatch completionLatch = new CountDownLatch(1);
+
+    // shadow stats
+    private long mirrored = 0;
+    private long shapeMismatches = 0;
+    private long failures = 0;
+    private double maxAbsDifference = 0.0;
+    private double sumAbsDifference = 0.0;
+
+    /**
+     * @param model         replacement model
+     * @param holders       workers that will get replacement replicas
+     * @param configuration swap configuration
+     * @param liveShapes    input shapes observed in live traffic, used for warm-up
+     * @param onCommit      callback invoked once replacement model serves all traffic
+     */
+    public ModelSwap(@NonNull Model model, @NonNull List<? extends ModelReplicaHolder> holders,
+                    @NonNull ModelSwapConfiguration configuration, @NonNull List<long[][]> liveShapes, Runnable onCommit) {
+        if (configuration.getShadowFraction() < 0.0 || configuration.getShadowFraction() > 1.0)
+            throw new ND4JIllegalStateException("Shadow fraction should be in range [0, 1]");
+
+        this.model = model;
+        this.holders = holders;
+        this.configuration = configuration;
+        this.liveShapes = liveShapes;
+        this.onCommit = onCommit;
+        this.replicas = new Model[holders.size()];
+    }
+
+    /**
+     * This method starts background preparation of replacement replicas
+     */
+    public void start() {
+        val thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                prepare();
+            }
+        });
+        thread.setDaemon(true);
+        thread.setName("ModelSwap-prepare");
+        thread.start();
+    }
+
+    protected void prepare() {
+        try {
+            final Throwable[] errors = new Throwable[holders.size()];
+            val threads = new ArrayList<Thread>();
+            for (int e = 0; e < holders.size(); e++) {
+                final int idx = e;
+                val t = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            replicas[idx] = holders.get(idx).createReplica(model);
+                            warmup(replicas[idx]);
+                        } catch (Throwable th) {
+                            errors[idx] = th;
+                        }
+                    }
+                });
+                t.setDaemon(true);
+                t.setName("ModelSwap-warmup-" + e);
+                // replicas should be built and warmed up on the same device as worker that'll use them
+                Nd4j.getAffinityManager().attachThreadToDevice(t, holders.get(e).getDeviceId());
+                t.start();
+                threads.add(t);
+            }
+
+            for (val t : threads)
+                t.join();
+
+            for (val th : errors)
+                if (th != null)
+                    throw th;
+
+            for (int e = 0; e < holders.size(); e++)
+                holders.get(e).stageReplica(this, model, replicas[e]);
+
+            if (configuration.getShadowFraction() > 0.0 && configuration.getShadowRequests() > 0) {
+                synchronized (this) {
+                    if (state != ModelSwapState.PREPARING)
+                        return;
+
+                    state = ModelSwapState.SHADOW;
+                    for (int e = 0; e < holders.size(); e++)
+                        holders.get(e).setShadow(this, replicas[e]);
+                }
+                log.info("Replacement model is ready, mirroring {} of traffic", configuration.getShadowFraction());
+            } else {
+                synchronized (this) {
+                    if (state != ModelSwapState.PREPARING)
+                        return;
+
+                    state = ModelSwapState.READY;
+                }
+
+                log.info("Replacement model is ready");
+                if (configuration.isAutoCommit())
+                    commit();
+            }
+        } catch (Throwable t) {
+            log.error("Failed to prepare replacement model", t);
+            synchronized (this) {
+                failure = t;
+                state = ModelSwapState.FAILED;
+            }
+            completionLatch.countDown();
+        } finally {
+            readyLatch.countDown();
+        }
+    }
+
+    protected void warmup(Model replica) {
+        val inputs = new ArrayList<INDArray[]>(configuration.getWarmupInputs());
+
+        int cnt = 0;
+        for (val shapes : liveShapes) {
+            if (cnt++ >= configuration.getWarmupShapes())
+                break;
+
+            val input = new INDArray[shapes.length];
+            for (int e = 0; e < shapes.length; e++)
+                input[e] = Nd4j.rand(shapes[e]);
+
+            inputs.add(input);
+        }
+
+        if (inputs.isEmpty())
+            log.warn("No live input shapes observed yet, replacement model will not be warmed up");
+
+        for (int i = 0; i < configuration.getWarmupIterations(); i++)
+            for (val input : inputs)
+                output(replica, input, null);
+
+        Nd4j.getExecutioner().commit();
+    }
+
+    /**
+     * This method is called by workers for each processed batch
+     *
+     * @return true if this batch should be mirrored to replacement model
+     */
+    public boolean shouldMirror() {
+        return state == ModelSwapState.SHADOW
+                        && ThreadLocalRandom.current().nextDouble() < configuration.getShadowFraction();
+    }
+
+    /**
+     * This method compares outputs of live model and replacement model for the same batch
+     *
+     * @param live
+     * @param candidate
+     */
+    public void reportShadow(@NonNull INDArray[] live, @NonNull INDArray[] candidate) {
+        boolean shapesMatch = live.length == candidate.length;
+        double diff = 0.0;
+        for (int e = 0; shapesMatch && e < live.length; e++) {
+            if (!Arrays.equals(live[e].shape(), candidate[e].shape())) {
+                shapesMatch = false;
+                break;
+            }
+
+            diff = Math.max(diff, Transforms.abs(live[e].sub(candidate[e]), false).maxNumber().doubleValue());
+        }
+
+        boolean done;
+        synchronized (this) {
+            if (state != ModelSwapState.SHADOW)
+                return;
+
+            mirrored++;
+            if (shapesMatch) {
+                maxAbsDifference = Math.max(maxAbsDifference, diff);
+                sumAbsDifference += diff;
+            } else {
+                shapeMismatches++;
+            }
+
+            done = mirrored >= configuration.getShadowRequests();
+        }
+
+        if (done)
+            finishShadow();
+    }
+
+    /**
+     * This method is called by workers if replacement model failed on mirrored batch
+     *
+     * @param e
+     */
+    public void reportShadowFailure(Exception e) {
+        log.warn("Replacement model failed on mirrored batch", e);
+        boolean done;
+        synchronized (this) {
+            if (state != ModelSwapState.SHADOW)
+                return;
+
+            mirrored++;
+            failures++;
+            done = mirrored >= configuration.getShadowRequests();
+        }
+
+        if (done)
+            finishShadow();
+    }
+
+    protected void finishShadow() {
+        synchronized (this) {
+            if (state != ModelSwapState.SHADOW)
+                return;
+
+            for (val h : holders)
+                h.setShadow(null, null);
+
+            state = ModelSwapState.READY;
+        }
+
+        val stats = getShadowStats();
+        log.info("Shadow phase finished: {}", stats);
+
+        if (!configuration.isAutoCommit())
+            return;
+
+        boolean passed = stats.getFailures() == 0 && stats.getShapeMismatches() == 0
+                        && (configuration.getMaxAbsDifference() < 0
+                                        || stats.getMaxAbsDifference() <= configuration.getMaxAbsDifference());
+
+        // commit acquires write locks of all workers, so it shouldn't be done from worker thread
+        val thread = new Thread(passed ? new Runnable() {
+            @Override
+            public void run() {
+                commit();
+            }
+        } : new Runnable() {
+            @Override
+            public void run() {
+                log.warn("Replacement model didn't pass shadow comparison, aborting update");
+                abort();
+            }
+        });
+        thread.setDaemon(true);
+        thread.setName("ModelSwap-finish");
+        thread.start();
+    }
+
+    /**
+     * This method cuts over all workers to the replacement model. Has effect only in SHADOW or READY state.
+     *
+     * @return true if replacement model serves traffic now
+     */
+    public synchronized boolean commit() {
+        if (state == ModelSwapState.COMMITTED)
+            return true;
+
+        if (state != ModelSwapState.SHADOW && state != ModelSwapState.READY)
+            return false;
+
+        for (val h : holders)
+            h.setShadow(null, null);
+
+        // this is the cutover point: workers pick up staged replicas once they see this state
+        state = ModelSwapState.COMMITTED;
+        if (onCommit != null)
+            onCommit.run();
+
+        log.info("Replacement model committed");
+        completionLatch.countDown();
+        return true;
+    }
+
+    /**
+     * This method cancels staged update. Old model keeps serving traffic.
+     */
+    public synchronized void abort() {
+        if (state == ModelSwapState.COMMITTED || state == ModelSwapState.FAILED || state == ModelSwapState.ABORTED)
+            return;
+
+        for (val h : holders)
+            h.setShadow(null, null);
+
+        state = ModelSwapState.ABORTED;
+        completionLatch.countDown();
+    }
+
+    public ModelSwapState getState() {
+        return state;
+    }
+
+    /**
+     * This method returns exception that caused FAILED state, or null
+     *
+     * @return
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public synchronized ShadowStats getShadowStats() {
+        long compared = mirrored - shapeMismatches - failures;
+        return ShadowStats.builder()
+                        .mirrored(mirrored)
+                        .shapeMismatches(shapeMismatches)
+                        .failures(failures)
+                        .maxAbsDifference(maxAbsDifference)
+                        .meanAbsDifference(compared > 0 ? sumAbsDifference / compared : 0.0)
+                        .build();
+    }
+
+    /**
+     * This method blocks until replacement replicas are built and warmed up
+     *
+     * @return false if timeout elapsed
+     */
+    public boolean awaitReady(long timeout, @NonNull TimeUnit timeUnit) throws InterruptedException {
+        return readyLatch.await(timeout, timeUnit);
+    }
+
+    /**
+     * This method blocks until staged update is either committed, aborted or failed
+     *
+     * @return false if timeout elapsed
+     */
+    public boolean awaitCompletion(long timeout, @NonNull TimeUnit timeUnit) throws InterruptedException {
+        return completionLatch.await(timeout, timeUnit);
+    }
+
+    /**
+     * This method runs inference on given model without touching its state
+     */
+    public static INDArray[] output(@NonNull Model model, INDArray[] input, INDArray[] inputMasks) {
+        if (model instanceof ComputationGraph) {
+            return ((ComputationGraph) model).output(false, input, inputMasks);
+        } else if (model instanceof MultiLayerNetwork) {
+            INDArray mask = inputMasks == null ? null : inputMasks[0];
+            return new INDArray[] {((MultiLayerNetwork) model).output(input[0], false, mask, null)};
+        } else
+            throw new ND4JIllegalStateException("Unsupported model type: " + model.getClass().getSimpleName());
+    }
+}
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+package org.deeplearning4j.parallelism.inference.swap;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration of staged model update in ParallelInference
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ModelSwapConfiguration implements Serializable {
+    /**
+     * Number of forward passes for each warm-up input, before replacement model gets any live traffic
+     */
+    @Builder.Default private int warmupIterations = 3;
+
+    /**
+     * Max number of distinct live input shapes used for warm-up
+     */
+    @Builder.Default private int warmupShapes = 8;
+
+    /**
+     * Additional warm-up inputs. If empty, synthetic inputs of live shapes are used only.
+     */
+    @Builder.Default private List<INDArray[]> warmupInputs = new ArrayList<>();
+
+    /**
+     * Fraction of live batches that will be mirrored to replacement model, in range [0, 1]. 0 disables shadow traffic.
+     */
+    @Builder.Default private double shadowFraction = 0.0;
+
+    /**
+     * Number of mirrored batches to compare before shadow phase ends
+     */
+    @Builder.Default private long shadowRequests = 100;
+
+    /**
+     * Max absolute difference between live and replacement outputs allowed for automatic commit.
+     * Negative value disables this check.
+     */
+    @Builder.Default private double maxAbsDifference = -1.0;
+
+    /**
+     * If true, replacement model will be committed automatically once ready (and shadow phase is passed, if enabled).
+     * If shadow comparison exceeds maxAbsDifference, staged update will be aborted instead.
+     */
+    @Builder.Default private boolean autoCommit = true;
+}
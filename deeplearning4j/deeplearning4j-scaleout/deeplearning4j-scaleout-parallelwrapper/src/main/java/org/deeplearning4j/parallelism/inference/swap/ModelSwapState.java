@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+package org.deeplearning4j.parallelism.inference.swap;
+
+/**
+ * Lifecycle of staged model update in ParallelInference
+ */
+public enum ModelSwapState {
+    /**
+     * Replacement replicas are being built and warmed up in background
+     */
+    PREPARING,
+
+    /**
+     * Fraction of live traffic is mirrored to replacement model, and outputs are compared
+     */
+    SHADOW,
+
+    /**
+     * Replacement model is ready, and waits for commit
+     */
+    READY,
+
+    /**
+     * Replacement model serves all traffic now
+     */
+    COMMITTED,
+
+    /**
+     * Staged update was cancelled, old model keeps serving traffic
+     */
+    ABORTED,
+
+    /**
+     * Staged update failed during preparation, old model keeps serving traffic
+     */
+    FAILED,
+}
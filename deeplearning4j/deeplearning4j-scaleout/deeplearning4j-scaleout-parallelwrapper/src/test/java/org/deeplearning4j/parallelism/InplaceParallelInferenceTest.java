@@ -20,13 +20,18 @@ import lombok.val;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.conf.layers.OutputLayer;
 import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.parallelism.inference.InferenceMode;
 import org.deeplearning4j.parallelism.inference.LoadBalanceMode;
+import org.deeplearning4j.parallelism.inference.swap.ModelSwapConfiguration;
+import org.deeplearning4j.parallelism.inference.swap.ModelSwapState;
 import org.junit.Test;
 import org.nd4j.linalg.activations.Activation;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.Assert.*;
 
 public class InplaceParallelInferenceTest {
@@ -88,6 +93,58 @@ public class InplaceParallelInferenceTest {
         }
     }
 
+    @Test
+    public void testStagedModelUpdate() throws Exception {
+        int nIn = 5;
+
+        val conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .list()
+                .layer(new OutputLayer.Builder().nIn(nIn).nOut(3).activation(Activation.SOFTMAX).build())
+                .build();
+
+        val net = new MultiLayerNetwork(conf);
+        net.init();
+
+        val net2 = new MultiLayerNetwork(conf.clone());
+        net2.init();
+        net2.params().assign(net.params());
+
+        for (LoadBalanceMode m : new LoadBalanceMode[]{LoadBalanceMode.ROUND_ROBIN, LoadBalanceMode.FIFO}) {
+            val pi = new ParallelInference.Builder(net)
+                    .inferenceMode(InferenceMode.INPLACE)
+                    .loadBalanceMode(m)
+                    .workers(2)
+                    .build();
+
+            val input = Nd4j.rand(2, nIn);
+            val exp = net.output(input);
+            assertEquals(exp, pi.output(input));
+
+            val swap = pi.updateModel(net2, ModelSwapConfiguration.builder()
+                    .warmupIterations(2)
+                    .shadowFraction(1.0)
+                    .shadowRequests(5)
+                    .maxAbsDifference(1e-5)
+                    .build());
+
+            assertTrue(swap.awaitReady(10, TimeUnit.SECONDS));
+            assertNull(swap.getFailure());
+
+            // mirroring happens in calling thread, so live traffic drives shadow phase to completion
+            while (!swap.awaitCompletion(10, TimeUnit.MILLISECONDS))
+                assertEquals(exp, pi.output(input));
+
+            assertEquals(ModelSwapState.COMMITTED, swap.getState());
+            assertEquals(exp, pi.output(input));
+
+            for (val model : pi.getCurrentModelsFromWorkers())
+                assertTrue(model == net2);
+
+            pi.shutdown();
+        }
+    }
+
     @Test
     public void testOutput_RoundRobin_1() throws Exception {
         int nIn = 5;
@@ -34,6 +34,14 @@ import org.deeplearning4j.eval.Evaluation;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.parallelism.inference.InferenceMode;
 import org.deeplearning4j.parallelism.inference.InferenceObservable;
+import org.deeplearning4j.parallelism.inference.SequenceBucketing;
+import org.deeplearning4j.parallelism.inference.adaptive.AdaptiveBatchingStats;
+import org.deeplearning4j.parallelism.inference.priority.LaneStats;
+import org.deeplearning4j.parallelism.inference.priority.PriorityLane;
+import org.deeplearning4j.parallelism.inference.swap.ModelSwapConfiguration;
+import org.deeplearning4j.parallelism.inference.swap.ModelSwapState;
+import org.deeplearning4j.parallelism.inference.adaptive.BatchTimings;
+import org.deeplearning4j.parallelism.inference.adaptive.BatchTimingsListener;
 import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObserver;
 import org.deeplearning4j.parallelism.inference.observers.BatchedInferenceObservable;
 import org.deeplearning4j.util.ModelSerializer;
@@ -50,7 +58,9 @@ import java.io.File;
 import java.lang.reflect.Field;
 import java.util.*;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.Assert.*;
 
@@ -200,6 +210,90 @@ public class ParallelInferenceTest {
     }
 
 
+    @Test(timeout = 30000L)
+    public void testInferenceAdaptive1() throws Exception {
+        final AtomicLong batchedRequests = new AtomicLong(0);
+        final AtomicLong batches = new AtomicLong(0);
+
+        ParallelInference inf = new ParallelInference.Builder(model).inferenceMode(InferenceMode.ADAPTIVE).batchLimit(8)
+                .targetLatency(20, TimeUnit.MILLISECONDS)
+                .batchTimingsListener(new BatchTimingsListener() {
+                    @Override
+                    public void onBatchCompleted(BatchTimings timings) {
+                        assertTrue(timings.getBatchSize() > 0 && timings.getBatchSize() <= 8);
+                        assertTrue(timings.getQueueWaitNanos() >= 0);
+                        assertTrue(timings.getComputeNanos() > 0);
+                        batchedRequests.addAndGet(timings.getBatchSize());
+                        batches.incrementAndGet();
+                    }
+                })
+                .workers(2).build();
+
+        iterator = new MnistDataSetIterator(1, false, 12345);
+
+        INDArray array1 = inf.output(iterator.next().getFeatures());
+        assertFalse(array1.isAttached());
+
+        iterator.reset();
+
+        evalClassifcationMultipleThreads(inf, iterator, 20);
+
+        AdaptiveBatchingStats stats = inf.getAdaptiveBatchingStats();
+        assertNotNull(stats);
+        assertEquals(257, stats.getNumberOfRequests());
+        assertEquals(batches.get(), stats.getNumberOfBatches());
+        assertEquals(257, batchedRequests.get());
+        assertTrue(stats.getTargetBatchSize() >= 1 && stats.getTargetBatchSize() <= 8);
+
+        inf.shutdown();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testInferenceAdaptiveBucketing() throws Exception {
+        new ParallelInference.Builder(model).inferenceMode(InferenceMode.ADAPTIVE)
+                .sequenceBucketing(SequenceBucketing.powersOfTwo(32)).build();
+    }
+
+    @Test(timeout = 60000L)
+    public void testPriorityLanes1() throws Exception {
+        for (InferenceMode m : new InferenceMode[]{InferenceMode.SEQUENTIAL, InferenceMode.BATCHED, InferenceMode.ADAPTIVE}) {
+            ParallelInference inf = new ParallelInference.Builder(model).inferenceMode(m).batchLimit(8)
+                    .priorityLanes(PriorityLane.builder().name("interactive").capacity(32).build(),
+                            PriorityLane.builder().name("batch").capacity(32).build())
+                    .workers(2).build();
+
+            assertEquals(2, inf.numLanes());
+
+            iterator = new MnistDataSetIterator(1, false, 12345);
+            for (int e = 0; e < 10; e++) {
+                DataSet ds = iterator.next();
+                INDArray exp = model.output(ds.getFeatures());
+
+                INDArray high = inf.output(0, new INDArray[]{ds.getFeatures()}, null)[0];
+                INDArray low = inf.output(1, new INDArray[]{ds.getFeatures()}, null)[0];
+
+                assertEquals(exp, high);
+                assertEquals(exp, low);
+            }
+
+            List<LaneStats> stats = inf.getLaneStats();
+            assertEquals(2, stats.size());
+            assertEquals("interactive", stats.get(0).getName());
+            assertTrue(stats.get(0).getDispatched() > 0);
+            assertTrue(stats.get(1).getDispatched() > 0);
+            assertEquals(0, stats.get(0).getRejected() + stats.get(1).getRejected());
+
+            try {
+                inf.output(2, new INDArray[]{iterator.next().getFeatures()}, null);
+                fail("Unknown lane should be rejected");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+
+            inf.shutdown();
+        }
+    }
+
     @Test
     public void testProvider1() throws Exception {
         LinkedBlockingQueue queue = new LinkedBlockingQueue();
@@ -484,6 +578,60 @@ public class ParallelInferenceTest {
 
 
 
+    @Test(timeout = 60000L)
+    public void testParallelInferenceBucketedTS() throws Exception {
+        Nd4j.getRandom().setSeed(12345);
+
+        int nIn = 10;
+
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .activation(Activation.TANH)
+                .seed(12345)
+                .list()
+                .layer(new LSTM.Builder().nIn(nIn).nOut(5).build())
+                .layer(new RnnOutputLayer.Builder().nIn(5).nOut(5).activation(Activation.SOFTMAX).build())
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        for (int w : new int[]{1, 2}) {
+            final ParallelInference inf =
+                    new ParallelInference.Builder(net)
+                            .inferenceMode(InferenceMode.BATCHED)
+                            .sequenceBucketing(SequenceBucketing.powersOfTwo(32))
+                            .batchLimit(20)
+                            .queueLimit(64)
+                            .workers(w).build();
+
+            List<INDArray> arrs = new ArrayList<>();
+            List<INDArray> masks = new ArrayList<>();
+            List<INDArray> exp = new ArrayList<>();
+
+            Random r = new Random(12345);
+            for (int i = 0; i < 200; i++) {
+                int numEx = r.nextInt(3) + 1;
+                int length = r.nextInt(40) + 1;
+                INDArray in = Nd4j.rand(new int[]{numEx, nIn, length});
+
+                INDArray mask = null;
+                if (r.nextDouble() < 0.3) {
+                    mask = Nd4j.ones(numEx, length);
+                    for (int j = 1 + r.nextInt(length); j < length; j++)
+                        mask.getColumn(j).assign(0.0);
+                }
+
+                arrs.add(in);
+                masks.add(mask);
+                exp.add(net.output(in, false, mask, null));
+            }
+
+            testParallelInference(inf, arrs, masks, exp);
+
+            inf.shutdown();
+        }
+    }
+
     @Test(timeout = 30000L)
     public void testParallelInferenceVariableSizeCNN() throws Exception {
         //Variable size input for CNN model - for example, YOLO models
@@ -796,6 +944,110 @@ public class ParallelInferenceTest {
         inf.shutdown();
     }
 
+    @Test(timeout = 60000L)
+    public void testStagedModelUpdate_1() throws Exception {
+        int nIn = 5;
+
+        val conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .list()
+                .layer(new DenseLayer.Builder().nIn(nIn).nOut(10).build())
+                .layer(new OutputLayer.Builder().nIn(10).nOut(3).activation(Activation.SOFTMAX).build())
+                .build();
+
+        val net = new MultiLayerNetwork(conf);
+        net.init();
+
+        val net2 = new MultiLayerNetwork(conf.clone());
+        net2.init();
+        net2.params().assign(net.params());
+
+        for (InferenceMode m : new InferenceMode[]{InferenceMode.SEQUENTIAL, InferenceMode.BATCHED}) {
+            val inf = new ParallelInference.Builder(net)
+                    .inferenceMode(m)
+                    .batchLimit(5)
+                    .workers(2)
+                    .build();
+
+            val input = Nd4j.rand(2, nIn);
+            val exp = net.output(input);
+            for (int e = 0; e < 10; e++)
+                assertEquals(exp, inf.output(input));
+
+            val swap = inf.updateModel(net2, ModelSwapConfiguration.builder()
+                    .warmupIterations(2)
+                    .shadowFraction(1.0)
+                    .shadowRequests(5)
+                    .maxAbsDifference(1e-5)
+                    .build());
+
+            assertTrue(swap.awaitReady(10, TimeUnit.SECONDS));
+            assertNull(swap.getFailure());
+
+            // live traffic keeps flowing while shadow comparison happens
+            while (!swap.awaitCompletion(10, TimeUnit.MILLISECONDS))
+                assertEquals(exp, inf.output(input));
+
+            assertEquals(ModelSwapState.COMMITTED, swap.getState());
+
+            val stats = swap.getShadowStats();
+            assertTrue(stats.getMirrored() >= 5);
+            assertEquals(0, stats.getShapeMismatches());
+            assertEquals(0, stats.getFailures());
+            assertTrue(stats.getMaxAbsDifference() <= 1e-5);
+
+            for (val model : inf.getCurrentModelsFromWorkers())
+                if (model != null)
+                    assertEquals(net2.params(), model.params());
+
+            inf.shutdown();
+        }
+    }
+
+    @Test(timeout = 60000L)
+    public void testStagedModelUpdate_2() throws Exception {
+        int nIn = 5;
+
+        val conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .list()
+                .layer(new OutputLayer.Builder().nIn(nIn).nOut(3).activation(Activation.SOFTMAX).build())
+                .build();
+
+        val net = new MultiLayerNetwork(conf);
+        net.init();
+
+        // replacement model with different params shouldn't pass strict shadow comparison
+        val net2 = new MultiLayerNetwork(conf.clone());
+        net2.init();
+        net2.params().addi(1.0);
+
+        val inf = new ParallelInference.Builder(net)
+                .inferenceMode(InferenceMode.SEQUENTIAL)
+                .workers(2)
+                .build();
+
+        val input = Nd4j.rand(2, nIn);
+        val exp = net.output(input);
+        assertEquals(exp, inf.output(input));
+
+        val swap = inf.updateModel(net2, ModelSwapConfiguration.builder()
+                .shadowFraction(1.0)
+                .shadowRequests(3)
+                .maxAbsDifference(0.0)
+                .build());
+
+        assertTrue(swap.awaitReady(10, TimeUnit.SECONDS));
+        while (!swap.awaitCompletion(10, TimeUnit.MILLISECONDS))
+            assertEquals(exp, inf.output(input));
+
+        assertEquals(ModelSwapState.ABORTED, swap.getState());
+        assertTrue(swap.getShadowStats().getMaxAbsDifference() > 0.0);
+        assertEquals(exp, inf.output(input));
+
+        inf.shutdown();
+    }
+
     @Test(timeout = 60000L)
     public void testMultiOutputNet() throws Exception {
 
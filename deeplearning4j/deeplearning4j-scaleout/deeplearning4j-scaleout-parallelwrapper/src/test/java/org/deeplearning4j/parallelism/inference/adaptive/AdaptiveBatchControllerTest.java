@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.parallelism.inference.adaptive;
+
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+public class AdaptiveBatchControllerTest {
+
+    @Test
+    public void testNoHistory_1() {
+        val controller = new AdaptiveBatchController(TimeUnit.MILLISECONDS.toNanos(50), 32);
+
+        // without any history we should dispatch right away
+        assertEquals(0L, controller.getWindowNanos());
+        assertEquals(32, controller.getTargetBatchSize());
+    }
+
+    @Test
+    public void testPlanFitsBudget_1() {
+        long ms = TimeUnit.MILLISECONDS.toNanos(1);
+        val controller = new AdaptiveBatchController(50 * ms, 32);
+
+        // 1 request per ms
+        for (int e = 0; e < 100; e++)
+            controller.onArrival(e * ms);
+
+        // compute is 5ms + 1ms per example
+        for (int b = 1; b <= 8; b++)
+            controller.onBatchCompleted(new BatchTimings(b, 0, 0, 5 * ms + b * ms));
+
+        assertEquals(1.0 * ms, controller.estimateComputeNanos(1) - controller.estimateComputeNanos(0), 1e3);
+
+        val plan = controller.plan();
+        double latency = (plan[0] - 1) * ms + controller.estimateComputeNanos((int) plan[0]);
+
+        // (b - 1) + 5 + b <= 50  => b = 23
+        assertEquals(23, plan[0]);
+        assertTrue(latency <= 50 * ms);
+        assertTrue(plan[1] <= 50 * ms - controller.estimateComputeNanos((int) plan[0]));
+    }
+
+    @Test
+    public void testSlowArrivals_1() {
+        long ms = TimeUnit.MILLISECONDS.toNanos(1);
+        val controller = new AdaptiveBatchController(50 * ms, 32);
+
+        // 1 request per 100ms, so waiting for a second request can't fit into budget
+        for (int e = 0; e < 10; e++)
+            controller.onArrival(e * 100 * ms);
+
+        controller.onBatchCompleted(new BatchTimings(1, 0, 0, 2 * ms));
+
+        assertEquals(1, controller.getTargetBatchSize());
+        assertEquals(0L, controller.getWindowNanos());
+    }
+
+    @Test
+    public void testHeadroom_1() {
+        long ms = TimeUnit.MILLISECONDS.toNanos(1);
+        val controller = new AdaptiveBatchController(10 * ms, 32);
+
+        for (int e = 0; e < 100; e++)
+            controller.onArrival(e * ms / 10);
+
+        controller.onBatchCompleted(new BatchTimings(4, 0, 0, ms));
+        val before = controller.getStats();
+
+        // latency is above target, so planned budget should shrink
+        for (int e = 0; e < 5; e++)
+            controller.onBatchCompleted(new BatchTimings(4, 5 * ms, 5 * ms, ms));
+
+        val after = controller.getStats();
+        assertTrue(after.getHeadroom() < before.getHeadroom());
+        assertTrue(after.getTargetBatchSize() <= before.getTargetBatchSize());
+        assertEquals(11 * ms, after.getObservedLatencyNanos());
+        assertEquals(6, after.getNumberOfBatches());
+        assertEquals(100, after.getNumberOfRequests());
+    }
+
+    @Test
+    public void testListener_1() {
+        val controller = new AdaptiveBatchController(TimeUnit.MILLISECONDS.toNanos(50), 32);
+        final List<BatchTimings> timings = new ArrayList<>();
+        controller.addListener(new BatchTimingsListener() {
+            @Override
+            public void onBatchCompleted(BatchTimings t) {
+                timings.add(t);
+            }
+        });
+
+        val t = new BatchTimings(3, 10, 20, 30);
+        controller.onBatchCompleted(t);
+
+        assertEquals(1, timings.size());
+        assertEquals(60, timings.get(0).getLatencyNanos());
+    }
+}
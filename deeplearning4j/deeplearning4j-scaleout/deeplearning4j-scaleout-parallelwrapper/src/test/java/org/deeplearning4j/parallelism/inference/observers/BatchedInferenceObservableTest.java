@@ -17,11 +17,13 @@
 package org.deeplearning4j.parallelism.inference.observers;
 
 import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.parallelism.inference.SequenceBucketing;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.primitives.Pair;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
@@ -111,6 +113,68 @@ public class BatchedInferenceObservableTest {
         }
     }
 
+    @Test
+    public void testPaddedTimeSeriesBatch1() throws Exception {
+        BatchedInferenceObservable observable = new BatchedInferenceObservable(true);
+
+        int[] lengths = new int[] {3, 7, 5};
+        for (int i = 0; i < lengths.length; i++) {
+            observable.addInput(new INDArray[]{Nd4j.create(1, 4, lengths[i]).assign(i + 1)}, null);
+        }
+
+        List<Pair<INDArray[], INDArray[]>> batches = observable.getInputBatches();
+        assertEquals(1, batches.size());
+
+        INDArray features = batches.get(0).getFirst()[0];
+        INDArray mask = batches.get(0).getSecond()[0];
+        assertArrayEquals(new long[] {3, 4, 7}, features.shape());
+        assertArrayEquals(new long[] {3, 7}, mask.shape());
+
+        for (int i = 0; i < lengths.length; i++) {
+            assertEquals(lengths[i], mask.getRow(i).sumNumber().intValue());
+        }
+
+        // per time step output should be trimmed back to original lengths
+        INDArray output = Nd4j.create(3, 2, 7);
+        for (int i = 0; i < lengths.length; i++)
+            output.tensorAlongDimension(i, 1, 2).assign(i);
+
+        observable.setOutputBatches(Collections.singletonList(new INDArray[]{output}));
+
+        for (int i = 0; i < lengths.length; i++) {
+            observable.setPosition(i);
+            INDArray out = observable.getOutput()[0];
+            assertArrayEquals(new long[] {1, 2, lengths[i]}, out.shape());
+            assertEquals((float) i, out.meanNumber().floatValue(), 0.001f);
+        }
+    }
+
+    @Test
+    public void testPaddedTimeSeriesBatch2() throws Exception {
+        // without padding, time series of different length can't be batched
+        BatchedInferenceObservable observable = new BatchedInferenceObservable();
+
+        observable.addInput(new INDArray[]{Nd4j.create(1, 4, 3)}, null);
+        observable.addInput(new INDArray[]{Nd4j.create(1, 4, 7)}, null);
+
+        assertEquals(2, observable.getInputBatches().size());
+    }
+
+    @Test
+    public void testSequenceBucketing1() throws Exception {
+        SequenceBucketing bucketing = SequenceBucketing.powersOfTwo(100);
+        assertArrayEquals(new long[] {1, 2, 4, 8, 16, 32, 64, 100}, bucketing.getBoundaries());
+
+        assertEquals(0, bucketing.bucketFor(1));
+        assertEquals(3, bucketing.bucketFor(5));
+        assertEquals(3, bucketing.bucketFor(8));
+        assertEquals(7, bucketing.bucketFor(100));
+        assertEquals(8, bucketing.bucketFor(1000));
+
+        assertEquals(SequenceBucketing.NO_BUCKET, bucketing.bucketFor(new INDArray[]{Nd4j.create(2, 10)}));
+        assertEquals(4, bucketing.bucketFor(new INDArray[]{Nd4j.create(2, 10, 12)}));
+    }
+
     @Test
     public void testTearsBatch1() throws Exception {
         BatchedInferenceObservable observable = new BatchedInferenceObservable();
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.parallelism.inference.priority;
+
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.deeplearning4j.parallelism.inference.InferenceObservable;
+import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObservable;
+import org.deeplearning4j.parallelism.inference.observers.BatchedInferenceObservable;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+public class PriorityInferenceQueueTest {
+
+    private static BasicInferenceObservable request(int lane) {
+        val observable = new BasicInferenceObservable(new INDArray[0], null);
+        observable.setLane(lane);
+        return observable;
+    }
+
+    @Test(timeout = 10000L)
+    public void testStrictPriority_1() throws Exception {
+        val queue = new PriorityInferenceQueue(PriorityLane.builder().name("interactive").build(),
+                        PriorityLane.builder().name("batch").build());
+
+        val low1 = request(1);
+        val low2 = request(1);
+        val high = request(0);
+
+        queue.put(low1);
+        queue.put(low2);
+        queue.put(high);
+
+        assertEquals(3, queue.size());
+        assertTrue(high == queue.take());
+        assertTrue(low1 == queue.take());
+        assertTrue(low2 == queue.take());
+        assertNull(queue.poll());
+
+        val stats = queue.getLaneStats();
+        assertEquals(2, stats.size());
+        assertEquals("interactive", stats.get(0).getName());
+        assertEquals(1, stats.get(0).getDispatched());
+        assertEquals(2, stats.get(1).getDispatched());
+    }
+
+    @Test(timeout = 10000L)
+    public void testReject_1() throws Exception {
+        val queue = new PriorityInferenceQueue(PriorityLane.builder().capacity(4).build(),
+                        PriorityLane.builder().capacity(1).admissionPolicy(AdmissionPolicy.REJECT).build());
+
+        queue.put(request(1));
+
+        try {
+            queue.put(request(1));
+            fail("Request should be rejected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        // other lanes aren't affected
+        queue.put(request(0));
+
+        val stats = queue.getLaneStats();
+        assertEquals(1, stats.get(0).getAccepted());
+        assertEquals(1, stats.get(1).getAccepted());
+        assertEquals(1, stats.get(1).getRejected());
+        assertEquals(1, stats.get(1).getQueued());
+        assertEquals(3, queue.remainingCapacity());
+    }
+
+    @Test(timeout = 10000L)
+    public void testDeadline_1() throws Exception {
+        val queue = new PriorityInferenceQueue(PriorityLane.builder().build(),
+                        PriorityLane.builder().deadlineMs(10).build());
+
+        val expired = request(1);
+        queue.put(expired);
+
+        Thread.sleep(50);
+
+        val alive = request(1);
+        queue.put(alive);
+
+        InferenceObservable taken = queue.poll(1, TimeUnit.SECONDS);
+        assertTrue(alive == taken);
+
+        try {
+            expired.getOutput();
+            fail("Expired request should fail");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        val stats = queue.getLaneStats();
+        assertEquals(1, stats.get(1).getExpired());
+        assertEquals(1, stats.get(1).getDispatched());
+    }
+
+    @Test(timeout = 10000L)
+    public void testDeadline_2() throws Exception {
+        // expired and live requests within the same batch: only expired one is dropped
+        val queue = new PriorityInferenceQueue(PriorityLane.builder().deadlineMs(10).build());
+
+        val batch = new BatchedInferenceObservable();
+        val stale = new INDArray[0];
+        val fresh = new INDArray[0];
+
+        batch.addInput(stale, null);
+        queue.put(batch);
+
+        Thread.sleep(50);
+
+        batch.addInput(fresh, null);
+
+        assertTrue(batch == queue.poll(1, TimeUnit.SECONDS));
+        assertEquals(1, batch.getNumActiveInputs());
+
+        val batches = batch.getInputBatches();
+        assertEquals(1, batches.size());
+        assertTrue(fresh == batches.get(0).getFirst());
+
+        batch.setPosition(0);
+        try {
+            batch.getOutput();
+            fail("Expired request should fail");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        val stats = queue.getLaneStats();
+        assertEquals(1, stats.get(0).getExpired());
+        assertEquals(1, stats.get(0).getDispatched());
+    }
+
+    @Test(timeout = 10000L)
+    public void testDeadline_3() throws Exception {
+        // deadline is counted from submission, not from enqueue
+        val queue = new PriorityInferenceQueue(PriorityLane.builder().deadlineMs(10).build());
+
+        val request = request(0);
+        Thread.sleep(50);
+        queue.put(request);
+
+        assertNull(queue.poll());
+        assertEquals(1, queue.getLaneStats().get(0).getExpired());
+    }
+
+    @Test(timeout = 10000L)
+    public void testBlockingTake_1() throws Exception {
+        final PriorityInferenceQueue queue = new PriorityInferenceQueue(PriorityLane.builder().build());
+        final BasicInferenceObservable observable = request(0);
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                    queue.put(observable);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        producer.start();
+
+        assertTrue(observable == queue.take());
+        producer.join();
+    }
+}
@@ -26,6 +26,7 @@ import org.datavec.spark.util.DefaultHadoopConfig;
 import org.datavec.spark.util.SerializableHadoopConfig;
 import org.deeplearning4j.util.UIDProvider;
 import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.DataSetBatchWriter;
 import org.nd4j.linalg.primitives.Pair;
 
 import java.net.URI;
@@ -41,6 +42,10 @@ import java.util.*;
  * Naming convention for exported files:
  * "dataset_" + partitionIdx + JVM_UID + "_" + idx + ".bin"
  * where 'idx' is the index of the DataSet objects in this partition
+ * <p>
+ * Alternatively, all minibatches of a partition can be exported into single DataSet batch file (see
+ * {@link DataSetBatchWriter}), named "dataset_" + partitionIdx + JVM_UID + ".dsb". In this case, one path is
+ * returned per partition. Such files can be read via {@link org.nd4j.linalg.dataset.ExistingMiniBatchDataSetIterator}.
  *
  * @author Alex Black
  */
@@ -49,6 +54,7 @@ public class BatchAndExportDataSetsFunction implements Function2<Integer, Iterat
     private final String exportBaseDirectory;
     private final String jvmuid;
     private final Broadcast<SerializableHadoopConfig> conf;
+    private final DataSetBatchWriter.Compression batchFileCompression;
 
     /**
      * @param minibatchSize       Minibatch size to combine examples to (if necessary)
@@ -64,15 +70,31 @@ public class BatchAndExportDataSetsFunction implements Function2<Integer, Iterat
      * @param configuration       Hadoop Configuration
      */
     public BatchAndExportDataSetsFunction(int minibatchSize, String exportBaseDirectory, Broadcast<SerializableHadoopConfig> configuration) {
+        this(minibatchSize, exportBaseDirectory, configuration, null);
+    }
+
+    /**
+     * @param minibatchSize        Minibatch size to combine examples to (if necessary)
+     * @param exportBaseDirectory  Base directory for exporting
+     * @param configuration        Hadoop Configuration
+     * @param batchFileCompression If not null: minibatches of each partition are exported into single DataSet batch
+     *                             file, with the given chunk compression
+     */
+    public BatchAndExportDataSetsFunction(int minibatchSize, String exportBaseDirectory, Broadcast<SerializableHadoopConfig> configuration,
+                    DataSetBatchWriter.Compression batchFileCompression) {
         this.minibatchSize = minibatchSize;
         this.exportBaseDirectory = exportBaseDirectory;
         String fullUID = UIDProvider.getJVMUID();
         this.jvmuid = (fullUID.length() <= 8 ? fullUID : fullUID.substring(0, 8));
         this.conf = configuration;
+        this.batchFileCompression = batchFileCompression;
     }
 
     @Override
     public Iterator<String> call(Integer partitionIdx, Iterator<DataSet> iterator) throws Exception {
+        if (batchFileCompression != null) {
+            return exportBatchFile(partitionIdx, iterator);
+        }
 
         List<String> outputPaths = new ArrayList<>();
         LinkedList<DataSet> tempList = new LinkedList<>();
@@ -102,23 +124,66 @@ public class BatchAndExportDataSetsFunction implements Function2<Integer, Iterat
         return outputPaths.iterator();
     }
 
+    private Iterator<String> exportBatchFile(int partitionIdx, Iterator<DataSet> iterator) throws Exception {
+        URI uri = exportUri("dataset_" + partitionIdx + jvmuid + ".dsb");
+        Configuration c = conf == null ? DefaultHadoopConfig.get() : conf.getValue().getConfiguration();
+        FileSystem file = FileSystem.get(uri, c);
+
+        int numBatches;
+        try (DataSetBatchWriter writer = new DataSetBatchWriter(file.create(new Path(uri)), batchFileCompression,
+                        DataSetBatchWriter.DEFAULT_CHUNK_SIZE)) {
+            //Split or combine DataSets to the minibatch size, same way as for separate files
+            LinkedList<DataSet> tempList = new LinkedList<>();
+            DataSet ds;
+            while (iterator.hasNext()) {
+                tempList.add(iterator.next());
+                while ((ds = nextBatch(tempList, false)) != null)
+                    writer.write(ds);
+            }
+            while ((ds = nextBatch(tempList, true)) != null)
+                writer.write(ds);
+            numBatches = writer.numBatches();
+        }
+
+        if (numBatches == 0) {
+            file.delete(new Path(uri), false);
+            return Collections.<String>emptyIterator();
+        }
+        return Collections.singletonList(uri.getPath()).iterator();
+    }
+
+    private URI exportUri(String filename) throws Exception {
+        return new URI(exportBaseDirectory
+                        + (exportBaseDirectory.endsWith("/") || exportBaseDirectory.endsWith("\\") ? "" : "/")
+                        + filename);
+    }
+
     private Pair<Integer, List<String>> processList(LinkedList<DataSet> tempList, int partitionIdx, int countBefore,
                     boolean finalExport) throws Exception {
         //Go through the list. If we have enough examples: remove the DataSet objects, merge and export them. Otherwise: do nothing
+        DataSet toExport = nextBatch(tempList, finalExport);
+        if (toExport == null) {
+            //No op
+            return new Pair<>(countBefore, Collections.<String>emptyList());
+        }
+
+        return new Pair<>(countBefore + 1, Collections.singletonList(export(toExport, partitionIdx, countBefore)));
+    }
+
+    /**
+     * Remove DataSet objects for a single minibatch from the list, and merge them.
+     * Returns null if there are not enough examples in the list (unless it's a final export), or if the list is empty
+     */
+    private DataSet nextBatch(LinkedList<DataSet> tempList, boolean finalExport) {
         int numExamples = 0;
         for (DataSet ds : tempList) {
             numExamples += ds.numExamples();
         }
 
         if (tempList.isEmpty() || (numExamples < minibatchSize && !finalExport)) {
-            //No op
-            return new Pair<>(countBefore, Collections.<String>emptyList());
+            return null;
         }
 
-        List<String> exportPaths = new ArrayList<>();
-
-        int countAfter = countBefore;
-
         //Batch the required number together
         int countSoFar = 0;
         List<DataSet> tempToMerge = new ArrayList<>();
@@ -137,18 +202,13 @@ public class BatchAndExportDataSetsFunction implements Function2<Integer, Iterat
             }
         }
         //At this point: we should have the required number of examples in tempToMerge (unless it's a final export)
-        DataSet toExport = DataSet.merge(tempToMerge);
-        exportPaths.add(export(toExport, partitionIdx, countAfter++));
-
-        return new Pair<>(countAfter, exportPaths);
+        return DataSet.merge(tempToMerge);
     }
 
     private String export(DataSet dataSet, int partitionIdx, int outputCount) throws Exception {
         String filename = "dataset_" + partitionIdx + jvmuid + "_" + outputCount + ".bin";
 
-        URI uri = new URI(exportBaseDirectory
-                        + (exportBaseDirectory.endsWith("/") || exportBaseDirectory.endsWith("\\") ? "" : "/")
-                        + filename);
+        URI uri = exportUri(filename);
 
         Configuration c = conf == null ? DefaultHadoopConfig.get() : conf.getValue().getConfiguration();
 
@@ -24,6 +24,8 @@ import org.deeplearning4j.spark.data.BatchAndExportDataSetsFunction;
 import org.deeplearning4j.spark.data.BatchAndExportMultiDataSetsFunction;
 import org.junit.Test;
 import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.DataSetBatchReader;
+import org.nd4j.linalg.dataset.DataSetBatchWriter;
 import org.nd4j.linalg.dataset.api.MultiDataSet;
 import org.nd4j.linalg.factory.Nd4j;
 
@@ -33,8 +35,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.*;
 
 /**
  * Created by Alex on 29/08/2016.
@@ -99,6 +100,72 @@ public class TestExport extends BaseSparkTest {
         FileUtils.deleteDirectory(f);
     }
 
+    @Test
+    public void testBatchAndExportDataSetsFunctionBatchFile() throws Exception {
+        String baseDir = System.getProperty("java.io.tmpdir");
+        baseDir = FilenameUtils.concat(baseDir, "dl4j_spark_testBatchAndExportBatchFile/");
+        baseDir = baseDir.replaceAll("\\\\", "/");
+        File f = new File(baseDir);
+        if (f.exists())
+            FileUtils.deleteDirectory(f);
+        f.mkdir();
+        f.deleteOnExit();
+        int minibatchSize = 5;
+        int nIn = 4;
+        int nOut = 3;
+
+        List<DataSet> dataSets = new ArrayList<>();
+        dataSets.add(new DataSet(Nd4j.create(10, nIn), Nd4j.create(10, nOut))); //Larger than minibatch size -> tests splitting
+        for (int i = 0; i < 98; i++) {
+            if (i % 2 == 0) {
+                dataSets.add(new DataSet(Nd4j.create(5, nIn), Nd4j.create(5, nOut)));
+            } else {
+                dataSets.add(new DataSet(Nd4j.create(1, nIn), Nd4j.create(1, nOut)));
+                dataSets.add(new DataSet(Nd4j.create(1, nIn), Nd4j.create(1, nOut)));
+                dataSets.add(new DataSet(Nd4j.create(3, nIn), Nd4j.create(3, nOut)));
+            }
+        }
+        //Left-over examples go into the last, smaller minibatch
+        dataSets.add(new DataSet(Nd4j.create(2, nIn), Nd4j.create(2, nOut)));
+
+        Collections.shuffle(dataSets, new Random(12345));
+
+        JavaRDD<DataSet> rdd = sc.parallelize(dataSets);
+        rdd = rdd.repartition(1); //Single partition -> single batch file
+
+        JavaRDD<String> pathsRdd = rdd.mapPartitionsWithIndex(new BatchAndExportDataSetsFunction(minibatchSize,
+                        "file:///" + baseDir, null, DataSetBatchWriter.Compression.DEFLATE), true);
+
+        List<String> paths = pathsRdd.collect();
+        assertEquals(1, paths.size());
+        assertTrue(paths.get(0).endsWith(".dsb"));
+
+        File[] files = f.listFiles();
+        assertNotNull(files);
+
+        File batchFile = null;
+        for (File file : files) {
+            if (file.getPath().endsWith(".dsb"))
+                batchFile = file;
+        }
+        assertNotNull(batchFile);
+
+        try (DataSetBatchReader reader = new DataSetBatchReader(batchFile)) {
+            assertEquals(101, reader.numBatches());
+            int numExamples = 0;
+            for (int i = 0; i < reader.numBatches(); i++) {
+                DataSet ds = reader.get(i);
+                int expected = i < 100 ? minibatchSize : 2;
+                assertArrayEquals(new long[] {expected, nIn}, ds.getFeatures().shape());
+                assertArrayEquals(new long[] {expected, nOut}, ds.getLabels().shape());
+                numExamples += ds.numExamples();
+            }
+            assertEquals(502, numExamples);
+        }
+
+        FileUtils.deleteDirectory(f);
+    }
+
     @Test
     public void testBatchAndExportMultiDataSetsFunction() throws Exception {
         String baseDir = System.getProperty("java.io.tmpdir");
@@ -0,0 +1,318 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.nd4j.linalg.dataset;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * This class provides random access to minibatches stored in DataSet batch file, written by {@link DataSetBatchWriter}.
+ *
+ * File is memory-mapped chunk by chunk. Uncompressed chunks are mapped read-only, compressed chunks are inflated, and
+ * arrays are bulk-copied out of them, without deserialization. Background thread loads next chunks ahead of the
+ * consumer, so sequential reads rarely wait for disk.
+ *
+ * PLEASE NOTE: returned arrays never share memory with the file, so they can be modified in place (i.e. by
+ * preprocessors), and stay valid after the reader is closed.
+ */
+@Slf4j
+public class DataSetBatchReader implements Closeable {
+    @Getter
+    protected final File file;
+    protected final int readAhead;
+
+    protected RandomAccessFile raf;
+    protected FileChannel channel;
+    protected long[][] chunks;
+    protected int[] batchChunks;
+    protected boolean[] labelsSameAsFeatures;
+    protected ArrayInfo[][] arrays;
+
+    protected final Map<Integer, Future<ByteBuffer>> loaded = new LinkedHashMap<>();
+    protected ExecutorService executor;
+
+    public DataSetBatchReader(@NonNull File file) throws IOException {
+        this(file, 2);
+    }
+
+    /**
+     * @param file      DataSet batch file
+     * @param readAhead number of chunks loaded ahead of the current one, 0 to disable background loading
+     */
+    public DataSetBatchReader(@NonNull File file, int readAhead) throws IOException {
+        if (readAhead < 0)
+            throw new IllegalArgumentException("Read-ahead must be >= 0: got " + readAhead);
+
+        this.file = file;
+        this.readAhead = readAhead;
+        this.raf = new RandomAccessFile(file, "r");
+        this.channel = raf.getChannel();
+
+        try {
+            readIndex();
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+
+        if (readAhead > 0) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "DataSetBatchReader read-ahead thread");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+    }
+
+    /**
+     * This method checks if given file looks like DataSet batch file
+     */
+    public static boolean isBatchFile(@NonNull File file) {
+        if (!file.isFile() || file.length() < DataSetBatchWriter.HEADER_LENGTH + DataSetBatchWriter.FOOTER_LENGTH)
+            return false;
+
+        try (DataInputStream dis = new DataInputStream(new FileInputStream(file))) {
+            return dis.readInt() == DataSetBatchWriter.MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    protected void readIndex() throws IOException {
+        long length = channel.size();
+        if (length < DataSetBatchWriter.HEADER_LENGTH + DataSetBatchWriter.FOOTER_LENGTH)
+            throw new IllegalStateException("File is too short to be DataSet batch file: " + file);
+
+        ByteBuffer footer = ByteBuffer.allocate(DataSetBatchWriter.FOOTER_LENGTH);
+        channel.read(footer, length - DataSetBatchWriter.FOOTER_LENGTH);
+        footer.flip();
+        long indexOffset = footer.getLong();
+        int version = footer.getInt();
+        if (footer.getInt() != DataSetBatchWriter.MAGIC)
+            throw new IllegalStateException("File isn't DataSet batch file, or it wasn't closed properly: " + file);
+        if (version != DataSetBatchWriter.FORMAT_VERSION)
+            throw new IllegalStateException("Unsupported DataSet batch file version: " + version);
+
+        channel.position(indexOffset);
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        int numChunks = dis.readInt();
+        chunks = new long[numChunks][];
+        for (int i = 0; i < numChunks; i++)
+            chunks[i] = new long[] {dis.readLong(), dis.readLong(), dis.readLong(), dis.readByte()};
+
+        int numBatches = dis.readInt();
+        batchChunks = new int[numBatches];
+        labelsSameAsFeatures = new boolean[numBatches];
+        arrays = new ArrayInfo[numBatches][4];
+        for (int i = 0; i < numBatches; i++) {
+            batchChunks[i] = dis.readInt();
+            labelsSameAsFeatures[i] = dis.readBoolean();
+            for (int j = 0; j < 4; j++) {
+                if (!dis.readBoolean())
+                    continue;
+
+                ArrayInfo info = new ArrayInfo();
+                info.type = dis.readByte() == 1 ? DataBuffer.Type.DOUBLE : DataBuffer.Type.FLOAT;
+                info.shape = new long[dis.readInt()];
+                for (int k = 0; k < info.shape.length; k++)
+                    info.shape[k] = dis.readLong();
+                info.offset = dis.readLong();
+                info.length = dis.readLong();
+                arrays[i][j] = info;
+            }
+        }
+    }
+
+    /**
+     * @return number of minibatches in this file
+     */
+    public int numBatches() {
+        return batchChunks.length;
+    }
+
+    /**
+     * This method returns minibatch with the given index
+     */
+    public DataSet get(int index) {
+        if (index < 0 || index >= batchChunks.length)
+            throw new IllegalArgumentException("Invalid batch index: " + index + ", number of batches: "
+                            + batchChunks.length);
+
+        int c = batchChunks[index];
+        ByteBuffer chunk;
+        try {
+            chunk = chunk(c).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Unable to load chunk " + c + " of file " + file, e.getCause());
+        }
+
+        ArrayInfo[] info = arrays[index];
+        INDArray features = array(chunk, info[0]);
+        INDArray labels = labelsSameAsFeatures[index] ? features : array(chunk, info[1]);
+        return new DataSet(features, labels, array(chunk, info[2]), array(chunk, info[3]));
+    }
+
+    protected INDArray array(ByteBuffer chunk, ArrayInfo info) {
+        if (info == null)
+            return null;
+
+        ByteBuffer dup = chunk.duplicate();
+        int bytes = (int) (info.length * (info.type == DataBuffer.Type.DOUBLE ? 8 : 4));
+        dup.position((int) info.offset);
+        dup.limit((int) info.offset + bytes);
+        ByteBuffer slice = dup.slice().order(ByteOrder.LITTLE_ENDIAN);
+
+        // chunks are evicted once consumed, so arrays are always copied out of them
+        if (info.type == DataBuffer.Type.DOUBLE) {
+            double[] data = new double[(int) info.length];
+            slice.asDoubleBuffer().get(data);
+            return Nd4j.create(data, info.shape, 'c');
+        } else {
+            float[] data = new float[(int) info.length];
+            slice.asFloatBuffer().get(data);
+            return Nd4j.create(data, info.shape, 'c');
+        }
+    }
+
+    /**
+     * This method returns future for the given chunk, and schedules loading of the next chunks
+     */
+    protected synchronized Future<ByteBuffer> chunk(int c) {
+        Future<ByteBuffer> f = submit(c);
+        for (int i = 1; i <= readAhead && c + i < chunks.length; i++)
+            submit(c + i);
+
+        // only current chunk and read-ahead window are kept
+        Iterator<Map.Entry<Integer, Future<ByteBuffer>>> iterator = loaded.entrySet().iterator();
+        while (iterator.hasNext()) {
+            int k = iterator.next().getKey();
+            if (k < c || k > c + readAhead)
+                iterator.remove();
+        }
+        return f;
+    }
+
+    protected Future<ByteBuffer> submit(final int c) {
+        Future<ByteBuffer> f = loaded.get(c);
+        if (f != null)
+            return f;
+
+        Callable<ByteBuffer> task = new Callable<ByteBuffer>() {
+            @Override
+            public ByteBuffer call() throws Exception {
+                return load(c);
+            }
+        };
+
+        if (executor != null) {
+            f = executor.submit(task);
+        } else {
+            FutureTask<ByteBuffer> ft = new FutureTask<>(task);
+            ft.run();
+            f = ft;
+        }
+        loaded.put(c, f);
+        return f;
+    }
+
+    protected ByteBuffer load(int c) throws IOException {
+        long offset = chunks[c][0];
+        long stored = chunks[c][1];
+        int raw = (int) chunks[c][2];
+        DataSetBatchWriter.Compression compression = DataSetBatchWriter.Compression.values()[(int) chunks[c][3]];
+
+        if (compression == DataSetBatchWriter.Compression.NONE) {
+            // pages are touched here, so read-ahead actually brings them into memory
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, offset, stored);
+            mapping.load();
+            return mapping;
+        }
+
+        ByteBuffer compressed = ByteBuffer.allocate((int) stored);
+        readFully(compressed, offset);
+
+        byte[] out = new byte[raw];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array());
+            int total = 0;
+            while (total < raw && !inflater.finished()) {
+                int n = inflater.inflate(out, total, raw - total);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                total += n;
+            }
+            if (total != raw)
+                throw new IOException("Chunk " + c + " is corrupted: expected " + raw + " bytes, got " + total);
+        } catch (DataFormatException e) {
+            throw new IOException("Chunk " + c + " is corrupted", e);
+        } finally {
+            inflater.end();
+        }
+
+        return ByteBuffer.wrap(out);
+    }
+
+    protected void readFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, offset + buffer.position());
+            if (n < 0)
+                throw new EOFException("Unexpected end of file: " + file);
+        }
+        buffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (executor != null)
+            executor.shutdownNow();
+        synchronized (this) {
+            loaded.clear();
+        }
+        raf.close();
+    }
+
+    protected static class ArrayInfo {
+        protected DataBuffer.Type type;
+        protected long[] shape;
+        protected long offset;
+        protected long length;
+    }
+}
@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.nd4j.linalg.dataset;
+
+import lombok.NonNull;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * This class writes many minibatches into single DataSet batch file, readable via {@link DataSetBatchReader}.
+ *
+ * File layout:
+ * - 64-byte header
+ * - chunks: each chunk holds arrays of one or more minibatches, as raw little-endian data aligned to 64 bytes.
+ *   Each chunk is optionally compressed as a whole.
+ * - index: position of each chunk, and chunk, offset, data type and shape of each array of each minibatch
+ * - 16-byte footer: index offset, format version and magic number
+ *
+ * Since index is written last, this writer works with any OutputStream, including HDFS streams.
+ *
+ * PLEASE NOTE: example metadata of DataSets isn't stored.
+ */
+public class DataSetBatchWriter implements Closeable {
+    public static final int MAGIC = 0x44534246; // "DSBF"
+    public static final int FORMAT_VERSION = 1;
+    public static final int HEADER_LENGTH = 64;
+    public static final int FOOTER_LENGTH = 16;
+    public static final int ALIGNMENT = 64;
+    public static final long DEFAULT_CHUNK_SIZE = 64L * 1024 * 1024;
+
+    public enum Compression {
+        NONE, DEFLATE
+    }
+
+    protected final DataOutputStream out;
+    protected final Compression compression;
+    protected final long chunkSize;
+
+    protected long position = 0;
+    protected ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+    protected List<long[]> chunks = new ArrayList<>();
+    protected List<BatchEntry> batches = new ArrayList<>();
+    protected boolean closed = false;
+
+    public DataSetBatchWriter(@NonNull File file) throws IOException {
+        this(file, Compression.NONE, DEFAULT_CHUNK_SIZE);
+    }
+
+    public DataSetBatchWriter(@NonNull File file, @NonNull Compression compression, long chunkSize) throws IOException {
+        this(new BufferedOutputStream(new FileOutputStream(file), 1024 * 1024), compression, chunkSize);
+    }
+
+    /**
+     * @param stream      stream to write to, closed when this writer is closed
+     * @param compression compression applied to each chunk
+     * @param chunkSize   chunk is closed once its raw size exceeds this number of bytes
+     */
+    public DataSetBatchWriter(@NonNull OutputStream stream, @NonNull Compression compression, long chunkSize)
+                    throws IOException {
+        if (chunkSize <= 0 || chunkSize >= Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Chunk size must be in range (0, 2GB): got " + chunkSize);
+
+        this.out = new DataOutputStream(stream);
+        this.compression = compression;
+        this.chunkSize = chunkSize;
+
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.write(new byte[HEADER_LENGTH - 8]);
+        position = HEADER_LENGTH;
+    }
+
+    /**
+     * This method appends single minibatch
+     */
+    public void write(@NonNull DataSet dataSet) throws IOException {
+        if (closed)
+            throw new IllegalStateException("Writer is already closed");
+
+        BatchEntry entry = new BatchEntry();
+        entry.chunk = chunks.size();
+        entry.labelsSameAsFeatures = dataSet.getLabels() != null && dataSet.getLabels() == dataSet.getFeatures();
+        entry.arrays[0] = append(dataSet.getFeatures());
+        entry.arrays[1] = entry.labelsSameAsFeatures ? null : append(dataSet.getLabels());
+        entry.arrays[2] = append(dataSet.getFeaturesMaskArray());
+        entry.arrays[3] = append(dataSet.getLabelsMaskArray());
+        batches.add(entry);
+
+        if (chunk.size() >= chunkSize)
+            flushChunk();
+    }
+
+    protected ArrayEntry append(INDArray array) throws IOException {
+        if (array == null)
+            return null;
+
+        ArrayEntry entry = new ArrayEntry();
+        entry.type = array.data().dataType() == DataBuffer.Type.DOUBLE ? DataBuffer.Type.DOUBLE : DataBuffer.Type.FLOAT;
+        entry.shape = array.shape();
+        entry.length = array.length();
+
+        long bytes = entry.length * (entry.type == DataBuffer.Type.DOUBLE ? 8 : 4);
+        if (chunk.size() + bytes + ALIGNMENT >= Integer.MAX_VALUE)
+            throw new IllegalStateException("Array of " + bytes + " bytes doesn't fit into single chunk");
+
+        pad(chunk);
+        entry.offset = chunk.size();
+
+        // chunk stores arrays in c order, while given array might be a view or f-ordered
+        INDArray c = array.dup('c');
+        ByteBuffer bb = ByteBuffer.allocate((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (entry.type == DataBuffer.Type.DOUBLE)
+            bb.asDoubleBuffer().put(c.data().asDouble());
+        else
+            bb.asFloatBuffer().put(c.data().asFloat());
+        chunk.write(bb.array());
+
+        return entry;
+    }
+
+    protected static void pad(ByteArrayOutputStream stream) {
+        while (stream.size() % ALIGNMENT != 0)
+            stream.write(0);
+    }
+
+    protected void flushChunk() throws IOException {
+        if (chunk.size() == 0)
+            return;
+
+        byte[] raw = chunk.toByteArray();
+        byte[] stored = raw;
+        if (compression == Compression.DEFLATE) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(raw.length / 2);
+            try (DeflaterOutputStream dos = new DeflaterOutputStream(baos, new Deflater(Deflater.BEST_SPEED))) {
+                dos.write(raw);
+            }
+            stored = baos.toByteArray();
+        }
+
+        // chunks are aligned within the file too
+        int padding = (int) ((ALIGNMENT - position % ALIGNMENT) % ALIGNMENT);
+        out.write(new byte[padding]);
+        position += padding;
+
+        chunks.add(new long[] {position, stored.length, raw.length, compression.ordinal()});
+        out.write(stored);
+        position += stored.length;
+        chunk.reset();
+    }
+
+    /**
+     * This method flushes last chunk, writes index and closes underlying stream
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+
+        try {
+            flushChunk();
+
+            long indexOffset = position;
+            out.writeInt(chunks.size());
+            for (long[] c : chunks) {
+                out.writeLong(c[0]);
+                out.writeLong(c[1]);
+                out.writeLong(c[2]);
+                out.writeByte((int) c[3]);
+            }
+
+            out.writeInt(batches.size());
+            for (BatchEntry b : batches) {
+                out.writeInt(b.chunk);
+                out.writeBoolean(b.labelsSameAsFeatures);
+                for (ArrayEntry a : b.arrays) {
+                    out.writeBoolean(a != null);
+                    if (a == null)
+                        continue;
+                    out.writeByte(a.type == DataBuffer.Type.DOUBLE ? 1 : 0);
+                    out.writeInt(a.shape.length);
+                    for (long s : a.shape)
+                        out.writeLong(s);
+                    out.writeLong(a.offset);
+                    out.writeLong(a.length);
+                }
+            }
+
+            out.writeLong(indexOffset);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(MAGIC);
+            out.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return number of minibatches written so far
+     */
+    public int numBatches() {
+        return batches.size();
+    }
+
+    protected static class BatchEntry {
+        protected int chunk;
+        protected boolean labelsSameAsFeatures;
+        protected ArrayEntry[] arrays = new ArrayEntry[4];
+    }
+
+    protected static class ArrayEntry {
+        protected DataBuffer.Type type;
+        protected long[] shape;
+        protected long offset;
+        protected long length;
+    }
+}
@@ -19,6 +19,7 @@ package org.nd4j.linalg.dataset;
 import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
 import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
@@ -27,9 +28,13 @@ import java.util.List;
  * Read in existing mini batches created
  * by the mini batch file datasetiterator.
  *
+ * Mini batches can also be read from single DataSet batch file, written by {@link DataSetBatchWriter}:
+ * just pass that file instead of the root directory. Call {@link #close()} once iterator isn't needed anymore,
+ * to release the file.
+ *
  * @author Adam Gibson
  */
-public class ExistingMiniBatchDataSetIterator implements DataSetIterator {
+public class ExistingMiniBatchDataSetIterator implements DataSetIterator, Closeable {
 
     public static final String DEFAULT_PATTERN = "dataset-%d.bin";
 
@@ -38,6 +43,8 @@ public class ExistingMiniBatchDataSetIterator implements DataSetIterator {
     private int totalBatches = -1;
     private DataSetPreProcessor dataSetPreProcessor;
     private final String pattern;
+    private final boolean batchFile;
+    private DataSetBatchReader batchReader;
 
     /**
      * Create with the given root directory, using the default filename pattern {@link #DEFAULT_PATTERN}
@@ -55,8 +62,13 @@ public class ExistingMiniBatchDataSetIterator implements DataSetIterator {
      */
     public ExistingMiniBatchDataSetIterator(File rootDir, String pattern) {
         this.rootDir = rootDir;
-        totalBatches = rootDir.list().length;
         this.pattern = pattern;
+        this.batchFile = DataSetBatchReader.isBatchFile(rootDir);
+        if (batchFile) {
+            totalBatches = batchReader().numBatches();
+        } else {
+            totalBatches = rootDir.list().length;
+        }
     }
 
     @Override
@@ -134,9 +146,35 @@ public class ExistingMiniBatchDataSetIterator implements DataSetIterator {
     }
 
     private DataSet read(int idx) throws IOException {
+        if (batchFile)
+            return batchReader().get(idx);
+
         File path = new File(rootDir, String.format(pattern, idx));
         DataSet d = new DataSet();
         d.load(path);
         return d;
     }
+
+    private synchronized DataSetBatchReader batchReader() {
+        // reader is re-opened if iterator is used after close()
+        if (batchReader == null) {
+            try {
+                batchReader = new DataSetBatchReader(rootDir);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to open DataSet batch file " + rootDir, e);
+            }
+        }
+        return batchReader;
+    }
+
+    /**
+     * This method releases DataSet batch file, if iterator reads from one
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (batchReader != null) {
+            batchReader.close();
+            batchReader = null;
+        }
+    }
 }
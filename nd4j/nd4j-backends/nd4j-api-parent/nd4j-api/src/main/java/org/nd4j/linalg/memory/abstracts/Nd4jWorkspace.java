@@ -32,6 +32,7 @@ import org.nd4j.linalg.api.memory.pointers.PointersPair;
 import org.nd4j.linalg.exception.ND4JIllegalStateException;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.memory.MemoryManager;
+import org.nd4j.linalg.memory.profile.WorkspaceCounters;
 import org.nd4j.linalg.util.ND4JFileUtils;
 
 import java.io.BufferedOutputStream;
@@ -91,6 +92,14 @@ public abstract class Nd4jWorkspace implements MemoryWorkspace {
     protected AtomicLong spilledAllocationsSize = new AtomicLong(0);
     protected AtomicLong pinnedAllocationsSize = new AtomicLong(0);
     protected AtomicLong maxCycle = new AtomicLong(0);
+    protected AtomicLong cycleSpills = new AtomicLong(0);
+    protected AtomicLong cycleSpilledBytes = new AtomicLong(0);
+    protected AtomicLong cycleMappedBytes = new AtomicLong(0);
+    // file-backed spills: bytes currently placed in scratch file, and total bytes ever spilled to file
+    protected AtomicLong mappedAllocationsSize = new AtomicLong(0);
+    protected AtomicLong mappedSpilledSize = new AtomicLong(0);
+    // usage counters, aggregated by workspace manager only when stats are requested
+    protected final WorkspaceCounters counters = new WorkspaceCounters();
     protected AtomicBoolean resetPlanned = new AtomicBoolean(false);
     protected AtomicBoolean isOpen = new AtomicBoolean(false);
     protected AtomicBoolean isInit = new AtomicBoolean(false);
@@ -314,6 +323,12 @@ public abstract class Nd4jWorkspace implements MemoryWorkspace {
             if (workspaceConfiguration.getMaxSize() > 0 && currentSize.get() > workspaceConfiguration.getMaxSize())
                 currentSize.set(workspaceConfiguration.getMaxSize());
 
+            // workspace buffer itself should fit into RAM budget, everything else is spilled
+            if (workspaceConfiguration.getMaxRamSize() > 0
+                            && workspaceConfiguration.getPolicyLocation() == LocationPolicy.RAM
+                            && currentSize.get() > workspaceConfiguration.getMaxRamSize())
+                currentSize.set(workspaceConfiguration.getMaxRamSize());
+
         }
     }
 
@@ -401,9 +416,11 @@ public abstract class Nd4jWorkspace implements MemoryWorkspace {
             }
 
             // updating respective counters
-            if (!trimmer)
+            if (!trimmer) {
                 spilledAllocationsSize.addAndGet(requiredMemory);
-            else
+                cycleSpills.incrementAndGet();
+                cycleSpilledBytes.addAndGet(requiredMemory);
+            } else
                 pinnedAllocationsSize.addAndGet(requiredMemory);
 
             if (isDebug.get())
@@ -417,6 +434,22 @@ public abstract class Nd4jWorkspace implements MemoryWorkspace {
                     if (!trimmer) {
                         externalCount.incrementAndGet();
 
+                        // if RAM budget is exceeded, spill goes to memory-mapped scratch file, if backend supports that
+                        if (workspaceConfiguration.getMaxRamSize() > 0 && currentSize.get()
+                                        + spilledAllocationsSize.get() - mappedAllocationsSize.get() > workspaceConfiguration.getMaxRamSize()) {
+                            PagedPointer mapped = allocateMapped(requiredMemory, numElements);
+                            if (mapped != null) {
+                                mappedAllocationsSize.addAndGet(requiredMemory);
+                                mappedSpilledSize.addAndGet(requiredMemory);
+                                cycleMappedBytes.addAndGet(requiredMemory);
+
+                                if (initialize)
+                                    Pointer.memset(mapped, 0, requiredMemory);
+
+                                return mapped;
+                            }
+                        }
+
                         PagedPointer pointer = new PagedPointer(
                                         memoryManager.allocate(requiredMemory, MemoryKind.HOST, initialize),
                                         numElements);
@@ -453,7 +486,9 @@ public abstract class Nd4jWorkspace implements MemoryWorkspace {
         if ((currentSize.get() < maxCycle.get() || currentSize.get() < cycleAllocations.get())
                         && workspaceConfiguration.getPolicySpill() == SpillPolicy.REALLOCATE
                         && (workspaceConfiguration.getMaxSize() == 0
-                                        || (maxCycle.get() < workspaceConfiguration.getMaxSize()))) {
+                                        || (maxCycle.get() < workspaceConfiguration.getMaxSize()))
+                        && (workspaceConfiguration.getMaxRamSize() == 0
+                                        || currentSize.get() < workspaceConfiguration.getMaxRamSize())) {
             if (workspaceConfiguration.getPolicyReset() != ResetPolicy.ENDOFBUFFER_REACHED) {
                 destroyWorkspace(true);
                 isInit.set(false);
@@ -509,6 +544,48 @@ public abstract class Nd4jWorkspace implements MemoryWorkspace {
             }
     }
 
+    /**
+     * This method allocates spilled memory in memory-mapped scratch file. Scratch memory is reused after
+     * {@link #resetMappedAllocations()}, and released in {@link #releaseMappedAllocations()}.
+     *
+     * @return pointer, or null if file-backed spills aren't supported by this workspace implementation
+     */
+    protected PagedPointer allocateMapped(long requiredMemory, long numElements) {
+        return null;
+    }
+
+    /**
+     * This method marks all memory-mapped spills as free. Should be called along with purging external allocations
+     */
+    protected void resetMappedAllocations() {
+        mappedAllocationsSize.set(0);
+    }
+
+    /**
+     * This method releases memory-mapped scratch files, if any
+     */
+    protected void releaseMappedAllocations() {
+        mappedAllocationsSize.set(0);
+    }
+
+    /**
+     * This method returns total number of bytes spilled to memory-mapped scratch file
+     *
+     * @return
+     */
+    public long getMappedSpilledSize() {
+        return mappedSpilledSize.get();
+    }
+
+    /**
+     * This method returns usage counters of this workspace
+     *
+     * @return
+     */
+    public WorkspaceCounters getCounters() {
+        return counters;
+    }
+
     /**
      * This method returns number of spilled allocations, that can be purged at the end of block
      * @return
@@ -630,6 +707,10 @@ public abstract class Nd4jWorkspace implements MemoryWorkspace {
             maxCycle.set(cycleAllocations.get());
         }
 
+        // counting this cycle, so learned sizes can be reused by other workspaces with the same id
+        counters.recordCycle(cycleAllocations.get(), currentSize.get(), cycleSpills.getAndSet(0),
+                        cycleSpilledBytes.getAndSet(0), cycleMappedBytes.getAndSet(0));
+
         // checking, if we should reallocate this workspace to higher amount of memory
         if (workspaceConfiguration.getPolicyLearning() != LearningPolicy.NONE && maxCycle.get() > 0) {
             //log.info("Delayed workspace {}, device_{} initialization starts...", id, Nd4j.getAffinityManager().getDeviceForCurrentThread());
@@ -834,6 +915,7 @@ public abstract class Nd4jWorkspace implements MemoryWorkspace {
         private Long threadId;
         private Queue<PointersPair> pinnedPointers;
         private List<PointersPair> externalPointers;
+        private WorkspaceCounters counters;
         private String key;
 
         public GarbageWorkspaceReference(MemoryWorkspace referent, ReferenceQueue<? super MemoryWorkspace> queue) {
@@ -844,6 +926,7 @@ public abstract class Nd4jWorkspace implements MemoryWorkspace {
             this.threadId = referent.getThreadId();
             this.pinnedPointers = ((Nd4jWorkspace) referent).pinnedAllocations;
             this.externalPointers = ((Nd4jWorkspace) referent).externalAllocations;
+            this.counters = ((Nd4jWorkspace) referent).counters;
 
             this.key = id + "_" + threadId;
         }
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.nd4j.linalg.memory.profile;
+
+/**
+ * This class holds usage counters of single workspace instance. Counters are updated only by thread that owns
+ * workspace, without locks, and are aggregated into {@link WorkspaceStats} only when stats are requested.
+ *
+ * PLEASE NOTE: snapshot taken while workspace is in the middle of cycle end may miss that cycle
+ */
+public class WorkspaceCounters {
+    protected volatile long cycles;
+    protected volatile long peakCycleAllocations;
+    protected volatile long workspaceSize;
+    protected volatile long spilledCycles;
+    protected volatile long spilledAllocations;
+    protected volatile long spilledBytes;
+    protected volatile long mappedBytes;
+
+    /**
+     * This method updates counters with results of single cycle. Should be called by owner thread only.
+     */
+    public void recordCycle(long cycleAllocations, long workspaceSize, long spills, long spilledBytes,
+                    long mappedBytes) {
+        cycles++;
+        if (cycleAllocations > peakCycleAllocations)
+            peakCycleAllocations = cycleAllocations;
+
+        if (workspaceSize > this.workspaceSize)
+            this.workspaceSize = workspaceSize;
+
+        if (spills > 0) {
+            spilledCycles++;
+            spilledAllocations += spills;
+            this.spilledBytes += spilledBytes;
+            this.mappedBytes += mappedBytes;
+        }
+    }
+
+    /**
+     * This method returns counters as stats for given workspace id
+     *
+     * @param id
+     * @return
+     */
+    public WorkspaceStats snapshot(String id) {
+        return new WorkspaceStats(id, cycles, peakCycleAllocations, workspaceSize, spilledCycles, spilledAllocations,
+                        spilledBytes, mappedBytes);
+    }
+
+    /**
+     * This method resets all counters.
+     * PLEASE NOTE: cycle that ends concurrently with this call may be partially kept
+     */
+    public void reset() {
+        cycles = 0;
+        peakCycleAllocations = 0;
+        workspaceSize = 0;
+        spilledCycles = 0;
+        spilledAllocations = 0;
+        spilledBytes = 0;
+        mappedBytes = 0;
+    }
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.nd4j.linalg.memory.profile;
+
+import lombok.NonNull;
+import org.apache.commons.io.FileUtils;
+import org.nd4j.shade.jackson.annotation.JsonAutoDetect;
+import org.nd4j.shade.jackson.databind.DeserializationFeature;
+import org.nd4j.shade.jackson.databind.ObjectMapper;
+import org.nd4j.shade.jackson.databind.SerializationFeature;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class holds learned workspace statistics, keyed by workspace id. Profile saved by one process can be loaded
+ * by another one via {@link org.nd4j.linalg.memory.provider.BasicWorkspaceManager#loadWorkspaceProfile(File)}, so
+ * workspaces get pre-sized on creation instead of learning their size again.
+ */
+public class WorkspaceProfile implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final ObjectMapper objectMapper = configureMapper(new ObjectMapper());
+
+    protected Map<String, WorkspaceStats> workspaces = new TreeMap<>();
+
+    private static ObjectMapper configureMapper(ObjectMapper ret) {
+        ret.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        ret.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        ret.enable(SerializationFeature.INDENT_OUTPUT);
+        ret.setVisibilityChecker(ret.getSerializationConfig().getDefaultVisibilityChecker()
+                        .withFieldVisibility(JsonAutoDetect.Visibility.ANY)
+                        .withGetterVisibility(JsonAutoDetect.Visibility.NONE)
+                        .withIsGetterVisibility(JsonAutoDetect.Visibility.NONE)
+                        .withSetterVisibility(JsonAutoDetect.Visibility.NONE)
+                        .withCreatorVisibility(JsonAutoDetect.Visibility.NONE));
+        return ret;
+    }
+
+    public WorkspaceProfile() {
+        //
+    }
+
+    public WorkspaceProfile(@NonNull Map<String, WorkspaceStats> workspaces) {
+        for (WorkspaceStats stats : workspaces.values())
+            put(stats);
+    }
+
+    public synchronized WorkspaceStats get(@NonNull String id) {
+        WorkspaceStats stats = workspaces.get(id);
+        return stats == null ? null : stats.copy();
+    }
+
+    public synchronized void put(@NonNull WorkspaceStats stats) {
+        workspaces.put(stats.getId(), stats.copy());
+    }
+
+    public synchronized List<WorkspaceStats> getWorkspaces() {
+        List<WorkspaceStats> result = new ArrayList<>(workspaces.size());
+        for (WorkspaceStats stats : workspaces.values())
+            result.add(stats.copy());
+        return result;
+    }
+
+    public synchronized boolean isEmpty() {
+        return workspaces.isEmpty();
+    }
+
+    /**
+     * This method merges other profile into this one: peak values are maxed, counters are summed
+     *
+     * @param other
+     */
+    public synchronized void merge(@NonNull WorkspaceProfile other) {
+        for (WorkspaceStats stats : other.getWorkspaces()) {
+            WorkspaceStats existing = workspaces.get(stats.getId());
+            if (existing == null)
+                workspaces.put(stats.getId(), stats);
+            else
+                existing.merge(stats);
+        }
+    }
+
+    public synchronized String toJson() {
+        try {
+            return objectMapper.writeValueAsString(this);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static WorkspaceProfile fromJson(@NonNull String json) {
+        try {
+            return objectMapper.readValue(json, WorkspaceProfile.class);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * This method writes profile to given file, as JSON
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void save(@NonNull File file) throws IOException {
+        FileUtils.writeStringToFile(file, toJson(), StandardCharsets.UTF_8);
+    }
+
+    public static WorkspaceProfile load(@NonNull File file) throws IOException {
+        return fromJson(FileUtils.readFileToString(file, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.nd4j.linalg.memory.profile;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * This class holds usage statistics for all workspaces with the same id, aggregated over all threads.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkspaceStats implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    protected String id;
+
+    /**
+     * Number of closed scopes (cycles)
+     */
+    protected long cycles;
+
+    /**
+     * Max amount of memory requested by single cycle, spilled allocations included
+     */
+    protected long peakCycleAllocations;
+
+    /**
+     * Max size of workspace buffer, as allocated
+     */
+    protected long workspaceSize;
+
+    /**
+     * Number of cycles that had at least one spilled allocation
+     */
+    protected long spilledCycles;
+
+    /**
+     * Total number of spilled allocations
+     */
+    protected long spilledAllocations;
+
+    /**
+     * Total amount of spilled memory
+     */
+    protected long spilledBytes;
+
+    /**
+     * Total amount of memory spilled to memory-mapped scratch files, included into spilledBytes
+     */
+    protected long mappedBytes;
+
+    public WorkspaceStats(String id) {
+        this.id = id;
+    }
+
+    /**
+     * This method updates stats with results of single cycle
+     */
+    public synchronized void recordCycle(long cycleAllocations, long workspaceSize, long spills, long spilledBytes,
+                    long mappedBytes) {
+        cycles++;
+        peakCycleAllocations = Math.max(peakCycleAllocations, cycleAllocations);
+        this.workspaceSize = Math.max(this.workspaceSize, workspaceSize);
+        if (spills > 0) {
+            spilledCycles++;
+            spilledAllocations += spills;
+            this.spilledBytes += spilledBytes;
+            this.mappedBytes += mappedBytes;
+        }
+    }
+
+    /**
+     * This method merges other stats for the same workspace id into this one
+     *
+     * @param other
+     */
+    public synchronized void merge(WorkspaceStats other) {
+        cycles += other.cycles;
+        peakCycleAllocations = Math.max(peakCycleAllocations, other.peakCycleAllocations);
+        workspaceSize = Math.max(workspaceSize, other.workspaceSize);
+        spilledCycles += other.spilledCycles;
+        spilledAllocations += other.spilledAllocations;
+        spilledBytes += other.spilledBytes;
+        mappedBytes += other.mappedBytes;
+    }
+
+    /**
+     * This method returns initial size that would let workspace serve its peak cycle without spills.
+     * Overallocation, if any, is applied on top of it by workspace itself.
+     *
+     * @return
+     */
+    public synchronized long recommendedInitialSize() {
+        return peakCycleAllocations;
+    }
+
+    /**
+     * This method returns fraction of cycles that had spilled allocations
+     *
+     * @return
+     */
+    public synchronized double spillRate() {
+        return cycles > 0 ? (double) spilledCycles / cycles : 0.0;
+    }
+
+    public synchronized WorkspaceStats copy() {
+        return new WorkspaceStats(id, cycles, peakCycleAllocations, workspaceSize, spilledCycles, spilledAllocations,
+                        spilledBytes, mappedBytes);
+    }
+}
@@ -18,22 +18,30 @@ package org.nd4j.linalg.memory.provider;
 
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.nd4j.config.ND4JSystemProperties;
 import org.nd4j.linalg.api.memory.MemoryWorkspace;
 import org.nd4j.linalg.api.memory.MemoryWorkspaceManager;
 import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
 import org.nd4j.linalg.api.memory.enums.*;
 import org.nd4j.linalg.api.memory.pointers.PointersPair;
+import org.nd4j.linalg.exception.ND4JIllegalStateException;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.memory.abstracts.DummyWorkspace;
 import org.nd4j.linalg.memory.abstracts.Nd4jWorkspace;
+import org.nd4j.linalg.memory.profile.WorkspaceProfile;
+import org.nd4j.linalg.memory.profile.WorkspaceStats;
 import org.nd4j.linalg.primitives.SynchronizedObject;
 import org.nd4j.util.StringUtils;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.ref.ReferenceQueue;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -52,6 +60,16 @@ public abstract class BasicWorkspaceManager implements MemoryWorkspaceManager {
     private WorkspaceDeallocatorThread thread;
     private Map<String, Nd4jWorkspace.GarbageWorkspaceReference> referenceMap = new ConcurrentHashMap<>();
 
+    // references to live workspaces, their counters are aggregated only when stats are requested
+    protected Set<Nd4jWorkspace.GarbageWorkspaceReference> liveReferences =
+                    Collections.newSetFromMap(new ConcurrentHashMap<Nd4jWorkspace.GarbageWorkspaceReference, Boolean>());
+    // per-id stats of workspaces that were released already
+    protected final Map<String, WorkspaceStats> retiredStats = new HashMap<>();
+    // profile used to pre-size new workspaces, if any
+    protected volatile WorkspaceProfile workspaceProfile;
+    // per-id RAM budgets, see WorkspaceConfiguration.maxRamSize
+    protected ConcurrentHashMap<String, Long> ramLimits = new ConcurrentHashMap<>();
+
     // default mode is DISABLED, as in: production mode
     protected SynchronizedObject<DebugMode> debugMode = new SynchronizedObject<>(DebugMode.DISABLED);
 
@@ -67,6 +85,34 @@ public abstract class BasicWorkspaceManager implements MemoryWorkspaceManager {
 
         thread = new WorkspaceDeallocatorThread(this.queue);
         thread.start();
+
+        String profilePath = System.getProperty(ND4JSystemProperties.WORKSPACE_PROFILE_PROPERTY);
+        if (profilePath != null && !profilePath.isEmpty())
+            attachWorkspaceProfile(new File(profilePath));
+    }
+
+    /**
+     * This method loads profile from given file, if it exists, and saves updated profile back to it on JVM shutdown
+     */
+    protected void attachWorkspaceProfile(@NonNull final File file) {
+        if (file.exists()) {
+            try {
+                loadWorkspaceProfile(file);
+            } catch (Exception e) {
+                log.warn("Failed to load workspace profile from [{}]", file.getAbsolutePath(), e);
+            }
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    saveWorkspaceProfile(file);
+                } catch (Exception e) {
+                    log.warn("Failed to save workspace profile to [{}]", file.getAbsolutePath(), e);
+                }
+            }
+        }));
     }
 
     /**
@@ -134,6 +180,52 @@ public abstract class BasicWorkspaceManager implements MemoryWorkspaceManager {
         Nd4jWorkspace.GarbageWorkspaceReference reference =
                         new Nd4jWorkspace.GarbageWorkspaceReference(workspace, queue);
         referenceMap.put(reference.getKey(), reference);
+        liveReferences.add(reference);
+    }
+
+    /**
+     * This method moves counters of released workspace into retired stats, so they survive workspace itself
+     */
+    protected void retireReference(Nd4jWorkspace.GarbageWorkspaceReference reference) {
+        synchronized (retiredStats) {
+            if (!liveReferences.remove(reference) || reference.getCounters() == null)
+                return;
+
+            WorkspaceStats stats = reference.getCounters().snapshot(reference.getId());
+            WorkspaceStats existing = retiredStats.get(stats.getId());
+            if (existing == null)
+                retiredStats.put(stats.getId(), stats);
+            else
+                existing.merge(stats);
+        }
+    }
+
+    /**
+     * This method aggregates counters of live and released workspaces
+     *
+     * @param id workspace id, or null for all workspaces
+     * @return
+     */
+    protected Map<String, WorkspaceStats> aggregateStats(String id) {
+        Map<String, WorkspaceStats> result = new HashMap<>();
+        synchronized (retiredStats) {
+            for (WorkspaceStats stats : retiredStats.values())
+                if (id == null || id.equals(stats.getId()))
+                    result.put(stats.getId(), stats.copy());
+
+            for (Nd4jWorkspace.GarbageWorkspaceReference reference : liveReferences) {
+                if (reference.getCounters() == null || (id != null && !id.equals(reference.getId())))
+                    continue;
+
+                WorkspaceStats stats = reference.getCounters().snapshot(reference.getId());
+                WorkspaceStats existing = result.get(stats.getId());
+                if (existing == null)
+                    result.put(stats.getId(), stats);
+                else
+                    existing.merge(stats);
+            }
+        }
+        return result;
     }
 
     @Override
@@ -328,6 +420,7 @@ public abstract class BasicWorkspaceManager implements MemoryWorkspaceManager {
                         }
 
                         referenceMap.remove(reference.getKey());
+                        retireReference(reference);
                     }
                 } catch (InterruptedException e) {
                     return; /* terminate thread when being interrupted */
@@ -360,6 +453,152 @@ public abstract class BasicWorkspaceManager implements MemoryWorkspaceManager {
     }
 
 
+    /**
+     * This method returns stats recorded for workspaces with given id in this process, or null
+     *
+     * @param id
+     * @return
+     */
+    public WorkspaceStats getWorkspaceStats(@NonNull String id) {
+        return aggregateStats(id).get(id);
+    }
+
+    /**
+     * This method drops all stats recorded so far. Loaded profile, if any, is kept.
+     */
+    public void resetWorkspaceStats() {
+        synchronized (retiredStats) {
+            retiredStats.clear();
+            for (Nd4jWorkspace.GarbageWorkspaceReference reference : liveReferences)
+                if (reference.getCounters() != null)
+                    reference.getCounters().reset();
+        }
+    }
+
+    /**
+     * This method returns profile built from stats recorded in this process, merged with loaded profile, if any
+     *
+     * @return
+     */
+    public WorkspaceProfile getWorkspaceProfile() {
+        WorkspaceProfile profile = new WorkspaceProfile(aggregateStats(null));
+        WorkspaceProfile loaded = workspaceProfile;
+        if (loaded != null)
+            profile.merge(loaded);
+
+        return profile;
+    }
+
+    /**
+     * This method sets profile, which will be used to pre-size workspaces created after this call.
+     * Workspaces with learning policy NONE, explicit initial size, or circular workspaces are never affected.
+     *
+     * @param profile profile to use, or null to disable pre-sizing
+     */
+    public void setWorkspaceProfile(WorkspaceProfile profile) {
+        this.workspaceProfile = profile;
+    }
+
+    public void loadWorkspaceProfile(@NonNull File file) throws IOException {
+        setWorkspaceProfile(WorkspaceProfile.load(file));
+    }
+
+    public void saveWorkspaceProfile(@NonNull File file) throws IOException {
+        getWorkspaceProfile().save(file);
+    }
+
+    /**
+     * This method sets RAM budget for workspaces with given id, created after this call. Allocations beyond this budget
+     * are spilled into memory-mapped scratch file, see {@link WorkspaceConfiguration#getMaxRamSize()}
+     *
+     * @param id       workspace id
+     * @param maxBytes RAM budget in bytes, or 0 to remove budget
+     */
+    public void setWorkspaceRamLimit(@NonNull String id, long maxBytes) {
+        if (maxBytes < 0)
+            throw new ND4JIllegalStateException("RAM limit should be non-negative value");
+
+        if (maxBytes == 0)
+            ramLimits.remove(id);
+        else
+            ramLimits.put(id, maxBytes);
+    }
+
+    /**
+     * This method returns configuration for new workspace with given id:
+     * 1) if RAM budget was set for this id, it's applied to configuration
+     * 2) if loaded profile has learned size for this id, it's used as initial size, so workspace doesn't have to learn it again
+     *
+     * @param configuration
+     * @param id
+     * @return
+     */
+    protected WorkspaceConfiguration effectiveConfiguration(@NonNull WorkspaceConfiguration configuration, @NonNull String id) {
+        long initialSize = configuration.getInitialSize();
+        long maxRamSize = configuration.getMaxRamSize();
+
+        Long ramLimit = ramLimits.get(id);
+        if (ramLimit != null)
+            maxRamSize = maxRamSize > 0 ? Math.min(maxRamSize, ramLimit) : ramLimit;
+
+        WorkspaceProfile profile = workspaceProfile;
+        if (profile != null && initialSize == 0 && configuration.getPolicyLearning() != LearningPolicy.NONE
+                        && configuration.getPolicyReset() != ResetPolicy.ENDOFBUFFER_REACHED
+                        && configuration.getPolicyLocation() != LocationPolicy.MMAP) {
+            WorkspaceStats stats = profile.get(id);
+            if (stats != null && stats.recommendedInitialSize() > 0) {
+                initialSize = Math.max(stats.recommendedInitialSize(), configuration.getMinSize());
+                if (configuration.getMaxSize() > 0)
+                    initialSize = Math.min(initialSize, configuration.getMaxSize());
+            }
+        }
+
+        if (initialSize == configuration.getInitialSize() && maxRamSize == configuration.getMaxRamSize())
+            return configuration;
+
+        if (maxRamSize > 0)
+            initialSize = Math.min(initialSize, maxRamSize);
+
+        return WorkspaceConfiguration.builder()
+                        .policyAllocation(configuration.getPolicyAllocation())
+                        .policySpill(configuration.getPolicySpill())
+                        .policyMirroring(configuration.getPolicyMirroring())
+                        .policyLearning(configuration.getPolicyLearning())
+                        .policyReset(configuration.getPolicyReset())
+                        .policyLocation(configuration.getPolicyLocation())
+                        .tempFilePath(configuration.getTempFilePath())
+                        .initialSize(initialSize)
+                        .minSize(configuration.getMinSize())
+                        .maxSize(configuration.getMaxSize())
+                        .cyclesBeforeInitialization(configuration.getCyclesBeforeInitialization())
+                        .overallocationLimit(configuration.getOverallocationLimit())
+                        .stepsNumber(configuration.getStepsNumber())
+                        .maxRamSize(maxRamSize)
+                        .spillDirectory(configuration.getSpillDirectory())
+                        .build();
+    }
+
+    /**
+     * This method returns per-id workspace stats recorded in this process, as human-readable table
+     *
+     * @return
+     */
+    @Override
+    public String getWorkspaceReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-26s %10s %10s %10s %12s %12s %10s %10s%n", "Workspace", "Cycles", "Peak", "Size",
+                        "Spill cycles", "Spills", "Spilled", "Mapped"));
+        for (WorkspaceStats stats : new WorkspaceProfile(aggregateStats(null)).getWorkspaces()) {
+            sb.append(String.format("%-26s %10d %10s %10s %12d %12d %10s %10s%n", stats.getId(), stats.getCycles(),
+                            StringUtils.TraditionalBinaryPrefix.long2String(stats.getPeakCycleAllocations(), "", 2),
+                            StringUtils.TraditionalBinaryPrefix.long2String(stats.getWorkspaceSize(), "", 2),
+                            stats.getSpilledCycles(), stats.getSpilledAllocations(),
+                            StringUtils.TraditionalBinaryPrefix.long2String(stats.getSpilledBytes(), "", 2),
+                            StringUtils.TraditionalBinaryPrefix.long2String(stats.getMappedBytes(), "", 2)));
+        }
+        return sb.toString();
+    }
+
     @Override
     public List<String> getAllWorkspacesIdsForCurrentThread() {
         ensureThreadExistense();
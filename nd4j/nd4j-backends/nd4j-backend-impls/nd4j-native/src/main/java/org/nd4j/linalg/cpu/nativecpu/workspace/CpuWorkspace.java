@@ -28,9 +28,16 @@ import org.nd4j.linalg.api.memory.pointers.PagedPointer;
 import org.nd4j.linalg.api.memory.pointers.PointersPair;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.memory.abstracts.Nd4jWorkspace;
+import org.nd4j.linalg.util.ND4JFileUtils;
 import org.nd4j.nativeblas.NativeOps;
 import org.nd4j.nativeblas.NativeOpsHolder;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * CPU-only MemoryWorkspace implementation
  *
@@ -39,8 +46,14 @@ import org.nd4j.nativeblas.NativeOpsHolder;
 @Slf4j
 public class CpuWorkspace extends Nd4jWorkspace {
 
+    protected static final long MAPPED_CHUNK_SIZE = 64L * 1024L * 1024L;
+
     protected LongPointer mmap;
 
+    // memory-mapped scratch chunks used for spills beyond RAM budget
+    protected List<MappedChunk> mappedChunks = new ArrayList<>();
+    protected int mappedChunk = 0;
+
     public CpuWorkspace(@NonNull WorkspaceConfiguration configuration) {
         super(configuration);
     }
@@ -122,6 +135,80 @@ public class CpuWorkspace extends Nd4jWorkspace {
         externalAllocations.clear();
         externalCount.set(0);
         spilledAllocationsSize.set(0);
+
+        resetMappedAllocations();
+    }
+
+    @Override
+    protected PagedPointer allocateMapped(long requiredMemory, long numElements) {
+        // bump allocation within current chunk, moving on to next chunks if needed
+        while (mappedChunk < mappedChunks.size()) {
+            MappedChunk chunk = mappedChunks.get(mappedChunk);
+            if (chunk.offset + requiredMemory <= chunk.size) {
+                long offset = chunk.offset;
+                chunk.offset += requiredMemory;
+                return chunk.pointer.withOffset(offset, numElements);
+            }
+            mappedChunk++;
+        }
+
+        long size = Math.max(MAPPED_CHUNK_SIZE, requiredMemory);
+        File file = null;
+        try {
+            String dir = workspaceConfiguration.getSpillDirectory();
+            file = dir == null ? ND4JFileUtils.createTempFile("workspace", "spill")
+                            : File.createTempFile("workspace", "spill", new File(dir));
+
+            // sparse file, so no disk space is used before pages are actually written
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(size);
+            }
+
+            LongPointer map = NativeOpsHolder.getInstance().getDeviceNativeOps().mmapFile(null, file.getAbsolutePath(), size);
+            if (map == null) {
+                log.warn("Workspace [{}]: failed to map scratch file, spilling into RAM", id);
+                return null;
+            }
+
+            MappedChunk chunk = new MappedChunk(map, new PagedPointer(map.get(0)), size);
+            chunk.offset = requiredMemory;
+            mappedChunks.add(chunk);
+            mappedChunk = mappedChunks.size() - 1;
+
+            if (isDebug.get())
+                log.info("Workspace [{}]: mapped scratch chunk of {} bytes", id, size);
+
+            return chunk.pointer.withOffset(0, numElements);
+        } catch (IOException e) {
+            log.warn("Workspace [{}]: failed to create scratch file, spilling into RAM", id, e);
+            return null;
+        } finally {
+            // mapping stays valid after unlink, and disk space is freed once it's unmapped
+            if (file != null && !file.delete())
+                file.deleteOnExit();
+        }
+    }
+
+    @Override
+    protected void resetMappedAllocations() {
+        super.resetMappedAllocations();
+
+        for (MappedChunk chunk : mappedChunks)
+            chunk.offset = 0;
+
+        mappedChunk = 0;
+    }
+
+    @Override
+    protected void releaseMappedAllocations() {
+        super.releaseMappedAllocations();
+
+        NativeOps nativeOps = NativeOpsHolder.getInstance().getDeviceNativeOps();
+        for (MappedChunk chunk : mappedChunks)
+            nativeOps.munmapFile(null, chunk.map, chunk.size);
+
+        mappedChunks.clear();
+        mappedChunk = 0;
     }
 
     @Override
@@ -138,6 +225,8 @@ public class CpuWorkspace extends Nd4jWorkspace {
 
         clearPinnedAllocations(extended);
 
+        releaseMappedAllocations();
+
         if (workspaceConfiguration.getPolicyLocation() == LocationPolicy.RAM) {
             if (workspace.getHostPointer() != null)
                 NativeOpsHolder.getInstance().getDeviceNativeOps().freeHost(workspace.getHostPointer());
@@ -154,4 +243,17 @@ public class CpuWorkspace extends Nd4jWorkspace {
     protected void resetWorkspace() {
         //Pointer.memset(workspace.getHostPointer(), 0, currentSize.get() + SAFETY_OFFSET);
     }
+
+    protected static class MappedChunk {
+        protected final LongPointer map;
+        protected final PagedPointer pointer;
+        protected final long size;
+        protected long offset;
+
+        protected MappedChunk(LongPointer map, PagedPointer pointer, long size) {
+            this.map = map;
+            this.pointer = pointer;
+            this.size = size;
+        }
+    }
 }
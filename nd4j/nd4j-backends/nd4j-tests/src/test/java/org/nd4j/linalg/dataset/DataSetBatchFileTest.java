@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.nd4j.linalg.dataset;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.nd4j.linalg.BaseNd4jTest;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.factory.Nd4jBackend;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(Parameterized.class)
+public class DataSetBatchFileTest extends BaseNd4jTest {
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    public DataSetBatchFileTest(Nd4jBackend backend) {
+        super(backend);
+    }
+
+    @Test
+    public void testWriteRead() throws Exception {
+        Nd4j.getRandom().setSeed(12345);
+        List<DataSet> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            INDArray features = Nd4j.rand(new int[] {5, 3, 7});
+            INDArray labels = Nd4j.rand(5, 2);
+            INDArray fMask = i % 2 == 0 ? Nd4j.ones(5, 7) : null;
+            expected.add(new DataSet(features, labels, fMask, null));
+        }
+        // views and f-order arrays are written as c-order copies
+        expected.add(new DataSet(Nd4j.rand('f', 4, 6), Nd4j.rand(10, 3).get(
+                        NDArrayIndex.interval(2, 6),
+                        NDArrayIndex.all())));
+
+        for (DataSetBatchWriter.Compression compression : DataSetBatchWriter.Compression.values()) {
+            File f = testDir.newFile();
+            // small chunks: several minibatches per chunk, several chunks per file
+            try (DataSetBatchWriter writer = new DataSetBatchWriter(f, compression, 1024)) {
+                for (DataSet ds : expected)
+                    writer.write(ds);
+            }
+
+            assertTrue(DataSetBatchReader.isBatchFile(f));
+            try (DataSetBatchReader reader = new DataSetBatchReader(f)) {
+                assertEquals(expected.size(), reader.numBatches());
+                for (int i = 0; i < expected.size(); i++)
+                    assertDataSetEquals(expected.get(i), reader.get(i));
+
+                // random access
+                for (int i = expected.size() - 1; i >= 0; i -= 3)
+                    assertDataSetEquals(expected.get(i), reader.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testInPlaceChangesDontReachFile() throws Exception {
+        File f = testDir.newFile();
+        DataSet ds = new DataSet(Nd4j.linspace(1, 12, 12).reshape(3, 4), Nd4j.ones(3, 2));
+        try (DataSetBatchWriter writer = new DataSetBatchWriter(f)) {
+            writer.write(ds);
+        }
+
+        try (DataSetBatchReader reader = new DataSetBatchReader(f, 0)) {
+            reader.get(0).getFeatures().muli(10);
+        }
+        try (DataSetBatchReader reader = new DataSetBatchReader(f, 0)) {
+            assertEquals(ds.getFeatures(), reader.get(0).getFeatures());
+        }
+    }
+
+    @Test
+    public void testExistingMiniBatchDataSetIterator() throws Exception {
+        DataSet all = new IrisDataSetIterator(150, 150).next();
+        File f = testDir.newFile();
+        try (DataSetBatchWriter writer = new DataSetBatchWriter(f, DataSetBatchWriter.Compression.DEFLATE, 4096)) {
+            for (DataSet ds : all.batchBy(10))
+                writer.write(ds);
+        }
+
+        DataSetIterator iter = new ExistingMiniBatchDataSetIterator(f);
+        for (int epoch = 0; epoch < 2; epoch++) {
+            int count = 0;
+            while (iter.hasNext()) {
+                DataSet ds = iter.next();
+                assertEquals(10, ds.numExamples());
+                assertEquals(all.getFeatures().get(NDArrayIndex.interval(count * 10,
+                                (count + 1) * 10), NDArrayIndex.all()), ds.getFeatures());
+                count++;
+            }
+            assertEquals(15, count);
+            iter.reset();
+        }
+    }
+
+    @Test
+    public void testInPlacePreProcessingDoesntAffectNextEpoch() throws Exception {
+        DataSet all = new IrisDataSetIterator(150, 150).next();
+        File f = testDir.newFile();
+        try (DataSetBatchWriter writer = new DataSetBatchWriter(f, DataSetBatchWriter.Compression.NONE, 4096)) {
+            for (DataSet ds : all.batchBy(10))
+                writer.write(ds);
+        }
+
+        ExistingMiniBatchDataSetIterator iter = new ExistingMiniBatchDataSetIterator(f);
+        iter.setPreProcessor(new DataSetPreProcessor() {
+            @Override
+            public void preProcess(DataSet toPreProcess) {
+                toPreProcess.getFeatures().muli(10);
+            }
+        });
+
+        List<List<DataSet>> epochs = new ArrayList<>();
+        for (int epoch = 0; epoch < 2; epoch++) {
+            List<DataSet> list = new ArrayList<>();
+            while (iter.hasNext())
+                list.add(iter.next());
+            epochs.add(list);
+            iter.reset();
+        }
+        iter.close();
+
+        // arrays stay valid after the file is closed
+        assertEquals(15, epochs.get(0).size());
+        for (int i = 0; i < epochs.get(0).size(); i++) {
+            assertEquals(all.getFeatures().get(NDArrayIndex.interval(i * 10, (i + 1) * 10), NDArrayIndex.all()).mul(10),
+                            epochs.get(0).get(i).getFeatures());
+            assertDataSetEquals(epochs.get(0).get(i), epochs.get(1).get(i));
+        }
+    }
+
+    private static void assertDataSetEquals(DataSet exp, DataSet act) {
+        assertEquals(exp.getFeatures(), act.getFeatures());
+        assertEquals(exp.getLabels(), act.getLabels());
+        assertEquals(exp.getFeaturesMaskArray(), act.getFeaturesMaskArray());
+        assertEquals(exp.getLabelsMaskArray(), act.getLabelsMaskArray());
+    }
+
+    @Override
+    public char ordering() {
+        return 'c';
+    }
+}
@@ -32,6 +32,8 @@ import org.nd4j.linalg.exception.ND4JIllegalStateException;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.factory.Nd4jBackend;
 import org.nd4j.linalg.memory.abstracts.Nd4jWorkspace;
+import org.nd4j.linalg.memory.profile.WorkspaceStats;
+import org.nd4j.linalg.memory.provider.BasicWorkspaceManager;
 import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
 
 import java.io.File;
@@ -961,6 +963,52 @@ public class BasicWorkspaceTests extends BaseNd4jTest {
     }
 
 
+    @Test
+    public void testMmapSpill1() throws Exception {
+        // we don't support MMAP on cuda yet
+        if (Nd4j.getExecutioner().getClass().getName().toLowerCase().contains("cuda"))
+            return;
+
+        long size = Nd4j.sizeOfDataType();
+        WorkspaceConfiguration conf = WorkspaceConfiguration.builder()
+                .initialSize(2500 * size)
+                .maxRamSize(10000 * size)
+                .policyAllocation(AllocationPolicy.STRICT)
+                .policyLearning(LearningPolicy.NONE)
+                .policySpill(SpillPolicy.EXTERNAL)
+                .build();
+
+        for (int i = 0; i < 3; i++) {
+            try (Nd4jWorkspace ws = (Nd4jWorkspace) Nd4j.getWorkspaceManager().getAndActivateWorkspace(conf, "M_SPILL")) {
+                long before = ws.getMappedSpilledSize();
+
+                // fits into workspace
+                INDArray small = Nd4j.create(100).assign(1.0f);
+
+                // doesn't fit into workspace, but fits into RAM budget
+                INDArray ram = Nd4j.create(5000).assign(2.0f);
+                assertEquals(before, ws.getMappedSpilledSize());
+
+                // exceeds RAM budget, spilled into scratch file
+                INDArray mapped = Nd4j.create(10000).assign(3.0f);
+                assertEquals(before + 10000 * size, ws.getMappedSpilledSize());
+
+                INDArray mapped2 = Nd4j.create(10000).assign(4.0f);
+                assertEquals(before + 20000 * size, ws.getMappedSpilledSize());
+
+                assertEquals(100f, small.sumNumber().floatValue(), 1e-5);
+                assertEquals(10000f, ram.sumNumber().floatValue(), 1e-5);
+                assertEquals(30000f, mapped.sumNumber().floatValue(), 1e-5);
+                assertEquals(40000f, mapped2.sumNumber().floatValue(), 1e-5);
+            }
+        }
+
+        WorkspaceStats stats = ((BasicWorkspaceManager) Nd4j.getWorkspaceManager()).getWorkspaceStats("M_SPILL");
+        assertEquals(3, stats.getCycles());
+        assertEquals(3 * 20000 * size, stats.getMappedBytes());
+    }
+
+
     @Test
     public void testInvalidLeverageMigrateDetach(){
 
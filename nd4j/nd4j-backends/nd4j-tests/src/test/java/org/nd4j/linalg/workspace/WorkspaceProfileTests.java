@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.nd4j.linalg.workspace;
+
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.nd4j.linalg.BaseNd4jTest;
+import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
+import org.nd4j.linalg.api.memory.enums.*;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.factory.Nd4jBackend;
+import org.nd4j.linalg.memory.abstracts.Nd4jWorkspace;
+import org.nd4j.linalg.memory.profile.WorkspaceProfile;
+import org.nd4j.linalg.memory.profile.WorkspaceStats;
+import org.nd4j.linalg.memory.provider.BasicWorkspaceManager;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+@RunWith(Parameterized.class)
+public class WorkspaceProfileTests extends BaseNd4jTest {
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    private static final WorkspaceConfiguration LEARNING_CONFIG = WorkspaceConfiguration.builder()
+            .initialSize(0).overallocationLimit(0.0)
+            .policyAllocation(AllocationPolicy.STRICT).policyLearning(LearningPolicy.FIRST_LOOP)
+            .policyMirroring(MirroringPolicy.FULL).policySpill(SpillPolicy.EXTERNAL).build();
+
+    public WorkspaceProfileTests(Nd4jBackend backend) {
+        super(backend);
+    }
+
+    @After
+    public void shutUp() {
+        manager().setWorkspaceProfile(null);
+        Nd4j.getWorkspaceManager().destroyAllWorkspacesForCurrentThread();
+    }
+
+    private static BasicWorkspaceManager manager() {
+        return (BasicWorkspaceManager) Nd4j.getWorkspaceManager();
+    }
+
+    @Override
+    public char ordering() {
+        return 'c';
+    }
+
+    @Test
+    public void testStatsRecording_1() {
+        val id = "WS_PROFILE_1";
+        long bytes = 100 * Nd4j.sizeOfDataType();
+
+        // first cycle spills, since workspace has no size yet
+        try (val ws = Nd4j.getWorkspaceManager().getAndActivateWorkspace(LEARNING_CONFIG, id)) {
+            Nd4j.create(10, 10).assign(1.0);
+        }
+
+        val stats = manager().getWorkspaceStats(id);
+        assertNotNull(stats);
+        assertEquals(1, stats.getCycles());
+        assertEquals(1, stats.getSpilledCycles());
+        assertEquals(1, stats.getSpilledAllocations());
+        assertTrue(stats.getPeakCycleAllocations() >= bytes);
+
+        // second cycle fits into learned size
+        try (val ws = Nd4j.getWorkspaceManager().getAndActivateWorkspace(LEARNING_CONFIG, id)) {
+            Nd4j.create(10, 10).assign(1.0);
+        }
+
+        val stats2 = manager().getWorkspaceStats(id);
+        assertEquals(2, stats2.getCycles());
+        assertEquals(1, stats2.getSpilledCycles());
+        assertEquals(stats.getPeakCycleAllocations(), stats2.getPeakCycleAllocations());
+        assertTrue(stats2.getWorkspaceSize() >= bytes);
+
+        assertTrue(manager().getWorkspaceReport().contains(id));
+    }
+
+    @Test
+    public void testProfilePresizing_1() {
+        val id = "WS_PROFILE_2";
+        val profile = new WorkspaceProfile();
+        profile.put(WorkspaceStats.builder().id(id).cycles(10).peakCycleAllocations(1024 * 1024).build());
+        manager().setWorkspaceProfile(profile);
+
+        try (val ws = (Nd4jWorkspace) Nd4j.getWorkspaceManager().getAndActivateWorkspace(LEARNING_CONFIG, id)) {
+            assertEquals(1024 * 1024L, ws.getCurrentSize());
+
+            Nd4j.create(10, 10).assign(1.0);
+            assertEquals(0, ws.getSpilledSize());
+        }
+
+        // explicitly sized workspaces are never affected
+        val sized = WorkspaceConfiguration.builder().initialSize(10 * 1024).policyAllocation(AllocationPolicy.STRICT)
+                .policyLearning(LearningPolicy.FIRST_LOOP).build();
+        try (val ws = (Nd4jWorkspace) Nd4j.getWorkspaceManager().getAndActivateWorkspace(sized, "WS_PROFILE_3")) {
+            assertEquals(10 * 1024L, ws.getCurrentSize());
+        }
+    }
+
+    @Test
+    public void testProfileSerde_1() throws Exception {
+        val profile = new WorkspaceProfile();
+        profile.put(WorkspaceStats.builder().id("WS_A").cycles(10).peakCycleAllocations(1000).workspaceSize(1300)
+                .spilledCycles(1).spilledAllocations(3).spilledBytes(700).build());
+        profile.put(WorkspaceStats.builder().id("WS_B").cycles(5).peakCycleAllocations(200).build());
+
+        File file = new File(testDir.newFolder(), "profile.json");
+        profile.save(file);
+
+        val restored = WorkspaceProfile.load(file);
+        assertEquals(profile.getWorkspaces(), restored.getWorkspaces());
+
+        // merge keeps max peak and sums counters
+        val other = new WorkspaceProfile();
+        other.put(WorkspaceStats.builder().id("WS_A").cycles(2).peakCycleAllocations(2000).spilledCycles(1)
+                .spilledAllocations(1).spilledBytes(100).build());
+        restored.merge(other);
+
+        val merged = restored.get("WS_A");
+        assertEquals(12, merged.getCycles());
+        assertEquals(2000, merged.getPeakCycleAllocations());
+        assertEquals(1300, merged.getWorkspaceSize());
+        assertEquals(4, merged.getSpilledAllocations());
+        assertEquals(2000, merged.recommendedInitialSize());
+    }
+}
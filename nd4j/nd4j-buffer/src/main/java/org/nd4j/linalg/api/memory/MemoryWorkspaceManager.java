@@ -202,6 +202,13 @@ public interface MemoryWorkspaceManager {
      */
     void printAllocationStatisticsForCurrentThread();
 
+    /**
+     * This method returns per-id usage stats of workspaces created by this manager in all threads, as human-readable table
+     *
+     * @return
+     */
+    String getWorkspaceReport();
+
     /**
      * This method returns list of workspace IDs for current thread
      *
@@ -77,4 +77,17 @@ public class WorkspaceConfiguration implements Serializable {
      * This value is used only for circular workspaces
      */
     @Builder.Default protected int stepsNumber = 2;
+
+    /**
+     * If positive, this variable limits amount of RAM used by this workspace: workspace buffer never grows beyond it,
+     * and allocations spilled beyond it are placed into memory-mapped scratch file instead of RAM.
+     *
+     * PLEASE NOTE: file-backed spills are supported by CPU backend only, other backends spill into RAM
+     */
+    @Builder.Default protected long maxRamSize = 0;
+
+    /**
+     * Directory for scratch files used by file-backed spills. ND4J temp directory is used if not set
+     */
+    @Builder.Default protected String spillDirectory = null;
 }
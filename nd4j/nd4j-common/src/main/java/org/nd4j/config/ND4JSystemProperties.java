@@ -58,6 +58,14 @@ public class ND4JSystemProperties {
      */
     public static final String ND4J_TEMP_DIR_PROPERTY = "org.nd4j.tempdir";
 
+    /**
+     * Applicability: workspaces with learnable size (LearningPolicy.FIRST_LOOP or OVER_TIME)<br>
+     * Description: Path to workspace profile file. If file exists, it's loaded on startup, and new workspaces with
+     * matching ids are pre-sized from it instead of learning their size again. On JVM shutdown, profile updated with
+     * stats of this process is written back to the same file.
+     */
+    public static final String WORKSPACE_PROFILE_PROPERTY = "org.nd4j.workspace.profile";
+
     /**
      * Applicability: always - but only if an ND4J backend cannot be found/loaded via standard ServiceLoader mechanisms<br>
      * Description: Set this property to a set fully qualified JAR files to attempt to load before failing on